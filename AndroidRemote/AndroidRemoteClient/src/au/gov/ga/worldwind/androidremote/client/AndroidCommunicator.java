@@ -18,6 +18,9 @@ package au.gov.ga.worldwind.androidremote.client;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import android.app.Activity;
@@ -29,7 +32,9 @@ import android.widget.Toast;
 import au.gov.ga.worldwind.androidremote.shared.AbstractCommunicator;
 import au.gov.ga.worldwind.androidremote.shared.Communicator;
 import au.gov.ga.worldwind.androidremote.shared.Message;
-import au.gov.ga.worldwind.androidremote.shared.MessageIO;
+import au.gov.ga.worldwind.androidremote.shared.MessageQueue;
+import au.gov.ga.worldwind.androidremote.shared.MessageReader;
+import au.gov.ga.worldwind.androidremote.shared.MessageWriter;
 import au.gov.ga.worldwind.androidremote.shared.messages.ExitMessage;
 
 /**
@@ -42,6 +47,7 @@ public class AndroidCommunicator extends AbstractCommunicator
 {
 	private static final String TAG = AndroidCommunicator.class.getSimpleName();
 	private static final UUID MY_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB"); //SPP UUID
+	private static final long OUTPUT_CLOSE_TIMEOUT = 1000;
 
 	private final Activity context;
 	private final BluetoothAdapter adapter;
@@ -250,8 +256,10 @@ public class AndroidCommunicator extends AbstractCommunicator
 	private class ConnectedThread extends Thread
 	{
 		private final BluetoothSocket socket;
-		private final InputStream is;
-		private final OutputStream os;
+		private final MessageReader reader;
+		private final MessageWriter writer;
+		private final MessageQueue messageQueue = new MessageQueue();
+		private final Thread outputThread;
 
 		public ConnectedThread(BluetoothSocket socket)
 		{
@@ -271,8 +279,48 @@ public class AndroidCommunicator extends AbstractCommunicator
 				Log.e(TAG, "streams not created", e);
 			}
 
-			is = tmpIs;
-			os = tmpOs;
+			reader = tmpIs == null ? null : new MessageReader(Channels.newChannel(tmpIs));
+			writer = tmpOs == null ? null : new MessageWriter(Channels.newChannel(tmpOs));
+
+			outputThread = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					List<Message<?>> messages = new ArrayList<Message<?>>();
+					while (true)
+					{
+						try
+						{
+							if (!messageQueue.takeAll(messages))
+							{
+								break;
+							}
+						}
+						catch (InterruptedException e)
+						{
+							break;
+						}
+
+						//write all queued messages with a single flush
+						try
+						{
+							for (Message<?> message : messages)
+							{
+								writer.write(message);
+							}
+							writer.flush();
+						}
+						catch (IOException e)
+						{
+							Log.e(TAG, "Exception during write", e);
+						}
+						messages.clear();
+					}
+				}
+			});
+			outputThread.setName("ConnectedOutputThread");
+			outputThread.setDaemon(true);
 		}
 
 		@Override
@@ -280,12 +328,17 @@ public class AndroidCommunicator extends AbstractCommunicator
 		{
 			Log.i(TAG, "begin ConnectedThread");
 
+			if (writer != null)
+			{
+				outputThread.start();
+			}
+
 			// Keep listening to the InputStream while connected
 			while (true)
 			{
 				try
 				{
-					final Message<?> message = MessageIO.readMessage(is);
+					final Message<?> message = reader.readMessage();
 					context.runOnUiThread(new Runnable()
 					{
 						@Override
@@ -305,25 +358,32 @@ public class AndroidCommunicator extends AbstractCommunicator
 		}
 
 		/**
-		 * Write to the connected OutStream.
+		 * Queue a message to be written to the connected OutStream. Queued
+		 * messages that are superseded by this message are dropped.
 		 * 
-		 * @param buffer
-		 *            The bytes to write
+		 * @param message
+		 *            The message to write
 		 */
 		public void write(Message<?> message)
 		{
-			try
-			{
-				MessageIO.writeMessage(message, os);
-			}
-			catch (IOException e)
-			{
-				Log.e(TAG, "Exception during write", e);
-			}
+			messageQueue.add(message);
 		}
 
 		public void cancel()
 		{
+			//allow the output thread to send any queued messages (such as an
+			//ExitMessage) before closing the socket
+			messageQueue.close();
+			if (outputThread.isAlive())
+			{
+				try
+				{
+					outputThread.join(OUTPUT_CLOSE_TIMEOUT);
+				}
+				catch (InterruptedException e)
+				{
+				}
+			}
 			try
 			{
 				//outStream.write(EXIT_CMD);
@@ -15,16 +15,12 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.androidremote.client;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.List;
 
 import android.app.Activity;
 import android.util.Log;
@@ -32,7 +28,9 @@ import android.widget.Toast;
 import au.gov.ga.worldwind.androidremote.shared.AbstractCommunicator;
 import au.gov.ga.worldwind.androidremote.shared.Communicator;
 import au.gov.ga.worldwind.androidremote.shared.Message;
-import au.gov.ga.worldwind.androidremote.shared.MessageIO;
+import au.gov.ga.worldwind.androidremote.shared.MessageQueue;
+import au.gov.ga.worldwind.androidremote.shared.MessageReader;
+import au.gov.ga.worldwind.androidremote.shared.MessageWriter;
 
 /**
  * {@link Communicator} implementation that uses sockets for sending/receiving
@@ -45,6 +43,7 @@ public class SocketAndroidCommunicator extends AbstractCommunicator
 {
 	private static final String TAG = AndroidCommunicator.class.getSimpleName();
 	private static final int PORT = 23549;
+	private static final long OUTPUT_CLOSE_TIMEOUT = 1000;
 
 	private final Activity context;
 
@@ -103,7 +102,7 @@ public class SocketAndroidCommunicator extends AbstractCommunicator
 		setState(State.CONNECTING);
 	}
 
-	public synchronized void connected(Socket connection)
+	public synchronized void connected(SocketChannel connection)
 	{
 		Log.d(TAG, "connected");
 
@@ -175,7 +174,7 @@ public class SocketAndroidCommunicator extends AbstractCommunicator
 			setName("ConnectThread");
 
 			// Make a connection to the BluetoothSocket
-			Socket socket = null;
+			SocketChannel socket = null;
 			boolean connected = false;
 			for (String hostname : hostnames)
 			{
@@ -183,8 +182,8 @@ public class SocketAndroidCommunicator extends AbstractCommunicator
 				{
 					// This is a blocking call and will only return on a
 					// successful connection or an exception
-					socket = new Socket();
-					socket.connect(new InetSocketAddress(hostname, PORT));
+					socket = SocketChannel.open(new InetSocketAddress(hostname, PORT));
+					socket.socket().setTcpNoDelay(true);
 					connected = true;
 					break;
 				}
@@ -218,33 +217,18 @@ public class SocketAndroidCommunicator extends AbstractCommunicator
 
 	private class ConnectedThread extends Thread
 	{
-		private final Socket socket;
-		private final InputStream is;
-		private final OutputStream os;
-		private BlockingQueue<Message<?>> messageQueue = new LinkedBlockingQueue<Message<?>>();
+		private final SocketChannel socket;
+		private final MessageReader reader;
+		private final MessageWriter writer;
+		private final MessageQueue messageQueue = new MessageQueue();
 		private Thread outputThread;
-		private boolean cancelled = false;
 
-		public ConnectedThread(Socket socket)
+		public ConnectedThread(SocketChannel socket)
 		{
 			Log.d(TAG, "create ConnectedThread");
 			this.socket = socket;
-			InputStream tmpIs = null;
-			OutputStream tmpOs = null;
-
-			// Get the BluetoothSocket input and output streams
-			try
-			{
-				tmpIs = new BufferedInputStream(socket.getInputStream());
-				tmpOs = new BufferedOutputStream(socket.getOutputStream());
-			}
-			catch (IOException e)
-			{
-				Log.e(TAG, "streams not created", e);
-			}
-
-			is = tmpIs;
-			os = tmpOs;
+			reader = new MessageReader(socket);
+			writer = new MessageWriter(socket);
 		}
 
 		@Override
@@ -257,26 +241,35 @@ public class SocketAndroidCommunicator extends AbstractCommunicator
 				@Override
 				public void run()
 				{
-					while (!cancelled)
+					List<Message<?>> messages = new ArrayList<Message<?>>();
+					while (true)
 					{
-						Message<?> message;
 						try
 						{
-							message = messageQueue.take();
+							if (!messageQueue.takeAll(messages))
+							{
+								break;
+							}
 						}
 						catch (InterruptedException e)
 						{
 							break;
 						}
 
+						//write all queued messages with a single flush
 						try
 						{
-							MessageIO.writeMessage(message, os);
+							for (Message<?> message : messages)
+							{
+								writer.write(message);
+							}
+							writer.flush();
 						}
 						catch (IOException e)
 						{
 							Log.e(TAG, "Exception during write", e);
 						}
+						messages.clear();
 					}
 				}
 			});
@@ -288,7 +281,7 @@ public class SocketAndroidCommunicator extends AbstractCommunicator
 			{
 				try
 				{
-					final Message<?> message = MessageIO.readMessage(is);
+					final Message<?> message = reader.readMessage();
 					/*context.runOnUiThread(new Runnable()
 					{
 						@Override
@@ -309,10 +302,11 @@ public class SocketAndroidCommunicator extends AbstractCommunicator
 		}
 
 		/**
-		 * Write to the connected OutStream.
+		 * Queue a message to be written to the connected socket. Queued
+		 * messages that are superseded by this message are dropped.
 		 * 
-		 * @param buffer
-		 *            The bytes to write
+		 * @param message
+		 *            The message to write
 		 */
 		public void write(Message<?> message)
 		{
@@ -321,8 +315,18 @@ public class SocketAndroidCommunicator extends AbstractCommunicator
 
 		public void cancel()
 		{
-			cancelled = true;
-			outputThread.interrupt();
+			//allow the output thread to send any queued messages before closing
+			messageQueue.close();
+			if (outputThread != null)
+			{
+				try
+				{
+					outputThread.join(OUTPUT_CLOSE_TIMEOUT);
+				}
+				catch (InterruptedException e)
+				{
+				}
+			}
 			try
 			{
 				//outStream.write(EXIT_CMD);
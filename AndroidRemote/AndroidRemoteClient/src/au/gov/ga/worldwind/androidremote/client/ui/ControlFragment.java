@@ -19,6 +19,7 @@ import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -78,7 +79,7 @@ public class ControlFragment extends SherlockFragment implements CommunicatorLis
 	 */
 	protected void updateBitmap(Bitmap bitmap)
 	{
-		if (this.bitmap != null)
+		if (this.bitmap != null && this.bitmap != bitmap)
 		{
 			this.bitmap.recycle();
 		}
@@ -129,9 +130,42 @@ public class ControlFragment extends SherlockFragment implements CommunicatorLis
 		{
 			RemoteViewMessage remoteView = (RemoteViewMessage) message;
 			byte[] array = remoteView.buffer.array();
-			final Bitmap bitmap = BitmapFactory.decodeByteArray(array, 0, array.length);
-			updateBitmap(bitmap);
+			Bitmap region = BitmapFactory.decodeByteArray(array, 0, array.length);
+			if (region != null)
+			{
+				updateBitmap(compositeRegion(region, remoteView));
+			}
+		}
+	}
+
+	/**
+	 * Draw a received image region into the current frame. If the region
+	 * covers the entire frame, or the frame size has changed, the region
+	 * replaces the current frame.
+	 * 
+	 * @param region
+	 *            Decoded image region
+	 * @param message
+	 *            Message containing the region's position and frame size
+	 * @return Bitmap containing the updated frame
+	 */
+	protected Bitmap compositeRegion(Bitmap region, RemoteViewMessage message)
+	{
+		if (region.getWidth() == message.frameWidth && region.getHeight() == message.frameHeight)
+		{
+			return region;
 		}
+		if (bitmap == null || bitmap.getWidth() != message.frameWidth || bitmap.getHeight() != message.frameHeight)
+		{
+			//can't composite a partial frame without a previous frame; wait for the next full frame
+			region.recycle();
+			return bitmap;
+		}
+
+		Bitmap frame = bitmap.isMutable() ? bitmap : bitmap.copy(Bitmap.Config.ARGB_8888, true);
+		new Canvas(frame).drawBitmap(region, message.x, message.y, null);
+		region.recycle();
+		return frame;
 	}
 
 	@Override
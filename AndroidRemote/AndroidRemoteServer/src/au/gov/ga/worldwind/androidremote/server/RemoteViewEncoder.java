@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.androidremote.server;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Encodes remote view frames as JPEG images. A single {@link ImageWriter} and
+ * output buffer are reused for every frame, so encoding doesn't allocate a new
+ * writer or byte array each frame.
+ * <p/>
+ * Also provides a helper for calculating the region of a frame that has
+ * changed since the previous frame, so that only that region needs to be
+ * encoded and sent.
+ * <p/>
+ * Instances are not thread safe; they should only be used by a single sending
+ * thread.
+ */
+public class RemoteViewEncoder
+{
+	private final ImageWriter writer;
+	private final ImageWriteParam param;
+	private final ReusableByteArrayOutputStream output = new ReusableByteArrayOutputStream(64 * 1024);
+	private float quality = 0.75f;
+
+	public RemoteViewEncoder()
+	{
+		writer = ImageIO.getImageWritersByFormatName("jpg").next();
+		param = writer.getDefaultWriteParam();
+		param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		param.setCompressionQuality(quality);
+	}
+
+	/**
+	 * @return JPEG compression quality, between 0 and 1
+	 */
+	public float getQuality()
+	{
+		return quality;
+	}
+
+	/**
+	 * Set the JPEG compression quality used for subsequent frames.
+	 *
+	 * @param quality
+	 *            Quality between 0 and 1
+	 */
+	public void setQuality(float quality)
+	{
+		this.quality = Math.max(0f, Math.min(1f, quality));
+		param.setCompressionQuality(this.quality);
+	}
+
+	/**
+	 * Encode a region of an image as a JPEG.
+	 *
+	 * @param image
+	 *            Image to encode
+	 * @param region
+	 *            Region of the image to encode, or null for the whole image
+	 * @return Buffer containing the JPEG data. The buffer wraps the encoder's
+	 *         internal array, so is only valid until the next call to this
+	 *         method.
+	 * @throws IOException
+	 */
+	public ByteBuffer encode(BufferedImage image, Rectangle region) throws IOException
+	{
+		BufferedImage source = image;
+		if (region != null && (region.width != image.getWidth() || region.height != image.getHeight()))
+		{
+			source = image.getSubimage(region.x, region.y, region.width, region.height);
+		}
+
+		output.reset();
+		ImageOutputStream ios = new MemoryCacheImageOutputStream(output);
+		try
+		{
+			writer.setOutput(ios);
+			writer.write(null, new IIOImage(source, null, null), param);
+		}
+		finally
+		{
+			writer.setOutput(null);
+			ios.close();
+		}
+		return output.toByteBuffer();
+	}
+
+	/**
+	 * Release the resources used by the image writer.
+	 */
+	public void dispose()
+	{
+		writer.dispose();
+	}
+
+	/**
+	 * Calculate the bounding rectangle of the pixels that differ between two
+	 * frames.
+	 *
+	 * @param previous
+	 *            Previous frame's pixel data
+	 * @param current
+	 *            Current frame's pixel data
+	 * @param width
+	 *            Width of the frames
+	 * @param height
+	 *            Height of the frames
+	 * @param bands
+	 *            Number of bytes per pixel
+	 * @return Rectangle containing all the changed pixels, or null if the
+	 *         frames are identical
+	 */
+	public static Rectangle computeDirtyRegion(byte[] previous, byte[] current, int width, int height, int bands)
+	{
+		int stride = width * bands;
+
+		int top = 0;
+		while (top < height && rowsEqual(previous, current, top * stride, stride))
+		{
+			top++;
+		}
+		if (top == height)
+		{
+			return null;
+		}
+
+		int bottom = height - 1;
+		while (bottom > top && rowsEqual(previous, current, bottom * stride, stride))
+		{
+			bottom--;
+		}
+
+		int left = width;
+		int right = -1;
+		for (int row = top; row <= bottom; row++)
+		{
+			int rowStart = row * stride;
+			for (int x = 0; x < left; x++)
+			{
+				if (!pixelsEqual(previous, current, rowStart + x * bands, bands))
+				{
+					left = x;
+					break;
+				}
+			}
+			for (int x = width - 1; x > right; x--)
+			{
+				if (!pixelsEqual(previous, current, rowStart + x * bands, bands))
+				{
+					right = x;
+					break;
+				}
+			}
+		}
+
+		return new Rectangle(left, top, right - left + 1, bottom - top + 1);
+	}
+
+	private static boolean rowsEqual(byte[] previous, byte[] current, int offset, int length)
+	{
+		for (int i = offset; i < offset + length; i++)
+		{
+			if (previous[i] != current[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean pixelsEqual(byte[] previous, byte[] current, int offset, int bands)
+	{
+		for (int i = offset; i < offset + bands; i++)
+		{
+			if (previous[i] != current[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * {@link ByteArrayOutputStream} that allows its internal array to be
+	 * wrapped by a {@link ByteBuffer} without copying.
+	 */
+	private static class ReusableByteArrayOutputStream extends ByteArrayOutputStream
+	{
+		public ReusableByteArrayOutputStream(int size)
+		{
+			super(size);
+		}
+
+		public synchronized ByteBuffer toByteBuffer()
+		{
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+	}
+}
@@ -18,16 +18,15 @@ package au.gov.ga.worldwind.androidremote.server;
 import gov.nasa.worldwind.SceneController;
 import gov.nasa.worldwind.WorldWindow;
 import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.util.Logging;
 
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
-import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 
-import javax.imageio.ImageIO;
 import javax.media.opengl.GL2;
 
 import au.gov.ga.worldwind.androidremote.shared.Communicator;
@@ -43,113 +42,412 @@ import com.jogamp.common.nio.Buffers;
 /**
  * {@link SceneController} implementation used for sending a remote view of the
  * globe to the Android device (if enabled and connected correctly).
+ * <p/>
+ * Frames are read back from the frame buffer asynchronously using a pixel
+ * buffer object (if supported), which is mapped after the main scene has been
+ * drawn. Frames are encoded and sent on a single sending thread, using a small
+ * pool of reused frame buffers. Only the region of each frame that has changed
+ * since the previous frame is sent. The JPEG quality and image resolution are
+ * adapted to the measured time taken to send each frame.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class RemoteViewSceneController extends SettingsSceneController implements CommunicatorListener
 {
-	private static final float IMAGE_SCALE = 1f / 2f;
+	/**
+	 * Scales of the remote view image relative to the device's screen, from
+	 * highest to lowest resolution.
+	 */
+	private static final float[] IMAGE_SCALES = { 1f / 2f, 1f / 3f, 1f / 4f };
+	private static final float MIN_QUALITY = 0.3f;
+	private static final float MAX_QUALITY = 0.85f;
+	private static final float QUALITY_STEP = 0.05f;
+	/**
+	 * Target time to encode and send a single frame, in seconds.
+	 */
+	private static final double TARGET_SEND_TIME = 1d / 15d;
+	/**
+	 * Number of frames sent between adapting the quality/resolution.
+	 */
+	private static final int ADAPT_INTERVAL = 10;
+	/**
+	 * Maximum number of frames sent as changed regions before a full frame is
+	 * sent again.
+	 */
+	private static final int FULL_FRAME_INTERVAL = 60;
+	/**
+	 * If the changed region covers more than this fraction of the frame, the
+	 * full frame is sent.
+	 */
+	private static final double MAX_DIRTY_FRACTION = 0.7;
+	private static final int LOG_INTERVAL = 100;
+	private static final int FRAME_POOL_SIZE = 2;
+
 	private Communicator communicator;
 	private WorldWindow wwd;
-	private boolean remoteViewEnabled = false;
-	private int bands = 3;
+	private volatile boolean remoteViewEnabled = false;
+	private final int bands = 3;
 	private int desiredWidth, desiredHeight;
 	private int width, height;
+	private int currentScaleIndex = 0;
+	private volatile int scaleIndex = 0;
 	private ByteBuffer buffer;
-	private BufferedImage[] images = new BufferedImage[2];
-	private Thread thread;
 	private Object semaphore = new Object();
-	private int lastImage = 0;
-	private boolean sending = false;
 
-	private BlockingQueue<BufferedImage> imageSendQueue = new ArrayBlockingQueue<BufferedImage>(1);
+	private Boolean pboSupported;
+	private int pbo = 0;
+	private int pboSize = 0;
+
+	private final BlockingQueue<Frame> freeFrames = new ArrayBlockingQueue<Frame>(FRAME_POOL_SIZE);
+	private final BlockingQueue<Frame> sendQueue = new ArrayBlockingQueue<Frame>(FRAME_POOL_SIZE);
+	private volatile boolean frameSkipped = false;
+	private volatile boolean forceFullFrame = true;
+	private Thread thread;
+	private final RemoteViewStatistics statistics = new RemoteViewStatistics();
+
+	public RemoteViewSceneController()
+	{
+		for (int i = 0; i < FRAME_POOL_SIZE; i++)
+		{
+			freeFrames.add(new Frame(0, 0));
+		}
+	}
 
 	public void setup(Communicator communicator, WorldWindow wwd)
 	{
 		this.communicator = communicator;
 		this.wwd = wwd;
 		communicator.addListener(this);
+		startSendThread();
+	}
+
+	/**
+	 * @return Timing statistics of the remote view stream
+	 */
+	public RemoteViewStatistics getStatistics()
+	{
+		return statistics;
 	}
 
 	@Override
 	public void draw(DrawContext dc)
 	{
-		if (communicator != null && communicator.getState() == State.CONNECTED && remoteViewEnabled && buffer != null
-				&& imageSendQueue.isEmpty() && !sending)
+		Frame pendingFrame = null;
+		if (communicator != null && communicator.getState() == State.CONNECTED && remoteViewEnabled && buffer != null)
 		{
 			synchronized (semaphore)
 			{
-				GL2 gl = dc.getGL().getGL2();
-				Rectangle oldViewport = view.getViewport();
+				if (currentScaleIndex != scaleIndex)
+				{
+					currentScaleIndex = scaleIndex;
+					updateSize();
+				}
 
-				gl.glViewport(0, 0, desiredWidth, desiredHeight);
-				this.applyView(dc);
-				gl.glViewport(0, 0, width, height);
-				super.draw(dc);
+				Frame frame = pollFreeFrame();
+				if (frame == null)
+				{
+					//all frames are still being sent; redraw once the sender catches up
+					frameSkipped = true;
+				}
+				else
+				{
+					GL2 gl = dc.getGL().getGL2();
+					Rectangle oldViewport = view.getViewport();
 
-				//GL.GL_BGRA is the fastest for glReadPixels
-				int readType = bands == 4 ? GL2.GL_BGRA : GL2.GL_BGR;
-				gl.glReadPixels(0, 0, width, height, readType, GL2.GL_UNSIGNED_BYTE, buffer.rewind());
+					gl.glViewport(0, 0, desiredWidth, desiredHeight);
+					this.applyView(dc);
+					gl.glViewport(0, 0, width, height);
+					super.draw(dc);
 
-				lastImage = (lastImage + 1) % images.length;
-				BufferedImage image = images[lastImage];
-				byte[] dst = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+					if (isPboSupported(gl))
+					{
+						//start an asynchronous read into the pixel buffer object; it is mapped after the main scene is drawn
+						readPixelsIntoPbo(gl);
+						pendingFrame = frame;
+					}
+					else
+					{
+						//GL.GL_BGRA is the fastest for glReadPixels
+						int readType = bands == 4 ? GL2.GL_BGRA : GL2.GL_BGR;
+						gl.glReadPixels(0, 0, width, height, readType, GL2.GL_UNSIGNED_BYTE, buffer.rewind());
+						if (copyFlipped(buffer, frame))
+						{
+							queueFrame(frame);
+						}
+						else
+						{
+							freeFrames.add(frame);
+						}
+					}
 
-				//flip the image:
-				buffer.rewind();
-				for (int i = 0; i < height; i++)
-				{
-					buffer.get(dst, (height - i - 1) * width * bands, width * bands);
+					gl.glClear(GL2.GL_COLOR_BUFFER_BIT | GL2.GL_DEPTH_BUFFER_BIT);
+					gl.glViewport(oldViewport.x, oldViewport.y, oldViewport.width, oldViewport.height);
+					this.applyView(dc);
 				}
-				sendImage(image);
-
-				gl.glClear(GL2.GL_COLOR_BUFFER_BIT | GL2.GL_DEPTH_BUFFER_BIT);
-				gl.glViewport(oldViewport.x, oldViewport.y, oldViewport.width, oldViewport.height);
-				this.applyView(dc);
 			}
 		}
+
 		super.draw(dc);
+
+		if (pendingFrame != null)
+		{
+			GL2 gl = dc.getGL().getGL2();
+			gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, pbo);
+			ByteBuffer mapped = gl.glMapBuffer(GL2.GL_PIXEL_PACK_BUFFER, GL2.GL_READ_ONLY);
+			boolean copied = false;
+			if (mapped != null)
+			{
+				copied = copyFlipped(mapped, pendingFrame);
+				gl.glUnmapBuffer(GL2.GL_PIXEL_PACK_BUFFER);
+			}
+			if (copied)
+			{
+				queueFrame(pendingFrame);
+			}
+			else
+			{
+				freeFrames.add(pendingFrame);
+			}
+			gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, 0);
+		}
+	}
+
+	protected boolean isPboSupported(GL2 gl)
+	{
+		if (pboSupported == null)
+		{
+			pboSupported = gl.isExtensionAvailable("GL_ARB_pixel_buffer_object");
+		}
+		return pboSupported;
+	}
+
+	protected void readPixelsIntoPbo(GL2 gl)
+	{
+		if (pbo == 0)
+		{
+			int[] buffers = new int[1];
+			gl.glGenBuffers(1, buffers, 0);
+			pbo = buffers[0];
+		}
+		int size = width * height * bands;
+		gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, pbo);
+		if (pboSize != size)
+		{
+			gl.glBufferData(GL2.GL_PIXEL_PACK_BUFFER, size, null, GL2.GL_STREAM_READ);
+			pboSize = size;
+		}
+		int readType = bands == 4 ? GL2.GL_BGRA : GL2.GL_BGR;
+		gl.glReadPixels(0, 0, width, height, readType, GL2.GL_UNSIGNED_BYTE, 0L);
+		gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, 0);
+	}
+
+	/**
+	 * @return A frame from the pool with the current width/height, or null if
+	 *         all frames are in use
+	 */
+	protected Frame pollFreeFrame()
+	{
+		Frame frame = freeFrames.poll();
+		if (frame != null && (frame.width != width || frame.height != height))
+		{
+			frame = new Frame(width, height);
+		}
+		return frame;
 	}
 
-	protected void sendImage(BufferedImage image)
+	/**
+	 * Queue a captured frame to be encoded and sent by the sending thread. The
+	 * frame is returned to the pool once it has been sent.
+	 */
+	protected void queueFrame(Frame frame)
 	{
-		imageSendQueue.add(image);
+		sendQueue.add(frame);
+	}
 
-		if (thread == null)
+	/**
+	 * Copy the pixels read from the frame buffer into the frame's image,
+	 * flipping it vertically. The pixels must have been read with the frame's
+	 * width and height (the remote view size can change on the message thread
+	 * after the pixels are read).
+	 * 
+	 * @return false if the source doesn't hold a frame of the frame's size, in
+	 *         which case the frame should be dropped
+	 */
+	protected boolean copyFlipped(ByteBuffer source, Frame frame)
+	{
+		int rowLength = frame.width * bands;
+		if (frame.data == null || source.capacity() != rowLength * frame.height)
 		{
-			thread = new Thread(new Runnable()
+			return false;
+		}
+
+		source.rewind();
+		for (int i = 0; i < frame.height; i++)
+		{
+			source.get(frame.data, (frame.height - i - 1) * rowLength, rowLength);
+		}
+		frame.captureTime = System.nanoTime();
+		return true;
+	}
+
+	/**
+	 * Recalculate the image size from the client's screen size and the
+	 * current image scale.
+	 */
+	protected void updateSize()
+	{
+		//ensure width/height are divisible by 4, otherwise JVM crash!
+		float scale = IMAGE_SCALES[currentScaleIndex];
+		this.width = Math.max(4, ((int) (desiredWidth * scale) / 4) * 4);
+		this.height = Math.max(4, ((int) (desiredHeight * scale) / 4) * 4);
+		buffer = Buffers.newDirectByteBuffer(width * height * bands);
+		forceFullFrame = true;
+	}
+
+	protected synchronized void startSendThread()
+	{
+		if (thread != null)
+		{
+			return;
+		}
+
+		thread = new Thread(new Runnable()
+		{
+			private final RemoteViewEncoder encoder = new RemoteViewEncoder();
+			private byte[] reference;
+			private int referenceWidth, referenceHeight;
+			private int framesSinceFullFrame = 0;
+
+			@Override
+			public void run()
 			{
-				@Override
-				public void run()
+				encoder.setQuality(MAX_QUALITY);
+				while (true)
 				{
-					while (true)
+					Frame frame;
+					try
 					{
-						try
-						{
-							BufferedImage image = imageSendQueue.take();
-							sending = true;
-
-							//QuantizeFilter filter = new QuantizeFilter();
-							//filter.setNumColors(100);
-							//image = filter.filter(image, null);
-
-							ByteArrayOutputStream baos = new ByteArrayOutputStream();
-							ImageIO.write(image, "jpg", baos);
-							ByteBuffer jpegBuffer = ByteBuffer.wrap(baos.toByteArray());
-							baos.close();
-							communicator.sendMessage(new RemoteViewMessage(jpegBuffer));
-							sending = false;
-						}
-						catch (Exception e)
-						{
-							e.printStackTrace();
-						}
+						frame = sendQueue.take();
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+
+					try
+					{
+						sendFrame(frame);
+					}
+					catch (Exception e)
+					{
+						e.printStackTrace();
+					}
+					finally
+					{
+						freeFrames.add(frame);
+					}
+
+					if (frameSkipped && wwd != null)
+					{
+						frameSkipped = false;
+						wwd.redraw();
 					}
 				}
-			});
-			thread.setDaemon(true);
-			thread.start();
-		}
+			}
+
+			private void sendFrame(Frame frame) throws Exception
+			{
+				long startTime = System.nanoTime();
+				int frameWidth = frame.width;
+				int frameHeight = frame.height;
+
+				boolean fullFrame =
+						forceFullFrame || reference == null || referenceWidth != frameWidth
+								|| referenceHeight != frameHeight || framesSinceFullFrame >= FULL_FRAME_INTERVAL;
+				Rectangle region = null;
+				if (!fullFrame)
+				{
+					region = RemoteViewEncoder.computeDirtyRegion(reference, frame.data, frameWidth, frameHeight, bands);
+					if (region == null)
+					{
+						//nothing has changed since the last frame sent
+						return;
+					}
+					fullFrame = region.width * region.height > MAX_DIRTY_FRACTION * frameWidth * frameHeight;
+				}
+				if (fullFrame)
+				{
+					forceFullFrame = false;
+					framesSinceFullFrame = 0;
+					region = new Rectangle(0, 0, frameWidth, frameHeight);
+				}
+				else
+				{
+					framesSinceFullFrame++;
+				}
+
+				ByteBuffer jpegBuffer = encoder.encode(frame.image, region);
+				communicator.sendMessage(new RemoteViewMessage(jpegBuffer, region.x, region.y, frameWidth,
+						frameHeight));
+
+				if (reference == null || reference.length != frame.data.length)
+				{
+					reference = new byte[frame.data.length];
+				}
+				System.arraycopy(frame.data, 0, reference, 0, frame.data.length);
+				referenceWidth = frameWidth;
+				referenceHeight = frameHeight;
+
+				statistics.frameSent(frame.captureTime, startTime, System.nanoTime(), jpegBuffer.limit());
+				long frameCount = statistics.getFrameCount();
+				if (frameCount % ADAPT_INTERVAL == 0)
+				{
+					adapt();
+				}
+				if (frameCount % LOG_INTERVAL == 0)
+				{
+					Logging.logger().fine(
+							"Remote view: " + statistics + ", quality " + encoder.getQuality() + ", " + frameWidth
+									+ "x" + frameHeight);
+				}
+			}
+
+			/**
+			 * Lower the quality, and then the resolution, if frames are taking
+			 * too long to send; restore the resolution, and then the quality,
+			 * if there is spare throughput.
+			 */
+			private void adapt()
+			{
+				double sendTime = statistics.getSendTime();
+				float quality = encoder.getQuality();
+				if (sendTime > TARGET_SEND_TIME * 1.25)
+				{
+					if (quality > MIN_QUALITY)
+					{
+						encoder.setQuality(Math.max(MIN_QUALITY, quality - QUALITY_STEP));
+					}
+					else if (scaleIndex < IMAGE_SCALES.length - 1)
+					{
+						scaleIndex++;
+					}
+				}
+				else if (sendTime < TARGET_SEND_TIME * 0.5)
+				{
+					if (scaleIndex > 0)
+					{
+						scaleIndex--;
+					}
+					else if (quality < MAX_QUALITY)
+					{
+						encoder.setQuality(Math.min(MAX_QUALITY, quality + QUALITY_STEP));
+					}
+				}
+			}
+		});
+		thread.setName("Remote view sender");
+		thread.setDaemon(true);
+		thread.start();
 	}
 
 	@Override
@@ -168,15 +466,10 @@ public class RemoteViewSceneController extends SettingsSceneController implement
 				remoteViewEnabled = enable.enabled;
 				if (enable.enabled)
 				{
-					//ensure width/height are divisible by 4, otherwise JVM crash!
-					this.width = ((int) (enable.width * IMAGE_SCALE) / 4) * 4;
-					this.height = ((int) (enable.height * IMAGE_SCALE) / 4) * 4;
 					this.desiredWidth = enable.width;
 					this.desiredHeight = enable.height;
-					buffer = Buffers.newDirectByteBuffer(width * height * bands);
-					int imageType = bands == 4 ? BufferedImage.TYPE_4BYTE_ABGR : BufferedImage.TYPE_3BYTE_BGR;
-					images[0] = new BufferedImage(width, height, imageType);
-					images[1] = new BufferedImage(width, height, imageType);
+					updateSize();
+					statistics.reset();
 				}
 
 				if (wwd != null)
@@ -186,4 +479,33 @@ public class RemoteViewSceneController extends SettingsSceneController implement
 			}
 		}
 	}
+
+	/**
+	 * Pooled remote view frame, containing the image read from the frame
+	 * buffer.
+	 */
+	protected static class Frame
+	{
+		public final int width;
+		public final int height;
+		public final BufferedImage image;
+		public final byte[] data;
+		public long captureTime;
+
+		public Frame(int width, int height)
+		{
+			this.width = width;
+			this.height = height;
+			if (width > 0 && height > 0)
+			{
+				image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+				data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+			}
+			else
+			{
+				image = null;
+				data = null;
+			}
+		}
+	}
 }
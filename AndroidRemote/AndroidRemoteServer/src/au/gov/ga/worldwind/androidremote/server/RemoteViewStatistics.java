@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.androidremote.server;
+
+/**
+ * Records timing statistics for the remote view stream: frames per second,
+ * latency between frame capture and the frame being sent, the time taken to
+ * encode and send each frame, and the throughput of the connection.
+ * <p/>
+ * Values are exponential moving averages, so they respond quickly to changes
+ * in the connection.
+ */
+public class RemoteViewStatistics
+{
+	private static final double SMOOTHING = 0.2;
+
+	private long lastFrameTime = -1;
+	private double frameInterval = 0;
+	private double latency = 0;
+	private double sendTime = 0;
+	private double bytesPerSecond = 0;
+	private long frameCount = 0;
+
+	/**
+	 * Record a sent frame.
+	 *
+	 * @param captureTime
+	 *            {@link System#nanoTime()} when the frame was read back from
+	 *            the frame buffer
+	 * @param sendStartTime
+	 *            {@link System#nanoTime()} when encoding of the frame started
+	 * @param sentTime
+	 *            {@link System#nanoTime()} when the frame finished sending
+	 * @param bytes
+	 *            Size of the encoded frame
+	 */
+	public synchronized void frameSent(long captureTime, long sendStartTime, long sentTime, int bytes)
+	{
+		double send = (sentTime - sendStartTime) / 1e9;
+		if (lastFrameTime >= 0)
+		{
+			frameInterval = smooth(frameInterval, (sentTime - lastFrameTime) / 1e9);
+		}
+		latency = smooth(latency, (sentTime - captureTime) / 1e9);
+		sendTime = smooth(sendTime, send);
+		if (send > 0)
+		{
+			bytesPerSecond = smooth(bytesPerSecond, bytes / send);
+		}
+		lastFrameTime = sentTime;
+		frameCount++;
+	}
+
+	private static double smooth(double average, double value)
+	{
+		return average == 0 ? value : average + SMOOTHING * (value - average);
+	}
+
+	/**
+	 * Reset the statistics (for example, when the stream is restarted).
+	 */
+	public synchronized void reset()
+	{
+		lastFrameTime = -1;
+		frameInterval = latency = sendTime = bytesPerSecond = 0;
+		frameCount = 0;
+	}
+
+	/**
+	 * @return Number of frames sent
+	 */
+	public synchronized long getFrameCount()
+	{
+		return frameCount;
+	}
+
+	/**
+	 * @return Frames sent per second
+	 */
+	public synchronized double getFramesPerSecond()
+	{
+		return frameInterval > 0 ? 1d / frameInterval : 0;
+	}
+
+	/**
+	 * @return Average time in seconds between frame capture and the frame
+	 *         being sent
+	 */
+	public synchronized double getLatency()
+	{
+		return latency;
+	}
+
+	/**
+	 * @return Average time in seconds taken to encode and send a frame
+	 */
+	public synchronized double getSendTime()
+	{
+		return sendTime;
+	}
+
+	/**
+	 * @return Average throughput of the connection while sending, in bytes per
+	 *         second
+	 */
+	public synchronized double getBytesPerSecond()
+	{
+		return bytesPerSecond;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return String.format("%.1f fps, latency %.0f ms, send %.0f ms, %.0f KB/s", getFramesPerSecond(),
+				latency * 1000, sendTime * 1000, bytesPerSecond / 1024);
+	}
+}
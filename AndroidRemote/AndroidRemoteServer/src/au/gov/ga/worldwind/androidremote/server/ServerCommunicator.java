@@ -18,6 +18,7 @@ package au.gov.ga.worldwind.androidremote.server;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
 
 import javax.bluetooth.DiscoveryAgent;
 import javax.bluetooth.LocalDevice;
@@ -29,7 +30,8 @@ import javax.microedition.io.StreamConnectionNotifier;
 import au.gov.ga.worldwind.androidremote.shared.AbstractCommunicator;
 import au.gov.ga.worldwind.androidremote.shared.Communicator;
 import au.gov.ga.worldwind.androidremote.shared.Message;
-import au.gov.ga.worldwind.androidremote.shared.MessageIO;
+import au.gov.ga.worldwind.androidremote.shared.MessageReader;
+import au.gov.ga.worldwind.androidremote.shared.MessageWriter;
 import au.gov.ga.worldwind.androidremote.shared.messages.ExitMessage;
 
 /**
@@ -60,6 +62,7 @@ public class ServerCommunicator extends AbstractCommunicator
 	private StreamConnection connection;
 	private OutputStream os;
 	private InputStream is;
+	private MessageWriter writer;
 	private ListenThread listenThread;
 	private ConnectThread connectThread;
 
@@ -109,7 +112,11 @@ public class ServerCommunicator extends AbstractCommunicator
 			return;
 		}
 
-		connectThread = new ConnectThread();
+		synchronized (this)
+		{
+			writer = new MessageWriter(Channels.newChannel(os));
+		}
+		connectThread = new ConnectThread(new MessageReader(Channels.newChannel(is)));
 		connectThread.setName("Connection reader");
 		connectThread.setDaemon(true);
 		connectThread.start();
@@ -117,13 +124,14 @@ public class ServerCommunicator extends AbstractCommunicator
 	}
 
 	@Override
-	public void sendMessage(Message<?> message)
+	public synchronized void sendMessage(Message<?> message)
 	{
-		if (os != null)
+		if (writer != null)
 		{
 			try
 			{
-				MessageIO.writeMessage(message, os);
+				writer.write(message);
+				writer.flush();
 			}
 			catch (IOException e)
 			{
@@ -159,6 +167,10 @@ public class ServerCommunicator extends AbstractCommunicator
 			{
 				e.printStackTrace();
 			}
+			synchronized (this)
+			{
+				writer = null;
+			}
 			is = null;
 			os = null;
 			connection = null;
@@ -226,8 +238,14 @@ public class ServerCommunicator extends AbstractCommunicator
 
 	private class ConnectThread extends Thread
 	{
+		private final MessageReader reader;
 		private boolean cancelled = false;
 
+		public ConnectThread(MessageReader reader)
+		{
+			this.reader = reader;
+		}
+
 		@Override
 		public void run()
 		{
@@ -236,7 +254,7 @@ public class ServerCommunicator extends AbstractCommunicator
 			{
 				try
 				{
-					Message<?> message = MessageIO.readMessage(is);
+					Message<?> message = reader.readMessage();
 					if (message instanceof ExitMessage)
 					{
 						closeConnection();
@@ -254,6 +272,7 @@ public class ServerCommunicator extends AbstractCommunicator
 					}
 					e.printStackTrace();
 					setState(ServerCommunicator.State.LISTEN);
+					return;
 				}
 			}
 		}
@@ -15,18 +15,16 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.androidremote.server;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
 import au.gov.ga.worldwind.androidremote.shared.AbstractCommunicator;
 import au.gov.ga.worldwind.androidremote.shared.Communicator;
 import au.gov.ga.worldwind.androidremote.shared.Message;
-import au.gov.ga.worldwind.androidremote.shared.MessageIO;
+import au.gov.ga.worldwind.androidremote.shared.MessageReader;
+import au.gov.ga.worldwind.androidremote.shared.MessageWriter;
 import au.gov.ga.worldwind.androidremote.shared.messages.ExitMessage;
 
 /**
@@ -50,13 +48,12 @@ public class SocketServerCommunicator extends AbstractCommunicator
 	}
 
 	private static final int PORT = 23549;
-	private ServerSocket provider;
-	private Socket connection;
+	private ServerSocketChannel provider;
+	private SocketChannel connection;
 
 	private boolean providerClosed = false;
 	private boolean connectionClosed = false;
-	private OutputStream os;
-	private InputStream is;
+	private MessageWriter writer;
 
 	public void listen()
 	{
@@ -64,7 +61,8 @@ public class SocketServerCommunicator extends AbstractCommunicator
 
 		try
 		{
-			provider = new ServerSocket(PORT);
+			provider = ServerSocketChannel.open();
+			provider.socket().bind(new InetSocketAddress(PORT));
 			providerClosed = false;
 		}
 		catch (IOException e)
@@ -84,7 +82,7 @@ public class SocketServerCommunicator extends AbstractCommunicator
 					try
 					{
 						System.out.println("Listening for connection...");
-						Socket connection = provider.accept(); //blocking
+						SocketChannel connection = provider.accept(); //blocking
 						connect(connection);
 					}
 					catch (IOException e)
@@ -104,7 +102,7 @@ public class SocketServerCommunicator extends AbstractCommunicator
 		setState(State.LISTEN);
 	}
 
-	private void connect(Socket connection)
+	private void connect(SocketChannel connection)
 	{
 		closeConnection();
 		this.connection = connection;
@@ -112,8 +110,7 @@ public class SocketServerCommunicator extends AbstractCommunicator
 
 		try
 		{
-			is = new BufferedInputStream(connection.getInputStream());
-			os = new BufferedOutputStream(connection.getOutputStream());
+			connection.socket().setTcpNoDelay(true);
 		}
 		catch (IOException e)
 		{
@@ -121,6 +118,11 @@ public class SocketServerCommunicator extends AbstractCommunicator
 			closeConnection();
 			return;
 		}
+		final MessageReader reader = new MessageReader(connection);
+		synchronized (this)
+		{
+			writer = new MessageWriter(connection);
+		}
 
 		Thread thread = new Thread(new Runnable()
 		{
@@ -132,7 +134,7 @@ public class SocketServerCommunicator extends AbstractCommunicator
 				{
 					try
 					{
-						Message<?> message = MessageIO.readMessage(is);
+						Message<?> message = reader.readMessage();
 						if (message instanceof ExitMessage)
 						{
 							closeConnection();
@@ -161,13 +163,14 @@ public class SocketServerCommunicator extends AbstractCommunicator
 	}
 
 	@Override
-	public void sendMessage(Message<?> message)
+	public synchronized void sendMessage(Message<?> message)
 	{
-		if (os != null)
+		if (writer != null)
 		{
 			try
 			{
-				MessageIO.writeMessage(message, os);
+				writer.write(message);
+				writer.flush();
 			}
 			catch (IOException e)
 			{
@@ -190,16 +193,16 @@ public class SocketServerCommunicator extends AbstractCommunicator
 			connectionClosed = true;
 			try
 			{
-				is.close();
-				os.close();
 				connection.close();
 			}
 			catch (IOException e)
 			{
 				e.printStackTrace();
 			}
-			is = null;
-			os = null;
+			synchronized (this)
+			{
+				writer = null;
+			}
 			connection = null;
 		}
 	}
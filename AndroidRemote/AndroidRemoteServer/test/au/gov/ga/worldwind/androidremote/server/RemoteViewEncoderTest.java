@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.androidremote.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link RemoteViewEncoder} class.
+ */
+public class RemoteViewEncoderTest
+{
+	private static final int WIDTH = 10;
+	private static final int HEIGHT = 8;
+	private static final int BANDS = 3;
+
+	private byte[] previous;
+	private byte[] current;
+
+	@Before
+	public void setup()
+	{
+		previous = new byte[WIDTH * HEIGHT * BANDS];
+		new Random(1).nextBytes(previous);
+		current = previous.clone();
+	}
+
+	@Test
+	public void testNoChange()
+	{
+		assertNull(RemoteViewEncoder.computeDirtyRegion(previous, current, WIDTH, HEIGHT, BANDS));
+	}
+
+	@Test
+	public void testSinglePixel()
+	{
+		change(5, 3, 0);
+		assertEquals(new Rectangle(5, 3, 1, 1), RemoteViewEncoder.computeDirtyRegion(previous, current, WIDTH, HEIGHT, BANDS));
+	}
+
+	@Test
+	public void testSingleBandOfPixel()
+	{
+		change(4, 6, BANDS - 1);
+		assertEquals(new Rectangle(4, 6, 1, 1), RemoteViewEncoder.computeDirtyRegion(previous, current, WIDTH, HEIGHT, BANDS));
+	}
+
+	@Test
+	public void testFullFrame()
+	{
+		for (int i = 0; i < current.length; i++)
+		{
+			current[i]++;
+		}
+		assertEquals(new Rectangle(0, 0, WIDTH, HEIGHT), RemoteViewEncoder.computeDirtyRegion(previous, current, WIDTH, HEIGHT, BANDS));
+	}
+
+	@Test
+	public void testOppositeCorners()
+	{
+		change(0, 0, 0);
+		change(WIDTH - 1, HEIGHT - 1, BANDS - 1);
+		assertEquals(new Rectangle(0, 0, WIDTH, HEIGHT), RemoteViewEncoder.computeDirtyRegion(previous, current, WIDTH, HEIGHT, BANDS));
+	}
+
+	@Test
+	public void testEdges()
+	{
+		change(WIDTH - 1, 4, 1);
+		assertEquals(new Rectangle(WIDTH - 1, 4, 1, 1), RemoteViewEncoder.computeDirtyRegion(previous, current, WIDTH, HEIGHT, BANDS));
+
+		setup();
+		change(0, HEIGHT - 1, 0);
+		assertEquals(new Rectangle(0, HEIGHT - 1, 1, 1), RemoteViewEncoder.computeDirtyRegion(previous, current, WIDTH, HEIGHT, BANDS));
+
+		setup();
+		change(3, 0, 0);
+		change(7, 0, 2);
+		assertEquals(new Rectangle(3, 0, 5, 1), RemoteViewEncoder.computeDirtyRegion(previous, current, WIDTH, HEIGHT, BANDS));
+	}
+
+	@Test
+	public void testRegionsInDifferentRows()
+	{
+		change(6, 1, 0);
+		change(2, 5, 0);
+		assertEquals(new Rectangle(2, 1, 5, 5), RemoteViewEncoder.computeDirtyRegion(previous, current, WIDTH, HEIGHT, BANDS));
+	}
+
+	@Test
+	public void testEncodeRegion() throws Exception
+	{
+		BufferedImage image = new BufferedImage(32, 24, BufferedImage.TYPE_3BYTE_BGR);
+		RemoteViewEncoder encoder = new RemoteViewEncoder();
+		try
+		{
+			ByteBuffer full = encoder.encode(image, null);
+			assertEquals(32, decode(full).getWidth());
+
+			ByteBuffer region = encoder.encode(image, new Rectangle(8, 4, 12, 16));
+			BufferedImage decoded = decode(region);
+			assertEquals(12, decoded.getWidth());
+			assertEquals(16, decoded.getHeight());
+		}
+		finally
+		{
+			encoder.dispose();
+		}
+	}
+
+	private void change(int x, int y, int band)
+	{
+		current[(y * WIDTH + x) * BANDS + band]++;
+	}
+
+	private static BufferedImage decode(ByteBuffer buffer) throws Exception
+	{
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return ImageIO.read(new ByteArrayInputStream(bytes));
+	}
+}
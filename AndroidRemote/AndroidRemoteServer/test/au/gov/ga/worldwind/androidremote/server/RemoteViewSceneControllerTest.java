@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.androidremote.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.androidremote.server.RemoteViewSceneController.Frame;
+import au.gov.ga.worldwind.androidremote.shared.AbstractCommunicator;
+import au.gov.ga.worldwind.androidremote.shared.Message;
+import au.gov.ga.worldwind.androidremote.shared.MessageReader;
+import au.gov.ga.worldwind.androidremote.shared.MessageWriter;
+import au.gov.ga.worldwind.androidremote.shared.messages.EnableRemoteViewMessage;
+import au.gov.ga.worldwind.androidremote.shared.messages.RemoteViewMessage;
+
+/**
+ * Tests the {@link RemoteViewSceneController}'s sending thread against a
+ * client connected through a local socket.
+ */
+public class RemoteViewSceneControllerTest
+{
+	/** Device screen size; the remote view is sent at half this resolution */
+	private static final int SCREEN_WIDTH = 64;
+	private static final int SCREEN_HEIGHT = 48;
+	private static final int WIDTH = SCREEN_WIDTH / 2;
+	private static final int HEIGHT = SCREEN_HEIGHT / 2;
+
+	private ServerSocketChannel serverChannel;
+	private SocketChannel serverConnection;
+	private Socket client;
+	private MessageReader reader;
+	private RemoteViewSceneController controller;
+
+	@Before
+	public void setup() throws IOException
+	{
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+
+		client = new Socket(InetAddress.getByName("127.0.0.1"), serverChannel.socket().getLocalPort());
+		client.setSoTimeout(10000);
+		reader = new MessageReader(Channels.newChannel(client.getInputStream()));
+		serverConnection = serverChannel.accept();
+
+		controller = new RemoteViewSceneController();
+		controller.setup(new LoopbackCommunicator(serverConnection), null);
+		controller.receivedMessage(new EnableRemoteViewMessage(true, SCREEN_WIDTH, SCREEN_HEIGHT));
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		client.close();
+		serverConnection.close();
+		serverChannel.close();
+	}
+
+	@Test
+	public void testFirstFrameIsSentInFull() throws Exception
+	{
+		byte[] pixels = createPixels();
+		send(pixels);
+
+		RemoteViewMessage message = readRemoteViewMessage();
+		assertRegion(message, 0, 0, WIDTH, HEIGHT);
+	}
+
+	@Test
+	public void testChangedRegionIsSent() throws Exception
+	{
+		byte[] pixels = createPixels();
+		send(pixels);
+		assertRegion(readRemoteViewMessage(), 0, 0, WIDTH, HEIGHT);
+
+		fill(pixels, 20, 10, 4, 6, (byte) 200);
+		send(pixels);
+		assertRegion(readRemoteViewMessage(), 20, 10, 4, 6);
+	}
+
+	@Test
+	public void testUnchangedFrameIsNotSent() throws Exception
+	{
+		byte[] pixels = createPixels();
+		send(pixels);
+		assertRegion(readRemoteViewMessage(), 0, 0, WIDTH, HEIGHT);
+
+		//identical frame shouldn't produce a message, so the next message read is for the frame after
+		send(pixels);
+		fill(pixels, 0, HEIGHT - 2, 3, 2, (byte) 17);
+		send(pixels);
+		assertRegion(readRemoteViewMessage(), 0, HEIGHT - 2, 3, 2);
+	}
+
+	@Test
+	public void testCopyUsesDimensionsOfFrame() throws Exception
+	{
+		Frame frame = controller.pollFreeFrame();
+		assertEquals(WIDTH, frame.width);
+
+		//the device's screen size changes after the pixels are read
+		controller.receivedMessage(new EnableRemoteViewMessage(true, SCREEN_WIDTH * 2, SCREEN_HEIGHT * 2));
+
+		byte[] pixels = createPixels();
+		fill(pixels, 0, 0, WIDTH, 1, (byte) 7);
+		assertTrue(controller.copyFlipped(ByteBuffer.wrap(pixels), frame));
+
+		//the first row read is the bottom row of the image
+		byte[] expected = createPixels();
+		fill(expected, 0, HEIGHT - 1, WIDTH, 1, (byte) 7);
+		assertArrayEquals(expected, frame.data);
+	}
+
+	@Test
+	public void testFrameOfDifferentSizeIsDropped() throws Exception
+	{
+		Frame frame = controller.pollFreeFrame();
+		assertFalse(controller.copyFlipped(ByteBuffer.allocate(WIDTH * 2 * HEIGHT * 2 * 3), frame));
+		assertFalse(controller.copyFlipped(ByteBuffer.allocate(WIDTH * HEIGHT), frame));
+	}
+
+	private void send(byte[] pixels) throws InterruptedException
+	{
+		Frame frame = null;
+		long timeout = System.currentTimeMillis() + 10000;
+		while ((frame = controller.pollFreeFrame()) == null)
+		{
+			assertTrue("Timed out waiting for a free frame", System.currentTimeMillis() < timeout);
+			Thread.sleep(5);
+		}
+		System.arraycopy(pixels, 0, frame.data, 0, pixels.length);
+		frame.captureTime = System.nanoTime();
+		controller.queueFrame(frame);
+	}
+
+	private RemoteViewMessage readRemoteViewMessage() throws IOException
+	{
+		Message<?> message = reader.readMessage();
+		assertTrue("Unexpected message " + message, message instanceof RemoteViewMessage);
+		return (RemoteViewMessage) message;
+	}
+
+	private static void assertRegion(RemoteViewMessage message, int x, int y, int width, int height)
+			throws IOException
+	{
+		assertEquals(WIDTH, message.frameWidth);
+		assertEquals(HEIGHT, message.frameHeight);
+		assertEquals(x, message.x);
+		assertEquals(y, message.y);
+
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(message.buffer.array()));
+		assertNotNull(image);
+		assertEquals(width, image.getWidth());
+		assertEquals(height, image.getHeight());
+	}
+
+	private static byte[] createPixels()
+	{
+		byte[] pixels = new byte[WIDTH * HEIGHT * 3];
+		Arrays.fill(pixels, (byte) 90);
+		return pixels;
+	}
+
+	private static void fill(byte[] pixels, int x, int y, int width, int height, byte value)
+	{
+		for (int row = y; row < y + height; row++)
+		{
+			int start = (row * WIDTH + x) * 3;
+			Arrays.fill(pixels, start, start + width * 3, value);
+		}
+	}
+
+	/**
+	 * Communicator that writes messages to an already connected socket.
+	 */
+	private static class LoopbackCommunicator extends AbstractCommunicator
+	{
+		private final MessageWriter writer;
+
+		public LoopbackCommunicator(SocketChannel channel)
+		{
+			writer = new MessageWriter(channel);
+			setState(State.CONNECTED);
+		}
+
+		@Override
+		public synchronized void sendMessage(Message<?> message)
+		{
+			try
+			{
+				writer.write(message);
+				writer.flush();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+}
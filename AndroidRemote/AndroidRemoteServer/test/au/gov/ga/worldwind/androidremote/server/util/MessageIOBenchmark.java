@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.androidremote.server.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import au.gov.ga.worldwind.androidremote.shared.Message;
+import au.gov.ga.worldwind.androidremote.shared.MessageIO;
+import au.gov.ga.worldwind.androidremote.shared.MessageReader;
+import au.gov.ga.worldwind.androidremote.shared.MessageWriter;
+import au.gov.ga.worldwind.androidremote.shared.messages.finger.Finger;
+import au.gov.ga.worldwind.androidremote.shared.messages.finger.MoveMessage;
+
+/**
+ * Simple loopback benchmark comparing the stream based
+ * {@link MessageIO#writeMessage(Message, OutputStream)} /
+ * {@link MessageIO#readMessage(InputStream)} methods (one allocation and one
+ * flush per message) with the buffer reusing {@link MessageWriter} /
+ * {@link MessageReader} classes (one flush per burst of messages).
+ * <p/>
+ * Sends bursts of {@link MoveMessage}s, which are the most frequently sent
+ * message, over a local socket and prints the message throughput of each. Not
+ * run as part of the unit tests; run manually:
+ * 
+ * <pre>
+ * java au.gov.ga.worldwind.androidremote.server.util.MessageIOBenchmark
+ * </pre>
+ */
+public class MessageIOBenchmark
+{
+	private static final int MESSAGE_COUNT = 200000;
+	private static final int BURST_SIZE = 8;
+	private static final int RUNS = 3;
+
+	public static void main(String[] args) throws Exception
+	{
+		Finger[] fingers =
+				new Finger[] { new Finger(0, 100.5f, 200.5f, 1.5f, -2.5f, true),
+						new Finger(1, 300.5f, 400.5f, -0.5f, 0.5f, true) };
+		MoveMessage message = new MoveMessage(fingers);
+
+		for (int run = 0; run < RUNS; run++)
+		{
+			report("MessageIO", MESSAGE_COUNT, runLegacy(message));
+			report("MessageWriter/MessageReader", MESSAGE_COUNT, runBatched(message));
+		}
+	}
+
+	private static void report(String name, int count, long nanos)
+	{
+		double seconds = nanos / 1e9;
+		System.out.println(String.format("%-30s %8.0f ms %12.0f messages/s", name, seconds * 1000, count
+				/ seconds));
+	}
+
+	private static long runLegacy(Message<?> message) throws Exception
+	{
+		ServerSocketChannel server = openServer();
+		final SocketChannel receiver = SocketChannel.open(server.socket().getLocalSocketAddress());
+		SocketChannel sender = server.accept();
+		server.close();
+		try
+		{
+			Reader reader = startReader(new MessageSource()
+			{
+				private final InputStream is = new BufferedInputStream(receiver.socket().getInputStream());
+
+				@Override
+				public Message<?> read() throws IOException
+				{
+					return MessageIO.readMessage(is);
+				}
+			});
+
+			OutputStream os = new BufferedOutputStream(sender.socket().getOutputStream());
+			long start = System.nanoTime();
+			for (int i = 0; i < MESSAGE_COUNT; i++)
+			{
+				MessageIO.writeMessage(message, os);
+			}
+			reader.joinReader();
+			return System.nanoTime() - start;
+		}
+		finally
+		{
+			sender.close();
+			receiver.close();
+		}
+	}
+
+	private static long runBatched(Message<?> message) throws Exception
+	{
+		ServerSocketChannel server = openServer();
+		SocketChannel receiver = SocketChannel.open(server.socket().getLocalSocketAddress());
+		SocketChannel sender = server.accept();
+		server.close();
+		try
+		{
+			final MessageReader messageReader = new MessageReader(receiver);
+			Reader reader = startReader(new MessageSource()
+			{
+				@Override
+				public Message<?> read() throws IOException
+				{
+					return messageReader.readMessage();
+				}
+			});
+
+			MessageWriter writer = new MessageWriter(sender);
+			long start = System.nanoTime();
+			for (int i = 0; i < MESSAGE_COUNT; i++)
+			{
+				writer.write(message);
+				if ((i + 1) % BURST_SIZE == 0)
+				{
+					writer.flush();
+				}
+			}
+			writer.flush();
+			reader.joinReader();
+			return System.nanoTime() - start;
+		}
+		finally
+		{
+			sender.close();
+			receiver.close();
+		}
+	}
+
+	private static ServerSocketChannel openServer() throws IOException
+	{
+		ServerSocketChannel server = ServerSocketChannel.open();
+		server.socket().bind(new InetSocketAddress(InetAddress.getByName(null), 0));
+		return server;
+	}
+
+	private static Reader startReader(MessageSource source)
+	{
+		Reader reader = new Reader(source);
+		reader.setName("Benchmark reader");
+		reader.setDaemon(true);
+		reader.start();
+		return reader;
+	}
+
+	private static interface MessageSource
+	{
+		Message<?> read() throws IOException;
+	}
+
+	/**
+	 * Thread that reads the expected number of messages. A read failure is
+	 * rethrown by {@link #joinReader()}, so that a failed run isn't reported.
+	 */
+	private static class Reader extends Thread
+	{
+		private final MessageSource source;
+		private volatile IOException failure;
+
+		public Reader(MessageSource source)
+		{
+			this.source = source;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				for (int i = 0; i < MESSAGE_COUNT; i++)
+				{
+					if (source.read() == null)
+					{
+						throw new IOException("Failed to read message " + i);
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				failure = e;
+			}
+		}
+
+		public void joinReader() throws InterruptedException, IOException
+		{
+			join();
+			if (failure != null)
+			{
+				throw failure;
+			}
+		}
+	}
+}
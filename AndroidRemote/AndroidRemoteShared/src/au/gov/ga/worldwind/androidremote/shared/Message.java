@@ -21,6 +21,10 @@ import java.nio.ByteBuffer;
  * Super interface for all messages. Implementations can be sent between devices
  * using a {@link Communicator}. Handles serialization/deserialization from a
  * byte buffer.
+ * <p/>
+ * The buffer passed to {@link #fromBytes(ByteBuffer)} may be reused for
+ * subsequent messages (see {@link MessageReader}), so implementations must not
+ * keep a reference to it, and must copy any data they need to retain.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  * 
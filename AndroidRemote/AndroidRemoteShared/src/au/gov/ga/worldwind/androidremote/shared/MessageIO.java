@@ -23,6 +23,12 @@ import java.nio.charset.Charset;
 
 /**
  * Helper class used to serialize/deserialize messages from byte buffers.
+ * <p/>
+ * The stream based {@link #readMessage(InputStream)} and
+ * {@link #writeMessage(Message, OutputStream)} methods allocate a new buffer
+ * for each message; the {@link MessageReader} and {@link MessageWriter}
+ * classes use the same framing but reuse their buffers, and should be
+ * preferred for connections that send many messages.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
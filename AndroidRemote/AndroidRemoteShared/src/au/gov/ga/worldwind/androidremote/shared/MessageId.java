@@ -47,13 +47,13 @@ import au.gov.ga.worldwind.androidremote.shared.messages.ve.VerticalExaggeration
 public enum MessageId
 {
 	DOWN(DownMessage.class),
-	MOVE(MoveMessage.class),
+	MOVE(MoveMessage.class, Supersede.CONSECUTIVE),
 	UP(UpMessage.class),
 	SHAKE(ShakeMessage.class),
 	ENABLE_REMOTE_VIEW(EnableRemoteViewMessage.class),
 	REMOTE_VIEW(RemoteViewMessage.class),
 	IP_ADDRESSES(IpAddressesMessage.class),
-	VERTICAL_EXAGGERATION(VerticalExaggerationMessage.class),
+	VERTICAL_EXAGGERATION(VerticalExaggerationMessage.class, Supersede.ALWAYS),
 
 	ITEMS_REFRESHED(ItemsRefreshedMessage.class),
 	ITEM_ADDED(ItemAddedMessage.class),
@@ -66,7 +66,7 @@ public enum MessageId
 	PLACES_PLAYING(PlacesPlayingMessage.class),
 	FLY_HOME(FlyHomeMessage.class),
 	
-	LOCATION(LocationMessage.class),
+	LOCATION(LocationMessage.class, Supersede.ALWAYS),
 
 	EXIT(ExitMessage.class);
 
@@ -74,11 +74,22 @@ public enum MessageId
 	 * Class that implements this message.
 	 */
 	public final Class<? extends Message<?>> messageClass;
+	/**
+	 * Whether a newer message of this type supersedes a queued message of
+	 * this type that hasn't been sent yet.
+	 */
+	public final Supersede supersede;
 	private final Constructor<? extends Message<?>> classConstructor;
 
 	private MessageId(Class<? extends Message<?>> messageClass)
+	{
+		this(messageClass, Supersede.NEVER);
+	}
+
+	private MessageId(Class<? extends Message<?>> messageClass, Supersede supersede)
 	{
 		this.messageClass = messageClass;
+		this.supersede = supersede;
 		try
 		{
 			classConstructor = messageClass.getDeclaredConstructor();
@@ -115,4 +126,26 @@ public enum MessageId
 			return null;
 		}
 	}
+
+	/**
+	 * Defines when a queued message can be replaced by a newer message of the
+	 * same type. Only messages that contain the entire state they describe
+	 * (rather than a change to the state) can be superseded.
+	 */
+	public enum Supersede
+	{
+		/**
+		 * Every message must be sent.
+		 */
+		NEVER,
+		/**
+		 * A queued message can be replaced if no other message has been queued
+		 * after it.
+		 */
+		CONSECUTIVE,
+		/**
+		 * Only the latest message matters; a queued message is always replaced.
+		 */
+		ALWAYS
+	}
 }
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.androidremote.shared;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import au.gov.ga.worldwind.androidremote.shared.MessageId.Supersede;
+
+/**
+ * Queue of messages waiting to be sent. Queued messages that are superseded by
+ * a newer message of the same type (see {@link MessageId#supersede}) are
+ * dropped, so a slow connection only sends the latest state.
+ * <p/>
+ * The sending thread should take all queued messages at once using
+ * {@link #takeAll(List)}, write them, and then flush, so that bursts of
+ * messages are coalesced into a single write. Once the queue is
+ * {@link #close()}d, {@link #takeAll(List)} returns the remaining messages and
+ * then returns false, allowing the sending thread to finish sending before
+ * the connection is closed.
+ */
+public class MessageQueue
+{
+	private final LinkedList<Message<?>> queue = new LinkedList<Message<?>>();
+	private final Message<?>[] latest = new Message<?>[MessageId.values().length];
+	private boolean closed = false;
+
+	/**
+	 * Add a message to the queue, removing any queued message that it
+	 * supersedes.
+	 *
+	 * @param message
+	 *            Message to add
+	 */
+	public synchronized void add(Message<?> message)
+	{
+		MessageId id = message.getId();
+		Message<?> previous = latest[id.getId()];
+		if (previous != null)
+		{
+			if (id.supersede == Supersede.ALWAYS)
+			{
+				queue.remove(previous);
+			}
+			else if (id.supersede == Supersede.CONSECUTIVE && queue.getLast() == previous)
+			{
+				queue.removeLast();
+			}
+		}
+		if (id.supersede != Supersede.NEVER)
+		{
+			latest[id.getId()] = message;
+		}
+		queue.add(message);
+		notifyAll();
+	}
+
+	/**
+	 * Wait until the queue contains messages, and then move all queued
+	 * messages to the given list.
+	 *
+	 * @param messages
+	 *            List to add the queued messages to
+	 * @return False if the queue has been closed and there are no more
+	 *         messages to send
+	 * @throws InterruptedException
+	 *             If interrupted while waiting
+	 */
+	public synchronized boolean takeAll(List<Message<?>> messages) throws InterruptedException
+	{
+		while (queue.isEmpty() && !closed)
+		{
+			wait();
+		}
+		if (queue.isEmpty())
+		{
+			return false;
+		}
+		drainTo(messages);
+		return true;
+	}
+
+	/**
+	 * Move all queued messages to the given list without waiting.
+	 *
+	 * @param messages
+	 *            List to add the queued messages to
+	 */
+	public synchronized void drainTo(List<Message<?>> messages)
+	{
+		messages.addAll(queue);
+		queue.clear();
+		for (int i = 0; i < latest.length; i++)
+		{
+			latest[i] = null;
+		}
+	}
+
+	/**
+	 * Close the queue. Threads waiting in {@link #takeAll(List)} are woken,
+	 * and receive any remaining messages.
+	 */
+	public synchronized void close()
+	{
+		closed = true;
+		notifyAll();
+	}
+
+	/**
+	 * @return Number of queued messages
+	 */
+	public synchronized int size()
+	{
+		return queue.size();
+	}
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.androidremote.shared;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads messages from a {@link ReadableByteChannel}, using the same framing as
+ * {@link MessageIO#readMessage(java.io.InputStream)} (message id, length,
+ * message bytes).
+ * <p/>
+ * A single direct buffer is reused for all messages, and is filled with as
+ * many bytes as the channel has available, so bursts of small messages are
+ * read with a single read call. Messages are deserialized directly from the
+ * buffer, so {@link Message#fromBytes(ByteBuffer)} implementations must copy
+ * any data they need to keep.
+ * <p/>
+ * Instances are not thread safe, and should be used by a single reading
+ * thread.
+ */
+public class MessageReader
+{
+	public static final int HEADER_LENGTH = 4 + 4;
+	private static final MessageId[] MESSAGE_IDS = MessageId.values();
+
+	private final ReadableByteChannel channel;
+	private ByteBuffer buffer;
+
+	public MessageReader(ReadableByteChannel channel)
+	{
+		this(channel, 8 * 1024);
+	}
+
+	public MessageReader(ReadableByteChannel channel, int initialCapacity)
+	{
+		this.channel = channel;
+		buffer = ByteBuffer.allocateDirect(Math.max(HEADER_LENGTH, initialCapacity));
+		buffer.flip();
+	}
+
+	/**
+	 * Read the next message from the channel. Blocks until an entire message
+	 * has been read.
+	 *
+	 * @return Next message read from the channel, or null if the message could
+	 *         not be instantiated
+	 * @throws EOFException
+	 *             If the end of the channel was reached
+	 * @throws IOException
+	 *             If reading fails, or the message header is invalid
+	 */
+	public Message<?> readMessage() throws IOException
+	{
+		fill(HEADER_LENGTH);
+		int start = buffer.position();
+		int id = buffer.getInt(start);
+		int length = buffer.getInt(start + 4);
+		if (id < 0 || id >= MESSAGE_IDS.length || length < 0)
+		{
+			throw new IOException("Invalid message header (id = " + id + ", length = " + length + ")");
+		}
+
+		fill(HEADER_LENGTH + length);
+		start = buffer.position();
+		int end = start + HEADER_LENGTH + length;
+		int limit = buffer.limit();
+		buffer.position(start + HEADER_LENGTH);
+		buffer.limit(end);
+		try
+		{
+			return MESSAGE_IDS[id].fromBytes(buffer);
+		}
+		finally
+		{
+			buffer.limit(limit);
+			buffer.position(end);
+		}
+	}
+
+	/**
+	 * Ensure at least <code>required</code> bytes are remaining in the buffer,
+	 * reading from the channel if necessary.
+	 */
+	private void fill(int required) throws IOException
+	{
+		if (buffer.remaining() >= required)
+		{
+			return;
+		}
+
+		if (buffer.capacity() < required)
+		{
+			ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(required, buffer.capacity() * 2));
+			larger.put(buffer);
+			larger.flip();
+			buffer = larger;
+		}
+
+		buffer.compact();
+		while (buffer.position() < required)
+		{
+			if (channel.read(buffer) < 0)
+			{
+				buffer.flip();
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+	}
+}
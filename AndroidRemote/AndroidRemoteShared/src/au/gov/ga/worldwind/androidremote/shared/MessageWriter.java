@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.androidremote.shared;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes messages to a {@link WritableByteChannel}, using the same framing as
+ * {@link MessageIO#writeMessage(Message, java.io.OutputStream)} (message id,
+ * length, message bytes).
+ * <p/>
+ * Messages are serialized directly into a reused direct buffer, and are only
+ * written to the channel when {@link #flush()} is called (or the buffer is
+ * full), so a burst of small messages is written with a single write call.
+ * Messages too large for the buffer are serialized into a separate reused
+ * buffer, and written together with any pending messages using a gathering
+ * write.
+ * <p/>
+ * Instances are not thread safe; callers must synchronize access if messages
+ * are written from multiple threads.
+ */
+public class MessageWriter
+{
+	private final WritableByteChannel channel;
+	private final ByteBuffer batch;
+	private ByteBuffer large;
+	private final ByteBuffer[] buffers = new ByteBuffer[2];
+
+	public MessageWriter(WritableByteChannel channel)
+	{
+		this(channel, 8 * 1024);
+	}
+
+	public MessageWriter(WritableByteChannel channel, int batchCapacity)
+	{
+		this.channel = channel;
+		batch = ByteBuffer.allocateDirect(Math.max(MessageReader.HEADER_LENGTH, batchCapacity));
+		large = ByteBuffer.allocateDirect(batch.capacity());
+	}
+
+	/**
+	 * Add a message to the pending messages. Pending messages are written to
+	 * the channel when {@link #flush()} is called.
+	 *
+	 * @param message
+	 *            Message to write
+	 * @throws IOException
+	 *             If writing to the channel fails
+	 */
+	public void write(Message<?> message) throws IOException
+	{
+		int length = message.getLength();
+		int frameLength = MessageReader.HEADER_LENGTH + length;
+
+		if (frameLength > batch.capacity())
+		{
+			if (large.capacity() < frameLength)
+			{
+				large = ByteBuffer.allocateDirect(Math.max(frameLength, large.capacity() * 2));
+			}
+			large.clear();
+			serialize(message, length, large);
+			large.flip();
+			batch.flip();
+			writeFully(batch, large);
+			batch.clear();
+			return;
+		}
+
+		if (batch.remaining() < frameLength)
+		{
+			flush();
+		}
+		serialize(message, length, batch);
+	}
+
+	/**
+	 * Write all pending messages to the channel.
+	 *
+	 * @throws IOException
+	 *             If writing to the channel fails
+	 */
+	public void flush() throws IOException
+	{
+		if (batch.position() == 0)
+		{
+			return;
+		}
+		batch.flip();
+		try
+		{
+			while (batch.hasRemaining())
+			{
+				channel.write(batch);
+			}
+		}
+		finally
+		{
+			batch.clear();
+		}
+	}
+
+	private static void serialize(Message<?> message, int length, ByteBuffer buffer)
+	{
+		buffer.putInt(message.getId().getId());
+		buffer.putInt(length);
+		int start = buffer.position();
+		message.toBytes(buffer);
+		if (buffer.position() - start > length)
+		{
+			throw new IllegalStateException(message.getClass().getSimpleName() + " wrote more than "
+					+ length + " bytes");
+		}
+		//messages may report a longer length than they write; skip the unused bytes
+		buffer.position(start + length);
+	}
+
+	private void writeFully(ByteBuffer first, ByteBuffer second) throws IOException
+	{
+		if (channel instanceof GatheringByteChannel)
+		{
+			buffers[0] = first;
+			buffers[1] = second;
+			try
+			{
+				while (second.hasRemaining())
+				{
+					((GatheringByteChannel) channel).write(buffers);
+				}
+			}
+			finally
+			{
+				buffers[0] = buffers[1] = null;
+			}
+		}
+		else
+		{
+			while (first.hasRemaining())
+			{
+				channel.write(first);
+			}
+			while (second.hasRemaining())
+			{
+				channel.write(second);
+			}
+		}
+	}
+}
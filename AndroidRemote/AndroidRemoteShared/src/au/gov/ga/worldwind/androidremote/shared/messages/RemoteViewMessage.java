@@ -24,6 +24,11 @@ import au.gov.ga.worldwind.androidremote.shared.MessageId;
 /**
  * Message sent from the server to the client containing a single image frame
  * for the remote view.
+ * <p/>
+ * The image may only contain the region of the frame that has changed since
+ * the previous message; the region's position within the frame is given by
+ * {@link #x} and {@link #y}, and the size of the entire frame by
+ * {@link #frameWidth} and {@link #frameHeight}.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -33,16 +38,36 @@ public class RemoteViewMessage implements Message<RemoteViewMessage>
 	 * Image byte buffer.
 	 */
 	public final ByteBuffer buffer;
+	/**
+	 * Horizontal position of the image within the frame, from the left.
+	 */
+	public final int x;
+	/**
+	 * Vertical position of the image within the frame, from the top.
+	 */
+	public final int y;
+	/**
+	 * Width of the entire frame.
+	 */
+	public final int frameWidth;
+	/**
+	 * Height of the entire frame.
+	 */
+	public final int frameHeight;
 
 	@SuppressWarnings("unused")
 	private RemoteViewMessage()
 	{
-		this(null);
+		this(null, 0, 0, -1, -1);
 	}
 
-	public RemoteViewMessage(ByteBuffer buffer)
+	public RemoteViewMessage(ByteBuffer buffer, int x, int y, int frameWidth, int frameHeight)
 	{
 		this.buffer = buffer;
+		this.x = x;
+		this.y = y;
+		this.frameWidth = frameWidth;
+		this.frameHeight = frameHeight;
 	}
 
 	@Override
@@ -54,12 +79,16 @@ public class RemoteViewMessage implements Message<RemoteViewMessage>
 	@Override
 	public int getLength()
 	{
-		return 4 + 4 + 4 + 4 + buffer.limit();
+		return 4 + 4 + 4 + 4 + 4 + buffer.limit();
 	}
 
 	@Override
 	public void toBytes(ByteBuffer buffer)
 	{
+		MessageIO.intToBytes(x, buffer);
+		MessageIO.intToBytes(y, buffer);
+		MessageIO.intToBytes(frameWidth, buffer);
+		MessageIO.intToBytes(frameHeight, buffer);
 		MessageIO.intToBytes(this.buffer.limit(), buffer);
 		this.buffer.rewind();
 		buffer.put(this.buffer);
@@ -68,9 +97,13 @@ public class RemoteViewMessage implements Message<RemoteViewMessage>
 	@Override
 	public RemoteViewMessage fromBytes(ByteBuffer buffer)
 	{
+		int x = MessageIO.bytesToInt(buffer);
+		int y = MessageIO.bytesToInt(buffer);
+		int frameWidth = MessageIO.bytesToInt(buffer);
+		int frameHeight = MessageIO.bytesToInt(buffer);
 		int limit = MessageIO.bytesToInt(buffer);
 		ByteBuffer b = ByteBuffer.allocate(limit);
 		buffer.get(b.array());
-		return new RemoteViewMessage(b);
+		return new RemoteViewMessage(b, x, y, frameWidth, frameHeight);
 	}
 }
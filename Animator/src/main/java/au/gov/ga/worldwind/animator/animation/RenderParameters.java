@@ -325,6 +325,7 @@ public class RenderParameters implements AnimationObject, XmlSerializable<Render
 		result.setImageDimension(imageDimension);
 		result.setRenderAlpha(renderAlpha);
 		result.setRenderDestination(renderDestination);
+		result.setImageScalePercent(imageScalePercent);
 		return result;
 	}
 }
@@ -24,8 +24,10 @@ import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.WWXML;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NavigableMap;
 import java.util.TreeMap;
@@ -49,6 +51,7 @@ import au.gov.ga.worldwind.animator.animation.layer.parameter.LayerParameter;
 import au.gov.ga.worldwind.animator.animation.layer.parameter.LayerParameterFactory;
 import au.gov.ga.worldwind.animator.animation.parameter.BezierParameterValue;
 import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterBase;
 import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
 import au.gov.ga.worldwind.animator.application.effects.AnimatableEffect;
 import au.gov.ga.worldwind.animator.layers.AnimationLayerLoaderFactory;
@@ -444,6 +447,7 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 			{
 				removeValuesFromKeyFrames(object);
 			}
+			releaseBakedCurves(object);
 
 			fireRemoveEvent(object);
 		}
@@ -458,6 +462,17 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 		}
 	}
 
+	private void releaseBakedCurves(Animatable object)
+	{
+		for (Parameter parameter : object.getParameters())
+		{
+			if (parameter instanceof ParameterBase)
+			{
+				((ParameterBase) parameter).releaseBakedCurve();
+			}
+		}
+	}
+
 	private void removeValuesFromKeyFrames(Animatable object)
 	{
 		for (Parameter parameter : object.getParameters())
@@ -1050,6 +1065,38 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 
 	@Override
 	public Animation fromXml(Element element, AnimationFileVersion version, AVList context)
+	{
+		Validate.notNull(element, "An XML element is required");
+		Validate.notNull(version, "A version ID is required");
+
+		Element[] animatableObjectElements =
+				WWXML.getElements(element, version.getConstants().getAnimatableObjectsElementName() + "/*", null);
+		Iterator<Element> animatableObjectIterator =
+				animatableObjectElements == null ? null : Arrays.asList(animatableObjectElements).iterator();
+		return fromXml(element, animatableObjectIterator, version, context);
+	}
+
+	/**
+	 * Create a new animation from the provided animation element, using the
+	 * provided iterator to obtain the animatable object elements rather than
+	 * the children of the animation element.
+	 * <p/>
+	 * This allows streaming readers to supply the animatable objects one at a
+	 * time, so that the whole document doesn't need to be held in memory.
+	 * 
+	 * @param element
+	 *            The animation element
+	 * @param animatableObjectElements
+	 *            Iterator over the animatable object elements, or
+	 *            <code>null</code> if there are none
+	 * @param version
+	 *            The version the elements are in
+	 * @param context
+	 *            The context needed to de-serialise the animation
+	 * @return The de-serialised animation
+	 */
+	public Animation fromXml(Element element, Iterator<Element> animatableObjectElements,
+			AnimationFileVersion version, AVList context)
 	{
 		Validate.notNull(element, "An XML element is required");
 		Validate.notNull(version, "A version ID is required");
@@ -1082,13 +1129,12 @@ public class WorldWindAnimationImpl extends PropagatingChangeableEventListener i
 							context);
 
 			// Add each animatable object
-			Element[] animatableObjectElements =
-					WWXML.getElements(element, constants.getAnimatableObjectsElementName() + "/*", xpath);
-			if (animatableObjectElements != null)
+			if (animatableObjectElements != null && animatableObjectElements.hasNext())
 			{
 				result.clearAnimatableObjects();
-				for (Element animatableObjectElement : animatableObjectElements)
+				while (animatableObjectElements.hasNext())
 				{
+					Element animatableObjectElement = animatableObjectElements.next();
 					Animatable animatable =
 							AnimatableFactoryRegistry.instance.fromXml(animatableObjectElement, version, context);
 					if (animatable == null)
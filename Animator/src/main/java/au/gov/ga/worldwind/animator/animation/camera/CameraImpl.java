@@ -166,8 +166,8 @@ public class CameraImpl extends AnimatableBase implements Camera
 		int frame = getAnimation().getCurrentFrame();
 		Position eye = getEyePositionAtFrame(frame);
 		Position center = getLookatPositionAtFrame(frame);
-		Angle roll = Angle.fromDegrees(this.roll.getValueAtFrame(frame).getValue());
-		Angle fieldOfView = Angle.fromDegrees(this.fieldOfView.getValueAtFrame(frame).getValue());
+		Angle roll = Angle.fromDegrees(this.roll.getBakedValueAtFrame(frame));
+		Angle fieldOfView = Angle.fromDegrees(this.fieldOfView.getBakedValueAtFrame(frame));
 
 		View view = animation.getView();
 		view.stopMovement();
@@ -183,8 +183,8 @@ public class CameraImpl extends AnimatableBase implements Camera
 
 		if (clippingParametersActivated)
 		{
-			nearClip.applyValueIfEnabled(nearClip.getValueAtFrame(frame).getValue(), frame);
-			farClip.applyValueIfEnabled(farClip.getValueAtFrame(frame).getValue(), frame);
+			nearClip.applyValueIfEnabled(nearClip.getBakedValueAtFrame(frame), frame);
+			farClip.applyValueIfEnabled(farClip.getBakedValueAtFrame(frame), frame);
 		}
 	}
 
@@ -205,16 +205,15 @@ public class CameraImpl extends AnimatableBase implements Camera
 	{
 		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
 
-		ParameterValue[] latValues = lat.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] lonValues = lon.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] elevationValues = elevation.getValuesBetweenFrames(startFrame, endFrame, null);
+		double[] latValues = lat.getBakedValuesBetweenFrames(startFrame, endFrame, null);
+		double[] lonValues = lon.getBakedValuesBetweenFrames(startFrame, endFrame, null);
+		double[] elevationValues = elevation.getBakedValuesBetweenFrames(startFrame, endFrame, null);
 
-		Position[] result = new Position[latValues.length];
+		Position[] result = new Position[endFrame - startFrame + 1];
 		for (int i = 0; i < result.length; i++)
 		{
 			result[i] =
-					Position.fromDegrees(latValues[i].getValue(), lonValues[i].getValue(),
-							animation.unapplyZoomScaling(elevationValues[i].getValue()));
+					Position.fromDegrees(latValues[i], lonValues[i], animation.unapplyZoomScaling(elevationValues[i]));
 		}
 
 		return result;
@@ -224,15 +223,15 @@ public class CameraImpl extends AnimatableBase implements Camera
 	@Override
 	public Position getEyePositionAtFrame(int frame)
 	{
-		return Position.fromDegrees(eyeLat.getValueAtFrame(frame).getValue(), eyeLon.getValueAtFrame(frame).getValue(),
-				getAnimation().unapplyZoomScaling(eyeElevation.getValueAtFrame(frame).getValue()));
+		return Position.fromDegrees(eyeLat.getBakedValueAtFrame(frame), eyeLon.getBakedValueAtFrame(frame),
+				getAnimation().unapplyZoomScaling(eyeElevation.getBakedValueAtFrame(frame)));
 	}
 
 	@Override
 	public Position getLookatPositionAtFrame(int frame)
 	{
-		return Position.fromDegrees(lookAtLat.getValueAtFrame(frame).getValue(), lookAtLon.getValueAtFrame(frame)
-				.getValue(), getAnimation().unapplyZoomScaling(lookAtElevation.getValueAtFrame(frame).getValue()));
+		return Position.fromDegrees(lookAtLat.getBakedValueAtFrame(frame), lookAtLon.getBakedValueAtFrame(frame),
+				getAnimation().unapplyZoomScaling(lookAtElevation.getBakedValueAtFrame(frame)));
 	}
 
 	@Override
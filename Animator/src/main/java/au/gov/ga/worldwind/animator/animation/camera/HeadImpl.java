@@ -44,7 +44,6 @@ import au.gov.ga.worldwind.animator.animation.camera.HeadParameter.RotationZPara
 import au.gov.ga.worldwind.animator.animation.io.AnimationFileVersion;
 import au.gov.ga.worldwind.animator.animation.io.AnimationIOConstants;
 import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
-import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
 import au.gov.ga.worldwind.animator.view.AnimatorView;
 import au.gov.ga.worldwind.common.util.Validate;
 
@@ -155,8 +154,8 @@ public class HeadImpl extends AnimatableBase implements Head
 	@Override
 	public Quaternion getRotationAtFrame(int frame)
 	{
-		return new Quaternion(rotationX.getValueAtFrame(frame).getValue(), rotationY.getValueAtFrame(frame).getValue(),
-				rotationZ.getValueAtFrame(frame).getValue(), rotationW.getValueAtFrame(frame).getValue());
+		return new Quaternion(rotationX.getBakedValueAtFrame(frame), rotationY.getBakedValueAtFrame(frame),
+				rotationZ.getBakedValueAtFrame(frame), rotationW.getBakedValueAtFrame(frame));
 	}
 
 	@Override
@@ -164,16 +163,15 @@ public class HeadImpl extends AnimatableBase implements Head
 	{
 		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
 
-		ParameterValue[] xValues = rotationX.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] yValues = rotationY.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] zValues = rotationZ.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] wValues = rotationW.getValuesBetweenFrames(startFrame, endFrame, null);
+		double[] xValues = rotationX.getBakedValuesBetweenFrames(startFrame, endFrame, null);
+		double[] yValues = rotationY.getBakedValuesBetweenFrames(startFrame, endFrame, null);
+		double[] zValues = rotationZ.getBakedValuesBetweenFrames(startFrame, endFrame, null);
+		double[] wValues = rotationW.getBakedValuesBetweenFrames(startFrame, endFrame, null);
 
-		Quaternion[] result = new Quaternion[xValues.length];
+		Quaternion[] result = new Quaternion[endFrame - startFrame + 1];
 		for (int i = 0; i < result.length; i++)
 		{
-			result[i] = new Quaternion(xValues[i].getValue(), yValues[i].getValue(), zValues[i].getValue(),
-					wValues[i].getValue());
+			result[i] = new Quaternion(xValues[i], yValues[i], zValues[i], wValues[i]);
 		}
 
 		return result;
@@ -182,8 +180,8 @@ public class HeadImpl extends AnimatableBase implements Head
 	@Override
 	public Vec4 getPositionAtFrame(int frame)
 	{
-		return new Vec4(positionX.getValueAtFrame(frame).getValue(), positionY.getValueAtFrame(frame).getValue(),
-				positionZ.getValueAtFrame(frame).getValue());
+		return new Vec4(positionX.getBakedValueAtFrame(frame), positionY.getBakedValueAtFrame(frame),
+				positionZ.getBakedValueAtFrame(frame));
 	}
 
 	@Override
@@ -191,14 +189,14 @@ public class HeadImpl extends AnimatableBase implements Head
 	{
 		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
 
-		ParameterValue[] xValues = positionX.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] yValues = positionY.getValuesBetweenFrames(startFrame, endFrame, null);
-		ParameterValue[] zValues = positionZ.getValuesBetweenFrames(startFrame, endFrame, null);
+		double[] xValues = positionX.getBakedValuesBetweenFrames(startFrame, endFrame, null);
+		double[] yValues = positionY.getBakedValuesBetweenFrames(startFrame, endFrame, null);
+		double[] zValues = positionZ.getBakedValuesBetweenFrames(startFrame, endFrame, null);
 
-		Vec4[] result = new Vec4[xValues.length];
+		Vec4[] result = new Vec4[endFrame - startFrame + 1];
 		for (int i = 0; i < result.length; i++)
 		{
-			result[i] = new Vec4(xValues[i].getValue(), yValues[i].getValue(), zValues[i].getValue());
+			result[i] = new Vec4(xValues[i], yValues[i], zValues[i]);
 		}
 
 		return result;
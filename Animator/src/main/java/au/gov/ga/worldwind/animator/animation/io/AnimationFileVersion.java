@@ -28,7 +28,8 @@ import au.gov.ga.worldwind.common.util.Validate;
 public enum AnimationFileVersion
 {
 	VERSION010("1.0", new AnimationIOConstants.V1()),
-	VERSION020("2.0", new AnimationIOConstants.V2());
+	VERSION020("2.0", new AnimationIOConstants.V2()),
+	VERSION020_BINARY("2.0b", new AnimationIOConstants.V2(), VERSION020);
 
 	// The map of display names -> enums
 	private static final Map<String, AnimationFileVersion> DISPLAY_NAME_MAP = new HashMap<String, AnimationFileVersion>();
@@ -36,6 +37,7 @@ public enum AnimationFileVersion
 	{
 		DISPLAY_NAME_MAP.put(VERSION010.getDisplayName(), VERSION010);
 		DISPLAY_NAME_MAP.put(VERSION020.getDisplayName(), VERSION020);
+		DISPLAY_NAME_MAP.put(VERSION020_BINARY.getDisplayName(), VERSION020_BINARY);
 	}
 	
 	/** The display name of this enum */
@@ -44,10 +46,19 @@ public enum AnimationFileVersion
 	/** The IO constants to use for this version */
 	private AnimationIOConstants constants;
 	
+	/** The version of the element content stored in files of this version */
+	private AnimationFileVersion contentVersion;
+	
 	private AnimationFileVersion(String display, AnimationIOConstants constants)
+	{
+		this(display, constants, null);
+	}
+	
+	private AnimationFileVersion(String display, AnimationIOConstants constants, AnimationFileVersion contentVersion)
 	{
 		this.displayName = display;
 		this.constants = constants;
+		this.contentVersion = contentVersion == null ? this : contentVersion;
 	}
 	
 	/**
@@ -66,6 +77,27 @@ public enum AnimationFileVersion
 		return constants;
 	}
 	
+	/**
+	 * Return the version of the element content stored in files of this version.
+	 * <p/>
+	 * Binary files store the same elements as their XML equivalent, and should
+	 * be deserialised using the XML version returned here.
+	 * 
+	 * @return The version to pass to {@link XmlSerializable#fromXml} and {@link XmlSerializable#toXml}
+	 */
+	public AnimationFileVersion getContentVersion()
+	{
+		return contentVersion;
+	}
+	
+	/**
+	 * @return Whether files of this version are stored in the binary format
+	 */
+	public boolean isBinary()
+	{
+		return contentVersion != this;
+	}
+	
 	@Override
 	public String toString()
 	{
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.io;
+
+import java.io.File;
+
+/**
+ * Helper class for choosing the {@link AnimationReader} or
+ * {@link AnimationWriter} to use for a given animation file.
+ */
+public class AnimationIO
+{
+	/**
+	 * Create a reader for the provided file. Binary files are detected by
+	 * their content, so this works for files of any name (eg auto-saves).
+	 *
+	 * @param file
+	 *            The file to read
+	 * @return A reader that can read the provided file
+	 */
+	public static AnimationReader createReader(File file)
+	{
+		if (BinaryAnimationReader.isBinaryAnimationFile(file))
+		{
+			return new BinaryAnimationReader();
+		}
+		return new XmlAnimationReader();
+	}
+
+	/**
+	 * Create a writer for the provided file. Files with the
+	 * {@link BinaryAnimationWriter#FILE_EXTENSION} are written in the binary
+	 * format, all others are written as XML.
+	 *
+	 * @param file
+	 *            The file to write
+	 * @return A writer for the provided file
+	 */
+	public static AnimationWriter createWriter(File file)
+	{
+		if (isBinaryFileName(file))
+		{
+			return new BinaryAnimationWriter();
+		}
+		return new XmlAnimationWriter();
+	}
+
+	/**
+	 * @return Whether the provided file has the binary animation file
+	 *         extension
+	 */
+	public static boolean isBinaryFileName(File file)
+	{
+		return file.getName().toLowerCase().endsWith(BinaryAnimationWriter.FILE_EXTENSION);
+	}
+}
@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.io;
+
+import gov.nasa.worldwind.util.WWXML;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import au.gov.ga.worldwind.animator.animation.Animatable;
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.KeyFrame;
+import au.gov.ga.worldwind.animator.animation.RenderParameters;
+import au.gov.ga.worldwind.animator.animation.parameter.BezierParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValueType;
+
+/**
+ * An immutable copy of the state of an {@link Animation} that is written to an
+ * animation file.
+ * <p/>
+ * Each animatable object's XML element is created when the snapshot is
+ * captured, so that everything the animatable writes (its name, its parameters'
+ * settings, elevation model identifiers, stereo settings etc.) is copied. The
+ * key frame values, which make up the bulk of an animation, are not added to
+ * these elements; instead only their primitive values are copied, and they are
+ * streamed by {@link AnimationStreams} when the snapshot is written.
+ * <p/>
+ * Capturing a snapshot must be done on the thread that modifies the animation
+ * (the event dispatch thread). The snapshot can then be written on another
+ * thread while the animation continues to be edited.
+ */
+public class AnimationSnapshot
+{
+	/**
+	 * User data key under which a captured &lt;parameter&gt; element stores
+	 * its {@link ParameterState}.
+	 */
+	private static final String PARAMETER_STATE_KEY = AnimationSnapshot.class.getName() + ".parameterState";
+
+	private final AnimationFileVersion version;
+	private final int frameCount;
+	private final boolean zoomScalingRequired;
+	private final RenderParameters renderParameters;
+	private final List<Element> animatableElements = new ArrayList<Element>();
+
+	private AnimationSnapshot(Animation animation, AnimationFileVersion version)
+	{
+		this.version = version;
+		frameCount = animation.getFrameCount();
+		zoomScalingRequired = animation.isZoomScalingRequired();
+		renderParameters = animation.getRenderParameters().clone();
+	}
+
+	/**
+	 * Capture a snapshot of the provided animation. The animation must not be
+	 * modified while the snapshot is being captured (ie. this should be called
+	 * on the thread that modifies the animation).
+	 * 
+	 * @param animation
+	 *            The animation to capture
+	 * @param version
+	 *            The (XML) version of the elements that the snapshot will be
+	 *            written as
+	 */
+	public static AnimationSnapshot capture(Animation animation, AnimationFileVersion version)
+	{
+		AnimationSnapshot snapshot = new AnimationSnapshot(animation, version);
+
+		Map<Parameter, ParameterState> parameterStates = new IdentityHashMap<Parameter, ParameterState>();
+		for (KeyFrame keyFrame : animation.getKeyFrames())
+		{
+			for (ParameterValue value : keyFrame.getParameterValues())
+			{
+				ParameterState state = parameterStates.get(value.getOwner());
+				if (state == null)
+				{
+					state = new ParameterState();
+					parameterStates.put(value.getOwner(), state);
+				}
+				state.values.add(new ValueState(value));
+			}
+		}
+
+		Document document = WWXML.createDocumentBuilder(false).newDocument();
+		document.setUserData(AnimationStreams.STREAM_VALUES_KEY, Boolean.TRUE, null);
+		Element animatableContainer =
+				document.createElement(version.getConstants().getAnimatableObjectsElementName());
+		document.appendChild(animatableContainer);
+		for (Animatable animatable : animation.getAnimatableObjects())
+		{
+			Element animatableElement = animatable.toXml(animatableContainer, version);
+			attachParameterStates(animatableElement, parameterStates);
+			snapshot.animatableElements.add(animatableElement);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Replace the {@link Parameter} stored on each streamed &lt;parameter&gt;
+	 * element with the parameter's captured state, so that the snapshot
+	 * doesn't refer to the (mutable) parameter.
+	 */
+	private static void attachParameterStates(Element element, Map<Parameter, ParameterState> parameterStates)
+	{
+		Parameter parameter = (Parameter) element.getUserData(AnimationStreams.PARAMETER_KEY);
+		if (parameter != null)
+		{
+			ParameterState state = parameterStates.get(parameter);
+			element.setUserData(AnimationStreams.PARAMETER_KEY, null, null);
+			element.setUserData(PARAMETER_STATE_KEY, state == null ? new ParameterState() : state, null);
+		}
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+		{
+			if (child.getNodeType() == Node.ELEMENT_NODE)
+			{
+				attachParameterStates((Element) child, parameterStates);
+			}
+		}
+	}
+
+	/**
+	 * @return The (XML) version of the elements captured in this snapshot
+	 */
+	public AnimationFileVersion getVersion()
+	{
+		return version;
+	}
+
+	public int getFrameCount()
+	{
+		return frameCount;
+	}
+
+	public boolean isZoomScalingRequired()
+	{
+		return zoomScalingRequired;
+	}
+
+	public RenderParameters getRenderParameters()
+	{
+		return renderParameters;
+	}
+
+	/**
+	 * @return The elements created by {@link Animatable#toXml} for each
+	 *         animatable object in the animation when the snapshot was
+	 *         captured. These must not be modified.
+	 */
+	List<Element> getAnimatableElements()
+	{
+		return Collections.unmodifiableList(animatableElements);
+	}
+
+	/**
+	 * @return The captured state of the parameter that the provided
+	 *         &lt;parameter&gt; element was created for, or <code>null</code>
+	 *         if the element isn't a captured parameter element
+	 */
+	ParameterState getParameterState(Element parameterElement)
+	{
+		return (ParameterState) parameterElement.getUserData(PARAMETER_STATE_KEY);
+	}
+
+	/**
+	 * Captured key frame values of a parameter, in frame order.
+	 */
+	static class ParameterState
+	{
+		private final List<ValueState> values = new ArrayList<ValueState>();
+
+		/**
+		 * @return The number of captured key frame values
+		 */
+		int getValueCount()
+		{
+			return values.size();
+		}
+
+		/**
+		 * Create a (detached) XML element for the captured value at the given
+		 * index. The element is identical to that created by
+		 * {@link ParameterValue#toXml}.
+		 */
+		Element createValueElement(int index, Document document, AnimationIOConstants constants)
+		{
+			return values.get(index).toXml(document, constants);
+		}
+	}
+
+	/**
+	 * Captured state of a single {@link ParameterValue}.
+	 */
+	private static class ValueState
+	{
+		private final ParameterValueType type;
+		private final int frame;
+		private final double value;
+		private final boolean bezier;
+		private final double inValue;
+		private final double inPercent;
+		private final double outValue;
+		private final double outPercent;
+		private final boolean locked;
+
+		public ValueState(ParameterValue parameterValue)
+		{
+			type = parameterValue.getType();
+			frame = parameterValue.getFrame();
+			value = parameterValue.getValue();
+			bezier = parameterValue instanceof BezierParameterValue;
+			if (bezier)
+			{
+				BezierParameterValue bezierValue = (BezierParameterValue) parameterValue;
+				inValue = bezierValue.getInValue();
+				inPercent = bezierValue.getInPercent();
+				outValue = bezierValue.getOutValue();
+				outPercent = bezierValue.getOutPercent();
+				locked = bezierValue.isLocked();
+			}
+			else
+			{
+				inValue = inPercent = outValue = outPercent = 0;
+				locked = false;
+			}
+		}
+
+		// Mirrors BasicParameterValue.toXml() and BasicBezierParameterValue.toXml()
+		public Element toXml(Document document, AnimationIOConstants constants)
+		{
+			Element result = document.createElement(constants.getParameterValueElementName());
+
+			WWXML.setTextAttribute(result, constants.getParameterValueAttributeType(), type.name());
+			WWXML.setIntegerAttribute(result, constants.getParameterValueAttributeFrame(), frame);
+			WWXML.setDoubleAttribute(result, constants.getParameterValueAttributeValue(), value);
+			if (bezier)
+			{
+				WWXML.setDoubleAttribute(result, constants.getBezierValueAttributeInValue(), inValue);
+				WWXML.setDoubleAttribute(result, constants.getBezierValueAttributeInPercent(), inPercent);
+				WWXML.setDoubleAttribute(result, constants.getBezierValueAttributeOutValue(), outValue);
+				WWXML.setDoubleAttribute(result, constants.getBezierValueAttributeOutPercent(), outPercent);
+				WWXML.setBooleanAttribute(result, constants.getBezierValueAttributeLocked(), locked);
+			}
+
+			return result;
+		}
+	}
+}
@@ -0,0 +1,453 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.io;
+
+import gov.nasa.worldwind.WorldWindow;
+import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.avlist.AVListImpl;
+import gov.nasa.worldwind.util.WWXML;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.WorldWindAnimationImpl;
+import au.gov.ga.worldwind.animator.animation.io.AnimationSnapshot.ParameterState;
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.common.util.Validate;
+
+/**
+ * Helper methods for writing and reading animations via {@link ElementWriter}s
+ * and {@link ElementReader}s.
+ * <p/>
+ * Animations are written and read one animatable object at a time, rather
+ * than via a DOM for the entire animation. When writing, parameter values
+ * aren't added to the animatable objects' DOMs at all; they are streamed to the
+ * writer one at a time from an {@link AnimationSnapshot}. When reading, only
+ * the DOM elements for the current animatable object are held in memory. The
+ * element structure is identical to that produced by {@link Animation#toXml}.
+ */
+public class AnimationStreams
+{
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * User data key set on documents whose parameter elements should be
+	 * created without their parameter value children; see
+	 * {@link #isStreamingValues(Document)}.
+	 */
+	public static final String STREAM_VALUES_KEY = AnimationStreams.class.getName() + ".streamValues";
+
+	/**
+	 * User data key under which a &lt;parameter&gt; element created for a
+	 * streamed document stores the {@link Parameter} it was created from.
+	 */
+	public static final String PARAMETER_KEY = AnimationStreams.class.getName() + ".parameter";
+
+	/**
+	 * @return Whether the provided document is being streamed by this class,
+	 *         in which case {@link Parameter#toXml} implementations should
+	 *         store the parameter under {@link #PARAMETER_KEY} on the
+	 *         &lt;parameter&gt; element instead of adding value elements to it
+	 */
+	public static boolean isStreamingValues(Document document)
+	{
+		return document != null && document.getUserData(STREAM_VALUES_KEY) != null;
+	}
+
+	/**
+	 * Write the provided animation to the element writer, including the
+	 * document root element.
+	 *
+	 * @param animation
+	 *            The animation to write
+	 * @param version
+	 *            The (XML) version of the elements to write
+	 * @param writer
+	 *            The writer to write to
+	 */
+	public static void writeAnimation(Animation animation, AnimationFileVersion version, ElementWriter writer)
+			throws IOException
+	{
+		writeAnimation(AnimationSnapshot.capture(animation, version), version, writer);
+	}
+
+	/**
+	 * Write the provided animation snapshot to the element writer, including
+	 * the document root element. This can be called on any thread; only the
+	 * snapshot is read.
+	 *
+	 * @param snapshot
+	 *            The animation snapshot to write
+	 * @param version
+	 *            The (XML) version of the elements to write; must match the
+	 *            version the snapshot was captured with
+	 * @param writer
+	 *            The writer to write to
+	 */
+	public static void writeAnimation(AnimationSnapshot snapshot, AnimationFileVersion version, ElementWriter writer)
+			throws IOException
+	{
+		Validate.isTrue(snapshot.getVersion() == version, "Snapshot was captured for version "
+				+ snapshot.getVersion().getDisplayName() + ", not " + version.getDisplayName());
+
+		AnimationIOConstants constants = version.getConstants();
+		Document document = WWXML.createDocumentBuilder(false).newDocument();
+
+		writer.startDocument();
+
+		Element rootElement = document.createElement(constants.getRootElementName());
+		document.appendChild(rootElement);
+		WWXML.setTextAttribute(rootElement, constants.getWorldWindAnimationAttributeVersion(), version.getDisplayName());
+		writeStartElement(rootElement, writer);
+
+		// Mirrors WorldWindAnimationImpl.toXml(), one child at a time
+		Element animationElement = WWXML.appendElement(rootElement, constants.getAnimationElementName());
+		WWXML.setIntegerAttribute(animationElement, constants.getAnimationAttributeFrameCount(),
+				snapshot.getFrameCount());
+		WWXML.setBooleanAttribute(animationElement, constants.getAnimationAttributeZoomRequired(),
+				snapshot.isZoomScalingRequired());
+		writeStartElement(animationElement, writer);
+
+		writeAndRemove(snapshot.getRenderParameters().toXml(animationElement, version), writer);
+
+		Element animatableContainer = WWXML.appendElement(animationElement, constants.getAnimatableObjectsElementName());
+		writeStartElement(animatableContainer, writer);
+		for (Element animatableElement : snapshot.getAnimatableElements())
+		{
+			writeStreamedElement(animatableElement, writer, snapshot, document, constants);
+		}
+		writer.endElement();
+
+		writer.endElement();
+		writer.endElement();
+		writer.endDocument();
+	}
+
+	/**
+	 * Read an animation from the element reader, which must be positioned at
+	 * the start of the document.
+	 * <p/>
+	 * The animatable objects element must be the last child of the animation
+	 * element (as written by {@link #writeAnimation}).
+	 *
+	 * @param reader
+	 *            The reader to read from
+	 * @param version
+	 *            The (XML) version of the elements being read
+	 * @param worldWindow
+	 *            The world window to attach to the animation
+	 * @return The animation read
+	 */
+	public static Animation readAnimation(ElementReader reader, AnimationFileVersion version, WorldWindow worldWindow)
+			throws IOException
+	{
+		AnimationIOConstants constants = version.getConstants();
+		Document document = WWXML.createDocumentBuilder(false).newDocument();
+
+		if (nextElement(reader) != ElementReader.START_ELEMENT)
+		{
+			throw new IOException("Animation root element not found");
+		}
+		Element rootElement = createElement(reader, document);
+		document.appendChild(rootElement);
+
+		Element animationElement = null;
+		while (nextElement(reader) == ElementReader.START_ELEMENT)
+		{
+			if (constants.getAnimationElementName().equals(reader.getName()))
+			{
+				animationElement = createElement(reader, document);
+				rootElement.appendChild(animationElement);
+				break;
+			}
+			skipElement(reader);
+		}
+		if (animationElement == null)
+		{
+			throw new IOException("Animation element not found");
+		}
+
+		// Read everything up to the animatable objects into memory
+		Element animatableContainer = null;
+		while (nextElement(reader) == ElementReader.START_ELEMENT)
+		{
+			if (constants.getAnimatableObjectsElementName().equals(reader.getName()))
+			{
+				animatableContainer = createElement(reader, document);
+				animationElement.appendChild(animatableContainer);
+				break;
+			}
+			animationElement.appendChild(readElement(reader, document));
+		}
+
+		AVList context = new AVListImpl();
+		context.setValue(constants.getWorldWindowKey(), worldWindow);
+
+		Iterator<Element> animatableElements =
+				animatableContainer == null ? null : new ChildElementIterator(reader, animatableContainer);
+		return new WorldWindAnimationImpl(worldWindow).fromXml(animationElement, animatableElements, version,
+				context);
+	}
+
+	/**
+	 * Copy all remaining events from the reader to the writer.
+	 */
+	public static void copy(ElementReader reader, ElementWriter writer) throws IOException
+	{
+		writer.startDocument();
+		int event;
+		while ((event = reader.next()) != ElementReader.END_DOCUMENT)
+		{
+			switch (event)
+			{
+			case ElementReader.START_ELEMENT:
+				writer.startElement(reader.getName());
+				for (int i = 0; i < reader.getAttributeCount(); i++)
+				{
+					writer.attribute(reader.getAttributeName(i), reader.getAttributeValue(i));
+				}
+				break;
+			case ElementReader.TEXT:
+				writer.text(reader.getText());
+				break;
+			case ElementReader.END_ELEMENT:
+				writer.endElement();
+				break;
+			}
+		}
+		writer.endDocument();
+	}
+
+	/**
+	 * Write the provided element and all its children to the writer.
+	 */
+	public static void writeElement(Element element, ElementWriter writer) throws IOException
+	{
+		writeStartElement(element, writer);
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+		{
+			switch (child.getNodeType())
+			{
+			case Node.ELEMENT_NODE:
+				writeElement((Element) child, writer);
+				break;
+			case Node.TEXT_NODE:
+			case Node.CDATA_SECTION_NODE:
+				writer.text(child.getNodeValue());
+				break;
+			}
+		}
+		writer.endElement();
+	}
+
+	/**
+	 * Write the provided snapshot element and all its children to the writer.
+	 * The values of any captured &lt;parameter&gt; elements are written from
+	 * the snapshot as each parameter element is reached. Value elements are
+	 * created in the provided document; the snapshot element is not modified.
+	 */
+	private static void writeStreamedElement(Element element, ElementWriter writer, AnimationSnapshot snapshot,
+			Document document, AnimationIOConstants constants) throws IOException
+	{
+		writeStartElement(element, writer);
+		ParameterState state = snapshot.getParameterState(element);
+		if (state != null)
+		{
+			// Parameter values are the first children of the <parameter> element
+			for (int i = 0; i < state.getValueCount(); i++)
+			{
+				writeElement(state.createValueElement(i, document, constants), writer);
+			}
+		}
+
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+		{
+			switch (child.getNodeType())
+			{
+			case Node.ELEMENT_NODE:
+				writeStreamedElement((Element) child, writer, snapshot, document, constants);
+				break;
+			case Node.TEXT_NODE:
+			case Node.CDATA_SECTION_NODE:
+				writer.text(child.getNodeValue());
+				break;
+			}
+		}
+		writer.endElement();
+	}
+
+	private static void writeStartElement(Element element, ElementWriter writer) throws IOException
+	{
+		writer.startElement(element.getNodeName());
+		NamedNodeMap attributes = element.getAttributes();
+		for (int i = 0; i < attributes.getLength(); i++)
+		{
+			Node attribute = attributes.item(i);
+			writer.attribute(attribute.getNodeName(), attribute.getNodeValue());
+		}
+	}
+
+	private static void writeAndRemove(Element element, ElementWriter writer) throws IOException
+	{
+		writeElement(element, writer);
+		if (element.getParentNode() != null)
+		{
+			element.getParentNode().removeChild(element);
+		}
+	}
+
+	/**
+	 * Read the element (and its children) that the reader is positioned at
+	 * into a new DOM element. On return the reader is positioned at the
+	 * element's end event.
+	 */
+	public static Element readElement(ElementReader reader, Document document) throws IOException
+	{
+		Element element = createElement(reader, document);
+		int event;
+		while ((event = reader.next()) != ElementReader.END_ELEMENT)
+		{
+			switch (event)
+			{
+			case ElementReader.START_ELEMENT:
+				element.appendChild(readElement(reader, document));
+				break;
+			case ElementReader.TEXT:
+				element.appendChild(document.createTextNode(reader.getText()));
+				break;
+			case ElementReader.END_DOCUMENT:
+				throw new IOException("Unexpected end of document in element " + element.getNodeName());
+			}
+		}
+		return element;
+	}
+
+	private static Element createElement(ElementReader reader, Document document)
+	{
+		Element element = document.createElement(reader.getName());
+		for (int i = 0; i < reader.getAttributeCount(); i++)
+		{
+			element.setAttribute(reader.getAttributeName(i), reader.getAttributeValue(i));
+		}
+		return element;
+	}
+
+	private static void skipElement(ElementReader reader) throws IOException
+	{
+		int depth = 1;
+		while (depth > 0)
+		{
+			switch (reader.next())
+			{
+			case ElementReader.START_ELEMENT:
+				depth++;
+				break;
+			case ElementReader.END_ELEMENT:
+				depth--;
+				break;
+			case ElementReader.END_DOCUMENT:
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Advance the reader past any text to the next start or end element.
+	 */
+	private static int nextElement(ElementReader reader) throws IOException
+	{
+		int event;
+		while ((event = reader.next()) == ElementReader.TEXT)
+		{
+		}
+		return event;
+	}
+
+	/**
+	 * Iterator that reads child elements from an {@link ElementReader} on
+	 * demand. Each element is attached to the parent while it is current, and
+	 * detached again when the next element is read.
+	 */
+	private static class ChildElementIterator implements Iterator<Element>
+	{
+		private final ElementReader reader;
+		private final Element parent;
+		private Element current;
+		private Element next;
+		private boolean finished = false;
+
+		public ChildElementIterator(ElementReader reader, Element parent)
+		{
+			this.reader = reader;
+			this.parent = parent;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			if (next == null && !finished)
+			{
+				try
+				{
+					if (nextElement(reader) == ElementReader.START_ELEMENT)
+					{
+						next = readElement(reader, parent.getOwnerDocument());
+					}
+					else
+					{
+						finished = true;
+					}
+				}
+				catch (IOException e)
+				{
+					throw new IllegalArgumentException("Error reading animation file", e);
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public Element next()
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			if (current != null)
+			{
+				parent.removeChild(current);
+			}
+			current = next;
+			next = null;
+			parent.appendChild(current);
+			return current;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+}
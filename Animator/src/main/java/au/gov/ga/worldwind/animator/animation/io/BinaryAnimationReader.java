@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.io;
+
+import gov.nasa.worldwind.WorldWindow;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.common.util.Validate;
+
+/**
+ * An {@link AnimationReader} that reads animations written by a
+ * {@link BinaryAnimationWriter}.
+ */
+public class BinaryAnimationReader implements AnimationReader
+{
+	private static final AnimationFileVersion FILE_VERSION = AnimationFileVersion.VERSION020_BINARY;
+
+	@Override
+	public Animation readAnimation(String fileName, WorldWindow worldWindow)
+	{
+		Validate.notBlank(fileName, "A file name must be provided");
+		Validate.notNull(worldWindow, "A world window must be provided");
+
+		return readAnimation(new File(fileName), worldWindow);
+	}
+
+	@Override
+	public Animation readAnimation(File file, WorldWindow worldWindow)
+	{
+		Validate.notNull(file, "A file must be provided");
+		Validate.notNull(worldWindow, "A world window must be provided");
+
+		InputStream inputStream = null;
+		try
+		{
+			inputStream = new BufferedInputStream(new FileInputStream(file));
+			return readAnimation(inputStream, worldWindow);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalArgumentException("File " + file.getName() + " is not a valid binary animation file.", e);
+		}
+		finally
+		{
+			XmlAnimationReader.closeQuietly(inputStream);
+		}
+	}
+
+	/**
+	 * Read an animation from the provided stream. The stream is not closed.
+	 *
+	 * @param inputStream
+	 *            The stream to read from
+	 * @param worldWindow
+	 *            The world window to attach to the animation
+	 *
+	 * @return The animation read from the stream
+	 */
+	public Animation readAnimation(InputStream inputStream, WorldWindow worldWindow) throws IOException
+	{
+		ElementReader reader = new BinaryElementReader(inputStream);
+		try
+		{
+			return AnimationStreams.readAnimation(reader, FILE_VERSION.getContentVersion(), worldWindow);
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	@Override
+	public AnimationFileVersion getFileVersion(String fileName)
+	{
+		Validate.notBlank(fileName, "A file name must be provided");
+		return getFileVersion(new File(fileName));
+	}
+
+	@Override
+	public AnimationFileVersion getFileVersion(File file)
+	{
+		Validate.notNull(file, "A file must be provided");
+		return isBinaryAnimationFile(file) ? FILE_VERSION : null;
+	}
+
+	/**
+	 * @return Whether the provided file starts with the binary animation file
+	 *         magic bytes
+	 */
+	public static boolean isBinaryAnimationFile(File file)
+	{
+		InputStream inputStream = null;
+		try
+		{
+			inputStream = new FileInputStream(file);
+			byte[] magic = new byte[BinaryElementWriter.MAGIC.length];
+			int read = 0;
+			while (read < magic.length)
+			{
+				int count = inputStream.read(magic, read, magic.length - read);
+				if (count < 0)
+				{
+					return false;
+				}
+				read += count;
+			}
+			return Arrays.equals(magic, BinaryElementWriter.MAGIC);
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+		finally
+		{
+			XmlAnimationReader.closeQuietly(inputStream);
+		}
+	}
+}
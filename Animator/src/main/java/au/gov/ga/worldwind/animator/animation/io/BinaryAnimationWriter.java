@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.common.util.Validate;
+
+/**
+ * An {@link AnimationWriter} that writes an {@link Animation} in the compact
+ * binary format ({@link AnimationFileVersion#VERSION020_BINARY}).
+ * <p/>
+ * See {@link BinaryElementWriter} for a description of the format.
+ */
+public class BinaryAnimationWriter implements AnimationWriter
+{
+	/** The file extension used for binary animation files */
+	public static final String FILE_EXTENSION = ".wab";
+
+	private static final AnimationFileVersion FILE_VERSION = AnimationFileVersion.VERSION020_BINARY;
+
+	/**
+	 * @return The (XML) version of the elements written in the binary format;
+	 *         {@link AnimationSnapshot}s written by this class must be
+	 *         captured with this version
+	 */
+	public static AnimationFileVersion getContentVersion()
+	{
+		return FILE_VERSION.getContentVersion();
+	}
+
+	@Override
+	public void writeAnimation(String fileName, Animation animation) throws IOException
+	{
+		Validate.notBlank(fileName, "A filename must be provided");
+		Validate.notNull(animation, "An animation must be provided");
+
+		writeAnimation(new File(fileName), animation);
+	}
+
+	@Override
+	public void writeAnimation(File file, Animation animation) throws IOException
+	{
+		Validate.notNull(file, "A file must be provided");
+		Validate.notNull(animation, "An animation must be provided");
+
+		OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+		try
+		{
+			writeAnimation(outputStream, animation);
+		}
+		finally
+		{
+			outputStream.close();
+		}
+	}
+
+	/**
+	 * Write the provided {@link Animation} to the given stream. The stream is
+	 * not closed.
+	 *
+	 * @param outputStream
+	 *            The stream to write to
+	 * @param animation
+	 *            The animation to write
+	 *
+	 * @throws IOException
+	 *             if a problem occurs during writing
+	 */
+	public void writeAnimation(OutputStream outputStream, Animation animation) throws IOException
+	{
+		AnimationStreams.writeAnimation(animation, FILE_VERSION.getContentVersion(), new BinaryElementWriter(
+				outputStream));
+	}
+
+	/**
+	 * Write the provided {@link AnimationSnapshot} to the given stream. The
+	 * stream is not closed. This can be called on any thread. The snapshot
+	 * must have been captured with {@link #getContentVersion()}.
+	 *
+	 * @param outputStream
+	 *            The stream to write to
+	 * @param snapshot
+	 *            The animation snapshot to write
+	 *
+	 * @throws IOException
+	 *             if a problem occurs during writing
+	 */
+	public void writeAnimation(OutputStream outputStream, AnimationSnapshot snapshot) throws IOException
+	{
+		AnimationStreams.writeAnimation(snapshot, FILE_VERSION.getContentVersion(), new BinaryElementWriter(
+				outputStream));
+	}
+}
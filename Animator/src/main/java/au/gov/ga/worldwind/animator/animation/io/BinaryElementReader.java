@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.io;
+
+import static au.gov.ga.worldwind.animator.animation.io.BinaryElementWriter.*;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An {@link ElementReader} that reads elements written by a
+ * {@link BinaryElementWriter}.
+ */
+public class BinaryElementReader implements ElementReader
+{
+	private final DataInputStream in;
+	private final List<String> strings = new ArrayList<String>();
+
+	private String name;
+	private String text;
+	private final List<String> attributeNames = new ArrayList<String>();
+	private final List<String> attributeValues = new ArrayList<String>();
+	private int pendingTag = -1;
+	private boolean ended = false;
+
+	public BinaryElementReader(InputStream is) throws IOException
+	{
+		in = new DataInputStream(new BufferedInputStream(is));
+		byte[] magic = new byte[MAGIC.length];
+		in.readFully(magic);
+		if (!Arrays.equals(magic, MAGIC))
+		{
+			throw new IOException("Not a binary animation file");
+		}
+		long version = readVarLong();
+		if (version != FORMAT_VERSION)
+		{
+			throw new IOException("Unsupported binary animation format version: " + version);
+		}
+	}
+
+	@Override
+	public int next() throws IOException
+	{
+		if (ended)
+		{
+			return END_DOCUMENT;
+		}
+
+		int tag = pendingTag >= 0 ? pendingTag : in.read();
+		pendingTag = -1;
+		switch (tag)
+		{
+		case TAG_START_ELEMENT:
+			name = readString();
+			attributeNames.clear();
+			attributeValues.clear();
+			while ((tag = in.read()) == TAG_ATTRIBUTE)
+			{
+				attributeNames.add(readString());
+				attributeValues.add(readValue());
+			}
+			pendingTag = tag;
+			return START_ELEMENT;
+		case TAG_TEXT:
+			text = readValue();
+			return TEXT;
+		case TAG_END_ELEMENT:
+			return END_ELEMENT;
+		case TAG_END_DOCUMENT:
+			ended = true;
+			return END_DOCUMENT;
+		case -1:
+			throw new IOException("Unexpected end of binary animation file");
+		default:
+			throw new IOException("Invalid tag in binary animation file: " + tag);
+		}
+	}
+
+	@Override
+	public String getName()
+	{
+		return name;
+	}
+
+	@Override
+	public int getAttributeCount()
+	{
+		return attributeNames.size();
+	}
+
+	@Override
+	public String getAttributeName(int index)
+	{
+		return attributeNames.get(index);
+	}
+
+	@Override
+	public String getAttributeValue(int index)
+	{
+		return attributeValues.get(index);
+	}
+
+	@Override
+	public String getText()
+	{
+		return text;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		strings.clear();
+	}
+
+	private String readValue() throws IOException
+	{
+		int type = in.read();
+		switch (type)
+		{
+		case VALUE_INTEGER:
+			long l = readVarLong();
+			return Long.toString((l >>> 1) ^ -(l & 1));
+		case VALUE_DOUBLE:
+			return Double.toString(in.readDouble());
+		case VALUE_STRING:
+			return readString();
+		default:
+			throw new IOException("Invalid value type in binary animation file: " + type);
+		}
+	}
+
+	private String readString() throws IOException
+	{
+		int index = (int) readVarLong();
+		if (index < strings.size())
+		{
+			return strings.get(index);
+		}
+		if (index != strings.size())
+		{
+			throw new IOException("Invalid string reference in binary animation file: " + index);
+		}
+		byte[] bytes = new byte[(int) readVarLong()];
+		in.readFully(bytes);
+		String s = new String(bytes, AnimationStreams.UTF8);
+		strings.add(s);
+		return s;
+	}
+
+	private long readVarLong() throws IOException
+	{
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			int b = in.read();
+			if (b < 0)
+			{
+				throw new IOException("Unexpected end of binary animation file");
+			}
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length integer in binary animation file");
+	}
+}
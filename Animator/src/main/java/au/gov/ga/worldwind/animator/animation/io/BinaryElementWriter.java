@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An {@link ElementWriter} that writes elements in a compact binary format.
+ * <p/>
+ * The format stores the same element tree as the XML format, so the existing
+ * {@link XmlSerializable} implementations are used unchanged. The file starts
+ * with the {@link #MAGIC} bytes and a format version, followed by a sequence
+ * of tagged events. Element and attribute names, and non-numeric values, are
+ * stored once in a string table and referenced by index thereafter. Integer
+ * and double values that round trip exactly through their string
+ * representation are stored as variable length integers and 8 byte doubles
+ * respectively, which makes key frame values much smaller than their XML
+ * equivalent.
+ */
+public class BinaryElementWriter implements ElementWriter
+{
+	/** The bytes that identify a binary animation file */
+	public static final byte[] MAGIC = new byte[] { 'W', 'W', 'A', 'B' };
+	static final int FORMAT_VERSION = 1;
+
+	static final int TAG_END_DOCUMENT = 0;
+	static final int TAG_START_ELEMENT = 1;
+	static final int TAG_ATTRIBUTE = 2;
+	static final int TAG_TEXT = 3;
+	static final int TAG_END_ELEMENT = 4;
+
+	static final int VALUE_STRING = 0;
+	static final int VALUE_INTEGER = 1;
+	static final int VALUE_DOUBLE = 2;
+
+	private final DataOutputStream out;
+	private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+	public BinaryElementWriter(OutputStream os)
+	{
+		out = new DataOutputStream(new BufferedOutputStream(os));
+	}
+
+	@Override
+	public void startDocument() throws IOException
+	{
+		out.write(MAGIC);
+		writeVarLong(FORMAT_VERSION);
+	}
+
+	@Override
+	public void startElement(String name) throws IOException
+	{
+		out.write(TAG_START_ELEMENT);
+		writeString(name);
+	}
+
+	@Override
+	public void attribute(String name, String value) throws IOException
+	{
+		out.write(TAG_ATTRIBUTE);
+		writeString(name);
+		writeValue(value);
+	}
+
+	@Override
+	public void text(String text) throws IOException
+	{
+		out.write(TAG_TEXT);
+		writeValue(text);
+	}
+
+	@Override
+	public void endElement() throws IOException
+	{
+		out.write(TAG_END_ELEMENT);
+	}
+
+	@Override
+	public void endDocument() throws IOException
+	{
+		out.write(TAG_END_DOCUMENT);
+		out.flush();
+	}
+
+	private void writeValue(String value) throws IOException
+	{
+		if (isInteger(value))
+		{
+			long l = Long.parseLong(value);
+			out.write(VALUE_INTEGER);
+			writeVarLong((l << 1) ^ (l >> 63)); //zig-zag encode so small negatives are small
+			return;
+		}
+		Double d = parseDouble(value);
+		if (d != null)
+		{
+			out.write(VALUE_DOUBLE);
+			out.writeDouble(d);
+			return;
+		}
+		out.write(VALUE_STRING);
+		writeString(value);
+	}
+
+	private void writeString(String s) throws IOException
+	{
+		Integer index = strings.get(s);
+		if (index != null)
+		{
+			writeVarLong(index);
+			return;
+		}
+		index = strings.size();
+		strings.put(s, index);
+		writeVarLong(index);
+		byte[] bytes = s.getBytes(AnimationStreams.UTF8);
+		writeVarLong(bytes.length);
+		out.write(bytes);
+	}
+
+	private void writeVarLong(long value) throws IOException
+	{
+		while ((value & ~0x7FL) != 0)
+		{
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	/**
+	 * @return Whether the string is an integer that is exactly reproduced by
+	 *         {@link Long#toString(long)}
+	 */
+	static boolean isInteger(String s)
+	{
+		int length = s.length();
+		int start = length > 0 && s.charAt(0) == '-' ? 1 : 0;
+		if (length == start || length - start > 18)
+		{
+			return false;
+		}
+		if (s.charAt(start) == '0' && (length - start > 1 || start == 1))
+		{
+			return false; //leading zeros and -0
+		}
+		for (int i = start; i < length; i++)
+		{
+			char c = s.charAt(i);
+			if (c < '0' || c > '9')
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return The double value of the string, or null if the string is not a
+	 *         double that is exactly reproduced by {@link Double#toString(double)}
+	 */
+	static Double parseDouble(String s)
+	{
+		int length = s.length();
+		if (length == 0 || length > 32)
+		{
+			return null;
+		}
+		char c = s.charAt(0);
+		if (c != '-' && (c < '0' || c > '9') && c != 'N' && c != 'I')
+		{
+			return null;
+		}
+		try
+		{
+			double d = Double.parseDouble(s);
+			return Double.toString(d).equals(s) ? d : null;
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.io;
+
+import java.io.IOException;
+
+/**
+ * A pull style reader of element events (in the style of StAX), allowing an
+ * animation to be read one element at a time instead of parsing the entire
+ * document into memory first.
+ */
+public interface ElementReader
+{
+	/** Event returned when an element is started */
+	int START_ELEMENT = 1;
+	/** Event returned when an element is ended */
+	int END_ELEMENT = 2;
+	/** Event returned for text content */
+	int TEXT = 3;
+	/** Event returned when the end of the document is reached */
+	int END_DOCUMENT = 4;
+
+	/**
+	 * Advance to the next event.
+	 *
+	 * @return The event type; one of {@link #START_ELEMENT},
+	 *         {@link #END_ELEMENT}, {@link #TEXT} or {@link #END_DOCUMENT}
+	 */
+	int next() throws IOException;
+
+	/**
+	 * @return The name of the current element (valid for
+	 *         {@link #START_ELEMENT} events)
+	 */
+	String getName();
+
+	/**
+	 * @return The number of attributes of the current element (valid for
+	 *         {@link #START_ELEMENT} events)
+	 */
+	int getAttributeCount();
+
+	/**
+	 * @return The name of the attribute at the given index
+	 */
+	String getAttributeName(int index);
+
+	/**
+	 * @return The value of the attribute at the given index
+	 */
+	String getAttributeValue(int index);
+
+	/**
+	 * @return The current text (valid for {@link #TEXT} events)
+	 */
+	String getText();
+
+	/**
+	 * Release any resources held by this reader. Does not close the underlying
+	 * stream.
+	 */
+	void close() throws IOException;
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.io;
+
+import java.io.IOException;
+
+/**
+ * A writer that accepts a stream of element events (in the style of StAX),
+ * allowing an animation to be written one element at a time instead of
+ * building the entire document in memory first.
+ * <p/>
+ * Attributes must be written immediately after the element they belong to is
+ * started, before any text or child elements.
+ */
+public interface ElementWriter
+{
+	/**
+	 * Begin the document. Must be called before any other method.
+	 */
+	void startDocument() throws IOException;
+
+	/**
+	 * Start a new element, as a child of the current element.
+	 *
+	 * @param name
+	 *            The element name
+	 */
+	void startElement(String name) throws IOException;
+
+	/**
+	 * Add an attribute to the most recently started element.
+	 *
+	 * @param name
+	 *            The attribute name
+	 * @param value
+	 *            The attribute value
+	 */
+	void attribute(String name, String value) throws IOException;
+
+	/**
+	 * Add text content to the current element.
+	 *
+	 * @param text
+	 *            The text to add
+	 */
+	void text(String text) throws IOException;
+
+	/**
+	 * End the current element.
+	 */
+	void endElement() throws IOException;
+
+	/**
+	 * End the document, flushing any buffered output. Does not close the
+	 * underlying stream.
+	 */
+	void endDocument() throws IOException;
+}
@@ -20,9 +20,13 @@ import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.avlist.AVListImpl;
 import gov.nasa.worldwind.util.WWXML;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
@@ -43,6 +47,9 @@ import au.gov.ga.worldwind.common.util.XMLUtil;
 /**
  * An implementation of the {@link AnimationReader} interface that reads animations from
  * an XML file.
+ * <p/>
+ * Version 2 files are streamed (see {@link AnimationStreams}), so the DOM for the entire
+ * file is never held in memory. Version 1 files are transformed into version 2 via a DOM.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  */
@@ -66,42 +73,71 @@ public class XmlAnimationReader implements AnimationReader
 		Validate.notNull(file, "A file must be provided");
 		Validate.notNull(worldWindow, "A world window must be provided");
 		
-		Document xmlDocument = WWXML.openDocument(file);
-		Validate.notNull(xmlDocument, "File " + file.getName() + " is not a valid XML animation file.");
-		
 		AnimationFileVersion version = getFileVersion(file);
 		if (version == null)
 		{
 			throw new IllegalArgumentException("File " + file.getName() + " is not a valid XML animation file.");
 		}
 		
-		AVList context = new AVListImpl();
-		context.setValue(version.getConstants().getWorldWindowKey(), worldWindow);
-		
 		switch (version)
 		{
 			case VERSION010:
 			{
-				// Transform the V1 -> V2, then process as normal
+				return readV1Animation(file, worldWindow);
+			}
+			default:
+			{
+				InputStream inputStream = null;
 				try
 				{
-					xmlDocument = getTransformedDocument(xmlDocument);
+					inputStream = new BufferedInputStream(new FileInputStream(file));
+					ElementReader reader = new XmlElementReader(inputStream);
+					try
+					{
+						return AnimationStreams.readAnimation(reader, version, worldWindow);
+					}
+					finally
+					{
+						reader.close();
+					}
 				}
-				catch (Exception e)
+				catch (IOException e)
 				{
 					throw new IllegalArgumentException("File " + file.getName() + " is not a valid XML animation file.", e);
 				}
-				version = AnimationFileVersion.VERSION020;
-				
-			}
-			default:
-			{
-				Element animationElement = WWXML.getElement(xmlDocument.getDocumentElement(), version.getConstants().getAnimationElementName(), null);
-				return new WorldWindAnimationImpl(worldWindow).fromXml(animationElement, version, context);
+				finally
+				{
+					closeQuietly(inputStream);
+				}
 			}
-			
 		}
 	}
+	
+	/**
+	 * Read a V1 animation file, by transforming it into a V2 document
+	 */
+	private Animation readV1Animation(File file, WorldWindow worldWindow)
+	{
+		Document xmlDocument = WWXML.openDocument(file);
+		Validate.notNull(xmlDocument, "File " + file.getName() + " is not a valid XML animation file.");
+		
+		// Transform the V1 -> V2, then process as normal
+		try
+		{
+			xmlDocument = getTransformedDocument(xmlDocument);
+		}
+		catch (Exception e)
+		{
+			throw new IllegalArgumentException("File " + file.getName() + " is not a valid XML animation file.", e);
+		}
+		AnimationFileVersion version = AnimationFileVersion.VERSION020;
+		
+		AVList context = new AVListImpl();
+		context.setValue(version.getConstants().getWorldWindowKey(), worldWindow);
+		
+		Element animationElement = WWXML.getElement(xmlDocument.getDocumentElement(), version.getConstants().getAnimationElementName(), null);
+		return new WorldWindAnimationImpl(worldWindow).fromXml(animationElement, version, context);
+	}
 
 	@Override
 	public AnimationFileVersion getFileVersion(String fileName)
@@ -115,24 +151,72 @@ public class XmlAnimationReader implements AnimationReader
 	{
 		Validate.notNull(file, "A file must be provided");
 		
-		Document xmlDocument = WWXML.openDocument(file);
-		if (xmlDocument == null)
+		// Only the root element is needed, so don't parse the whole document
+		InputStream inputStream = null;
+		try
+		{
+			inputStream = new BufferedInputStream(new FileInputStream(file));
+			ElementReader reader = new XmlElementReader(inputStream);
+			try
+			{
+				int event;
+				while ((event = reader.next()) == ElementReader.TEXT)
+				{
+				}
+				if (event != ElementReader.START_ELEMENT)
+				{
+					return null;
+				}
+				
+				String rootElementName = reader.getName();
+				// If it's V2 or above, get the version from the root node attribute
+				if (rootElementName.equals(AnimationFileVersion.VERSION020.getConstants().getRootElementName()))
+				{
+					for (int i = 0; i < reader.getAttributeCount(); i++)
+					{
+						if (reader.getAttributeName(i).equals(WORLD_WIND_ANIMATION_VERSION))
+						{
+							AnimationFileVersion version = AnimationFileVersion.fromDisplayName(reader.getAttributeValue(i));
+							return version == null || version.isBinary() ? null : version;
+						}
+					}
+				}
+				// Otherwise, check for a V1 file
+				else if (rootElementName.equals(AnimationFileVersion.VERSION010.getConstants().getRootElementName()))
+				{
+					return AnimationFileVersion.VERSION010;
+				}
+				return null;
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+		catch (Exception e)
 		{
 			return null;
 		}
-		
-		Element rootElement = xmlDocument.getDocumentElement();
-		// If it's V2 or above, get the version from the root node attribute
-		if (rootElement.getNodeName().equals(AnimationFileVersion.VERSION020.getConstants().getRootElementName()))
+		finally
+		{
+			closeQuietly(inputStream);
+		}
+	}
+	
+	static void closeQuietly(InputStream inputStream)
+	{
+		if (inputStream == null)
+		{
+			return;
+		}
+		try
 		{
-			return AnimationFileVersion.fromDisplayName(WWXML.getText(rootElement, XmlSerializable.ATTRIBUTE_PATH_PREFIX + WORLD_WIND_ANIMATION_VERSION, null));
+			inputStream.close();
 		}
-		// Otherwise, check for a V1 file
-		else if (rootElement.getNodeName().equals(AnimationFileVersion.VERSION010.getConstants().getRootElementName()))
+		catch (IOException e)
 		{
-			return AnimationFileVersion.VERSION010;
+			// ignore
 		}
-		return null;
 	}
 	
 	/**
@@ -15,22 +15,21 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.animator.animation.io;
 
-import gov.nasa.worldwind.util.WWXML;
-
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import java.io.OutputStream;
 
 import au.gov.ga.worldwind.animator.animation.Animation;
 import au.gov.ga.worldwind.common.util.Validate;
-import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
  * An {@link AnimationWriter} that writes an {@link Animation} in the <em>version 2</em>
  * XML format.
+ * <p/>
+ * The XML is streamed to the output one animatable object at a time (see
+ * {@link AnimationStreams}), so the DOM for the entire animation is never held in memory.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  *
@@ -64,17 +63,42 @@ public class XmlAnimationWriter implements AnimationWriter
 		Validate.notNull(file, "A file must be provided");
 		Validate.notNull(animation, "An animation must be provided");
 		
-		Document document = WWXML.createDocumentBuilder(false).newDocument();
-		
-		Element rootElement = document.createElement("worldWindAnimation");
-		document.appendChild(rootElement);
-		
-		WWXML.setTextAttribute(rootElement, "version", CURRENT_FILE_VERSION.getDisplayName());
-
-		rootElement.appendChild(animation.toXml(rootElement, CURRENT_FILE_VERSION));
-		
-		XMLUtil.saveDocumentToFormattedStream(document, new FileOutputStream(file));
+		OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+		try
+		{
+			writeAnimation(outputStream, animation);
+		}
+		finally
+		{
+			outputStream.close();
+		}
+	}
+	
+	/**
+	 * Write the provided {@link Animation} to the given stream. The stream is not closed.
+	 * 
+	 * @param outputStream The stream to write to
+	 * @param animation The animation to write
+	 * 
+	 * @throws IOException if a problem occurs during writing
+	 */
+	public void writeAnimation(OutputStream outputStream, Animation animation) throws IOException
+	{
+		AnimationStreams.writeAnimation(animation, CURRENT_FILE_VERSION, new XmlElementWriter(outputStream));
+	}
+	
+	/**
+	 * Write the provided {@link AnimationSnapshot} to the given stream. The stream is not closed.
+	 * This can be called on any thread. The snapshot must have been captured with
+	 * {@link #getCurrentFileVersion()}.
+	 * 
+	 * @param outputStream The stream to write to
+	 * @param snapshot The animation snapshot to write
+	 * 
+	 * @throws IOException if a problem occurs during writing
+	 */
+	public void writeAnimation(OutputStream outputStream, AnimationSnapshot snapshot) throws IOException
+	{
+		AnimationStreams.writeAnimation(snapshot, CURRENT_FILE_VERSION, new XmlElementWriter(outputStream));
 	}
-
-
 }
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * An {@link ElementReader} that reads XML from an input stream using a StAX
+ * {@link XMLStreamReader}.
+ */
+public class XmlElementReader implements ElementReader
+{
+	private static final XMLInputFactory FACTORY;
+	static
+	{
+		FACTORY = XMLInputFactory.newInstance();
+		FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+	}
+
+	private final XMLStreamReader reader;
+
+	public XmlElementReader(InputStream is) throws IOException
+	{
+		try
+		{
+			synchronized (FACTORY)
+			{
+				reader = FACTORY.createXMLStreamReader(is);
+			}
+		}
+		catch (XMLStreamException e)
+		{
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public int next() throws IOException
+	{
+		try
+		{
+			while (reader.hasNext())
+			{
+				switch (reader.next())
+				{
+				case XMLStreamConstants.START_ELEMENT:
+					return START_ELEMENT;
+				case XMLStreamConstants.END_ELEMENT:
+					return END_ELEMENT;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					return TEXT;
+				case XMLStreamConstants.END_DOCUMENT:
+					return END_DOCUMENT;
+				}
+			}
+			return END_DOCUMENT;
+		}
+		catch (XMLStreamException e)
+		{
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public String getName()
+	{
+		return reader.getLocalName();
+	}
+
+	@Override
+	public int getAttributeCount()
+	{
+		return reader.getAttributeCount();
+	}
+
+	@Override
+	public String getAttributeName(int index)
+	{
+		return reader.getAttributeLocalName(index);
+	}
+
+	@Override
+	public String getAttributeValue(int index)
+	{
+		return reader.getAttributeValue(index);
+	}
+
+	@Override
+	public String getText()
+	{
+		return reader.getText();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			reader.close();
+		}
+		catch (XMLStreamException e)
+		{
+			throw new IOException(e);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.io;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link ElementWriter} that writes indented XML to an output stream.
+ * <p/>
+ * The output matches that produced by
+ * {@link au.gov.ga.worldwind.common.util.XMLUtil#saveDocumentToFormattedStream}
+ * (UTF-8, 4 space indent), so files written with this class are identical to
+ * those written via a DOM document.
+ */
+public class XmlElementWriter implements ElementWriter
+{
+	private static final String INDENT = "    ";
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private final Writer writer;
+	private final List<String> openElements = new ArrayList<String>();
+	private final List<Boolean> openElementsHaveChildren = new ArrayList<Boolean>();
+	private boolean startTagOpen = false;
+
+	public XmlElementWriter(OutputStream os)
+	{
+		writer = new BufferedWriter(new OutputStreamWriter(os, AnimationStreams.UTF8));
+	}
+
+	@Override
+	public void startDocument() throws IOException
+	{
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+	}
+
+	@Override
+	public void startElement(String name) throws IOException
+	{
+		closeStartTag();
+		int depth = openElements.size();
+		if (depth > 0)
+		{
+			openElementsHaveChildren.set(depth - 1, true);
+		}
+		newLine(depth);
+		writer.write('<');
+		writer.write(name);
+		openElements.add(name);
+		openElementsHaveChildren.add(false);
+		startTagOpen = true;
+	}
+
+	@Override
+	public void attribute(String name, String value) throws IOException
+	{
+		if (!startTagOpen)
+		{
+			throw new IllegalStateException("Attributes must be written directly after the element is started");
+		}
+		writer.write(' ');
+		writer.write(name);
+		writer.write("=\"");
+		escape(value, true);
+		writer.write('"');
+	}
+
+	@Override
+	public void text(String text) throws IOException
+	{
+		closeStartTag();
+		escape(text, false);
+	}
+
+	@Override
+	public void endElement() throws IOException
+	{
+		int depth = openElements.size() - 1;
+		String name = openElements.remove(depth);
+		boolean hasChildren = openElementsHaveChildren.remove(depth);
+		if (startTagOpen)
+		{
+			writer.write("/>");
+			startTagOpen = false;
+			return;
+		}
+		if (hasChildren)
+		{
+			newLine(depth);
+		}
+		writer.write("</");
+		writer.write(name);
+		writer.write('>');
+	}
+
+	@Override
+	public void endDocument() throws IOException
+	{
+		writer.write(LINE_SEPARATOR);
+		writer.flush();
+	}
+
+	private void closeStartTag() throws IOException
+	{
+		if (startTagOpen)
+		{
+			writer.write('>');
+			startTagOpen = false;
+		}
+	}
+
+	private void newLine(int depth) throws IOException
+	{
+		writer.write(LINE_SEPARATOR);
+		for (int i = 0; i < depth; i++)
+		{
+			writer.write(INDENT);
+		}
+	}
+
+	private void escape(String s, boolean attribute) throws IOException
+	{
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			switch (c)
+			{
+			case '&':
+				writer.write("&amp;");
+				break;
+			case '<':
+				writer.write("&lt;");
+				break;
+			case '>':
+				writer.write("&gt;");
+				break;
+			case '"':
+				writer.write(attribute ? "&quot;" : "\"");
+				break;
+			case '\r':
+				writer.write("&#13;");
+				break;
+			case '\n':
+				writer.write(attribute ? "&#10;" : "\n");
+				break;
+			case '\t':
+				writer.write(attribute ? "&#9;" : "\t");
+				break;
+			default:
+				writer.write(c);
+			}
+		}
+	}
+}
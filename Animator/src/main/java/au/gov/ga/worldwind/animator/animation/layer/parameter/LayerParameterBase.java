@@ -19,7 +19,6 @@ import gov.nasa.worldwind.layers.Layer;
 import au.gov.ga.worldwind.animator.animation.Animation;
 import au.gov.ga.worldwind.animator.animation.io.AnimationIOConstants;
 import au.gov.ga.worldwind.animator.animation.parameter.ParameterBase;
-import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
 import au.gov.ga.worldwind.common.util.Validate;
 
 /**
@@ -76,7 +75,6 @@ public abstract class LayerParameterBase extends ParameterBase implements LayerP
 	public void apply()
 	{
 		int frame = animation.getCurrentFrame();
-		ParameterValue value = getValueAtFrame(frame);
-		applyValueIfEnabled(value.getValue(), frame);
+		applyValueIfEnabled(getBakedValueAtFrame(frame), frame);
 	}
 }
@@ -0,0 +1,357 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.parameter;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import au.gov.ga.worldwind.animator.animation.Animatable;
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.KeyFrame;
+import au.gov.ga.worldwind.animator.animation.event.AnimationEvent;
+import au.gov.ga.worldwind.animator.animation.event.AnimationEventListener;
+import au.gov.ga.worldwind.animator.math.interpolation.Interpolator;
+import au.gov.ga.worldwind.animator.math.vector.Vector2;
+import au.gov.ga.worldwind.common.util.Validate;
+
+/**
+ * A primitive-array cache of the interpolated curve of a single
+ * {@link Parameter}.
+ * <p/>
+ * Values are baked lazily into a <code>double[]</code> indexed by frame, one
+ * key frame interval at a time, using a single {@link Interpolator} per
+ * interval. Once baked, values can be read without allocating any
+ * {@link ParameterValue}s or {@link Interpolator}s.
+ * <p/>
+ * The curve listens to the {@link Animation} for changes. Edits to a
+ * parameter value or key frame only invalidate the key frame intervals either
+ * side of the edited frame; changes to the animation as a whole (scaling,
+ * frame count changes etc.) invalidate the entire curve. The animation only
+ * holds the curve weakly, so a curve whose parameter has been discarded
+ * without calling {@link #destroy()} can still be garbage collected.
+ */
+public class BakedParameterCurve implements AnimationEventListener
+{
+	private final ParameterBase parameter;
+	private final Animation animation;
+	private final AnimationEventListener listener;
+
+	/** Frames of the key frames that contain a value for the parameter */
+	private int[] keyFrames = new int[0];
+	/** Values of the parameter at each key frame in {@link #keyFrames} */
+	private double[] keyValues = new double[0];
+	/** Baked curve values, indexed by frame */
+	private double[] values = new double[0];
+	/** Frames in {@link #values} that have been baked */
+	private final BitSet baked = new BitSet();
+
+	/**
+	 * Guards the dirty state; never held while calling into the animation, as
+	 * events can be fired while the animation's key frame lock is held
+	 */
+	private final Object dirtyLock = new Object();
+	private boolean keyFramesDirty = true;
+	private int dirtyStartFrame = Integer.MIN_VALUE;
+	private int dirtyEndFrame = Integer.MAX_VALUE;
+
+	public BakedParameterCurve(ParameterBase parameter, Animation animation)
+	{
+		Validate.notNull(parameter, "A parameter is required");
+		Validate.notNull(animation, "An animation is required");
+
+		this.parameter = parameter;
+		this.animation = animation;
+		this.listener = new WeakCurveListener(this, animation);
+		animation.addChangeListener(listener);
+	}
+
+	/**
+	 * Stop listening to the animation for changes. Once called, this curve
+	 * should no longer be used.
+	 */
+	public void destroy()
+	{
+		animation.removeChangeListener(listener);
+	}
+
+	/**
+	 * @return The value of the parameter at the provided frame
+	 */
+	public synchronized double getValueAtFrame(int frame)
+	{
+		validateKeyFrames();
+
+		if (keyFrames.length == 0)
+		{
+			return parameter.getDefaultValue(frame);
+		}
+		if (frame <= keyFrames[0])
+		{
+			return keyValues[0];
+		}
+		if (frame >= keyFrames[keyFrames.length - 1])
+		{
+			return keyValues[keyValues.length - 1];
+		}
+		if (!baked.get(frame) && !bakeIntervalContaining(frame))
+		{
+			// the key frames changed underneath the snapshot; don't cache this value
+			return parameter.getValueAtFrame(frame).getValue();
+		}
+		return values[frame];
+	}
+
+	/**
+	 * Get the values of the parameter between the provided frames, inclusive.
+	 *
+	 * @param startFrame
+	 *            Start frame (inclusive)
+	 * @param endFrame
+	 *            End frame (inclusive)
+	 * @param array
+	 *            Array to put values in (if null or doesn't contain enough
+	 *            space, a new array is returned)
+	 * @return Values for the frames provided
+	 */
+	public synchronized double[] getValuesBetweenFrames(int startFrame, int endFrame, double[] array)
+	{
+		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
+
+		if (array == null || array.length < (endFrame - startFrame + 1))
+		{
+			array = new double[endFrame - startFrame + 1];
+		}
+		for (int frame = startFrame; frame <= endFrame; frame++)
+		{
+			array[frame - startFrame] = getValueAtFrame(frame);
+		}
+		return array;
+	}
+
+	/**
+	 * Invalidate the entire curve, forcing it to be re-baked on the next read.
+	 */
+	public void invalidate()
+	{
+		synchronized (dirtyLock)
+		{
+			keyFramesDirty = true;
+			dirtyStartFrame = Integer.MIN_VALUE;
+			dirtyEndFrame = Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Invalidate the key frame intervals either side of the provided frame.
+	 */
+	public void invalidate(int frame)
+	{
+		synchronized (dirtyLock)
+		{
+			if (keyFramesDirty)
+			{
+				dirtyStartFrame = Math.min(dirtyStartFrame, frame);
+				dirtyEndFrame = Math.max(dirtyEndFrame, frame);
+			}
+			else
+			{
+				keyFramesDirty = true;
+				dirtyStartFrame = frame;
+				dirtyEndFrame = frame;
+			}
+		}
+	}
+
+	@Override
+	public void receiveAnimationEvent(AnimationEvent event)
+	{
+		ParameterValue value = event.getObjectInChainOfType(ParameterValue.class);
+		if (value != null)
+		{
+			if (value.getOwner() == parameter)
+			{
+				invalidate(value.getFrame());
+			}
+			return;
+		}
+
+		KeyFrame keyFrame = event.getObjectInChainOfType(KeyFrame.class);
+		if (keyFrame != null)
+		{
+			if (keyFrame.hasValueForParameter(parameter))
+			{
+				invalidate(keyFrame.getFrame());
+			}
+			return;
+		}
+
+		// Changes to other parameters or animatable objects don't affect this curve,
+		// but changes to the animation itself (scaling, frame count etc.) might
+		if (event.getObjectInChainOfType(Parameter.class) != null
+				|| event.getObjectInChainOfType(Animatable.class) != null)
+		{
+			return;
+		}
+		invalidate();
+	}
+
+	/**
+	 * Reload the key frame snapshot if it is dirty, and clear the baked flags
+	 * for each interval that touches the dirty frame range (in both the old
+	 * and the new key frame snapshot).
+	 */
+	private void validateKeyFrames()
+	{
+		int dirtyStartFrame;
+		int dirtyEndFrame;
+		synchronized (dirtyLock)
+		{
+			if (!keyFramesDirty)
+			{
+				return;
+			}
+			dirtyStartFrame = this.dirtyStartFrame;
+			dirtyEndFrame = this.dirtyEndFrame;
+			keyFramesDirty = false;
+		}
+
+		int[] oldKeyFrames = keyFrames;
+
+		List<KeyFrame> keyFrameList = animation.getKeyFrames(parameter);
+		int[] newKeyFrames = new int[keyFrameList.size()];
+		double[] newKeyValues = new double[keyFrameList.size()];
+		for (int i = 0; i < newKeyFrames.length; i++)
+		{
+			KeyFrame keyFrame = keyFrameList.get(i);
+			newKeyFrames[i] = keyFrame.getFrame();
+			newKeyValues[i] = keyFrame.getValueForParameter(parameter).getValue();
+		}
+		keyFrames = newKeyFrames;
+		keyValues = newKeyValues;
+
+		int lastFrame = newKeyFrames.length == 0 ? 0 : newKeyFrames[newKeyFrames.length - 1];
+		if (values.length < lastFrame + 1)
+		{
+			values = Arrays.copyOf(values, lastFrame + 1);
+		}
+
+		int clearStart = Math.min(frameBefore(oldKeyFrames, dirtyStartFrame), frameBefore(newKeyFrames, dirtyStartFrame));
+		int clearEnd = Math.max(frameAfter(oldKeyFrames, dirtyEndFrame), frameAfter(newKeyFrames, dirtyEndFrame));
+		clearStart = Math.max(0, clearStart);
+		clearEnd = Math.min(values.length - 1, clearEnd);
+		if (clearStart <= clearEnd)
+		{
+			baked.clear(clearStart, clearEnd + 1);
+		}
+
+	}
+
+	/**
+	 * @return The last key frame strictly before the provided frame, or
+	 *         {@link Integer#MIN_VALUE} if there isn't one
+	 */
+	private static int frameBefore(int[] keyFrames, int frame)
+	{
+		if (frame == Integer.MIN_VALUE)
+		{
+			return frame;
+		}
+		int index = Arrays.binarySearch(keyFrames, frame);
+		int insertion = index >= 0 ? index : -index - 1;
+		return insertion > 0 ? keyFrames[insertion - 1] : Integer.MIN_VALUE;
+	}
+
+	/**
+	 * @return The first key frame strictly after the provided frame, or
+	 *         {@link Integer#MAX_VALUE} if there isn't one
+	 */
+	private static int frameAfter(int[] keyFrames, int frame)
+	{
+		if (frame == Integer.MAX_VALUE)
+		{
+			return frame;
+		}
+		int index = Arrays.binarySearch(keyFrames, frame);
+		int next = index >= 0 ? index + 1 : -index - 1;
+		return next < keyFrames.length ? keyFrames[next] : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Bake all values in the key frame interval containing the provided frame.
+	 * The frame must lie strictly between the first and last key frames.
+	 * 
+	 * @return <code>false</code> if the key frame snapshot is out of date and
+	 *         the interval could not be baked
+	 */
+	private boolean bakeIntervalContaining(int frame)
+	{
+		int index = Arrays.binarySearch(keyFrames, frame);
+		int start = index >= 0 ? index : -index - 2;
+		int startFrame = keyFrames[start];
+		int endFrame = keyFrames[start + 1];
+
+		KeyFrame previousKeyFrame = animation.getKeyFrame(startFrame);
+		KeyFrame nextKeyFrame = animation.getKeyFrame(endFrame);
+		ParameterValue previousValue = previousKeyFrame == null ? null : previousKeyFrame.getValueForParameter(parameter);
+		ParameterValue nextValue = nextKeyFrame == null ? null : nextKeyFrame.getValueForParameter(parameter);
+		if (previousValue == null || nextValue == null)
+		{
+			invalidate();
+			return false;
+		}
+
+		Interpolator<Vector2> interpolator = InterpolatorFactory.getInterpolator(previousValue, nextValue);
+
+		values[startFrame] = keyValues[start];
+		double window = endFrame - startFrame;
+		for (int f = startFrame + 1; f < endFrame; f++)
+		{
+			values[f] = interpolator.computeValue((f - startFrame) / window).y;
+		}
+		baked.set(startFrame, endFrame);
+		return true;
+	}
+
+	/**
+	 * Forwards animation events to a weakly referenced curve, and removes
+	 * itself from the animation once the curve has been collected.
+	 */
+	private static class WeakCurveListener implements AnimationEventListener
+	{
+		private final WeakReference<BakedParameterCurve> curve;
+		private final Animation animation;
+
+		public WeakCurveListener(BakedParameterCurve curve, Animation animation)
+		{
+			this.curve = new WeakReference<BakedParameterCurve>(curve);
+			this.animation = animation;
+		}
+
+		@Override
+		public void receiveAnimationEvent(AnimationEvent event)
+		{
+			BakedParameterCurve curve = this.curve.get();
+			if (curve == null)
+			{
+				animation.removeChangeListener(this);
+				return;
+			}
+			curve.receiveAnimationEvent(event);
+		}
+	}
+}
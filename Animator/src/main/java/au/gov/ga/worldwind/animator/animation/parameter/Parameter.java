@@ -98,6 +98,38 @@ public interface Parameter extends AnimationObject, Serializable, Nameable, XmlS
 	 */
 	ParameterValue[] getValuesBetweenFrames(int startFrame, int endFrame, ParameterValue[] array);
 
+	/**
+	 * Get the value of this {@link Parameter} at the provided frame as a
+	 * primitive. See {@link Parameter#getValueAtFrame(int)}.
+	 * <p/>
+	 * Equivalent to <code>getValueAtFrame(frame).getValue()</code>, but
+	 * implementations may serve the value from a baked curve cache without
+	 * allocating any objects. Use this in preference to
+	 * {@link #getValueAtFrame(int)} during playback and drawing.
+	 *
+	 * @param frame
+	 *            The frame for which the value of the parameter is required
+	 *
+	 * @return The value of this {@link Parameter} at the provided frame.
+	 */
+	double getBakedValueAtFrame(int frame);
+
+	/**
+	 * Get the primitive values of this {@link Parameter} between the provided
+	 * frames, inclusive. See {@link Parameter#getBakedValueAtFrame(int)}.
+	 *
+	 * @param startFrame
+	 *            Start frame (inclusive)
+	 * @param endFrame
+	 *            End frame (inclusive)
+	 * @param array
+	 *            Array to put values in (if null or doesn't contain enough
+	 *            space, a new array is returned)
+	 *
+	 * @return Values for the frames provided.
+	 */
+	double[] getBakedValuesBetweenFrames(int startFrame, int endFrame, double[] array);
+
 	/**
 	 * Get the default value of this parameter. This could be a static value
 	 * stored in the parameter, or a dynamic value based on the current state of
@@ -31,6 +31,7 @@ import au.gov.ga.worldwind.animator.animation.event.ParameterEventImpl;
 import au.gov.ga.worldwind.animator.animation.event.PropagatingChangeableEventListener;
 import au.gov.ga.worldwind.animator.animation.io.AnimationFileVersion;
 import au.gov.ga.worldwind.animator.animation.io.AnimationIOConstants;
+import au.gov.ga.worldwind.animator.animation.io.AnimationStreams;
 import au.gov.ga.worldwind.animator.math.interpolation.Interpolator;
 import au.gov.ga.worldwind.animator.math.vector.Vector2;
 import au.gov.ga.worldwind.animator.util.Armable;
@@ -71,6 +72,12 @@ public abstract class ParameterBase extends PropagatingChangeableEventListener i
 
 	private final CodependantHelper codependantHelper;
 
+	/** Whether the baked curve is used to serve primitive values */
+	private boolean bakingEnabled = true;
+
+	/** Lazily created baked curve cache for this parameter */
+	private transient BakedParameterCurve bakedCurve;
+
 	/**
 	 * Constructor. Initialises the mandatory {@link Animation} parameter.
 	 */
@@ -250,6 +257,93 @@ public abstract class ParameterBase extends PropagatingChangeableEventListener i
 		return array;
 	}
 
+	@Override
+	public double getBakedValueAtFrame(int frame)
+	{
+		BakedParameterCurve curve = getBakedCurve();
+		if (curve == null)
+		{
+			return getValueAtFrame(frame).getValue();
+		}
+		return curve.getValueAtFrame(frame);
+	}
+
+	@Override
+	public double[] getBakedValuesBetweenFrames(int startFrame, int endFrame, double[] array)
+	{
+		BakedParameterCurve curve = getBakedCurve();
+		if (curve != null)
+		{
+			return curve.getValuesBetweenFrames(startFrame, endFrame, array);
+		}
+
+		Validate.isTrue(startFrame <= endFrame, "End frame must not be less than start frame");
+		ParameterValue[] values = getValuesBetweenFrames(startFrame, endFrame, null);
+		if (array == null || array.length < values.length)
+		{
+			array = new double[values.length];
+		}
+		for (int i = 0; i < values.length; i++)
+		{
+			array[i] = values[i].getValue();
+		}
+		return array;
+	}
+
+	/**
+	 * @return Whether primitive values are served from a baked curve cache
+	 */
+	public boolean isBakingEnabled()
+	{
+		return bakingEnabled;
+	}
+
+	/**
+	 * Enable/disable the baked curve cache used by
+	 * {@link #getBakedValueAtFrame(int)} and
+	 * {@link #getBakedValuesBetweenFrames(int, int, double[])}. When disabled,
+	 * values are interpolated on every call.
+	 */
+	public synchronized void setBakingEnabled(boolean bakingEnabled)
+	{
+		this.bakingEnabled = bakingEnabled;
+		if (!bakingEnabled)
+		{
+			releaseBakedCurve();
+		}
+	}
+
+	/**
+	 * Discard the baked curve (if any) and stop it listening to the
+	 * animation. Called when this parameter is removed from its animation; a
+	 * new curve is created if baked values are requested again.
+	 */
+	public synchronized void releaseBakedCurve()
+	{
+		if (bakedCurve != null)
+		{
+			bakedCurve.destroy();
+			bakedCurve = null;
+		}
+	}
+
+	/**
+	 * @return The baked curve for this parameter, or <code>null</code> if
+	 *         baking is disabled
+	 */
+	private synchronized BakedParameterCurve getBakedCurve()
+	{
+		if (!bakingEnabled || animation == null)
+		{
+			return null;
+		}
+		if (bakedCurve == null)
+		{
+			bakedCurve = new BakedParameterCurve(this, animation);
+		}
+		return bakedCurve;
+	}
+
 	/**
 	 * Invoked by the {@link ParameterBase#getValueAtFrame(int)} and
 	 * {@link ParameterBase#getValuesBetweenFrames(int, int, ParameterValue[])}
@@ -385,10 +479,18 @@ public abstract class ParameterBase extends PropagatingChangeableEventListener i
 		WWXML.setDoubleAttribute(parameterElement, constants.getParameterAttributeDefaultValue(), defaultValue);
 		WWXML.setBooleanAttribute(parameterElement, constants.getParameterAttributeEnabled(), enabled);
 
-		List<KeyFrame> keyFrames = getKeyFramesWithThisParameter();
-		for (KeyFrame keyFrame : keyFrames)
+		if (AnimationStreams.isStreamingValues(parent.getOwnerDocument()))
+		{
+			// Values are written from a snapshot as this element is streamed
+			parameterElement.setUserData(AnimationStreams.PARAMETER_KEY, this, null);
+		}
+		else
 		{
-			parameterElement.appendChild(keyFrame.getValueForParameter(this).toXml(parameterElement, version));
+			List<KeyFrame> keyFrames = getKeyFramesWithThisParameter();
+			for (KeyFrame keyFrame : keyFrames)
+			{
+				parameterElement.appendChild(keyFrame.getValueForParameter(this).toXml(parameterElement, version));
+			}
 		}
 
 		saveParameterToXml(result, parameterElement, version);
@@ -490,6 +592,19 @@ public abstract class ParameterBase extends PropagatingChangeableEventListener i
 	 */
 	protected abstract String getDefaultName();
 
+	@Override
+	protected boolean handleEvent(AnimationEvent event)
+	{
+		// Invalidate the baked curve before the event is propagated to this parameter's listeners,
+		// so they never read stale values (the curve is also notified through the animation)
+		BakedParameterCurve curve = bakedCurve;
+		if (curve != null)
+		{
+			curve.receiveAnimationEvent(event);
+		}
+		return true;
+	}
+
 	@Override
 	protected AnimationEvent createEvent(Type type, AnimationEvent cause, Object value)
 	{
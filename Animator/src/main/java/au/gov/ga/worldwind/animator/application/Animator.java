@@ -121,8 +121,10 @@ import au.gov.ga.worldwind.animator.animation.event.AnimationEvent;
 import au.gov.ga.worldwind.animator.animation.event.AnimationEvent.Type;
 import au.gov.ga.worldwind.animator.animation.event.AnimationEventListener;
 import au.gov.ga.worldwind.animator.animation.io.AnimationFileVersion;
+import au.gov.ga.worldwind.animator.animation.io.AnimationIO;
+import au.gov.ga.worldwind.animator.animation.io.AnimationReader;
 import au.gov.ga.worldwind.animator.animation.io.AnimationWriter;
-import au.gov.ga.worldwind.animator.animation.io.XmlAnimationReader;
+import au.gov.ga.worldwind.animator.animation.io.BinaryAnimationWriter;
 import au.gov.ga.worldwind.animator.animation.io.XmlAnimationWriter;
 import au.gov.ga.worldwind.animator.animation.layer.AnimatableLayer;
 import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
@@ -281,6 +283,9 @@ public class Animator
 	 * remember last used folders.
 	 */
 	private JFileChooser fileChooser;
+	private static final FileFilter BINARY_ANIMATION_FILTER = new FileNameExtensionFilter(
+			"Binary animation files (*" + BinaryAnimationWriter.FILE_EXTENSION + ")",
+			BinaryAnimationWriter.FILE_EXTENSION.substring(1));
 
 	/** The menu list of recently used files */
 	private RecentlyUsedFilesMenuList mruFileMenu;
@@ -1325,7 +1330,7 @@ public class Animator
 	{
 		if (querySave())
 		{
-			setupFileChooser(getMessage(getOpenDialogTitleKey()), FileFilters.getXmlFilter());
+			setupAnimationFileChooser(getMessage(getOpenDialogTitleKey()));
 			if (fileChooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION)
 			{
 				File animationFile = fileChooser.getSelectedFile();
@@ -1357,7 +1362,7 @@ public class Animator
 		Animation oldAnimation = getCurrentAnimation();
 		try
 		{
-			XmlAnimationReader animationReader = new XmlAnimationReader();
+			AnimationReader animationReader = AnimationIO.createReader(animationFile);
 
 			// Check the file version and display appropriate messages
 			AnimationFileVersion version = animationReader.getFileVersion(animationFile);
@@ -1458,14 +1463,18 @@ public class Animator
 	 */
 	boolean saveAs()
 	{
-		setupFileChooser(getMessage(getSaveAsDialogTitleKey()), FileFilters.getXmlFilter());
+		setupAnimationFileChooser(getMessage(getSaveAsDialogTitleKey()));
 
 		if (fileChooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION)
 		{
 			File newFile = fileChooser.getSelectedFile();
-			if (!newFile.getName().toLowerCase().endsWith(XmlFilter.getFileExtension()))
+			if (!newFile.getName().toLowerCase().endsWith(XmlFilter.getFileExtension())
+					&& !AnimationIO.isBinaryFileName(newFile))
 			{
-				newFile = new File(newFile.getParent(), newFile.getName() + XmlFilter.getFileExtension());
+				String extension =
+						fileChooser.getFileFilter() == BINARY_ANIMATION_FILTER ? BinaryAnimationWriter.FILE_EXTENSION
+								: XmlFilter.getFileExtension();
+				newFile = new File(newFile.getParent(), newFile.getName() + extension);
 			}
 			if (newFile.exists())
 			{
@@ -1506,6 +1515,20 @@ public class Animator
 		fileChooser.setDialogTitle(title);
 	}
 
+	/**
+	 * Setup the file chooser for opening/saving animation files, which can be
+	 * either XML or binary
+	 * 
+	 * @param title
+	 *            The title to display in the dialog title bar
+	 */
+	private void setupAnimationFileChooser(String title)
+	{
+		setupFileChooser(title, FileFilters.getXmlFilter());
+		fileChooser.addChoosableFileFilter(BINARY_ANIMATION_FILTER);
+		fileChooser.setFileFilter(FileFilters.getXmlFilter());
+	}
+
 	/**
 	 * Save the animation to the provided file
 	 * 
@@ -1518,7 +1541,7 @@ public class Animator
 		{
 			try
 			{
-				AnimationWriter writer = new XmlAnimationWriter();
+				AnimationWriter writer = AnimationIO.createWriter(file);
 				writer.writeAnimation(file, getCurrentAnimation());
 				resetChanged();
 			}
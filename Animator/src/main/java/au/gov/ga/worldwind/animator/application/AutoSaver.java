@@ -15,9 +15,12 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.animator.application;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -26,8 +29,13 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.locks.ReadWriteLock;
 
+import javax.swing.SwingUtilities;
+
 import au.gov.ga.worldwind.animator.animation.Animation;
-import au.gov.ga.worldwind.animator.animation.io.AnimationWriter;
+import au.gov.ga.worldwind.animator.animation.io.AnimationFileVersion;
+import au.gov.ga.worldwind.animator.animation.io.AnimationIO;
+import au.gov.ga.worldwind.animator.animation.io.AnimationSnapshot;
+import au.gov.ga.worldwind.animator.animation.io.BinaryAnimationWriter;
 import au.gov.ga.worldwind.animator.animation.io.XmlAnimationWriter;
 import au.gov.ga.worldwind.animator.application.settings.Settings;
 import au.gov.ga.worldwind.animator.util.ExceptionLogger;
@@ -35,6 +43,12 @@ import au.gov.ga.worldwind.common.util.LenientReadWriteLock;
 
 /**
  * A class that auto-saves animations according to user preferences.
+ * <p/>
+ * An {@link AnimationSnapshot} of the animation is captured on the event
+ * dispatch thread (where the animation is modified). The snapshot is then
+ * encoded and written to file on the timer thread, which only reads the
+ * snapshot. The UI is only blocked while the snapshot is captured, and edits
+ * made while the file is written don't end up in the saved animation.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  */
@@ -46,7 +60,6 @@ public class AutoSaver implements ChangeOfAnimationListener
 	private ReadWriteLock animationLock = new LenientReadWriteLock();
 	
 	private Timer timer;
-	private AnimationWriter writer = new XmlAnimationWriter();
 	
 	public AutoSaver(Animator targetApplication)
 	{
@@ -93,14 +106,6 @@ public class AutoSaver implements ChangeOfAnimationListener
 			@Override
 			public void run()
 			{
-				if (currentAnimation == null)
-				{
-					currentAnimation = targetApplication.getCurrentAnimation();
-					if (currentAnimation == null)
-					{
-						return;
-					}
-				}
 				saveCurrentAnimation();
 				cleanUpExpiredSaves();
 			}
@@ -114,20 +119,105 @@ public class AutoSaver implements ChangeOfAnimationListener
 	{
 		try
 		{
-			File saveFile = createAutoSaveFile();
+			File animationFile = targetApplication.getAnimationFile();
+			boolean binary = animationFile != null && AnimationIO.isBinaryFileName(animationFile);
 			
-			animationLock.readLock().lock();
-			writer.writeAnimation(saveFile, currentAnimation);
+			AnimationSnapshot snapshot = takeSnapshot(binary);
+			if (snapshot == null)
+			{
+				return;
+			}
+			
+			File saveFile = createAutoSaveFile();
+			writeSnapshot(snapshot, binary, saveFile);
 		}
 		catch (Exception e)
 		{
 			ExceptionLogger.logException(e);
 		}
-		finally
+	}
+	
+	/**
+	 * Capture a snapshot of the current animation. This is performed on the
+	 * event dispatch thread, so that the animation isn't modified while the
+	 * snapshot is taken; the key frame values are copied but not encoded.
+	 * 
+	 * @param binary Whether the snapshot will be written in the binary format
+	 * 
+	 * @return The snapshot, or <code>null</code> if there is no current animation
+	 */
+	private AnimationSnapshot takeSnapshot(boolean binary) throws Exception
+	{
+		final AnimationFileVersion version =
+				binary ? BinaryAnimationWriter.getContentVersion() : XmlAnimationWriter.getCurrentFileVersion();
+		final AnimationSnapshot[] snapshot = new AnimationSnapshot[1];
+		final RuntimeException[] exception = new RuntimeException[1];
+		Runnable capture = new Runnable()
 		{
-			animationLock.readLock().unlock();
+			@Override
+			public void run()
+			{
+				try
+				{
+					animationLock.readLock().lock();
+					if (currentAnimation == null)
+					{
+						currentAnimation = targetApplication.getCurrentAnimation();
+						if (currentAnimation == null)
+						{
+							return;
+						}
+					}
+					snapshot[0] = AnimationSnapshot.capture(currentAnimation, version);
+				}
+				catch (RuntimeException e)
+				{
+					exception[0] = e;
+				}
+				finally
+				{
+					animationLock.readLock().unlock();
+				}
+			}
+		};
+		
+		if (SwingUtilities.isEventDispatchThread())
+		{
+			capture.run();
+		}
+		else
+		{
+			SwingUtilities.invokeAndWait(capture);
 		}
 		
+		if (exception[0] != null)
+		{
+			throw exception[0];
+		}
+		return snapshot[0];
+	}
+	
+	/**
+	 * Encode the snapshot and write it to file, in the same format as the animation file
+	 */
+	private void writeSnapshot(AnimationSnapshot snapshot, boolean binary, File saveFile) throws IOException
+	{
+		OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(saveFile));
+		try
+		{
+			if (binary)
+			{
+				new BinaryAnimationWriter().writeAnimation(outputStream, snapshot);
+			}
+			else
+			{
+				new XmlAnimationWriter().writeAnimation(outputStream, snapshot);
+			}
+		}
+		finally
+		{
+			outputStream.close();
+		}
 	}
 	
 	private File createAutoSaveFile() throws IOException
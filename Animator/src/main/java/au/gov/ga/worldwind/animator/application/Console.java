@@ -34,7 +34,8 @@ import javax.media.opengl.GLProfile;
 
 import au.gov.ga.worldwind.animator.animation.Animation;
 import au.gov.ga.worldwind.animator.animation.RenderParameters;
-import au.gov.ga.worldwind.animator.animation.io.XmlAnimationReader;
+import au.gov.ga.worldwind.animator.animation.io.AnimationIO;
+import au.gov.ga.worldwind.animator.animation.io.AnimationReader;
 import au.gov.ga.worldwind.animator.application.render.AnimationRenderer;
 import au.gov.ga.worldwind.animator.application.settings.Settings;
 import au.gov.ga.worldwind.animator.view.AnimatorView;
@@ -82,7 +83,7 @@ public class Console
 
 			File input = new File(parameters.inputFile);
 			File output = new File(parameters.outputFile);
-			XmlAnimationReader animationReader = new XmlAnimationReader();
+			AnimationReader animationReader = AnimationIO.createReader(input);
 			Animation animation = animationReader.readAnimation(input, wwd);
 			AnimationRenderer renderer = new ConsoleOffscreenRenderer(wwd);
 
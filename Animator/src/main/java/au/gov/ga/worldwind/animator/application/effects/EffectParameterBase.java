@@ -17,7 +17,6 @@ package au.gov.ga.worldwind.animator.application.effects;
 
 import au.gov.ga.worldwind.animator.animation.Animation;
 import au.gov.ga.worldwind.animator.animation.parameter.ParameterBase;
-import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
 import au.gov.ga.worldwind.common.util.Validate;
 
 /**
@@ -68,7 +67,6 @@ public abstract class EffectParameterBase extends ParameterBase implements Effec
 	public void apply()
 	{
 		int frame = animation.getCurrentFrame();
-		ParameterValue value = getValueAtFrame(frame);
-		applyValueIfEnabled(value.getValue(), frame);
+		applyValueIfEnabled(getBakedValueAtFrame(frame), frame);
 	}
 }
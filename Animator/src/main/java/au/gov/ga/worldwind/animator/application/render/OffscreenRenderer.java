@@ -57,6 +57,8 @@ public class OffscreenRenderer extends AnimationRendererBase
 	private PaintTask prePostRenderTask;
 	private PaintTask postRenderTask;
 
+	private TilePrefetcher prefetcher;
+
 	public OffscreenRenderer(WorldWindow wwd, Animator targetApplication)
 	{
 		Validate.notNull(wwd, "A world window is required");
@@ -129,6 +131,10 @@ public class OffscreenRenderer extends AnimationRendererBase
 		};
 
 		wwd.redrawNow();
+
+		//load the tiles required by upcoming frames in the background
+		prefetcher = new TilePrefetcher(animation, renderDimensions);
+		prefetcher.start();
 	}
 
 	@Override
@@ -141,6 +147,7 @@ public class OffscreenRenderer extends AnimationRendererBase
 		}
 
 		updateSlider(frame);
+		prefetcher.prefetch(frame, renderParams.getEndFrame());
 		animation.applyFrame(frame);
 
 		//add the pre render task
@@ -164,6 +171,9 @@ public class OffscreenRenderer extends AnimationRendererBase
 	@Override
 	protected void doPostRender(Animation animation, RenderParameters renderParams)
 	{
+		prefetcher.stop();
+		prefetcher = null;
+
 		animatorSceneController.setRenderDimensions(null);
 		animatorSceneController.addPostPaintTask(new PaintTask()
 		{
@@ -0,0 +1,386 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.application.render;
+
+import static au.gov.ga.worldwind.animator.util.ExceptionLogger.logException;
+import gov.nasa.worldwind.WorldWindow;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Frustum;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Matrix;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.ElevationModel;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.layers.Layer;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.camera.Camera;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.DelegatorTextureTile;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.DelegatorTiledImageLayer;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+import au.gov.ga.worldwind.common.util.Validate;
+
+/**
+ * Loads the image and elevation tiles required by upcoming frames of an
+ * {@link Animation} on background threads, so that the renderer rarely has to
+ * wait on tile retrieval when it applies the next frame.
+ * <p/>
+ * The camera path is known in advance, so the view frustum of each upcoming
+ * frame is calculated from the camera parameters, and the tiles each enabled
+ * {@link DelegatorTiledImageLayer} would select for that view are loaded into
+ * the memory cache. Elevations are warmed by requesting elevations over the
+ * sectors the tessellator would use for that view.
+ * <p/>
+ * All animation state is read on the render thread in
+ * {@link #prefetch(int, int)}; the background threads only work with the
+ * resulting view snapshots.
+ */
+public class TilePrefetcher
+{
+	/** Default number of frames to prefetch ahead of the current frame */
+	public static final int DEFAULT_LOOK_AHEAD = 5;
+
+	/** Matches the default resolution target of the rectangular tessellator */
+	private static final double LOG10_RESOLUTION_TARGET = 1.3;
+	/** Matches the default density of the rectangular tessellator */
+	private static final int TESSELLATOR_DENSITY = 20;
+	/** Size of the top level tessellator sectors, in degrees */
+	private static final double TOP_LEVEL_SECTOR_SIZE = 36d;
+	private static final int MAX_ELEVATION_LEVEL = 20;
+
+	private final Animation animation;
+	private final Dimension renderDimensions;
+	private final int lookAhead;
+	private final int threadCount;
+
+	private ExecutorService executor;
+	private final LinkedList<FrameFuture> pending = new LinkedList<FrameFuture>();
+	private int nextFrame;
+	private volatile boolean stopped = true;
+
+	public TilePrefetcher(Animation animation, Dimension renderDimensions)
+	{
+		this(animation, renderDimensions, DEFAULT_LOOK_AHEAD, Runtime.getRuntime().availableProcessors());
+	}
+
+	public TilePrefetcher(Animation animation, Dimension renderDimensions, int lookAhead, int threadCount)
+	{
+		Validate.notNull(animation, "An animation is required");
+		Validate.notNull(renderDimensions, "Render dimensions are required");
+		Validate.isTrue(lookAhead > 0, "Look ahead must be greater than 0");
+		Validate.isTrue(threadCount > 0, "Thread count must be greater than 0");
+
+		this.animation = animation;
+		this.renderDimensions = renderDimensions;
+		this.lookAhead = lookAhead;
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Start the background prefetch threads.
+	 */
+	public synchronized void start()
+	{
+		if (!stopped)
+		{
+			return;
+		}
+		stopped = false;
+		nextFrame = Integer.MIN_VALUE;
+		executor = Executors.newFixedThreadPool(threadCount, new DaemonThreadFactory("Animator tile prefetcher"));
+	}
+
+	/**
+	 * Stop the background prefetch threads. Any outstanding prefetches are
+	 * abandoned.
+	 */
+	public synchronized void stop()
+	{
+		if (stopped)
+		{
+			return;
+		}
+		stopped = true;
+		pending.clear();
+		executor.shutdownNow();
+		executor = null;
+	}
+
+	/**
+	 * Schedule the prefetch of the frames following the provided frame, up to
+	 * the look ahead distance. Prefetches for frames that have already been
+	 * reached are cancelled. Should be called on the render thread before each
+	 * frame is applied.
+	 *
+	 * @param frame
+	 *            Frame about to be rendered
+	 * @param lastFrame
+	 *            Last frame that will be rendered
+	 */
+	public synchronized void prefetch(int frame, int lastFrame)
+	{
+		if (stopped)
+		{
+			return;
+		}
+
+		while (!pending.isEmpty() && pending.getFirst().frame <= frame)
+		{
+			pending.removeFirst().future.cancel(false);
+		}
+
+		WorldWindow wwd = animation.getWorldWindow();
+		Globe globe = wwd.getModel().getGlobe();
+		double verticalExaggeration = wwd.getSceneController().getVerticalExaggeration();
+		List<DelegatorTiledImageLayer> layers = getEnabledLayers();
+
+		int start = Math.max(nextFrame, frame + 1);
+		int end = Math.min(frame + lookAhead, lastFrame);
+		for (int f = start; f <= end; f++)
+		{
+			PrefetchView view = createView(f, globe, verticalExaggeration);
+			if (view != null)
+			{
+				Future<?> future = executor.submit(createTask(view, layers));
+				pending.addLast(new FrameFuture(f, future));
+			}
+		}
+		nextFrame = Math.max(nextFrame, end + 1);
+	}
+
+	/**
+	 * Create the task that prefetches the tiles for the provided view, which is
+	 * run on one of the background threads.
+	 */
+	protected Runnable createTask(PrefetchView view, List<DelegatorTiledImageLayer> layers)
+	{
+		return new PrefetchTask(view, layers);
+	}
+
+	protected List<DelegatorTiledImageLayer> getEnabledLayers()
+	{
+		List<DelegatorTiledImageLayer> layers = new ArrayList<DelegatorTiledImageLayer>();
+		for (Layer layer : animation.getLayers())
+		{
+			if (layer instanceof DelegatorTiledImageLayer && layer.isEnabled())
+			{
+				layers.add((DelegatorTiledImageLayer) layer);
+			}
+		}
+		return layers;
+	}
+
+	/**
+	 * Calculate the view of the camera at the provided frame.
+	 *
+	 * @return View at the provided frame, or <code>null</code> if the camera
+	 *         doesn't define a valid view at that frame
+	 */
+	protected PrefetchView createView(int frame, Globe globe, double verticalExaggeration)
+	{
+		Camera camera = animation.getCamera();
+		Position eyePosition = camera.getEyePositionAtFrame(frame);
+		Position lookatPosition = camera.getLookatPositionAtFrame(frame);
+
+		Vec4 eyePoint = globe.computePointFromPosition(eyePosition);
+		Vec4 lookatPoint = globe.computePointFromPosition(lookatPosition);
+		Vec4 forward = lookatPoint.subtract3(eyePoint);
+		if (forward.getLength3() <= 0)
+		{
+			return null;
+		}
+
+		Vec4 up = globe.computeSurfaceNormalAtPoint(eyePoint);
+		if (Math.abs(forward.normalize3().dot3(up)) > 0.999)
+		{
+			//looking straight up or down; use north as the up vector
+			up = globe.computeNorthPointingTangentAtLocation(eyePosition.getLatitude(), eyePosition.getLongitude());
+		}
+		Matrix modelview = Matrix.fromViewLookAt(eyePoint, lookatPoint, up);
+
+		Angle fieldOfView =
+				camera.getFieldOfView().isEnabled() ? Angle.fromDegrees(camera.getFieldOfView().getBakedValueAtFrame(
+						frame)) : animation.getView().getFieldOfView();
+
+		//use a square frustum covering the diagonal field of view, so that the frustum contains the
+		//view regardless of the camera's roll
+		double width = Math.max(1, renderDimensions.width);
+		double height = Math.max(1, renderDimensions.height);
+		double tanHalfDiagonal = fieldOfView.tanHalfAngle() * Math.sqrt(width * width + height * height) / width;
+		Angle diagonalFieldOfView = Angle.fromRadians(2d * Math.atan(tanHalfDiagonal));
+
+		double altitude = Math.max(1d, eyePosition.getElevation());
+		double horizonDistance = Math.sqrt(altitude * (2d * globe.getRadius() + altitude));
+		double farDistance = Math.max(horizonDistance, eyePoint.distanceTo3(lookatPoint)) * 1.1;
+
+		Frustum frustum =
+				Frustum.fromPerspective(diagonalFieldOfView, 1, 1, 1d, farDistance).transformBy(
+						modelview.getTranspose());
+
+		return new PrefetchView(frame, globe, verticalExaggeration, eyePoint, frustum, fieldOfView);
+	}
+
+	/**
+	 * Request the elevations for each tessellator sector visible in the view,
+	 * at the resolution the tessellator would request them.
+	 */
+	protected void prefetchElevations(PrefetchView view)
+	{
+		ElevationModel elevationModel = view.globe.getElevationModel();
+		if (elevationModel == null)
+		{
+			return;
+		}
+
+		double[] buffer = new double[5];
+		for (double lat = -90; lat < 90; lat += TOP_LEVEL_SECTOR_SIZE)
+		{
+			for (double lon = -180; lon < 180; lon += TOP_LEVEL_SECTOR_SIZE)
+			{
+				Sector sector =
+						Sector.fromDegrees(lat, Math.min(90, lat + TOP_LEVEL_SECTOR_SIZE), lon,
+								Math.min(180, lon + TOP_LEVEL_SECTOR_SIZE));
+				prefetchElevations(view, elevationModel, sector, 0, buffer);
+			}
+		}
+	}
+
+	protected void prefetchElevations(PrefetchView view, ElevationModel elevationModel, Sector sector, int level,
+			double[] buffer)
+	{
+		if (stopped
+				|| !Sector.computeBoundingBox(view.globe, view.verticalExaggeration, sector).intersects(view.frustum))
+		{
+			return;
+		}
+
+		if (level < MAX_ELEVATION_LEVEL && needToSplitElevations(view, elevationModel, sector))
+		{
+			for (Sector subSector : sector.subdivide())
+			{
+				prefetchElevations(view, elevationModel, subSector, level + 1, buffer);
+			}
+			return;
+		}
+
+		List<LatLon> latlons = new ArrayList<LatLon>(Arrays.asList(sector.getCorners()));
+		latlons.add(sector.getCentroid());
+		elevationModel.getElevations(sector, latlons, sector.getDeltaLatRadians() / TESSELLATOR_DENSITY, buffer);
+	}
+
+	protected boolean needToSplitElevations(PrefetchView view, ElevationModel elevationModel, Sector sector)
+	{
+		double minDistance = view.eyePoint.distanceTo3(sector.computeCenterPoint(view.globe, view.verticalExaggeration));
+		for (Vec4 corner : sector.computeCornerPoints(view.globe, view.verticalExaggeration))
+		{
+			minDistance = Math.min(minDistance, view.eyePoint.distanceTo3(corner));
+		}
+
+		double cellSize = (Math.PI * sector.getDeltaLatRadians() * view.globe.getRadius()) / TESSELLATOR_DENSITY;
+		double detailHint = LOG10_RESOLUTION_TARGET + elevationModel.getDetailHint(sector);
+		return Math.log10(cellSize) > Math.log10(minDistance) - detailHint;
+	}
+
+	/**
+	 * Snapshot of the view at a single frame.
+	 */
+	protected static class PrefetchView
+	{
+		public final int frame;
+		public final Globe globe;
+		public final double verticalExaggeration;
+		public final Vec4 eyePoint;
+		public final Frustum frustum;
+		public final Angle fieldOfView;
+
+		public PrefetchView(int frame, Globe globe, double verticalExaggeration, Vec4 eyePoint, Frustum frustum,
+				Angle fieldOfView)
+		{
+			this.frame = frame;
+			this.globe = globe;
+			this.verticalExaggeration = verticalExaggeration;
+			this.eyePoint = eyePoint;
+			this.frustum = frustum;
+			this.fieldOfView = fieldOfView;
+		}
+	}
+
+	private static class FrameFuture
+	{
+		public final int frame;
+		public final Future<?> future;
+
+		public FrameFuture(int frame, Future<?> future)
+		{
+			this.frame = frame;
+			this.future = future;
+		}
+	}
+
+	/**
+	 * Task that prefetches the image tiles and elevations for a single view.
+	 */
+	private class PrefetchTask implements Runnable
+	{
+		private final PrefetchView view;
+		private final List<DelegatorTiledImageLayer> layers;
+
+		public PrefetchTask(PrefetchView view, List<DelegatorTiledImageLayer> layers)
+		{
+			this.view = view;
+			this.layers = layers;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				prefetchElevations(view);
+				for (DelegatorTiledImageLayer layer : layers)
+				{
+					List<DelegatorTextureTile> tiles =
+							layer.selectTilesForView(view.globe, view.verticalExaggeration, view.eyePoint,
+									view.frustum, view.fieldOfView);
+					for (DelegatorTextureTile tile : tiles)
+					{
+						if (stopped)
+						{
+							return;
+						}
+						layer.prefetchTile(tile);
+					}
+				}
+			}
+			catch (Exception e)
+			{
+				//prefetching is only an optimisation; the renderer will load anything missed
+				logException(e);
+			}
+		}
+	}
+}
@@ -17,6 +17,7 @@ package au.gov.ga.worldwind.animator.layers.camerapath;
 
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.render.Renderable;
 import gov.nasa.worldwind.util.OGLStackHandler;
@@ -198,13 +199,12 @@ public abstract class AbstractCameraPositionPath implements Renderable
 
 		Position[] pathPositions = getPathPositions(firstFrame, lastFrame);
 
-		Position previousPathPosition = null;
+		Globe globe = animation.getView().getGlobe();
+		Vec4 previousEyeVector = null;
 		for (int i = 0; i < pathPositions.length; i++)
 		{
-			Position currentPathPosition = pathPositions[i];
-
 			// Populate the vertex buffer
-			Vec4 eyeVector = animation.getView().getGlobe().computePointFromPosition(currentPathPosition);
+			Vec4 eyeVector = globe.computePointFromPosition(pathPositions[i]);
 			if (pathReferenceCenterBack == null)
 			{
 				pathReferenceCenterBack = eyeVector; // Choose the first point in the path to be the reference point
@@ -214,14 +214,14 @@ public abstract class AbstractCameraPositionPath implements Renderable
 			pathVertexBackBuffer.put(eyeVector.z - pathReferenceCenterBack.z);
 
 			// Populate the delta array
-			if (previousPathPosition != null)
+			if (previousEyeVector != null)
 			{
-				double positionDelta = calculateDelta(currentPathPosition, previousPathPosition);
+				double positionDelta = Math.abs(eyeVector.distanceTo3(previousEyeVector));
 				deltas[i] = positionDelta;
 				maxDelta = Math.max(maxDelta, positionDelta);
 				minDelta = Math.min(minDelta, positionDelta);
 			}
-			previousPathPosition = currentPathPosition;
+			previousEyeVector = eyeVector;
 		}
 
 		//first wasn't set in loop above, so just copy from second:
@@ -240,16 +240,6 @@ public abstract class AbstractCameraPositionPath implements Renderable
 	 */
 	protected abstract Position[] getPathPositions(int startFrame, int endFrame);
 
-	/**
-	 * @return The delta of the current and previous position
-	 */
-	private double calculateDelta(Position currentPosition, Position previousPosition)
-	{
-		Vec4 current = animation.getView().getGlobe().computePointFromPosition(currentPosition);
-		Vec4 previous = animation.getView().getGlobe().computePointFromPosition(previousPosition);
-		return Math.abs(current.distanceTo3(previous));
-	}
-
 	private void populatePathColourBufferFromDeltas(double[] deltas, double minDelta, double maxDelta)
 	{
 		double deltaWindow = maxDelta - minDelta;
@@ -26,7 +26,7 @@ package au.gov.ga.worldwind.animator.layers.immediate;
  */
 public class ImmediateMode
 {
-	private static boolean immediate = false;
+	private static volatile boolean immediate = false;
 
 	/**
 	 * @return Is immediate mode switched on?
@@ -26,8 +26,11 @@ import gov.nasa.worldwind.util.Logging;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 
 /**
@@ -36,6 +39,11 @@ import java.util.concurrent.FutureTask;
  * completed.
  * <p/>
  * Delegates to an internal instance of the {@link BasicRetrievalService}.
+ * <p/>
+ * Retrievals can be requested by several threads at once (the render thread
+ * and the tile prefetcher threads). If a retriever with the same name is
+ * already running, the call waits for that retrieval to complete instead of
+ * retrieving (and saving) the same resource again.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  * @author James Navin (james.navin@ga.gov.au)
@@ -43,6 +51,7 @@ import java.util.concurrent.FutureTask;
 public class ImmediateRetrievalService implements RetrievalService
 {
 	private final RetrievalService delegate = new BasicRetrievalService();
+	private final Map<String, RetrievalTask> running = new HashMap<String, RetrievalTask>();
 
 	@Override
 	public void onMessage(Message msg)
@@ -197,17 +206,57 @@ public class ImmediateRetrievalService implements RetrievalService
 	}
 
 	@Override
-	public synchronized RetrievalFuture runRetriever(Retriever retriever, double priority)
+	public RetrievalFuture runRetriever(Retriever retriever, double priority)
 	{
 		if (!ImmediateMode.isImmediate())
 			return delegate.runRetriever(retriever, priority);
 
 		RetrievalTask task = new RetrievalTask(retriever);
-		task.run(); //run the task
+		RetrievalTask existing;
+		synchronized (running)
+		{
+			existing = running.get(retriever.getName());
+			if (existing == null)
+				running.put(retriever.getName(), task);
+		}
+
+		if (existing != null)
+		{
+			awaitCompletion(existing);
+			return existing;
+		}
+
+		try
+		{
+			task.run(); //run the task
+		}
+		finally
+		{
+			synchronized (running)
+			{
+				running.remove(retriever.getName());
+			}
+		}
 		Logging.logger().info("Running retrieval immediately: " + retriever.getName());
 		return task;
 	}
 
+	private static void awaitCompletion(RetrievalTask task)
+	{
+		try
+		{
+			task.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			//the failure is handled by the retriever's post processor, as it would be for the original request
+		}
+	}
+
 	@Override
 	public Object setValue(String key, Object value)
 	{
@@ -18,21 +18,73 @@ package au.gov.ga.worldwind.animator.layers.immediate;
 import gov.nasa.worldwind.util.TaskService;
 import gov.nasa.worldwind.util.ThreadedTaskService;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
 /**
  * {@link TaskService} that runs tasks immediately when in immediate mode.
+ * <p/>
+ * If an equal task is already being run by another thread (such as a tile
+ * prefetcher thread requesting the same tile), the call waits for that task to
+ * complete instead of running it again.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class ImmediateTaskService extends ThreadedTaskService
 {
+	private final Map<Runnable, CountDownLatch> running = new HashMap<Runnable, CountDownLatch>();
+
 	@Override
-	public synchronized void addTask(Runnable runnable)
+	public void addTask(Runnable runnable)
 	{
 		if (ImmediateMode.isImmediate())
 		{
-			runnable.run();
+			runImmediately(runnable);
 			return;
 		}
 		super.addTask(runnable);
 	}
+
+	protected void runImmediately(Runnable runnable)
+	{
+		CountDownLatch done;
+		boolean alreadyRunning;
+		synchronized (running)
+		{
+			done = running.get(runnable);
+			alreadyRunning = done != null;
+			if (!alreadyRunning)
+			{
+				done = new CountDownLatch(1);
+				running.put(runnable, done);
+			}
+		}
+
+		if (alreadyRunning)
+		{
+			try
+			{
+				done.await();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			return;
+		}
+
+		try
+		{
+			runnable.run();
+		}
+		finally
+		{
+			synchronized (running)
+			{
+				running.remove(runnable);
+			}
+			done.countDown();
+		}
+	}
 }
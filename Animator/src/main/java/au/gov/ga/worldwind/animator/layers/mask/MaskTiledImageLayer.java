@@ -40,8 +40,6 @@ import gov.nasa.worldwind.util.Tile;
 import gov.nasa.worldwind.util.TileUrlBuilder;
 import gov.nasa.worldwind.util.WWIO;
 
-import java.awt.AlphaComposite;
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -57,6 +55,7 @@ import javax.imageio.ImageIO;
 import javax.media.opengl.GL2;
 
 import au.gov.ga.worldwind.animator.layers.file.FileRetriever;
+import au.gov.ga.worldwind.common.layers.delegate.reader.MaskHelper;
 import au.gov.ga.worldwind.common.layers.delegate.reader.MaskImageReaderDelegate;
 import au.gov.ga.worldwind.common.layers.tiled.image.delegate.DelegatorTiledImageLayer;
 
@@ -700,18 +699,15 @@ public class MaskTiledImageLayer extends TiledImageLayer
 			if (outFile.exists())
 				return true;
 
-			Graphics2D g2d = mask.createGraphics();
-			g2d.setComposite(AlphaComposite.SrcIn);
-			g2d.drawImage(texture, 0, 0, null);
-			g2d.dispose();
+			BufferedImage composed = MaskHelper.compose(texture, mask);
 
 			try
 			{
 				String ext = outFile.getName().substring(outFile.getName().lastIndexOf('.') + 1);
 				if (ext.toLowerCase().equals("dds"))
-					layer.saveDDS(mask, outFile);
+					layer.saveDDS(composed, outFile);
 				else
-					layer.saveImage(mask, ext, outFile);
+					layer.saveImage(composed, ext, outFile);
 			}
 			catch (IOException e)
 			{
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.animator.animation.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.KeyFrameImpl;
+import au.gov.ga.worldwind.animator.animation.WorldWindAnimationImpl;
+import au.gov.ga.worldwind.animator.animation.parameter.BasicBezierParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
+import au.gov.ga.worldwind.animator.util.WorldWindowTestImpl;
+import au.gov.ga.worldwind.common.util.message.MessageSourceAccessor;
+import au.gov.ga.worldwind.common.util.message.StaticMessageSource;
+import au.gov.ga.worldwind.test.util.TestUtils;
+
+/**
+ * Unit tests for the {@link BinaryAnimationReader} and
+ * {@link BinaryAnimationWriter} classes
+ */
+public class BinaryAnimationReaderTest
+{
+	private BinaryAnimationReader classToBeTested = new BinaryAnimationReader();
+
+	private InputStream expectedStream = getClass().getClassLoader().getResourceAsStream(
+			"au/gov/ga/worldwind/animator/animation/io/expectedXmlOutput.xml");
+
+	private Animation animationToSave;
+
+	@Before
+	public void setup()
+	{
+		MessageSourceAccessor.set(new StaticMessageSource());
+
+		animationToSave = createAnimation();
+	}
+
+	private Animation createAnimation()
+	{
+		Animation result = new WorldWindAnimationImpl(new WorldWindowTestImpl());
+
+		ParameterValue eyeLatVal1 = new BasicBezierParameterValue(1.0, 0, result.getCamera().getEyeLat(), 1.1, 1.2, 1.3, 1.4);
+		ParameterValue eyeLatVal2 = new BasicBezierParameterValue(2.0, 10, result.getCamera().getEyeLat(), 2.1, 2.2, 2.3, 2.4);
+		ParameterValue eyeLatVal3 = new BasicBezierParameterValue(3.0, 20, result.getCamera().getEyeLat(), 3.1, 3.2, 3.3, 3.4);
+
+		ParameterValue eyeLonVal1 = new BasicBezierParameterValue(11.0, 0, result.getCamera().getEyeLon(), 11.1, 11.2, 11.3, 11.4);
+		ParameterValue eyeLonVal2 = new BasicBezierParameterValue(11.0, 11, result.getCamera().getEyeLon(), 12.1, 12.2, 12.3, 12.4);
+
+		ParameterValue eyeElevationVal1 = new BasicBezierParameterValue(21.0, 31, result.getCamera().getEyeElevation(), 22.1, 22.2, 22.3, 22.4);
+
+		result.insertKeyFrame(new KeyFrameImpl(0, Arrays.asList(new ParameterValue[] { eyeLatVal1, eyeLonVal1 })), false);
+		result.insertKeyFrame(new KeyFrameImpl(10, Arrays.asList(new ParameterValue[] { eyeLatVal2 })), false);
+		result.insertKeyFrame(new KeyFrameImpl(11, Arrays.asList(new ParameterValue[] { eyeLonVal2 })), false);
+		result.insertKeyFrame(new KeyFrameImpl(20, Arrays.asList(new ParameterValue[] { eyeLatVal3 })), false);
+		result.insertKeyFrame(new KeyFrameImpl(31, Arrays.asList(new ParameterValue[] { eyeElevationVal1 })), false);
+
+		return result;
+	}
+
+	@Test
+	public void testRoundTripProducesSameXml() throws Exception
+	{
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		new BinaryAnimationWriter().writeAnimation(binary, animationToSave);
+
+		Animation result =
+				classToBeTested.readAnimation(new ByteArrayInputStream(binary.toByteArray()), new WorldWindowTestImpl());
+
+		ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		new XmlAnimationWriter().writeAnimation(xml, result);
+
+		assertEquals(TestUtils.readStreamToString(expectedStream),
+				TestUtils.readStreamToString(new ByteArrayInputStream(xml.toByteArray())));
+	}
+
+	@Test
+	public void testCopyToXmlProducesSameXml() throws Exception
+	{
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		new BinaryAnimationWriter().writeAnimation(binary, animationToSave);
+
+		ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		AnimationStreams.copy(new BinaryElementReader(new ByteArrayInputStream(binary.toByteArray())),
+				new XmlElementWriter(xml));
+
+		assertEquals(TestUtils.readStreamToString(expectedStream),
+				TestUtils.readStreamToString(new ByteArrayInputStream(xml.toByteArray())));
+	}
+
+	@Test
+	public void testBinaryIsSmallerThanXml() throws Exception
+	{
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		new BinaryAnimationWriter().writeAnimation(binary, animationToSave);
+
+		ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		new XmlAnimationWriter().writeAnimation(xml, animationToSave);
+
+		assertTrue(binary.size() * 2 < xml.size());
+	}
+
+	@Test
+	public void testFileVersionDetected() throws Exception
+	{
+		File file = File.createTempFile("animation", BinaryAnimationWriter.FILE_EXTENSION);
+		try
+		{
+			AnimationIO.createWriter(file).writeAnimation(file, animationToSave);
+
+			assertEquals(AnimationFileVersion.VERSION020_BINARY, classToBeTested.getFileVersion(file));
+			assertNull(new XmlAnimationReader().getFileVersion(file));
+			assertTrue(AnimationIO.createReader(file) instanceof BinaryAnimationReader);
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testValuesRoundTrip() throws Exception
+	{
+		String[] values =
+				new String[] { "0", "-0", "007", "-12", "9223372036854775807", "1.0", "-0.0", "1e5", "1.10", "NaN",
+						"", "true", "BEZIER", "a<b & \"c\"\n", "é中" };
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		BinaryElementWriter writer = new BinaryElementWriter(output);
+		writer.startDocument();
+		writer.startElement("values");
+		for (String value : values)
+		{
+			writer.startElement("value");
+			writer.attribute("attribute", value);
+			writer.text(value);
+			writer.endElement();
+		}
+		writer.endElement();
+		writer.endDocument();
+
+		BinaryElementReader reader = new BinaryElementReader(new ByteArrayInputStream(output.toByteArray()));
+		assertEquals(ElementReader.START_ELEMENT, reader.next());
+		assertEquals("values", reader.getName());
+		for (String value : values)
+		{
+			assertEquals(ElementReader.START_ELEMENT, reader.next());
+			assertEquals("value", reader.getName());
+			assertEquals(1, reader.getAttributeCount());
+			assertEquals("attribute", reader.getAttributeName(0));
+			assertEquals(value, reader.getAttributeValue(0));
+			assertEquals(ElementReader.TEXT, reader.next());
+			assertEquals(value, reader.getText());
+			assertEquals(ElementReader.END_ELEMENT, reader.next());
+		}
+		assertEquals(ElementReader.END_ELEMENT, reader.next());
+		assertEquals(ElementReader.END_DOCUMENT, reader.next());
+	}
+}
@@ -3,6 +3,8 @@ package au.gov.ga.worldwind.animator.animation.io;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
@@ -85,5 +87,30 @@ public class XmlAnimationWriterTest
 		outputFile.delete();
 	}
 	
+	@Test
+	public void testWriteSnapshotIgnoresLaterChanges() throws Exception
+	{
+		AnimationSnapshot snapshot = AnimationSnapshot.capture(animationToSave, XmlAnimationWriter.getCurrentFileVersion());
+		
+		animationToSave.getCamera().setName("Renamed camera");
+		animationToSave.getCamera().getEyeLat().setEnabled(false);
+		animationToSave.getKeyFrame(10).getValueForParameter(animationToSave.getCamera().getEyeLat()).setValue(99.0);
+		animationToSave.insertKeyFrame(new KeyFrameImpl(5, Arrays.asList(new ParameterValue[]{
+				new BasicBezierParameterValue(5.0, 5, animationToSave.getCamera().getEyeLat(), 5.1, 5.2, 5.3, 5.4)})), false);
+		
+		ByteArrayOutputStream actualStream = new ByteArrayOutputStream();
+		classToBeTested.writeAnimation(actualStream, snapshot);
+		
+		assertEquals(TestUtils.readStreamToString(expectedStream),
+				TestUtils.readStreamToString(new ByteArrayInputStream(actualStream.toByteArray())));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testWriteSnapshotOfOtherVersionFails() throws Exception
+	{
+		AnimationSnapshot snapshot = AnimationSnapshot.capture(animationToSave, AnimationFileVersion.VERSION020_BINARY);
+		
+		classToBeTested.writeAnimation(new ByteArrayOutputStream(), snapshot);
+	}
 	
 }
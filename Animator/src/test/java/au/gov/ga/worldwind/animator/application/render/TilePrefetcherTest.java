@@ -0,0 +1,263 @@
+package au.gov.ga.worldwind.animator.application.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.Model;
+import gov.nasa.worldwind.SceneController;
+import gov.nasa.worldwind.WorldWindow;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Earth;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.layers.Layer;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.camera.Camera;
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.animator.application.render.TilePrefetcher.PrefetchView;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.DelegatorTiledImageLayer;
+
+/**
+ * Unit tests for the {@link TilePrefetcher} class
+ */
+public class TilePrefetcherTest
+{
+	private Mockery mockContext;
+
+	private Animation animation;
+	private Camera camera;
+	private Parameter fieldOfView;
+	private Globe globe;
+
+	private TilePrefetcher classToBeTested;
+
+	@Before
+	public void setup()
+	{
+		mockContext = new Mockery();
+
+		animation = mockContext.mock(Animation.class);
+		camera = mockContext.mock(Camera.class);
+		fieldOfView = mockContext.mock(Parameter.class);
+		globe = new Earth();
+
+		final WorldWindow wwd = mockContext.mock(WorldWindow.class);
+		final Model model = mockContext.mock(Model.class);
+		final SceneController sceneController = mockContext.mock(SceneController.class);
+
+		mockContext.checking(new Expectations()
+		{
+			{
+				allowing(animation).getWorldWindow();
+				will(returnValue(wwd));
+				allowing(wwd).getModel();
+				will(returnValue(model));
+				allowing(model).getGlobe();
+				will(returnValue(globe));
+				allowing(wwd).getSceneController();
+				will(returnValue(sceneController));
+				allowing(sceneController).getVerticalExaggeration();
+				will(returnValue(1d));
+				allowing(animation).getLayers();
+				will(returnValue(new ArrayList<Layer>()));
+				allowing(animation).getCamera();
+				will(returnValue(camera));
+				allowing(camera).getFieldOfView();
+				will(returnValue(fieldOfView));
+				allowing(fieldOfView).isEnabled();
+				will(returnValue(true));
+				allowing(fieldOfView).getBakedValueAtFrame(with(any(int.class)));
+				will(returnValue(45d));
+			}
+		});
+
+		classToBeTested = new TilePrefetcher(animation, new Dimension(1280, 720));
+	}
+
+	private void setCameraAtFrame(final int frame, final Position eye, final Position lookat)
+	{
+		mockContext.checking(new Expectations()
+		{
+			{
+				allowing(camera).getEyePositionAtFrame(frame);
+				will(returnValue(eye));
+				allowing(camera).getLookatPositionAtFrame(frame);
+				will(returnValue(lookat));
+			}
+		});
+	}
+
+	@Test
+	public void testViewContainsLookatPoint()
+	{
+		Position lookat = Position.fromDegrees(-27, 133, 0);
+		setCameraAtFrame(10, Position.fromDegrees(-30, 133, 500000), lookat);
+
+		PrefetchView view = classToBeTested.createView(10, globe, 1d);
+
+		assertNotNull(view);
+		assertTrue(view.frustum.contains(globe.computePointFromPosition(lookat)));
+		assertFalse(view.frustum.contains(globe.computePointFromPosition(Position.fromDegrees(27, -47, 0))));
+	}
+
+	@Test
+	public void testViewLookingStraightDown()
+	{
+		Position lookat = Position.fromDegrees(-27, 133, 0);
+		setCameraAtFrame(10, Position.fromDegrees(-27, 133, 10000), lookat);
+
+		PrefetchView view = classToBeTested.createView(10, globe, 1d);
+
+		assertNotNull(view);
+		assertTrue(view.frustum.contains(globe.computePointFromPosition(lookat)));
+		assertTrue(view.fieldOfView.equals(Angle.fromDegrees(45)));
+	}
+
+	@Test
+	public void testViewWithCoincidentEyeAndLookat()
+	{
+		Position position = Position.fromDegrees(-27, 133, 1000);
+		setCameraAtFrame(10, position, position);
+
+		assertNull(classToBeTested.createView(10, globe, 1d));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidLookAhead()
+	{
+		new TilePrefetcher(animation, new Dimension(1280, 720), 0, 1);
+	}
+
+	@Test
+	public void testPrefetchSchedulesFramesAhead()
+	{
+		RecordingPrefetcher prefetcher = new RecordingPrefetcher(3);
+		prefetcher.gate.countDown();
+		prefetcher.start();
+		try
+		{
+			prefetcher.prefetch(0, 10);
+			assertEquals(Arrays.asList(1, 2, 3), prefetcher.scheduled);
+
+			//only the newly reached frame is scheduled
+			prefetcher.prefetch(1, 10);
+			assertEquals(Arrays.asList(1, 2, 3, 4), prefetcher.scheduled);
+
+			prefetcher.prefetch(1, 10);
+			assertEquals(Arrays.asList(1, 2, 3, 4), prefetcher.scheduled);
+
+			//frames after the last frame are not scheduled
+			prefetcher.prefetch(4, 6);
+			assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), prefetcher.scheduled);
+		}
+		finally
+		{
+			prefetcher.stop();
+		}
+	}
+
+	@Test
+	public void testPrefetchWhenStoppedDoesNothing()
+	{
+		RecordingPrefetcher prefetcher = new RecordingPrefetcher(3);
+		prefetcher.prefetch(0, 10);
+
+		prefetcher.start();
+		prefetcher.stop();
+		prefetcher.prefetch(0, 10);
+
+		assertTrue(prefetcher.scheduled.isEmpty());
+	}
+
+	@Test
+	public void testReachedFramesAreCancelled() throws Exception
+	{
+		RecordingPrefetcher prefetcher = new RecordingPrefetcher(3);
+		prefetcher.start();
+		try
+		{
+			//frame 1 blocks the single prefetch thread, leaving frames 2 and 3 queued
+			prefetcher.prefetch(0, 10);
+			assertTrue(prefetcher.started.await(10, TimeUnit.SECONDS));
+
+			//frames 1 and 2 have been reached; frame 1 is already running, but frame 2 is cancelled
+			prefetcher.prefetch(2, 10);
+			assertEquals(Arrays.asList(1, 2, 3, 4, 5), prefetcher.scheduled);
+
+			prefetcher.completed = new CountDownLatch(4);
+			prefetcher.gate.countDown();
+			assertTrue(prefetcher.completed.await(10, TimeUnit.SECONDS));
+			assertEquals(Arrays.asList(1, 3, 4, 5), prefetcher.ran);
+		}
+		finally
+		{
+			prefetcher.stop();
+		}
+	}
+
+	/**
+	 * {@link TilePrefetcher} with a single prefetch thread, that records the
+	 * frames it schedules and runs instead of loading tiles. Tasks wait for the
+	 * gate to be opened before running.
+	 */
+	private class RecordingPrefetcher extends TilePrefetcher
+	{
+		private final List<Integer> scheduled = new ArrayList<Integer>();
+		private final List<Integer> ran = Collections.synchronizedList(new ArrayList<Integer>());
+		private final CountDownLatch gate = new CountDownLatch(1);
+		private final CountDownLatch started = new CountDownLatch(1);
+		private volatile CountDownLatch completed = new CountDownLatch(0);
+
+		public RecordingPrefetcher(int lookAhead)
+		{
+			super(animation, new Dimension(1280, 720), lookAhead, 1);
+		}
+
+		@Override
+		protected PrefetchView createView(int frame, Globe globe, double verticalExaggeration)
+		{
+			return new PrefetchView(frame, globe, verticalExaggeration, Vec4.ZERO, null, Angle.ZERO);
+		}
+
+		@Override
+		protected Runnable createTask(final PrefetchView view, List<DelegatorTiledImageLayer> layers)
+		{
+			scheduled.add(view.frame);
+			return new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					started.countDown();
+					try
+					{
+						gate.await();
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+					ran.add(view.frame);
+					completed.countDown();
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package au.gov.ga.worldwind.animator.layers.immediate;
+
+import static au.gov.ga.worldwind.animator.layers.immediate.ImmediateTaskServiceTest.awaitWaiting;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.retrieve.RetrievalFuture;
+import gov.nasa.worldwind.retrieve.Retriever;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ImmediateRetrievalService} class
+ */
+public class ImmediateRetrievalServiceTest
+{
+	private ImmediateRetrievalService classToBeTested;
+	private final CountDownLatch gate = new CountDownLatch(1);
+	private final CountDownLatch started = new CountDownLatch(1);
+	private final AtomicInteger retrievals = new AtomicInteger();
+
+	@Before
+	public void setup()
+	{
+		ImmediateMode.setImmediate(true);
+		classToBeTested = new ImmediateRetrievalService();
+	}
+
+	@After
+	public void tearDown()
+	{
+		ImmediateMode.setImmediate(false);
+		classToBeTested.shutdown(true);
+	}
+
+	@Test
+	public void testSameRetrieverNameIsRetrievedOnce() throws Exception
+	{
+		final RetrievalFuture[] futures = new RetrievalFuture[2];
+		Thread first = start(createRetriever("http://tiles/1/2/2_3.png"), futures, 0);
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		Thread second = start(createRetriever("http://tiles/1/2/2_3.png"), futures, 1);
+		awaitWaiting(second);
+
+		gate.countDown();
+		first.join();
+		second.join();
+
+		assertEquals(1, retrievals.get());
+		assertSame(futures[0], futures[1]);
+		assertTrue(futures[1].isDone());
+
+		//once complete, the same resource can be retrieved again
+		classToBeTested.runRetriever(createRetriever("http://tiles/1/2/2_3.png"));
+		assertEquals(2, retrievals.get());
+	}
+
+	@Test
+	public void testDifferentRetrieversAreRetrieved()
+	{
+		gate.countDown();
+		classToBeTested.runRetriever(createRetriever("http://tiles/1/2/2_3.png"));
+		classToBeTested.runRetriever(createRetriever("http://tiles/1/2/2_4.png"));
+		assertEquals(2, retrievals.get());
+	}
+
+	private Thread start(final Retriever retriever, final RetrievalFuture[] futures, final int index)
+	{
+		Thread thread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				futures[index] = classToBeTested.runRetriever(retriever);
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Create a retriever that counts its retrievals, and waits for the gate to
+	 * be opened before completing.
+	 */
+	private Retriever createRetriever(final String name)
+	{
+		return (Retriever) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Retriever.class },
+				new InvocationHandler()
+				{
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+					{
+						if (method.getName().equals("getName"))
+						{
+							return name;
+						}
+						if (method.getName().equals("call"))
+						{
+							retrievals.incrementAndGet();
+							started.countDown();
+							gate.await();
+							return proxy;
+						}
+						if (method.getName().equals("hashCode"))
+						{
+							return System.identityHashCode(proxy);
+						}
+						if (method.getName().equals("equals"))
+						{
+							return proxy == args[0];
+						}
+						return null;
+					}
+				});
+	}
+}
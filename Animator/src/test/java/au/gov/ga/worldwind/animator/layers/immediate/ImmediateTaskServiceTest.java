@@ -0,0 +1,157 @@
+package au.gov.ga.worldwind.animator.layers.immediate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ImmediateTaskService} class
+ */
+public class ImmediateTaskServiceTest
+{
+	private ImmediateTaskService classToBeTested;
+
+	@Before
+	public void setup()
+	{
+		ImmediateMode.setImmediate(true);
+		classToBeTested = new ImmediateTaskService();
+	}
+
+	@After
+	public void tearDown()
+	{
+		ImmediateMode.setImmediate(false);
+		classToBeTested.shutdown(true);
+	}
+
+	@Test
+	public void testTaskRunsOnCallingThread()
+	{
+		TileTask task = new TileTask("tile", new CountDownLatch(0));
+		classToBeTested.addTask(task);
+		assertEquals(1, task.runs.get());
+	}
+
+	@Test
+	public void testEqualTaskWaitsForRunningTask() throws Exception
+	{
+		CountDownLatch gate = new CountDownLatch(1);
+		final TileTask first = new TileTask("tile", gate);
+		final TileTask second = new TileTask("tile", gate);
+
+		Thread firstThread = start(first);
+		assertTrue(first.started.await(10, TimeUnit.SECONDS));
+		Thread secondThread = start(second);
+		awaitWaiting(secondThread);
+
+		gate.countDown();
+		firstThread.join();
+		secondThread.join();
+
+		assertEquals(1, first.runs.get());
+		assertEquals(0, second.runs.get());
+
+		//once complete, an equal task can be run again
+		classToBeTested.addTask(second);
+		assertEquals(1, second.runs.get());
+	}
+
+	@Test
+	public void testDifferentTasksRunConcurrently() throws Exception
+	{
+		CountDownLatch gate = new CountDownLatch(1);
+		TileTask first = new TileTask("tile1", gate);
+		TileTask second = new TileTask("tile2", gate);
+
+		Thread firstThread = start(first);
+		Thread secondThread = start(second);
+		assertTrue(first.started.await(10, TimeUnit.SECONDS));
+		assertTrue(second.started.await(10, TimeUnit.SECONDS));
+
+		gate.countDown();
+		firstThread.join();
+		secondThread.join();
+
+		assertEquals(1, first.runs.get());
+		assertEquals(1, second.runs.get());
+	}
+
+	private Thread start(final Runnable task)
+	{
+		Thread thread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				classToBeTested.addTask(task);
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	static void awaitWaiting(Thread thread) throws InterruptedException
+	{
+		long timeout = System.currentTimeMillis() + 10000;
+		while (thread.getState() != Thread.State.WAITING)
+		{
+			assertTrue("Thread finished without waiting", thread.isAlive());
+			assertTrue("Timed out waiting for thread to wait", System.currentTimeMillis() < timeout);
+			Thread.sleep(1);
+		}
+	}
+
+	/**
+	 * Task that is equal to other tasks for the same tile, like the request
+	 * tasks of the elevation models and layers.
+	 */
+	private static class TileTask implements Runnable
+	{
+		private final String tile;
+		private final CountDownLatch gate;
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final AtomicInteger runs = new AtomicInteger();
+
+		public TileTask(String tile, CountDownLatch gate)
+		{
+			this.tile = tile;
+			this.gate = gate;
+		}
+
+		@Override
+		public void run()
+		{
+			runs.incrementAndGet();
+			started.countDown();
+			try
+			{
+				gate.await();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			return obj instanceof TileTask && ((TileTask) obj).tile.equals(tile);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return tile.hashCode();
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package au.gov.ga.worldwind.animator.parameter;
+
+import static org.junit.Assert.assertEquals;
+import gov.nasa.worldwind.WorldWindow;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.animator.animation.Animation;
+import au.gov.ga.worldwind.animator.animation.KeyFrameImpl;
+import au.gov.ga.worldwind.animator.animation.WorldWindAnimationImpl;
+import au.gov.ga.worldwind.animator.animation.camera.CameraImpl;
+import au.gov.ga.worldwind.animator.animation.parameter.BakedParameterCurve;
+import au.gov.ga.worldwind.animator.animation.parameter.BasicParameterValue;
+import au.gov.ga.worldwind.animator.animation.parameter.Parameter;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterBase;
+import au.gov.ga.worldwind.animator.animation.parameter.ParameterValue;
+import au.gov.ga.worldwind.common.util.message.MessageSourceAccessor;
+import au.gov.ga.worldwind.common.util.message.StaticMessageSource;
+
+/**
+ * Unit tests for the {@link BakedParameterCurve} class
+ */
+public class BakedParameterCurveTest
+{
+	private static final double ACCEPTABLE_ERROR = 0.0000001;
+
+	private Animation animation;
+
+	private Parameter parameter;
+
+	@Before
+	public void setup()
+	{
+		MessageSourceAccessor.set(new StaticMessageSource());
+
+		Mockery mockContext = new Mockery();
+		animation = new WorldWindAnimationImpl(mockContext.mock(WorldWindow.class));
+		animation.setFrameCount(200);
+
+		parameter = new CameraImpl(animation).getEyeLat();
+	}
+
+	/**
+	 * Tests the baked values with no key frames recorded
+	 * <p/>
+	 * Expect the default value to be returned.
+	 */
+	@Test
+	public void testNoKeyFrames()
+	{
+		assertEquals(parameter.getDefaultValue(10), parameter.getBakedValueAtFrame(10), ACCEPTABLE_ERROR);
+	}
+
+	/**
+	 * Tests that baked values match the interpolated values across smoothed
+	 * (bezier) key frames
+	 */
+	@Test
+	public void testBakedValuesMatchInterpolatedValues()
+	{
+		insertKeyFrame(10, 0.0);
+		insertKeyFrame(50, 20.0);
+		insertKeyFrame(60, -5.0);
+		insertKeyFrame(150, 30.0);
+
+		assertCurveMatches(0, 199);
+	}
+
+	/**
+	 * Tests that the baked values are updated when a key value is changed
+	 */
+	@Test
+	public void testValueChangeInvalidatesCurve()
+	{
+		insertKeyFrame(10, 0.0);
+		insertKeyFrame(50, 20.0);
+		insertKeyFrame(100, -5.0);
+		insertKeyFrame(150, 30.0);
+		assertCurveMatches(0, 199);
+
+		animation.getKeyFrame(100).getValueForParameter(parameter).setValue(40.0);
+
+		assertEquals(40.0, parameter.getBakedValueAtFrame(100), ACCEPTABLE_ERROR);
+		assertCurveMatches(0, 199);
+	}
+
+	/**
+	 * Tests that the baked values are updated when key frames are added and
+	 * removed
+	 */
+	@Test
+	public void testKeyFrameAddRemoveInvalidatesCurve()
+	{
+		insertKeyFrame(10, 0.0);
+		insertKeyFrame(100, 20.0);
+		assertCurveMatches(0, 199);
+
+		insertKeyFrame(50, 80.0);
+		assertCurveMatches(0, 199);
+
+		insertKeyFrame(180, 10.0);
+		assertCurveMatches(0, 199);
+
+		animation.removeKeyFrame(50);
+		assertCurveMatches(0, 199);
+
+		animation.removeKeyFrame(10);
+		assertCurveMatches(0, 199);
+	}
+
+	/**
+	 * Tests that the baked values are updated when the animation is scaled
+	 */
+	@Test
+	public void testScaleInvalidatesCurve()
+	{
+		insertKeyFrame(10, 0.0);
+		insertKeyFrame(50, 20.0);
+		insertKeyFrame(100, -5.0);
+		assertCurveMatches(0, 199);
+
+		animation.scale(1.5);
+		assertCurveMatches(0, animation.getFrameCount() - 1);
+	}
+
+	/**
+	 * Tests that values are still correct with baking disabled
+	 */
+	@Test
+	public void testBakingDisabled()
+	{
+		insertKeyFrame(10, 0.0);
+		insertKeyFrame(50, 20.0);
+		((ParameterBase) parameter).setBakingEnabled(false);
+
+		assertCurveMatches(0, 199);
+	}
+
+	/**
+	 * Tests that removing an animatable object from the animation releases
+	 * the baked curves of its parameters
+	 */
+	@Test
+	public void testRemovingAnimatableReleasesCurve()
+	{
+		CameraImpl camera = new CameraImpl(animation);
+		animation.addAnimatableObject(camera);
+		int listenerCount = ((WorldWindAnimationImpl) animation).getChangeListeners().size();
+
+		camera.getEyeLat().getBakedValueAtFrame(0);
+		assertEquals(listenerCount + 1, ((WorldWindAnimationImpl) animation).getChangeListeners().size());
+
+		animation.removeAnimatableObject(camera);
+		assertEquals(listenerCount, ((WorldWindAnimationImpl) animation).getChangeListeners().size());
+	}
+
+	private void insertKeyFrame(int frame, double value)
+	{
+		Collection<ParameterValue> values = new ArrayList<ParameterValue>();
+		values.add(new BasicParameterValue(value, frame, parameter));
+		animation.insertKeyFrame(new KeyFrameImpl(frame, values));
+	}
+
+	private void assertCurveMatches(int startFrame, int endFrame)
+	{
+		double[] bakedValues = parameter.getBakedValuesBetweenFrames(startFrame, endFrame, null);
+		for (int frame = startFrame; frame <= endFrame; frame++)
+		{
+			double expected = parameter.getValueAtFrame(frame).getValue();
+			assertEquals("Frame " + frame, expected, parameter.getBakedValueAtFrame(frame), ACCEPTABLE_ERROR);
+			assertEquals("Frame " + frame, expected, bakedValues[frame - startFrame], ACCEPTABLE_ERROR);
+		}
+	}
+}
@@ -45,6 +45,49 @@ public class Bounds
 		return new Bounds(minimum, maximum);
 	}
 
+	/**
+	 * Calculate the bounds of the provided positions. Equivalent to calling
+	 * {@link #union(Bounds, Position)} for each position, without creating
+	 * the intermediate bounds.
+	 * 
+	 * @param positions
+	 *            Positions to calculate the bounds of
+	 * @return Bounds containing the positions, or null if there are none
+	 */
+	public static Bounds fromPositions(Iterable<? extends Position> positions)
+	{
+		boolean empty = true;
+		double minLatitude = 0, minLongitude = 0, minElevation = 0;
+		double maxLatitude = 0, maxLongitude = 0, maxElevation = 0;
+		for (Position position : positions)
+		{
+			if (position == null)
+			{
+				continue;
+			}
+			if (empty)
+			{
+				minLatitude = maxLatitude = position.latitude.degrees;
+				minLongitude = maxLongitude = position.longitude.degrees;
+				minElevation = maxElevation = position.elevation;
+				empty = false;
+				continue;
+			}
+			minLatitude = Math.min(minLatitude, position.latitude.degrees);
+			minLongitude = Math.min(minLongitude, position.longitude.degrees);
+			minElevation = Math.min(minElevation, position.elevation);
+			maxLatitude = Math.max(maxLatitude, position.latitude.degrees);
+			maxLongitude = Math.max(maxLongitude, position.longitude.degrees);
+			maxElevation = Math.max(maxElevation, position.elevation);
+		}
+		if (empty)
+		{
+			return null;
+		}
+		return new Bounds(Position.fromDegrees(minLatitude, minLongitude, minElevation), Position.fromDegrees(
+				maxLatitude, maxLongitude, maxElevation));
+	}
+
 	public static Bounds union(Bounds bounds1, Bounds bounds2)
 	{
 		if (bounds1 == null)
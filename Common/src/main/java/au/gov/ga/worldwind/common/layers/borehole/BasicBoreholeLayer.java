@@ -38,6 +38,7 @@ import java.awt.Point;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -46,6 +47,7 @@ import javax.media.opengl.GL2;
 
 import au.gov.ga.worldwind.common.WorldWindowRegistry;
 import au.gov.ga.worldwind.common.layers.Bounds;
+import au.gov.ga.worldwind.common.layers.point.PointIndex;
 import au.gov.ga.worldwind.common.layers.point.types.MarkerPointLayer;
 import au.gov.ga.worldwind.common.layers.styled.Attribute;
 import au.gov.ga.worldwind.common.layers.styled.BasicStyleProvider;
@@ -60,7 +62,8 @@ import au.gov.ga.worldwind.common.util.Validate;
 
 /**
  * Basic implementation of the {@link BoreholeLayer}. Draws markers for each
- * borehole location, and coloured lines for borehole samples.
+ * borehole location, and coloured lines for borehole samples. Samples are
+ * rendered in spatially grouped {@link BoreholeBatch}es.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -72,7 +75,8 @@ public class BasicBoreholeLayer extends AbstractLayer implements BoreholeLayer,
 	protected StyleProvider boreholeStyleProvider = new BasicStyleProvider();
 	protected StyleProvider sampleStyleProvider = new BasicStyleProvider();
 	protected final List<BoreholeImpl> boreholes = new ArrayList<BoreholeImpl>();
-	protected final List<Marker> markers = new ArrayList<Marker>();
+	protected final PointIndex<Marker> markerIndex = new PointIndex<Marker>();
+	protected volatile List<BoreholeBatch> batches = Collections.emptyList();
 	protected final Map<Object, BoreholeImpl> idToBorehole = new HashMap<Object, BoreholeImpl>();
 	protected final MarkerRenderer markerRenderer = new MarkerRenderer();
 	protected final AnnotationRenderer annotationRenderer = new BasicAnnotationRenderer();
@@ -120,6 +124,10 @@ public class BasicBoreholeLayer extends AbstractLayer implements BoreholeLayer,
 
 		minimumDistance = (Double) params.getValue(AVKeyMore.MINIMUM_DISTANCE);
 
+		// Clustering hides boreholes that are close together, so only enable it if requested
+		Integer i = (Integer) params.getValue(AVKeyMore.CLUSTER_PIXELS);
+		markerIndex.setClusterPixels(i != null ? i : 0);
+
 		Validate.notBlank(url, "Borehole data url not set");
 		Validate.notBlank(dataCacheName, "Borehole data cache name not set");
 
@@ -194,7 +202,7 @@ public class BasicBoreholeLayer extends AbstractLayer implements BoreholeLayer,
 			synchronized (boreholes)
 			{
 				boreholes.add(borehole);
-				markers.add(borehole);
+				markerIndex.add(position, borehole);
 			}
 
 			StyleAndText boreholeProperties = boreholeStyleProvider.getStyle(attributeValues);
@@ -218,10 +226,17 @@ public class BasicBoreholeLayer extends AbstractLayer implements BoreholeLayer,
 	@Override
 	public void loadComplete()
 	{
-		for (BoreholeImpl borehole : boreholes)
+		//render the samples of nearby boreholes together, instead of each borehole separately
+		List<BoreholeBatch> batches = new ArrayList<BoreholeBatch>();
+		synchronized (boreholes)
 		{
-			borehole.loadComplete();
+			markerIndex.build();
+			for (List<BoreholeImpl> group : BoreholeBatch.groupBoreholes(boreholes, minimumDistance))
+			{
+				batches.add(new BoreholeBatch(this, group));
+			}
 		}
+		this.batches = batches;
 	}
 
 	@Override
@@ -247,7 +262,10 @@ public class BasicBoreholeLayer extends AbstractLayer implements BoreholeLayer,
 		boreholeProvider.requestData(this);
 		synchronized (boreholes)
 		{
-			markerRenderer.render(dc, markers);
+			if (markerIndex.isBuilt())
+			{
+				markerRenderer.render(dc, markerIndex.getVisible(dc));
+			}
 			annotationRenderer.render(dc, tooltipAnnotation, tooltipAnnotation.getAnnotationDrawPoint(dc), this);
 
 			GL2 gl = dc.getGL().getGL2();
@@ -256,9 +274,9 @@ public class BasicBoreholeLayer extends AbstractLayer implements BoreholeLayer,
 				gl.glPushAttrib(GL2.GL_LINE_BIT);
 				gl.glLineWidth((float) lineWidth);
 
-				for (BoreholeImpl borehole : boreholes)
+				for (BoreholeBatch batch : batches)
 				{
-					borehole.render(dc);
+					batch.render(dc);
 				}
 			}
 			finally
@@ -0,0 +1,372 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.borehole;
+
+import gov.nasa.worldwind.geom.Extent;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.globes.Earth;
+import gov.nasa.worldwind.pick.PickSupport;
+import gov.nasa.worldwind.pick.PickedObject;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.Renderable;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.media.opengl.GL2;
+
+import au.gov.ga.worldwind.common.render.fastshape.FastShape;
+
+/**
+ * Renders the samples of a group of nearby {@link BoreholeImpl}s as a single
+ * {@link FastShape}, with a shared vertex and colour buffer, rather than one
+ * shape per borehole.
+ * <p/>
+ * The minimum drawing distance is tested against the extent of the entire
+ * batch, so batches are kept small relative to the layer's minimum distance
+ * (see {@link #groupBoreholes(List, Double)}). When the batch is far enough
+ * from the eye that the average sample is smaller than a pixel, a coarse shape
+ * is rendered instead, containing a single line per borehole coloured by the
+ * borehole's longest sample.
+ * <p/>
+ * Picking is performed in two passes: the entire batch is first rendered in a
+ * single pick colour, and only if the batch is picked are the individual
+ * samples (or boreholes, for the coarse shape) rendered with unique pick
+ * colours.
+ */
+public class BoreholeBatch implements Renderable
+{
+	/**
+	 * Maximum number of samples in a batch; larger groups of boreholes are
+	 * split spatially
+	 */
+	public static final int MAX_SAMPLES_PER_BATCH = 8192;
+
+	/**
+	 * Maximum width and height of a batch (in metres), as a fraction of the
+	 * layer's minimum drawing distance
+	 */
+	public static final double MAX_SIZE_PER_MINIMUM_DISTANCE = 0.25;
+
+	private final BoreholeLayer layer;
+	private final List<BoreholeSample> samples = new ArrayList<BoreholeSample>();
+	private final List<BoreholeImpl> coarseBoreholes = new ArrayList<BoreholeImpl>();
+	private final FastShape samplesShape;
+	private final FastShape coarseShape;
+	private final FastShape centrelineShape;
+	private final float[] samplesPickingColorBuffer;
+	private final float[] coarsePickingColorBuffer;
+	private final double averageSampleLength;
+
+	private final PickSupport pickSupport = new PickSupport();
+
+	public BoreholeBatch(BoreholeLayer layer, List<BoreholeImpl> boreholes)
+	{
+		this.layer = layer;
+
+		List<Position> positions = new ArrayList<Position>();
+		List<Color> colors = new ArrayList<Color>();
+		List<Position> coarsePositions = new ArrayList<Position>();
+		List<Color> coarseColors = new ArrayList<Color>();
+		List<Position> centrelinePositions = new ArrayList<Position>();
+		double totalSampleLength = 0;
+
+		for (BoreholeImpl borehole : boreholes)
+		{
+			double latitude = borehole.getPosition().getLatitude().degrees;
+			double longitude = borehole.getPosition().getLongitude().degrees;
+
+			BoreholeSample longest = null;
+			double top = Double.MAX_VALUE, bottom = -Double.MAX_VALUE;
+			for (BoreholeSample sample : borehole.getSamples())
+			{
+				positions.add(Position.fromDegrees(latitude, longitude, -sample.getDepthFrom()));
+				positions.add(Position.fromDegrees(latitude, longitude, -sample.getDepthTo()));
+
+				Color sampleColor = getSampleColor(sample);
+				colors.add(sampleColor);
+				colors.add(sampleColor);
+				samples.add(sample);
+
+				double length = Math.abs(sample.getDepthTo() - sample.getDepthFrom());
+				totalSampleLength += length;
+				if (longest == null || length > Math.abs(longest.getDepthTo() - longest.getDepthFrom()))
+				{
+					longest = sample;
+				}
+				top = Math.min(top, Math.min(sample.getDepthFrom(), sample.getDepthTo()));
+				bottom = Math.max(bottom, Math.max(sample.getDepthFrom(), sample.getDepthTo()));
+			}
+
+			if (longest != null)
+			{
+				coarsePositions.add(Position.fromDegrees(latitude, longitude, -top));
+				coarsePositions.add(Position.fromDegrees(latitude, longitude, -bottom));
+				Color color = getSampleColor(longest);
+				coarseColors.add(color);
+				coarseColors.add(color);
+				coarseBoreholes.add(borehole);
+
+				centrelinePositions.add(borehole.getPosition());
+				centrelinePositions.add(positions.get(positions.size() - 1));
+			}
+		}
+
+		averageSampleLength = samples.isEmpty() ? 0 : totalSampleLength / samples.size();
+
+		samplesShape = new FastShape(positions, GL2.GL_LINES);
+		samplesShape.setColorBuffer(FastShape.color3ToFloats(colors));
+		samplesShape.setFollowTerrain(true);
+		samplesPickingColorBuffer = new float[colors.size() * 3];
+
+		coarseShape = new FastShape(coarsePositions, GL2.GL_LINES);
+		coarseShape.setColorBuffer(FastShape.color3ToFloats(coarseColors));
+		coarseShape.setFollowTerrain(true);
+		coarsePickingColorBuffer = new float[coarseColors.size() * 3];
+
+		centrelineShape = new FastShape(centrelinePositions, GL2.GL_LINES);
+		centrelineShape.setColor(Color.LIGHT_GRAY);
+		centrelineShape.setLineWidth(1.0);
+		centrelineShape.setFollowTerrain(true);
+	}
+
+	private Color getSampleColor(BoreholeSample sample)
+	{
+		return sample.getColor() == null ? layer.getDefaultSampleColor() : sample.getColor();
+	}
+
+	/**
+	 * Split the provided boreholes into spatially grouped lists, each
+	 * containing at most {@link #MAX_SAMPLES_PER_BATCH} samples (unless a
+	 * single borehole contains more).
+	 * 
+	 * @param boreholes
+	 *            Boreholes to group
+	 * @return List of borehole groups
+	 */
+	public static List<List<BoreholeImpl>> groupBoreholes(List<BoreholeImpl> boreholes)
+	{
+		return groupBoreholes(boreholes, null);
+	}
+
+	/**
+	 * Split the provided boreholes into spatially grouped lists, each
+	 * containing at most {@link #MAX_SAMPLES_PER_BATCH} samples (unless a
+	 * single borehole contains more). If a minimum drawing distance is
+	 * provided, groups are also split until they are no wider or higher than
+	 * {@link #MAX_SIZE_PER_MINIMUM_DISTANCE} times that distance, so that
+	 * culling a batch by its extent is close to culling each borehole
+	 * separately.
+	 * 
+	 * @param boreholes
+	 *            Boreholes to group
+	 * @param minimumDistance
+	 *            Minimum drawing distance of the boreholes (in metres), or
+	 *            <code>null</code> if they are drawn at any distance
+	 * @return List of borehole groups
+	 */
+	public static List<List<BoreholeImpl>> groupBoreholes(List<BoreholeImpl> boreholes, Double minimumDistance)
+	{
+		double maxSize = minimumDistance == null ? Double.MAX_VALUE : minimumDistance * MAX_SIZE_PER_MINIMUM_DISTANCE;
+		List<List<BoreholeImpl>> groups = new ArrayList<List<BoreholeImpl>>();
+		groupBoreholes(boreholes, maxSize, groups);
+		return groups;
+	}
+
+	private static void groupBoreholes(List<BoreholeImpl> boreholes, double maxSize, List<List<BoreholeImpl>> groups)
+	{
+		if (boreholes.isEmpty())
+		{
+			return;
+		}
+
+		int sampleCount = 0;
+		double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+		double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+		for (BoreholeImpl borehole : boreholes)
+		{
+			sampleCount += borehole.getSamples().size();
+			minLat = Math.min(minLat, borehole.getPosition().getLatitude().degrees);
+			maxLat = Math.max(maxLat, borehole.getPosition().getLatitude().degrees);
+			minLon = Math.min(minLon, borehole.getPosition().getLongitude().degrees);
+			maxLon = Math.max(maxLon, borehole.getPosition().getLongitude().degrees);
+		}
+
+		//approximate size of the boreholes' bounds on the surface (width at the latitude closest to the equator)
+		double widestLat = minLat <= 0 && maxLat >= 0 ? 0 : Math.min(Math.abs(minLat), Math.abs(maxLat));
+		double height = Math.toRadians(maxLat - minLat) * Earth.WGS84_EQUATORIAL_RADIUS;
+		double width =
+				Math.toRadians(maxLon - minLon) * Earth.WGS84_EQUATORIAL_RADIUS * Math.cos(Math.toRadians(widestLat));
+		boolean small = width <= maxSize && height <= maxSize;
+
+		boolean degenerate = minLat == maxLat && minLon == maxLon;
+		if ((sampleCount <= MAX_SAMPLES_PER_BATCH && small) || boreholes.size() == 1 || degenerate)
+		{
+			groups.add(boreholes);
+			return;
+		}
+
+		//split into quadrants around the center of the boreholes' bounds
+		double midLat = (minLat + maxLat) * 0.5;
+		double midLon = (minLon + maxLon) * 0.5;
+		List<List<BoreholeImpl>> quadrants = new ArrayList<List<BoreholeImpl>>(4);
+		for (int i = 0; i < 4; i++)
+		{
+			quadrants.add(new ArrayList<BoreholeImpl>());
+		}
+		for (BoreholeImpl borehole : boreholes)
+		{
+			int quadrant = (borehole.getPosition().getLatitude().degrees < midLat ? 0 : 2)
+					+ (borehole.getPosition().getLongitude().degrees < midLon ? 0 : 1);
+			quadrants.get(quadrant).add(borehole);
+		}
+		for (List<BoreholeImpl> quadrant : quadrants)
+		{
+			groupBoreholes(quadrant, maxSize, groups);
+		}
+	}
+
+	@Override
+	public void render(DrawContext dc)
+	{
+		if (samples.isEmpty())
+		{
+			return;
+		}
+
+		//check if the batch is within the minimum drawing distance; if not, don't draw
+		Extent extent = samplesShape.getExtent();
+		boolean coarse = false;
+		if (extent != null)
+		{
+			double distanceToEye = extent.getCenter().distanceTo3(dc.getView().getEyePoint()) - extent.getRadius();
+			if (layer.getMinimumDistance() != null && distanceToEye > layer.getMinimumDistance())
+			{
+				return;
+			}
+
+			//drop the sample detail if the average sample is smaller than a pixel
+			double pixelSize = dc.getView().computePixelSizeAtDistance(Math.max(distanceToEye, 0));
+			coarse = averageSampleLength < pixelSize;
+		}
+
+		FastShape shape = coarse ? coarseShape : samplesShape;
+		if (!dc.isPickingMode())
+		{
+			shape.render(dc);
+			centrelineShape.render(dc);
+		}
+		else
+		{
+			//Don't calculate the picking buffer if the shape isn't going to be rendered anyway.
+			if (extent != null && !dc.getView().getFrustumInModelCoordinates().intersects(extent))
+			{
+				return;
+			}
+
+			if (coarse)
+			{
+				pick(dc, shape, coarseBoreholes, coarsePickingColorBuffer);
+			}
+			else
+			{
+				pick(dc, shape, samples, samplesPickingColorBuffer);
+			}
+		}
+	}
+
+	/**
+	 * Pick the provided shape, whose lines correspond to the provided objects
+	 * (one line, and 2 vertices, per object).
+	 */
+	protected void pick(DrawContext dc, FastShape shape, List<?> objects, float[] pickingColorBuffer)
+	{
+		boolean oldDeepPicking = dc.isDeepPickingEnabled();
+		try
+		{
+			//deep picking needs to be enabled, because boreholes are below the surface
+			dc.setDeepPickingEnabled(true);
+			pickSupport.beginPicking(dc);
+
+			//First pick on the entire batch by setting the shape to a single color.
+			//This will determine if we have to go further and pick individual objects.
+			Color overallPickColor = dc.getUniquePickColor();
+			pickSupport.addPickableObject(overallPickColor.getRGB(), this);
+			shape.setColor(overallPickColor);
+			shape.setColorBufferEnabled(false);
+			shape.render(dc);
+			shape.setColorBufferEnabled(true);
+
+			PickedObject object = pickSupport.getTopObject(dc, dc.getPickPoint());
+			pickSupport.clearPickList();
+
+			if (object != null && object.getObject() == this)
+			{
+				//This batch has been picked; now try picking the objects individually
+
+				//Put unique pick colours into the pickingColorBuffer (2 per object)
+				int i = 0;
+				for (Object o : objects)
+				{
+					Color color = dc.getUniquePickColor();
+					Borehole borehole = o instanceof BoreholeSample ? ((BoreholeSample) o).getBorehole() : (Borehole) o;
+					pickSupport.addPickableObject(color.getRGB(), o, borehole.getPosition());
+					for (int j = 0; j < 2; j++)
+					{
+						pickingColorBuffer[i++] = color.getRed() / 255f;
+						pickingColorBuffer[i++] = color.getGreen() / 255f;
+						pickingColorBuffer[i++] = color.getBlue() / 255f;
+					}
+				}
+
+				//render the shape with the pickingColorBuffer, and then resolve the pick
+				shape.setPickingColorBuffer(pickingColorBuffer);
+				shape.render(dc);
+				pickSupport.resolvePick(dc, dc.getPickPoint(), layer);
+			}
+		}
+		finally
+		{
+			pickSupport.endPicking(dc);
+			dc.setDeepPickingEnabled(oldDeepPicking);
+		}
+	}
+
+	/**
+	 * @return The samples in this batch, in the order they appear in the
+	 *         samples shape
+	 */
+	public List<BoreholeSample> getSamples()
+	{
+		return samples;
+	}
+
+	FastShape getSamplesShape()
+	{
+		return samplesShape;
+	}
+
+	FastShape getCoarseShape()
+	{
+		return coarseShape;
+	}
+
+	FastShape getCentrelineShape()
+	{
+		return centrelineShape;
+	}
+}
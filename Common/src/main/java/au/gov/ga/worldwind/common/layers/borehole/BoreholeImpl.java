@@ -102,7 +102,9 @@ public class BoreholeImpl extends UrlMarker implements Borehole, Renderable
 	/**
 	 * Notify this {@link Borehole} that all samples have been added to it, and
 	 * it can create it's geometry. This should be called by the
-	 * {@link BoreholeLayer} in it's own loadComplete() function.
+	 * {@link BoreholeLayer} in it's own loadComplete() function, if the
+	 * borehole is rendered individually (the {@link BasicBoreholeLayer} renders
+	 * boreholes in {@link BoreholeBatch}es instead).
 	 */
 	public void loadComplete()
 	{
@@ -80,6 +80,7 @@ public class BoreholeLayerFactory
 				"SampleDepthAttributes/@positive", xpath);
 		WWXML.checkAndSetDoubleParam(domElement, params, AVKeyMore.LINE_WIDTH, "LineWidth", xpath);
 		WWXML.checkAndSetDoubleParam(domElement, params, AVKeyMore.MINIMUM_DISTANCE, "MinimumDistance", xpath);
+		WWXML.checkAndSetIntegerParam(domElement, params, AVKeyMore.CLUSTER_PIXELS, "ClusterPixels", xpath);
 
 		setupBoreholeProvider(domElement, xpath, params);
 
@@ -31,9 +31,15 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.media.opengl.GL2;
 import javax.xml.xpath.XPath;
@@ -45,6 +51,7 @@ import au.gov.ga.worldwind.common.downloader.Downloader;
 import au.gov.ga.worldwind.common.downloader.RetrievalHandler;
 import au.gov.ga.worldwind.common.downloader.RetrievalResult;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
 import au.gov.ga.worldwind.common.util.Loader;
 
 import com.jogamp.common.nio.Buffers;
@@ -60,6 +67,12 @@ import com.jogamp.common.nio.Buffers;
  * <p/>
  * The crust layer will be rendered as a surface deformed by the elevation data
  * and coloured using a colour map based on min and max elevation values.
+ * <p/>
+ * When the globe changes, the surface point and the (scaled) elevation
+ * displacement of each vertex are calculated once, relative to a reference
+ * center. Changing the vertical exaggeration then only requires a single
+ * multiply-add pass over these arrays, which is split between threads for
+ * large grids. Colours are looked up in a precomputed colour map table.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -68,6 +81,21 @@ public class CrustLayer extends AbstractLayer implements Loader
 	private static final String WHITESPACE_COMMA_REGEX = "(\\s*,\\s*)|\\s+";
 	private final static int MAX_DOWNLOAD_ATTEMPTS = 3;
 
+	/**
+	 * Number of entries in the colour map lookup table.
+	 */
+	private static final int COLOR_MAP_SIZE = 1024;
+	private static final float[] COLOR_MAP = createColorMap(COLOR_MAP_SIZE);
+
+	/**
+	 * Grids with fewer vertices than this are exaggerated on the calling
+	 * thread.
+	 */
+	private static final int PARALLEL_MIN_VERTICES = 128 * 128;
+
+	private static final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime()
+			.availableProcessors(), new DaemonThreadFactory("Crust layer"));
+
 	private final URL url;
 
 	private final int width;
@@ -83,10 +111,18 @@ public class CrustLayer extends AbstractLayer implements Loader
 
 	private final Object elevationLock = new Object();
 	private DoubleBuffer elevations;
-	private DoubleBuffer vertices;
-	private DoubleBuffer colors;
+	private FloatBuffer vertices;
+	private FloatBuffer colors;
 	private IntBuffer indices;
 
+	//per vertex values (x,y,z), relative to the reference center, calculated when the globe changes
+	private Vec4 referenceCenter;
+	private float[] surfacePoints;
+	private float[] elevationOffsets;
+	private float[] exaggeratedVertices;
+	//per vertex index into the colour map, calculated when the data is loaded
+	private short[] colorIndices;
+
 	private double minElevation = Double.MAX_VALUE;
 	private double maxElevation = -Double.MAX_VALUE;
 	private double lastVerticalExaggeration = -1;
@@ -129,8 +165,8 @@ public class CrustLayer extends AbstractLayer implements Loader
 		}
 
 		indices = generateTriStripIndices(width, height, wrap);
-		vertices = Buffers.newDirectDoubleBuffer(width * height * 3);
-		colors = Buffers.newDirectDoubleBuffer(width * height * 4);
+		vertices = Buffers.newDirectFloatBuffer(width * height * 3);
+		colors = Buffers.newDirectFloatBuffer(width * height * 4);
 	}
 
 	public CrustLayer(Document dom, AVList params)
@@ -165,47 +201,166 @@ public class CrustLayer extends AbstractLayer implements Loader
 		return params;
 	}
 
-	private void recalculateVertices(Globe globe, double verticalExaggeration)
+	/**
+	 * Calculate the surface point and elevation displacement of each vertex
+	 * for the given globe. The globe's cartesian points are linear in
+	 * elevation, so a vertex at any vertical exaggeration is the surface point
+	 * plus the exaggeration multiplied by the displacement.
+	 */
+	protected void recalculateGeometry(Globe globe)
+	{
+		synchronized (elevationLock)
+		{
+			if (elevations == null)
+			{
+				return;
+			}
+
+			int count = width * height;
+			if (surfacePoints == null)
+			{
+				surfacePoints = new float[count * 3];
+				elevationOffsets = new float[count * 3];
+				exaggeratedVertices = new float[count * 3];
+			}
+
+			Angle[] lats = new Angle[height];
+			Angle[] lons = new Angle[width];
+			double lonstep = sector.getDeltaLonDegrees() / (width - 1);
+			double latstep = sector.getDeltaLatDegrees() / (height - 1);
+			for (int y = 0; y < height; y++)
+			{
+				lats[y] = sector.getMaxLatitude().subtractDegrees(latstep * y);
+			}
+			for (int x = 0; x < width; x++)
+			{
+				lons[x] = sector.getMinLongitude().addDegrees(lonstep * x);
+			}
+
+			Vec4 center = globe.computePointFromPosition(sector.getCentroid(), 0);
+			elevations.rewind();
+			for (int y = 0, i = 0; y < height; y++)
+			{
+				for (int x = 0; x < width; x++, i += 3)
+				{
+					Vec4 surface = globe.computePointFromPosition(lats[y], lons[x], 0);
+					Vec4 up = globe.computePointFromPosition(lats[y], lons[x], 1);
+					double elevation = elevations.get() * scale;
+					surfacePoints[i] = (float) (surface.x - center.x);
+					surfacePoints[i + 1] = (float) (surface.y - center.y);
+					surfacePoints[i + 2] = (float) (surface.z - center.z);
+					elevationOffsets[i] = (float) ((up.x - surface.x) * elevation);
+					elevationOffsets[i + 1] = (float) ((up.y - surface.y) * elevation);
+					elevationOffsets[i + 2] = (float) ((up.z - surface.z) * elevation);
+				}
+			}
+			referenceCenter = center;
+		}
+	}
+
+	/**
+	 * Recalculate the vertices for the given vertical exaggeration, from the
+	 * values calculated by {@link #recalculateGeometry(Globe)}.
+	 */
+	protected void recalculateVertices(double verticalExaggeration)
 	{
 		synchronized (elevationLock)
 		{
-			if (elevations != null)
+			if (surfacePoints == null)
+			{
+				return;
+			}
+
+			final float exaggeration = (float) verticalExaggeration;
+			int length = surfacePoints.length;
+			boolean parallel = length / 3 >= PARALLEL_MIN_VERTICES;
+			int chunks = parallel ? Runtime.getRuntime().availableProcessors() : 1;
+			int chunkSize = ((length / 3 + chunks - 1) / chunks) * 3;
+
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			for (int start = 0; start < length; start += chunkSize)
 			{
-				elevations.rewind();
-				vertices.rewind();
-				Angle minlon = sector.getMinLongitude();
-				Angle minlat = sector.getMaxLatitude();
-				double lonstep = sector.getDeltaLonDegrees() / (width - 1);
-				double latstep = sector.getDeltaLatDegrees() / (height - 1);
-				for (int y = 0; y < height; y++)
+				final int from = start;
+				final int to = Math.min(length, start + chunkSize);
+				tasks.add(new Callable<Void>()
 				{
-					Angle lat = minlat.subtractDegrees(latstep * y);
-					for (int x = 0; x < width; x++)
+					@Override
+					public Void call()
 					{
-						Angle lon = minlon.addDegrees(lonstep * x);
-						double elev = elevations.get() * scale * verticalExaggeration;
-						Vec4 point = globe.computePointFromPosition(lat, lon, elev);
-						vertices.put(point.x).put(point.y).put(point.z);
+						exaggerate(surfacePoints, elevationOffsets, exaggeratedVertices, exaggeration, from, to);
+						return null;
 					}
+				});
+			}
+			invokeAll(tasks, parallel);
+
+			vertices.clear();
+			vertices.put(exaggeratedVertices);
+			vertices.rewind();
+		}
+	}
+
+	private static void exaggerate(float[] surfacePoints, float[] elevationOffsets, float[] vertices,
+			float exaggeration, int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			vertices[i] = surfacePoints[i] + exaggeration * elevationOffsets[i];
+		}
+	}
+
+	protected static void invokeAll(List<Callable<Void>> tasks, boolean parallel)
+	{
+		try
+		{
+			if (parallel && tasks.size() > 1)
+			{
+				for (Future<Void> future : executor.invokeAll(tasks))
+				{
+					future.get();
 				}
 			}
+			else
+			{
+				for (Callable<Void> task : tasks)
+				{
+					task.call();
+				}
+			}
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Error calculating crust vertices", e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted calculating crust vertices", e);
+		}
+		catch (RuntimeException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new IllegalStateException(e);
 		}
 	}
 
-	private void recalculateColors()
+	protected void recalculateColors()
 	{
 		synchronized (elevationLock)
 		{
-			if (elevations != null)
+			if (colorIndices != null)
 			{
-				elevations.rewind();
-				colors.rewind();
-				for (int i = 0; i < width * height; i++)
+				float opacity = (float) getOpacity();
+				colors.clear();
+				for (int i = 0; i < colorIndices.length; i++)
 				{
-					double[] color =
-							chroma((elevations.get() - minElevation) / (maxElevation - minElevation), getOpacity());
-					colors.put(color);
+					int index = colorIndices[i] * 3;
+					colors.put(COLOR_MAP[index]).put(COLOR_MAP[index + 1]).put(COLOR_MAP[index + 2]).put(opacity);
 				}
+				colors.rewind();
 			}
 		}
 	}
@@ -287,13 +442,24 @@ public class CrustLayer extends AbstractLayer implements Loader
 			downloadData();
 		}
 
-		if (lastVerticalExaggeration != dc.getVerticalExaggeration() || lastGlobe != dc.getGlobe())
+		if (lastGlobe != dc.getGlobe())
 		{
 			lastVerticalExaggeration = dc.getVerticalExaggeration();
 			lastGlobe = dc.getGlobe();
-			recalculateVertices(lastGlobe, lastVerticalExaggeration);
+			recalculateGeometry(lastGlobe);
+			recalculateVertices(lastVerticalExaggeration);
 			recalculateColors();
 		}
+		else if (lastVerticalExaggeration != dc.getVerticalExaggeration())
+		{
+			lastVerticalExaggeration = dc.getVerticalExaggeration();
+			recalculateVertices(lastVerticalExaggeration);
+		}
+
+		if (referenceCenter == null)
+		{
+			return;
+		}
 
 		GL2 gl = dc.getGL().getGL2();
 
@@ -311,7 +477,7 @@ public class CrustLayer extends AbstractLayer implements Loader
 		if (colors != null)
 		{
 			gl.glEnableClientState(GL2.GL_COLOR_ARRAY);
-			gl.glColorPointer(4, GL2.GL_DOUBLE, 0, colors.rewind());
+			gl.glColorPointer(4, GL2.GL_FLOAT, 0, colors.rewind());
 		}
 		if (getOpacity() < 1.0)
 		{
@@ -319,9 +485,11 @@ public class CrustLayer extends AbstractLayer implements Loader
 		}
 
 		gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
-		gl.glVertexPointer(3, GL2.GL_DOUBLE, 0, vertices.rewind());
+		gl.glVertexPointer(3, GL2.GL_FLOAT, 0, vertices.rewind());
 
+		dc.getView().pushReferenceCenter(dc, referenceCenter);
 		gl.glDrawElements(GL2.GL_TRIANGLE_STRIP, indices.limit(), GL2.GL_UNSIGNED_INT, indices.rewind());
+		dc.getView().popReferenceCenter(dc);
 
 		gl.glColor4d(1, 1, 1, 1);
 		gl.glPopClientAttrib();
@@ -382,9 +550,17 @@ public class CrustLayer extends AbstractLayer implements Loader
 				maxElevation = Math.max(maxElevation, elev);
 			}
 
+			short[] colorIndices = new short[width * height];
+			for (int i = 0; i < colorIndices.length; i++)
+			{
+				double depth = (doubles[i] - minElevation) / (maxElevation - minElevation);
+				colorIndices[i] = (short) Math.round(clamp(depth, 0, 1) * (COLOR_MAP_SIZE - 1));
+			}
+
 			synchronized (elevationLock)
 			{
 				this.elevations = buffer;
+				this.colorIndices = colorIndices;
 			}
 			//force a recalculate
 			lastGlobe = null;
@@ -414,16 +590,27 @@ public class CrustLayer extends AbstractLayer implements Loader
 		gl.glBlendFunc(GL2.GL_SRC_ALPHA, GL2.GL_ONE_MINUS_SRC_ALPHA);
 	}
 
-	private static double[] chroma(double depth, double opacity)
+	/**
+	 * Create a lookup table of RGB colours for depths between 0 and 1.
+	 */
+	private static float[] createColorMap(int size)
 	{
-		double r = 2.0 - depth * 4.0;
-		double b = depth * 4.0 - 2.0;
-		double g = depth * 4.0;
-		if (g >= 2.0)
+		float[] map = new float[size * 3];
+		for (int i = 0; i < size; i++)
 		{
-			g = 4.0 - g;
+			double depth = i / (double) (size - 1);
+			double r = 2.0 - depth * 4.0;
+			double b = depth * 4.0 - 2.0;
+			double g = depth * 4.0;
+			if (g >= 2.0)
+			{
+				g = 4.0 - g;
+			}
+			map[i * 3] = (float) clamp(r, 0, 1);
+			map[i * 3 + 1] = (float) clamp(g, 0, 1);
+			map[i * 3 + 2] = (float) clamp(b, 0, 1);
 		}
-		return new double[] { clamp(r, 0, 1), clamp(g, 0, 1), clamp(b, 0, 1), opacity };
+		return map;
 	}
 
 	private static double clamp(double value, double min, double max)
@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.delegate.filters;
+
+import com.jhlabs.image.PixelUtils;
+
+/**
+ * Windowed image filters that operate on flat, planar channel arrays (one
+ * value per pixel, stored row by row). The cost of each filter is independent
+ * of the window size:
+ * <ul>
+ * <li>Box sums use prefix sums (a summed-area table, applied separably to the
+ * rows and then the columns)</li>
+ * <li>Minimum and maximum use the van Herk/Gil-Werman algorithm, which needs
+ * about three comparisons per pixel for each direction</li>
+ * </ul>
+ */
+public class WindowFilters
+{
+	/**
+	 * Calculate the sum of the window around each pixel of a channel. Pixels
+	 * outside the channel are replaced by the nearest edge pixel, so every
+	 * window contains <code>windowWidth * windowHeight</code> values.
+	 * <p/>
+	 * The window around pixel x covers
+	 * <code>x - windowWidth / 2 .. x - windowWidth / 2 + windowWidth - 1</code>
+	 * (similarly for y), which is centered for odd window sizes.
+	 *
+	 * @param channel
+	 *            Channel values
+	 * @param width
+	 *            Width of the channel
+	 * @param height
+	 *            Height of the channel
+	 * @param windowWidth
+	 *            Width of the window (at least 1)
+	 * @param windowHeight
+	 *            Height of the window (at least 1)
+	 * @return Window sums
+	 */
+	public static int[] boxSum(int[] channel, int width, int height, int windowWidth, int windowHeight)
+	{
+		int[] rows = new int[width * height];
+		int[] prefix = new int[Math.max(width, height) + 1];
+		for (int y = 0; y < height; y++)
+		{
+			boxSum1D(channel, y * width, 1, width, windowWidth, prefix, rows);
+		}
+
+		int[] sums = new int[width * height];
+		int[] column = new int[height];
+		int[] columnSums = new int[height];
+		for (int x = 0; x < width; x++)
+		{
+			for (int y = 0; y < height; y++)
+			{
+				column[y] = rows[y * width + x];
+			}
+			boxSum1D(column, 0, 1, height, windowHeight, prefix, columnSums);
+			for (int y = 0; y < height; y++)
+			{
+				sums[y * width + x] = columnSums[y];
+			}
+		}
+		return sums;
+	}
+
+	private static void boxSum1D(int[] src, int offset, int stride, int length, int window, int[] prefix,
+			int[] dst)
+	{
+		prefix[0] = 0;
+		for (int i = 0, s = offset; i < length; i++, s += stride)
+		{
+			prefix[i + 1] = prefix[i] + src[s];
+		}
+
+		int first = src[offset];
+		int last = src[offset + (length - 1) * stride];
+		int before = window / 2;
+		int after = window - 1 - before;
+		for (int i = 0, d = offset; i < length; i++, d += stride)
+		{
+			int start = i - before;
+			int end = i + after;
+			int sum = 0;
+			if (start < 0)
+			{
+				sum += -start * first;
+				start = 0;
+			}
+			if (end >= length)
+			{
+				sum += (end - length + 1) * last;
+				end = length - 1;
+			}
+			if (start <= end)
+			{
+				sum += prefix[end + 1] - prefix[start];
+			}
+			dst[d] = sum;
+		}
+	}
+
+	/**
+	 * Calculate the maximum of the window around each pixel of a channel. The
+	 * window covers <code>x - radiusX .. x + radiusX</code> and
+	 * <code>y - radiusY .. y + radiusY</code>, clipped to the channel bounds.
+	 *
+	 * @param channel
+	 *            Channel values
+	 * @param width
+	 *            Width of the channel
+	 * @param height
+	 *            Height of the channel
+	 * @param radiusX
+	 *            Horizontal window radius
+	 * @param radiusY
+	 *            Vertical window radius
+	 * @return Window maximums
+	 */
+	public static int[] maximum(int[] channel, int width, int height, int radiusX, int radiusY)
+	{
+		return rank(channel, width, height, radiusX, radiusY, true);
+	}
+
+	/**
+	 * Calculate the minimum of the window around each pixel of a channel.
+	 *
+	 * @see #maximum(int[], int, int, int, int)
+	 */
+	public static int[] minimum(int[] channel, int width, int height, int radiusX, int radiusY)
+	{
+		return rank(channel, width, height, radiusX, radiusY, false);
+	}
+
+	private static int[] rank(int[] channel, int width, int height, int radiusX, int radiusY, boolean maximum)
+	{
+		int[] rows = new int[width * height];
+		int maxLength = Math.max(width + radiusX * 2 + radiusX * 2 + 1, height + radiusY * 2 + radiusY * 2 + 1);
+		int[] padded = new int[maxLength];
+		int[] forward = new int[maxLength];
+		int[] backward = new int[maxLength];
+
+		for (int y = 0; y < height; y++)
+		{
+			rank1D(channel, rows, y * width, 1, width, radiusX, maximum, padded, forward, backward);
+		}
+
+		int[] result = new int[width * height];
+		for (int x = 0; x < width; x++)
+		{
+			rank1D(rows, result, x, width, height, radiusY, maximum, padded, forward, backward);
+		}
+		return result;
+	}
+
+	/**
+	 * van Herk/Gil-Werman running minimum/maximum. The padded line is split
+	 * into blocks of the window size; the result for a window is the
+	 * combination of the suffix of the block it starts in and the prefix of the
+	 * block it ends in.
+	 */
+	private static void rank1D(int[] src, int[] dst, int offset, int stride, int length, int radius,
+			boolean maximum, int[] padded, int[] forward, int[] backward)
+	{
+		int window = radius * 2 + 1;
+		int blocks = (length + radius * 2 + window - 1) / window;
+		int paddedLength = blocks * window;
+		int identity = maximum ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+
+		for (int i = 0; i < paddedLength; i++)
+		{
+			int index = i - radius;
+			padded[i] = index >= 0 && index < length ? src[offset + index * stride] : identity;
+		}
+
+		for (int start = 0; start < paddedLength; start += window)
+		{
+			int end = start + window - 1;
+			forward[start] = padded[start];
+			for (int i = start + 1; i <= end; i++)
+			{
+				int value = padded[i];
+				int previous = forward[i - 1];
+				forward[i] = maximum ? (value > previous ? value : previous) : (value < previous ? value : previous);
+			}
+			backward[end] = padded[end];
+			for (int i = end - 1; i >= start; i--)
+			{
+				int value = padded[i];
+				int next = backward[i + 1];
+				backward[i] = maximum ? (value > next ? value : next) : (value < next ? value : next);
+			}
+		}
+
+		for (int i = 0, d = offset; i < length; i++, d += stride)
+		{
+			//window covers padded[i .. i + window - 1]
+			int a = backward[i];
+			int b = forward[i + window - 1];
+			dst[d] = maximum ? (a > b ? a : b) : (a < b ? a : b);
+		}
+	}
+
+	/**
+	 * Apply a 3x3 transparency-aware minimum or maximum filter to packed ARGB
+	 * pixels. The result is identical to combining each pixel's neighbours in
+	 * turn using {@link PixelUtils#combinePixels(int, int, int)}, starting with
+	 * the pixel's alpha (and black for a maximum, white for a minimum).
+	 * <p/>
+	 * For opaque pixels this is the per-channel minimum/maximum of the
+	 * neighbourhood, which is calculated with {@link #minimum} or
+	 * {@link #maximum}. Pixels that aren't opaque are blended as each
+	 * neighbour is combined, so they are calculated individually.
+	 *
+	 * @param width
+	 *            Width of the image
+	 * @param height
+	 *            Height of the image
+	 * @param inPixels
+	 *            Packed ARGB pixels
+	 * @param maximum
+	 *            Calculate the maximum (otherwise the minimum)?
+	 * @return Filtered pixels
+	 */
+	public static int[] transparentRank(int width, int height, int[] inPixels, boolean maximum)
+	{
+		int count = width * height;
+		int[] red = new int[count];
+		int[] green = new int[count];
+		int[] blue = new int[count];
+		for (int i = 0; i < count; i++)
+		{
+			int pixel = inPixels[i];
+			red[i] = (pixel >> 16) & 0xff;
+			green[i] = (pixel >> 8) & 0xff;
+			blue[i] = pixel & 0xff;
+		}
+
+		red = rank(red, width, height, 1, 1, maximum);
+		green = rank(green, width, height, 1, 1, maximum);
+		blue = rank(blue, width, height, 1, 1, maximum);
+
+		int op = maximum ? PixelUtils.MAX : PixelUtils.MIN;
+		int[] outPixels = new int[count];
+		for (int y = 0, index = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++, index++)
+			{
+				int alpha = inPixels[index] & 0xff000000;
+				if (alpha == 0xff000000)
+				{
+					outPixels[index] = alpha | red[index] << 16 | green[index] << 8 | blue[index];
+					continue;
+				}
+
+				int pixel = maximum ? alpha : inPixels[index] | 0xffffff;
+				for (int iy = Math.max(0, y - 1); iy <= Math.min(height - 1, y + 1); iy++)
+				{
+					for (int ix = Math.max(0, x - 1); ix <= Math.min(width - 1, x + 1); ix++)
+					{
+						pixel = PixelUtils.combinePixels(pixel, inPixels[iy * width + ix], op);
+					}
+				}
+				outPixels[index] = pixel;
+			}
+		}
+		return outPixels;
+	}
+}
@@ -0,0 +1,449 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.delegate.reader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import au.gov.ga.worldwind.common.util.URLUtil;
+
+/**
+ * Index of the entries within a zip file containing tile images and masks.
+ * <p/>
+ * For local zip files, the central directory at the end of the file is read
+ * once to build a map of entry names to local header offsets. Entries are then
+ * read with random access, without inflating any other entries in the file.
+ * Indexes of local files are cached (and re-read if the file is modified), so
+ * zip files shared between tiles (such as <code>mask.zip</code>) are only
+ * indexed once.
+ * <p/>
+ * Zip files that aren't local (or that use features not supported by the
+ * index, such as ZIP64) are read into memory from a {@link ZipInputStream}
+ * instead.
+ */
+public class MaskArchive
+{
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int LOCAL_HEADER_LENGTH = 30;
+	private static final int CENTRAL_HEADER_LENGTH = 46;
+	private static final int END_LENGTH = 22;
+	private static final int MAX_COMMENT_LENGTH = 0xffff;
+
+	private static final int CACHE_SIZE = 64;
+	private static final Map<File, MaskArchive> cache = new LinkedHashMap<File, MaskArchive>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<File, MaskArchive> eldest)
+		{
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private final File file;
+	private final long lastModified;
+	private final long length;
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+	/**
+	 * Get the index of the zip file pointed to by the given URL. If the URL
+	 * points to a local file, the cached index is returned; otherwise the zip
+	 * file is downloaded and read into memory.
+	 *
+	 * @param url
+	 *            URL of the zip file
+	 * @return Index of the zip file
+	 * @throws IOException
+	 *             If the zip file cannot be read
+	 */
+	public static MaskArchive get(URL url) throws IOException
+	{
+		File file = URLUtil.urlToFile(url);
+		if (file != null)
+		{
+			return get(file);
+		}
+
+		InputStream is = url.openStream();
+		try
+		{
+			return read(is);
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	/**
+	 * Get the index of the given local zip file. Indexes are cached until the
+	 * file is modified.
+	 *
+	 * @param file
+	 *            Zip file
+	 * @return Index of the zip file
+	 * @throws IOException
+	 *             If the zip file cannot be read
+	 */
+	public static MaskArchive get(File file) throws IOException
+	{
+		file = file.getAbsoluteFile();
+		MaskArchive archive;
+		synchronized (cache)
+		{
+			archive = cache.get(file);
+		}
+		if (archive != null && archive.lastModified == file.lastModified() && archive.length == file.length())
+		{
+			return archive;
+		}
+
+		try
+		{
+			archive = new MaskArchive(file);
+		}
+		catch (IOException e)
+		{
+			if (!file.isFile())
+			{
+				throw e;
+			}
+			//unsupported central directory, so read the entries into memory instead
+			InputStream is = file.toURI().toURL().openStream();
+			try
+			{
+				return read(is);
+			}
+			finally
+			{
+				is.close();
+			}
+		}
+
+		synchronized (cache)
+		{
+			cache.put(file, archive);
+		}
+		return archive;
+	}
+
+	/**
+	 * Read all the entries from the given zip stream into memory.
+	 *
+	 * @param is
+	 *            Stream containing a zip file
+	 * @return Index of the zip file
+	 * @throws IOException
+	 *             If the stream cannot be read
+	 */
+	public static MaskArchive read(InputStream is) throws IOException
+	{
+		MaskArchive archive = new MaskArchive();
+		ZipInputStream zis = new ZipInputStream(is);
+		ZipEntry zipEntry;
+		byte[] buffer = new byte[8192];
+		while ((zipEntry = zis.getNextEntry()) != null)
+		{
+			if (zipEntry.isDirectory())
+			{
+				continue;
+			}
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			int read;
+			while ((read = zis.read(buffer)) >= 0)
+			{
+				baos.write(buffer, 0, read);
+			}
+
+			Entry entry = new Entry(zipEntry.getName());
+			entry.data = baos.toByteArray();
+			archive.entries.put(entry.name, entry);
+		}
+		return archive;
+	}
+
+	/**
+	 * Clear the cache of indexed zip files.
+	 */
+	public static void clearCache()
+	{
+		synchronized (cache)
+		{
+			cache.clear();
+		}
+	}
+
+	private MaskArchive()
+	{
+		this.file = null;
+		this.lastModified = 0;
+		this.length = 0;
+	}
+
+	private MaskArchive(File file) throws IOException
+	{
+		this.file = file;
+		this.lastModified = file.lastModified();
+		this.length = file.length();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			readCentralDirectory(raf);
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	private void readCentralDirectory(RandomAccessFile raf) throws IOException
+	{
+		//the end of central directory record is followed by a variable length comment
+		int tailLength = (int) Math.min(raf.length(), END_LENGTH + MAX_COMMENT_LENGTH);
+		byte[] tail = new byte[tailLength];
+		raf.seek(raf.length() - tailLength);
+		raf.readFully(tail);
+
+		int end = -1;
+		for (int i = tailLength - END_LENGTH; i >= 0; i--)
+		{
+			if (readInt(tail, i) == END_SIGNATURE)
+			{
+				end = i;
+				break;
+			}
+		}
+		if (end < 0)
+		{
+			throw new IOException("Zip end of central directory not found in " + file);
+		}
+
+		int count = readShort(tail, end + 10);
+		long directoryLength = readInt(tail, end + 12) & 0xffffffffL;
+		long directoryOffset = readInt(tail, end + 16) & 0xffffffffL;
+		if (count == 0xffff || directoryOffset == 0xffffffffL)
+		{
+			throw new IOException("ZIP64 is not supported: " + file);
+		}
+
+		byte[] directory = new byte[(int) directoryLength];
+		raf.seek(directoryOffset);
+		raf.readFully(directory);
+
+		int offset = 0;
+		for (int i = 0; i < count; i++)
+		{
+			if (offset + CENTRAL_HEADER_LENGTH > directory.length
+					|| readInt(directory, offset) != CENTRAL_HEADER_SIGNATURE)
+			{
+				throw new IOException("Invalid zip central directory in " + file);
+			}
+
+			int flags = readShort(directory, offset + 8);
+			int method = readShort(directory, offset + 10);
+			long compressedSize = readInt(directory, offset + 20) & 0xffffffffL;
+			long size = readInt(directory, offset + 24) & 0xffffffffL;
+			int nameLength = readShort(directory, offset + 28);
+			int extraLength = readShort(directory, offset + 30);
+			int commentLength = readShort(directory, offset + 32);
+			long localHeaderOffset = readInt(directory, offset + 42) & 0xffffffffL;
+			String name = new String(directory, offset + CENTRAL_HEADER_LENGTH, nameLength, "UTF-8");
+			offset += CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+
+			boolean encrypted = (flags & 1) != 0;
+			if (encrypted || name.endsWith("/"))
+			{
+				continue;
+			}
+
+			Entry entry = new Entry(name);
+			entry.method = method;
+			entry.compressedSize = compressedSize;
+			entry.size = size;
+			entry.localHeaderOffset = localHeaderOffset;
+			entries.put(name, entry);
+		}
+	}
+
+	/**
+	 * @return Names of the (non-directory) entries in this zip file, in the
+	 *         order they are stored
+	 */
+	public List<String> getEntryNames()
+	{
+		return Collections.unmodifiableList(new ArrayList<String>(entries.keySet()));
+	}
+
+	/**
+	 * @param name
+	 *            Entry name
+	 * @return True if this zip file contains an entry with the given name
+	 */
+	public boolean hasEntry(String name)
+	{
+		return entries.containsKey(name);
+	}
+
+	/**
+	 * Open a stream containing the uncompressed contents of the given entry.
+	 *
+	 * @param name
+	 *            Entry name
+	 * @return Stream containing the entry, or null if there is no such entry
+	 * @throws IOException
+	 *             If reading the entry fails
+	 */
+	public InputStream getInputStream(String name) throws IOException
+	{
+		byte[] data = readEntry(name);
+		return data == null ? null : new ByteArrayInputStream(data);
+	}
+
+	/**
+	 * Read the uncompressed contents of the given entry.
+	 *
+	 * @param name
+	 *            Entry name
+	 * @return Entry contents, or null if there is no such entry
+	 * @throws IOException
+	 *             If reading the entry fails
+	 */
+	public byte[] readEntry(String name) throws IOException
+	{
+		Entry entry = entries.get(name);
+		if (entry == null)
+		{
+			return null;
+		}
+		if (entry.data != null)
+		{
+			return entry.data;
+		}
+
+		byte[] compressed = new byte[(int) entry.compressedSize];
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			//the local header's extra field can differ from the central directory's
+			byte[] header = new byte[LOCAL_HEADER_LENGTH];
+			raf.seek(entry.localHeaderOffset);
+			raf.readFully(header);
+			if (readInt(header, 0) != LOCAL_HEADER_SIGNATURE)
+			{
+				throw new IOException("Invalid zip local header for " + name + " in " + file);
+			}
+			int nameLength = readShort(header, 26);
+			int extraLength = readShort(header, 28);
+			raf.seek(entry.localHeaderOffset + LOCAL_HEADER_LENGTH + nameLength + extraLength);
+			raf.readFully(compressed);
+		}
+		finally
+		{
+			raf.close();
+		}
+
+		if (entry.method == ZipEntry.STORED)
+		{
+			return compressed;
+		}
+		if (entry.method != ZipEntry.DEFLATED)
+		{
+			throw new IOException("Unsupported compression method " + entry.method + " for " + name + " in " + file);
+		}
+		return inflate(compressed, (int) entry.size, name);
+	}
+
+	private byte[] inflate(byte[] compressed, int size, String name) throws IOException
+	{
+		//raw deflate data requires an extra dummy byte at the end of the input
+		byte[] input = new byte[compressed.length + 1];
+		System.arraycopy(compressed, 0, input, 0, compressed.length);
+
+		Inflater inflater = new Inflater(true);
+		try
+		{
+			inflater.setInput(input);
+			byte[] data = new byte[size];
+			int offset = 0;
+			while (offset < size && !inflater.finished())
+			{
+				int inflated = inflater.inflate(data, offset, size - offset);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+				{
+					break;
+				}
+				offset += inflated;
+			}
+			if (offset != size)
+			{
+				throw new IOException("Truncated zip entry " + name + " in " + file);
+			}
+			return data;
+		}
+		catch (DataFormatException e)
+		{
+			throw new IOException("Invalid compressed data for " + name + " in " + file + ": " + e.getMessage());
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
+
+	private static int readShort(byte[] b, int offset)
+	{
+		return (b[offset] & 0xff) | (b[offset + 1] & 0xff) << 8;
+	}
+
+	private static int readInt(byte[] b, int offset)
+	{
+		return (b[offset] & 0xff) | (b[offset + 1] & 0xff) << 8 | (b[offset + 2] & 0xff) << 16
+				| (b[offset + 3] & 0xff) << 24;
+	}
+
+	private static class Entry
+	{
+		public final String name;
+		public int method;
+		public long compressedSize;
+		public long size;
+		public long localHeaderOffset;
+		//contents, for entries read into memory
+		public byte[] data;
+
+		public Entry(String name)
+		{
+			this.name = name;
+		}
+	}
+}
@@ -15,15 +15,22 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.layers.delegate.reader;
 
-import java.awt.AlphaComposite;
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
 
 import au.gov.ga.worldwind.common.util.URLUtil;
 
@@ -41,21 +48,21 @@ public class MaskHelper
 	public static interface MaskInsideZipDelegate
 	{
 		/**
-		 * Read the given {@link ZipEntry} from the given {@link ZipInputStream}
-		 * . This function should check if the entry matches a mask entry, and
-		 * if so, reads the mask to a local image. It should also read any other
-		 * entries within the zip file that are not mask images, so that the zip
-		 * entry doesn't have to be read twice.
+		 * Read an entry from the zip file. The entries are classified by name
+		 * before they are read (see {@link #findMaskEntry(MaskArchive)}), and only
+		 * the texture entry and the mask entry are passed to this function, so
+		 * no other entries are decoded.
 		 * 
-		 * @param entry
-		 *            {@link ZipEntry} to read. <code>zis</code> is positioned
-		 *            at the beginning of this entry.
-		 * @param zis
-		 *            {@link ZipInputStream} containing the zip entry.
+		 * @param name
+		 *            Name of the zip entry
+		 * @param is
+		 *            Stream containing the uncompressed entry
+		 * @param mask
+		 *            Is this entry the mask?
 		 * @throws IOException
 		 *             If reading the entry fails.
 		 */
-		void readEntry(ZipEntry entry, ZipInputStream zis) throws IOException;
+		void readEntry(String name, InputStream is, boolean mask) throws IOException;
 	}
 
 	/**
@@ -86,19 +93,11 @@ public class MaskHelper
 		{
 			try
 			{
-				ZipInputStream zis = new ZipInputStream(url.openStream());
-				ZipEntry entry;
-				while ((entry = zis.getNextEntry()) != null)
-				{
-					try
-					{
-						delegate.readEntry(entry, zis);
-					}
-					catch (IOException e)
-					{
-						//ignore (read next ZipEntry)
-					}
-				}
+				MaskArchive archive = MaskArchive.get(url);
+				String maskEntry = findMaskEntry(archive);
+				String textureEntry = findTextureEntry(archive.getEntryNames(), maskEntry);
+				readEntry(archive, textureEntry, false, delegate);
+				readEntry(archive, maskEntry, true, delegate);
 			}
 			catch (IOException e)
 			{
@@ -142,6 +141,205 @@ public class MaskHelper
 		}
 	}
 
+	private static void readEntry(MaskArchive archive, String name, boolean mask, MaskInsideZipDelegate delegate)
+	{
+		if (name == null)
+		{
+			return;
+		}
+		try
+		{
+			delegate.readEntry(name, archive.getInputStream(name), mask);
+		}
+		catch (IOException e)
+		{
+			//ignore (read the other entry)
+		}
+	}
+
+	/**
+	 * Find the mask entry in a zip file containing a tile and its mask. The
+	 * mask is the first entry with 'mask' in its name; otherwise, if the zip
+	 * file contains more than one entry, it is the first PNG entry.
+	 * 
+	 * @param names
+	 *            Names of the zip entries
+	 * @return Name of the mask entry, or null if there is no mask
+	 */
+	public static String findMaskEntry(List<String> names)
+	{
+		for (String name : names)
+		{
+			if (name.toLowerCase().contains("mask"))
+			{
+				return name;
+			}
+		}
+		if (names.size() > 1)
+		{
+			for (String name : names)
+			{
+				if (name.toLowerCase().endsWith(".png"))
+				{
+					return name;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Find the mask entry in a zip file containing a tile and its mask. The
+	 * entry names are checked first (see {@link #findMaskEntry(List)}). If no
+	 * entry is named 'mask' and the zip file contains more than one PNG entry,
+	 * the name can't identify the mask, so the first PNG entry with an alpha
+	 * channel is used. Only the image headers are read to find the alpha
+	 * channel; the images aren't decoded.
+	 * 
+	 * @param archive
+	 *            Zip file containing the tile and mask
+	 * @return Name of the mask entry, or null if there is no mask
+	 * @throws IOException
+	 *             If reading an image header fails
+	 */
+	public static String findMaskEntry(MaskArchive archive) throws IOException
+	{
+		List<String> names = archive.getEntryNames();
+		String maskEntry = findMaskEntry(names);
+		if (maskEntry == null || maskEntry.toLowerCase().contains("mask"))
+		{
+			return maskEntry;
+		}
+
+		List<String> pngs = new ArrayList<String>();
+		for (String name : names)
+		{
+			if (name.toLowerCase().endsWith(".png"))
+			{
+				pngs.add(name);
+			}
+		}
+		if (pngs.size() <= 1)
+		{
+			return maskEntry;
+		}
+
+		for (String png : pngs)
+		{
+			if (hasAlpha(archive.getInputStream(png)))
+			{
+				return png;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Check if the image in the given stream has an alpha channel, by reading
+	 * the image header. The stream is closed.
+	 */
+	protected static boolean hasAlpha(InputStream is) throws IOException
+	{
+		ImageInputStream iis = ImageIO.createImageInputStream(is);
+		try
+		{
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+			if (!readers.hasNext())
+			{
+				return false;
+			}
+			ImageReader reader = readers.next();
+			try
+			{
+				reader.setInput(iis, true, true);
+				ImageTypeSpecifier type = reader.getRawImageType(0);
+				return type != null && type.getColorModel().hasAlpha();
+			}
+			finally
+			{
+				reader.dispose();
+			}
+		}
+		finally
+		{
+			iis.close();
+			is.close();
+		}
+	}
+
+	/**
+	 * Find the texture entry in a zip file containing a tile and its mask; this
+	 * is the first entry that isn't the mask.
+	 * 
+	 * @param names
+	 *            Names of the zip entries
+	 * @param maskEntry
+	 *            Name of the mask entry
+	 * @return Name of the texture entry, or null if there is no texture
+	 */
+	public static String findTextureEntry(List<String> names, String maskEntry)
+	{
+		for (String name : names)
+		{
+			if (!name.equals(maskEntry))
+			{
+				return name;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Read an image from the given URL. Images inside local zip files (using
+	 * the jar: or zip: protocol) are read using the cached {@link MaskArchive}
+	 * index of the zip file, and local files that don't exist return null
+	 * without attempting to decode them.
+	 * 
+	 * @param url
+	 *            URL of the image to read
+	 * @return Image, or null if the image doesn't exist
+	 * @throws IOException
+	 *             If reading the image fails
+	 */
+	public static BufferedImage readImage(URL url) throws IOException
+	{
+		if (url == null)
+		{
+			return null;
+		}
+
+		File file = URLUtil.urlToFile(url);
+		if (file != null)
+		{
+			return file.isFile() ? ImageIO.read(file) : null;
+		}
+
+		if (url.getProtocol().equalsIgnoreCase("jar") || url.getProtocol().equalsIgnoreCase("zip"))
+		{
+			String urlString = url.toString();
+			int indexOfBang = urlString.lastIndexOf("!/");
+			int indexOfColon = urlString.indexOf(':');
+			File zipFile =
+					indexOfBang < 0 ? null : URLUtil.urlToFile(URLUtil.fromString(urlString.substring(
+							indexOfColon + 1, indexOfBang)));
+			if (zipFile != null)
+			{
+				if (!zipFile.isFile())
+				{
+					return null;
+				}
+				MaskArchive archive = MaskArchive.get(zipFile);
+				String entry = urlString.substring(indexOfBang + 2);
+				if (archive.hasEntry(entry))
+				{
+					return ImageIO.read(archive.getInputStream(entry));
+				}
+			}
+		}
+
+		return ImageIO.read(url);
+	}
+
 	/**
 	 * Create a File pointing to a 'mask' directory relative to the imageFile
 	 * passed. The function moves up {@code upDirectoryCount} parent
@@ -178,6 +376,10 @@ public class MaskHelper
 
 	/**
 	 * Add the alpha channel of mask to image, and return the composed image.
+	 * <p/>
+	 * This is equivalent to drawing the image onto the mask using
+	 * {@link java.awt.AlphaComposite#SrcIn}, but is calculated in a single pass
+	 * over the pixel arrays. The result is the size of the mask.
 	 * 
 	 * @param image
 	 * @param mask
@@ -185,10 +387,95 @@ public class MaskHelper
 	 */
 	public static BufferedImage compose(BufferedImage image, BufferedImage mask)
 	{
-		Graphics2D g2d = mask.createGraphics();
-		g2d.setComposite(AlphaComposite.SrcIn);
-		g2d.drawImage(image, 0, 0, null);
-		g2d.dispose();
-		return mask;
+		int width = mask.getWidth();
+		int height = mask.getHeight();
+		int imageWidth = Math.min(width, image.getWidth());
+		int imageHeight = Math.min(height, image.getHeight());
+		int[] pixels = getPixels(image, imageWidth, imageHeight);
+		int[] alphas = getAlphas(mask, imageWidth, imageHeight);
+
+		BufferedImage composed = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] composedPixels = ((DataBufferInt) composed.getRaster().getDataBuffer()).getData();
+		for (int y = 0, i = 0; y < imageHeight; y++)
+		{
+			int offset = y * width;
+			for (int x = 0; x < imageWidth; x++, i++)
+			{
+				int pixel = pixels[i];
+				int alpha = pixel >>> 24;
+				if (alphas != null)
+				{
+					//rounded (alpha * mask) / 255
+					int product = alpha * alphas[i] + 128;
+					alpha = (product + (product >> 8)) >> 8;
+				}
+				composedPixels[offset + x] = alpha == 0 ? 0 : alpha << 24 | (pixel & 0xffffff);
+			}
+		}
+		return composed;
+	}
+
+	/**
+	 * Get the top-left width x height ARGB pixels of an image, reading the
+	 * image's raster directly for the common image types.
+	 */
+	protected static int[] getPixels(BufferedImage image, int width, int height)
+	{
+		int count = width * height;
+		int type = image.getType();
+		if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+		{
+			int[] pixels = (int[]) image.getRaster().getDataElements(0, 0, width, height, null);
+			if (type == BufferedImage.TYPE_INT_RGB)
+			{
+				for (int i = 0; i < count; i++)
+				{
+					pixels[i] |= 0xff000000;
+				}
+			}
+			return pixels;
+		}
+		if (type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)
+		{
+			//data elements are in band order: r, g, b(, a)
+			byte[] data = (byte[]) image.getRaster().getDataElements(0, 0, width, height, null);
+			boolean alpha = type == BufferedImage.TYPE_4BYTE_ABGR;
+			int[] pixels = new int[count];
+			for (int i = 0, j = 0; i < count; i++)
+			{
+				int r = data[j++] & 0xff;
+				int g = data[j++] & 0xff;
+				int b = data[j++] & 0xff;
+				int a = alpha ? data[j++] & 0xff : 0xff;
+				pixels[i] = a << 24 | r << 16 | g << 8 | b;
+			}
+			return pixels;
+		}
+		return image.getRGB(0, 0, width, height, null, 0, width);
+	}
+
+	/**
+	 * Get the top-left width x height alpha values of an image, or null if the
+	 * image is opaque.
+	 */
+	protected static int[] getAlphas(BufferedImage image, int width, int height)
+	{
+		if (!image.getColorModel().hasAlpha())
+		{
+			return null;
+		}
+
+		WritableRaster alphaRaster = image.getAlphaRaster();
+		if (alphaRaster != null)
+		{
+			return alphaRaster.getSamples(0, 0, width, height, 0, (int[]) null);
+		}
+
+		int[] alphas = image.getRGB(0, 0, width, height, null, 0, width);
+		for (int i = 0; i < alphas.length; i++)
+		{
+			alphas[i] >>>= 24;
+		}
+		return alphas;
 	}
 }
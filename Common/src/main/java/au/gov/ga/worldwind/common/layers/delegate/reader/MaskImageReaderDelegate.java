@@ -20,9 +20,8 @@ import gov.nasa.worldwind.globes.Globe;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import javax.imageio.ImageIO;
 
@@ -67,13 +66,10 @@ public class MaskImageReaderDelegate implements ITileReaderDelegate
 		MaskInsideZipDelegate delegate = new MaskInsideZipDelegate()
 		{
 			@Override
-			public void readEntry(ZipEntry entry, ZipInputStream zis) throws IOException
+			public void readEntry(String name, InputStream is, boolean mask) throws IOException
 			{
 				wasInsideZip[0] = true;
-				BufferedImage bi = ImageIO.read(zis);
-				String lower = entry.getName().toLowerCase();
-				int index = lower.contains("mask") || bi.getColorModel().hasAlpha() ? 1 : 0;
-				images[index] = bi;
+				images[mask ? 1 : 0] = ImageIO.read(is);
 			}
 		};
 		
@@ -85,8 +81,8 @@ public class MaskImageReaderDelegate implements ITileReaderDelegate
 		{
 			try
 			{
-				image = ImageIO.read(url);
-				mask = ImageIO.read(maskUrl);
+				image = MaskHelper.readImage(url);
+				mask = MaskHelper.readImage(maskUrl);
 			}
 			catch (Exception e)
 			{
@@ -18,6 +18,7 @@ package au.gov.ga.worldwind.common.layers.delegate.transformer;
 import gov.nasa.worldwind.avlist.AVList;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,6 +27,7 @@ import org.w3c.dom.Element;
 import au.gov.ga.worldwind.common.layers.delegate.IDelegate;
 import au.gov.ga.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.worldwind.common.layers.delegate.IImageTransformerDelegate;
+import au.gov.ga.worldwind.common.layers.delegate.filters.WindowFilters;
 
 /**
  * Applies a filter to the retrieved image tiles to remove striping noise using a 
@@ -47,6 +49,9 @@ import au.gov.ga.worldwind.common.layers.delegate.IImageTransformerDelegate;
  *  <li>highPassRows = the filter size for the high pass filter applied to the rows of the image (integer number of pixels)
  * </ul>
  * <b>Note:</b> If the lowPass and highPass filters are the same size for columns or rows, no effect will be seen in that direction of the image
+ * <p/>
+ * The windowed averages are calculated using the prefix sums in {@link WindowFilters}, so the cost of the filter
+ * doesn't depend on the filter sizes.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -112,158 +117,47 @@ public class StripingFilterTransformerDelegate implements IImageTransformerDeleg
 	{
 		int width = image.getWidth();
 		int height = image.getHeight();
-		float[][][] array = imageToArray(image);
-
-		float[][][] lowpass = average(array, lowPassCols, lowPassRows);
-		float[][][] highpass = average(array, highPassCols, highPassRows);
-		subtract(array, highpass, highpass);
-		add(lowpass, highpass, array);
-
-		return arrayToImage(array, width, height);
-	}
-
-	protected static float[][][] imageToArray(BufferedImage image)
-	{
-		int width = image.getWidth();
-		int height = image.getHeight();
-
-		int bands = 4;
-		float[][][] array = new float[width][height][bands];
+		int count = width * height;
+		int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
 
-		for (int y = 0; y < height; y++)
+		BufferedImage filtered = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] outPixels = ((DataBufferInt) filtered.getRaster().getDataBuffer()).getData();
+		for (int i = 0; i < count; i++)
 		{
-			for (int x = 0; x < width; x++)
-			{
-				int argb = image.getRGB(x, y);
-				int a = (argb >> 24) & 0xff;
-				int r = (argb >> 16) & 0xff;
-				int g = (argb >> 8) & 0xff;
-				int b = (argb) & 0xff;
-				array[x][y][0] = (a / 255f) * 2f - 1f;
-				array[x][y][1] = (r / 255f) * 2f - 1f;
-				array[x][y][2] = (g / 255f) * 2f - 1f;
-				array[x][y][3] = (b / 255f) * 2f - 1f;
-			}
+			//alpha is not filtered
+			outPixels[i] = pixels[i] & 0xff000000;
 		}
 
-		return array;
-	}
-
-	protected static BufferedImage arrayToImage(float[][][] array, int width, int height)
-	{
-		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-
-		for (int y = 0; y < height; y++)
-		{
-			for (int x = 0; x < width; x++)
-			{
-				int a = (int) ((array[x][y][0] + 1f) / 2f * 255f);
-				int r = (int) ((array[x][y][1] + 1f) / 2f * 255f);
-				int g = (int) ((array[x][y][2] + 1f) / 2f * 255f);
-				int b = (int) ((array[x][y][3] + 1f) / 2f * 255f);
-
-				int argb = (a & 0xff) << 24 | (r & 0xff) << 16 | (g & 0xff) << 8 | (b & 0xff);
-				image.setRGB(x, y, argb);
-			}
-		}
-
-		return image;
-	}
-
-	protected static float[][][] average(float[][][] image, int windowWidth, int windowHeight)
-	{
-		int width = image.length;
-		int height = image[0].length;
-		int bands = image[0][0].length;
-		float[][][] array = new float[width][height][bands];
-
-		float[][] windowHorizontalSum = new float[width][height];
-		float[] windowVerticalEdgeSum = new float[height];
+		lowPassCols = Math.max(1, lowPassCols);
+		lowPassRows = Math.max(1, lowPassRows);
+		highPassCols = Math.max(1, highPassCols);
+		highPassRows = Math.max(1, highPassRows);
+		float lowPassScale = 2f / (255f * lowPassCols * lowPassRows);
+		float highPassScale = 2f / (255f * highPassCols * highPassRows);
 
-		//skip alpha
-		for (int b = 1; b < bands; b++)
+		int[] channel = new int[count];
+		for (int shift = 16; shift >= 0; shift -= 8)
 		{
-			for (int y = 0; y < height; y++)
-			{
-				for (int x = 0; x < width; x++)
-				{
-					if (y == 0)
-					{
-						float sum = 0;
-						for (int wy = 0; wy < windowHeight; wy++)
-						{
-							int sy = clamp(y + wy - windowHeight / 2, 0, height - 1);
-							sum += image[x][sy][b];
-						}
-						windowHorizontalSum[x][y] = sum;
-					}
-					else
-					{
-						int ssy = clamp(y - windowHeight / 2 - 1, 0, height - 1);
-						int say = clamp(y + windowHeight / 2, 0, height - 1);
-						windowHorizontalSum[x][y] =
-								windowHorizontalSum[x][y - 1] - image[x][ssy][b] + image[x][say][b];
-					}
-				}
-			}
-
-			for (int y = 0; y < height; y++)
+			for (int i = 0; i < count; i++)
 			{
-				float sum = 0;
-				for (int wx = 0; wx < windowWidth; wx++)
-				{
-					int sx = clamp(wx - windowWidth / 2, 0, width - 1);
-					sum += image[sx][y][b];
-				}
-				windowVerticalEdgeSum[y] = sum;
+				channel[i] = (pixels[i] >> shift) & 0xff;
 			}
 
-			for (int y = 0; y < height; y++)
-			{
-				for (int x = 0; x < width; x++)
-				{
-					if (x == 0)
-					{
-						if (y == 0)
-						{
-							float sum = 0;
-							for (int wx = 0; wx < windowWidth; wx++)
-							{
-								int sx = clamp(wx - windowWidth / 2, 0, width - 1);
-								sum += windowHorizontalSum[sx][y];
-							}
-							array[x][y][b] = sum;
-						}
-						else
-						{
-							int ssy = clamp(y - windowHeight / 2 - 1, 0, height - 1);
-							int say = clamp(y + windowHeight / 2, 0, height - 1);
-							array[x][y][b] =
-									array[x][y - 1][b] - windowVerticalEdgeSum[ssy]
-											+ windowVerticalEdgeSum[say];
-						}
-					}
-					else
-					{
-						int ssx = clamp(x - windowWidth / 2 - 1, 0, width - 1);
-						int sax = clamp(x + windowWidth / 2, 0, width - 1);
-						array[x][y][b] =
-								array[x - 1][y][b] - windowHorizontalSum[ssx][y]
-										+ windowHorizontalSum[sax][y];
-					}
-				}
-			}
+			int[] lowpass = WindowFilters.boxSum(channel, width, height, lowPassCols, lowPassRows);
+			int[] highpass = WindowFilters.boxSum(channel, width, height, highPassCols, highPassRows);
 
-			for (int y = 0; y < height; y++)
+			//values are in the range -1..1
+			for (int i = 0; i < count; i++)
 			{
-				for (int x = 0; x < width; x++)
-				{
-					array[x][y][b] /= windowWidth * windowHeight;
-				}
+				float value = (channel[i] / 255f) * 2f - 1f;
+				float low = lowpass[i] * lowPassScale - 1f;
+				float high = clamp(value - (highpass[i] * highPassScale - 1f), -1, 1);
+				float result = clamp(low + high, -1, 1);
+				outPixels[i] |= ((int) ((result + 1f) / 2f * 255f) & 0xff) << shift;
 			}
 		}
 
-		return array;
+		return filtered;
 	}
 
 	protected static int clamp(int value, int min, int max)
@@ -275,42 +169,4 @@ public class StripingFilterTransformerDelegate implements IImageTransformerDeleg
 	{
 		return value > max ? max : value < min ? min : value;
 	}
-
-	protected static void subtract(float[][][] image1, float[][][] image2, float[][][] store)
-	{
-		int width = image1.length;
-		int height = image1[0].length;
-		int bands = image1[0][0].length;
-
-		//skip alpha
-		for (int b = 1; b < bands; b++)
-		{
-			for (int y = 0; y < height; y++)
-			{
-				for (int x = 0; x < width; x++)
-				{
-					store[x][y][b] = clamp(image1[x][y][b] - image2[x][y][b], -1, 1);
-				}
-			}
-		}
-	}
-
-	protected static void add(float[][][] image1, float[][][] image2, float[][][] store)
-	{
-		int width = image1.length;
-		int height = image1[0].length;
-		int bands = image1[0][0].length;
-
-		//skip alpha
-		for (int b = 1; b < bands; b++)
-		{
-			for (int y = 0; y < height; y++)
-			{
-				for (int x = 0; x < width; x++)
-				{
-					store[x][y][b] = clamp(image1[x][y][b] + image2[x][y][b], -1, 1);
-				}
-			}
-		}
-	}
 }
@@ -0,0 +1,621 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.earthquakes;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import au.gov.ga.worldwind.common.util.Validate;
+
+/**
+ * A columnar catalogue of earthquakes. The latitude, longitude, elevation,
+ * magnitude and time of each earthquake are stored in separate primitive
+ * columns, rather than as an object per earthquake.
+ * <p/>
+ * Catalogues read from a stream or file are sorted by time, which allows time
+ * windows to be selected as contiguous index ranges (see
+ * {@link #indexOfTime(long)}). A magnitude index is built on demand for
+ * filtering by magnitude (see {@link #filter(int, int, double, double)}).
+ * <p/>
+ * The columnar file format is as follows (big-endian, without line breaks):
+ * 
+ * <pre>
+ * int magic ({@link #MAGIC})
+ * int version ({@link #VERSION})
+ * int count
+ * int reserved
+ * double[count] latitudes (in degrees)
+ * double[count] longitudes (in degrees)
+ * double[count] elevations (in metres - negative indicates subsurface)
+ * double[count] magnitudes
+ * long[count] timestamps (in milliseconds since epoc 01 01 1970 00:00:00 UTC)
+ * </pre>
+ * 
+ * Uncompressed catalogue files can be memory-mapped using {@link #map(File)}.
+ * The older record-per-earthquake {@link ObjectInputStream} format is also
+ * supported by {@link #read(InputStream)}.
+ */
+public class EarthquakeCatalogue
+{
+	public static final int MAGIC = 0x45514354; //'EQCT'
+	public static final int VERSION = 1;
+	public static final String FILE_EXTENSION = ".eqc";
+
+	private static final int HEADER_SIZE = 16;
+	private static final int BYTES_PER_EARTHQUAKE = 4 * 8 + 8; //4 double columns, 1 long column
+
+	private final int size;
+	private final DoubleBuffer latitudes;
+	private final DoubleBuffer longitudes;
+	private final DoubleBuffer elevations;
+	private final DoubleBuffer magnitudes;
+	private final LongBuffer times;
+	private final boolean sortedByTime;
+	private int[] magnitudeIndex;
+
+	private final List<Position> positions = new AbstractList<Position>()
+	{
+		@Override
+		public Position get(int index)
+		{
+			return getPosition(index);
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	};
+
+	/**
+	 * Create a catalogue from the provided columns. The arrays are not copied,
+	 * and the earthquakes are kept in the order provided.
+	 */
+	public EarthquakeCatalogue(double[] latitudes, double[] longitudes, double[] elevations, double[] magnitudes,
+			long[] times)
+	{
+		this(latitudes.length, DoubleBuffer.wrap(latitudes), DoubleBuffer.wrap(longitudes), DoubleBuffer
+				.wrap(elevations), DoubleBuffer.wrap(magnitudes), LongBuffer.wrap(times));
+	}
+
+	private EarthquakeCatalogue(int size, DoubleBuffer latitudes, DoubleBuffer longitudes, DoubleBuffer elevations,
+			DoubleBuffer magnitudes, LongBuffer times)
+	{
+		Validate.isTrue(latitudes.limit() == size && longitudes.limit() == size && elevations.limit() == size
+				&& magnitudes.limit() == size && times.limit() == size, "Column lengths must be equal");
+
+		this.size = size;
+		this.latitudes = latitudes;
+		this.longitudes = longitudes;
+		this.elevations = elevations;
+		this.magnitudes = magnitudes;
+		this.times = times;
+
+		boolean sorted = true;
+		for (int i = 1; i < size && sorted; i++)
+		{
+			sorted = times.get(i - 1) <= times.get(i);
+		}
+		this.sortedByTime = sorted;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public double getLatitude(int index)
+	{
+		return latitudes.get(index);
+	}
+
+	public double getLongitude(int index)
+	{
+		return longitudes.get(index);
+	}
+
+	public double getElevation(int index)
+	{
+		return elevations.get(index);
+	}
+
+	public double getMagnitude(int index)
+	{
+		return magnitudes.get(index);
+	}
+
+	public long getTime(int index)
+	{
+		return times.get(index);
+	}
+
+	public Position getPosition(int index)
+	{
+		return Position.fromDegrees(latitudes.get(index), longitudes.get(index), elevations.get(index));
+	}
+
+	/**
+	 * @return A list view of the positions of the earthquakes in this
+	 *         catalogue; {@link Position}s are created on demand
+	 */
+	public List<Position> getPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * @return Is this catalogue sorted by time?
+	 */
+	public boolean isSortedByTime()
+	{
+		return sortedByTime;
+	}
+
+	/**
+	 * @return This catalogue if it is already sorted by time, otherwise a
+	 *         sorted copy
+	 */
+	public EarthquakeCatalogue sortByTime()
+	{
+		if (sortedByTime)
+		{
+			return this;
+		}
+
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++)
+		{
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer o1, Integer o2)
+			{
+				long t1 = times.get(o1), t2 = times.get(o2);
+				return t1 < t2 ? -1 : t1 > t2 ? 1 : 0;
+			}
+		});
+
+		Builder builder = new Builder(size);
+		for (Integer i : order)
+		{
+			builder.add(latitudes.get(i), longitudes.get(i), elevations.get(i), magnitudes.get(i), times.get(i));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Find the index of the first earthquake that occurred at or after the
+	 * given time. The catalogue must be sorted by time.
+	 * 
+	 * @param time
+	 *            Time in milliseconds since epoc
+	 * @return Index of the first earthquake with a time &gt;= <code>time</code>
+	 *         (or {@link #size()} if there is none)
+	 */
+	public int indexOfTime(long time)
+	{
+		checkSortedByTime();
+		int low = 0, high = size;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (times.get(mid) < time)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Find the index of the first earthquake that occurred after the given
+	 * time. The catalogue must be sorted by time.
+	 * 
+	 * @param time
+	 *            Time in milliseconds since epoc
+	 * @return Index of the first earthquake with a time &gt;
+	 *         <code>time</code> (or {@link #size()} if there is none)
+	 */
+	public int indexAfterTime(long time)
+	{
+		return time == Long.MAX_VALUE ? size : indexOfTime(time + 1);
+	}
+
+	private void checkSortedByTime()
+	{
+		if (!sortedByTime)
+		{
+			throw new IllegalStateException("Catalogue is not sorted by time");
+		}
+	}
+
+	/**
+	 * Find the earthquakes within the given index range that have a magnitude
+	 * within the given magnitude range. If the magnitude range is more
+	 * selective than the index range, the magnitude index is used instead of
+	 * scanning the index range.
+	 * 
+	 * @param fromIndex
+	 *            First index (inclusive)
+	 * @param toIndex
+	 *            Last index (exclusive)
+	 * @param minMagnitude
+	 *            Minimum magnitude (inclusive)
+	 * @param maxMagnitude
+	 *            Maximum magnitude (inclusive)
+	 * @return Sorted indices of the matching earthquakes
+	 */
+	public int[] filter(int fromIndex, int toIndex, double minMagnitude, double maxMagnitude)
+	{
+		if (fromIndex >= toIndex)
+		{
+			return new int[0];
+		}
+
+		int[] result;
+		int count = 0;
+		if (minMagnitude == Double.NEGATIVE_INFINITY && maxMagnitude == Double.POSITIVE_INFINITY)
+		{
+			result = new int[toIndex - fromIndex];
+			for (int i = fromIndex; i < toIndex; i++)
+			{
+				result[count++] = i;
+			}
+			return result;
+		}
+
+		int[] magnitudeIndex = getMagnitudeIndex();
+		int first = magnitudeIndexOf(magnitudeIndex, minMagnitude, false);
+		int last = magnitudeIndexOf(magnitudeIndex, maxMagnitude, true);
+		if (last - first < toIndex - fromIndex)
+		{
+			result = new int[Math.max(0, last - first)];
+			for (int i = first; i < last; i++)
+			{
+				int index = magnitudeIndex[i];
+				if (index >= fromIndex && index < toIndex)
+				{
+					result[count++] = index;
+				}
+			}
+			Arrays.sort(result, 0, count);
+		}
+		else
+		{
+			result = new int[toIndex - fromIndex];
+			for (int i = fromIndex; i < toIndex; i++)
+			{
+				double magnitude = magnitudes.get(i);
+				if (magnitude >= minMagnitude && magnitude <= maxMagnitude)
+				{
+					result[count++] = i;
+				}
+			}
+		}
+		return count == result.length ? result : Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Binary search the magnitude index for the first entry with a magnitude
+	 * &gt;= (or &gt; if <code>after</code>) the given magnitude.
+	 */
+	private int magnitudeIndexOf(int[] magnitudeIndex, double magnitude, boolean after)
+	{
+		int low = 0, high = magnitudeIndex.length;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			double value = magnitudes.get(magnitudeIndex[mid]);
+			if (value < magnitude || (after && value == magnitude))
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return Indices of the earthquakes in this catalogue, sorted by
+	 *         magnitude; built on first use
+	 */
+	protected synchronized int[] getMagnitudeIndex()
+	{
+		if (magnitudeIndex == null)
+		{
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++)
+			{
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>()
+			{
+				@Override
+				public int compare(Integer o1, Integer o2)
+				{
+					return Double.compare(magnitudes.get(o1), magnitudes.get(o2));
+				}
+			});
+			int[] index = new int[size];
+			for (int i = 0; i < size; i++)
+			{
+				index[i] = order[i];
+			}
+			magnitudeIndex = index;
+		}
+		return magnitudeIndex;
+	}
+
+	/**
+	 * Write this catalogue in the columnar format. Earthquakes are sorted by
+	 * time before writing. The stream is not closed.
+	 */
+	public void write(OutputStream os) throws IOException
+	{
+		EarthquakeCatalogue sorted = sortByTime();
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os));
+		dos.writeInt(MAGIC);
+		dos.writeInt(VERSION);
+		dos.writeInt(size);
+		dos.writeInt(0);
+		DoubleBuffer[] columns =
+				new DoubleBuffer[] { sorted.latitudes, sorted.longitudes, sorted.elevations, sorted.magnitudes };
+		for (DoubleBuffer column : columns)
+		{
+			for (int i = 0; i < size; i++)
+			{
+				dos.writeDouble(column.get(i));
+			}
+		}
+		for (int i = 0; i < size; i++)
+		{
+			dos.writeLong(sorted.times.get(i));
+		}
+		dos.flush();
+	}
+
+	/**
+	 * Read a catalogue from the provided stream, which can contain either the
+	 * columnar format or the older record-per-earthquake format. The returned
+	 * catalogue is sorted by time. The stream is not closed.
+	 */
+	public static EarthquakeCatalogue read(InputStream is) throws IOException
+	{
+		if (!is.markSupported())
+		{
+			is = new BufferedInputStream(is);
+		}
+
+		is.mark(4);
+		DataInputStream dis = new DataInputStream(is);
+		int magic;
+		try
+		{
+			magic = dis.readInt();
+		}
+		catch (EOFException e)
+		{
+			return new Builder(0).build();
+		}
+		is.reset();
+
+		if (magic == MAGIC)
+		{
+			byte[] header = new byte[HEADER_SIZE];
+			dis.readFully(header);
+			int count = readHeader(ByteBuffer.wrap(header));
+			byte[] data = new byte[count * BYTES_PER_EARTHQUAKE];
+			dis.readFully(data);
+			return fromColumns(ByteBuffer.wrap(data), 0, count).sortByTime();
+		}
+		return readRecords(is).sortByTime();
+	}
+
+	/**
+	 * Read the older record-per-earthquake format, written by an
+	 * {@link java.io.ObjectOutputStream}.
+	 */
+	protected static EarthquakeCatalogue readRecords(InputStream is) throws IOException
+	{
+		Builder builder = new Builder(1024);
+		ObjectInputStream ois = new ObjectInputStream(is);
+		try
+		{
+			while (true)
+			{
+				double lat = ois.readDouble();
+				double lon = ois.readDouble();
+				double elevation = ois.readDouble();
+				double magnitude = ois.readDouble();
+				long timeInMillis = ois.readLong();
+				builder.add(lat, lon, elevation, magnitude, timeInMillis);
+			}
+		}
+		catch (EOFException e)
+		{
+			//ObjectInputStream.available() always returns 0 when reading from a ZipInputStream,
+			//so read until an EOFException is thrown, which means we are at the end of the file
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Memory-map a catalogue file written in the columnar format. The columns
+	 * are read directly from the mapped file, and are not copied onto the
+	 * heap.
+	 */
+	public static EarthquakeCatalogue map(File file) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			int count = readHeader(buffer);
+			if (buffer.capacity() < HEADER_SIZE + (long) count * BYTES_PER_EARTHQUAKE)
+			{
+				throw new IOException("Earthquake catalogue file is truncated: " + file);
+			}
+			return fromColumns(buffer, HEADER_SIZE, count).sortByTime();
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return Does the provided file start with the columnar catalogue magic
+	 *         number?
+	 */
+	public static boolean isCatalogueFile(File file)
+	{
+		if (file == null || !file.isFile())
+		{
+			return false;
+		}
+		try
+		{
+			DataInputStream dis = new DataInputStream(new FileInputStream(file));
+			try
+			{
+				return dis.readInt() == MAGIC;
+			}
+			finally
+			{
+				dis.close();
+			}
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+	}
+
+	private static int readHeader(ByteBuffer buffer) throws IOException
+	{
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+		{
+			throw new IOException("Not an earthquake catalogue");
+		}
+		int version = buffer.getInt(4);
+		if (version != VERSION)
+		{
+			throw new IOException("Unsupported earthquake catalogue version: " + version);
+		}
+		int count = buffer.getInt(8);
+		if (count < 0)
+		{
+			throw new IOException("Invalid earthquake count: " + count);
+		}
+		return count;
+	}
+
+	private static EarthquakeCatalogue fromColumns(ByteBuffer buffer, int offset, int count)
+	{
+		int columnSize = count * 8;
+		return new EarthquakeCatalogue(count, slice(buffer, offset, columnSize).asDoubleBuffer(), slice(buffer,
+				offset + columnSize, columnSize).asDoubleBuffer(), slice(buffer, offset + columnSize * 2,
+				columnSize).asDoubleBuffer(), slice(buffer, offset + columnSize * 3, columnSize).asDoubleBuffer(),
+				slice(buffer, offset + columnSize * 4, columnSize).asLongBuffer());
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int offset, int length)
+	{
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.limit(offset + length);
+		duplicate.position(offset);
+		return duplicate.slice();
+	}
+
+	/**
+	 * Helper class for building a catalogue one earthquake at a time.
+	 */
+	public static class Builder
+	{
+		private double[] latitudes;
+		private double[] longitudes;
+		private double[] elevations;
+		private double[] magnitudes;
+		private long[] times;
+		private int size = 0;
+
+		public Builder(int initialCapacity)
+		{
+			initialCapacity = Math.max(1, initialCapacity);
+			latitudes = new double[initialCapacity];
+			longitudes = new double[initialCapacity];
+			elevations = new double[initialCapacity];
+			magnitudes = new double[initialCapacity];
+			times = new long[initialCapacity];
+		}
+
+		public Builder add(double latitude, double longitude, double elevation, double magnitude, long timeInMillis)
+		{
+			if (size == times.length)
+			{
+				int capacity = size * 2;
+				latitudes = Arrays.copyOf(latitudes, capacity);
+				longitudes = Arrays.copyOf(longitudes, capacity);
+				elevations = Arrays.copyOf(elevations, capacity);
+				magnitudes = Arrays.copyOf(magnitudes, capacity);
+				times = Arrays.copyOf(times, capacity);
+			}
+			latitudes[size] = latitude;
+			longitudes[size] = longitude;
+			elevations[size] = elevation;
+			magnitudes[size] = magnitude;
+			times[size] = timeInMillis;
+			size++;
+			return this;
+		}
+
+		public EarthquakeCatalogue build()
+		{
+			return new EarthquakeCatalogue(Arrays.copyOf(latitudes, size), Arrays.copyOf(longitudes, size),
+					Arrays.copyOf(elevations, size), Arrays.copyOf(magnitudes, size), Arrays.copyOf(times, size));
+		}
+	}
+}
@@ -25,10 +25,9 @@ import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.WWXML;
 
 import java.awt.Color;
-import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.FloatBuffer;
@@ -49,6 +48,7 @@ import au.gov.ga.worldwind.common.render.fastshape.FastShape;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
 import au.gov.ga.worldwind.common.util.HSLColor;
 import au.gov.ga.worldwind.common.util.Loader;
+import au.gov.ga.worldwind.common.util.URLUtil;
 import au.gov.ga.worldwind.common.util.XMLUtil;
 
 /**
@@ -60,12 +60,16 @@ import au.gov.ga.worldwind.common.util.XMLUtil;
  * <p/>
  * Colouring is configurable, and can be based on Date, Magnitude or Depth.
  * <p/>
+ * The displayed earthquakes can be filtered by a time window and a magnitude
+ * range. Filtering only updates the index buffer of the shape; the vertices
+ * and colours are calculated once when the data is loaded.
+ * <p/>
  * This implementation makes use of the {@link FastShape} class to load
  * earthquake data outside the rendering thread to ensure the interface remains
  * responsive.
  * <p/>
- * Each record in the data file should have the following format (without line
- * breaks):
+ * The data file should be an {@link EarthquakeCatalogue} file, or a file in
+ * which each record has the following format (without line breaks):
  * 
  * <pre>
  * double latitude (in degrees)
@@ -76,7 +80,7 @@ import au.gov.ga.worldwind.common.util.XMLUtil;
  * </pre>
  * 
  * To save on bandwidth, it is recommended that the data file be compressed into
- * a .zip file.
+ * a .zip file. Local uncompressed catalogue files are memory-mapped.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -93,6 +97,11 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 	private Long coloringMinDate;
 	private Long coloringMaxDate;
 
+	private Long filterMinDate;
+	private Long filterMaxDate;
+	private Double filterMinMagnitude;
+	private Double filterMaxMagnitude;
+
 	private double pointSize;
 
 	private boolean loaded = false;
@@ -102,6 +111,7 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 	private final List<LoadingListener> loadingListeners = new ArrayList<LoadingListener>();
 
 	private FastShape shape;
+	private EarthquakeCatalogue catalogue;
 	private final Object shapeLock = new Object();
 
 	public HistoricEarthquakesLayer(AVList params)
@@ -137,6 +147,11 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 
 		coloringMinDate = (Long) params.getValue(AVKeyMore.COLORING_MIN_DATE);
 		coloringMaxDate = (Long) params.getValue(AVKeyMore.COLORING_MAX_DATE);
+
+		filterMinDate = (Long) params.getValue(AVKeyMore.FILTER_MIN_DATE);
+		filterMaxDate = (Long) params.getValue(AVKeyMore.FILTER_MAX_DATE);
+		filterMinMagnitude = (Double) params.getValue(AVKeyMore.FILTER_MIN_MAGNITUDE);
+		filterMaxMagnitude = (Double) params.getValue(AVKeyMore.FILTER_MAX_MAGNITUDE);
 	}
 
 	public HistoricEarthquakesLayer(Document dom, AVList params)
@@ -164,6 +179,10 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 		WWXML.checkAndSetDoubleParam(domElement, params, AVKeyMore.POINT_SIZE, "PointSize", xpath);
 		XMLUtil.checkAndSetFormattedDateParam(domElement, params, AVKeyMore.COLORING_MIN_DATE, "ColoringMinDate", xpath);
 		XMLUtil.checkAndSetFormattedDateParam(domElement, params, AVKeyMore.COLORING_MAX_DATE, "ColoringMaxDate", xpath);
+		XMLUtil.checkAndSetFormattedDateParam(domElement, params, AVKeyMore.FILTER_MIN_DATE, "FilterMinDate", xpath);
+		XMLUtil.checkAndSetFormattedDateParam(domElement, params, AVKeyMore.FILTER_MAX_DATE, "FilterMaxDate", xpath);
+		WWXML.checkAndSetDoubleParam(domElement, params, AVKeyMore.FILTER_MIN_MAGNITUDE, "FilterMinMagnitude", xpath);
+		WWXML.checkAndSetDoubleParam(domElement, params, AVKeyMore.FILTER_MAX_MAGNITUDE, "FilterMaxMagnitude", xpath);
 
 		return params;
 	}
@@ -198,6 +217,21 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 			@Override
 			public void run()
 			{
+				//local uncompressed catalogues can be mapped directly, without copying them onto the heap
+				File file = URLUtil.urlToFile(url);
+				if (EarthquakeCatalogue.isCatalogueFile(file))
+				{
+					try
+					{
+						loadEarthquakes(EarthquakeCatalogue.map(file));
+						return;
+					}
+					catch (IOException e)
+					{
+						Logging.logger().warning("Error mapping earthquake catalogue " + file + ": " + e);
+					}
+				}
+
 				RetrievalHandler handler = new RetrievalHandler()
 				{
 					@Override
@@ -228,41 +262,23 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 			boolean isZipFile = url.toExternalForm().toLowerCase().endsWith(".zip");
 			if (isZipFile)
 			{
-				@SuppressWarnings("resource") //closed by the ObjectInputStream below
+				@SuppressWarnings("resource") //closed after reading below
 				ZipInputStream zis = new ZipInputStream(is);
 				zis.getNextEntry(); //move to first entry
 				is = zis;
 			}
 
-			List<Earthquake> quakes = new ArrayList<Earthquake>();
-			ObjectInputStream ois = new ObjectInputStream(is);
+			EarthquakeCatalogue catalogue;
 			try
 			{
-				while (is.available() > 0)
-				{
-					double lat = ois.readDouble();
-					double lon = ois.readDouble();
-					double elevation = ois.readDouble();
-					double magnitude = ois.readDouble();
-					long timeInMillis = ois.readLong();
-
-					Position position = Position.fromDegrees(lat, lon, elevation);
-					Earthquake quake = new Earthquake(position, magnitude, timeInMillis);
-					quakes.add(quake);
-				}
-			}
-			catch (EOFException e)
-			{
-				//When reading from a ZipInputStream, the ObjectInputStream.available() method always returns 0,
-				//so just read it anyway. This will throw an EOFException at some stage (when there's no data
-				//left), this means we are at the end of the file. Ignore it.
+				catalogue = EarthquakeCatalogue.read(is);
 			}
 			finally
 			{
-				ois.close();
+				is.close();
 			}
 
-			loadEarthquakes(quakes);
+			loadEarthquakes(catalogue);
 		}
 		catch (IOException e)
 		{
@@ -280,30 +296,114 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 		}
 	}
 
-	protected void loadEarthquakes(List<Earthquake> earthquakes)
+	protected void loadEarthquakes(EarthquakeCatalogue catalogue)
 	{
-		List<Position> positions = new ArrayList<Position>();
-		for (Earthquake earthquake : earthquakes)
-		{
-			positions.add(earthquake.position);
-		}
+		catalogue = catalogue.sortByTime();
 
-		FloatBuffer colorBuffer = FloatBuffer.allocate(positions.size() * 3);
-		generateColorBuffer(colorBuffer, earthquakes);
+		FloatBuffer colorBuffer = FloatBuffer.allocate(catalogue.size() * 3);
+		generateColorBuffer(colorBuffer, catalogue);
 
-		FastShape shape = new FastShape(positions, GL2.GL_POINTS);
+		FastShape shape = new FastShape(catalogue.getPositions(), GL2.GL_POINTS);
 		shape.setColorBuffer(colorBuffer.array());
 		shape.setColorBufferElementSize(3);
 
 		synchronized (shapeLock)
 		{
+			shape.setIndices(calculateFilterIndices(catalogue));
+			this.catalogue = catalogue;
 			this.shape = shape;
 		}
 
 		firePropertyChange(AVKey.LAYER, null, this);
 	}
 
-	private void generateColorBuffer(FloatBuffer colorBuffer, List<Earthquake> earthquakes)
+	/**
+	 * Calculate the indices of the earthquakes in the catalogue that pass the
+	 * current time window and magnitude filters.
+	 * 
+	 * @return Filtered indices, or null if no filter is set
+	 */
+	protected int[] calculateFilterIndices(EarthquakeCatalogue catalogue)
+	{
+		if (filterMinDate == null && filterMaxDate == null && filterMinMagnitude == null
+				&& filterMaxMagnitude == null)
+		{
+			return null;
+		}
+
+		//the catalogue is sorted by time, so the time window is a contiguous index range
+		int fromIndex = filterMinDate == null ? 0 : catalogue.indexOfTime(filterMinDate);
+		int toIndex = filterMaxDate == null ? catalogue.size() : catalogue.indexAfterTime(filterMaxDate);
+		double minMagnitude = filterMinMagnitude == null ? Double.NEGATIVE_INFINITY : filterMinMagnitude;
+		double maxMagnitude = filterMaxMagnitude == null ? Double.POSITIVE_INFINITY : filterMaxMagnitude;
+		return catalogue.filter(fromIndex, toIndex, minMagnitude, maxMagnitude);
+	}
+
+	protected void updateFilter()
+	{
+		synchronized (shapeLock)
+		{
+			if (shape != null)
+			{
+				shape.setIndices(calculateFilterIndices(catalogue));
+			}
+		}
+		firePropertyChange(AVKey.LAYER, null, this);
+	}
+
+	/**
+	 * Only display earthquakes that occurred within the given time window.
+	 * 
+	 * @param minDate
+	 *            Minimum time in milliseconds since epoc (inclusive), or null
+	 *            for no minimum
+	 * @param maxDate
+	 *            Maximum time in milliseconds since epoc (inclusive), or null
+	 *            for no maximum
+	 */
+	public void setTimeWindow(Long minDate, Long maxDate)
+	{
+		this.filterMinDate = minDate;
+		this.filterMaxDate = maxDate;
+		updateFilter();
+	}
+
+	/**
+	 * Only display earthquakes with a magnitude within the given range.
+	 * 
+	 * @param minMagnitude
+	 *            Minimum magnitude (inclusive), or null for no minimum
+	 * @param maxMagnitude
+	 *            Maximum magnitude (inclusive), or null for no maximum
+	 */
+	public void setMagnitudeRange(Double minMagnitude, Double maxMagnitude)
+	{
+		this.filterMinMagnitude = minMagnitude;
+		this.filterMaxMagnitude = maxMagnitude;
+		updateFilter();
+	}
+
+	public Long getFilterMinDate()
+	{
+		return filterMinDate;
+	}
+
+	public Long getFilterMaxDate()
+	{
+		return filterMaxDate;
+	}
+
+	public Double getFilterMinMagnitude()
+	{
+		return filterMinMagnitude;
+	}
+
+	public Double getFilterMaxMagnitude()
+	{
+		return filterMaxMagnitude;
+	}
+
+	private void generateColorBuffer(FloatBuffer colorBuffer, EarthquakeCatalogue earthquakes)
 	{
 		if (DEPTH_COLORING.equalsIgnoreCase(coloring))
 		{
@@ -325,18 +425,23 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 	 * Blue (shallow) -> Red (deep)
 	 */
 	protected void generateMagnitudeColoring(FloatBuffer colorBuffer, List<Earthquake> earthquakes)
+	{
+		generateMagnitudeColoring(colorBuffer, toCatalogue(earthquakes));
+	}
+
+	protected void generateMagnitudeColoring(FloatBuffer colorBuffer, EarthquakeCatalogue earthquakes)
 	{
 		//magnitude coloring
 		double minMagnitude = Double.MAX_VALUE;
 		double maxMagnitude = -Double.MAX_VALUE;
-		for (Earthquake earthquake : earthquakes)
+		for (int i = 0; i < earthquakes.size(); i++)
 		{
-			minMagnitude = Math.min(minMagnitude, earthquake.magnitude);
-			maxMagnitude = Math.max(maxMagnitude, earthquake.magnitude);
+			minMagnitude = Math.min(minMagnitude, earthquakes.getMagnitude(i));
+			maxMagnitude = Math.max(maxMagnitude, earthquakes.getMagnitude(i));
 		}
-		for (Earthquake earthquake : earthquakes)
+		for (int i = 0; i < earthquakes.size(); i++)
 		{
-			double percent = (earthquake.magnitude - minMagnitude) / (maxMagnitude - minMagnitude);
+			double percent = (earthquakes.getMagnitude(i) - minMagnitude) / (maxMagnitude - minMagnitude);
 
 			//scale the magnitude (VERY crude equalisation)
 			percent = 1 - Math.pow(percent, 0.2);
@@ -352,6 +457,11 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 	 * Blue (old) -> Red (new)
 	 */
 	protected void generateDateColoring(FloatBuffer colorBuffer, List<Earthquake> earthquakes)
+	{
+		generateDateColoring(colorBuffer, toCatalogue(earthquakes));
+	}
+
+	protected void generateDateColoring(FloatBuffer colorBuffer, EarthquakeCatalogue earthquakes)
 	{
 		long minTime = Long.MAX_VALUE;
 		long maxTime = Long.MIN_VALUE;
@@ -359,19 +469,19 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 		//if either of the custom min/max dates are null, calculate from the data
 		if (coloringMinDate == null || coloringMaxDate == null)
 		{
-			for (Earthquake earthquake : earthquakes)
+			for (int i = 0; i < earthquakes.size(); i++)
 			{
-				minTime = Math.min(minTime, earthquake.timeInMillis);
-				maxTime = Math.max(maxTime, earthquake.timeInMillis);
+				minTime = Math.min(minTime, earthquakes.getTime(i));
+				maxTime = Math.max(maxTime, earthquakes.getTime(i));
 			}
 		}
 
 		minTime = coloringMinDate != null ? coloringMinDate : minTime;
 		maxTime = coloringMaxDate != null ? coloringMaxDate : maxTime;
 
-		for (Earthquake earthquake : earthquakes)
+		for (int i = 0; i < earthquakes.size(); i++)
 		{
-			double percent = (earthquake.timeInMillis - minTime) / (double) (maxTime - minTime);
+			double percent = (earthquakes.getTime(i) - minTime) / (double) (maxTime - minTime);
 			percent = 1 - Math.max(0, Math.min(1, percent));
 			Color color = new HSLColor((float) (240d * percent), 100f, 50f).getRGB();
 			colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f);
@@ -384,22 +494,42 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 	 * Blue (shallow) -> Red (deep)
 	 */
 	protected void generateDepthColoring(FloatBuffer colorBuffer, List<Earthquake> earthquakes)
+	{
+		generateDepthColoring(colorBuffer, toCatalogue(earthquakes));
+	}
+
+	protected void generateDepthColoring(FloatBuffer colorBuffer, EarthquakeCatalogue earthquakes)
 	{
 		double minElevation = Double.MAX_VALUE;
 		double maxElevation = -Double.MAX_VALUE;
-		for (Earthquake earthquake : earthquakes)
+		for (int i = 0; i < earthquakes.size(); i++)
 		{
-			minElevation = Math.min(minElevation, earthquake.position.elevation);
-			maxElevation = Math.max(maxElevation, earthquake.position.elevation);
+			minElevation = Math.min(minElevation, earthquakes.getElevation(i));
+			maxElevation = Math.max(maxElevation, earthquakes.getElevation(i));
 		}
-		for (Earthquake earthquake : earthquakes)
+		for (int i = 0; i < earthquakes.size(); i++)
 		{
-			double percent = (earthquake.position.elevation - minElevation) / (maxElevation - minElevation);
+			double percent = (earthquakes.getElevation(i) - minElevation) / (maxElevation - minElevation);
 			Color color = new HSLColor((float) (240d * percent), 100f, 50f).getRGB();
 			colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f);
 		}
 	}
 
+	/**
+	 * Create a catalogue containing the provided earthquakes, in the same
+	 * order.
+	 */
+	protected static EarthquakeCatalogue toCatalogue(List<Earthquake> earthquakes)
+	{
+		EarthquakeCatalogue.Builder builder = new EarthquakeCatalogue.Builder(earthquakes.size());
+		for (Earthquake earthquake : earthquakes)
+		{
+			builder.add(earthquake.position.latitude.degrees, earthquake.position.longitude.degrees,
+					earthquake.position.elevation, earthquake.magnitude, earthquake.timeInMillis);
+		}
+		return builder.build();
+	}
+
 	protected static class Earthquake
 	{
 		public final Position position;
@@ -23,11 +23,11 @@ import gov.nasa.worldwind.geom.LatLon;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 
 /**
  * Helper class used for converting the large historic earthquakes shapefile
- * into a smaller double array, which is used by the
+ * into a smaller {@link EarthquakeCatalogue} file, which is used by the
  * {@link HistoricEarthquakesLayer}.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
@@ -50,9 +50,9 @@ public class HistoricEarthquakesShapefileConverter
 		for (String filename : filenames)
 		{
 			File file = new File(dir, filename + ".shp");
-			File output = new File(dir, filename + ".dat");
+			File output = new File(dir, filename + EarthquakeCatalogue.FILE_EXTENSION);
 
-			ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(output));
+			EarthquakeCatalogue.Builder builder = new EarthquakeCatalogue.Builder(1024);
 			Shapefile shapefile = new Shapefile(file);
 
 			while (shapefile.hasNext())
@@ -79,15 +79,21 @@ public class HistoricEarthquakesShapefileConverter
 
 				//although we don't particularly need double/long accuracy, once the binary file
 				//is zipped there is not much difference in size between the two (around 15%)
-				oos.writeDouble(latlon.getLatitude().degrees);
-				oos.writeDouble(latlon.getLongitude().degrees);
-				oos.writeDouble(elevation);
-				oos.writeDouble(magnitude);
-				oos.writeLong(timeInMillis);
+				builder.add(latlon.getLatitude().degrees, latlon.getLongitude().degrees, elevation, magnitude,
+						timeInMillis);
 			}
 
 			shapefile.close();
-			oos.close();
+
+			OutputStream os = new FileOutputStream(output);
+			try
+			{
+				builder.build().write(os);
+			}
+			finally
+			{
+				os.close();
+			}
 
 			i++;
 		}
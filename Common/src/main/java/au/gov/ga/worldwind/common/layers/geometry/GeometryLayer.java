@@ -17,6 +17,9 @@ package au.gov.ga.worldwind.common.layers.geometry;
 
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.render.DrawContext;
+
+import java.util.Collection;
+
 import au.gov.ga.worldwind.common.layers.data.DataLayer;
 
 /**
@@ -39,6 +42,11 @@ public interface GeometryLayer extends DataLayer
 	 */
 	void addShape(Shape shape);
 	
+	/**
+	 * Add a batch of shapes to this layer
+	 */
+	void addShapes(Collection<? extends Shape> shapes);
+	
 	/**
 	 * Invoked when this layer's shape source has been loaded.
 	 * <p/>
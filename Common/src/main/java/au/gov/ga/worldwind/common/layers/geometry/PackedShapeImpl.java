@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.geometry;
+
+import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.util.VecBuffer;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import au.gov.ga.worldwind.common.layers.Bounds;
+import au.gov.ga.worldwind.common.util.Validate;
+
+/**
+ * A {@link Shape} implementation that stores its points in a packed
+ * <code>double</code> array, rather than as individual {@link ShapePoint}
+ * objects.
+ * <p/>
+ * All points in the shape share a single set of attribute values (eg the
+ * attributes of a shapefile record). The points returned by
+ * {@link #getPoints()} are created on demand, and share these attribute
+ * values.
+ * <p/>
+ * Points are grouped into parts (eg the parts of a shapefile record), and the
+ * bounds of each part are calculated as it is added.
+ */
+public class PackedShapeImpl implements Shape
+{
+	private static final int COORDS_PER_POINT = 3;
+
+	private final String id;
+	private final Type type;
+	private final AVList attributeValues;
+
+	private double[] coords = new double[0];
+	private int pointCount = 0;
+	private int[] partStarts = new int[1];
+	private Bounds[] partBounds = new Bounds[1];
+	private int partCount = 0;
+	private Bounds bounds;
+
+	private final List<ShapePoint> points = new AbstractList<ShapePoint>()
+	{
+		@Override
+		public ShapePoint get(int index)
+		{
+			if (index < 0 || index >= pointCount)
+			{
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + pointCount);
+			}
+			int offset = index * COORDS_PER_POINT;
+			return ShapePoint.withSharedAttributeValues(Angle.fromDegreesLatitude(coords[offset]),
+					Angle.fromDegreesLongitude(coords[offset + 1]), coords[offset + 2], attributeValues);
+		}
+
+		@Override
+		public int size()
+		{
+			return pointCount;
+		}
+	};
+
+	/**
+	 * Create a new shape of the provided type
+	 * 
+	 * @param id
+	 *            ID of the shape
+	 * @param type
+	 *            Type of the shape
+	 * @param attributeValues
+	 *            Attribute values shared by all points in this shape (can be
+	 *            null)
+	 */
+	public PackedShapeImpl(String id, Type type, AVList attributeValues)
+	{
+		Validate.notBlank(id, "An ID must be provided");
+		Validate.notNull(type, "A type must be provided");
+
+		this.id = id;
+		this.type = type;
+		this.attributeValues = attributeValues;
+	}
+
+	@Override
+	public String getId()
+	{
+		return id;
+	}
+
+	@Override
+	public Type getType()
+	{
+		return type;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p/>
+	 * The returned list is a read-only view of this shape's packed points.
+	 */
+	@Override
+	public List<? extends ShapePoint> getPoints()
+	{
+		return points;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p/>
+	 * The point is added to the current part. The provided attribute values
+	 * are ignored; all points in this shape share the shape's attribute values.
+	 */
+	@Override
+	public void addPoint(Position p, AVList attributeValues)
+	{
+		if (p == null)
+		{
+			return;
+		}
+		addPoint(p.latitude.degrees, p.longitude.degrees, p.elevation);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p/>
+	 * The point is added to the current part. The point's attribute values are
+	 * ignored; all points in this shape share the shape's attribute values.
+	 */
+	@Override
+	public void addPoint(ShapePoint p)
+	{
+		addPoint(p, null);
+	}
+
+	/**
+	 * Add a point to the current part of this shape.
+	 */
+	public void addPoint(double latitude, double longitude, double elevation)
+	{
+		if (partCount == 0)
+		{
+			startPart();
+		}
+		ensureCapacity(pointCount + 1);
+		putPoint(latitude, longitude, elevation);
+		partBounds[partCount - 1] =
+				Bounds.union(partBounds[partCount - 1], Position.fromDegrees(latitude, longitude, elevation));
+		bounds = Bounds.union(bounds, partBounds[partCount - 1]);
+	}
+
+	/**
+	 * Add a new part to this shape, copying the coordinates directly from the
+	 * provided buffer (in longitude, latitude[, elevation] order, as used by
+	 * shapefile records).
+	 * 
+	 * @param buffer
+	 *            Buffer containing the part's coordinates
+	 */
+	public void addPart(VecBuffer buffer)
+	{
+		int size = buffer.getSize();
+		startPart();
+		ensureCapacity(pointCount + size);
+
+		double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+		double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+		double minElevation = Double.MAX_VALUE, maxElevation = -Double.MAX_VALUE;
+
+		double[] vec = new double[buffer.getCoordsPerVec()];
+		for (int i = 0; i < size; i++)
+		{
+			buffer.get(i, vec);
+			double lon = vec[0];
+			double lat = vec[1];
+			double elevation = vec.length > 2 ? vec[2] : 0;
+			putPoint(lat, lon, elevation);
+
+			minLat = Math.min(minLat, lat);
+			maxLat = Math.max(maxLat, lat);
+			minLon = Math.min(minLon, lon);
+			maxLon = Math.max(maxLon, lon);
+			minElevation = Math.min(minElevation, elevation);
+			maxElevation = Math.max(maxElevation, elevation);
+		}
+
+		if (size > 0)
+		{
+			Bounds part =
+					new Bounds(Position.fromDegrees(minLat, minLon, minElevation), Position.fromDegrees(maxLat,
+							maxLon, maxElevation));
+			partBounds[partCount - 1] = part;
+			bounds = Bounds.union(bounds, part);
+		}
+	}
+
+	/**
+	 * @return The number of points in this shape
+	 */
+	public int getPointCount()
+	{
+		return pointCount;
+	}
+
+	/**
+	 * @return The number of parts in this shape
+	 */
+	public int getPartCount()
+	{
+		return partCount;
+	}
+
+	/**
+	 * @return The index of the first point in the given part
+	 */
+	public int getPartStart(int part)
+	{
+		return partStarts[part];
+	}
+
+	/**
+	 * @return The bounds of the given part, or null if the part is empty
+	 */
+	public Bounds getPartBounds(int part)
+	{
+		return partBounds[part];
+	}
+
+	/**
+	 * @return The bounds of all points in this shape, or null if the shape is
+	 *         empty
+	 */
+	public Bounds getBounds()
+	{
+		return bounds;
+	}
+
+	/**
+	 * @return The attribute values shared by all points in this shape
+	 */
+	public AVList getAttributeValues()
+	{
+		return attributeValues;
+	}
+
+	public double getLatitude(int index)
+	{
+		return coords[index * COORDS_PER_POINT];
+	}
+
+	public double getLongitude(int index)
+	{
+		return coords[index * COORDS_PER_POINT + 1];
+	}
+
+	public double getElevation(int index)
+	{
+		return coords[index * COORDS_PER_POINT + 2];
+	}
+
+	private void startPart()
+	{
+		if (partCount == partStarts.length)
+		{
+			int[] newPartStarts = new int[partCount * 2];
+			System.arraycopy(partStarts, 0, newPartStarts, 0, partCount);
+			partStarts = newPartStarts;
+			Bounds[] newPartBounds = new Bounds[partCount * 2];
+			System.arraycopy(partBounds, 0, newPartBounds, 0, partCount);
+			partBounds = newPartBounds;
+		}
+		partStarts[partCount++] = pointCount;
+	}
+
+	private void ensureCapacity(int points)
+	{
+		if (points * COORDS_PER_POINT > coords.length)
+		{
+			double[] newCoords = new double[Math.max(points, pointCount * 2) * COORDS_PER_POINT];
+			System.arraycopy(coords, 0, newCoords, 0, pointCount * COORDS_PER_POINT);
+			coords = newCoords;
+		}
+	}
+
+	private void putPoint(double latitude, double longitude, double elevation)
+	{
+		int offset = pointCount * COORDS_PER_POINT;
+		coords[offset] = latitude;
+		coords[offset + 1] = longitude;
+		coords[offset + 2] = elevation;
+		pointCount++;
+	}
+}
@@ -98,6 +98,22 @@ public interface Shape
 			}
 		}
 		
+		/**
+		 * Create a new point that uses the provided attribute values directly,
+		 * rather than taking a copy of them. Changes to the attribute values
+		 * are seen by all points sharing them.
+		 */
+		public static ShapePoint withSharedAttributeValues(Angle latitude, Angle longitude, double elevation,
+				AVList attributeValues)
+		{
+			ShapePoint point = new ShapePoint(latitude, longitude, elevation, null);
+			if (attributeValues != null)
+			{
+				point.attributeValues = attributeValues;
+			}
+			return point;
+		}
+		
 		public Object getAttributeValue(String attributeName)
 		{
 			return attributeValues.getValue(attributeName);
@@ -20,19 +20,19 @@ import gov.nasa.worldwind.formats.shapefile.DBaseRecord;
 import gov.nasa.worldwind.formats.shapefile.Shapefile;
 import gov.nasa.worldwind.formats.shapefile.ShapefileRecord;
 import gov.nasa.worldwind.formats.shapefile.ShapefileUtils;
-import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.util.Logging;
-import gov.nasa.worldwind.util.VecBuffer;
 
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 
 import au.gov.ga.worldwind.common.layers.Bounds;
 import au.gov.ga.worldwind.common.layers.data.AbstractDataProvider;
-import au.gov.ga.worldwind.common.layers.geometry.BasicShapeImpl;
 import au.gov.ga.worldwind.common.layers.geometry.GeometryLayer;
+import au.gov.ga.worldwind.common.layers.geometry.PackedShapeImpl;
 import au.gov.ga.worldwind.common.layers.geometry.Shape;
 import au.gov.ga.worldwind.common.layers.geometry.Shape.Type;
 import au.gov.ga.worldwind.common.layers.geometry.ShapeProvider;
@@ -64,7 +64,12 @@ public class ShapefileShapeProvider extends AbstractDataProvider<GeometryLayer>
 		shapeTypeMap.put(Shapefile.SHAPE_POLYGON_Z, Type.POLYGON);
 	}
 
-	private Bounds bounds;
+	/**
+	 * Number of points to load before passing the loaded shapes to the layer
+	 */
+	private static final int BATCH_POINT_COUNT = 65536;
+
+	private volatile Bounds bounds;
 
 	@Override
 	protected boolean doLoadData(URL url, GeometryLayer layer)
@@ -73,28 +78,37 @@ public class ShapefileShapeProvider extends AbstractDataProvider<GeometryLayer>
 		{
 			bounds = null;
 			Shapefile shapefile = ShapefileUtils.openZippedShapefile(URLUtil.urlToFile(url));
+			List<Shape> batch = new ArrayList<Shape>();
+			Bounds batchBounds = null;
+			int batchPointCount = 0;
 			while (shapefile.hasNext())
 			{
 				ShapefileRecord record = shapefile.nextRecord();
 				DBaseRecord values = record.getAttributes();
 
-				Shape loadedShape =
-						new BasicShapeImpl(url.getPath() + record.getRecordNumber(), getShapeTypeForRecord(layer,
-								record));
+				//copy the coordinates directly from the record's buffers; all points share the record's values
+				PackedShapeImpl loadedShape =
+						new PackedShapeImpl(url.getPath() + record.getRecordNumber(), getShapeTypeForRecord(layer,
+								record), values);
 				for (int part = 0; part < record.getNumberOfParts(); part++)
 				{
-					VecBuffer buffer = record.getPointBuffer(part);
-					int size = buffer.getSize();
-					for (int i = 0; i < size; i++)
-					{
-						Position position = buffer.getPosition(i);
-						loadedShape.addPoint(position, values);
-						bounds = Bounds.union(bounds, position);
-					}
+					loadedShape.addPart(record.getPointBuffer(part));
 				}
 
-				layer.addShape(loadedShape);
+				batch.add(loadedShape);
+				batchBounds = Bounds.union(batchBounds, loadedShape.getBounds());
+				batchPointCount += loadedShape.getPointCount();
+
+				//pass the shapes to the layer in batches, so they can be rendered before loading is complete
+				if (batchPointCount >= BATCH_POINT_COUNT)
+				{
+					addBatch(layer, batch, batchBounds);
+					batch = new ArrayList<Shape>();
+					batchBounds = null;
+					batchPointCount = 0;
+				}
 			}
+			addBatch(layer, batch, batchBounds);
 
 			layer.loadComplete();
 		}
@@ -107,6 +121,15 @@ public class ShapefileShapeProvider extends AbstractDataProvider<GeometryLayer>
 		return true;
 	}
 
+	private void addBatch(GeometryLayer layer, List<Shape> batch, Bounds batchBounds)
+	{
+		if (!batch.isEmpty())
+		{
+			bounds = Bounds.union(bounds, batchBounds);
+			layer.addShapes(batch);
+		}
+	}
+
 	/**
 	 * @return The shape type to use for the provided record. Checks for an
 	 *         override in the layer before inspecting the shapefile record.
@@ -32,6 +32,7 @@ import java.util.Set;
 
 import au.gov.ga.worldwind.common.layers.Bounds;
 import au.gov.ga.worldwind.common.layers.geometry.GeometryLayer;
+import au.gov.ga.worldwind.common.layers.geometry.Shape;
 import au.gov.ga.worldwind.common.layers.geometry.ShapeProvider;
 import au.gov.ga.worldwind.common.layers.styled.Attribute;
 import au.gov.ga.worldwind.common.layers.styled.BasicStyleProvider;
@@ -194,6 +195,16 @@ public abstract class GeometryLayerBase extends AbstractLayer implements Geometr
 		return shapeProvider.isFollowTerrain();
 	}
 
+	@Override
+	public void addShapes(Collection<? extends Shape> shapes)
+	{
+		// Subclasses may override to add the shapes more efficiently
+		for (Shape shape : shapes)
+		{
+			addShape(shape);
+		}
+	}
+
 	@Override
 	public void loadComplete()
 	{
@@ -25,6 +25,7 @@ import gov.nasa.worldwind.render.airspaces.Polygon;
 
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -69,6 +70,23 @@ public class AirspaceGeometryLayer extends GeometryLayerBase implements Geometry
 		}
 	}
 
+	@Override
+	public void addShapes(Collection<? extends Shape> shapes)
+	{
+		List<AirspaceShape> newShapes = new ArrayList<AirspaceShape>(shapes.size());
+		for (Shape shape : shapes)
+		{
+			if (shape != null)
+			{
+				newShapes.add(new AirspaceShape(shape));
+			}
+		}
+		synchronized (airspaceShapes)
+		{
+			airspaceShapes.addAll(newShapes);
+		}
+	}
+
 	@Override
 	public void renderGeometry(DrawContext dc)
 	{
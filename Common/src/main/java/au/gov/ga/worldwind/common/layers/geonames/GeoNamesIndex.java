@@ -0,0 +1,301 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.geonames;
+
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Sector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Offline, spatially indexed gazetteer built from a geonames.org dump file by
+ * the {@link GeoNamesIndexBuilder}. The index file is memory mapped; names are
+ * stored in tiles for a number of levels, where each level doubles the tile
+ * resolution of the previous level, and contains less important names than
+ * the previous level.
+ * <p/>
+ * Decoded tiles are kept in a LRU cache, so repeated queries for the same
+ * area don't allocate.
+ */
+public class GeoNamesIndex
+{
+	public final static int MAGIC = 0x474e4958; //GNIX
+	public final static int VERSION = 1;
+	public final static double LEVEL_ZERO_TILE_DELTA = 36d;
+	public final static int MAX_LEVEL_COUNT = 12;
+	public final static int DEFAULT_CACHE_SIZE = 512;
+
+	private final ColorFontProvider fontProvider;
+	private final VisibilityCalculator visibilityCalculator;
+
+	private final int levelCount;
+	private final int[][] tileKeys;
+	private final int[][] tileOffsets;
+	private ByteBuffer buffer;
+
+	private final Map<Long, List<GeoName>> cache;
+
+	/**
+	 * Open a GeoNames index file.
+	 *
+	 * @param file
+	 *            Index file created by the {@link GeoNamesIndexBuilder}
+	 * @param fontProvider
+	 *            Font provider for the created {@link GeoName}s
+	 * @param visibilityCalculator
+	 *            Visibility calculator for the created {@link GeoName}s
+	 * @throws IOException
+	 *             If the file could not be read, or is not a GeoNames index
+	 */
+	public GeoNamesIndex(File file, ColorFontProvider fontProvider, VisibilityCalculator visibilityCalculator)
+			throws IOException
+	{
+		this.fontProvider = fontProvider;
+		this.visibilityCalculator = visibilityCalculator;
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer = mapped;
+		}
+		finally
+		{
+			//the mapping remains valid after the channel is closed
+			raf.close();
+		}
+
+		if (buffer.remaining() < 20 || buffer.getInt() != MAGIC)
+		{
+			throw new IOException("Not a GeoNames index file: " + file);
+		}
+		int version = buffer.getInt();
+		if (version != VERSION)
+		{
+			throw new IOException("Unsupported GeoNames index version " + version + ": " + file);
+		}
+		levelCount = buffer.getInt();
+		if (levelCount < 1 || levelCount > MAX_LEVEL_COUNT || buffer.getDouble() != LEVEL_ZERO_TILE_DELTA)
+		{
+			throw new IOException("Invalid GeoNames index header: " + file);
+		}
+
+		tileKeys = new int[levelCount][];
+		tileOffsets = new int[levelCount][];
+		for (int level = 0; level < levelCount; level++)
+		{
+			int tileCount = buffer.getInt();
+			tileKeys[level] = new int[tileCount];
+			tileOffsets[level] = new int[tileCount + 1];
+			buffer.asIntBuffer().get(tileKeys[level]);
+			buffer.position(buffer.position() + tileCount * 4);
+			buffer.asIntBuffer().get(tileOffsets[level]);
+			buffer.position(buffer.position() + (tileCount + 1) * 4);
+		}
+
+		cache = new LinkedHashMap<Long, List<GeoName>>(DEFAULT_CACHE_SIZE, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, List<GeoName>> eldest)
+			{
+				return size() > DEFAULT_CACHE_SIZE;
+			}
+		};
+	}
+
+	/**
+	 * @return Number of levels in this index
+	 */
+	public int getLevelCount()
+	{
+		return levelCount;
+	}
+
+	/**
+	 * @return Size (in degrees) of the tiles in the given level
+	 */
+	public static double getTileDelta(int level)
+	{
+		return LEVEL_ZERO_TILE_DELTA / (1 << level);
+	}
+
+	/**
+	 * @return Number of tile columns in the given level
+	 */
+	public static int getColumnCount(int level)
+	{
+		return (int) Math.round(360d / getTileDelta(level));
+	}
+
+	/**
+	 * @return Number of tile rows in the given level
+	 */
+	public static int getRowCount(int level)
+	{
+		return (int) Math.round(180d / getTileDelta(level));
+	}
+
+	/**
+	 * Calculate the key of the tile containing the given location.
+	 */
+	public static int getTileKey(double lat, double lon, int level)
+	{
+		return getRow(lat, level) * getColumnCount(level) + getColumn(lon, level);
+	}
+
+	protected static int getRow(double lat, int level)
+	{
+		int row = (int) Math.floor((lat + 90d) / getTileDelta(level));
+		return Math.max(0, Math.min(getRowCount(level) - 1, row));
+	}
+
+	protected static int getColumn(double lon, int level)
+	{
+		int column = (int) Math.floor((lon + 180d) / getTileDelta(level));
+		return Math.max(0, Math.min(getColumnCount(level) - 1, column));
+	}
+
+	/**
+	 * Calculate the highest level whose tiles are large enough that at most
+	 * <code>tilesAcross</code> tiles span the given sector.
+	 */
+	public int getLevelForSector(Sector sector, int tilesAcross)
+	{
+		double delta = Math.max(sector.getDeltaLatDegrees(), sector.getDeltaLonDegrees()) / tilesAcross;
+		int level = 0;
+		while (level < levelCount - 1 && getTileDelta(level + 1) >= delta)
+		{
+			level++;
+		}
+		return level;
+	}
+
+	/**
+	 * Add the names in all tiles intersecting the given sector, for levels 0
+	 * to <code>maxLevel</code> inclusive, to the result collection.
+	 *
+	 * @param sector
+	 *            Sector to find names in
+	 * @param maxLevel
+	 *            Maximum level to find names from
+	 * @param result
+	 *            Collection to add the names to
+	 */
+	public void getNames(Sector sector, int maxLevel, Collection<GeoName> result)
+	{
+		maxLevel = Math.min(maxLevel, levelCount - 1);
+		for (int level = 0; level <= maxLevel; level++)
+		{
+			int[] keys = tileKeys[level];
+			if (keys.length == 0)
+			{
+				continue;
+			}
+
+			int columns = getColumnCount(level);
+			int minRow = getRow(sector.getMinLatitude().degrees, level);
+			int maxRow = getRow(sector.getMaxLatitude().degrees, level);
+			int minColumn = getColumn(sector.getMinLongitude().degrees, level);
+			int maxColumn = getColumn(sector.getMaxLongitude().degrees, level);
+
+			for (int row = minRow; row <= maxRow; row++)
+			{
+				int minKey = row * columns + minColumn;
+				int maxKey = row * columns + maxColumn;
+				int index = Arrays.binarySearch(keys, minKey);
+				if (index < 0)
+				{
+					index = -index - 1;
+				}
+				for (; index < keys.length && keys[index] <= maxKey; index++)
+				{
+					result.addAll(getTile(level, index));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the names in the tile at the given index in the level's tile list,
+	 * decoding the tile if it is not cached.
+	 */
+	protected List<GeoName> getTile(int level, int index)
+	{
+		long key = ((long) level << 32) | tileKeys[level][index];
+		synchronized (cache)
+		{
+			List<GeoName> names = cache.get(key);
+			if (names == null)
+			{
+				names = readTile(level, tileOffsets[level][index], tileOffsets[level][index + 1]);
+				cache.put(key, names);
+			}
+			return names;
+		}
+	}
+
+	protected List<GeoName> readTile(int level, int start, int end)
+	{
+		ByteBuffer buffer = this.buffer.duplicate();
+		buffer.position(start);
+
+		List<GeoName> names = new ArrayList<GeoName>();
+		while (buffer.position() < end)
+		{
+			int geonameId = buffer.getInt();
+			float lat = buffer.getFloat();
+			float lon = buffer.getFloat();
+			buffer.getInt(); //population
+			String featureClass = String.valueOf((char) (buffer.get() & 0xff));
+			String featureCode = readString(buffer);
+			String name = readString(buffer);
+
+			LatLon latlon = new LatLon(Angle.fromDegreesLatitude(lat), Angle.fromDegreesLongitude(lon));
+			names.add(new GeoName(name, geonameId, latlon, featureClass, featureCode, level, fontProvider,
+					visibilityCalculator));
+		}
+		return Collections.unmodifiableList(names);
+	}
+
+	private static String readString(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.getShort() & 0xffff];
+		buffer.get(bytes);
+		try
+		{
+			return new String(bytes, "UTF-8");
+		}
+		catch (IOException e)
+		{
+			//UTF-8 is always supported
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,405 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.geonames;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a {@link GeoNamesIndex} file from a geonames.org dump file (such as
+ * <code>allCountries.txt</code>, <code>cities1000.txt</code> or a single
+ * country file, available from http://download.geonames.org/export/dump/).
+ * <p/>
+ * Each name is assigned a level-of-detail level using its feature code and
+ * population (continents at level 0, countries and capitals at level 1,
+ * etc). Names are then stored in the tile containing them at that level. If a
+ * tile already contains the maximum number of names, less important names
+ * are moved down to the next level, so that each level contains a bounded
+ * number of names per tile.
+ */
+public class GeoNamesIndexBuilder
+{
+	public final static int DEFAULT_LEVEL_COUNT = 7;
+	public final static int DEFAULT_NAMES_PER_TILE = 16;
+	public final static String DEFAULT_FEATURE_CLASSES = "AP";
+
+	private final int levelCount;
+	private final int namesPerTile;
+	private String featureClasses = DEFAULT_FEATURE_CLASSES;
+	private final List<Entry> entries = new ArrayList<Entry>();
+
+	public GeoNamesIndexBuilder()
+	{
+		this(DEFAULT_LEVEL_COUNT, DEFAULT_NAMES_PER_TILE);
+	}
+
+	/**
+	 * @param levelCount
+	 *            Number of levels in the index
+	 * @param namesPerTile
+	 *            Maximum number of names per tile (except for the last level,
+	 *            which contains all remaining names)
+	 */
+	public GeoNamesIndexBuilder(int levelCount, int namesPerTile)
+	{
+		if (levelCount < 1 || levelCount > GeoNamesIndex.MAX_LEVEL_COUNT)
+		{
+			throw new IllegalArgumentException("Level count must be between 1 and " + GeoNamesIndex.MAX_LEVEL_COUNT);
+		}
+		this.levelCount = levelCount;
+		this.namesPerTile = namesPerTile;
+	}
+
+	/**
+	 * Set the geonames feature classes (A, P, H, L, etc) to include in the
+	 * index. Defaults to {@link #DEFAULT_FEATURE_CLASSES}. Continents are
+	 * always included.
+	 *
+	 * @param featureClasses
+	 *            String containing the feature class characters to include,
+	 *            or null to include all feature classes
+	 */
+	public void setFeatureClasses(String featureClasses)
+	{
+		this.featureClasses = featureClasses;
+	}
+
+	/**
+	 * @return Number of names added to this builder
+	 */
+	public int getNameCount()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Add the names from the given geonames dump file.
+	 */
+	public void addDump(File file) throws IOException
+	{
+		InputStream is = new FileInputStream(file);
+		try
+		{
+			addDump(is);
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	/**
+	 * Add the names from the given geonames dump stream. The stream is a tab
+	 * separated UTF-8 text file, with the columns described at
+	 * http://download.geonames.org/export/dump/readme.txt.
+	 */
+	public void addDump(InputStream is) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+		String line;
+		while ((line = reader.readLine()) != null)
+		{
+			String[] columns = line.split("\t", -1);
+			if (columns.length < 15 || columns[1].length() == 0 || columns[6].length() != 1)
+			{
+				continue;
+			}
+
+			//continents (feature class L) are always included
+			char featureClass = columns[6].charAt(0);
+			if (featureClasses != null && featureClasses.indexOf(featureClass) < 0 && !"CONT".equals(columns[7]))
+			{
+				continue;
+			}
+
+			try
+			{
+				int geonameId = Integer.parseInt(columns[0]);
+				float lat = Float.parseFloat(columns[4]);
+				float lon = Float.parseFloat(columns[5]);
+				int population =
+						columns[14].length() == 0 ? 0 : (int) Math.min(Long.parseLong(columns[14]), Integer.MAX_VALUE);
+				add(geonameId, columns[1], lat, lon, featureClass, columns[7], population);
+			}
+			catch (NumberFormatException e)
+			{
+				//skip invalid lines
+			}
+		}
+	}
+
+	/**
+	 * Add a single name to this builder.
+	 */
+	public void add(int geonameId, String name, float lat, float lon, char featureClass, String featureCode,
+			int population) throws IOException
+	{
+		Entry entry = new Entry();
+		entry.geonameId = geonameId;
+		entry.lat = lat;
+		entry.lon = lon;
+		entry.featureClass = featureClass;
+		entry.featureCode = featureCode.getBytes("UTF-8");
+		entry.name = name.getBytes("UTF-8");
+		entry.population = population;
+		entry.level = Math.min(levelCount - 1, getBaseLevel(featureClass, featureCode, population));
+		entries.add(entry);
+	}
+
+	/**
+	 * Calculate the level at which a name should first be displayed, before
+	 * limiting the number of names per tile.
+	 *
+	 * @param featureClass
+	 *            geonames feature class
+	 * @param featureCode
+	 *            geonames feature code
+	 * @param population
+	 *            Population (0 if unknown)
+	 * @return Level for the name
+	 */
+	protected int getBaseLevel(char featureClass, String featureCode, int population)
+	{
+		if ("CONT".equals(featureCode) || "OCN".equals(featureCode))
+			return 0;
+		if (featureCode.startsWith("PCL") || "TERR".equals(featureCode) || "PPLC".equals(featureCode))
+			return 1;
+		if ("ADM1".equals(featureCode) || "PPLA".equals(featureCode) || population >= 1000000)
+			return 2;
+		if ("ADM2".equals(featureCode) || "PPLA2".equals(featureCode) || population >= 100000)
+			return 3;
+		if ("ADM3".equals(featureCode) || "PPLA3".equals(featureCode) || population >= 10000)
+			return 4;
+		if (population >= 1000)
+			return 5;
+		return 6;
+	}
+
+	/**
+	 * Write the index to the given file.
+	 */
+	public void write(File file) throws IOException
+	{
+		assignLevels();
+
+		//sort by level, then tile, then importance within the tile
+		Collections.sort(entries, new Comparator<Entry>()
+		{
+			@Override
+			public int compare(Entry o1, Entry o2)
+			{
+				if (o1.level != o2.level)
+					return o1.level < o2.level ? -1 : 1;
+				if (o1.tile != o2.tile)
+					return o1.tile < o2.tile ? -1 : 1;
+				return compareImportance(o1, o2);
+			}
+		});
+
+		//count the tiles in each level
+		int[] tileCounts = new int[levelCount];
+		for (int i = 0; i < entries.size(); i++)
+		{
+			Entry entry = entries.get(i);
+			if (i == 0 || entry.level != entries.get(i - 1).level || entry.tile != entries.get(i - 1).tile)
+			{
+				tileCounts[entry.level]++;
+			}
+		}
+
+		//header is magic, version, level count, level zero tile delta, and per level tile keys and offsets
+		long position = 4 + 4 + 4 + 8;
+		for (int level = 0; level < levelCount; level++)
+		{
+			position += 4 + tileCounts[level] * 4 + (tileCounts[level] + 1) * 4;
+		}
+
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try
+		{
+			dos.writeInt(GeoNamesIndex.MAGIC);
+			dos.writeInt(GeoNamesIndex.VERSION);
+			dos.writeInt(levelCount);
+			dos.writeDouble(GeoNamesIndex.LEVEL_ZERO_TILE_DELTA);
+
+			int start = 0;
+			for (int level = 0; level < levelCount; level++)
+			{
+				int end = start;
+				while (end < entries.size() && entries.get(end).level == level)
+				{
+					end++;
+				}
+
+				int[] keys = new int[tileCounts[level]];
+				int[] offsets = new int[tileCounts[level] + 1];
+				int tile = -1;
+				for (int i = start; i < end; i++)
+				{
+					Entry entry = entries.get(i);
+					if (i == start || entry.tile != entries.get(i - 1).tile)
+					{
+						keys[++tile] = entry.tile;
+						offsets[tile] = checkPosition(position);
+					}
+					position += entry.size();
+				}
+				offsets[tileCounts[level]] = checkPosition(position);
+
+				dos.writeInt(tileCounts[level]);
+				for (int key : keys)
+				{
+					dos.writeInt(key);
+				}
+				for (int offset : offsets)
+				{
+					dos.writeInt(offset);
+				}
+				start = end;
+			}
+
+			for (Entry entry : entries)
+			{
+				dos.writeInt(entry.geonameId);
+				dos.writeFloat(entry.lat);
+				dos.writeFloat(entry.lon);
+				dos.writeInt(entry.population);
+				dos.writeByte(entry.featureClass);
+				dos.writeShort(entry.featureCode.length);
+				dos.write(entry.featureCode);
+				dos.writeShort(entry.name.length);
+				dos.write(entry.name);
+			}
+		}
+		finally
+		{
+			dos.close();
+		}
+	}
+
+	/**
+	 * Move names down to the next level while the tile they are in is full,
+	 * adding the most important names first.
+	 */
+	protected void assignLevels()
+	{
+		Collections.sort(entries, new Comparator<Entry>()
+		{
+			@Override
+			public int compare(Entry o1, Entry o2)
+			{
+				if (o1.level != o2.level)
+					return o1.level < o2.level ? -1 : 1;
+				return compareImportance(o1, o2);
+			}
+		});
+
+		List<Map<Integer, int[]>> counts = new ArrayList<Map<Integer, int[]>>();
+		for (int level = 0; level < levelCount; level++)
+		{
+			counts.add(new HashMap<Integer, int[]>());
+		}
+
+		for (Entry entry : entries)
+		{
+			while (true)
+			{
+				entry.tile = GeoNamesIndex.getTileKey(entry.lat, entry.lon, entry.level);
+				if (entry.level >= levelCount - 1)
+				{
+					break;
+				}
+				int[] count = counts.get(entry.level).get(entry.tile);
+				if (count == null)
+				{
+					count = new int[1];
+					counts.get(entry.level).put(entry.tile, count);
+				}
+				if (count[0] < namesPerTile)
+				{
+					count[0]++;
+					break;
+				}
+				entry.level++;
+			}
+		}
+	}
+
+	protected static int compareImportance(Entry o1, Entry o2)
+	{
+		if (o1.population != o2.population)
+			return o1.population > o2.population ? -1 : 1;
+		return o1.geonameId < o2.geonameId ? -1 : o1.geonameId == o2.geonameId ? 0 : 1;
+	}
+
+	private static int checkPosition(long position) throws IOException
+	{
+		if (position > Integer.MAX_VALUE)
+		{
+			throw new IOException("GeoNames index is too large; use a smaller dump file or fewer feature classes");
+		}
+		return (int) position;
+	}
+
+	protected static class Entry
+	{
+		public int geonameId;
+		public float lat;
+		public float lon;
+		public int population;
+		public char featureClass;
+		public byte[] featureCode;
+		public byte[] name;
+		public int level;
+		public int tile;
+
+		public int size()
+		{
+			return 4 + 4 + 4 + 4 + 1 + 2 + featureCode.length + 2 + name.length;
+		}
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 2)
+		{
+			System.out.println("Usage: GeoNamesIndexBuilder <dump file> <index file> [feature classes]");
+			return;
+		}
+
+		GeoNamesIndexBuilder builder = new GeoNamesIndexBuilder();
+		if (args.length > 2)
+		{
+			builder.setFeatureClasses(args[2]);
+		}
+		builder.addDump(new File(args[0]));
+		builder.write(new File(args[1]));
+		System.out.println("Indexed " + builder.getNameCount() + " names");
+	}
+}
@@ -37,12 +37,19 @@ import gov.nasa.worldwind.util.Logging;
 
 import java.awt.Color;
 import java.awt.Font;
+import java.io.File;
+import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.PriorityBlockingQueue;
 
 import au.gov.ga.worldwind.common.util.ColorFont;
@@ -52,6 +59,11 @@ import au.gov.ga.worldwind.common.util.IterableProxy;
  * Place name layer which uses place data from geonames.org. Uses
  * level-of-detail to download levels in the GeoName hirarchy according to
  * camera altitude.
+ * <p/>
+ * If an index file created by the {@link GeoNamesIndexBuilder} is set (using
+ * {@link #setIndexFile(String)}, or the <code>IndexFile</code> property in the
+ * layer definition), place names are read from the offline index instead of
+ * being downloaded.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -64,10 +76,21 @@ public class GeoNamesLayer extends AbstractLayer
 	private GeoName topGeoName;
 	private VisibilityCalculatorImpl visibilityCalculator = new VisibilityCalculatorImpl();
 	private Queue<GeoName> requestQ;
+	private Set<GeoName> requested = Collections.newSetFromMap(new ConcurrentHashMap<GeoName, Boolean>());
+
+	private ColorFontProvider fontProvider;
+	private GeoNamesIndex index;
+	private List<GeoName> indexedNames = new ArrayList<GeoName>();
 
 	private final GeographicTextRenderer nameRenderer = new GeographicTextRenderer();
 	private Object lock = new Object();
 
+	/**
+	 * Number of index tiles to display across the visible sector when using
+	 * the offline index.
+	 */
+	private final static int INDEX_TILES_ACROSS = 8;
+
 	//TODO different attributes for different feature codes (fcode)
 
 	public GeoNamesLayer()
@@ -75,7 +98,7 @@ public class GeoNamesLayer extends AbstractLayer
 		setName("GeoNames");
 		setPickEnabled(false);
 
-		ColorFontProvider fontProvider = setupFontProvider();
+		fontProvider = setupFontProvider();
 		topGeoName =
 				new GeoName(null, GEONAMES_GLOBE_ID, LatLon.ZERO, null, null, -1, fontProvider, visibilityCalculator);
 
@@ -91,6 +114,42 @@ public class GeoNamesLayer extends AbstractLayer
 		});
 	}
 
+	/**
+	 * Create a place name layer which reads names from the given offline
+	 * index file.
+	 * 
+	 * @param indexFile
+	 *            Index file created by the {@link GeoNamesIndexBuilder}
+	 * @throws IOException
+	 *             If the index file could not be opened
+	 */
+	public GeoNamesLayer(File indexFile) throws IOException
+	{
+		this();
+		index = new GeoNamesIndex(indexFile, fontProvider, visibilityCalculator);
+	}
+
+	/**
+	 * Set the offline index file to read place names from. Errors opening the
+	 * file are logged, and the layer falls back to the geonames.org service.
+	 * 
+	 * @param path
+	 *            Path to an index file created by the
+	 *            {@link GeoNamesIndexBuilder}
+	 */
+	public void setIndexFile(String path)
+	{
+		try
+		{
+			index = new GeoNamesIndex(new File(path), fontProvider, visibilityCalculator);
+		}
+		catch (IOException e)
+		{
+			index = null;
+			Logging.logger().log(java.util.logging.Level.SEVERE, "Error opening GeoNames index " + path, e);
+		}
+	}
+
 	private ColorFontProvider setupFontProvider()
 	{
 		ColorFont def = new ColorFont(Font.decode("Arial-PLAIN-10"), Color.lightGray, Color.black);
@@ -142,6 +201,19 @@ public class GeoNamesLayer extends AbstractLayer
 		visibilityCalculator.setLevels(levels);
 		visibilityCalculator.setEye(eye);
 
+		if (index != null)
+		{
+			if (sector == null)
+			{
+				sector = Sector.FULL_SPHERE;
+			}
+			int maxLevel = Math.min(levels - 1, index.getLevelForSector(sector, INDEX_TILES_ACROSS));
+			indexedNames.clear();
+			index.getNames(sector, maxLevel, indexedNames);
+			nameRenderer.render(dc, new IterableProxy<GeographicText>(indexedNames));
+			return;
+		}
+
 		synchronized (lock)
 		{
 			render(dc, topGeoName);
@@ -152,13 +224,21 @@ public class GeoNamesLayer extends AbstractLayer
 
 	public void sendRequests()
 	{
-		GeoName geoname = requestQ.poll();
-		while (geoname != null && !WorldWind.getTaskService().isFull())
+		//requests that don't fit in the task service stay queued for the next frame
+		while (!WorldWind.getTaskService().isFull())
 		{
+			GeoName geoname = requestQ.poll();
+			if (geoname == null)
+			{
+				break;
+			}
+			if (geoname.loadedChildren() || !visibilityCalculator.isVisible(geoname))
+			{
+				requested.remove(geoname);
+				continue;
+			}
 			WorldWind.getTaskService().addTask(new RequestTask(geoname));
-			geoname = requestQ.poll();
 		}
-		requestQ.clear();
 	}
 
 	private class RequestTask implements Runnable
@@ -173,13 +253,20 @@ public class GeoNamesLayer extends AbstractLayer
 		@Override
 		public void run()
 		{
-			if (geoname.cacheFileExists())
+			try
 			{
-				loadChildren(geoname);
+				if (geoname.cacheFileExists())
+				{
+					loadChildren(geoname);
+				}
+				else
+				{
+					download(geoname);
+				}
 			}
-			else
+			finally
 			{
-				download(geoname);
+				requested.remove(geoname);
 			}
 		}
 	}
@@ -230,7 +317,10 @@ public class GeoNamesLayer extends AbstractLayer
 
 	public void requestChildren(GeoName geoname)
 	{
-		requestQ.add(geoname);
+		if (requested.add(geoname))
+		{
+			requestQ.add(geoname);
+		}
 	}
 
 	private void loadChildren(GeoName geoname)
@@ -17,17 +17,31 @@ package au.gov.ga.worldwind.common.layers.kml.relativeio;
 
 import gov.nasa.worldwind.ogc.kml.io.KMLDoc;
 import gov.nasa.worldwind.ogc.kml.io.KMZFile;
+import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.WWIO;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import au.gov.ga.worldwind.common.util.io.IndexedZipFile;
 
 /**
  * The {@link RelativeKMZFile} class is a subclass of {@link KMZFile} that
  * supports better resolving of relative KML references.
+ * <p/>
+ * The KMZ entries are read through an {@link IndexedZipFile}, so support
+ * files can be loaded concurrently by multiple threads, and small support
+ * files (such as icons) are cached in memory.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -36,6 +50,9 @@ public class RelativeKMZFile extends KMZFile implements RelativeKMLDoc
 	private final File file;
 	private final String href;
 	private final KMLDoc parent;
+	private final IndexedZipFile indexedZipFile;
+	private final ConcurrentMap<String, FutureTask<File>> extractedFiles =
+			new ConcurrentHashMap<String, FutureTask<File>>();
 
 	public RelativeKMZFile(File file, String href, KMLDoc parent) throws IOException
 	{
@@ -43,6 +60,18 @@ public class RelativeKMZFile extends KMZFile implements RelativeKMLDoc
 		this.file = file;
 		this.href = href;
 		this.parent = parent;
+
+		IndexedZipFile indexedZipFile = null;
+		try
+		{
+			indexedZipFile = new IndexedZipFile(file);
+		}
+		catch (IOException e)
+		{
+			//fall back to the (synchronized) KMZFile implementation
+			Logging.logger().warning("Error indexing KMZ file " + file + ": " + e.getLocalizedMessage());
+		}
+		this.indexedZipFile = indexedZipFile;
 	}
 
 	@Override
@@ -64,7 +93,25 @@ public class RelativeKMZFile extends KMZFile implements RelativeKMLDoc
 	}
 
 	@Override
-	public synchronized InputStream getSupportFileStream(String path) throws IOException
+	public InputStream getKMLStream() throws IOException
+	{
+		if (indexedZipFile == null)
+		{
+			return super.getKMLStream();
+		}
+
+		for (String name : indexedZipFile.getEntryNames())
+		{
+			if (name.toLowerCase().endsWith(".kml"))
+			{
+				return indexedZipFile.getInputStream(name);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public InputStream getSupportFileStream(String path) throws IOException
 	{
 		path = RelativizedPath.normalizePath(path);
 		RelativizedPath relativized = RelativizedPath.relativizePath(path, this);
@@ -74,7 +121,8 @@ public class RelativeKMZFile extends KMZFile implements RelativeKMLDoc
 			return relativized.relativeTo.getSupportFileStream(path);
 		}
 
-		InputStream inputStream = super.getSupportFileStream(path);
+		InputStream inputStream =
+				indexedZipFile != null ? indexedZipFile.getInputStream(path) : super.getSupportFileStream(path);
 		if (inputStream != null)
 		{
 			return inputStream;
@@ -99,7 +147,7 @@ public class RelativeKMZFile extends KMZFile implements RelativeKMLDoc
 	}
 
 	@Override
-	public synchronized String getSupportFilePath(String path) throws IOException
+	public String getSupportFilePath(String path) throws IOException
 	{
 		path = RelativizedPath.normalizePath(path);
 		RelativizedPath relativized = RelativizedPath.relativizePath(path, this);
@@ -109,7 +157,7 @@ public class RelativeKMZFile extends KMZFile implements RelativeKMLDoc
 			return relativized.relativeTo.getSupportFilePath(path);
 		}
 
-		String superPath = super.getSupportFilePath(path);
+		String superPath = indexedZipFile != null ? extractEntry(path) : super.getSupportFilePath(path);
 		if (superPath != null)
 		{
 			return superPath;
@@ -132,4 +180,105 @@ public class RelativeKMZFile extends KMZFile implements RelativeKMLDoc
 
 		return null;
 	}
+
+	/**
+	 * Extract the given entry to the temporary directory, if it hasn't been
+	 * already. Different entries can be extracted concurrently.
+	 * 
+	 * @param name
+	 *            Entry to extract
+	 * @return Path to the extracted file, or null if the entry doesn't exist
+	 */
+	protected String extractEntry(final String name) throws IOException
+	{
+		IndexedZipFile.Entry entry = indexedZipFile.getEntry(name);
+		if (entry == null || entry.isDirectory())
+		{
+			return null;
+		}
+
+		FutureTask<File> task = extractedFiles.get(name);
+		if (task == null)
+		{
+			FutureTask<File> newTask = new FutureTask<File>(new Callable<File>()
+			{
+				@Override
+				public File call() throws Exception
+				{
+					return copyEntryToFile(name);
+				}
+			});
+			task = extractedFiles.putIfAbsent(name, newTask);
+			if (task == null)
+			{
+				task = newTask;
+				task.run();
+			}
+		}
+
+		try
+		{
+			File extracted = task.get();
+			return extracted != null ? extracted.getPath() : null;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted extracting " + name);
+		}
+		catch (ExecutionException e)
+		{
+			//allow the extraction to be retried
+			extractedFiles.remove(name, task);
+			if (e.getCause() instanceof IOException)
+			{
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Error extracting " + name + ": " + e.getCause());
+		}
+	}
+
+	protected File copyEntryToFile(String name) throws IOException
+	{
+		File tempDir = getTempDir();
+		if (tempDir == null)
+		{
+			return null;
+		}
+
+		File file = new File(tempDir, name);
+		WWIO.makeParentDirs(file.getPath());
+		file.deleteOnExit();
+
+		InputStream is = indexedZipFile.getInputStream(name);
+		OutputStream os = new FileOutputStream(file);
+		try
+		{
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = is.read(buffer)) >= 0)
+			{
+				os.write(buffer, 0, count);
+			}
+		}
+		finally
+		{
+			os.close();
+			is.close();
+		}
+		return file;
+	}
+
+	protected synchronized File getTempDir() throws IOException
+	{
+		if (tempDir == null)
+		{
+			tempDir = WWIO.makeTempDir();
+			if (tempDir == null)
+			{
+				Logging.logger().warning("Unable to create temporary directory for KMZ file " + file);
+			}
+		}
+		return tempDir;
+	}
 }
@@ -68,6 +68,7 @@ import au.gov.ga.worldwind.common.layers.delegate.IDelegatorLayer;
 import au.gov.ga.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.worldwind.common.layers.delegate.ITileRequesterDelegate;
 import au.gov.ga.worldwind.common.layers.tiled.image.URLTransformerBasicTiledImageLayer;
+import au.gov.ga.worldwind.common.layers.tiled.image.delegate.CacheFileLock;
 import au.gov.ga.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
 import au.gov.ga.worldwind.common.util.DDSUncompressor;
@@ -85,14 +86,16 @@ import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
  * It also uses the {@link FileLockSharer} to create/share the fileLock object.
  * This is so that multiple layers can point and write to the same data cache
  * name and synchronize with each other on the same fileLock object. (Note: this
- * has not yet been added to Bulk Download facility).
+ * has not yet been added to Bulk Download facility). Textures are read under
+ * the fileLock's per-tile read lock, so reads of different tiles don't block
+ * each other; downloaded tiles are written under the tile's write lock.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledImageLayer implements Bounded,
 		IDelegatorLayer<DelegatorMercatorTextureTile>
 {
-	protected final Object fileLock;
+	protected final CacheFileLock fileLock;
 	protected final URL context;
 	protected final MercatorImageDelegateKit delegateKit;
 	protected boolean extractZipEntry = false;
@@ -341,10 +344,15 @@ public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledIm
 
 		TextureData textureData;
 
-		synchronized (fileLock)
+		fileLock.lockRead(tile.getPath());
+		try
 		{
 			textureData = readTexture(tile, textureURL);
 		}
+		finally
+		{
+			fileLock.unlockRead(tile.getPath());
+		}
 
 		if (textureData == null)
 			return false;
@@ -453,7 +461,8 @@ public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledIm
 
 	/**
 	 * Extension to superclass' DownloadPostProcessor which returns this class'
-	 * fileLock instead of the superclass'.
+	 * fileLock instead of the superclass', and holds the tile's write lock
+	 * while the downloaded tile is saved.
 	 * 
 	 * @author Michael de Hoog
 	 */
@@ -472,6 +481,21 @@ public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledIm
 		{
 			return layer.fileLock;
 		}
+
+		@Override
+		protected ByteBuffer handleSuccessfulRetrieval()
+		{
+			String path = tile.getPath();
+			layer.fileLock.lockWrite(path);
+			try
+			{
+				return super.handleSuccessfulRetrieval();
+			}
+			finally
+			{
+				layer.fileLock.unlockWrite(path);
+			}
+		}
 	}
 
 	@Override
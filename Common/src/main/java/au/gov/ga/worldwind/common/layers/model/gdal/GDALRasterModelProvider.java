@@ -16,6 +16,7 @@ import java.util.List;
 
 import org.gdal.gdal.Band;
 import org.gdal.gdal.Dataset;
+import org.gdal.gdal.gdal;
 import org.gdal.gdalconst.gdalconstConstants;
 import org.gdal.osr.CoordinateTransformation;
 
@@ -33,12 +34,20 @@ import au.gov.ga.worldwind.common.util.Validate;
 /**
  * A {@link ModelProvider} that reads a band from a GDAL-supported raster file
  * and treats band values as depth/elevation.
+ * <p/>
+ * Rasters larger than a single tile are loaded as a {@link TiledRasterModelShape}.
+ * Tiles are read in windows aligned to the raster's blocks (using the raster's
+ * overviews for coarser tiles, where available), and are loaded and released
+ * as the view changes.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  */
 public class GDALRasterModelProvider extends AbstractDataProvider<ModelLayer> implements ModelProvider
 {
 	private static final int COLOR_BUFFER_ELEMENT_SIZE = 4;
+	private static final int DEFAULT_TILE_SIZE = 256;
+	private static final int MIN_TILE_SIZE = 64;
+	private static final int MAX_TILE_SIZE = 1024;
 
 	private Bounds bounds = null;
 	private boolean followTerrain = false;
@@ -83,7 +92,7 @@ public class GDALRasterModelProvider extends AbstractDataProvider<ModelLayer> im
 
 		// TODO: Add zip support
 
-		Dataset gdalDataset;
+		final Dataset gdalDataset;
 		try
 		{
 			gdalDataset = GDALUtils.open(file);
@@ -94,54 +103,158 @@ public class GDALRasterModelProvider extends AbstractDataProvider<ModelLayer> im
 			return false;
 		}
 
-		List<Position> positions = new ArrayList<Position>();
-		float[][] values = new float[gdalDataset.getRasterXSize()][gdalDataset.getRasterYSize()];
-		float[] minmax = new float[] { Float.MAX_VALUE, -Float.MAX_VALUE };
+		RasterModelTile root =
+				RasterModelTile.createRoot(gdalDataset.GetRasterXSize(), gdalDataset.GetRasterYSize(),
+						getTileSize(gdalDataset));
 
-		readValuesFromDataset(gdalDataset, positions, values, minmax);
+		FastShape shape;
+		if (root.getStep() <= 1)
+		{
+			//raster fits in a single tile, so load it as a single mesh
+			shape = createTileMesh(gdalDataset, root, null);
+		}
+		else
+		{
+			//color all tiles using the same elevation range, as each tile only contains part of the data
+			final float[] minmax = getElevationRange(gdalDataset);
+			FastShape rootMesh = createTileMesh(gdalDataset, root, minmax);
+			shape = new TiledRasterModelShape(root, rootMesh, new TiledRasterModelShape.TileMeshLoader()
+			{
+				@Override
+				public FastShape loadMesh(RasterModelTile tile)
+				{
+					return createTileMesh(gdalDataset, tile, minmax);
+				}
+			});
+			configureShape(shape);
+			shape.setColorBuffer(rootMesh.getColorBuffer());
+			shape.setColorBufferElementSize(COLOR_BUFFER_ELEMENT_SIZE);
+		}
+
+		layer.addShape(shape);
+
+		this.bounds = shape.getBounds();
+		this.followTerrain = shape.isFollowTerrain();
+
+		return true;
+	}
+
+	/**
+	 * Create a mesh for the provided tile.
+	 * 
+	 * @param minmax
+	 *            Elevation range to use when coloring the mesh; if null, the
+	 *            range of the values in the tile is used
+	 * @return Mesh for the tile
+	 */
+	private FastShape createTileMesh(Dataset gdalDataset, RasterModelTile tile, float[] minmax)
+	{
+		int columns = tile.getSampleColumns();
+		int rows = tile.getSampleRows();
+
+		List<Position> positions = new ArrayList<Position>(columns * rows);
+		float[][] values = new float[columns][rows];
+		float[] tileMinmax = new float[] { Float.MAX_VALUE, -Float.MAX_VALUE };
+
+		readValuesFromDataset(gdalDataset, tile, positions, values, tileMinmax);
 
-		BinaryTriangleTree btt =
-				new BinaryTriangleTree(positions, gdalDataset.GetRasterXSize(), gdalDataset.GetRasterYSize());
+		//coarser tiles have larger cells, so allow them a proportionally larger variance
+		BinaryTriangleTree btt = new BinaryTriangleTree(positions, columns, rows);
 		btt.setForceGLTriangles(true);
-		FastShape shape = btt.buildMesh(modelParameters.getMaxVariance());
+		FastShape shape = btt.buildMesh(modelParameters.getMaxVariance() * tile.getStep());
 
 		positions = shape.getPositions();
 
+		configureShape(shape);
+
+		shape.setColorBuffer(createColorBufferForDataset(positions, values, minmax != null ? minmax : tileMinmax,
+				gdalDataset));
+		shape.setColorBufferElementSize(COLOR_BUFFER_ELEMENT_SIZE);
+
+		return shape;
+	}
+
+	private void configureShape(FastShape shape)
+	{
 		shape.setForceSortedPrimitives(true);
 		shape.setLighted(true);
 		shape.setCalculateNormals(true);
 		shape.setTwoSidedLighting(true);
+	}
 
-		shape.setColorBuffer(createColorBufferForDataset(positions, values, minmax, gdalDataset));
-		shape.setColorBufferElementSize(4);
-
-		layer.addShape(shape);
+	/**
+	 * @return The number of cells along each side of a tile. If the model
+	 *         band is stored in square blocks of a suitable size, tiles are
+	 *         aligned with the blocks.
+	 */
+	private int getTileSize(Dataset gdalDataset)
+	{
+		Band band = getModelBand(gdalDataset);
+		int blockX = band.GetBlockXSize();
+		int blockY = band.GetBlockYSize();
+		if (blockX == blockY && blockX >= MIN_TILE_SIZE && blockX <= MAX_TILE_SIZE && (blockX & (blockX - 1)) == 0)
+		{
+			return blockX;
+		}
+		return DEFAULT_TILE_SIZE;
+	}
 
-		this.bounds = shape.getBounds();
-		this.followTerrain = shape.isFollowTerrain();
+	/**
+	 * @return The (approximate) elevation range of the model band
+	 */
+	private float[] getElevationRange(Dataset gdalDataset)
+	{
+		Band band = getModelBand(gdalDataset);
+		double[] range = new double[2];
+		band.ComputeRasterMinMax(range, 1);
 
-		return true;
+		double elevationOffset = getOffset(band);
+		double elevationScale = getScale(band);
+		float min = (float) toElevation(elevationOffset, elevationScale, range[0]);
+		float max = (float) toElevation(elevationOffset, elevationScale, range[1]);
+		return new float[] { Math.min(min, max), Math.max(min, max) };
 	}
 
 	/**
-	 * Reads the values from the provided dataset into:
+	 * Reads the sampled values within the provided tile from the provided
+	 * dataset into:
 	 * <ul>
 	 * <li>The provided positions list <code>(lat,lon,elevation)</code>
 	 * <li>The provided values array
-	 * <code>values[x,y] = elevation | NaN (nodata)</code>
+	 * <code>values[u,v] = elevation | NaN (nodata)</code>
 	 * </ul>
+	 * The tile is read one row at a time, from the coarsest overview of the
+	 * band that contains every sampled pixel.
 	 */
-	private void readValuesFromDataset(Dataset gdalDataset, List<Position> positions, float[][] values, float[] minmax)
+	private void readValuesFromDataset(Dataset gdalDataset, RasterModelTile tile, List<Position> positions,
+			float[][] values, float[] minmax)
 	{
 		Band band = getModelBand(gdalDataset);
 
-		int columns = band.getXSize();
-		int rows = band.getYSize();
+		int columns = tile.getSampleColumns();
+		int rows = tile.getSampleRows();
 
-		ByteBuffer buffer = band.ReadRaster_Direct(0, 0, columns, rows, band.getDataType());
-		buffer.order(ByteOrder.nativeOrder()); // @see Band.ReadRaster_Direct
-		buffer.rewind();
+		//find the coarsest overview whose pixels line up with the tile's samples
+		Band source = band;
+		int factor = 1;
+		for (int i = 0; i < band.GetOverviewCount(); i++)
+		{
+			Band overview = band.GetOverview(i);
+			int overviewFactor = Math.round(band.getXSize() / (float) overview.getXSize());
+			if (overviewFactor > factor && tile.getStep() % overviewFactor == 0)
+			{
+				source = overview;
+				factor = overviewFactor;
+			}
+		}
 
+		int dataType = band.getDataType();
+		int dataSize = gdal.GetDataTypeSize(dataType) / 8;
+		int windowX = tile.getX() / factor;
+		int windowWidth = Math.min((tile.getX() + tile.getWidth() - 1) / factor, source.getXSize() - 1) - windowX + 1;
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(windowWidth * dataSize);
+		buffer.order(ByteOrder.nativeOrder()); // @see Band.ReadRaster_Direct
 
 		double elevationOffset = getOffset(band);
 		double elevationScale = getScale(band);
@@ -151,12 +264,18 @@ public class GDALRasterModelProvider extends AbstractDataProvider<ModelLayer> im
 		double[] geoTransform = gdalDataset.GetGeoTransform();
 		CoordinateTransformation coordinateTransformation = getCoordinateTransformation(gdalDataset);
 
-		int dataType = band.getDataType();
-
-		for (int y = 0; y < rows; y++)
+		for (int v = 0; v < rows; v++)
 		{
-			for (int x = 0; x < columns; x++)
+			int y = tile.getSampleY(v);
+			buffer.clear();
+			source.ReadRaster_Direct(windowX, Math.min(y / factor, source.getYSize() - 1), windowWidth, 1,
+					windowWidth, 1, dataType, buffer);
+
+			for (int u = 0; u < columns; u++)
 			{
+				int x = tile.getSampleX(u);
+				buffer.position((Math.min(x / factor, source.getXSize() - 1) - windowX) * dataSize);
+
 				double datasetValue = getValue(buffer, dataType);
 				double elevation = toElevation(elevationOffset, elevationScale, datasetValue);
 
@@ -174,20 +293,20 @@ public class GDALRasterModelProvider extends AbstractDataProvider<ModelLayer> im
 					{
 						position =
 								new PositionWithCoord(projectedCoordinates.latitude, projectedCoordinates.longitude,
-										positions.get(positions.size() - 1).elevation, x, y);
+										positions.get(positions.size() - 1).elevation, u, v);
 					}
 					else
 					{
-						position = new PositionWithCoord(projectedCoordinates, x, y);
+						position = new PositionWithCoord(projectedCoordinates, u, v);
 					}
-					values[x][y] = Float.NaN;
+					values[u][v] = Float.NaN;
 				}
 				else
 				{
-					position = new PositionWithCoord(projectedCoordinates, x, y);
+					position = new PositionWithCoord(projectedCoordinates, u, v);
 					minmax[0] = Math.min((float) position.elevation, minmax[0]);
 					minmax[1] = Math.max((float) position.elevation, minmax[1]);
-					values[x][y] = (float) position.elevation;
+					values[u][v] = (float) position.elevation;
 				}
 
 				positions.add(position);
@@ -510,8 +629,8 @@ public class GDALRasterModelProvider extends AbstractDataProvider<ModelLayer> im
 	}
 
 	/**
-	 * A utility class that stores the pixel coordinates of a raster cell
-	 * alongside it's real-world position
+	 * A utility class that stores the sample coordinates of a raster cell
+	 * (within the tile being read) alongside it's real-world position
 	 */
 	protected static class PositionWithCoord extends Position
 	{
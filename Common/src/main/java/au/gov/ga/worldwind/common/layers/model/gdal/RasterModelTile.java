@@ -0,0 +1,271 @@
+package au.gov.ga.worldwind.common.layers.model.gdal;
+
+import gov.nasa.worldwind.geom.Extent;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.globes.Globe;
+import au.gov.ga.worldwind.common.layers.Bounds;
+import au.gov.ga.worldwind.common.render.fastshape.FastShape;
+
+/**
+ * A tile in the hierarchy of mesh tiles used by the
+ * {@link TiledRasterModelShape}. Each tile covers a window of raster pixels,
+ * and samples every <code>step</code>th pixel within that window. The root
+ * tile covers the whole raster at the coarsest step, and each child tile
+ * covers a quarter of its parent's window at half of its parent's step. Tiles
+ * with a step of 1 contain every pixel within their window.
+ * <p/>
+ * Adjacent tiles share their edge pixels, so that the tile meshes join up.
+ */
+public class RasterModelTile
+{
+	private final int level;
+	private final int x;
+	private final int y;
+	private final int width;
+	private final int height;
+	private final int step;
+	private final int tileSize;
+
+	private RasterModelTile[] children;
+	private volatile FastShape mesh;
+	private volatile boolean loading = false;
+	private volatile long lastUsed;
+
+	private Extent extent;
+	private Globe extentGlobe;
+	private double extentVerticalExaggeration;
+
+	/**
+	 * Create the root tile for a raster of the given size.
+	 * 
+	 * @param rasterWidth
+	 *            Width of the raster in pixels
+	 * @param rasterHeight
+	 *            Height of the raster in pixels
+	 * @param tileSize
+	 *            Maximum number of cells along each side of a tile (should be
+	 *            a power of 2)
+	 */
+	public static RasterModelTile createRoot(int rasterWidth, int rasterHeight, int tileSize)
+	{
+		int step = 1;
+		while ((long) tileSize * step < Math.max(rasterWidth, rasterHeight) - 1)
+		{
+			step *= 2;
+		}
+		return new RasterModelTile(0, 0, 0, rasterWidth, rasterHeight, step, tileSize);
+	}
+
+	public RasterModelTile(int level, int x, int y, int width, int height, int step, int tileSize)
+	{
+		this.level = level;
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		this.step = step;
+		this.tileSize = tileSize;
+	}
+
+	public int getLevel()
+	{
+		return level;
+	}
+
+	/**
+	 * @return The x coordinate of the first pixel in this tile's window
+	 */
+	public int getX()
+	{
+		return x;
+	}
+
+	/**
+	 * @return The y coordinate of the first pixel in this tile's window
+	 */
+	public int getY()
+	{
+		return y;
+	}
+
+	/**
+	 * @return The width of this tile's window in pixels
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 * @return The height of this tile's window in pixels
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * @return The distance between sampled pixels in this tile
+	 */
+	public int getStep()
+	{
+		return step;
+	}
+
+	/**
+	 * @return The number of columns of samples in this tile
+	 */
+	public int getSampleColumns()
+	{
+		return sampleCount(width);
+	}
+
+	/**
+	 * @return The number of rows of samples in this tile
+	 */
+	public int getSampleRows()
+	{
+		return sampleCount(height);
+	}
+
+	private int sampleCount(int pixels)
+	{
+		return (pixels - 1 + step - 1) / step + 1;
+	}
+
+	/**
+	 * @return The raster x coordinate of the given sample column
+	 */
+	public int getSampleX(int column)
+	{
+		return Math.min(x + column * step, x + width - 1);
+	}
+
+	/**
+	 * @return The raster y coordinate of the given sample row
+	 */
+	public int getSampleY(int row)
+	{
+		return Math.min(y + row * step, y + height - 1);
+	}
+
+	/**
+	 * @return The children of this tile (created on first call), or null if
+	 *         this tile contains every pixel within its window
+	 */
+	public synchronized RasterModelTile[] getChildren()
+	{
+		if (step <= 1)
+		{
+			return null;
+		}
+		if (children == null)
+		{
+			//each child covers half of this tile's cells in each direction
+			int childStep = step / 2;
+			int childCells = tileSize * childStep;
+
+			int count = 0;
+			RasterModelTile[] tiles = new RasterModelTile[4];
+			for (int cy = y; cy < y + height - 1 && count < 4; cy += childCells)
+			{
+				for (int cx = x; cx < x + width - 1 && count < 4; cx += childCells)
+				{
+					int childWidth = Math.min(childCells, x + width - 1 - cx) + 1;
+					int childHeight = Math.min(childCells, y + height - 1 - cy) + 1;
+					tiles[count++] =
+							new RasterModelTile(level + 1, cx, cy, childWidth, childHeight, childStep, tileSize);
+				}
+			}
+			children = new RasterModelTile[count];
+			System.arraycopy(tiles, 0, children, 0, count);
+		}
+		return children;
+	}
+
+	/**
+	 * @return The children of this tile, or null if they have not been created
+	 */
+	public synchronized RasterModelTile[] getChildrenIfCreated()
+	{
+		return children;
+	}
+
+	/**
+	 * Release this tile's children. Should only be called when none of them
+	 * have a mesh loaded.
+	 */
+	public synchronized void releaseChildren()
+	{
+		children = null;
+	}
+
+	public FastShape getMesh()
+	{
+		return mesh;
+	}
+
+	public void setMesh(FastShape mesh)
+	{
+		this.mesh = mesh;
+		synchronized (this)
+		{
+			extent = null;
+		}
+	}
+
+	public boolean isLoading()
+	{
+		return loading;
+	}
+
+	public void setLoading(boolean loading)
+	{
+		this.loading = loading;
+	}
+
+	/**
+	 * @return The last time (in milliseconds) this tile was required for
+	 *         rendering
+	 */
+	public long getLastUsed()
+	{
+		return lastUsed;
+	}
+
+	public void setLastUsed(long lastUsed)
+	{
+		this.lastUsed = lastUsed;
+	}
+
+	/**
+	 * @return The extent of this tile's mesh on the given globe, or null if
+	 *         the mesh is not loaded
+	 */
+	public synchronized Extent getExtent(Globe globe, double verticalExaggeration)
+	{
+		FastShape mesh = this.mesh;
+		if (mesh == null || mesh.getBounds() == null)
+		{
+			return null;
+		}
+		if (extent == null || extentGlobe != globe || extentVerticalExaggeration != verticalExaggeration)
+		{
+			Bounds bounds = mesh.getBounds();
+			Sector sector = bounds.toSector();
+			extent =
+					Sector.computeBoundingBox(globe, verticalExaggeration, sector, bounds.minimum.elevation,
+							bounds.maximum.elevation);
+			extentGlobe = globe;
+			extentVerticalExaggeration = verticalExaggeration;
+		}
+		return extent;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Tile(level=" + level + ", x=" + x + ", y=" + y + ", width=" + width + ", height=" + height
+				+ ", step=" + step + ")";
+	}
+}
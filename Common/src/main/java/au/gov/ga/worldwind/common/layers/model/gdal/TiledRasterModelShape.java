@@ -0,0 +1,284 @@
+package au.gov.ga.worldwind.common.layers.model.gdal;
+
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.geom.Extent;
+import gov.nasa.worldwind.render.DrawContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import au.gov.ga.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * A {@link FastShape} that renders a large raster model as a hierarchy of
+ * {@link RasterModelTile}s.
+ * <p/>
+ * The geometry of this shape itself is the mesh of the root tile, which
+ * covers the whole raster at a coarse resolution. When rendered, tiles are
+ * split into their children while the tile's cells are larger than
+ * {@link #getDetailFactor()} pixels on screen. Child tile meshes are loaded in
+ * a background thread by a {@link TileMeshLoader}; until all children of a
+ * tile are loaded, the tile itself is rendered instead. Tiles that have not
+ * been rendered for {@link #getEvictionDelay()} milliseconds are released.
+ * <p/>
+ * This means that only the tiles required for the current view are held in
+ * memory.
+ */
+public class TiledRasterModelShape extends FastShape
+{
+	private final RasterModelTile root;
+	private final TileMeshLoader loader;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory(
+			"Raster model tile loader"));
+
+	private double detailFactor = 2;
+	private long evictionDelay = 5000;
+
+	/**
+	 * Create a new tiled shape.
+	 * 
+	 * @param root
+	 *            Root tile
+	 * @param rootMesh
+	 *            Mesh for the root tile
+	 * @param loader
+	 *            Loader used for loading the meshes for child tiles
+	 */
+	public TiledRasterModelShape(RasterModelTile root, FastShape rootMesh, TileMeshLoader loader)
+	{
+		super(rootMesh.getPositions(), rootMesh.getIndices(), rootMesh.getMode());
+		this.root = root;
+		this.loader = loader;
+		root.setMesh(this);
+	}
+
+	public RasterModelTile getRoot()
+	{
+		return root;
+	}
+
+	/**
+	 * @return The maximum size of a tile cell on screen (in pixels) before the
+	 *         tile is split into its children
+	 */
+	public double getDetailFactor()
+	{
+		return detailFactor;
+	}
+
+	public void setDetailFactor(double detailFactor)
+	{
+		this.detailFactor = detailFactor;
+	}
+
+	/**
+	 * @return The time (in milliseconds) after which unused tiles are released
+	 */
+	public long getEvictionDelay()
+	{
+		return evictionDelay;
+	}
+
+	public void setEvictionDelay(long evictionDelay)
+	{
+		this.evictionDelay = evictionDelay;
+	}
+
+	@Override
+	public void render(DrawContext dc)
+	{
+		if (!isEnabled())
+		{
+			return;
+		}
+
+		long time = System.currentTimeMillis();
+		List<RasterModelTile> tiles = new ArrayList<RasterModelTile>();
+		selectTiles(dc, root, time, tiles);
+
+		for (RasterModelTile tile : tiles)
+		{
+			FastShape mesh = tile.getMesh();
+			if (mesh == this)
+			{
+				super.render(dc);
+			}
+			else if (mesh != null)
+			{
+				copyRenderProperties(mesh);
+				mesh.render(dc);
+			}
+		}
+
+		evictTiles(dc, root, time);
+	}
+
+	/**
+	 * Add the tiles that should be rendered for the current view to the
+	 * result list.
+	 */
+	protected void selectTiles(DrawContext dc, RasterModelTile tile, long time, List<RasterModelTile> result)
+	{
+		tile.setLastUsed(time);
+
+		Extent extent = tile.getExtent(dc.getGlobe(), dc.getVerticalExaggeration());
+		if (extent != null && tile != root && !dc.getView().getFrustumInModelCoordinates().intersects(extent))
+		{
+			return;
+		}
+
+		if (extent != null && needsSplit(dc, tile, extent))
+		{
+			RasterModelTile[] children = tile.getChildren();
+			boolean loaded = true;
+			for (RasterModelTile child : children)
+			{
+				if (child.getMesh() == null)
+				{
+					child.setLastUsed(time);
+					requestMesh(dc, child);
+					loaded = false;
+				}
+			}
+			if (loaded)
+			{
+				for (RasterModelTile child : children)
+				{
+					selectTiles(dc, child, time, result);
+				}
+				return;
+			}
+		}
+
+		result.add(tile);
+	}
+
+	/**
+	 * @return Should the given tile be replaced by its children for the
+	 *         current view?
+	 */
+	protected boolean needsSplit(DrawContext dc, RasterModelTile tile, Extent extent)
+	{
+		if (tile.getStep() <= 1)
+		{
+			return false;
+		}
+
+		double distance = Math.max(0, dc.getView().getEyePoint().distanceTo3(extent.getCenter()) - extent.getRadius());
+		double pixelSize = dc.getView().computePixelSizeAtDistance(distance);
+		double cellSize = extent.getDiameter() / Math.max(tile.getSampleColumns(), tile.getSampleRows());
+		return cellSize > detailFactor * pixelSize;
+	}
+
+	protected void requestMesh(final DrawContext dc, final RasterModelTile tile)
+	{
+		if (tile.isLoading())
+		{
+			return;
+		}
+		tile.setLoading(true);
+
+		executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					//skip tiles that are no longer required (eg the view has moved on since the request)
+					if (System.currentTimeMillis() - tile.getLastUsed() > evictionDelay)
+					{
+						return;
+					}
+
+					FastShape mesh = loader.loadMesh(tile);
+					if (mesh != null)
+					{
+						tile.setLastUsed(System.currentTimeMillis());
+						tile.setMesh(mesh);
+						if (lastLayer != null)
+						{
+							lastLayer.firePropertyChange(AVKey.LAYER, null, lastLayer);
+						}
+					}
+				}
+				finally
+				{
+					tile.setLoading(false);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Release the meshes of descendants of the given tile that have not been
+	 * used recently.
+	 * 
+	 * @return True if the given tile or any of its descendants has a mesh
+	 */
+	protected boolean evictTiles(DrawContext dc, RasterModelTile tile, long time)
+	{
+		boolean descendantsLoaded = false;
+		RasterModelTile[] children = tile.getChildrenIfCreated();
+		if (children != null)
+		{
+			for (RasterModelTile child : children)
+			{
+				descendantsLoaded |= evictTiles(dc, child, time);
+			}
+			if (!descendantsLoaded)
+			{
+				tile.releaseChildren();
+			}
+		}
+
+		FastShape mesh = tile.getMesh();
+		if (tile != root && mesh != null && time - tile.getLastUsed() > evictionDelay)
+		{
+			tile.setMesh(null);
+			mesh.deleteBuffers(dc);
+			mesh = null;
+		}
+		return descendantsLoaded || mesh != null || tile.isLoading();
+	}
+
+	/**
+	 * Copy the render properties of this shape (which may have been changed
+	 * by the layer) to the given tile mesh.
+	 */
+	protected void copyRenderProperties(FastShape mesh)
+	{
+		mesh.setColor(getColor());
+		mesh.setColorBufferEnabled(isColorBufferEnabled());
+		mesh.setOpacity(getOpacity());
+		mesh.setWireframe(isWireframe());
+		mesh.setLighted(isLighted());
+		mesh.setTextured(isTextured());
+		mesh.setCalculateNormals(isCalculateNormals());
+		mesh.setReverseNormals(isReverseNormals());
+		mesh.setTwoSidedLighting(isTwoSidedLighting());
+		mesh.setForceSortedPrimitives(isForceSortedPrimitives());
+		mesh.setBackfaceCulling(isBackfaceCulling());
+		mesh.setFogEnabled(isFogEnabled());
+		mesh.setFollowTerrain(isFollowTerrain());
+		mesh.setElevation(getElevation());
+		mesh.setLineWidth(getLineWidth());
+		mesh.setUseOrderedRendering(isUseOrderedRendering());
+	}
+
+	/**
+	 * Loads the mesh for a {@link RasterModelTile}. Always called from the
+	 * same (non-render) thread.
+	 */
+	public interface TileMeshLoader
+	{
+		/**
+		 * @return The mesh for the given tile, or null if it could not be
+		 *         loaded
+		 */
+		FastShape loadMesh(RasterModelTile tile);
+	}
+}
@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.point;
+
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.render.DrawContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Spatial index for the items in a {@link PointLayer}. Items are added with
+ * their position while the layer is loading, and the index is built when
+ * loading is complete (see {@link PointLayer#loadComplete()}).
+ * <p/>
+ * The index is a quadtree over latitude/longitude. Each node stores the range
+ * of items it contains and a representative item (the item closest to the
+ * mean position of the node's items). When queried, only nodes intersecting
+ * the visible sector are visited, and nodes smaller than the cluster size are
+ * replaced by their representative item. This keeps the number of items passed
+ * to the renderer roughly proportional to the number of screen pixels, rather
+ * than the size of the data set.
+ */
+public class PointIndex<T>
+{
+	/**
+	 * Default size (in pixels) of the screen space cells that points are
+	 * clustered into
+	 */
+	public static final int DEFAULT_CLUSTER_PIXELS = 4;
+
+	private static final int LEAF_SIZE = 32;
+	private static final int MAX_DEPTH = 24;
+
+	private final List<LatLon> positions = new ArrayList<LatLon>();
+	private final List<T> items = new ArrayList<T>();
+	private volatile Tree<T> tree;
+	private int clusterPixels = DEFAULT_CLUSTER_PIXELS;
+
+	private Sector lastSector;
+	private double lastCellSize;
+	private List<T> lastVisible;
+
+	/**
+	 * Add an item to this index. The item won't be returned by queries until
+	 * {@link #build()} is called.
+	 * 
+	 * @param position
+	 *            Position of the item
+	 * @param item
+	 *            Item to add
+	 */
+	public synchronized void add(LatLon position, T item)
+	{
+		positions.add(position);
+		items.add(item);
+	}
+
+	/**
+	 * Build the index from all the items added so far.
+	 */
+	public synchronized void build()
+	{
+		tree = new Tree<T>(positions, items);
+		lastSector = null;
+		lastVisible = null;
+	}
+
+	/**
+	 * @return Has this index been built?
+	 */
+	public boolean isBuilt()
+	{
+		return tree != null;
+	}
+
+	/**
+	 * @return The number of items in the built index
+	 */
+	public int size()
+	{
+		Tree<T> tree = this.tree;
+		return tree == null ? 0 : tree.items.length;
+	}
+
+	public int getClusterPixels()
+	{
+		return clusterPixels;
+	}
+
+	/**
+	 * Set the size (in pixels) of the screen space cells that points are
+	 * clustered into. Set to 0 to disable clustering.
+	 */
+	public void setClusterPixels(int clusterPixels)
+	{
+		this.clusterPixels = clusterPixels;
+	}
+
+	/**
+	 * Find the items visible in the current view of the provided
+	 * {@link DrawContext}, clustered using the cluster pixel size. The result
+	 * of the previous call is reused if the view hasn't changed.
+	 * 
+	 * @param dc
+	 *            Draw context
+	 * @return List of visible items
+	 */
+	public List<T> getVisible(DrawContext dc)
+	{
+		Sector sector = dc.getVisibleSector();
+		if (sector == null)
+		{
+			sector = Sector.FULL_SPHERE;
+		}
+		double cellSize = computeCellSize(dc);
+
+		if (lastVisible == null || !sector.equals(lastSector) || cellSize != lastCellSize)
+		{
+			List<T> visible = new ArrayList<T>();
+			query(sector, cellSize, visible);
+			lastSector = sector;
+			lastCellSize = cellSize;
+			lastVisible = Collections.unmodifiableList(visible);
+		}
+		return lastVisible;
+	}
+
+	/**
+	 * Calculate the size (in degrees) of the cluster cells, using the pixel
+	 * size at the eye's distance from the surface.
+	 */
+	protected double computeCellSize(DrawContext dc)
+	{
+		if (clusterPixels <= 0)
+		{
+			return 0;
+		}
+
+		View view = dc.getView();
+		double distance = Math.max(1d, Math.abs(view.getEyePosition().getElevation()));
+		double pixelSize = view.computePixelSizeAtDistance(distance);
+		return Math.toDegrees(clusterPixels * pixelSize / dc.getGlobe().getRadius());
+	}
+
+	/**
+	 * Add the items within the sector to the result list. Any nodes that are
+	 * smaller than the cell size in both latitude and longitude add only
+	 * their representative item.
+	 * 
+	 * @param sector
+	 *            Sector to search within
+	 * @param cellSize
+	 *            Cluster cell size, in degrees
+	 * @param result
+	 *            List to add the items to
+	 */
+	public void query(Sector sector, double cellSize, List<T> result)
+	{
+		Tree<T> tree = this.tree;
+		if (tree == null || tree.root == null)
+		{
+			return;
+		}
+		tree.query(tree.root, sector.getMinLatitude().degrees, sector.getMaxLatitude().degrees,
+				sector.getMinLongitude().degrees, sector.getMaxLongitude().degrees, cellSize, result);
+	}
+
+	/**
+	 * Immutable built quadtree. Items are stored in arrays sorted so that each
+	 * node's items are contiguous.
+	 */
+	private static class Tree<T>
+	{
+		private final double[] lats;
+		private final double[] lons;
+		private final Object[] items;
+		private final Node root;
+
+		public Tree(List<LatLon> positions, List<T> items)
+		{
+			int count = positions.size();
+			this.lats = new double[count];
+			this.lons = new double[count];
+			this.items = items.toArray();
+			for (int i = 0; i < count; i++)
+			{
+				LatLon position = positions.get(i);
+				lats[i] = position.getLatitude().degrees;
+				lons[i] = position.getLongitude().degrees;
+			}
+			this.root = count > 0 ? build(0, count, 0) : null;
+		}
+
+		private Node build(int start, int end, int depth)
+		{
+			Node node = new Node(start, end);
+			double sumLat = 0, sumLon = 0;
+			for (int i = start; i < end; i++)
+			{
+				node.minLat = Math.min(node.minLat, lats[i]);
+				node.maxLat = Math.max(node.maxLat, lats[i]);
+				node.minLon = Math.min(node.minLon, lons[i]);
+				node.maxLon = Math.max(node.maxLon, lons[i]);
+				sumLat += lats[i];
+				sumLon += lons[i];
+			}
+
+			//representative is the item closest to the mean position
+			double meanLat = sumLat / (end - start), meanLon = sumLon / (end - start);
+			double closest = Double.MAX_VALUE;
+			for (int i = start; i < end; i++)
+			{
+				double dLat = lats[i] - meanLat, dLon = lons[i] - meanLon;
+				double distance = dLat * dLat + dLon * dLon;
+				if (distance < closest)
+				{
+					closest = distance;
+					node.representative = i;
+				}
+			}
+
+			boolean degenerate = node.minLat == node.maxLat && node.minLon == node.maxLon;
+			if (end - start <= LEAF_SIZE || depth >= MAX_DEPTH || degenerate)
+			{
+				return node;
+			}
+
+			//split into quadrants around the center of the node's bounds
+			double midLat = (node.minLat + node.maxLat) * 0.5;
+			double midLon = (node.minLon + node.maxLon) * 0.5;
+			int splitLat = partition(start, end, lats, midLat);
+			int splitLon0 = partition(start, splitLat, lons, midLon);
+			int splitLon1 = partition(splitLat, end, lons, midLon);
+			int[] bounds = new int[] { start, splitLon0, splitLat, splitLon1, end };
+
+			List<Node> children = new ArrayList<Node>(4);
+			for (int i = 0; i < 4; i++)
+			{
+				if (bounds[i] < bounds[i + 1])
+				{
+					children.add(build(bounds[i], bounds[i + 1], depth + 1));
+				}
+			}
+			node.children = children.toArray(new Node[children.size()]);
+			return node;
+		}
+
+		/**
+		 * Partition the range so that items with values less than the split
+		 * value come first.
+		 * 
+		 * @return Index of the first item with a value >= split
+		 */
+		private int partition(int start, int end, double[] values, double split)
+		{
+			int i = start, j = end - 1;
+			while (i <= j)
+			{
+				if (values[i] < split)
+				{
+					i++;
+				}
+				else
+				{
+					swap(i, j--);
+				}
+			}
+			return i;
+		}
+
+		private void swap(int i, int j)
+		{
+			double lat = lats[i];
+			lats[i] = lats[j];
+			lats[j] = lat;
+			double lon = lons[i];
+			lons[i] = lons[j];
+			lons[j] = lon;
+			Object item = items[i];
+			items[i] = items[j];
+			items[j] = item;
+		}
+
+		@SuppressWarnings("unchecked")
+		private void query(Node node, double minLat, double maxLat, double minLon, double maxLon, double cellSize,
+				List<T> result)
+		{
+			if (node.maxLat < minLat || node.minLat > maxLat || node.maxLon < minLon || node.minLon > maxLon)
+			{
+				return;
+			}
+
+			if (cellSize > 0 && node.maxLat - node.minLat <= cellSize && node.maxLon - node.minLon <= cellSize)
+			{
+				result.add((T) items[node.representative]);
+				return;
+			}
+
+			if (node.children == null)
+			{
+				for (int i = node.start; i < node.end; i++)
+				{
+					if (minLat <= lats[i] && lats[i] <= maxLat && minLon <= lons[i] && lons[i] <= maxLon)
+					{
+						result.add((T) items[i]);
+					}
+				}
+				return;
+			}
+
+			for (Node child : node.children)
+			{
+				query(child, minLat, maxLat, minLon, maxLon, cellSize, result);
+			}
+		}
+	}
+
+	/**
+	 * Quadtree node.
+	 */
+	private static class Node
+	{
+		public final int start;
+		public final int end;
+		public int representative;
+		public double minLat = Double.MAX_VALUE;
+		public double maxLat = -Double.MAX_VALUE;
+		public double minLon = Double.MAX_VALUE;
+		public double maxLon = -Double.MAX_VALUE;
+		public Node[] children;
+
+		public Node(int start, int end)
+		{
+			this.start = start;
+			this.end = end;
+		}
+	}
+}
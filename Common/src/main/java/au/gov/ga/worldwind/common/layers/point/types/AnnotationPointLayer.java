@@ -22,6 +22,7 @@ import gov.nasa.worldwind.event.SelectListener;
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.layers.AnnotationLayer;
 import gov.nasa.worldwind.pick.PickedObject;
+import gov.nasa.worldwind.render.Annotation;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.render.GlobeAnnotation;
 
@@ -30,6 +31,7 @@ import java.net.URL;
 
 import au.gov.ga.worldwind.common.WorldWindowRegistry;
 import au.gov.ga.worldwind.common.layers.Bounds;
+import au.gov.ga.worldwind.common.layers.point.PointIndex;
 import au.gov.ga.worldwind.common.layers.point.PointLayer;
 import au.gov.ga.worldwind.common.layers.point.PointLayerHelper;
 import au.gov.ga.worldwind.common.layers.point.annotation.EnhancedAnnotation;
@@ -46,6 +48,7 @@ import au.gov.ga.worldwind.common.util.DefaultLauncher;
 public class AnnotationPointLayer extends AnnotationLayer implements PointLayer, SelectListener
 {
 	private final PointLayerHelper helper;
+	private final PointIndex<Annotation> annotationIndex = new PointIndex<Annotation>();
 	private GlobeAnnotation pickedAnnotation;
 
 	public AnnotationPointLayer(PointLayerHelper helper)
@@ -60,6 +63,10 @@ public class AnnotationPointLayer extends AnnotationLayer implements PointLayer,
 		if (isEnabled())
 		{
 			helper.requestPoints(this);
+			if (annotationIndex.isBuilt())
+			{
+				setAnnotations(annotationIndex.getVisible(dc));
+			}
 		}
 		super.render(dc);
 	}
@@ -86,12 +93,13 @@ public class AnnotationPointLayer extends AnnotationLayer implements PointLayer,
 		properties.style.setPropertiesFromAttributes(helper.getContext(), attributeValues, attributes, annotation);
 		annotation.setAttributes(attributes);
 
-		this.addAnnotation(annotation);
+		annotationIndex.add(position, annotation);
 	}
 
 	@Override
 	public void loadComplete()
 	{
+		annotationIndex.build();
 	}
 
 	@Override
@@ -31,6 +31,7 @@ import java.net.URL;
 
 import au.gov.ga.worldwind.common.WorldWindowRegistry;
 import au.gov.ga.worldwind.common.layers.Bounds;
+import au.gov.ga.worldwind.common.layers.point.PointIndex;
 import au.gov.ga.worldwind.common.layers.point.PointLayer;
 import au.gov.ga.worldwind.common.layers.point.PointLayerHelper;
 import au.gov.ga.worldwind.common.layers.styled.StyleAndText;
@@ -45,6 +46,7 @@ import au.gov.ga.worldwind.common.util.DefaultLauncher;
 public class IconPointLayer extends IconLayer implements PointLayer, SelectListener
 {
 	private final PointLayerHelper helper;
+	private final PointIndex<WWIcon> iconIndex = new PointIndex<WWIcon>();
 	private WWIcon pickedIcon;
 
 	public IconPointLayer(PointLayerHelper helper)
@@ -59,6 +61,10 @@ public class IconPointLayer extends IconLayer implements PointLayer, SelectListe
 		if (isEnabled())
 		{
 			helper.requestPoints(this);
+			if (iconIndex.isBuilt())
+			{
+				setIcons(iconIndex.getVisible(dc));
+			}
 		}
 		super.render(dc);
 	}
@@ -84,12 +90,13 @@ public class IconPointLayer extends IconLayer implements PointLayer, SelectListe
 		icon.setToolTipText(properties.text);
 		icon.setValue(AVKey.URL, properties.link);
 		properties.style.setPropertiesFromAttributes(helper.getContext(), attributeValues, icon);
-		this.addIcon(icon);
+		iconIndex.add(position, icon);
 	}
 
 	@Override
 	public void loadComplete()
 	{
+		iconIndex.build();
 	}
 
 	@Override
@@ -34,11 +34,10 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
 
 import au.gov.ga.worldwind.common.WorldWindowRegistry;
 import au.gov.ga.worldwind.common.layers.Bounds;
+import au.gov.ga.worldwind.common.layers.point.PointIndex;
 import au.gov.ga.worldwind.common.layers.point.PointLayer;
 import au.gov.ga.worldwind.common.layers.point.PointLayerHelper;
 import au.gov.ga.worldwind.common.layers.styled.StyleAndText;
@@ -54,7 +53,7 @@ public class MarkerPointLayer extends MarkerLayer implements PointLayer, SelectL
 {
 	private final PointLayerHelper helper;
 
-	private List<Marker> markers = new ArrayList<Marker>();
+	private final PointIndex<Marker> markerIndex = new PointIndex<Marker>();
 	private UrlMarker pickedMarker;
 	private Material highlightMaterial = new Material(Color.white);
 
@@ -86,6 +85,10 @@ public class MarkerPointLayer extends MarkerLayer implements PointLayer, SelectL
 		if (isEnabled())
 		{
 			helper.requestPoints(this);
+			if (markerIndex.isBuilt())
+			{
+				setMarkers(markerIndex.getVisible(dc));
+			}
 		}
 		this.tooltipAnnotation.render(dc);
 		super.render(dc);
@@ -113,7 +116,7 @@ public class MarkerPointLayer extends MarkerLayer implements PointLayer, SelectL
 		UrlMarker marker = new UrlMarker(position, attributes);
 		marker.setUrl(properties.link);
 		marker.setTooltipText(properties.text);
-		markers.add(marker);
+		markerIndex.add(position, marker);
 	}
 
 	/**
@@ -190,7 +193,7 @@ public class MarkerPointLayer extends MarkerLayer implements PointLayer, SelectL
 	@Override
 	public void loadComplete()
 	{
-		setMarkers(markers);
+		markerIndex.build();
 	}
 
 	@Override
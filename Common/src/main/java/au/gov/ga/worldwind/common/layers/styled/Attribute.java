@@ -35,6 +35,7 @@ public class Attribute
 	protected String name;
 	protected Map<String, String> switches = new HashMap<String, String>();
 	protected Map<String, String> regexes = new HashMap<String, String>();
+	protected Map<String, Pattern> patterns = new HashMap<String, Pattern>();
 	protected Map<Range, String> ranges = new HashMap<Range, String>();
 	protected StringWithPlaceholder textString;
 	protected StringWithPlaceholder linkString;
@@ -84,6 +85,7 @@ public class Attribute
 	public void addRegex(String regex, String style)
 	{
 		regexes.put(regex, style);
+		patterns.put(regex, Pattern.compile(regex));
 	}
 
 	/**
@@ -183,7 +185,7 @@ public class Attribute
 
 		for (Entry<String, String> regex : regexes.entrySet())
 		{
-			if (Pattern.matches(regex.getKey(), stringValue))
+			if (patterns.get(regex.getKey()).matcher(stringValue).matches())
 				return regex.getValue();
 		}
 
@@ -31,6 +31,7 @@ public class BasicStyleProvider implements StyleProvider
 {
 	protected List<Style> styles;
 	protected Map<String, Style> styleMap = new HashMap<String, Style>();
+	protected Map<Style, StyleAndText> styleOnlyMap = new HashMap<Style, StyleAndText>();
 	protected Style defaultStyle;
 	protected List<Attribute> attributes;
 
@@ -68,6 +69,14 @@ public class BasicStyleProvider implements StyleProvider
 		if (style == null)
 			style = defaultStyle;
 
+		if (text == null && link == null)
+		{
+			//StyleAndText is immutable, so share a single instance per style
+			StyleAndText styleOnly = styleOnlyMap.get(style);
+			if (styleOnly != null)
+				return styleOnly;
+		}
+
 		return new StyleAndText(style, text, link);
 	}
 
@@ -82,6 +91,7 @@ public class BasicStyleProvider implements StyleProvider
 	{
 		this.styles = styles;
 
+		Map<Style, StyleAndText> styleOnlyMap = new HashMap<Style, StyleAndText>();
 		styleMap.clear();
 		defaultStyle = null;
 
@@ -101,6 +111,13 @@ public class BasicStyleProvider implements StyleProvider
 		{
 			defaultStyle = new Style(null, true);
 		}
+
+		for (Style style : styleMap.values())
+		{
+			styleOnlyMap.put(style, new StyleAndText(style, null, null));
+		}
+		styleOnlyMap.put(defaultStyle, new StyleAndText(defaultStyle, null, null));
+		this.styleOnlyMap = styleOnlyMap;
 	}
 
 	@Override
@@ -30,10 +30,12 @@ import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -47,6 +49,9 @@ public class PropertySetter
 {
 	protected final Map<String, String> properties = new HashMap<String, String>();
 	protected final Map<String, String[]> typeOverrides = new HashMap<String, String[]>();
+	private final Map<List<Class<?>>, PropertyPlan[]> plans = new ConcurrentHashMap<List<Class<?>>, PropertyPlan[]>();
+
+	private static final Pattern VARIABLE_PATTERN = Pattern.compile("%[^%]+%");
 
 	/**
 	 * Add a property that this setter will set.
@@ -62,6 +67,7 @@ public class PropertySetter
 	public void addProperty(String property, String value, String... typeOverrides)
 	{
 		properties.put(property, value);
+		plans.clear();
 		if (typeOverrides != null && typeOverrides.length > 0)
 		{
 			this.typeOverrides.put(property, typeOverrides);
@@ -91,6 +97,10 @@ public class PropertySetter
 	 * method for the property, and if found, calls the setter with this
 	 * object's property value. Can also insert values from the attributes
 	 * themselves, by using the %attributeName% placeholder in the value string.
+	 * <p/>
+	 * The setter methods, parameter types and any constant parameter values
+	 * are resolved once for each combination of object classes and cached, so
+	 * calling this method for many objects of the same classes is cheap.
 	 * 
 	 * @param context
 	 *            Layer's context url
@@ -101,20 +111,48 @@ public class PropertySetter
 	 *            reflection
 	 */
 	public void setPropertiesFromAttributes(URL context, AVList attributeValues, Object... objects)
+	{
+		Class<?>[] classes = new Class<?>[objects.length];
+		for (int i = 0; i < objects.length; i++)
+		{
+			classes[i] = objects[i].getClass();
+		}
+
+		List<Class<?>> key = Arrays.asList(classes);
+		PropertyPlan[] plan = plans.get(key);
+		if (plan == null)
+		{
+			plan = compile(context, classes);
+			plans.put(key, plan);
+		}
+
+		for (PropertyPlan propertyPlan : plan)
+		{
+			propertyPlan.apply(context, attributeValues, objects);
+		}
+	}
+
+	/**
+	 * Resolve the setter methods for each of the properties in this setter
+	 * against the provided classes.
+	 */
+	private PropertyPlan[] compile(URL context, Class<?>[] classes)
 	{
 		Map<String, Method> methods = new HashMap<String, Method>();
-		Map<Method, Object> methodToObject = new HashMap<Method, Object>();
+		Map<Method, Integer> methodToObjectIndex = new HashMap<Method, Integer>();
 
 		//create a list of the methods in the objects
-		for (Object object : objects)
+		for (int i = 0; i < classes.length; i++)
 		{
-			for (Method method : object.getClass().getMethods())
+			for (Method method : classes[i].getMethods())
 			{
 				methods.put(method.getName(), method);
-				methodToObject.put(method, object);
+				methodToObjectIndex.put(method, i);
 			}
 		}
 
+		List<PropertyPlan> plan = new ArrayList<PropertyPlan>(properties.size());
+
 		//for each of the properties in this setter
 		for (Entry<String, String> entry : properties.entrySet())
 		{
@@ -124,9 +162,9 @@ public class PropertySetter
 			if (!methods.containsKey(methodName))
 			{
 				String message = "Could not find setter method '" + methodName + "' in class: ";
-				for (Object object : objects)
+				for (Class<?> c : classes)
 				{
-					message += object.getClass() + ", ";
+					message += c + ", ";
 				}
 				message = message.substring(0, message.length() - 2);
 
@@ -136,30 +174,12 @@ public class PropertySetter
 
 			//find out the method's parameters
 			Method setter = methods.get(methodName);
-			Object object = methodToObject.get(setter);
+			int objectIndex = methodToObjectIndex.get(setter);
 			Class<?>[] parameters = setter.getParameterTypes();
+			String[] typeOverrides = getTypeOverridesForProperty(property, parameters.length);
 
-			//get the string value to pass to the method
-			String stringValue = entry.getValue();
-			stringValue = replaceVariablesWithAttributeValues(stringValue, attributeValues);
-
-			String[] paramValueStrings = splitPipeSeparatedString(stringValue);
-
-			if (parameters.length != paramValueStrings.length)
-			{
-				String message =
-						"Setter method '" + methodName + "' in class " + object.getClass() + " doesn't take "
-								+ paramValueStrings.length + " parameter(s)";
-				Logging.logger().severe(message);
-				// Continue on incase this is an overloaded method
-				continue;
-			}
-
-			Object[] parameterValues = new Object[paramValueStrings.length];
-			String[] typeOverrides = getTypeOverridesForProperty(property, parameterValues.length);
-
-			// Convert each parameter value string into a parameter
-			for (int i = 0; i < paramValueStrings.length; i++)
+			Class<?>[] types = new Class<?>[parameters.length];
+			for (int i = 0; i < parameters.length; i++)
 			{
 				//find out the type to pass to the method
 				Class<?> parameterType = parameters[i];
@@ -172,44 +192,38 @@ public class PropertySetter
 					type = convertTypeToClass(typeOverride);
 					if (type == null)
 					{
-						String message = "Could not find class for type " + type;
+						String message = "Could not find class for type " + typeOverride;
 						Logging.logger().severe(message);
 						throw new IllegalArgumentException(message);
 					}
 					else if (!parameterType.isAssignableFrom(type))
 					{
 						String message =
-								"Setter method '" + methodName + "' in class " + object.getClass() + " parameter type "
-										+ parameterType + " not assignable from type " + type;
+								"Setter method '" + methodName + "' in class " + classes[objectIndex]
+										+ " parameter type " + parameterType + " not assignable from type " + type;
 						Logging.logger().severe(message);
 						throw new IllegalArgumentException(message);
 					}
 				}
-
-				//convert the string value to a valid type
-				Object value = convertStringToType(context, paramValueStrings[i], type);
-				if (value == null)
-				{
-					String message = "Error converting '" + paramValueStrings[i] + "' to type " + type;
-					Logging.logger().severe(message);
-					throw new IllegalArgumentException(message);
-				}
-
-				parameterValues[i] = value;
+				types[i] = type;
 			}
 
-			//invoke the setter with the value
-			try
+			ValueTemplate template = new ValueTemplate(entry.getValue());
+			PropertyPlan propertyPlan = new PropertyPlan(setter, objectIndex, types, template);
+			if (template.isConstant())
 			{
-				setter.invoke(object, parameterValues);
-			}
-			catch (Exception e)
-			{
-				String message = "Error invoking '" + methodName + "' in class " + object.getClass() + ": " + e;
-				Logging.logger().severe(message);
-				throw new IllegalArgumentException(message, e);
+				//constant values can be split and converted up front
+				String[] paramValueStrings = splitPipeSeparatedString(template.string);
+				if (!propertyPlan.checkParameterCount(paramValueStrings))
+				{
+					continue;
+				}
+				propertyPlan.setConstantValues(context, paramValueStrings);
 			}
+			plan.add(propertyPlan);
 		}
+
+		return plan.toArray(new PropertyPlan[plan.size()]);
 	}
 
 	/**
@@ -270,8 +284,7 @@ public class PropertySetter
 		if (attributesValues == null)
 			return string;
 
-		Pattern pattern = Pattern.compile("%[^%]+%");
-		Matcher matcher = pattern.matcher(string);
+		Matcher matcher = VARIABLE_PATTERN.matcher(string);
 		StringBuffer replacement = new StringBuffer();
 		int start = 0;
 		while (matcher.find(start))
@@ -488,4 +501,193 @@ public class PropertySetter
 		}
 		return is;
 	}
+
+	/**
+	 * Returns true if values of the provided object's type are immutable, and
+	 * can therefore be shared between each object the property is set on.
+	 */
+	protected static boolean isImmutableValue(Object value)
+	{
+		return value instanceof String || value instanceof Number || value instanceof Boolean
+				|| value instanceof Character || value instanceof Color || value instanceof Font
+				|| value instanceof Material || value instanceof File;
+	}
+
+	/**
+	 * A property value string, pre-split into literal text and
+	 * %attributeName% placeholders.
+	 */
+	private static class ValueTemplate
+	{
+		public final String string;
+		private final String[] literals;
+		private final String[] attributes;
+
+		public ValueTemplate(String string)
+		{
+			this.string = string;
+
+			List<String> literals = new ArrayList<String>();
+			List<String> attributes = new ArrayList<String>();
+			Matcher matcher = VARIABLE_PATTERN.matcher(string);
+			int start = 0;
+			while (matcher.find(start))
+			{
+				literals.add(string.substring(start, matcher.start()));
+				attributes.add(string.substring(matcher.start() + 1, matcher.end() - 1));
+				start = matcher.end();
+			}
+			literals.add(string.substring(start));
+
+			this.literals = literals.toArray(new String[literals.size()]);
+			this.attributes = attributes.toArray(new String[attributes.size()]);
+		}
+
+		public boolean isConstant()
+		{
+			return attributes.length == 0;
+		}
+
+		/**
+		 * @see PropertySetter#replaceVariablesWithAttributeValues(String,
+		 *      AVList)
+		 */
+		public String replace(AVList attributeValues)
+		{
+			if (attributeValues == null || isConstant())
+				return string;
+
+			StringBuilder replacement = new StringBuilder(literals[0]);
+			for (int i = 0; i < attributes.length; i++)
+			{
+				Object value = attributeValues.getValue(attributes[i]);
+				if (value == null && !attributeValues.hasKey(attributes[i]))
+				{
+					String message = "Could not find attribute '" + attributes[i] + "'";
+					Logging.logger().severe(message);
+					throw new IllegalArgumentException(message);
+				}
+				replacement.append(value).append(literals[i + 1]);
+			}
+			return replacement.toString();
+		}
+	}
+
+	/**
+	 * A single property resolved against a particular set of object classes.
+	 */
+	private static class PropertyPlan
+	{
+		private final Method setter;
+		private final int objectIndex;
+		private final Class<?>[] types;
+		private final ValueTemplate template;
+
+		private String[] constantStrings;
+		private Object[] constantValues;
+		private boolean allConstant;
+
+		public PropertyPlan(Method setter, int objectIndex, Class<?>[] types, ValueTemplate template)
+		{
+			this.setter = setter;
+			this.objectIndex = objectIndex;
+			this.types = types;
+			this.template = template;
+		}
+
+		/**
+		 * Convert the constant parameter values. Immutable values are kept and
+		 * shared, others are converted again for each object.
+		 */
+		public void setConstantValues(URL context, String[] paramValueStrings)
+		{
+			constantStrings = paramValueStrings;
+			constantValues = new Object[paramValueStrings.length];
+			allConstant = true;
+			for (int i = 0; i < paramValueStrings.length; i++)
+			{
+				Object value = convert(context, paramValueStrings[i], types[i]);
+				//URLs are resolved against the context, which may change
+				if (isImmutableValue(value) && !(value instanceof URL))
+				{
+					constantValues[i] = value;
+				}
+				else
+				{
+					allConstant = false;
+				}
+			}
+		}
+
+		public boolean checkParameterCount(String[] paramValueStrings)
+		{
+			if (types.length != paramValueStrings.length)
+			{
+				String message =
+						"Setter method '" + setter.getName() + "' in class " + setter.getDeclaringClass()
+								+ " doesn't take " + paramValueStrings.length + " parameter(s)";
+				Logging.logger().severe(message);
+				return false;
+			}
+			return true;
+		}
+
+		public void apply(URL context, AVList attributeValues, Object[] objects)
+		{
+			Object object = objects[objectIndex];
+			Object[] parameterValues;
+			if (allConstant)
+			{
+				parameterValues = constantValues;
+			}
+			else
+			{
+				String[] paramValueStrings = constantStrings;
+				if (paramValueStrings == null)
+				{
+					//get the string value to pass to the method
+					paramValueStrings = splitPipeSeparatedString(template.replace(attributeValues));
+					if (!checkParameterCount(paramValueStrings))
+					{
+						// Continue on incase this is an overloaded method
+						return;
+					}
+				}
+
+				// Convert each parameter value string into a parameter
+				parameterValues = new Object[paramValueStrings.length];
+				for (int i = 0; i < paramValueStrings.length; i++)
+				{
+					Object value = constantValues != null ? constantValues[i] : null;
+					parameterValues[i] = value != null ? value : convert(context, paramValueStrings[i], types[i]);
+				}
+			}
+
+			//invoke the setter with the value
+			try
+			{
+				setter.invoke(object, parameterValues);
+			}
+			catch (Exception e)
+			{
+				String message =
+						"Error invoking '" + setter.getName() + "' in class " + object.getClass() + ": " + e;
+				Logging.logger().severe(message);
+				throw new IllegalArgumentException(message, e);
+			}
+		}
+
+		private static Object convert(URL context, String string, Class<?> type)
+		{
+			//convert the string value to a valid type
+			Object value = convertStringToType(context, string, type);
+			if (value == null)
+			{
+				String message = "Error converting '" + string + "' to type " + type;
+				Logging.logger().severe(message);
+				throw new IllegalArgumentException(message);
+			}
+			return value;
+		}
+	}
 }
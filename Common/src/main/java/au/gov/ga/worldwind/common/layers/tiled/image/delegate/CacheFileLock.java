@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.tiled.image.delegate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Lock shared by all layers that read from and write to the same data cache
+ * location. Instances are obtained from the {@link FileLockSharer}.
+ * <p>
+ * The object itself can be synchronized on, which is how the World Wind
+ * retrieval post processors and configuration writers lock the whole cache
+ * location. In addition, each tile in the cache is guarded by one of a fixed
+ * number of striped read/write locks, selected by the tile's cache path. This
+ * allows readers of different tiles (and of the same tile) to read in
+ * parallel, while a tile being written still excludes its readers.
+ * <p>
+ * Simple contention statistics are kept for the tile locks, to help tune the
+ * stripe count.
+ */
+public class CacheFileLock
+{
+	public static final int DEFAULT_STRIPE_COUNT = 64;
+
+	private final String dataCacheName;
+	private final ReentrantReadWriteLock[] stripes;
+	private final int mask;
+
+	private final AtomicLong readCount = new AtomicLong();
+	private final AtomicLong writeCount = new AtomicLong();
+	private final AtomicLong contendedCount = new AtomicLong();
+	private final AtomicLong waitNanos = new AtomicLong();
+
+	public CacheFileLock(String dataCacheName)
+	{
+		this(dataCacheName, DEFAULT_STRIPE_COUNT);
+	}
+
+	/**
+	 * @param dataCacheName
+	 *            Cache location this lock guards
+	 * @param stripeCount
+	 *            Number of tile locks (rounded up to a power of two)
+	 */
+	public CacheFileLock(String dataCacheName, int stripeCount)
+	{
+		int count = 1;
+		while (count < stripeCount)
+		{
+			count <<= 1;
+		}
+
+		this.dataCacheName = dataCacheName;
+		this.stripes = new ReentrantReadWriteLock[count];
+		this.mask = count - 1;
+		for (int i = 0; i < count; i++)
+		{
+			stripes[i] = new ReentrantReadWriteLock();
+		}
+	}
+
+	/**
+	 * @return Cache location this lock guards
+	 */
+	public String getDataCacheName()
+	{
+		return dataCacheName;
+	}
+
+	/**
+	 * @return Number of tile lock stripes
+	 */
+	public int getStripeCount()
+	{
+		return stripes.length;
+	}
+
+	/**
+	 * Acquire the read lock for a tile. Must be followed by a call to
+	 * {@link #unlockRead(String)} with the same tile path.
+	 *
+	 * @param tilePath
+	 *            Cache path of the tile to read
+	 */
+	public void lockRead(String tilePath)
+	{
+		readCount.incrementAndGet();
+		acquire(getStripe(tilePath).readLock());
+	}
+
+	/**
+	 * Release the read lock for a tile.
+	 *
+	 * @param tilePath
+	 *            Cache path of the tile that was read
+	 */
+	public void unlockRead(String tilePath)
+	{
+		getStripe(tilePath).readLock().unlock();
+	}
+
+	/**
+	 * Acquire the write lock for a tile. Must be followed by a call to
+	 * {@link #unlockWrite(String)} with the same tile path.
+	 *
+	 * @param tilePath
+	 *            Cache path of the tile to write
+	 */
+	public void lockWrite(String tilePath)
+	{
+		writeCount.incrementAndGet();
+		acquire(getStripe(tilePath).writeLock());
+	}
+
+	/**
+	 * Release the write lock for a tile.
+	 *
+	 * @param tilePath
+	 *            Cache path of the tile that was written
+	 */
+	public void unlockWrite(String tilePath)
+	{
+		getStripe(tilePath).writeLock().unlock();
+	}
+
+	/**
+	 * @return Number of tile read locks acquired
+	 */
+	public long getReadCount()
+	{
+		return readCount.get();
+	}
+
+	/**
+	 * @return Number of tile write locks acquired
+	 */
+	public long getWriteCount()
+	{
+		return writeCount.get();
+	}
+
+	/**
+	 * @return Number of tile lock acquisitions that had to wait for another
+	 *         thread
+	 */
+	public long getContendedCount()
+	{
+		return contendedCount.get();
+	}
+
+	/**
+	 * @return Total time spent waiting for contended tile locks, in
+	 *         milliseconds
+	 */
+	public long getWaitTimeMillis()
+	{
+		return waitNanos.get() / 1000000L;
+	}
+
+	/**
+	 * Reset the contention statistics.
+	 */
+	public void resetStatistics()
+	{
+		readCount.set(0);
+		writeCount.set(0);
+		contendedCount.set(0);
+		waitNanos.set(0);
+	}
+
+	protected ReentrantReadWriteLock getStripe(String tilePath)
+	{
+		int hash = tilePath == null ? 0 : tilePath.hashCode();
+		//spread the higher bits, as paths often only differ in their last characters
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+		hash ^= (hash >>> 7) ^ (hash >>> 4);
+		return stripes[hash & mask];
+	}
+
+	private void acquire(Lock lock)
+	{
+		if (lock.tryLock())
+			return;
+
+		contendedCount.incrementAndGet();
+		long start = System.nanoTime();
+		lock.lock();
+		waitNanos.addAndGet(System.nanoTime() - start);
+	}
+
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + "[" + dataCacheName + ", reads=" + getReadCount() + ", writes="
+				+ getWriteCount() + ", contended=" + getContendedCount() + ", wait=" + getWaitTimeMillis() + "ms]";
+	}
+}
@@ -24,6 +24,7 @@ import gov.nasa.worldwind.exception.WWRuntimeException;
 import gov.nasa.worldwind.formats.dds.DDSCompressor;
 import gov.nasa.worldwind.formats.dds.DXTCompressionAttributes;
 import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Frustum;
 import gov.nasa.worldwind.geom.LatLon;
 import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.geom.Vec4;
@@ -42,6 +43,7 @@ import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.Tile;
 import gov.nasa.worldwind.util.TileKey;
 import gov.nasa.worldwind.util.WWIO;
+import gov.nasa.worldwind.util.WWMath;
 import gov.nasa.worldwind.util.WWXML;
 import gov.nasa.worldwind.wms.WMSTiledImageLayer;
 
@@ -53,6 +55,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.List;
 
 import javax.imageio.ImageIO;
 import javax.media.opengl.GLProfile;
@@ -83,14 +86,16 @@ import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
  * It also uses the {@link FileLockSharer} to create/share the fileLock object.
  * This is so that multiple layers can point and write to the same data cache
  * name and synchronize with each other on the same fileLock object. (Note: this
- * has not yet been added to Bulk Download facility).
+ * has not yet been added to Bulk Download facility). Textures are read under
+ * the fileLock's per-tile read lock, so reads of different tiles don't block
+ * each other; downloaded tiles are written under the tile's write lock.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer implements Bounded,
 		IDelegatorLayer<DelegatorTextureTile>
 {
-	protected final Object fileLock;
+	protected final CacheFileLock fileLock;
 	protected final URL context;
 	protected final ImageDelegateKit delegateKit;
 	protected boolean extractZipEntry = false;
@@ -312,6 +317,116 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		}
 	}
 
+	/**
+	 * Select the tiles this layer would render for a view that is not
+	 * necessarily the current view. Mirrors the tile selection performed in
+	 * {@link #render(DrawContext)}, but doesn't require a {@link DrawContext},
+	 * so it can be used to determine the tiles required for a future camera
+	 * position (for example, when prefetching tiles for an animation).
+	 * 
+	 * @param globe
+	 *            Globe the view is looking at
+	 * @param verticalExaggeration
+	 *            Vertical exaggeration of the globe
+	 * @param eyePoint
+	 *            Eye point of the view, in model coordinates
+	 * @param frustum
+	 *            View frustum, in model coordinates
+	 * @param fieldOfView
+	 *            Horizontal field of view of the view
+	 * @return List of tiles required to render the view
+	 */
+	public List<DelegatorTextureTile> selectTilesForView(Globe globe, double verticalExaggeration, Vec4 eyePoint,
+			Frustum frustum, Angle fieldOfView)
+	{
+		List<DelegatorTextureTile> tiles = new ArrayList<DelegatorTextureTile>();
+		for (TextureTile tile : getTopLevels())
+		{
+			addTileOrDescendantsForView(tile, globe, verticalExaggeration, eyePoint, frustum, fieldOfView, tiles);
+		}
+		return tiles;
+	}
+
+	protected void addTileOrDescendantsForView(TextureTile tile, Globe globe, double verticalExaggeration,
+			Vec4 eyePoint, Frustum frustum, Angle fieldOfView, List<DelegatorTextureTile> tiles)
+	{
+		if (!tile.getSector().intersects(getLevels().getSector())
+				|| !Sector.computeBoundingBox(globe, verticalExaggeration, tile.getSector()).intersects(frustum))
+		{
+			return;
+		}
+
+		if (getLevels().isFinalLevel(tile.getLevelNumber())
+				|| !needToSplitForView(globe, verticalExaggeration, eyePoint, fieldOfView, tile.getSector(),
+						tile.getLevel()))
+		{
+			if (tile instanceof DelegatorTextureTile && !getLevels().isResourceAbsent(tile))
+			{
+				tiles.add((DelegatorTextureTile) tile);
+			}
+			return;
+		}
+
+		Level nextLevel = getLevels().getLevel(tile.getLevelNumber() + 1);
+		for (TextureTile subTile : tile.createSubTiles(nextLevel))
+		{
+			addTileOrDescendantsForView(subTile, globe, verticalExaggeration, eyePoint, frustum, fieldOfView, tiles);
+		}
+	}
+
+	/**
+	 * Equivalent of {@link #needToSplit(DrawContext, Sector, Level)} for an
+	 * arbitrary view.
+	 */
+	protected boolean needToSplitForView(Globe globe, double verticalExaggeration, Vec4 eyePoint,
+			Angle fieldOfView, Sector sector, Level level)
+	{
+		double texelSizeMeters = level.getTexelSize() * globe.getRadius();
+		double detailScale = Math.pow(10, -getDetailFactor());
+		double fieldOfViewScale = fieldOfView.tanHalfAngle() / Angle.fromDegrees(45).tanHalfAngle();
+		fieldOfViewScale = WWMath.clamp(fieldOfViewScale, 0, 1);
+
+		double eyeDistanceMeters = eyePoint.distanceTo3(sector.computeCenterPoint(globe, verticalExaggeration));
+		for (Vec4 corner : sector.computeCornerPoints(globe, verticalExaggeration))
+		{
+			eyeDistanceMeters = Math.min(eyeDistanceMeters, eyePoint.distanceTo3(corner));
+		}
+
+		return texelSizeMeters > eyeDistanceMeters * detailScale * fieldOfViewScale;
+	}
+
+	/**
+	 * Load the texture for a tile on the calling thread, if it is not already
+	 * in the memory cache. The loaded tile is added to the memory cache, where
+	 * it will be found when the tile is next required for rendering.
+	 * 
+	 * @param tile
+	 *            Tile to load (usually returned by
+	 *            {@link #selectTilesForView(Globe, double, Vec4, Frustum, Angle)}
+	 *            )
+	 */
+	public void prefetchTile(DelegatorTextureTile tile)
+	{
+		if (tile.getLevelNumber() == 0 && isRetainLevelZeroTiles())
+		{
+			//level zero tiles are retained by the layer and loaded on the first render
+			return;
+		}
+		if (getLevels().isResourceAbsent(tile)
+				|| TextureTile.getMemoryCache().getObject(tile.getTransformedTileKey()) != null)
+		{
+			return;
+		}
+
+		Runnable task = delegateKit.createRequestTask(tile, this);
+
+		//if returned task is null, the task has already been run by the immediate delegates
+		if (task != null)
+		{
+			task.run();
+		}
+	}
+
 	protected void validateTileClass(Object tile)
 	{
 		if (!(tile instanceof DelegatorTextureTile))
@@ -338,10 +453,15 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 
 		TextureData textureData;
 
-		synchronized (fileLock)
+		fileLock.lockRead(tile.getPath());
+		try
 		{
 			textureData = readTexture(tile, textureURL);
 		}
+		finally
+		{
+			fileLock.unlockRead(tile.getPath());
+		}
 
 		if (textureData == null)
 			return false;
@@ -450,7 +570,8 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 
 	/**
 	 * Extension to superclass' DownloadPostProcessor which returns this class'
-	 * fileLock instead of the superclass'.
+	 * fileLock instead of the superclass', and holds the tile's write lock
+	 * while the downloaded tile is saved.
 	 * 
 	 * @author Michael de Hoog
 	 */
@@ -469,6 +590,21 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		{
 			return layer.fileLock;
 		}
+
+		@Override
+		protected ByteBuffer handleSuccessfulRetrieval()
+		{
+			String path = tile.getPath();
+			layer.fileLock.lockWrite(path);
+			try
+			{
+				return super.handleSuccessfulRetrieval();
+			}
+			finally
+			{
+				layer.fileLock.unlockWrite(path);
+			}
+		}
 	}
 
 	@Override
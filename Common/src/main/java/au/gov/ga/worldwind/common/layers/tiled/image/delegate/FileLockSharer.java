@@ -15,6 +15,8 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.common.layers.tiled.image.delegate;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,12 +25,18 @@ import java.util.Map;
  * synchronized before reading from and writing to the cache). This is useful as
  * some layers may share the same imagery but do different post processing on
  * the textures.
+ * <p>
+ * The registry is thread-safe, and only weakly references the locks, so a
+ * lock is forgotten once no layer is using its cache location any more. While
+ * any layer holds a lock, all other layers using the same cache location are
+ * given the same lock.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class FileLockSharer
 {
-	private static Map<String, Object> locks = new HashMap<String, Object>();
+	private static final Map<String, LockReference> locks = new HashMap<String, LockReference>();
+	private static final ReferenceQueue<CacheFileLock> queue = new ReferenceQueue<CacheFileLock>();
 
 	/**
 	 * Get an object on which to synchronize for reading/writing to the cache
@@ -38,12 +46,56 @@ public class FileLockSharer
 	 *            Cache location
 	 * @return Object on which to synchronize
 	 */
-	public static Object getLock(String dataCacheName)
+	public static CacheFileLock getLock(String dataCacheName)
 	{
-		if (!locks.containsKey(dataCacheName))
+		synchronized (locks)
 		{
-			locks.put(dataCacheName, new Object());
+			expungeStaleLocks();
+
+			LockReference reference = locks.get(dataCacheName);
+			CacheFileLock lock = reference != null ? reference.get() : null;
+			if (lock == null)
+			{
+				lock = new CacheFileLock(dataCacheName);
+				locks.put(dataCacheName, new LockReference(dataCacheName, lock, queue));
+			}
+			return lock;
+		}
+	}
+
+	/**
+	 * @return Number of cache locations that currently have a lock
+	 */
+	public static int getLockCount()
+	{
+		synchronized (locks)
+		{
+			expungeStaleLocks();
+			return locks.size();
+		}
+	}
+
+	private static void expungeStaleLocks()
+	{
+		LockReference reference;
+		while ((reference = (LockReference) queue.poll()) != null)
+		{
+			//the name may have been given a new lock since this one was collected
+			if (locks.get(reference.dataCacheName) == reference)
+			{
+				locks.remove(reference.dataCacheName);
+			}
+		}
+	}
+
+	private static class LockReference extends WeakReference<CacheFileLock>
+	{
+		private final String dataCacheName;
+
+		public LockReference(String dataCacheName, CacheFileLock lock, ReferenceQueue<CacheFileLock> queue)
+		{
+			super(lock, queue);
+			this.dataCacheName = dataCacheName;
 		}
-		return locks.get(dataCacheName);
 	}
 }
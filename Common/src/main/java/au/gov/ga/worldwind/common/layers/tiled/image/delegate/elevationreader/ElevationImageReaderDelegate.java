@@ -22,9 +22,8 @@ import gov.nasa.worldwind.util.Tile;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import javax.imageio.ImageIO;
 
@@ -79,16 +78,15 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 			MaskInsideZipDelegate delegate = new MaskInsideZipDelegate()
 			{
 				@Override
-				public void readEntry(ZipEntry entry, ZipInputStream zis) throws IOException
+				public void readEntry(String name, InputStream is, boolean isMask) throws IOException
 				{
-					String lower = entry.getName().toLowerCase();
-					if (lower.endsWith(".png"))
+					if (isMask)
 					{
-						mask[0] = ImageIO.read(zis);
+						mask[0] = ImageIO.read(is);
 					}
 					else
 					{
-						byteBuffer[0] = IOUtil.readByteBuffer(zis, pixelType, byteOrder);
+						byteBuffer[0] = IOUtil.readByteBuffer(is, pixelType, byteOrder);
 					}
 				}
 			};
@@ -99,7 +97,7 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 			{
 				try
 				{
-					mask[0] = ImageIO.read(maskUrl);
+					mask[0] = MaskHelper.readImage(maskUrl);
 				}
 				catch (Exception e)
 				{
@@ -42,10 +42,13 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.media.opengl.GL2;
 
@@ -54,6 +57,7 @@ import org.gdal.osr.CoordinateTransformation;
 import au.gov.ga.worldwind.common.WorldWindowRegistry;
 import au.gov.ga.worldwind.common.layers.Bounds;
 import au.gov.ga.worldwind.common.layers.Wireframeable;
+import au.gov.ga.worldwind.common.layers.volume.SliceTextureGenerator.Slice;
 import au.gov.ga.worldwind.common.render.fastshape.FastShape;
 import au.gov.ga.worldwind.common.render.fastshape.FastShapeRenderListener;
 import au.gov.ga.worldwind.common.util.AVKeyMore;
@@ -97,6 +101,10 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			lastMinYOffset = -1, lastMaxYOffset = -1;
 	protected double lastVerticalExaggeration = -Double.MAX_VALUE;
 
+	protected final SliceTextureGenerator sliceGenerator;
+	protected final Map<TextureRenderer, Slice> uploadedSlices = new HashMap<TextureRenderer, Slice>();
+	protected int sliceCacheSize = 16;
+
 	protected final double[] curtainTextureMatrix = new double[] { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1 };
 
 	protected boolean minXClipDirty = false, maxXClipDirty = false, minYClipDirty = false, maxYClipDirty = false,
@@ -188,10 +196,32 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			useOrderedRendering = b;
 		}
 
+		i = (Integer) params.getValue(AVKeyMore.SLICE_CACHE_SIZE);
+		if (i != null)
+		{
+			sliceCacheSize = i;
+		}
+
 		Validate.notBlank(url, "Model data url not set");
 		Validate.notBlank(dataCacheName, "Model data cache name not set");
 		Validate.notNull(dataProvider, "Model data provider is null");
 
+		sliceGenerator = new SliceTextureGenerator(new SliceTextureGenerator.Generator()
+		{
+			@Override
+			public void generateSlice(int axis, int position, Dimension size, int step, BufferedImage image)
+			{
+				generateTexture(axis, position, size, step, image);
+			}
+		}, new SliceTextureGenerator.Listener()
+		{
+			@Override
+			public void sliceGenerated(Slice slice)
+			{
+				firePropertyChange(AVKey.LAYER, null, BasicVolumeLayer.this);
+			}
+		}, sliceCacheSize);
+
 		WorldWindowRegistry.INSTANCE.addSelectListener(this);
 	}
 
@@ -240,10 +270,19 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	@Override
 	public void dataAvailable(VolumeDataProvider provider)
 	{
+		//any slices already generated are from previous data
+		sliceGenerator.clear();
 		calculateSurfaces();
 		dataAvailable = true;
 	}
 
+	@Override
+	public void dispose()
+	{
+		super.dispose();
+		sliceGenerator.clear();
+	}
+
 	/**
 	 * Calculate the 4 curtain and 2 horizontal surfaces used to render this
 	 * volume. Should be called once after the {@link VolumeDataProvider}
@@ -317,8 +356,9 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 
 	/**
 	 * Recalculate any surfaces that require recalculation. This includes
-	 * regenerating textures when the user has dragged a surface to a different
-	 * slice.
+	 * updating textures when the user has dragged a surface to a different
+	 * slice; the textures are generated by the {@link SliceTextureGenerator} on
+	 * worker threads, so only finished slice images are uploaded here.
 	 */
 	protected void recalculateSurfaces()
 	{
@@ -351,8 +391,9 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 		boolean recalculateTop = lastTopOffset != topOffset;
 		boolean recalculateBottom = lastBottomOffset != bottomOffset;
 
-		Dimension xTextureSize = new Dimension(ySize, zSize);
-		Dimension yTextureSize = new Dimension(xSize, zSize);
+		int curtainHeight = dataProvider.getZSubsamples() > 1 ? zSize * dataProvider.getZSubsamples() : zSize;
+		Dimension xTextureSize = new Dimension(ySize, curtainHeight);
+		Dimension yTextureSize = new Dimension(xSize, curtainHeight);
 		Dimension zTextureSize = new Dimension(xSize, ySize);
 		double topPercent = dataProvider.getSliceElevationPercent(topOffset);
 		double bottomPercent = dataProvider.getSliceElevationPercent(bottomSlice);
@@ -363,8 +404,6 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 
 			TopBottomFastShape newMinXCurtain = dataProvider.createXCurtain(minXOffset);
 			minXCurtain.setPositions(newMinXCurtain.getPositions());
-
-			updateTexture(generateTexture(0, minXOffset, xTextureSize), minXTexture, minXCurtain);
 			lastMinXOffset = minXOffset;
 		}
 		if (recalculateMaxX)
@@ -373,8 +412,6 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 
 			TopBottomFastShape newMaxXCurtain = dataProvider.createXCurtain(xSize - 1 - maxXOffset);
 			maxXCurtain.setPositions(newMaxXCurtain.getPositions());
-
-			updateTexture(generateTexture(0, maxXSlice, xTextureSize), maxXTexture, maxXCurtain);
 			lastMaxXOffset = maxXOffset;
 		}
 		if (recalculateMinY)
@@ -383,8 +420,6 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 
 			TopBottomFastShape newMinYCurtain = dataProvider.createYCurtain(minYOffset);
 			minYCurtain.setPositions(newMinYCurtain.getPositions());
-
-			updateTexture(generateTexture(1, minYOffset, yTextureSize), minYTexture, minYCurtain);
 			lastMinYOffset = minYOffset;
 		}
 		if (recalculateMaxY)
@@ -393,16 +428,12 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 
 			TopBottomFastShape newMaxYCurtain = dataProvider.createYCurtain(ySize - 1 - maxYOffset);
 			maxYCurtain.setPositions(newMaxYCurtain.getPositions());
-
-			updateTexture(generateTexture(1, maxYSlice, yTextureSize), maxYTexture, maxYCurtain);
 			lastMaxYOffset = maxYOffset;
 		}
 		if (recalculateTop)
 		{
 			topClipDirty = true;
 			double elevation = -dataProvider.getDepth() * topPercent;
-
-			updateTexture(generateTexture(2, topOffset, zTextureSize), topTexture, topSurface);
 			lastTopOffset = topOffset;
 
 			topSurface.setElevation(elevation);
@@ -417,8 +448,6 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 		{
 			bottomClipDirty = true;
 			double elevation = -dataProvider.getDepth() * bottomPercent;
-
-			updateTexture(generateTexture(2, bottomSlice, zTextureSize), bottomTexture, bottomSurface);
 			lastBottomOffset = bottomOffset;
 
 			bottomSurface.setElevation(elevation);
@@ -429,6 +458,39 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 
 			recalculateTextureMatrix(topPercent, bottomPercent);
 		}
+
+		updateTexture(0, minXOffset, xTextureSize, minXTexture, minXCurtain);
+		updateTexture(0, maxXSlice, xTextureSize, maxXTexture, maxXCurtain);
+		updateTexture(1, minYOffset, yTextureSize, minYTexture, minYCurtain);
+		updateTexture(1, maxYSlice, yTextureSize, maxYTexture, maxYCurtain);
+		updateTexture(2, topOffset, zTextureSize, topTexture, topSurface);
+		updateTexture(2, bottomSlice, zTextureSize, bottomTexture, bottomSurface);
+	}
+
+	/**
+	 * Update the given texture with the best available slice image from the
+	 * {@link SliceTextureGenerator}, if it differs from the slice image
+	 * already in the texture.
+	 * 
+	 * @param axis
+	 *            Slicing axis
+	 * @param position
+	 *            Longitude, latitude, or elevation at which to slice
+	 * @param size
+	 *            Size of the full resolution slice image
+	 * @param texture
+	 *            Texture to update
+	 * @param shape
+	 *            Shape to set texture in
+	 */
+	protected void updateTexture(int axis, int position, Dimension size, TextureRenderer texture, FastShape shape)
+	{
+		Slice slice = sliceGenerator.getSlice(texture, axis, position, size);
+		if (slice != null && uploadedSlices.get(texture) != slice)
+		{
+			updateTexture(slice.image, texture, shape);
+			uploadedSlices.put(texture, slice);
+		}
 	}
 
 	/**
@@ -696,40 +758,78 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	{
 		int zSubsamples = dataProvider.getZSubsamples();
 		boolean subsample = axis != 2 && zSubsamples > 1;
-		int height = size.height;
-		if (subsample)
-		{
-			height *= zSubsamples;
-		}
+		Dimension imageSize = new Dimension(size.width, subsample ? size.height * zSubsamples : size.height);
+
+		BufferedImage image = new BufferedImage(imageSize.width, imageSize.height, BufferedImage.TYPE_INT_ARGB);
+		generateTexture(axis, position, imageSize, 1, image);
+		return image;
+	}
+
+	/**
+	 * Generate a texture slice through the volume at the given position into
+	 * the provided image, sampling every <code>step</code> pixels. Called on
+	 * the {@link SliceTextureGenerator}'s worker threads.
+	 * 
+	 * @param axis
+	 *            Slicing axis (0 for a longitude slice, 1 for a latitude slice,
+	 *            2 for an elevation slice).
+	 * @param position
+	 *            Longitude, latitude, or elevation at which to slice.
+	 * @param size
+	 *            Size of the full resolution texture (including any z
+	 *            subsamples).
+	 * @param step
+	 *            Sampling step; the image contains every step'th pixel of the
+	 *            full resolution texture.
+	 * @param image
+	 *            TYPE_INT_ARGB image to generate the texture into.
+	 */
+	protected void generateTexture(int axis, int position, Dimension size, int step, BufferedImage image)
+	{
+		boolean subsample = axis != 2 && dataProvider.getZSubsamples() > 1;
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		int width = image.getWidth();
+		int height = image.getHeight();
 
-		BufferedImage image = new BufferedImage(size.width, height, BufferedImage.TYPE_INT_ARGB);
 		float minimum = dataProvider.getMinValue();
 		float maximum = dataProvider.getMaxValue();
-		for (int y = 0; y < height; y++)
+		float noDataValue = dataProvider.getNoDataValue();
+		int noDataRGB = noDataColor != null ? noDataColor.getRGB() : 0;
+		for (int iy = 0, i = 0; iy < height; iy++)
 		{
-			for (int x = 0; x < size.width; x++)
+			int y = Math.min(iy * step, size.height - 1);
+
+			//the subsample elevation only depends on the row
+			int z1 = 0, z2 = 0;
+			float zp = 0;
+			if (subsample)
 			{
+				double percent = y / (double) (size.height - 1);
+				double z = dataProvider.getElevationPercentSlice(percent);
+				z1 = (int) Math.floor(z);
+				z2 = (int) Math.ceil(z);
+				zp = (float) (z % 1.0);
+			}
+
+			for (int ix = 0; ix < width; ix++, i++)
+			{
+				int x = Math.min(ix * step, size.width - 1);
 				int vx = axis == 2 ? x : axis == 1 ? x : position;
 				int vy = axis == 2 ? y : axis == 1 ? position : x;
 				int vz = axis == 2 ? position : y;
 				float value;
 				if (subsample)
 				{
-					double percent = y / (double) (height - 1);
-					double z = dataProvider.getElevationPercentSlice(percent);
-					int z1 = (int) Math.floor(z);
-					int z2 = (int) Math.ceil(z);
 					float value1 = dataProvider.getValue(vx, vy, z1);
 					float value2 = dataProvider.getValue(vx, vy, z2);
-					float zp = (float) (z % 1.0);
 					value = value1 * (1f - zp) + value2 * zp;
 				}
 				else
 				{
 					value = dataProvider.getValue(vx, vy, vz);
 				}
-				int rgb = noDataColor != null ? noDataColor.getRGB() : 0;
-				if (value != dataProvider.getNoDataValue())
+				int rgb = noDataRGB;
+				if (value != noDataValue)
 				{
 					if (colorMap != null)
 					{
@@ -740,15 +840,15 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 						rgb = Color.HSBtoRGB(-0.3f - value * 0.7f, 1.0f, 1.0f);
 					}
 				}
-				image.setRGB(x, y, rgb);
+				pixels[i] = rgb;
 			}
 		}
-		return image;
 	}
 
 	/**
 	 * Update the given {@link TextureRenderer} with the provided image, and
-	 * sets the {@link FastShape}'s texture it.
+	 * sets the {@link FastShape}'s texture it. Images smaller than the texture
+	 * (such as coarse slices) are scaled to fit.
 	 * 
 	 * @param image
 	 *            Image to update texture with
@@ -764,7 +864,7 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 		{
 			g = (Graphics2D) texture.getImage().getGraphics();
 			g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC));
-			g.drawImage(image, 0, 0, null);
+			g.drawImage(image, 0, 0, texture.getWidth(), texture.getHeight(), null);
 		}
 		finally
 		{
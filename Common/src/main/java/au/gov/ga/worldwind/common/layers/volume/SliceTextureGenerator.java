@@ -0,0 +1,410 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.volume;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * Generates volume slice textures on worker threads. Each slice is generated
+ * first at a coarse resolution, and then at full resolution. Recently
+ * generated full resolution slices are kept in a LRU cache per axis, and
+ * their images are reused for new slices when evicted from the cache.
+ * <p/>
+ * Slices are requested per face (eg the top surface or minimum x curtain)
+ * using {@link #getSlice(Object, int, int, Dimension)}, which should be
+ * called by a single thread (normally the render thread). Requests for slices
+ * that a face no longer displays (such as when the user drags the face past
+ * a slice) are skipped. When the slice images become stale (such as when the
+ * volume data changes), {@link #clear()} discards the cached slices and any
+ * slices still being generated.
+ */
+public class SliceTextureGenerator
+{
+	/**
+	 * Maximum size (in pixels) of the longest edge of a coarse slice image.
+	 */
+	public static final int COARSE_SIZE = 64;
+
+	private static final ExecutorService executor = Executors.newFixedThreadPool(
+			Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())), new DaemonThreadFactory(
+					"Volume slice generator"));
+
+	private final Generator generator;
+	private final Listener listener;
+	private final int cacheSize;
+
+	private final Map<Integer, LinkedHashMap<Integer, Slice>> caches =
+			new HashMap<Integer, LinkedHashMap<Integer, Slice>>();
+	private final Map<Object, Face> faces = new HashMap<Object, Face>();
+	private final Set<Long> pending = new HashSet<Long>();
+	private final Map<Dimension, List<BufferedImage>> pool = new HashMap<Dimension, List<BufferedImage>>();
+	private final List<BufferedImage> released = new ArrayList<BufferedImage>();
+	private int generation = 0;
+
+	/**
+	 * Create a new {@link SliceTextureGenerator}.
+	 *
+	 * @param generator
+	 *            Generates the slice images
+	 * @param listener
+	 *            Notified when a slice has been generated (can be null)
+	 * @param cacheSize
+	 *            Number of full resolution slices to cache per axis
+	 */
+	public SliceTextureGenerator(Generator generator, Listener listener, int cacheSize)
+	{
+		this.generator = generator;
+		this.listener = listener;
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Get the best available slice for the given face. If the full resolution
+	 * slice has not been generated, it is queued for generation, and the
+	 * coarse slice (or the slice previously displayed by the face) is
+	 * returned.
+	 * <p/>
+	 * The image of the returned slice is only valid until the next call to
+	 * this method.
+	 *
+	 * @param face
+	 *            Face to get the slice for
+	 * @param axis
+	 *            Slicing axis (0 for a longitude slice, 1 for a latitude slice,
+	 *            2 for an elevation slice)
+	 * @param position
+	 *            Longitude, latitude, or elevation at which to slice
+	 * @param size
+	 *            Size of the full resolution slice image
+	 * @return Best available slice, or null if none has been generated yet
+	 */
+	public synchronized Slice getSlice(Object face, int axis, int position, Dimension size)
+	{
+		//images released from the cache are no longer being used by the calling thread
+		for (BufferedImage image : released)
+		{
+			recycleImage(image);
+		}
+		released.clear();
+
+		Face f = faces.get(face);
+		if (f == null)
+		{
+			f = new Face();
+			faces.put(face, f);
+		}
+		f.axis = axis;
+		f.position = position;
+
+		Slice slice = getCache(axis).get(position);
+		if (slice != null && slice.image.getWidth() == size.width && slice.image.getHeight() == size.height)
+		{
+			f.slice = slice;
+			return slice;
+		}
+
+		if (pending.add(key(axis, position)))
+		{
+			executor.execute(new SliceTask(axis, position, new Dimension(size), generation));
+		}
+		return f.slice;
+	}
+
+	/**
+	 * Clear the cached slices (for example, if the volume data has changed),
+	 * and release the pooled images. Slices still being generated are
+	 * discarded, and faces no longer have a slice until it is regenerated.
+	 */
+	public synchronized void clear()
+	{
+		generation++;
+		pending.clear();
+		for (LinkedHashMap<Integer, Slice> cache : caches.values())
+		{
+			for (Slice slice : cache.values())
+			{
+				release(slice);
+			}
+			cache.clear();
+		}
+		for (Face face : faces.values())
+		{
+			face.slice = null;
+		}
+		pool.clear();
+	}
+
+	protected LinkedHashMap<Integer, Slice> getCache(int axis)
+	{
+		LinkedHashMap<Integer, Slice> cache = caches.get(axis);
+		if (cache == null)
+		{
+			cache = new LinkedHashMap<Integer, Slice>(cacheSize + 1, 1f, true);
+			caches.put(axis, cache);
+		}
+		return cache;
+	}
+
+	protected synchronized boolean isWanted(int axis, int position, int generation)
+	{
+		if (generation != this.generation)
+		{
+			return false;
+		}
+		for (Face face : faces.values())
+		{
+			if (face.axis == axis && face.position == position)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected synchronized BufferedImage createImage(int width, int height)
+	{
+		List<BufferedImage> images = pool.get(new Dimension(width, height));
+		if (images != null && !images.isEmpty())
+		{
+			return images.remove(images.size() - 1);
+		}
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+	}
+
+	protected void recycleImage(BufferedImage image)
+	{
+		Dimension size = new Dimension(image.getWidth(), image.getHeight());
+		List<BufferedImage> images = pool.get(size);
+		if (images == null)
+		{
+			images = new ArrayList<BufferedImage>();
+			pool.put(size, images);
+		}
+		images.add(image);
+	}
+
+	protected void publish(Slice slice, int generation)
+	{
+		synchronized (this)
+		{
+			if (generation != this.generation)
+			{
+				//generated before the slices were cleared
+				return;
+			}
+			if (slice.complete)
+			{
+				LinkedHashMap<Integer, Slice> cache = getCache(slice.axis);
+				Slice previous = cache.put(slice.position, slice);
+				if (previous != null)
+				{
+					release(previous);
+				}
+				while (cache.size() > cacheSize)
+				{
+					Integer eldest = cache.keySet().iterator().next();
+					release(cache.remove(eldest));
+				}
+			}
+			for (Face face : faces.values())
+			{
+				if (face.axis == slice.axis && face.position == slice.position)
+				{
+					face.slice = slice;
+				}
+			}
+		}
+		if (listener != null)
+		{
+			listener.sliceGenerated(slice);
+		}
+	}
+
+	/**
+	 * Release the image of a slice evicted from the cache, so that it can be
+	 * reused after the next call to {@link #getSlice}. Faces no longer
+	 * reference the slice.
+	 */
+	protected void release(Slice slice)
+	{
+		released.add(slice.image);
+		for (Face face : faces.values())
+		{
+			if (face.slice == slice)
+			{
+				face.slice = null;
+			}
+		}
+	}
+
+	protected synchronized void finished(int axis, int position, int generation)
+	{
+		if (generation == this.generation)
+		{
+			pending.remove(key(axis, position));
+		}
+	}
+
+	protected static long key(int axis, int position)
+	{
+		return ((long) axis << 32) | (position & 0xffffffffL);
+	}
+
+	/**
+	 * Calculate the sampling step used when generating the coarse slice image
+	 * for a slice of the given size.
+	 *
+	 * @param size
+	 *            Size of the full resolution slice image
+	 * @return Coarse sampling step (1 if the slice is already small enough)
+	 */
+	public static int coarseStep(Dimension size)
+	{
+		int longest = Math.max(size.width, size.height);
+		return Math.max(1, (longest + COARSE_SIZE - 1) / COARSE_SIZE);
+	}
+
+	/**
+	 * Runnable that generates the coarse and then full resolution images for
+	 * a single slice, unless no face wants the slice anymore.
+	 */
+	protected class SliceTask implements Runnable
+	{
+		private final int axis;
+		private final int position;
+		private final Dimension size;
+		private final int generation;
+
+		public SliceTask(int axis, int position, Dimension size, int generation)
+		{
+			this.axis = axis;
+			this.position = position;
+			this.size = size;
+			this.generation = generation;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				int step = coarseStep(size);
+				if (step > 1 && isWanted(axis, position, generation))
+				{
+					BufferedImage image =
+							new BufferedImage((size.width + step - 1) / step, (size.height + step - 1) / step,
+									BufferedImage.TYPE_INT_ARGB);
+					generator.generateSlice(axis, position, size, step, image);
+					publish(new Slice(axis, position, image, false), generation);
+				}
+				if (isWanted(axis, position, generation))
+				{
+					BufferedImage image = createImage(size.width, size.height);
+					generator.generateSlice(axis, position, size, 1, image);
+					publish(new Slice(axis, position, image, true), generation);
+				}
+			}
+			finally
+			{
+				finished(axis, position, generation);
+			}
+		}
+	}
+
+	/**
+	 * A generated slice image.
+	 */
+	public static class Slice
+	{
+		public final int axis;
+		public final int position;
+		public final BufferedImage image;
+		/**
+		 * Is this the full resolution image? Otherwise it is the coarse image.
+		 */
+		public final boolean complete;
+
+		public Slice(int axis, int position, BufferedImage image, boolean complete)
+		{
+			this.axis = axis;
+			this.position = position;
+			this.image = image;
+			this.complete = complete;
+		}
+	}
+
+	/**
+	 * The slice position currently displayed by a face, and the best slice
+	 * available for it.
+	 */
+	protected static class Face
+	{
+		public int axis;
+		public int position;
+		public Slice slice;
+	}
+
+	/**
+	 * Generates slice images.
+	 */
+	public interface Generator
+	{
+		/**
+		 * Generate a slice image. Called on a worker thread.
+		 *
+		 * @param axis
+		 *            Slicing axis
+		 * @param position
+		 *            Longitude, latitude, or elevation at which to slice
+		 * @param size
+		 *            Size of the full resolution slice image
+		 * @param step
+		 *            Sampling step; pixel (x,y) of the image should contain
+		 *            the value at (x*step,y*step) in the full resolution
+		 *            slice
+		 * @param image
+		 *            TYPE_INT_ARGB image to generate into, of size
+		 *            ceil(size/step)
+		 */
+		void generateSlice(int axis, int position, Dimension size, int step, BufferedImage image);
+	}
+
+	/**
+	 * Listener notified when slices are generated.
+	 */
+	public interface Listener
+	{
+		/**
+		 * Called on a worker thread when a slice has been generated.
+		 *
+		 * @param slice
+		 *            Generated slice
+		 */
+		void sliceGenerated(Slice slice);
+	}
+}
@@ -85,6 +85,7 @@ public class VolumeLayerFactory
 
 		WWXML.checkAndSetBooleanParam(domElement, params, AVKeyMore.REVERSE_NORMALS, "ReverseNormals", xpath);
 		WWXML.checkAndSetBooleanParam(domElement, params, AVKeyMore.ORDERED_RENDERING, "OrderedRendering", xpath);
+		WWXML.checkAndSetIntegerParam(domElement, params, AVKeyMore.SLICE_CACHE_SIZE, "SliceCacheSize", xpath);
 		
 		WWXML.checkAndSetStringParam(domElement, params, AVKeyMore.PAINTED_VARIABLE, "PaintedVariable", xpath);
 
@@ -19,25 +19,59 @@ import gov.nasa.worldwind.geom.Position;
 
 import java.awt.Rectangle;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.media.opengl.GL2;
 
 import au.gov.ga.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
 import au.gov.ga.worldwind.common.util.Util;
 import au.gov.ga.worldwind.common.util.Validate;
 
 /**
  * A mesh generation helper which uses a grid of positions to generate a mesh.
  * Uses the Binary Triangle Tree mesh simplification algorithm.
+ * <p/>
+ * The elevations of the grid are copied into a packed array on construction.
+ * The variance of each triangle in the tree is precomputed once per square
+ * (in parallel for large grids), and the squares are meshed in parallel, so
+ * the same mesh is generated as the simple recursive implementation in a
+ * fraction of the time.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class BinaryTriangleTree
 {
+	/**
+	 * Maximum depth of the variance pyramid stored per root triangle (2^20
+	 * floats, 4MB). Variances of deeper triangles are calculated on demand.
+	 */
+	private static final int MAX_STORED_DEPTH = 19;
+	/**
+	 * Depth of the triangles whose variance subtrees are calculated as
+	 * separate tasks.
+	 */
+	private static final int PARALLEL_DEPTH = 3;
+	/**
+	 * Squares smaller than this size are calculated as a single task.
+	 */
+	private static final int PARALLEL_MIN_SIZE = 65;
+	/**
+	 * Grids with fewer positions than this are meshed on the calling thread.
+	 */
+	private static final int PARALLEL_MIN_POSITIONS = 65 * 65;
+
+	private static final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime()
+			.availableProcessors(), new DaemonThreadFactory("Binary triangle tree"));
+
 	private final List<Position> positions;
+	private final double[] elevations;
 	private final int width;
 	private final int height;
 	private boolean generateTextureCoordinates = false;
@@ -61,6 +95,13 @@ public class BinaryTriangleTree
 		this.positions = positions;
 		this.width = width;
 		this.height = height;
+
+		elevations = new double[positions.size()];
+		int i = 0;
+		for (Position position : positions)
+		{
+			elevations[i++] = position.elevation;
+		}
 	}
 
 	/**
@@ -147,9 +188,9 @@ public class BinaryTriangleTree
 			return buildFullMesh(rectangle);
 		}
 
-		List<BTTTriangle> triangles = new ArrayList<BTTTriangle>();
-		buildMesh(maxVariance, rectangle.x, rectangle.y, rectangle.width, rectangle.height, false, false, triangles);
-		return buildFastShape(triangles);
+		List<BTTBlock> blocks = new ArrayList<BTTBlock>();
+		addBlocks(rectangle.x, rectangle.y, rectangle.width, rectangle.height, false, false, blocks);
+		return buildFastShape(buildTriangles(maxVariance, blocks));
 	}
 
 	/**
@@ -171,7 +212,7 @@ public class BinaryTriangleTree
 			return buildFullMesh(rectangle);
 		}
 
-		List<BTTTriangle> triangles = new ArrayList<BTTTriangle>();
+		List<BTTBlock> blocks = new ArrayList<BTTBlock>();
 
 		int centerWidth = Util.nextLowestPowerOf2Plus1(rectangle.width);
 		int centerHeight = Util.nextLowestPowerOf2Plus1(rectangle.height);
@@ -180,18 +221,17 @@ public class BinaryTriangleTree
 		int remainingWidth = rectangle.width - centerWidth - centerXOffset;
 		int remainingHeight = rectangle.height - centerHeight - centerYOffset;
 
-		buildMesh(maxVariance, rectangle.x + centerXOffset, rectangle.y + centerYOffset, centerWidth, centerHeight,
-				false, false, triangles);
-		buildMesh(maxVariance, rectangle.x, rectangle.y, centerWidth + centerXOffset, centerYOffset + 1, true, true,
-				triangles);
-		buildMesh(maxVariance, rectangle.x, rectangle.y + centerYOffset, centerXOffset + 1, rectangle.height
-				- centerYOffset, true, false, triangles);
-		buildMesh(maxVariance, rectangle.x + centerWidth + centerXOffset - 1, rectangle.y, remainingWidth + 1,
-				centerHeight + centerYOffset, false, true, triangles);
-		buildMesh(maxVariance, rectangle.x + centerXOffset, rectangle.y + centerHeight + centerYOffset - 1,
-				rectangle.width - centerXOffset, remainingHeight + 1, false, false, triangles);
+		addBlocks(rectangle.x + centerXOffset, rectangle.y + centerYOffset, centerWidth, centerHeight, false, false,
+				blocks);
+		addBlocks(rectangle.x, rectangle.y, centerWidth + centerXOffset, centerYOffset + 1, true, true, blocks);
+		addBlocks(rectangle.x, rectangle.y + centerYOffset, centerXOffset + 1, rectangle.height - centerYOffset, true,
+				false, blocks);
+		addBlocks(rectangle.x + centerWidth + centerXOffset - 1, rectangle.y, remainingWidth + 1, centerHeight
+				+ centerYOffset, false, true, blocks);
+		addBlocks(rectangle.x + centerXOffset, rectangle.y + centerHeight + centerYOffset - 1, rectangle.width
+				- centerXOffset, remainingHeight + 1, false, false, blocks);
 
-		return buildFastShape(triangles);
+		return buildFastShape(buildTriangles(maxVariance, blocks));
 	}
 
 	/**
@@ -294,13 +334,12 @@ public class BinaryTriangleTree
 	}
 
 	/**
-	 * Build a mesh within the given rectangle, adding triangles to the triangle
-	 * list. Because the BTT algorithm only supports power-of-2-plus-1 squares,
-	 * this function divides the rectangle area into squares and then builds the
-	 * tree from the sub-squares.
+	 * Divide the given rectangle into squares to build the mesh from, adding
+	 * them to the block list. Because the BTT algorithm only supports
+	 * power-of-2-plus-1 squares, this function divides the rectangle area into
+	 * squares, from which the trees are built by
+	 * {@link #buildTriangles(float, List)}.
 	 * 
-	 * @param maxVariance
-	 *            BTT algorithm variance
 	 * @param x
 	 *            Rectangle x coordinate
 	 * @param y
@@ -313,11 +352,11 @@ public class BinaryTriangleTree
 	 *            Begin the mesh building from the right instead of left?
 	 * @param reverseY
 	 *            Begin the mesh building from the bottom instead of top?
-	 * @param triangles
-	 *            Triangle list to add generated triangles to
+	 * @param blocks
+	 *            Block list to add the squares to
 	 */
-	protected void buildMesh(float maxVariance, int x, int y, int width, int height, boolean reverseX,
-			boolean reverseY, List<BTTTriangle> triangles)
+	protected void addBlocks(int x, int y, int width, int height, boolean reverseX, boolean reverseY,
+			List<BTTBlock> blocks)
 	{
 		//cannot build a mesh between less that 2 rows/columns
 		if (width < 2 || height < 2)
@@ -337,7 +376,7 @@ public class BinaryTriangleTree
 				{
 					int tx = reverseX ? width - xStart - currentWidth + x * 2 : xStart;
 					int ty = reverseY ? height - yStart - yOffset - currentWidth + y * 2 : yStart + yOffset;
-					buildTree(maxVariance, tx, ty, currentWidth, triangles);
+					blocks.add(new BTTBlock(tx, ty, currentWidth));
 				}
 				remainingWidth -= currentWidth - 1;
 				xStart += currentWidth - 1;
@@ -348,46 +387,279 @@ public class BinaryTriangleTree
 	}
 
 	/**
-	 * Build a BinaryTriangleTree starting at the x,y coordinate.
+	 * Build the binary triangle trees for each of the provided blocks,
+	 * returning the leaves of the trees in block order. The variance pyramids
+	 * of the blocks are calculated first, and then each block is meshed; each
+	 * of these steps is run in parallel for large grids.
 	 * 
 	 * @param maxVariance
 	 *            BTT algorithm variance
-	 * @param x
-	 *            x coordinate from which to start
-	 * @param y
-	 *            y coordinate from which to start
-	 * @param size
-	 *            Size of the square (must be a power of 2 plus 1)
+	 * @param blocks
+	 *            Blocks to build trees for
+	 * @return Triangle list containing the leaves of the trees
+	 */
+	protected List<BTTTriangle> buildTriangles(final float maxVariance, List<BTTBlock> blocks)
+	{
+		int positionCount = 0;
+		for (BTTBlock block : blocks)
+		{
+			positionCount += block.size * block.size;
+		}
+		boolean parallel = positionCount >= PARALLEL_MIN_POSITIONS;
+
+		List<Callable<Object>> varianceTasks = new ArrayList<Callable<Object>>();
+		for (BTTBlock block : blocks)
+		{
+			addVarianceTasks(block.t1, block.size, varianceTasks);
+			addVarianceTasks(block.t2, block.size, varianceTasks);
+		}
+		invokeAll(varianceTasks, parallel);
+		for (BTTBlock block : blocks)
+		{
+			calculateVariances(block.t1, block.size);
+			calculateVariances(block.t2, block.size);
+		}
+
+		List<Callable<List<BTTTriangle>>> treeTasks = new ArrayList<Callable<List<BTTTriangle>>>(blocks.size());
+		for (final BTTBlock block : blocks)
+		{
+			treeTasks.add(new Callable<List<BTTTriangle>>()
+			{
+				@Override
+				public List<BTTTriangle> call() throws Exception
+				{
+					List<BTTTriangle> triangles = new ArrayList<BTTTriangle>();
+					buildTree(maxVariance, block, triangles);
+					return triangles;
+				}
+			});
+		}
+
+		List<BTTTriangle> triangles = new ArrayList<BTTTriangle>();
+		for (List<BTTTriangle> blockTriangles : invokeAll(treeTasks, parallel))
+		{
+			triangles.addAll(blockTriangles);
+		}
+		return triangles;
+	}
+
+	/**
+	 * Run the provided tasks, returning their results in task order.
+	 * 
+	 * @param tasks
+	 *            Tasks to run
+	 * @param parallel
+	 *            Run the tasks in parallel? Otherwise they are run on the
+	 *            calling thread.
+	 * @return Task results
+	 */
+	protected static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, boolean parallel)
+	{
+		List<T> results = new ArrayList<T>(tasks.size());
+		try
+		{
+			if (parallel && tasks.size() > 1)
+			{
+				for (Future<T> future : executor.invokeAll(tasks))
+				{
+					results.add(future.get());
+				}
+			}
+			else
+			{
+				for (Callable<T> task : tasks)
+				{
+					results.add(task.call());
+				}
+			}
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Error building binary triangle tree", e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted building binary triangle tree", e);
+		}
+		catch (RuntimeException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new IllegalStateException("Error building binary triangle tree", e);
+		}
+		return results;
+	}
+
+	/**
+	 * Build a BinaryTriangleTree for the given block. The variance pyramids of
+	 * the block's root triangles must have been calculated.
+	 * 
+	 * @param maxVariance
+	 *            BTT algorithm variance
+	 * @param block
+	 *            Block to build the tree for
 	 * @param triangles
 	 *            Triangle list to add generated triangles to
 	 */
-	protected void buildTree(float maxVariance, int x, int y, int size, List<BTTTriangle> triangles)
+	protected void buildTree(float maxVariance, BTTBlock block, List<BTTTriangle> triangles)
 	{
-		/*
-		 *  left
-		 *     +---+
-		 *     |\  |
-		 *     | \ |
-		 *     |  \|
-		 *     +---+
-		 *  apex   right
-		 */
+		buildFace(maxVariance, block.t1, block.x, block.y, block.size);
+		buildFace(maxVariance, block.t2, block.x, block.y, block.size);
 
-		int apex1 = x + y * width, left1 = x + (y + size - 1) * width, right1 = (x + size - 1) + y * width;
-		BTTTriangle t1 = new BTTTriangle(apex1, left1, right1);
+		addLeavesToTriangleList(block.t1, triangles);
+		addLeavesToTriangleList(block.t2, triangles);
+	}
 
-		int apex2 = (x + size - 1) + (y + size - 1) * width, left2 = (x + size - 1) + y * width, right2 =
-				x + (y + size - 1) * width;
-		BTTTriangle t2 = new BTTTriangle(apex2, left2, right2);
+	/**
+	 * Add tasks that calculate the variance pyramid for the subtrees of the
+	 * given root triangle. For small squares a single task is added for the
+	 * whole tree, otherwise a task is added for each triangle at
+	 * {@link #PARALLEL_DEPTH}; the top of the pyramid is completed by
+	 * {@link #calculateVariances(BTTTriangle, int)}.
+	 * 
+	 * @param root
+	 *            Root triangle of the tree
+	 * @param size
+	 *            Size of the square (must be a power of 2 plus 1)
+	 * @param tasks
+	 *            Task list to add to
+	 */
+	protected void addVarianceTasks(BTTTriangle root, int size, List<Callable<Object>> tasks)
+	{
+		int depth = getParallelDepth(root, size);
+		addVarianceTasks(root.variances, 1, 0, depth, root.apexIndex, root.leftIndex, root.rightIndex, tasks);
+	}
 
-		t1.bottomNeighbour = t2;
-		t2.bottomNeighbour = t1;
+	private void addVarianceTasks(final float[] variances, final int node, int depth, int taskDepth,
+			final int apexIndex, final int leftIndex, final int rightIndex, List<Callable<Object>> tasks)
+	{
+		if (depth == taskDepth)
+		{
+			tasks.add(new Callable<Object>()
+			{
+				@Override
+				public Object call() throws Exception
+				{
+					return calculateVariance(variances, node, -1, apexIndex, leftIndex, rightIndex);
+				}
+			});
+			return;
+		}
 
-		buildFace(maxVariance, t1, x, y, size);
-		buildFace(maxVariance, t2, x, y, size);
+		int midpointIndex = hypotenuseMidpointIndex(leftIndex, rightIndex);
+		addVarianceTasks(variances, node * 2, depth + 1, taskDepth, midpointIndex, apexIndex, leftIndex, tasks);
+		addVarianceTasks(variances, node * 2 + 1, depth + 1, taskDepth, midpointIndex, rightIndex, apexIndex, tasks);
+	}
 
-		addLeavesToTriangleList(t1, triangles);
-		addLeavesToTriangleList(t2, triangles);
+	/**
+	 * Complete the top of the variance pyramid of the given root triangle,
+	 * after the tasks added by
+	 * {@link #addVarianceTasks(BTTTriangle, int, List)} have been run.
+	 * 
+	 * @param root
+	 *            Root triangle of the tree
+	 * @param size
+	 *            Size of the square (must be a power of 2 plus 1)
+	 */
+	protected void calculateVariances(BTTTriangle root, int size)
+	{
+		int depth = getParallelDepth(root, size);
+		if (depth > 0)
+		{
+			calculateVariance(root.variances, 1, depth, root.apexIndex, root.leftIndex, root.rightIndex);
+		}
+	}
+
+	private int getParallelDepth(BTTTriangle root, int size)
+	{
+		return size < PARALLEL_MIN_SIZE ? 0 : Math.min(PARALLEL_DEPTH, storedDepth(root.variances));
+	}
+
+	/**
+	 * Calculate the variance of the provided triangle, storing the variances
+	 * of the triangle and its sub-triangles in the variance pyramid.
+	 * <p/>
+	 * The pyramid is an implicit binary tree: the root triangle is node 1, and
+	 * the left and right children of node n are nodes 2n and 2n+1.
+	 * 
+	 * @param variances
+	 *            Variance pyramid
+	 * @param node
+	 *            Node of the triangle in the pyramid
+	 * @param stopDepth
+	 *            Depth below the triangle at which the variances have already
+	 *            been stored in the pyramid (-1 if none have)
+	 * @param apexIndex
+	 *            Index of the triangle apex position.
+	 * @param leftIndex
+	 *            Index of the triangle left position.
+	 * @param rightIndex
+	 *            Index of the triangle right position.
+	 * @return Variance of the triangle.
+	 */
+	protected float calculateVariance(float[] variances, int node, int stopDepth, int apexIndex, int leftIndex,
+			int rightIndex)
+	{
+		if (stopDepth == 0)
+			return variances[node];
+		if (node >= variances.length)
+			return calculateVariance(apexIndex, leftIndex, rightIndex);
+		if (Math.abs(apexIndex - leftIndex) == 1 || Math.abs(apexIndex - rightIndex) == 1)
+			return 0;
+
+		int midpointIndex = hypotenuseMidpointIndex(leftIndex, rightIndex);
+		double midpointElevation = elevations[midpointIndex];
+		double interpolatedElevation = (elevations[leftIndex] + elevations[rightIndex]) / 2;
+		float delta = (float) Math.abs(midpointElevation - interpolatedElevation);
+		delta =
+				Math.max(delta,
+						calculateVariance(variances, node * 2 + 1, stopDepth - 1, midpointIndex, rightIndex, apexIndex));
+		delta =
+				Math.max(delta,
+						calculateVariance(variances, node * 2, stopDepth - 1, midpointIndex, apexIndex, leftIndex));
+		variances[node] = delta;
+		return delta;
+	}
+
+	/**
+	 * Create a variance pyramid for a root triangle of a square of the given
+	 * size.
+	 * 
+	 * @param size
+	 *            Size of the square (must be a power of 2 plus 1)
+	 * @return Variance pyramid
+	 */
+	protected static float[] createVariancePyramid(int size)
+	{
+		//a square of size 2^k+1 has 2k levels of triangles above the lowest level
+		int levels = 2 * (Integer.numberOfTrailingZeros(size - 1));
+		int depth = Math.max(0, Math.min(MAX_STORED_DEPTH, levels - 1));
+		return new float[1 << (depth + 1)];
+	}
+
+	private static int storedDepth(float[] variances)
+	{
+		return Integer.numberOfTrailingZeros(variances.length) - 1;
+	}
+
+	/**
+	 * Get the variance of the provided triangle, from the variance pyramid if
+	 * it has been stored.
+	 * 
+	 * @param t
+	 *            Triangle to get the variance for
+	 * @return Variance of the triangle
+	 */
+	protected float getVariance(BTTTriangle t)
+	{
+		if (t.node > 0 && t.node < t.variances.length)
+		{
+			return t.variances[t.node];
+		}
+		return calculateVariance(t.apexIndex, t.leftIndex, t.rightIndex);
 	}
 
 	/**
@@ -419,7 +691,7 @@ public class BinaryTriangleTree
 			if (!atLowestLevel)
 			{
 				if (isAnyIndexOnEdge(t.apexIndex, t.leftIndex, t.rightIndex, x, y, size)
-						|| calculateVariance(t.apexIndex, t.leftIndex, t.rightIndex) >= maxVariance)
+						|| getVariance(t) >= maxVariance)
 				{
 					trySplitFace(t);
 					buildFace(maxVariance, t.leftChild, x, y, size);
@@ -512,6 +784,12 @@ public class BinaryTriangleTree
 		int midpointIndex = hypotenuseMidpointIndex(t.leftIndex, t.rightIndex);
 		t.rightChild = new BTTTriangle(midpointIndex, t.rightIndex, t.apexIndex);
 		t.leftChild = new BTTTriangle(midpointIndex, t.apexIndex, t.leftIndex);
+		t.leftChild.variances = t.rightChild.variances = t.variances;
+		if (t.node > 0 && t.node < t.variances.length)
+		{
+			t.leftChild.node = t.node * 2;
+			t.rightChild.node = t.node * 2 + 1;
+		}
 		t.leftChild.leftNeighbour = t.rightChild;
 		t.rightChild.rightNeighbour = t.leftChild;
 
@@ -567,8 +845,8 @@ public class BinaryTriangleTree
 			return 0;
 
 		int midpointIndex = hypotenuseMidpointIndex(leftIndex, rightIndex);
-		double midpointElevation = positions.get(midpointIndex).elevation;
-		double interpolatedElevation = (positions.get(leftIndex).elevation + positions.get(rightIndex).elevation) / 2;
+		double midpointElevation = elevations[midpointIndex];
+		double interpolatedElevation = (elevations[leftIndex] + elevations[rightIndex]) / 2;
 		float delta = (float) Math.abs(midpointElevation - interpolatedElevation);
 		delta = Math.max(delta, calculateVariance(midpointIndex, rightIndex, apexIndex));
 		delta = Math.max(delta, calculateVariance(midpointIndex, apexIndex, leftIndex));
@@ -626,54 +904,54 @@ public class BinaryTriangleTree
 	 */
 	protected FastShape buildFastShape(List<BTTTriangle> triangles)
 	{
-		List<Position> positions = new ArrayList<Position>();
-		List<Integer> originalIndices = new ArrayList<Integer>();
-		Map<Position, Integer> positionIndexMap = new HashMap<Position, Integer>();
+		//map from grid index to index in the mesh, -1 if not yet in the mesh
+		int[] gridToMesh = new int[width * height];
+		Arrays.fill(gridToMesh, -1);
+		int[] originalIndices = new int[Math.min(gridToMesh.length, triangles.size() * 3)];
 		int[] indices = new int[triangles.size() * 3];
+		int count = 0;
 		int i = 0;
 
 		for (BTTTriangle triangle : triangles)
 		{
-			Position apexPosition = this.positions.get(triangle.apexIndex);
-			Position leftPosition = this.positions.get(triangle.leftIndex);
-			Position rightPosition = this.positions.get(triangle.rightIndex);
-			Integer apexIndex = positionIndexMap.get(apexPosition);
-			Integer leftIndex = positionIndexMap.get(leftPosition);
-			Integer rightIndex = positionIndexMap.get(rightPosition);
-			if (apexIndex == null)
+			int apexIndex = gridToMesh[triangle.apexIndex];
+			int leftIndex = gridToMesh[triangle.leftIndex];
+			int rightIndex = gridToMesh[triangle.rightIndex];
+			if (apexIndex < 0)
 			{
-				apexIndex = positions.size();
-				positionIndexMap.put(apexPosition, apexIndex);
-				positions.add(apexPosition);
-				originalIndices.add(triangle.apexIndex);
+				apexIndex = gridToMesh[triangle.apexIndex] = count;
+				originalIndices[count++] = triangle.apexIndex;
 			}
-			if (leftIndex == null)
+			if (leftIndex < 0)
 			{
-				leftIndex = positions.size();
-				positionIndexMap.put(leftPosition, leftIndex);
-				positions.add(leftPosition);
-				originalIndices.add(triangle.leftIndex);
+				leftIndex = gridToMesh[triangle.leftIndex] = count;
+				originalIndices[count++] = triangle.leftIndex;
 			}
-			if (rightIndex == null)
+			if (rightIndex < 0)
 			{
-				rightIndex = positions.size();
-				positionIndexMap.put(rightPosition, rightIndex);
-				positions.add(rightPosition);
-				originalIndices.add(triangle.rightIndex);
+				rightIndex = gridToMesh[triangle.rightIndex] = count;
+				originalIndices[count++] = triangle.rightIndex;
 			}
 			indices[i++] = leftIndex;
 			indices[i++] = apexIndex;
 			indices[i++] = rightIndex;
 		}
 
+		List<Position> positions = new ArrayList<Position>(count);
+		for (int j = 0; j < count; j++)
+		{
+			positions.add(this.positions.get(originalIndices[j]));
+		}
+
 		FastShape shape = new FastShape(positions, indices, GL2.GL_TRIANGLES);
 
 		if (generateTextureCoordinates)
 		{
-			float[] textureCoordinateBuffer = new float[positions.size() * 2];
+			float[] textureCoordinateBuffer = new float[count * 2];
 			i = 0;
-			for (Integer index : originalIndices)
+			for (int j = 0; j < count; j++)
 			{
+				int index = originalIndices[j];
 				int x = index % width;
 				int y = index / width;
 				textureCoordinateBuffer[i++] = x / (float) (width - 1);
@@ -698,6 +976,15 @@ public class BinaryTriangleTree
 		public BTTTriangle leftNeighbour;
 		public BTTTriangle rightNeighbour;
 		public BTTTriangle bottomNeighbour;
+		/**
+		 * Variance pyramid of the root triangle of this triangle's tree
+		 */
+		public float[] variances;
+		/**
+		 * Node of this triangle in the variance pyramid, -1 if below the
+		 * stored depth
+		 */
+		public int node = -1;
 
 		public BTTTriangle(int apexIndex, int leftIndex, int rightIndex)
 		{
@@ -716,4 +1003,48 @@ public class BinaryTriangleTree
 					+ (rightIndex / BinaryTriangleTree.this.width);
 		}
 	}
+
+	/**
+	 * Helper class that stores a power-of-2-plus-1 square of the grid, and the
+	 * two root triangles of the square's binary triangle tree.
+	 */
+	protected class BTTBlock
+	{
+		public final int x;
+		public final int y;
+		public final int size;
+		public final BTTTriangle t1;
+		public final BTTTriangle t2;
+
+		public BTTBlock(int x, int y, int size)
+		{
+			this.x = x;
+			this.y = y;
+			this.size = size;
+
+			/*
+			 *  left
+			 *     +---+
+			 *     |\  |
+			 *     | \ |
+			 *     |  \|
+			 *     +---+
+			 *  apex   right
+			 */
+
+			int apex1 = x + y * width, left1 = x + (y + size - 1) * width, right1 = (x + size - 1) + y * width;
+			t1 = new BTTTriangle(apex1, left1, right1);
+
+			int apex2 = (x + size - 1) + (y + size - 1) * width, left2 = (x + size - 1) + y * width, right2 =
+					x + (y + size - 1) * width;
+			t2 = new BTTTriangle(apex2, left2, right2);
+
+			t1.bottomNeighbour = t2;
+			t2.bottomNeighbour = t1;
+
+			t1.variances = createVariancePyramid(size);
+			t2.variances = createVariancePyramid(size);
+			t1.node = t2.node = 1;
+		}
+	}
 }
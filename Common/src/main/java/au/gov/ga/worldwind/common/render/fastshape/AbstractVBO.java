@@ -132,6 +132,24 @@ public abstract class AbstractVBO<ARRAY>
 		}
 	}
 
+	/**
+	 * Delete this VBO from the OpenGL context. The buffer is kept, and is
+	 * uploaded again the next time this VBO is bound.
+	 * 
+	 * @param gl
+	 *            OpenGL context
+	 */
+	public void delete(GL2 gl)
+	{
+		if (vboId >= 0)
+		{
+			gl.glDeleteBuffers(1, new int[] { vboId }, 0);
+			vboId = -1;
+		}
+		uploadRequired = true;
+		markDirty();
+	}
+
 	/**
 	 * Unbind this VBO.
 	 * 
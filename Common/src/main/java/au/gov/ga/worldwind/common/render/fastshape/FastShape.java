@@ -1011,11 +1011,7 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 			this.positions = positions;
 			verticesDirty = true;
 
-			bounds = null;
-			for (Position position : positions)
-			{
-				bounds = Bounds.union(bounds, position);
-			}
+			bounds = Bounds.fromPositions(positions);
 		}
 		finally
 		{
@@ -1331,6 +1327,26 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		}
 	}
 
+	/**
+	 * Delete this shape's vertex buffer objects from the OpenGL context, to
+	 * free graphics memory for shapes that are no longer being rendered. The
+	 * buffers are uploaded again if the shape is rendered after this call.
+	 * 
+	 * @param dc
+	 *            Draw context
+	 */
+	public void deleteBuffers(DrawContext dc)
+	{
+		GL2 gl = dc.getGL().getGL2();
+		vertexVBO.delete(gl);
+		normalVBO.delete(gl);
+		sortedIndexVBO.delete(gl);
+		indexVBO.delete(gl);
+		colorVBO.delete(gl);
+		pickingColorVBO.delete(gl);
+		textureCoordinateVBO.delete(gl);
+	}
+
 	public void addRenderListener(FastShapeRenderListener renderListener)
 	{
 		renderListeners.add(renderListener);
@@ -74,11 +74,16 @@ public interface AVKeyMore extends AVKey
 	final static String BOREHOLE_SAMPLE_DEPTH_FROM_ATTRIBUTE = "au.gov.ga.worldwind.AVKeyMore.BoreholeSampleDepthFromAttribute";
 	final static String BOREHOLE_SAMPLE_DEPTH_TO_ATTRIBUTE = "au.gov.ga.worldwind.AVKeyMore.BoreholeSampleDepthToAttribute";
 	final static String BOREHOLE_SAMPLE_DEPTH_ATTRIBUTES_POSITIVE = "au.gov.ga.worldwind.AVKeyMore.BoreholeSampleDepthAttributesPositive";
+	final static String CLUSTER_PIXELS = "au.gov.ga.worldwind.AVKeyMore.ClusterPixels";
 
 	//historic earthquakes layer
 	final static String COLORING = "au.gov.ga.worldwind.AVKeyMore.Coloring";
 	final static String COLORING_MIN_DATE = "au.gov.ga.worldwind.AVKeyMore.ColoringMinDate";
 	final static String COLORING_MAX_DATE = "au.gov.ga.worldwind.AVKeyMore.ColoringMaxDate";
+	final static String FILTER_MIN_DATE = "au.gov.ga.worldwind.AVKeyMore.FilterMinDate";
+	final static String FILTER_MAX_DATE = "au.gov.ga.worldwind.AVKeyMore.FilterMaxDate";
+	final static String FILTER_MIN_MAGNITUDE = "au.gov.ga.worldwind.AVKeyMore.FilterMinMagnitude";
+	final static String FILTER_MAX_MAGNITUDE = "au.gov.ga.worldwind.AVKeyMore.FilterMaxMagnitude";
 
 	//crust layer
 	final static String SCALE = "au.gov.ga.worldwind.AVKeyMore.Scale";
@@ -105,6 +110,7 @@ public interface AVKeyMore extends AVKey
 	final static String INITIAL_OFFSET_MIN_W = "au.gov.ga.worldwind.AVKeyMore.InitialOffsetMinW";
 	final static String INITIAL_OFFSET_MAX_W = "au.gov.ga.worldwind.AVKeyMore.InitialOffsetMaxW";
 	final static String FORCE_TWO_SIDED_LIGHTING = "au.gov.ga.worldwind.AVKeyMore.Force2SidedLighting";
+	final static String SLICE_CACHE_SIZE = "au.gov.ga.worldwind.AVKeyMore.SliceCacheSize";
 
 	//model layer
 	final static String TARGET_BAND = "au.gov.ga.worldwind.AVKeyMore.TargetBand";
@@ -0,0 +1,537 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.util.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * A read-only zip file that supports concurrent reads of its entries.
+ * <p/>
+ * The central directory is indexed once when the file is opened. Entries are
+ * read using positional reads on a single shared {@link FileChannel}, so
+ * multiple threads can read (and inflate) different entries at the same time
+ * without locking. Small entries are kept in an in-memory LRU cache after
+ * they are first read.
+ * <p/>
+ * ZIP64 archives are not supported; a {@link ZipException} is thrown when
+ * opening them.
+ */
+public class IndexedZipFile implements Closeable
+{
+	/** Default maximum uncompressed size of entries kept in the cache */
+	public static final int DEFAULT_MAX_CACHED_ENTRY_SIZE = 256 * 1024;
+
+	/** Default maximum total size of the cached entries */
+	public static final long DEFAULT_CACHE_SIZE = 16 * 1024 * 1024;
+
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int CENTRAL_SIGNATURE = 0x02014b50;
+	private static final int LOCAL_SIGNATURE = 0x04034b50;
+	private static final int END_HEADER_SIZE = 22;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int STORED = 0;
+	private static final int DEFLATED = 8;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File file;
+	private final Map<String, Entry> entries;
+	private final int maxCachedEntrySize;
+	private final long cacheSize;
+
+	private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+	private long cachedBytes = 0;
+
+	private final Object channelLock = new Object();
+	private RandomAccessFile randomAccessFile;
+	private volatile FileChannel channel;
+	private volatile boolean closed = false;
+
+	/**
+	 * Open the given zip file, using the default cache sizes.
+	 *
+	 * @param file
+	 *            Zip file to open
+	 * @throws IOException
+	 *             If the file cannot be read or is not a valid zip file
+	 */
+	public IndexedZipFile(File file) throws IOException
+	{
+		this(file, DEFAULT_MAX_CACHED_ENTRY_SIZE, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Open the given zip file.
+	 *
+	 * @param file
+	 *            Zip file to open
+	 * @param maxCachedEntrySize
+	 *            Maximum uncompressed size of entries to keep in the cache
+	 * @param cacheSize
+	 *            Maximum total size of the cached entries
+	 * @throws IOException
+	 *             If the file cannot be read or is not a valid zip file
+	 */
+	public IndexedZipFile(File file, int maxCachedEntrySize, long cacheSize) throws IOException
+	{
+		this.file = file;
+		this.maxCachedEntrySize = maxCachedEntrySize;
+		this.cacheSize = cacheSize;
+
+		openChannel();
+		try
+		{
+			entries = Collections.unmodifiableMap(readCentralDirectory());
+		}
+		catch (IOException e)
+		{
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return The zip file
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * @return The names of the entries in this zip file, in central directory
+	 *         order
+	 */
+	public Collection<String> getEntryNames()
+	{
+		return entries.keySet();
+	}
+
+	/**
+	 * @return The entry with the given name, or null if there is none
+	 */
+	public Entry getEntry(String name)
+	{
+		return entries.get(name);
+	}
+
+	/**
+	 * Open a stream to read the given entry. Streams for different entries
+	 * (or the same entry) can be read concurrently.
+	 *
+	 * @param name
+	 *            Entry name
+	 * @return Stream containing the entry's uncompressed data, or null if
+	 *         there is no such entry
+	 * @throws IOException
+	 */
+	public InputStream getInputStream(String name) throws IOException
+	{
+		Entry entry = entries.get(name);
+		if (entry == null)
+		{
+			return null;
+		}
+		if (entry.size <= maxCachedEntrySize)
+		{
+			return new ByteArrayInputStream(readEntry(entry));
+		}
+		return openStream(entry);
+	}
+
+	/**
+	 * Read the entire contents of the given entry. Entries smaller than the
+	 * maximum cached entry size are returned from (and added to) the cache;
+	 * the returned array must not be modified.
+	 *
+	 * @param name
+	 *            Entry name
+	 * @return Uncompressed entry data, or null if there is no such entry
+	 * @throws IOException
+	 */
+	public byte[] readEntry(String name) throws IOException
+	{
+		Entry entry = entries.get(name);
+		return entry == null ? null : readEntry(entry);
+	}
+
+	protected byte[] readEntry(Entry entry) throws IOException
+	{
+		boolean cacheable = entry.size <= maxCachedEntrySize;
+		if (cacheable)
+		{
+			synchronized (cache)
+			{
+				byte[] data = cache.get(entry.name);
+				if (data != null)
+				{
+					return data;
+				}
+			}
+		}
+
+		if (entry.size > Integer.MAX_VALUE)
+		{
+			throw new ZipException("Entry too large to read into memory: " + entry.name);
+		}
+		byte[] data = new byte[(int) entry.size];
+		InputStream is = openStream(entry);
+		try
+		{
+			int read = 0;
+			while (read < data.length)
+			{
+				int count = is.read(data, read, data.length - read);
+				if (count < 0)
+				{
+					throw new EOFException("Unexpected end of entry " + entry.name);
+				}
+				read += count;
+			}
+		}
+		finally
+		{
+			is.close();
+		}
+
+		if (cacheable)
+		{
+			synchronized (cache)
+			{
+				if (cache.put(entry.name, data) == null)
+				{
+					cachedBytes += data.length;
+				}
+				Iterator<byte[]> iterator = cache.values().iterator();
+				while (cachedBytes > cacheSize && iterator.hasNext())
+				{
+					cachedBytes -= iterator.next().length;
+					iterator.remove();
+				}
+			}
+		}
+		return data;
+	}
+
+	protected InputStream openStream(final Entry entry) throws IOException
+	{
+		long dataOffset = getDataOffset(entry);
+		if (entry.method == STORED)
+		{
+			return new ChannelInputStream(dataOffset, entry.compressedSize, false);
+		}
+		if (entry.method != DEFLATED)
+		{
+			throw new ZipException("Unsupported compression method " + entry.method + " for entry " + entry.name);
+		}
+
+		int bufferSize = (int) Math.max(64, Math.min(8192, entry.compressedSize + 1));
+		return new InflaterInputStream(new ChannelInputStream(dataOffset, entry.compressedSize, true), new Inflater(
+				true), bufferSize)
+		{
+			private boolean ended = false;
+
+			@Override
+			public void close() throws IOException
+			{
+				if (!ended)
+				{
+					ended = true;
+					inf.end();
+				}
+				super.close();
+			}
+		};
+	}
+
+	protected long getDataOffset(Entry entry) throws IOException
+	{
+		if (entry.dataOffset < 0)
+		{
+			ByteBuffer header = read(entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+			if (header.getInt(0) != LOCAL_SIGNATURE)
+			{
+				throw new ZipException("Invalid local header for entry " + entry.name);
+			}
+			int nameLength = header.getShort(26) & 0xffff;
+			int extraLength = header.getShort(28) & 0xffff;
+			entry.dataOffset = entry.localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+		}
+		return entry.dataOffset;
+	}
+
+	protected Map<String, Entry> readCentralDirectory() throws IOException
+	{
+		long length = channel.size();
+		int tailLength = (int) Math.min(length, END_HEADER_SIZE + 0xffff);
+		ByteBuffer tail = read(length - tailLength, tailLength);
+
+		int end = -1;
+		for (int i = tailLength - END_HEADER_SIZE; i >= 0; i--)
+		{
+			if (tail.getInt(i) == END_SIGNATURE)
+			{
+				end = i;
+				break;
+			}
+		}
+		if (end < 0)
+		{
+			throw new ZipException("End of central directory not found in " + file);
+		}
+
+		int count = tail.getShort(end + 10) & 0xffff;
+		long directorySize = tail.getInt(end + 12) & 0xffffffffL;
+		long directoryOffset = tail.getInt(end + 16) & 0xffffffffL;
+		if (count == 0xffff || directorySize == 0xffffffffL || directoryOffset == 0xffffffffL)
+		{
+			throw new ZipException("ZIP64 archives are not supported: " + file);
+		}
+
+		ByteBuffer directory = read(directoryOffset, (int) directorySize);
+		Map<String, Entry> entries = new LinkedHashMap<String, Entry>(count * 2);
+		int position = 0;
+		for (int i = 0; i < count; i++)
+		{
+			if (position + CENTRAL_HEADER_SIZE > directory.limit() || directory.getInt(position) != CENTRAL_SIGNATURE)
+			{
+				throw new ZipException("Invalid central directory in " + file);
+			}
+			int method = directory.getShort(position + 10) & 0xffff;
+			long compressedSize = directory.getInt(position + 20) & 0xffffffffL;
+			long size = directory.getInt(position + 24) & 0xffffffffL;
+			int nameLength = directory.getShort(position + 28) & 0xffff;
+			int extraLength = directory.getShort(position + 30) & 0xffff;
+			int commentLength = directory.getShort(position + 32) & 0xffff;
+			long localHeaderOffset = directory.getInt(position + 42) & 0xffffffffL;
+			if (compressedSize == 0xffffffffL || size == 0xffffffffL || localHeaderOffset == 0xffffffffL)
+			{
+				throw new ZipException("ZIP64 archives are not supported: " + file);
+			}
+
+			byte[] nameBytes = new byte[nameLength];
+			directory.position(position + CENTRAL_HEADER_SIZE);
+			directory.get(nameBytes);
+			String name = new String(nameBytes, UTF8);
+			if (!entries.containsKey(name))
+			{
+				entries.put(name, new Entry(name, method, compressedSize, size, localHeaderOffset));
+			}
+
+			position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+		}
+		return entries;
+	}
+
+	/**
+	 * Read length bytes at the given position in the file.
+	 */
+	protected ByteBuffer read(long position, int length) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining())
+		{
+			int count = read(buffer, position + buffer.position());
+			if (count < 0)
+			{
+				throw new EOFException("Unexpected end of file " + file);
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Positional read from the shared channel. If another thread was
+	 * interrupted during a read (which closes the channel), the channel is
+	 * reopened and the read retried.
+	 */
+	protected int read(ByteBuffer buffer, long position) throws IOException
+	{
+		while (true)
+		{
+			FileChannel current = channel;
+			try
+			{
+				return current.read(buffer, position);
+			}
+			catch (ClosedByInterruptException e)
+			{
+				reopenChannel(current);
+				throw e;
+			}
+			catch (ClosedChannelException e)
+			{
+				reopenChannel(current);
+			}
+		}
+	}
+
+	private void openChannel() throws IOException
+	{
+		randomAccessFile = new RandomAccessFile(file, "r");
+		channel = randomAccessFile.getChannel();
+	}
+
+	private void reopenChannel(FileChannel closedChannel) throws IOException
+	{
+		synchronized (channelLock)
+		{
+			if (closed)
+			{
+				throw new ClosedChannelException();
+			}
+			if (channel == closedChannel)
+			{
+				randomAccessFile.close();
+				openChannel();
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		synchronized (channelLock)
+		{
+			closed = true;
+			randomAccessFile.close();
+		}
+		synchronized (cache)
+		{
+			cache.clear();
+			cachedBytes = 0;
+		}
+	}
+
+	/**
+	 * An entry in the zip file's central directory.
+	 */
+	public static class Entry
+	{
+		public final String name;
+		public final int method;
+		public final long compressedSize;
+		public final long size;
+		public final long localHeaderOffset;
+		private volatile long dataOffset = -1;
+
+		public Entry(String name, int method, long compressedSize, long size, long localHeaderOffset)
+		{
+			this.name = name;
+			this.method = method;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.localHeaderOffset = localHeaderOffset;
+		}
+
+		public boolean isDirectory()
+		{
+			return name.endsWith("/");
+		}
+	}
+
+	/**
+	 * {@link InputStream} that reads a range of the file using positional
+	 * reads, so it doesn't affect (and isn't affected by) other streams.
+	 */
+	protected class ChannelInputStream extends InputStream
+	{
+		private long position;
+		private long remaining;
+		//the inflater requires an extra dummy byte at the end of the input when using 'nowrap'
+		private boolean padding;
+
+		public ChannelInputStream(long position, long length, boolean padding)
+		{
+			this.position = position;
+			this.remaining = length;
+			this.padding = padding;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			byte[] b = new byte[1];
+			int count = read(b, 0, 1);
+			return count < 0 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			if (len == 0)
+			{
+				return 0;
+			}
+			if (remaining <= 0)
+			{
+				if (padding)
+				{
+					padding = false;
+					b[off] = 0;
+					return 1;
+				}
+				return -1;
+			}
+
+			int length = (int) Math.min(len, remaining);
+			int count = IndexedZipFile.this.read(ByteBuffer.wrap(b, off, length), position);
+			if (count < 0)
+			{
+				throw new EOFException("Unexpected end of file " + file);
+			}
+			position += count;
+			remaining -= count;
+			return count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException
+		{
+			long skipped = Math.max(0, Math.min(n, remaining));
+			position += skipped;
+			remaining -= skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException
+		{
+			return (int) Math.min(Integer.MAX_VALUE, remaining);
+		}
+	}
+}
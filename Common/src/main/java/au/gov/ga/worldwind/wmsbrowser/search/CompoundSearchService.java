@@ -15,33 +15,116 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.wmsbrowser.search;
 
+import gov.nasa.worldwind.util.Logging;
+
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import au.gov.ga.worldwind.common.util.DaemonThreadFactory;
 
 /**
  * An implementation of the {@link WmsServerSearchService} interface
- * that queries each search service in turn and accumulates the results
+ * that queries each search service and accumulates the results
  * into a single returned list of servers.
+ * <p/>
+ * The services are queried in parallel. Results are merged in the order
+ * they arrive, and any registered {@link ResultListener}s are notified
+ * as each service completes. Services that don't respond within the
+ * service timeout (or that fail) are ignored.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  */
 public class CompoundSearchService extends DelegatingSearchService implements WmsServerSearchService
 {
+	private static final Logger logger = Logging.logger();
+	
+	/** The default time (in milliseconds) to wait for each service */
+	public static final long DEFAULT_SERVICE_TIMEOUT = 30000;
+	
+	private static ExecutorService searchService = Executors.newCachedThreadPool(new DaemonThreadFactory("WMS Server search"));
+	
+	private long serviceTimeout = DEFAULT_SERVICE_TIMEOUT;
+	private List<ResultListener> resultListeners = new ArrayList<ResultListener>();
+	
+	/**
+	 * Set the maximum time (in milliseconds) to wait for each service to return its results
+	 */
+	public void setServiceTimeout(long serviceTimeout)
+	{
+		this.serviceTimeout = serviceTimeout;
+	}
+	
+	public long getServiceTimeout()
+	{
+		return serviceTimeout;
+	}
 
 	@Override
-	public List<WmsServerSearchResult> searchForServers(String searchString)
+	public List<WmsServerSearchResult> searchForServers(final String searchString)
 	{
 		try
 		{
 			lockServices();
 			
-			Set<WmsServerSearchResult> result = new LinkedHashSet<WmsServerSearchResult>(); // Maintain insertion order
-			for (WmsServerSearchService service : getServices())
+			CompletionService<List<WmsServerSearchResult>> completionService = 
+					new ExecutorCompletionService<List<WmsServerSearchResult>>(searchService);
+			List<Future<List<WmsServerSearchResult>>> futures = new ArrayList<Future<List<WmsServerSearchResult>>>();
+			for (final WmsServerSearchService service : getServices())
 			{
-				List<WmsServerSearchResult> servers = service.searchForServers(searchString);
-				result.addAll(servers);
+				futures.add(completionService.submit(new Callable<List<WmsServerSearchResult>>()
+				{
+					@Override
+					public List<WmsServerSearchResult> call() throws Exception
+					{
+						return service.searchForServers(searchString);
+					}
+				}));
+			}
+			
+			Set<WmsServerSearchResult> result = new LinkedHashSet<WmsServerSearchResult>(); // Maintain arrival order
+			long deadline = System.currentTimeMillis() + serviceTimeout;
+			try
+			{
+				for (int i = 0; i < futures.size(); i++)
+				{
+					long remaining = deadline - System.currentTimeMillis();
+					Future<List<WmsServerSearchResult>> future = completionService.poll(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+					if (future == null)
+					{
+						logger.log(Level.WARNING, "Timed out waiting for WMS server search results for '" + searchString + "'");
+						break;
+					}
+					
+					List<WmsServerSearchResult> servers = getResults(future);
+					if (servers != null && result.addAll(servers))
+					{
+						notifyResultsArrived(new ArrayList<WmsServerSearchResult>(result));
+					}
+				}
+			}
+			catch (InterruptedException e)
+			{
+				// Search cancelled; return the results received so far
+				Thread.currentThread().interrupt();
+			}
+			finally
+			{
+				for (Future<List<WmsServerSearchResult>> future : futures)
+				{
+					future.cancel(true);
+				}
 			}
 			
 			return new ArrayList<WmsServerSearchResult>(result);
@@ -51,5 +134,52 @@ public class CompoundSearchService extends DelegatingSearchService implements Wm
 			unlockServices();
 		}
 	}
-
+	
+	private static List<WmsServerSearchResult> getResults(Future<List<WmsServerSearchResult>> future) throws InterruptedException
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (ExecutionException e)
+		{
+			logger.log(Level.WARNING, "WMS server search failed", e.getCause());
+			return null;
+		}
+	}
+	
+	public void addResultListener(ResultListener listener)
+	{
+		if (listener == null || resultListeners.contains(listener))
+		{
+			return;
+		}
+		resultListeners.add(listener);
+	}
+	
+	public void removeResultListener(ResultListener listener)
+	{
+		resultListeners.remove(listener);
+	}
+	
+	private void notifyResultsArrived(List<WmsServerSearchResult> results)
+	{
+		for (int i = resultListeners.size() - 1; i >= 0; i--)
+		{
+			resultListeners.get(i).resultsArrived(results);
+		}
+	}
+	
+	/**
+	 * Listener that is notified as results arrive from each service
+	 */
+	public static interface ResultListener
+	{
+		/**
+		 * Called from the searching thread each time a service returns new results
+		 * 
+		 * @param results All the results merged so far, in arrival order
+		 */
+		void resultsArrived(List<WmsServerSearchResult> results);
+	}
 }
@@ -24,8 +24,8 @@ import java.util.List;
 
 import au.gov.ga.worldwind.common.util.URLUtil;
 import au.gov.ga.worldwind.common.util.Util;
-import au.gov.ga.worldwind.wmsbrowser.wmsserver.DefaultCapabilitiesService;
 import au.gov.ga.worldwind.wmsbrowser.wmsserver.WmsCapabilitiesService;
+import au.gov.ga.worldwind.wmsbrowser.wmsserver.WmsCapabilitiesServiceAccessor;
 import au.gov.ga.worldwind.wmsbrowser.wmsserver.WmsServer;
 import au.gov.ga.worldwind.wmsbrowser.wmsserver.WmsServerIdentifier;
 import au.gov.ga.worldwind.wmsbrowser.wmsserver.WmsServerIdentifierImpl;
@@ -39,7 +39,7 @@ import au.gov.ga.worldwind.wmsbrowser.wmsserver.WmsServerImpl;
  */
 public class DirectUrlSearchService implements WmsServerSearchService
 {
-	private WmsCapabilitiesService capabilitiesService = new DefaultCapabilitiesService();
+	private WmsCapabilitiesService capabilitiesService = WmsCapabilitiesServiceAccessor.getService();
 
 	/**
 	 * Set the {@link WmsCapabilitiesService} to use for retrieving capabilities from a URL
@@ -48,7 +48,7 @@ public class DirectUrlSearchService implements WmsServerSearchService
 	{
 		if (capabilitiesService == null)
 		{
-			capabilitiesService = new DefaultCapabilitiesService();
+			capabilitiesService = WmsCapabilitiesServiceAccessor.getService();
 		}
 		this.capabilitiesService = capabilitiesService;
 	}
@@ -0,0 +1,616 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.wmsbrowser.wmsserver;
+
+import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.ogc.wms.WMSCapabilities;
+import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.wms.CapabilitiesRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link WmsCapabilitiesService} that keeps retrieved capabilities in memory
+ * and on disk.
+ * <p/>
+ * Capabilities documents retrieved over HTTP are stored in a cache directory,
+ * along with the WMS version, the ETag and Last-Modified headers, and an expiry
+ * time taken from the Cache-Control or Expires headers (or
+ * {@link #DEFAULT_EXPIRY} if the server provides neither). Documents that
+ * haven't expired are parsed from disk without contacting the server. Expired
+ * documents are revalidated with a conditional request, and are only
+ * downloaded again if they have changed. If the server can't be contacted, the
+ * expired document is used.
+ * <p/>
+ * Concurrent requests for the same URL share a single retrieval.
+ * <p/>
+ * URLs that don't use HTTP (such as local files) aren't cached, and are passed
+ * to the delegate service.
+ */
+public class CachingCapabilitiesService implements WmsCapabilitiesService
+{
+	private static final Logger logger = Logging.logger();
+
+	/** Name of the cache directory within the World Wind data file store */
+	public static final String CACHE_DIRECTORY = "WMSCapabilities";
+
+	/** Time (in milliseconds) to keep capabilities if the server doesn't provide an expiry time */
+	public static final long DEFAULT_EXPIRY = 24 * 60 * 60 * 1000L;
+
+	/** The versions to request, in order of preference */
+	private static final String[] VERSIONS = { "1.3.0", "1.1.1" };
+
+	private static final Pattern MAX_AGE_PATTERN = Pattern.compile("max-age\\s*=\\s*(\\d+)");
+
+	private static final String URL_KEY = "url";
+	private static final String VERSION_KEY = "version";
+	private static final String ETAG_KEY = "etag";
+	private static final String LAST_MODIFIED_KEY = "lastModified";
+	private static final String EXPIRES_KEY = "expires";
+
+	private final WmsCapabilitiesService delegate;
+	private File cacheDirectory;
+	private long defaultExpiry = DEFAULT_EXPIRY;
+	private int connectTimeout = 10000;
+	private int readTimeout = 30000;
+
+	private final Map<String, CachedCapabilities> memoryCache = new ConcurrentHashMap<String, CachedCapabilities>();
+	private final ConcurrentMap<String, FutureTask<WMSCapabilities>> inFlight =
+			new ConcurrentHashMap<String, FutureTask<WMSCapabilities>>();
+
+	/**
+	 * Create a service that caches capabilities within the World Wind data
+	 * file store.
+	 */
+	public CachingCapabilitiesService()
+	{
+		this(null);
+	}
+
+	/**
+	 * Create a service that caches capabilities in the given directory.
+	 *
+	 * @param cacheDirectory
+	 *            Directory to store capabilities in. If <code>null</code>,
+	 *            the World Wind data file store is used.
+	 */
+	public CachingCapabilitiesService(File cacheDirectory)
+	{
+		this(cacheDirectory, new DefaultCapabilitiesService());
+	}
+
+	/**
+	 * Create a service that caches capabilities in the given directory.
+	 *
+	 * @param cacheDirectory
+	 *            Directory to store capabilities in. If <code>null</code>,
+	 *            the World Wind data file store is used.
+	 * @param delegate
+	 *            Service used to retrieve capabilities for URLs that aren't
+	 *            cached
+	 */
+	public CachingCapabilitiesService(File cacheDirectory, WmsCapabilitiesService delegate)
+	{
+		this.cacheDirectory = cacheDirectory;
+		this.delegate = delegate == null ? new DefaultCapabilitiesService() : delegate;
+	}
+
+	@Override
+	public WMSCapabilities retrieveCapabilities(final URL url) throws Exception
+	{
+		if (url == null)
+		{
+			return null;
+		}
+
+		if (!isHttpUrl(url))
+		{
+			return delegate.retrieveCapabilities(url);
+		}
+
+		final String key = url.toExternalForm();
+		CachedCapabilities cached = memoryCache.get(key);
+		if (cached != null && !cached.metadata.isExpired())
+		{
+			return cached.capabilities;
+		}
+
+		// Share the retrieval with any other threads requesting the same URL
+		FutureTask<WMSCapabilities> task = new FutureTask<WMSCapabilities>(new Callable<WMSCapabilities>()
+		{
+			@Override
+			public WMSCapabilities call() throws Exception
+			{
+				return load(url, key);
+			}
+		});
+		FutureTask<WMSCapabilities> existing = inFlight.putIfAbsent(key, task);
+		if (existing == null)
+		{
+			try
+			{
+				task.run();
+			}
+			finally
+			{
+				inFlight.remove(key, task);
+			}
+			existing = task;
+		}
+
+		try
+		{
+			return existing.get();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception)
+			{
+				throw (Exception) cause;
+			}
+			if (cause instanceof Error)
+			{
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Remove the capabilities for the given URL from the cache, so that they
+	 * are retrieved from the server next time they are requested.
+	 */
+	public void remove(URL url)
+	{
+		if (url == null)
+		{
+			return;
+		}
+		String key = url.toExternalForm();
+		memoryCache.remove(key);
+		getDocumentFile(key).delete();
+		getMetadataFile(key).delete();
+	}
+
+	/**
+	 * Remove all capabilities from the in-memory cache. Capabilities stored on
+	 * disk are kept.
+	 */
+	public void clearMemoryCache()
+	{
+		memoryCache.clear();
+	}
+
+	/**
+	 * Set the time (in milliseconds) to keep capabilities for, if the server
+	 * doesn't provide an expiry time.
+	 */
+	public void setDefaultExpiry(long defaultExpiry)
+	{
+		this.defaultExpiry = defaultExpiry;
+	}
+
+	/**
+	 * Set the connect and read timeouts (in milliseconds) used when retrieving
+	 * capabilities.
+	 */
+	public void setTimeouts(int connectTimeout, int readTimeout)
+	{
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * @return The directory that capabilities are stored in
+	 */
+	public synchronized File getCacheDirectory()
+	{
+		if (cacheDirectory == null)
+		{
+			cacheDirectory = new File(WorldWind.getDataFileStore().getWriteLocation(), CACHE_DIRECTORY);
+		}
+		return cacheDirectory;
+	}
+
+	protected WMSCapabilities load(URL url, String key) throws Exception
+	{
+		File documentFile = getDocumentFile(key);
+		File metadataFile = getMetadataFile(key);
+		Metadata metadata = readMetadata(metadataFile);
+
+		if (metadata != null && documentFile.isFile())
+		{
+			if (!metadata.isExpired())
+			{
+				WMSCapabilities capabilities = parse(documentFile);
+				if (capabilities != null)
+				{
+					memoryCache.put(key, new CachedCapabilities(capabilities, metadata));
+					return capabilities;
+				}
+			}
+			else
+			{
+				try
+				{
+					WMSCapabilities capabilities = retrieve(url, key, metadata.version, metadata);
+					if (capabilities != null)
+					{
+						return capabilities;
+					}
+				}
+				catch (IOException e)
+				{
+					// Server unavailable; use the expired capabilities
+					logger.log(Level.WARNING, "Using expired capabilities for " + key, e);
+					WMSCapabilities capabilities = parse(documentFile);
+					if (capabilities != null)
+					{
+						return capabilities;
+					}
+				}
+			}
+		}
+
+		Exception lastException = null;
+		for (String version : VERSIONS)
+		{
+			try
+			{
+				WMSCapabilities capabilities = retrieve(url, key, version, null);
+				if (capabilities != null)
+				{
+					return capabilities;
+				}
+			}
+			catch (Exception e)
+			{
+				lastException = e;
+			}
+		}
+		if (lastException != null)
+		{
+			throw lastException;
+		}
+		return null;
+	}
+
+	/**
+	 * Retrieve the capabilities document for the given version from the
+	 * server. If cached metadata is provided, a conditional request is made,
+	 * and the cached document is used if it hasn't changed.
+	 *
+	 * @return The parsed capabilities, or <code>null</code> if the server
+	 *         didn't return a capabilities document
+	 */
+	protected WMSCapabilities retrieve(URL url, String key, String version, Metadata cached) throws Exception
+	{
+		CapabilitiesRequest request = new CapabilitiesRequest(url.toURI());
+		request.setVersion(version);
+
+		HttpURLConnection connection = (HttpURLConnection) request.getUri().toURL().openConnection();
+		connection.setConnectTimeout(connectTimeout);
+		connection.setReadTimeout(readTimeout);
+		if (cached != null)
+		{
+			if (cached.etag != null)
+			{
+				connection.setRequestProperty("If-None-Match", cached.etag);
+			}
+			if (cached.lastModified > 0)
+			{
+				connection.setIfModifiedSince(cached.lastModified);
+			}
+		}
+
+		try
+		{
+			int responseCode = connection.getResponseCode();
+			if (cached != null && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED)
+			{
+				WMSCapabilities capabilities = null;
+				CachedCapabilities inMemory = memoryCache.get(key);
+				if (inMemory != null)
+				{
+					capabilities = inMemory.capabilities;
+				}
+				else
+				{
+					capabilities = parse(getDocumentFile(key));
+				}
+				if (capabilities != null)
+				{
+					Metadata metadata = createMetadata(key, version, connection, cached);
+					writeMetadata(getMetadataFile(key), metadata);
+					memoryCache.put(key, new CachedCapabilities(capabilities, metadata));
+				}
+				return capabilities;
+			}
+			if (responseCode != HttpURLConnection.HTTP_OK)
+			{
+				return null;
+			}
+
+			// Parse from the cached file, so that the capabilities can be re-parsed without another retrieval
+			File documentFile = getDocumentFile(key);
+			writeDocument(documentFile, readFully(connection.getInputStream()));
+			WMSCapabilities capabilities = parse(documentFile);
+			if (capabilities == null)
+			{
+				documentFile.delete();
+				getMetadataFile(key).delete();
+				return null;
+			}
+
+			Metadata metadata = createMetadata(key, version, connection, null);
+			writeMetadata(getMetadataFile(key), metadata);
+			memoryCache.put(key, new CachedCapabilities(capabilities, metadata));
+			return capabilities;
+		}
+		finally
+		{
+			connection.disconnect();
+		}
+	}
+
+	private Metadata createMetadata(String key, String version, HttpURLConnection connection, Metadata cached)
+	{
+		Metadata metadata = new Metadata();
+		metadata.url = key;
+		metadata.version = version;
+		metadata.etag = connection.getHeaderField("ETag");
+		metadata.lastModified = connection.getLastModified();
+		if (cached != null)
+		{
+			// 304 responses needn't repeat the validators
+			metadata.etag = metadata.etag == null ? cached.etag : metadata.etag;
+			metadata.lastModified = metadata.lastModified <= 0 ? cached.lastModified : metadata.lastModified;
+		}
+		metadata.expires = calculateExpiry(connection);
+		return metadata;
+	}
+
+	private long calculateExpiry(HttpURLConnection connection)
+	{
+		long now = System.currentTimeMillis();
+		String cacheControl = connection.getHeaderField("Cache-Control");
+		if (cacheControl != null)
+		{
+			String lower = cacheControl.toLowerCase();
+			if (lower.contains("no-cache") || lower.contains("no-store"))
+			{
+				return now;
+			}
+			Matcher matcher = MAX_AGE_PATTERN.matcher(lower);
+			if (matcher.find())
+			{
+				return now + Long.parseLong(matcher.group(1)) * 1000L;
+			}
+		}
+		long expiration = connection.getExpiration();
+		if (expiration > 0)
+		{
+			return expiration;
+		}
+		return now + defaultExpiry;
+	}
+
+	private static WMSCapabilities parse(File documentFile)
+	{
+		try
+		{
+			return new WMSCapabilities(documentFile).parse();
+		}
+		catch (Exception e)
+		{
+			logger.log(Level.WARNING, "Error parsing cached capabilities " + documentFile, e);
+			return null;
+		}
+	}
+
+	private static boolean isHttpUrl(URL url)
+	{
+		return "http".equalsIgnoreCase(url.getProtocol()) || "https".equalsIgnoreCase(url.getProtocol());
+	}
+
+	private File getDocumentFile(String key)
+	{
+		return new File(getCacheDirectory(), hash(key) + ".xml");
+	}
+
+	private File getMetadataFile(String key)
+	{
+		return new File(getCacheDirectory(), hash(key) + ".properties");
+	}
+
+	private static String hash(String key)
+	{
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest)
+			{
+				sb.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+			}
+			return sb.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			return Integer.toHexString(key.hashCode());
+		}
+		catch (IOException e)
+		{
+			return Integer.toHexString(key.hashCode());
+		}
+	}
+
+	private static Metadata readMetadata(File metadataFile)
+	{
+		if (!metadataFile.isFile())
+		{
+			return null;
+		}
+
+		try
+		{
+			Properties properties = new Properties();
+			InputStream is = new FileInputStream(metadataFile);
+			try
+			{
+				properties.load(is);
+			}
+			finally
+			{
+				is.close();
+			}
+
+			Metadata metadata = new Metadata();
+			metadata.url = properties.getProperty(URL_KEY);
+			metadata.version = properties.getProperty(VERSION_KEY);
+			metadata.etag = properties.getProperty(ETAG_KEY);
+			metadata.lastModified = Long.parseLong(properties.getProperty(LAST_MODIFIED_KEY, "0"));
+			metadata.expires = Long.parseLong(properties.getProperty(EXPIRES_KEY, "0"));
+			return metadata.version == null ? null : metadata;
+		}
+		catch (Exception e)
+		{
+			logger.log(Level.WARNING, "Error reading cached capabilities metadata " + metadataFile, e);
+			return null;
+		}
+	}
+
+	private static void writeMetadata(File metadataFile, Metadata metadata) throws IOException
+	{
+		Properties properties = new Properties();
+		properties.setProperty(URL_KEY, metadata.url);
+		properties.setProperty(VERSION_KEY, metadata.version);
+		if (metadata.etag != null)
+		{
+			properties.setProperty(ETAG_KEY, metadata.etag);
+		}
+		properties.setProperty(LAST_MODIFIED_KEY, String.valueOf(metadata.lastModified));
+		properties.setProperty(EXPIRES_KEY, String.valueOf(metadata.expires));
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		properties.store(baos, null);
+		writeDocument(metadataFile, baos.toByteArray());
+	}
+
+	/**
+	 * Write the file via a temporary file, so that other readers never see a
+	 * partially written file.
+	 */
+	private static void writeDocument(File file, byte[] data) throws IOException
+	{
+		file.getParentFile().mkdirs();
+		File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+		try
+		{
+			OutputStream os = new FileOutputStream(temp);
+			try
+			{
+				os.write(data);
+			}
+			finally
+			{
+				os.close();
+			}
+			if (!temp.renameTo(file))
+			{
+				file.delete();
+				if (!temp.renameTo(file))
+				{
+					throw new IOException("Could not write " + file);
+				}
+			}
+		}
+		finally
+		{
+			temp.delete();
+		}
+	}
+
+	private static byte[] readFully(InputStream is) throws IOException
+	{
+		try
+		{
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = is.read(buffer)) >= 0)
+			{
+				baos.write(buffer, 0, read);
+			}
+			return baos.toByteArray();
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	/**
+	 * Cache metadata stored alongside each capabilities document.
+	 */
+	protected static class Metadata
+	{
+		public String url;
+		public String version;
+		public String etag;
+		public long lastModified;
+		public long expires;
+
+		public boolean isExpired()
+		{
+			return System.currentTimeMillis() >= expires;
+		}
+	}
+
+	private static class CachedCapabilities
+	{
+		public final WMSCapabilities capabilities;
+		public final Metadata metadata;
+
+		public CachedCapabilities(WMSCapabilities capabilities, Metadata metadata)
+		{
+			this.capabilities = capabilities;
+			this.metadata = metadata;
+		}
+	}
+}
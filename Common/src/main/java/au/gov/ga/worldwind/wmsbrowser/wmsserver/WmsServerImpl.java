@@ -38,9 +38,6 @@ import au.gov.ga.worldwind.common.util.Validate;
  */
 public class WmsServerImpl implements WmsServer
 {
-	/** The default capabilities service. Can be overridden through injection using the {@link #setCapabilitiesService()} method */
-	private static final WmsCapabilitiesService DEFAULT_CAPABILITIES_SERVICE = new DefaultCapabilitiesService();
-	
 	private static ExecutorService loaderService = Executors.newSingleThreadExecutor(new DaemonThreadFactory("WMS Server layer loader"));
 
 	private WmsServerIdentifier identifier;
@@ -48,7 +45,8 @@ public class WmsServerImpl implements WmsServer
 	private List<WMSLayerInfo> layers = null;
 	private List<LoadListener> loadListeners = new ArrayList<LoadListener>();
 
-	private WmsCapabilitiesService capabilitiesService = DEFAULT_CAPABILITIES_SERVICE;
+	/** Defaults to the shared {@link WmsCapabilitiesServiceAccessor} service. Can be overridden through injection using the {@link #setCapabilitiesService()} method */
+	private WmsCapabilitiesService capabilitiesService = WmsCapabilitiesServiceAccessor.getService();
 	private WMSCapabilities capabilities;
 	
 	public WmsServerImpl(URL serverUrl)
@@ -187,11 +185,15 @@ public class WmsServerImpl implements WmsServer
 	private void doLoad() throws Exception
 	{
 		// Load the capabilities
+		// Capabilities services return parsed capabilities, which may be shared between servers
 		if (capabilities == null)
 		{
 			capabilities = capabilitiesService.retrieveCapabilities(getCapabilitiesUrl());
 		}
-		capabilities.parse();
+		if (capabilities == null)
+		{
+			throw new IllegalStateException("No WMS capabilities found at " + getCapabilitiesUrl().toExternalForm());
+		}
 
 		layers = new ArrayList<WMSLayerInfo>();
 		
@@ -257,7 +259,7 @@ public class WmsServerImpl implements WmsServer
 	@Override
 	public void setCapabilitiesService(WmsCapabilitiesService service)
 	{
-		this.capabilitiesService = service == null ? DEFAULT_CAPABILITIES_SERVICE : service;
+		this.capabilitiesService = service == null ? WmsCapabilitiesServiceAccessor.getService() : service;
 	}
 	
 	@Override
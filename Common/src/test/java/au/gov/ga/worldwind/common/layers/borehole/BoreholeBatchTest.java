@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.borehole;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.render.markers.BasicMarkerAttributes;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.common.render.fastshape.FastShape;
+
+/**
+ * Unit tests for the {@link BoreholeBatch}
+ */
+public class BoreholeBatchTest
+{
+	private Mockery mockContext;
+	private BoreholeLayer layer;
+
+	@Before
+	public void setup()
+	{
+		mockContext = new Mockery();
+		layer = mockContext.mock(BoreholeLayer.class);
+	}
+
+	@Test
+	public void testGroupSmallBoreholeListIntoSingleBatch()
+	{
+		List<BoreholeImpl> boreholes = new ArrayList<BoreholeImpl>();
+		for (int i = 0; i < 10; i++)
+		{
+			boreholes.add(createBorehole(i, i, 10));
+		}
+
+		List<List<BoreholeImpl>> groups = BoreholeBatch.groupBoreholes(boreholes);
+		assertEquals(1, groups.size());
+		assertEquals(10, groups.get(0).size());
+	}
+
+	@Test
+	public void testGroupLargeBoreholeListIntoMultipleBatches()
+	{
+		List<BoreholeImpl> boreholes = new ArrayList<BoreholeImpl>();
+		int samplesPerBorehole = 100;
+		int count = 4 * BoreholeBatch.MAX_SAMPLES_PER_BATCH / samplesPerBorehole;
+		for (int i = 0; i < count; i++)
+		{
+			boreholes.add(createBorehole(-40 + (i % 20), 110 + (i / 20) * 0.1, samplesPerBorehole));
+		}
+
+		List<List<BoreholeImpl>> groups = BoreholeBatch.groupBoreholes(boreholes);
+		assertTrue(groups.size() > 1);
+
+		Set<BoreholeImpl> grouped = new HashSet<BoreholeImpl>();
+		for (List<BoreholeImpl> group : groups)
+		{
+			int sampleCount = 0;
+			for (BoreholeImpl borehole : group)
+			{
+				sampleCount += borehole.getSamples().size();
+			}
+			assertTrue(sampleCount <= BoreholeBatch.MAX_SAMPLES_PER_BATCH);
+			grouped.addAll(group);
+		}
+		assertEquals(boreholes.size(), grouped.size());
+	}
+
+	@Test
+	public void testGroupSparseBoreholesBySizeRelativeToMinimumDistance()
+	{
+		List<BoreholeImpl> boreholes = new ArrayList<BoreholeImpl>();
+		for (int i = 0; i < 10; i++)
+		{
+			for (int j = 0; j < 10; j++)
+			{
+				boreholes.add(createBorehole(-40 + i, 110 + j, 10));
+			}
+		}
+
+		assertEquals(1, BoreholeBatch.groupBoreholes(boreholes, null).size());
+
+		//1 degree is ~111km, so each borehole should be in its own batch
+		double minimumDistance = 100000;
+		List<List<BoreholeImpl>> groups = BoreholeBatch.groupBoreholes(boreholes, minimumDistance);
+		assertEquals(boreholes.size(), groups.size());
+
+		//batches of up to ~2.2 degrees of latitude
+		minimumDistance = 1000000;
+		groups = BoreholeBatch.groupBoreholes(boreholes, minimumDistance);
+		assertTrue(groups.size() > 1);
+		assertTrue(groups.size() < boreholes.size());
+		for (List<BoreholeImpl> group : groups)
+		{
+			double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+			for (BoreholeImpl borehole : group)
+			{
+				minLat = Math.min(minLat, borehole.getPosition().getLatitude().degrees);
+				maxLat = Math.max(maxLat, borehole.getPosition().getLatitude().degrees);
+			}
+			assertTrue(maxLat - minLat <= 2.25);
+		}
+	}
+
+	@Test
+	public void testGroupCoincidentBoreholesIntoSingleBatch()
+	{
+		List<BoreholeImpl> boreholes = new ArrayList<BoreholeImpl>();
+		for (int i = 0; i < 3; i++)
+		{
+			boreholes.add(createBorehole(-30, 130, BoreholeBatch.MAX_SAMPLES_PER_BATCH));
+		}
+
+		assertEquals(1, BoreholeBatch.groupBoreholes(boreholes).size());
+	}
+
+	@Test
+	public void testBatchContainsAllSamplesInOrder()
+	{
+		List<BoreholeImpl> boreholes = new ArrayList<BoreholeImpl>();
+		boreholes.add(createBorehole(-30, 130, 3));
+		boreholes.add(createBorehole(-31, 131, 2));
+
+		BoreholeBatch batch = new BoreholeBatch(layer, boreholes);
+
+		List<BoreholeSample> expected = new ArrayList<BoreholeSample>();
+		expected.addAll(boreholes.get(0).getSamples());
+		expected.addAll(boreholes.get(1).getSamples());
+		assertEquals(expected, batch.getSamples());
+
+		FastShape samplesShape = batch.getSamplesShape();
+		assertEquals(10, samplesShape.getPositions().size());
+		assertEquals(-10, samplesShape.getPositions().get(2).elevation, 0.001);
+		assertEquals(-20, samplesShape.getPositions().get(3).elevation, 0.001);
+		assertEquals(30, samplesShape.getColorBuffer().length);
+	}
+
+	@Test
+	public void testCoarseShapeSpansEachBorehole()
+	{
+		BoreholeImpl borehole = new BoreholeImpl(layer, Position.fromDegrees(-30, 130), new BasicMarkerAttributes());
+		borehole.addSample(createSample(borehole, 0, 5, Color.RED));
+		borehole.addSample(createSample(borehole, 5, 50, Color.GREEN));
+		borehole.addSample(createSample(borehole, 50, 60, Color.BLUE));
+		List<BoreholeImpl> boreholes = new ArrayList<BoreholeImpl>();
+		boreholes.add(borehole);
+
+		BoreholeBatch batch = new BoreholeBatch(layer, boreholes);
+
+		FastShape coarseShape = batch.getCoarseShape();
+		assertEquals(2, coarseShape.getPositions().size());
+		assertEquals(0, coarseShape.getPositions().get(0).elevation, 0.001);
+		assertEquals(-60, coarseShape.getPositions().get(1).elevation, 0.001);
+		assertArrayEquals(new float[] { 0, 1, 0, 0, 1, 0 }, coarseShape.getColorBuffer(), 0.001f);
+
+		FastShape centrelineShape = batch.getCentrelineShape();
+		assertEquals(2, centrelineShape.getPositions().size());
+		assertEquals(Color.LIGHT_GRAY, centrelineShape.getColor());
+	}
+
+	private BoreholeImpl createBorehole(double latitude, double longitude, int sampleCount)
+	{
+		BoreholeImpl borehole =
+				new BoreholeImpl(layer, Position.fromDegrees(latitude, longitude), new BasicMarkerAttributes());
+		for (int i = 0; i < sampleCount; i++)
+		{
+			borehole.addSample(createSample(borehole, i * 10, (i + 1) * 10, Color.RED));
+		}
+		return borehole;
+	}
+
+	private BoreholeSample createSample(Borehole b, double depthFrom, double depthTo, Color color)
+	{
+		BoreholeSampleImpl sample = new BoreholeSampleImpl(b);
+		sample.setColor(color);
+		sample.setDepthFrom(depthFrom);
+		sample.setDepthTo(depthTo);
+		return sample;
+	}
+}
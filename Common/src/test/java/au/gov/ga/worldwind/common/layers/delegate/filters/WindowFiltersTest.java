@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.delegate.filters;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.jhlabs.image.PixelUtils;
+
+/**
+ * Unit tests for the {@link WindowFilters} class, comparing the results with
+ * brute force calculations of each window.
+ */
+public class WindowFiltersTest
+{
+	private static final int WIDTH = 23;
+	private static final int HEIGHT = 17;
+
+	@Test
+	public void testBoxSumMatchesBruteForce()
+	{
+		int[] channel = randomChannel(new Random(1));
+		int[][] windows = { { 1, 1 }, { 3, 3 }, { 5, 1 }, { 1, 7 }, { 4, 6 }, { 31, 40 } };
+		for (int[] window : windows)
+		{
+			assertArrayEquals(bruteForceBoxSum(channel, window[0], window[1]),
+					WindowFilters.boxSum(channel, WIDTH, HEIGHT, window[0], window[1]));
+		}
+	}
+
+	@Test
+	public void testMinimumMaximumMatchBruteForce()
+	{
+		int[] channel = randomChannel(new Random(2));
+		int[][] radii = { { 0, 0 }, { 1, 1 }, { 2, 0 }, { 0, 3 }, { 4, 2 }, { 30, 30 } };
+		for (int[] radius : radii)
+		{
+			assertArrayEquals(bruteForceRank(channel, radius[0], radius[1], true),
+					WindowFilters.maximum(channel, WIDTH, HEIGHT, radius[0], radius[1]));
+			assertArrayEquals(bruteForceRank(channel, radius[0], radius[1], false),
+					WindowFilters.minimum(channel, WIDTH, HEIGHT, radius[0], radius[1]));
+		}
+	}
+
+	@Test
+	public void testTransparentRankMatchesCombinePixels()
+	{
+		Random random = new Random(3);
+		int[] pixels = new int[WIDTH * HEIGHT];
+		for (int i = 0; i < pixels.length; i++)
+		{
+			int alpha = random.nextInt(3) == 0 ? random.nextInt(256) : 255;
+			pixels[i] = alpha << 24 | (random.nextInt() & 0xffffff);
+		}
+
+		assertArrayEquals(bruteForceTransparentRank(pixels, true),
+				WindowFilters.transparentRank(WIDTH, HEIGHT, pixels, true));
+		assertArrayEquals(bruteForceTransparentRank(pixels, false),
+				WindowFilters.transparentRank(WIDTH, HEIGHT, pixels, false));
+	}
+
+	private static int[] randomChannel(Random random)
+	{
+		int[] channel = new int[WIDTH * HEIGHT];
+		for (int i = 0; i < channel.length; i++)
+		{
+			channel[i] = random.nextInt(256);
+		}
+		return channel;
+	}
+
+	private static int[] bruteForceBoxSum(int[] channel, int windowWidth, int windowHeight)
+	{
+		int[] sums = new int[channel.length];
+		for (int y = 0; y < HEIGHT; y++)
+		{
+			for (int x = 0; x < WIDTH; x++)
+			{
+				int sum = 0;
+				for (int wy = 0; wy < windowHeight; wy++)
+				{
+					int sy = clamp(y + wy - windowHeight / 2, HEIGHT);
+					for (int wx = 0; wx < windowWidth; wx++)
+					{
+						int sx = clamp(x + wx - windowWidth / 2, WIDTH);
+						sum += channel[sy * WIDTH + sx];
+					}
+				}
+				sums[y * WIDTH + x] = sum;
+			}
+		}
+		return sums;
+	}
+
+	private static int[] bruteForceRank(int[] channel, int radiusX, int radiusY, boolean maximum)
+	{
+		int[] result = new int[channel.length];
+		for (int y = 0; y < HEIGHT; y++)
+		{
+			for (int x = 0; x < WIDTH; x++)
+			{
+				int value = maximum ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+				for (int sy = Math.max(0, y - radiusY); sy <= Math.min(HEIGHT - 1, y + radiusY); sy++)
+				{
+					for (int sx = Math.max(0, x - radiusX); sx <= Math.min(WIDTH - 1, x + radiusX); sx++)
+					{
+						int v = channel[sy * WIDTH + sx];
+						value = maximum ? Math.max(value, v) : Math.min(value, v);
+					}
+				}
+				result[y * WIDTH + x] = value;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The original per-pixel implementation of the transparent filters.
+	 */
+	private static int[] bruteForceTransparentRank(int[] inPixels, boolean maximum)
+	{
+		int[] outPixels = new int[inPixels.length];
+		for (int y = 0; y < HEIGHT; y++)
+		{
+			for (int x = 0; x < WIDTH; x++)
+			{
+				int pixel = maximum ? inPixels[y * WIDTH + x] & 0xff000000 : inPixels[y * WIDTH + x] | 0xffffff;
+				for (int iy = y - 1; iy <= y + 1; iy++)
+				{
+					for (int ix = x - 1; ix <= x + 1; ix++)
+					{
+						if (0 <= iy && iy < HEIGHT && 0 <= ix && ix < WIDTH)
+						{
+							pixel =
+									PixelUtils.combinePixels(pixel, inPixels[iy * WIDTH + ix], maximum ? PixelUtils.MAX
+											: PixelUtils.MIN);
+						}
+					}
+				}
+				outPixels[y * WIDTH + x] = pixel;
+			}
+		}
+		return outPixels;
+	}
+
+	private static int clamp(int value, int size)
+	{
+		return value < 0 ? 0 : value >= size ? size - 1 : value;
+	}
+}
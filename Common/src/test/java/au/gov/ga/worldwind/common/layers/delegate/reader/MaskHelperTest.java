@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.delegate.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.common.layers.delegate.reader.MaskHelper.MaskInsideZipDelegate;
+
+/**
+ * Unit tests for the {@link MaskHelper} and {@link MaskArchive} classes.
+ */
+public class MaskHelperTest
+{
+	private File directory;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = File.createTempFile("maskhelper", "");
+		directory.delete();
+		directory.mkdir();
+		MaskArchive.clearCache();
+	}
+
+	@After
+	public void tearDown()
+	{
+		for (File file : directory.listFiles())
+		{
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testArchiveReadsStoredAndDeflatedEntries() throws IOException
+	{
+		Random random = new Random(1);
+		byte[] texture = new byte[20000];
+		random.nextBytes(texture);
+		byte[] mask = new byte[5000];
+		Arrays.fill(mask, (byte) 7);
+
+		File file = new File(directory, "tile.zip");
+		writeZip(file, new String[] { "tile.jpg", "tile.png" }, new byte[][] { texture, mask }, new boolean[] {
+				false, true });
+
+		MaskArchive archive = MaskArchive.get(file);
+		assertEquals(Arrays.asList("tile.jpg", "tile.png"), archive.getEntryNames());
+		assertArrayEquals(texture, archive.readEntry("tile.jpg"));
+		assertArrayEquals(mask, archive.readEntry("tile.png"));
+		assertNull(archive.readEntry("missing.png"));
+
+		//reading the whole stream should give the same result
+		InputStream is = new FileInputStream(file);
+		try
+		{
+			MaskArchive streamed = MaskArchive.read(is);
+			assertEquals(archive.getEntryNames(), streamed.getEntryNames());
+			assertArrayEquals(texture, streamed.readEntry("tile.jpg"));
+			assertArrayEquals(mask, streamed.readEntry("tile.png"));
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	@Test
+	public void testArchiveIsReindexedWhenModified() throws IOException
+	{
+		File file = new File(directory, "mask.zip");
+		writeZip(file, new String[] { "a.png" }, new byte[][] { { 1 } }, new boolean[] { false });
+		MaskArchive archive = MaskArchive.get(file);
+		assertTrue(archive == MaskArchive.get(file));
+
+		writeZip(file, new String[] { "a.png", "b.png" }, new byte[][] { { 1 }, { 2, 3 } }, new boolean[] { false,
+				false });
+		file.setLastModified(file.lastModified() + 2000);
+		assertEquals(Arrays.asList("a.png", "b.png"), MaskArchive.get(file).getEntryNames());
+	}
+
+	@Test
+	public void testFindEntries()
+	{
+		List<String> names = Arrays.asList("tile.jpg", "tile.png");
+		assertEquals("tile.png", MaskHelper.findMaskEntry(names));
+		assertEquals("tile.jpg", MaskHelper.findTextureEntry(names, "tile.png"));
+
+		names = Arrays.asList("texture.png", "tile_mask.png", "readme.txt");
+		assertEquals("tile_mask.png", MaskHelper.findMaskEntry(names));
+		assertEquals("texture.png", MaskHelper.findTextureEntry(names, "tile_mask.png"));
+
+		names = Arrays.asList("tile.png");
+		assertNull(MaskHelper.findMaskEntry(names));
+		assertEquals("tile.png", MaskHelper.findTextureEntry(names, null));
+	}
+
+	@Test
+	public void testZippedTileOnlyReadsTextureAndMask() throws IOException
+	{
+		File file = new File(directory, "0_0.zip");
+		writeZip(file, new String[] { "0_0.jpg", "0_0_mask.png", "extra.png" }, new byte[][] { { 1 }, { 2 }, { 3 } },
+				new boolean[] { false, false, false });
+
+		final List<String> read = new ArrayList<String>();
+		URL maskUrl = MaskHelper.getMaskURL(file.toURI().toURL(), 3, new MaskInsideZipDelegate()
+		{
+			@Override
+			public void readEntry(String name, InputStream is, boolean mask) throws IOException
+			{
+				read.add(name + (mask ? " mask" : " texture") + " " + is.read());
+			}
+		});
+
+		assertNull(maskUrl);
+		assertEquals(Arrays.asList("0_0.jpg texture 1", "0_0_mask.png mask 2"), read);
+	}
+
+	@Test
+	public void testMaskWithoutNameIsFoundByAlphaChannel() throws IOException
+	{
+		byte[] texture = png(BufferedImage.TYPE_INT_RGB);
+		byte[] mask = png(BufferedImage.TYPE_INT_ARGB);
+
+		File file = new File(directory, "r_c.zip");
+		writeZip(file, new String[] { "r_c.png", "r_c_a.png" }, new byte[][] { texture, mask }, new boolean[] {
+				false, false });
+
+		MaskArchive archive = MaskArchive.get(file);
+		assertEquals("r_c_a.png", MaskHelper.findMaskEntry(archive));
+		assertEquals("r_c.png", MaskHelper.findTextureEntry(archive.getEntryNames(), "r_c_a.png"));
+
+		//neither png has an alpha channel, so there is no mask
+		File opaque = new File(directory, "opaque.zip");
+		writeZip(opaque, new String[] { "r_c.png", "r_c_a.png" }, new byte[][] { texture, texture }, new boolean[] {
+				false, false });
+		assertNull(MaskHelper.findMaskEntry(MaskArchive.get(opaque)));
+
+		//a single png alongside the texture is the mask without reading it
+		File single = new File(directory, "single.zip");
+		writeZip(single, new String[] { "r_c.jpg", "r_c.png" }, new byte[][] { { 1 }, { 2 } }, new boolean[] {
+				false, false });
+		assertEquals("r_c.png", MaskHelper.findMaskEntry(MaskArchive.get(single)));
+	}
+
+	@Test
+	public void testReadImageFromZipUrl() throws IOException
+	{
+		BufferedImage image = new BufferedImage(4, 3, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(1, 2, 0x80ff0000);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", baos);
+
+		File file = new File(directory, "mask.zip");
+		writeZip(file, new String[] { "0/0_0.png" }, new byte[][] { baos.toByteArray() }, new boolean[] { false });
+
+		BufferedImage read = MaskHelper.readImage(new URL("jar:" + file.toURI().toURL() + "!/0/0_0.png"));
+		assertNotNull(read);
+		assertEquals(0x80ff0000, read.getRGB(1, 2));
+		assertNull(MaskHelper.readImage(new File(directory, "missing.png").toURI().toURL()));
+	}
+
+	@Test
+	public void testComposeMatchesAlphaComposite()
+	{
+		Random random = new Random(2);
+		int[] imageTypes =
+				{ BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+						BufferedImage.TYPE_4BYTE_ABGR };
+		int[] maskTypes = { BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_BYTE_GRAY };
+		for (int imageType : imageTypes)
+		{
+			for (int maskType : maskTypes)
+			{
+				BufferedImage image = randomImage(random, 16, 12, imageType);
+				BufferedImage mask = randomImage(random, 16, 12, maskType);
+
+				BufferedImage composed = MaskHelper.compose(image, mask);
+
+				BufferedImage expected = new BufferedImage(16, 12, BufferedImage.TYPE_INT_ARGB);
+				Graphics2D g2d = expected.createGraphics();
+				g2d.drawImage(mask, 0, 0, null);
+				g2d.setComposite(AlphaComposite.SrcIn);
+				g2d.drawImage(image, 0, 0, null);
+				g2d.dispose();
+
+				for (int y = 0; y < 12; y++)
+				{
+					for (int x = 0; x < 16; x++)
+					{
+						int e = expected.getRGB(x, y);
+						int c = composed.getRGB(x, y);
+						assertTrue(Math.abs((e >>> 24) - (c >>> 24)) <= 1);
+						if ((e >>> 24) == 0xff)
+						{
+							assertEquals(e, c);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static byte[] png(int type) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(4, 4, type), "png", baos);
+		return baos.toByteArray();
+	}
+
+	private static BufferedImage randomImage(Random random, int width, int height, int type)
+	{
+		BufferedImage image = new BufferedImage(width, height, type);
+		for (int y = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++)
+			{
+				int alpha = random.nextBoolean() ? 0xff : random.nextInt(256);
+				image.setRGB(x, y, alpha << 24 | (random.nextInt() & 0xffffff));
+			}
+		}
+		return image;
+	}
+
+	private static void writeZip(File file, String[] names, byte[][] contents, boolean[] stored) throws IOException
+	{
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file));
+		try
+		{
+			zos.setComment("tile");
+			for (int i = 0; i < names.length; i++)
+			{
+				ZipEntry entry = new ZipEntry(names[i]);
+				if (stored[i])
+				{
+					CRC32 crc = new CRC32();
+					crc.update(contents[i]);
+					entry.setMethod(ZipEntry.STORED);
+					entry.setSize(contents[i].length);
+					entry.setCrc(crc.getValue());
+				}
+				zos.putNextEntry(entry);
+				zos.write(contents[i]);
+				zos.closeEntry();
+			}
+		}
+		finally
+		{
+			zos.close();
+		}
+	}
+}
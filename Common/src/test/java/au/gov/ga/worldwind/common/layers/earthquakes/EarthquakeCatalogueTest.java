@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.earthquakes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link EarthquakeCatalogue} class
+ */
+public class EarthquakeCatalogueTest
+{
+	private EarthquakeCatalogue unsorted;
+
+	@Before
+	public void setup()
+	{
+		unsorted =
+				new EarthquakeCatalogue(new double[] { -10, -20, -30, -40, -50 },
+						new double[] { 110, 120, 130, 140, 150 }, new double[] { -1000, -2000, -3000, -4000, -5000 },
+						new double[] { 4.5, 2.0, 6.1, 3.3, 2.0 }, new long[] { 300, 100, 500, 200, 400 });
+	}
+
+	@Test
+	public void testSortByTime()
+	{
+		assertFalse(unsorted.isSortedByTime());
+
+		EarthquakeCatalogue sorted = unsorted.sortByTime();
+		assertTrue(sorted.isSortedByTime());
+		assertSame(sorted, sorted.sortByTime());
+		assertEquals(5, sorted.size());
+
+		long[] times = new long[sorted.size()];
+		double[] latitudes = new double[sorted.size()];
+		for (int i = 0; i < sorted.size(); i++)
+		{
+			times[i] = sorted.getTime(i);
+			latitudes[i] = sorted.getLatitude(i);
+		}
+		assertArrayEquals(new long[] { 100, 200, 300, 400, 500 }, times);
+		assertArrayEquals(new double[] { -20, -40, -10, -50, -30 }, latitudes, 0);
+		assertEquals(-4000, sorted.getPositions().get(1).elevation, 0);
+	}
+
+	@Test
+	public void testIndexOfTime()
+	{
+		EarthquakeCatalogue sorted = unsorted.sortByTime();
+		assertEquals(0, sorted.indexOfTime(Long.MIN_VALUE));
+		assertEquals(0, sorted.indexOfTime(100));
+		assertEquals(1, sorted.indexOfTime(101));
+		assertEquals(2, sorted.indexAfterTime(200));
+		assertEquals(5, sorted.indexOfTime(501));
+		assertEquals(5, sorted.indexAfterTime(Long.MAX_VALUE));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testIndexOfTimeRequiresSortedCatalogue()
+	{
+		unsorted.indexOfTime(100);
+	}
+
+	@Test
+	public void testFilter()
+	{
+		EarthquakeCatalogue sorted = unsorted.sortByTime();
+		//magnitudes in time order: 2.0, 3.3, 4.5, 2.0, 6.1
+		assertArrayEquals(new int[] { 0, 1, 2, 3, 4 },
+				sorted.filter(0, 5, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY));
+		assertArrayEquals(new int[] { 1, 2 }, sorted.filter(1, 4, 3.0, Double.POSITIVE_INFINITY));
+		assertArrayEquals(new int[] { 0, 3 }, sorted.filter(0, 5, 2.0, 2.0));
+		assertArrayEquals(new int[] { 4 }, sorted.filter(0, 5, 6.1, 10));
+		assertArrayEquals(new int[] { 0, 1, 3 }, sorted.filter(0, 5, Double.NEGATIVE_INFINITY, 4.0));
+		assertArrayEquals(new int[0], sorted.filter(3, 3, 0, 10));
+		assertArrayEquals(new int[0], sorted.filter(0, 5, 7, 10));
+	}
+
+	@Test
+	public void testWriteAndRead() throws Exception
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		unsorted.write(output);
+		assertEquals(16 + 5 * 40, output.size());
+
+		EarthquakeCatalogue read = EarthquakeCatalogue.read(new ByteArrayInputStream(output.toByteArray()));
+		assertCatalogueEquals(unsorted.sortByTime(), read);
+	}
+
+	@Test
+	public void testReadRecords() throws Exception
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(output);
+		for (int i = 0; i < unsorted.size(); i++)
+		{
+			oos.writeDouble(unsorted.getLatitude(i));
+			oos.writeDouble(unsorted.getLongitude(i));
+			oos.writeDouble(unsorted.getElevation(i));
+			oos.writeDouble(unsorted.getMagnitude(i));
+			oos.writeLong(unsorted.getTime(i));
+		}
+		oos.close();
+
+		EarthquakeCatalogue read = EarthquakeCatalogue.read(new ByteArrayInputStream(output.toByteArray()));
+		assertCatalogueEquals(unsorted.sortByTime(), read);
+	}
+
+	@Test
+	public void testMap() throws Exception
+	{
+		File file = File.createTempFile("earthquakes", EarthquakeCatalogue.FILE_EXTENSION);
+		try
+		{
+			OutputStream os = new FileOutputStream(file);
+			try
+			{
+				unsorted.write(os);
+			}
+			finally
+			{
+				os.close();
+			}
+
+			assertTrue(EarthquakeCatalogue.isCatalogueFile(file));
+			assertCatalogueEquals(unsorted.sortByTime(), EarthquakeCatalogue.map(file));
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	private void assertCatalogueEquals(EarthquakeCatalogue expected, EarthquakeCatalogue actual)
+	{
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+		{
+			assertEquals(expected.getLatitude(i), actual.getLatitude(i), 0);
+			assertEquals(expected.getLongitude(i), actual.getLongitude(i), 0);
+			assertEquals(expected.getElevation(i), actual.getElevation(i), 0);
+			assertEquals(expected.getMagnitude(i), actual.getMagnitude(i), 0);
+			assertEquals(expected.getTime(i), actual.getTime(i));
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package au.gov.ga.worldwind.common.layers.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.avlist.AVListImpl;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.util.BufferWrapper;
+import gov.nasa.worldwind.util.VecBuffer;
+
+import java.nio.DoubleBuffer;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.common.layers.Bounds;
+import au.gov.ga.worldwind.common.layers.geometry.Shape.ShapePoint;
+import au.gov.ga.worldwind.common.layers.geometry.Shape.Type;
+
+/**
+ * Unit tests for the {@link PackedShapeImpl} class
+ */
+public class PackedShapeImplTest
+{
+	private static final double ALLOWABLE_ERROR = 0.0000001;
+
+	private AVList attributeValues;
+	private PackedShapeImpl classToTest;
+
+	@Before
+	public void setup()
+	{
+		attributeValues = new AVListImpl();
+		attributeValues.setValue("NAME", "shape");
+		classToTest = new PackedShapeImpl("id", Type.LINE, attributeValues);
+	}
+
+	@Test
+	public void testEmptyShape()
+	{
+		assertEquals(0, classToTest.getPointCount());
+		assertEquals(0, classToTest.getPartCount());
+		assertEquals(0, classToTest.getPoints().size());
+		assertNull(classToTest.getBounds());
+	}
+
+	@Test
+	public void testAddPartsFromBuffers()
+	{
+		//buffers are in lon/lat order
+		classToTest.addPart(createBuffer(2, 130, -20, 131, -21, 132, -19));
+		classToTest.addPart(createBuffer(3, 140, -30, 100, 141, -31, 200));
+
+		assertEquals(5, classToTest.getPointCount());
+		assertEquals(2, classToTest.getPartCount());
+		assertEquals(0, classToTest.getPartStart(0));
+		assertEquals(3, classToTest.getPartStart(1));
+
+		assertEquals(-21, classToTest.getLatitude(1), ALLOWABLE_ERROR);
+		assertEquals(131, classToTest.getLongitude(1), ALLOWABLE_ERROR);
+		assertEquals(0, classToTest.getElevation(1), ALLOWABLE_ERROR);
+		assertEquals(200, classToTest.getElevation(4), ALLOWABLE_ERROR);
+
+		assertBounds(classToTest.getPartBounds(0), -21, -19, 130, 132);
+		assertBounds(classToTest.getPartBounds(1), -31, -30, 140, 141);
+		assertBounds(classToTest.getBounds(), -31, -19, 130, 141);
+		assertEquals(200, classToTest.getBounds().maximum.elevation, ALLOWABLE_ERROR);
+	}
+
+	@Test
+	public void testPointsShareAttributeValues()
+	{
+		classToTest.addPart(createBuffer(2, 130, -20, 131, -21));
+
+		List<? extends ShapePoint> points = classToTest.getPoints();
+		assertEquals(2, points.size());
+		assertEquals(-21, points.get(1).latitude.degrees, ALLOWABLE_ERROR);
+		assertEquals(131, points.get(1).longitude.degrees, ALLOWABLE_ERROR);
+		assertEquals("shape", points.get(0).getAttributeValue("NAME"));
+
+		attributeValues.setValue("NAME", "changed");
+		assertEquals("changed", points.get(1).getAttributeValue("NAME"));
+		assertSame(attributeValues, classToTest.getAttributeValues());
+	}
+
+	@Test
+	public void testAddPoint()
+	{
+		classToTest.addPoint(Position.fromDegrees(-10, 120, 5), null);
+		classToTest.addPoint(null, null);
+		classToTest.addPoint(-11, 121, 6);
+
+		assertEquals(2, classToTest.getPointCount());
+		assertEquals(1, classToTest.getPartCount());
+		assertBounds(classToTest.getBounds(), -11, -10, 120, 121);
+	}
+
+	private static VecBuffer createBuffer(int coordsPerVec, double... coords)
+	{
+		return new VecBuffer(coordsPerVec, new BufferWrapper.DoubleBufferWrapper(DoubleBuffer.wrap(coords)));
+	}
+
+	private static void assertBounds(Bounds bounds, double minLat, double maxLat, double minLon, double maxLon)
+	{
+		assertEquals(minLat, bounds.minimum.latitude.degrees, ALLOWABLE_ERROR);
+		assertEquals(maxLat, bounds.maximum.latitude.degrees, ALLOWABLE_ERROR);
+		assertEquals(minLon, bounds.minimum.longitude.degrees, ALLOWABLE_ERROR);
+		assertEquals(maxLon, bounds.maximum.longitude.degrees, ALLOWABLE_ERROR);
+	}
+}
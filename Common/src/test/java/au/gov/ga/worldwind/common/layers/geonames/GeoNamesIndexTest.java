@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.geonames;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.geom.Sector;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.common.util.ColorFont;
+
+/**
+ * Unit tests for the {@link GeoNamesIndex} and {@link GeoNamesIndexBuilder}
+ * classes
+ */
+public class GeoNamesIndexTest
+{
+	private static final String DUMP = line(1, "Oceania", -18, 139, 'L', "CONT", 0)
+			+ line(2, "Australia", -25, 135, 'A', "PCLI", 21515754)
+			+ line(3, "Canberra", -35.28f, 149.13f, 'P', "PPLC", 367752)
+			+ line(4, "Queensland", -20, 145, 'A', "ADM1", 4516361)
+			+ line(5, "Brisbane", -27.47f, 153.03f, 'P', "PPLA", 958504)
+			+ line(6, "Mount Isa", -20.73f, 139.49f, 'P', "PPL", 21237)
+			+ line(7, "Lake Eyre", -28.37f, 137.37f, 'H', "LK", 0)
+			+ line(8, "Nowhere", -25.5f, 135.5f, 'P', "PPL", 0)
+			+ "invalid line\n";
+
+	private File file;
+	private GeoNamesIndex classToBeTested;
+
+	@Before
+	public void setup() throws IOException
+	{
+		file = File.createTempFile("geonames", ".idx");
+		GeoNamesIndexBuilder builder = new GeoNamesIndexBuilder();
+		builder.addDump(new ByteArrayInputStream(DUMP.getBytes("UTF-8")));
+
+		//many small towns in the same level 5 tile as Mount Isa
+		for (int i = 0; i < 40; i++)
+		{
+			builder.add(100 + i, "Town " + i, -20.5f - i * 0.01f, 139.5f, 'P', "PPL", 1000 + i);
+		}
+		builder.write(file);
+
+		ColorFontProvider fontProvider =
+				new ColorFontProvider(new ColorFont(Font.decode("Arial-PLAIN-10"), Color.white, Color.black));
+		classToBeTested = new GeoNamesIndex(file, fontProvider, new VisibilityCalculatorImpl());
+	}
+
+	@After
+	public void tearDown()
+	{
+		classToBeTested = null;
+		file.delete();
+	}
+
+	@Test
+	public void testLevelsAssignedByFeatureCodeAndPopulation()
+	{
+		Map<String, GeoName> names = getNames(Sector.FULL_SPHERE, classToBeTested.getLevelCount() - 1);
+
+		assertEquals(0, names.get("Oceania").level);
+		assertEquals(1, names.get("Australia").level);
+		assertEquals(1, names.get("Canberra").level);
+		assertEquals(2, names.get("Queensland").level);
+		assertEquals(2, names.get("Brisbane").level);
+		assertEquals(4, names.get("Mount Isa").level);
+		assertEquals(6, names.get("Nowhere").level);
+		assertEquals("P", names.get("Canberra").featureClass);
+		assertEquals("PPLC", names.get("Canberra").featureCode);
+		assertEquals(3, names.get("Canberra").geonameId);
+		assertEquals(-35.28, names.get("Canberra").latlon.getLatitude().degrees, 1e-4);
+		assertEquals(149.13, names.get("Canberra").latlon.getLongitude().degrees, 1e-4);
+
+		//feature class H is not indexed by default
+		assertFalse(names.containsKey("Lake Eyre"));
+	}
+
+	@Test
+	public void testFullTilesMoveNamesToNextLevel()
+	{
+		Map<String, GeoName> names = getNames(Sector.FULL_SPHERE, classToBeTested.getLevelCount() - 1);
+
+		int level5 = 0;
+		for (int i = 0; i < 40; i++)
+		{
+			GeoName town = names.get("Town " + i);
+			if (town.level == 5)
+			{
+				level5++;
+			}
+			else
+			{
+				//the most populous towns are kept in level 5
+				assertEquals(6, town.level);
+				assertTrue(i < 40 - GeoNamesIndexBuilder.DEFAULT_NAMES_PER_TILE);
+			}
+		}
+		assertEquals(GeoNamesIndexBuilder.DEFAULT_NAMES_PER_TILE, level5);
+	}
+
+	@Test
+	public void testSectorQuery()
+	{
+		Map<String, GeoName> names = getNames(Sector.fromDegrees(-36, -34, 148, 150), 3);
+		assertTrue(names.containsKey("Canberra"));
+		assertFalse(names.containsKey("Queensland"));
+		assertFalse(names.containsKey("Mount Isa"));
+		assertFalse(names.containsKey("Nowhere"));
+
+		names = getNames(Sector.fromDegrees(-21, -20, 139, 140), 4);
+		assertTrue(names.containsKey("Mount Isa"));
+		assertFalse(names.containsKey("Town 0"));
+		assertFalse(names.containsKey("Canberra"));
+	}
+
+	@Test
+	public void testTilesAreCached()
+	{
+		List<GeoName> first = new ArrayList<GeoName>();
+		List<GeoName> second = new ArrayList<GeoName>();
+		classToBeTested.getNames(Sector.FULL_SPHERE, 2, first);
+		classToBeTested.getNames(Sector.FULL_SPHERE, 2, second);
+
+		assertEquals(first.size(), second.size());
+		for (int i = 0; i < first.size(); i++)
+		{
+			assertSame(first.get(i), second.get(i));
+		}
+	}
+
+	@Test
+	public void testLevelForSector()
+	{
+		assertEquals(0, classToBeTested.getLevelForSector(Sector.FULL_SPHERE, 8));
+		assertEquals(2, classToBeTested.getLevelForSector(Sector.fromDegrees(-30, 30, 0, 60), 8));
+		assertEquals(6, classToBeTested.getLevelForSector(Sector.fromDegrees(-1, 0, 0, 1), 8));
+	}
+
+	private Map<String, GeoName> getNames(Sector sector, int maxLevel)
+	{
+		List<GeoName> list = new ArrayList<GeoName>();
+		classToBeTested.getNames(sector, maxLevel, list);
+		Map<String, GeoName> names = new HashMap<String, GeoName>();
+		for (GeoName name : list)
+		{
+			names.put(name.name, name);
+		}
+		return names;
+	}
+
+	private static String line(int id, String name, float lat, float lon, char featureClass, String featureCode,
+			int population)
+	{
+		return id + "\t" + name + "\t" + name + "\t\t" + lat + "\t" + lon + "\t" + featureClass + "\t" + featureCode
+				+ "\tAU\t\t\t\t\t\t" + population + "\t\t\tAustralia/Sydney\t2012-01-01\n";
+	}
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.model.gdal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link RasterModelTile} class
+ */
+public class RasterModelTileTest
+{
+	@Test
+	public void testSmallRasterFitsInRootTile()
+	{
+		RasterModelTile root = RasterModelTile.createRoot(76, 52, 256);
+
+		assertEquals(1, root.getStep());
+		assertEquals(76, root.getSampleColumns());
+		assertEquals(52, root.getSampleRows());
+		assertNull(root.getChildren());
+	}
+
+	@Test
+	public void testRootStepCoversRaster()
+	{
+		RasterModelTile root = RasterModelTile.createRoot(1000, 600, 256);
+
+		assertEquals(4, root.getStep());
+		assertEquals(251, root.getSampleColumns());
+		assertEquals(151, root.getSampleRows());
+
+		//last sample should always be the edge pixel
+		assertEquals(0, root.getSampleX(0));
+		assertEquals(996, root.getSampleX(249));
+		assertEquals(999, root.getSampleX(250));
+		assertEquals(599, root.getSampleY(150));
+	}
+
+	@Test
+	public void testChildrenShareEdges()
+	{
+		RasterModelTile root = RasterModelTile.createRoot(1000, 600, 256);
+		RasterModelTile[] children = root.getChildren();
+
+		assertEquals(4, children.length);
+		assertTile(children[0], 0, 0, 513, 513, 2);
+		assertTile(children[1], 512, 0, 488, 513, 2);
+		assertTile(children[2], 0, 512, 513, 88, 2);
+		assertTile(children[3], 512, 512, 488, 88, 2);
+	}
+
+	@Test
+	public void testLeafTilesCoverRaster()
+	{
+		int width = 1500, height = 700;
+		boolean[][] covered = new boolean[width][height];
+		int leaves = coverLeaves(RasterModelTile.createRoot(width, height, 256), covered);
+
+		assertEquals(6 * 3, leaves);
+		for (int x = 0; x < width; x++)
+		{
+			for (int y = 0; y < height; y++)
+			{
+				assertEquals(true, covered[x][y]);
+			}
+		}
+	}
+
+	@Test
+	public void testNarrowRasterOnlyHasChildrenAlongLength()
+	{
+		RasterModelTile root = RasterModelTile.createRoot(2000, 100, 256);
+		RasterModelTile[] children = root.getChildren();
+
+		assertEquals(2, children.length);
+		assertTile(children[0], 0, 0, 1025, 100, 4);
+		assertTile(children[1], 1024, 0, 976, 100, 4);
+	}
+
+	private int coverLeaves(RasterModelTile tile, boolean[][] covered)
+	{
+		RasterModelTile[] children = tile.getChildren();
+		if (children == null)
+		{
+			for (int v = 0; v < tile.getSampleRows(); v++)
+			{
+				for (int u = 0; u < tile.getSampleColumns(); u++)
+				{
+					covered[tile.getSampleX(u)][tile.getSampleY(v)] = true;
+				}
+			}
+			return 1;
+		}
+
+		int count = 0;
+		for (RasterModelTile child : children)
+		{
+			assertEquals(tile.getLevel() + 1, child.getLevel());
+			count += coverLeaves(child, covered);
+		}
+		return count;
+	}
+
+	private void assertTile(RasterModelTile tile, int x, int y, int width, int height, int step)
+	{
+		assertEquals(x, tile.getX());
+		assertEquals(y, tile.getY());
+		assertEquals(width, tile.getWidth());
+		assertEquals(height, tile.getHeight());
+		assertEquals(step, tile.getStep());
+	}
+}
@@ -0,0 +1,125 @@
+package au.gov.ga.worldwind.common.layers.point;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Sector;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link PointIndex} class
+ */
+public class PointIndexTest
+{
+	private static final int POINT_COUNT = 10000;
+	private static final double CELL_SIZE = 30;
+
+	private PointIndex<Integer> classToTest;
+	private double[] lats = new double[POINT_COUNT];
+	private double[] lons = new double[POINT_COUNT];
+
+	@Before
+	public void setup()
+	{
+		classToTest = new PointIndex<Integer>();
+
+		Random random = new Random(0);
+		for (int i = 0; i < POINT_COUNT; i++)
+		{
+			lats[i] = random.nextDouble() * 180 - 90;
+			lons[i] = random.nextDouble() * 360 - 180;
+			classToTest.add(LatLon.fromDegrees(lats[i], lons[i]), i);
+		}
+	}
+
+	@Test
+	public void testNothingReturnedBeforeBuild()
+	{
+		List<Integer> result = new ArrayList<Integer>();
+		classToTest.query(Sector.FULL_SPHERE, 0, result);
+
+		assertFalse(classToTest.isBuilt());
+		assertTrue(result.isEmpty());
+	}
+
+	@Test
+	public void testQueryWithoutClusteringReturnsAllPointsInSector()
+	{
+		classToTest.build();
+		Sector sector = Sector.fromDegrees(-10, 20, 30, 75);
+
+		List<Integer> result = new ArrayList<Integer>();
+		classToTest.query(sector, 0, result);
+
+		Set<Integer> expected = new HashSet<Integer>();
+		for (int i = 0; i < POINT_COUNT; i++)
+		{
+			if (sector.contains(LatLon.fromDegrees(lats[i], lons[i])))
+			{
+				expected.add(i);
+			}
+		}
+
+		assertEquals(POINT_COUNT, classToTest.size());
+		assertEquals(expected.size(), result.size());
+		assertEquals(expected, new HashSet<Integer>(result));
+	}
+
+	@Test
+	public void testQueryWithClusteringReducesPoints()
+	{
+		classToTest.build();
+
+		List<Integer> all = new ArrayList<Integer>();
+		classToTest.query(Sector.FULL_SPHERE, 0, all);
+		List<Integer> clustered = new ArrayList<Integer>();
+		classToTest.query(Sector.FULL_SPHERE, CELL_SIZE, clustered);
+
+		assertEquals(POINT_COUNT, all.size());
+		assertTrue(clustered.size() < all.size() / 10);
+		assertEquals(clustered.size(), new HashSet<Integer>(clustered).size());
+
+		//every point should be within a cell size of a clustered point
+		for (int i = 0; i < POINT_COUNT; i++)
+		{
+			boolean represented = false;
+			for (int j : clustered)
+			{
+				if (Math.abs(lats[i] - lats[j]) <= CELL_SIZE && Math.abs(lons[i] - lons[j]) <= CELL_SIZE)
+				{
+					represented = true;
+					break;
+				}
+			}
+			assertTrue(represented);
+		}
+	}
+
+	@Test
+	public void testDuplicatePositions()
+	{
+		PointIndex<Integer> index = new PointIndex<Integer>();
+		for (int i = 0; i < 1000; i++)
+		{
+			index.add(LatLon.fromDegrees(1, 2), i);
+		}
+		index.build();
+
+		List<Integer> result = new ArrayList<Integer>();
+		index.query(Sector.fromDegrees(0, 2, 1, 3), 0, result);
+		assertEquals(1000, result.size());
+
+		result.clear();
+		index.query(Sector.fromDegrees(0, 2, 1, 3), 1, result);
+		assertEquals(1, result.size());
+	}
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.styled;
+
+import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.avlist.AVListImpl;
+import gov.nasa.worldwind.render.markers.BasicMarkerAttributes;
+import gov.nasa.worldwind.render.markers.MarkerAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simple benchmark of the per-feature cost of styling a
+ * {@link BasicMarkerAttributes} object, as done by the MarkerPointLayer for
+ * each point.
+ * <p/>
+ * Compares a {@link Style} that is reused for every feature (so the setter
+ * plan is resolved once) with a new {@link Style} per feature (so the setter
+ * methods are resolved by reflection for every feature, as was previously
+ * always the case).
+ */
+public class StyleBenchmark
+{
+	private static final int FEATURE_COUNT = 500000;
+	private static final int RUNS = 3;
+
+	public static void main(String[] args)
+	{
+		BasicStyleProvider provider = new BasicStyleProvider();
+		List<Style> styles = new ArrayList<Style>();
+		styles.add(createStyle("default", true));
+		provider.setStyles(styles);
+		provider.setAttributes(new ArrayList<Attribute>());
+
+		AVList[] attributeValues = new AVList[16];
+		for (int i = 0; i < attributeValues.length; i++)
+		{
+			attributeValues[i] = new AVListImpl();
+			attributeValues[i].setValue("size", Integer.toString(i + 4));
+		}
+
+		for (int run = 0; run < RUNS; run++)
+		{
+			report("Reused style", runReused(provider, attributeValues));
+			report("Style per feature", runUncached(attributeValues));
+		}
+	}
+
+	private static Style createStyle(String name, boolean defalt)
+	{
+		Style style = new Style(name, defalt);
+		style.addProperty("material", "255,128,0");
+		style.addProperty("opacity", "0.8");
+		style.addProperty("shapeType", "Sphere");
+		style.addProperty("markerPixels", "%size%");
+		style.addProperty("minMarkerSize", "2");
+		return style;
+	}
+
+	private static void report(String name, long nanos)
+	{
+		System.out.println(String.format("%-20s %8.0f ms %10.0f ns/feature", name, nanos / 1e6, nanos
+				/ (double) FEATURE_COUNT));
+	}
+
+	private static long runReused(StyleProvider provider, AVList[] attributeValues)
+	{
+		long start = System.nanoTime();
+		for (int i = 0; i < FEATURE_COUNT; i++)
+		{
+			AVList values = attributeValues[i % attributeValues.length];
+			MarkerAttributes attributes = new BasicMarkerAttributes();
+			provider.getStyle(values).style.setPropertiesFromAttributes(null, values, attributes);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long runUncached(AVList[] attributeValues)
+	{
+		long start = System.nanoTime();
+		for (int i = 0; i < FEATURE_COUNT; i++)
+		{
+			AVList values = attributeValues[i % attributeValues.length];
+			MarkerAttributes attributes = new BasicMarkerAttributes();
+			createStyle(null, true).setPropertiesFromAttributes(null, values, attributes);
+		}
+		return System.nanoTime() - start;
+	}
+}
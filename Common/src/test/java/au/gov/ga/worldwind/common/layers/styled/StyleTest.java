@@ -178,6 +178,64 @@ public class StyleTest
 		assertEquals(new Dimension(300,400), bean.getObject(4));
 	}
 	
+	@Test
+	public void testSetPropertiesFromAttributesWithCachedPlan()
+	{
+		classToTest.addProperty("littleIInteger", "%int%");
+		classToTest.addProperty("point", "1,2");
+		classToTest.addProperty("color", "0,0,255");
+		
+		AVList attributeValues = new AVListImpl();
+		ComplexDummyBean complexBean1 = new ComplexDummyBean();
+		SimpleDummyBean simpleBean1 = new SimpleDummyBean();
+		attributeValues.setValue("int", "1");
+		classToTest.setPropertiesFromAttributes(null, attributeValues, simpleBean1, complexBean1);
+		
+		ComplexDummyBean complexBean2 = new ComplexDummyBean();
+		SimpleDummyBean simpleBean2 = new SimpleDummyBean();
+		attributeValues.setValue("int", "2");
+		classToTest.setPropertiesFromAttributes(null, attributeValues, simpleBean2, complexBean2);
+		
+		assertEquals(1, simpleBean1.getLittleIInteger());
+		assertEquals(2, simpleBean2.getLittleIInteger());
+		assertEquals(new Point(1,2), complexBean1.getPoint());
+		assertEquals(new Point(1,2), complexBean2.getPoint());
+		assertTrue(complexBean1.getPoint() != complexBean2.getPoint());
+		assertEquals(new Color(0,0,255), complexBean2.getColor());
+	}
+	
+	@Test
+	public void testAddPropertyAfterSettingProperties()
+	{
+		classToTest.addProperty("string", "first");
+		
+		SimpleDummyBean bean = new SimpleDummyBean();
+		classToTest.setPropertiesFromAttributes(null, null, bean);
+		assertEquals("first", bean.getString());
+		
+		classToTest.addProperty("string", "second");
+		classToTest.addProperty("littleIInteger", "5");
+		classToTest.setPropertiesFromAttributes(null, null, bean);
+		assertEquals("second", bean.getString());
+		assertEquals(5, bean.getLittleIInteger());
+	}
+	
+	@Test
+	public void testSetPropertiesFromAttributesWithMissingAttribute()
+	{
+		classToTest.addProperty("string", "%missing%");
+		
+		try
+		{
+			classToTest.setPropertiesFromAttributes(null, new AVListImpl(), new SimpleDummyBean());
+			fail("Expected exception but got none");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals("Could not find attribute 'missing'", e.getMessage());
+		}
+	}
+	
 	/**
 	 * A dummy bean used to test type override setters
 	 */
@@ -0,0 +1,527 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.tiled.image.delegate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.avlist.AVListImpl;
+import gov.nasa.worldwind.cache.BasicDataFileStore;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.layers.TextureTile;
+import gov.nasa.worldwind.retrieve.HTTPRetriever;
+import gov.nasa.worldwind.util.Level;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jogamp.opengl.util.texture.TextureData;
+
+/**
+ * Unit tests for the {@link FileLockSharer} and {@link CacheFileLock} classes.
+ * <p/>
+ * Tiles are read through {@link DelegatorTiledImageLayer#loadTexture} and
+ * written through the layer's {@link DelegatorTiledImageLayer.DownloadPostProcessor},
+ * against a temporary data file store.
+ */
+public class FileLockSharerTest
+{
+	private static final int THREADS = 8;
+	private static final int TILE_SIZE = 64;
+	private static final long HOLD_MILLIS = 50;
+
+	private ExecutorService executor;
+	private File directory;
+	private TestLayer layer;
+
+	@Before
+	public void setup() throws IOException
+	{
+		executor = Executors.newFixedThreadPool(THREADS);
+		directory = File.createTempFile("filelocksharer", "");
+		directory.delete();
+		directory.mkdir();
+		layer = createLayer(directory.getName());
+	}
+
+	@After
+	public void tearDown()
+	{
+		executor.shutdownNow();
+		delete(directory);
+	}
+
+	@Test
+	public void testConcurrentGetLockReturnsSameLock() throws Exception
+	{
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<CacheFileLock>> futures = new ArrayList<Future<CacheFileLock>>();
+		for (int i = 0; i < THREADS * 4; i++)
+		{
+			futures.add(executor.submit(new Callable<CacheFileLock>()
+			{
+				@Override
+				public CacheFileLock call() throws Exception
+				{
+					start.await();
+					return FileLockSharer.getLock("concurrent/cache");
+				}
+			}));
+		}
+		start.countDown();
+
+		Set<CacheFileLock> locks = new HashSet<CacheFileLock>();
+		for (Future<CacheFileLock> future : futures)
+		{
+			locks.add(future.get());
+		}
+		assertEquals(1, locks.size());
+		assertSame(locks.iterator().next(), FileLockSharer.getLock("concurrent/cache"));
+	}
+
+	@Test
+	public void testLayersWithSameCacheNameShareLock()
+	{
+		assertSame(layer.fileLock, createLayer(directory.getName()).fileLock);
+		assertNotSame(layer.fileLock, createLayer(directory.getName() + "other").fileLock);
+	}
+
+	@Test
+	public void testHeldLocksAreNotForgotten() throws Exception
+	{
+		CacheFileLock held = FileLockSharer.getLock("held/cache");
+		for (int i = 0; i < 100; i++)
+		{
+			FileLockSharer.getLock("unused/cache/" + i);
+		}
+
+		//the garbage collector may or may not clear the unused locks, but never one that is still referenced
+		System.gc();
+		assertSame(held, FileLockSharer.getLock("held/cache"));
+		assertSame(layer.fileLock, createLayer(directory.getName()).fileLock);
+	}
+
+	@Test
+	public void testUnusedLocksAreReleased() throws Exception
+	{
+		List<CacheFileLock> locks = new ArrayList<CacheFileLock>();
+		for (int i = 0; i < 100; i++)
+		{
+			locks.add(FileLockSharer.getLock("released/cache/" + i));
+		}
+		int expected = FileLockSharer.getLockCount() - locks.size();
+		assertTrue(expected >= 0);
+
+		//once nothing references the locks, they should be forgotten when they are collected
+		locks = null;
+		for (int i = 0; i < 100 && FileLockSharer.getLockCount() > expected; i++)
+		{
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertTrue(FileLockSharer.getLockCount() <= expected);
+	}
+
+	@Test
+	public void testReadWaitsForDownloadedTileToBeSaved() throws Exception
+	{
+		final DelegatorTextureTile tile = createTile(0, 0);
+		download(tile, 1);
+		layer.fileLock.resetStatistics();
+
+		layer.fileLock.lockWrite(tile.getPath());
+		Thread reader;
+		try
+		{
+			reader = start(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					layer.loadTexture(tile, getURL(tile));
+				}
+			});
+			awaitBlocked(reader);
+			Thread.sleep(HOLD_MILLIS);
+			assertEquals(0, layer.readCount);
+		}
+		finally
+		{
+			layer.fileLock.unlockWrite(tile.getPath());
+		}
+		reader.join();
+
+		assertEquals(1, layer.readCount);
+		assertNull(layer.failure, layer.failure);
+		assertEquals(1, layer.fileLock.getReadCount());
+		assertEquals(1, layer.fileLock.getContendedCount());
+		assertTrue(layer.fileLock.getWaitTimeMillis() >= HOLD_MILLIS);
+	}
+
+	@Test
+	public void testDownloadWaitsForTextureReads() throws Exception
+	{
+		final DelegatorTextureTile tile = createTile(1, 2);
+		final File file = getFile(tile);
+
+		layer.fileLock.lockRead(tile.getPath());
+		Thread writer;
+		try
+		{
+			writer = start(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					download(tile, 1);
+				}
+			});
+			awaitBlocked(writer);
+			Thread.sleep(HOLD_MILLIS);
+			assertFalse(file.exists());
+		}
+		finally
+		{
+			layer.fileLock.unlockRead(tile.getPath());
+		}
+		writer.join();
+
+		assertTrue(file.exists());
+		assertEquals(1, layer.fileLock.getWriteCount());
+		assertEquals(1, layer.fileLock.getContendedCount());
+		assertTrue(layer.fileLock.getWaitTimeMillis() >= HOLD_MILLIS);
+	}
+
+	@Test
+	public void testDownloadDoesNotBlockReadsOfOtherTiles() throws Exception
+	{
+		DelegatorTextureTile downloading = createTile(0, 0);
+		DelegatorTextureTile other = null;
+		for (int col = 1; other == null; col++)
+		{
+			DelegatorTextureTile tile = createTile(0, col);
+			if (layer.fileLock.getStripe(tile.getPath()) != layer.fileLock.getStripe(downloading.getPath()))
+			{
+				other = tile;
+			}
+		}
+		final DelegatorTextureTile read = other;
+		download(read, 1);
+		layer.fileLock.resetStatistics();
+
+		layer.fileLock.lockWrite(downloading.getPath());
+		try
+		{
+			Thread reader = start(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					layer.loadTexture(read, getURL(read));
+				}
+			});
+			reader.join();
+		}
+		finally
+		{
+			layer.fileLock.unlockWrite(downloading.getPath());
+		}
+
+		assertEquals(1, layer.readCount);
+		assertNull(layer.failure, layer.failure);
+		assertEquals(0, layer.fileLock.getContendedCount());
+		assertEquals(0, layer.fileLock.getWaitTimeMillis());
+	}
+
+	@Test
+	public void testReadersNeverSeePartiallyWrittenTiles() throws Exception
+	{
+		final int tileCount = 6;
+		final int iterations = 100;
+		final DelegatorTextureTile[] tiles = new DelegatorTextureTile[tileCount];
+		for (int i = 0; i < tileCount; i++)
+		{
+			tiles[i] = createTile(i / 3, i % 3);
+			download(tiles[i], 0);
+		}
+		layer.fileLock.resetStatistics();
+
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int t = 0; t < THREADS; t++)
+		{
+			final boolean writer = t % 4 == 0;
+			final int thread = t;
+			futures.add(executor.submit(new Callable<Void>()
+			{
+				@Override
+				public Void call() throws Exception
+				{
+					start.await();
+					for (int i = 0; i < iterations; i++)
+					{
+						DelegatorTextureTile tile = tiles[(thread + i) % tileCount];
+						if (writer)
+						{
+							download(tile, i);
+						}
+						else
+						{
+							layer.loadTexture(tile, getURL(tile));
+						}
+					}
+					return null;
+				}
+			}));
+		}
+		start.countDown();
+
+		for (Future<Void> future : futures)
+		{
+			future.get();
+		}
+		int writers = THREADS / 4;
+		assertNull(layer.failure, layer.failure);
+		assertEquals((THREADS - writers) * iterations, layer.readCount);
+		assertEquals(writers * iterations, layer.fileLock.getWriteCount());
+		assertEquals((THREADS - writers) * iterations, layer.fileLock.getReadCount());
+	}
+
+	private TestLayer createLayer(String cacheName)
+	{
+		AVList params = new AVListImpl();
+		params.setValue(AVKey.DATA_CACHE_NAME, cacheName);
+		params.setValue(AVKey.DATASET_NAME, "test");
+		params.setValue(AVKey.FORMAT_SUFFIX, ".png");
+		params.setValue(AVKey.NUM_LEVELS, 4);
+		params.setValue(AVKey.NUM_EMPTY_LEVELS, 0);
+		params.setValue(AVKey.TILE_WIDTH, TILE_SIZE);
+		params.setValue(AVKey.TILE_HEIGHT, TILE_SIZE);
+		params.setValue(AVKey.SECTOR, Sector.FULL_SPHERE);
+		params.setValue(AVKey.LEVEL_ZERO_TILE_DELTA, LatLon.fromDegrees(36, 36));
+		params.setValue(AVKey.NETWORK_RETRIEVAL_ENABLED, false);
+
+		TestLayer layer = new TestLayer(params);
+		layer.setDataFileStore(new BasicDataFileStore(directory));
+		return layer;
+	}
+
+	private DelegatorTextureTile createTile(int row, int col)
+	{
+		Level level = layer.getLevels().getFirstLevel();
+		Angle delta = level.getTileDelta().getLatitude();
+		Sector sector =
+				new Sector(Angle.NEG90.add(delta.multiply(row)), Angle.NEG90.add(delta.multiply(row + 1)),
+						Angle.NEG180.add(delta.multiply(col)), Angle.NEG180.add(delta.multiply(col + 1)));
+		return layer.delegateKit.createTextureTile(sector, level, row, col);
+	}
+
+	/**
+	 * Save a tile as if it had been downloaded, through the layer's download
+	 * post processor. The version is encoded in every pixel of the tile.
+	 */
+	private void download(TextureTile tile, int version)
+	{
+		try
+		{
+			BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+			for (int y = 0; y < TILE_SIZE; y++)
+			{
+				for (int x = 0; x < TILE_SIZE; x++)
+				{
+					image.setRGB(x, y, (version & 0xff) << 16 | pattern(x, y));
+				}
+			}
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			ImageIO.write(image, "png", baos);
+
+			URL url = new URL("http://localhost/" + tile.getPath());
+			new OverwritingPostProcessor(tile, layer).run(new BufferRetriever(url, baos.toByteArray()));
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static int pattern(int x, int y)
+	{
+		return (x ^ y) & 0xff;
+	}
+
+	private File getFile(TextureTile tile)
+	{
+		return new File(directory, tile.getPath());
+	}
+
+	private URL getURL(TextureTile tile)
+	{
+		try
+		{
+			return getFile(tile).toURI().toURL();
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Thread start(Runnable runnable)
+	{
+		Thread thread = new Thread(runnable);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Wait for a thread to block waiting for a lock.
+	 */
+	private static void awaitBlocked(Thread thread) throws InterruptedException
+	{
+		long timeout = System.currentTimeMillis() + 10000;
+		while (thread.getState() != Thread.State.WAITING)
+		{
+			assertTrue("Thread finished without blocking", thread.isAlive());
+			assertTrue("Timed out waiting for thread to block", System.currentTimeMillis() < timeout);
+			Thread.sleep(1);
+		}
+	}
+
+	private static void delete(File file)
+	{
+		if (file.isDirectory())
+		{
+			for (File child : file.listFiles())
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Layer that checks the images it reads instead of creating textures (which
+	 * requires an OpenGL profile).
+	 */
+	private static class TestLayer extends DelegatorTiledImageLayer
+	{
+		private volatile String failure;
+		private volatile int readCount;
+
+		public TestLayer(AVList params)
+		{
+			super(params);
+		}
+
+		@Override
+		public TextureData readTexture(DelegatorTextureTile tile, URL url)
+		{
+			try
+			{
+				BufferedImage image = readImage(tile, url);
+				assertNotNull(image);
+				int version = image.getRGB(0, 0) & 0xff0000;
+				for (int y = 0; y < image.getHeight(); y++)
+				{
+					for (int x = 0; x < image.getWidth(); x++)
+					{
+						if (image.getRGB(x, y) != (0xff000000 | version | pattern(x, y)))
+						{
+							throw new IOException("Torn read at " + x + "," + y);
+						}
+					}
+				}
+			}
+			catch (Throwable t)
+			{
+				failure = "Reading " + tile.getPath() + ": " + t;
+			}
+			synchronized (this)
+			{
+				readCount++;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Post processor that replaces existing tiles, so tiles can be downloaded
+	 * repeatedly.
+	 */
+	private static class OverwritingPostProcessor extends DelegatorTiledImageLayer.DownloadPostProcessor
+	{
+		public OverwritingPostProcessor(TextureTile tile, DelegatorTiledImageLayer layer)
+		{
+			super(tile, layer);
+		}
+
+		@Override
+		protected boolean overwriteExistingFile()
+		{
+			return true;
+		}
+	}
+
+	/**
+	 * Retriever that has successfully retrieved the provided image content.
+	 */
+	private static class BufferRetriever extends HTTPRetriever
+	{
+		public BufferRetriever(URL url, byte[] content)
+		{
+			super(url, null);
+			byteBuffer = ByteBuffer.wrap(content);
+			contentLength = content.length;
+			contentType = "image/png";
+			state = RETRIEVER_STATE_SUCCESSFUL;
+		}
+
+		@Override
+		public int getResponseCode()
+		{
+			return HttpURLConnection.HTTP_OK;
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.layers.volume;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.common.layers.volume.SliceTextureGenerator.Slice;
+
+/**
+ * Unit tests for the {@link SliceTextureGenerator} class.
+ */
+public class SliceTextureGeneratorTest
+{
+	private static final Dimension SIZE = new Dimension(200, 100);
+
+	private final List<String> generated = Collections.synchronizedList(new ArrayList<String>());
+	private final List<Slice> published = Collections.synchronizedList(new ArrayList<Slice>());
+	private SliceTextureGenerator classToBeTested;
+
+	@Before
+	public void setup()
+	{
+		classToBeTested = new SliceTextureGenerator(new SliceTextureGenerator.Generator()
+		{
+			@Override
+			public void generateSlice(int axis, int position, Dimension size, int step, BufferedImage image)
+			{
+				generated.add(axis + "," + position + "," + step);
+				for (int y = 0; y < image.getHeight(); y++)
+				{
+					for (int x = 0; x < image.getWidth(); x++)
+					{
+						image.setRGB(x, y, position);
+					}
+				}
+			}
+		}, new SliceTextureGenerator.Listener()
+		{
+			@Override
+			public void sliceGenerated(Slice slice)
+			{
+				published.add(slice);
+			}
+		}, 2);
+	}
+
+	@Test
+	public void testCoarseSliceGeneratedFirst() throws Exception
+	{
+		Slice slice = waitForCompleteSlice("face", 0, 5);
+
+		//the coarse slice is published before the full resolution slice is generated
+		assertFalse(published.get(0).complete);
+		assertEquals(50, published.get(0).image.getWidth());
+		assertEquals(25, published.get(0).image.getHeight());
+		assertTrue(slice.complete);
+		assertEquals(SIZE.width, slice.image.getWidth());
+		assertEquals(SIZE.height, slice.image.getHeight());
+		assertEquals(5, slice.image.getRGB(SIZE.width - 1, SIZE.height - 1));
+	}
+
+	@Test
+	public void testCompleteSliceIsCached() throws Exception
+	{
+		Slice slice = waitForCompleteSlice("face", 1, 3);
+		int count = generated.size();
+
+		assertSame(slice, classToBeTested.getSlice("other face", 1, 3, SIZE));
+		assertEquals(count, generated.size());
+	}
+
+	@Test
+	public void testEvictedImagesAreReused() throws Exception
+	{
+		Slice slice1 = waitForCompleteSlice("face", 2, 1);
+		waitForCompleteSlice("face", 2, 2);
+		Slice slice3 = waitForCompleteSlice("face", 2, 3);
+
+		//slice 1 was evicted from the cache, so its image is reused
+		Slice slice4 = waitForCompleteSlice("face", 2, 4);
+		assertSame(slice1.image, slice4.image);
+		assertEquals(4, slice4.image.getRGB(0, 0));
+
+		//slice 3 is still cached
+		assertSame(slice3, classToBeTested.getSlice("face", 2, 3, SIZE));
+	}
+
+	@Test
+	public void testClearDiscardsCachedSlices() throws Exception
+	{
+		Slice slice = waitForCompleteSlice("face", 1, 7);
+		int count = generated.size();
+
+		classToBeTested.clear();
+
+		//the face no longer has a slice, and the slice is generated again
+		assertNull(classToBeTested.getSlice("face", 1, 7, SIZE));
+		Slice regenerated = waitForCompleteSlice("face", 1, 7);
+		assertNotSame(slice, regenerated);
+		assertTrue(generated.size() > count);
+	}
+
+	@Test
+	public void testUnwantedSlicesAreSkipped() throws Exception
+	{
+		for (int position = 0; position < 50; position++)
+		{
+			classToBeTested.getSlice("face", 0, position, SIZE);
+		}
+		waitForCompleteSlice("face", 0, 49);
+
+		//slices that were dragged past before generation started are not generated at full resolution
+		int fullResolution = 0;
+		for (String s : generated.toArray(new String[0]))
+		{
+			if (s.endsWith(",1"))
+			{
+				fullResolution++;
+			}
+		}
+		assertTrue(fullResolution < 50);
+	}
+
+	private Slice waitForCompleteSlice(Object face, int axis, int position) throws InterruptedException
+	{
+		long end = System.currentTimeMillis() + 10000;
+		while (System.currentTimeMillis() < end)
+		{
+			Slice slice = classToBeTested.getSlice(face, axis, position, SIZE);
+			if (slice != null && slice.complete && slice.position == position)
+			{
+				return slice;
+			}
+			Thread.sleep(5);
+		}
+		fail("Slice was not generated");
+		return null;
+	}
+}
@@ -57,6 +57,47 @@ public class BinaryTriangleTreeTest
 		Assert.assertTrue(areImagesEqual(image, reference));
 	}
 
+	@Test
+	public void testVariancePyramidMatchesRecursiveVariance()
+	{
+		int width = 300;
+		int height = 211;
+		List<Position> positions = new ArrayList<Position>(width * height);
+		for (int y = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++)
+			{
+				double elevation = Math.floor(100 * Math.sin(x * 0.05) * Math.cos(y * 0.07) + (x * 7 + y * 13) % 5);
+				positions.add(Position.fromDegrees(y, x, elevation));
+			}
+		}
+
+		//calculates the variance of every triangle recursively, as the tree is built
+		BinaryTriangleTree recursive = new BinaryTriangleTree(positions, width, height)
+		{
+			@Override
+			protected float getVariance(BTTTriangle t)
+			{
+				return calculateVariance(t.apexIndex, t.leftIndex, t.rightIndex);
+			}
+		};
+		BinaryTriangleTree btt = new BinaryTriangleTree(positions, width, height);
+
+		for (float maxVariance : new float[] { 0.5f, 5f, 20f })
+		{
+			assertShapesEqual(recursive.buildMesh(maxVariance), btt.buildMesh(maxVariance));
+			Rectangle rectangle = new Rectangle(42, 23, 257, 187);
+			assertShapesEqual(recursive.buildMeshFromCenter(maxVariance, rectangle),
+					btt.buildMeshFromCenter(maxVariance, rectangle));
+		}
+	}
+
+	protected void assertShapesEqual(FastShape expected, FastShape actual)
+	{
+		Assert.assertArrayEquals(expected.getIndices(), actual.getIndices());
+		Assert.assertEquals(expected.getPositions(), actual.getPositions());
+	}
+
 	protected BufferedImage shapeToImage(FastShape shape, int width, int height)
 	{
 		int[] indices = shape.getIndices();
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.common.util.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link IndexedZipFile} class
+ */
+public class IndexedZipFileTest
+{
+	private static final int ENTRY_COUNT = 40;
+
+	private File file;
+	private List<byte[]> contents = new ArrayList<byte[]>();
+	private IndexedZipFile classToBeTested;
+
+	@Before
+	public void setup() throws IOException
+	{
+		file = File.createTempFile("indexed", ".zip");
+		Random random = new Random(0);
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file));
+		try
+		{
+			zos.putNextEntry(new ZipEntry("images/"));
+			zos.closeEntry();
+			for (int i = 0; i < ENTRY_COUNT; i++)
+			{
+				//every 10th entry is larger than the cached entry size
+				byte[] data = new byte[i % 10 == 9 ? 5000 : 10 + i * 50];
+				for (int j = 0; j < data.length; j++)
+				{
+					data[j] = (byte) (i % 2 == 0 ? random.nextInt(256) : j % 7);
+				}
+				contents.add(data);
+
+				ZipEntry entry = new ZipEntry("images/image" + i + ".png");
+				if (i % 3 == 0)
+				{
+					CRC32 crc = new CRC32();
+					crc.update(data);
+					entry.setMethod(ZipEntry.STORED);
+					entry.setSize(data.length);
+					entry.setCrc(crc.getValue());
+				}
+				zos.putNextEntry(entry);
+				zos.write(data);
+				zos.closeEntry();
+			}
+		}
+		finally
+		{
+			zos.close();
+		}
+
+		classToBeTested = new IndexedZipFile(file, 2048, 16 * 1024);
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		classToBeTested.close();
+		file.delete();
+	}
+
+	@Test
+	public void testEntryNames()
+	{
+		List<String> names = new ArrayList<String>(classToBeTested.getEntryNames());
+		assertEquals(ENTRY_COUNT + 1, names.size());
+		assertEquals("images/", names.get(0));
+		assertEquals("images/image0.png", names.get(1));
+		assertTrue(classToBeTested.getEntry("images/").isDirectory());
+	}
+
+	@Test
+	public void testReadEntries() throws IOException
+	{
+		for (int i = 0; i < ENTRY_COUNT; i++)
+		{
+			assertArrayEquals(contents.get(i), readFully(classToBeTested.getInputStream("images/image" + i + ".png")));
+		}
+	}
+
+	@Test
+	public void testMissingEntry() throws IOException
+	{
+		assertNull(classToBeTested.getInputStream("images/missing.png"));
+		assertNull(classToBeTested.readEntry("missing"));
+	}
+
+	@Test
+	public void testSmallEntriesAreCached() throws IOException
+	{
+		byte[] small = classToBeTested.readEntry("images/image1.png");
+		assertSame(small, classToBeTested.readEntry("images/image1.png"));
+
+		byte[] large = classToBeTested.readEntry("images/image9.png");
+		assertNotSame(large, classToBeTested.readEntry("images/image9.png"));
+		assertTrue(Arrays.equals(large, classToBeTested.readEntry("images/image9.png")));
+	}
+
+	@Test
+	public void testConcurrentReads() throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int n = 0; n < 10; n++)
+			{
+				for (int i = 0; i < ENTRY_COUNT; i++)
+				{
+					final int index = i;
+					results.add(executor.submit(new Callable<Boolean>()
+					{
+						@Override
+						public Boolean call() throws Exception
+						{
+							byte[] data = readFully(classToBeTested.getInputStream("images/image" + index + ".png"));
+							return Arrays.equals(contents.get(index), data);
+						}
+					}));
+				}
+			}
+			for (Future<Boolean> result : results)
+			{
+				assertTrue(result.get());
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	private static byte[] readFully(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try
+		{
+			byte[] buffer = new byte[1024];
+			int count;
+			while ((count = is.read(buffer)) >= 0)
+			{
+				baos.write(buffer, 0, count);
+			}
+		}
+		finally
+		{
+			is.close();
+		}
+		return baos.toByteArray();
+	}
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.wmsbrowser.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import au.gov.ga.worldwind.wmsbrowser.wmsserver.WmsServerImpl;
+
+/**
+ * Tests for the {@link CompoundSearchService} class
+ */
+public class CompoundSearchServiceTest
+{
+	@Test
+	public void testServicesAreQueriedInParallel() throws Exception
+	{
+		CompoundSearchService classUnderTest = new CompoundSearchService();
+		for (int i = 0; i < 4; i++)
+		{
+			classUnderTest.addService(new StubSearchService(300, "http://server" + i + "/wms"));
+		}
+
+		long start = System.currentTimeMillis();
+		List<WmsServerSearchResult> results = classUnderTest.searchForServers("test");
+		long time = System.currentTimeMillis() - start;
+
+		assertEquals(4, results.size());
+		assertTrue("Search took " + time + "ms", time < 900);
+	}
+
+	@Test
+	public void testResultsAreMergedInArrivalOrder() throws Exception
+	{
+		CompoundSearchService classUnderTest = new CompoundSearchService();
+		classUnderTest.addService(new StubSearchService(300, "http://slow/wms"));
+		classUnderTest.addService(new StubSearchService(0, "http://fast/wms", "http://other/wms"));
+
+		final List<Integer> arrivals = Collections.synchronizedList(new ArrayList<Integer>());
+		classUnderTest.addResultListener(new CompoundSearchService.ResultListener()
+		{
+			@Override
+			public void resultsArrived(List<WmsServerSearchResult> results)
+			{
+				arrivals.add(results.size());
+			}
+		});
+
+		List<WmsServerSearchResult> results = classUnderTest.searchForServers("test");
+
+		assertEquals(Arrays.asList("http://fast/wms", "http://other/wms", "http://slow/wms"), urls(results));
+		assertEquals(Arrays.asList(2, 3), arrivals);
+	}
+
+	@Test
+	public void testSlowAndFailingServicesAreIgnored() throws Exception
+	{
+		CompoundSearchService classUnderTest = new CompoundSearchService();
+		classUnderTest.setServiceTimeout(200);
+		classUnderTest.addService(new StubSearchService(5000, "http://slow/wms"));
+		classUnderTest.addService(new StubSearchService(-1));
+		classUnderTest.addService(new StubSearchService(0, "http://fast/wms"));
+
+		long start = System.currentTimeMillis();
+		List<WmsServerSearchResult> results = classUnderTest.searchForServers("test");
+		long time = System.currentTimeMillis() - start;
+
+		assertEquals(Arrays.asList("http://fast/wms"), urls(results));
+		assertTrue("Search took " + time + "ms", time < 2000);
+	}
+
+	private static List<String> urls(List<WmsServerSearchResult> results)
+	{
+		List<String> urls = new ArrayList<String>();
+		for (WmsServerSearchResult result : results)
+		{
+			urls.add(result.getWmsServer().getCapabilitiesUrl().toExternalForm());
+		}
+		return urls;
+	}
+
+	/**
+	 * A search service that returns fixed results after a delay. A negative
+	 * delay causes the search to fail.
+	 */
+	private static class StubSearchService implements WmsServerSearchService
+	{
+		private final long delay;
+		private final List<WmsServerSearchResult> results = new ArrayList<WmsServerSearchResult>();
+
+		public StubSearchService(long delay, String... urls) throws Exception
+		{
+			this.delay = delay;
+			for (String url : urls)
+			{
+				results.add(new WmsServerSearchResultImpl(new WmsServerImpl(new URL(url))));
+			}
+		}
+
+		@Override
+		public List<WmsServerSearchResult> searchForServers(String searchString)
+		{
+			if (delay < 0)
+			{
+				throw new IllegalStateException("Search failed");
+			}
+			try
+			{
+				Thread.sleep(delay);
+			}
+			catch (InterruptedException e)
+			{
+				return Collections.emptyList();
+			}
+			return results;
+		}
+	}
+}
@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.wmsbrowser.wmsserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import gov.nasa.worldwind.ogc.wms.WMSCapabilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for the {@link CachingCapabilitiesService} class, using an embedded
+ * HTTP server that serves canned capabilities documents.
+ */
+public class CachingCapabilitiesServiceTest
+{
+	private static final String ETAG = "\"eatlas-1\"";
+	private static final String SERVICE_EXCEPTION =
+			"<?xml version=\"1.0\"?><ServiceExceptionReport version=\"1.3.0\"><ServiceException>"
+					+ "Unsupported version</ServiceException></ServiceExceptionReport>";
+
+	private HttpServer server;
+	private StubHandler handler;
+	private File cacheDirectory;
+	private URL capabilitiesUrl;
+
+	@Before
+	public void setup() throws IOException
+	{
+		handler = new StubHandler();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/wms", handler);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+		capabilitiesUrl = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/wms");
+
+		cacheDirectory = File.createTempFile("capabilities", "");
+		cacheDirectory.delete();
+		cacheDirectory.mkdir();
+	}
+
+	@After
+	public void tearDown()
+	{
+		server.stop(0);
+		for (File file : cacheDirectory.listFiles())
+		{
+			file.delete();
+		}
+		cacheDirectory.delete();
+	}
+
+	@Test
+	public void testFallsBackToVersion111() throws Exception
+	{
+		CachingCapabilitiesService classUnderTest = new CachingCapabilitiesService(cacheDirectory);
+		WMSCapabilities capabilities = classUnderTest.retrieveCapabilities(capabilitiesUrl);
+
+		assertNotNull(capabilities);
+		assertEquals(90, capabilities.getNamedLayers().size());
+		assertEquals(1, handler.getCount("1.3.0"));
+		assertEquals(1, handler.getCount("1.1.1"));
+	}
+
+	@Test
+	public void testSecondRetrievalIsServedFromMemory() throws Exception
+	{
+		CachingCapabilitiesService classUnderTest = new CachingCapabilitiesService(cacheDirectory);
+		WMSCapabilities first = classUnderTest.retrieveCapabilities(capabilitiesUrl);
+		WMSCapabilities second = classUnderTest.retrieveCapabilities(capabilitiesUrl);
+
+		assertSame(first, second);
+		assertEquals(1, handler.getCount("1.1.1"));
+	}
+
+	@Test
+	public void testCapabilitiesArePersistedToDisk() throws Exception
+	{
+		new CachingCapabilitiesService(cacheDirectory).retrieveCapabilities(capabilitiesUrl);
+		int requests = handler.getTotalCount();
+
+		// A new service (e.g. after a restart) should parse the cached document without contacting the server
+		WMSCapabilities capabilities = new CachingCapabilitiesService(cacheDirectory).retrieveCapabilities(capabilitiesUrl);
+
+		assertNotNull(capabilities);
+		assertEquals(90, capabilities.getNamedLayers().size());
+		assertEquals(requests, handler.getTotalCount());
+	}
+
+	@Test
+	public void testExpiredCapabilitiesAreRevalidated() throws Exception
+	{
+		handler.cacheControl = "max-age=0";
+		new CachingCapabilitiesService(cacheDirectory).retrieveCapabilities(capabilitiesUrl);
+		assertEquals(1, handler.getCount("1.1.1"));
+
+		WMSCapabilities capabilities = new CachingCapabilitiesService(cacheDirectory).retrieveCapabilities(capabilitiesUrl);
+
+		// Only the cached version should be requested, and the server should reply 'not modified'
+		assertNotNull(capabilities);
+		assertEquals(90, capabilities.getNamedLayers().size());
+		assertEquals(1, handler.getCount("1.3.0"));
+		assertEquals(2, handler.getCount("1.1.1"));
+		assertEquals(1, handler.notModifiedCount.get());
+	}
+
+	@Test
+	public void testExpiredCapabilitiesAreUsedWhenServerIsUnavailable() throws Exception
+	{
+		handler.cacheControl = "max-age=0";
+		new CachingCapabilitiesService(cacheDirectory).retrieveCapabilities(capabilitiesUrl);
+		server.stop(0);
+
+		WMSCapabilities capabilities = new CachingCapabilitiesService(cacheDirectory).retrieveCapabilities(capabilitiesUrl);
+
+		assertNotNull(capabilities);
+		assertEquals(90, capabilities.getNamedLayers().size());
+	}
+
+	@Test
+	public void testConcurrentRequestsShareOneRetrieval() throws Exception
+	{
+		handler.delay = 200;
+		final CachingCapabilitiesService classUnderTest = new CachingCapabilitiesService(cacheDirectory);
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try
+		{
+			List<Future<WMSCapabilities>> futures = new ArrayList<Future<WMSCapabilities>>();
+			for (int i = 0; i < 8; i++)
+			{
+				futures.add(executor.submit(new Callable<WMSCapabilities>()
+				{
+					@Override
+					public WMSCapabilities call() throws Exception
+					{
+						start.await();
+						return classUnderTest.retrieveCapabilities(capabilitiesUrl);
+					}
+				}));
+			}
+			start.countDown();
+
+			WMSCapabilities first = futures.get(0).get();
+			for (Future<WMSCapabilities> future : futures)
+			{
+				assertSame(first, future.get());
+			}
+			assertEquals(1, handler.getCount("1.1.1"));
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testNonCapabilitiesUrlReturnsNull() throws Exception
+	{
+		handler.always = SERVICE_EXCEPTION;
+		CachingCapabilitiesService classUnderTest = new CachingCapabilitiesService(cacheDirectory);
+
+		assertNull(classUnderTest.retrieveCapabilities(capabilitiesUrl));
+		assertEquals(0, cacheDirectory.listFiles().length);
+	}
+
+	/**
+	 * Serves a version 1.1.1 capabilities document, and a service exception
+	 * for any other version.
+	 */
+	private static class StubHandler implements HttpHandler
+	{
+		private final List<String> versions = new ArrayList<String>();
+		private final AtomicInteger notModifiedCount = new AtomicInteger();
+		private volatile String cacheControl = null;
+		private volatile String always = null;
+		private volatile long delay = 0;
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException
+		{
+			String query = exchange.getRequestURI().getQuery();
+			String version = query.replaceAll("(?i).*VERSION=([0-9.]+).*", "$1");
+			synchronized (versions)
+			{
+				versions.add(version);
+			}
+
+			try
+			{
+				Thread.sleep(delay);
+			}
+			catch (InterruptedException e)
+			{
+			}
+
+			if (cacheControl != null)
+			{
+				exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+			}
+
+			if (always == null && "1.1.1".equals(version)
+					&& ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+			{
+				notModifiedCount.incrementAndGet();
+				exchange.sendResponseHeaders(304, -1);
+				exchange.close();
+				return;
+			}
+
+			byte[] body;
+			if (always == null && "1.1.1".equals(version))
+			{
+				exchange.getResponseHeaders().add("ETag", ETAG);
+				body = readResource("wmsbrowser/eatlasWmsCapabilities.xml");
+			}
+			else
+			{
+				body = (always != null ? always : SERVICE_EXCEPTION).getBytes("UTF-8");
+			}
+
+			exchange.getResponseHeaders().add("Content-Type", "application/vnd.ogc.wms_xml");
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream os = exchange.getResponseBody();
+			os.write(body);
+			os.close();
+		}
+
+		public int getCount(String version)
+		{
+			int count = 0;
+			synchronized (versions)
+			{
+				for (String v : versions)
+				{
+					if (v.equals(version))
+					{
+						count++;
+					}
+				}
+			}
+			return count;
+		}
+
+		public int getTotalCount()
+		{
+			synchronized (versions)
+			{
+				return versions.size();
+			}
+		}
+
+		private byte[] readResource(String name) throws IOException
+		{
+			InputStream is = getClass().getClassLoader().getResourceAsStream(name);
+			try
+			{
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = is.read(buffer)) >= 0)
+				{
+					baos.write(buffer, 0, read);
+				}
+				return baos.toByteArray();
+			}
+			finally
+			{
+				is.close();
+			}
+		}
+	}
+}
@@ -36,6 +36,7 @@ import org.gdal.gdalconst.gdalconst;
 
 import au.gov.ga.worldwind.tiler.application.Tiler.TilingType;
 import au.gov.ga.worldwind.tiler.gdal.GDALUtil;
+import au.gov.ga.worldwind.tiler.util.ImageDownsampler;
 import au.gov.ga.worldwind.tiler.util.LatLon;
 import au.gov.ga.worldwind.tiler.util.MinMaxArray;
 import au.gov.ga.worldwind.tiler.util.NullableNumberArray;
@@ -61,7 +62,8 @@ public class Console
 						+ "       [{-z,--lzts} lzts] [{-t,--tilesize} size] [{-f,--format} {JPG|PNG}]\n"
 						+ "       [{-d,--datatype} {BYTE|INT16|INT32|FLOAT32}] [{-a,--addalpha}]\n"
 						+ "       [{-b,--band} band] [{-n,--nooverviews}] [{-l,--levels} levels]\n"
-						+ "       [{-m,--nomagnification}] [{-g,--nominification}] [{-k,--includeblank}]\n"
+						+ "       [{-m,--nomagnification}] [{-g,--nominification}] [{-c,--lanczos}]\n"
+						+ "       [{-j,--threads} threads] [{-k,--includeblank}]\n"
 						+ "       [{-q,--quality} qual] [{-o,--setoutside} \"value[,value...]]\"\n"
 						+ "       [{-r,--replacevalues} \"min1[,min1...] max1[,max1...] min2[,min2...]\n"
 						+ "                              max2[,max2...] with[,with...] else[,else...]\"\n"
@@ -83,6 +85,10 @@ public class Console
 						+ "  -m         Disable bilinear magnification (if the top level tiles generated\n"
 						+ "             have a higher resolution than the dataset)\n"
 						+ "  -g         Disable bilinear minification when generating overviews\n"
+						+ "  -c         Use a Lanczos filter for image overview minification (sharper\n"
+						+ "             than bilinear)\n"
+						+ "  -j threads Number of overview tiles to generate in parallel (default:\n"
+						+ "             number of processors)\n"
 						+ "  -k         Generate blank tiles\n"
 						+ "  -q qual    JPEG compression quality (default: 0.75)\n"
 						+ "  -o \"...\"   Set values outside extends to (number of values must equal the\n"
@@ -124,6 +130,8 @@ public class Console
 		//-l --levels n
 		//-m --nomagnification
 		//-g --nominification
+		//-c --lanczos
+		//-j --threads n
 		//-o --setoutside n,n,n
 		//-r --replacevalues "n,n,n n,n,n n,n,n n,n,n n,n,n n,n,n"
 		//-k --includeblank
@@ -145,6 +153,8 @@ public class Console
 		Option levelsO = parser.addIntegerOption('l', "levels");
 		Option bilinearO = parser.addBooleanOption('m', "nomagnification");
 		Option bilinearOverviewsO = parser.addBooleanOption('g', "nominification");
+		Option lanczosO = parser.addBooleanOption('c', "lanczos");
+		Option threadsO = parser.addIntegerOption('j', "threads");
 		Option includeBlankO = parser.addBooleanOption('k', "includeblank");
 		Option qualityO = parser.addDoubleOption('q', "quality");
 		Option originO = new Option('s', "origin", true)
@@ -217,6 +227,11 @@ public class Console
 		Boolean nobilinearOverviews = (Boolean) parser.getOptionValue(bilinearOverviewsO, false);
 		boolean bilinear = !nobilinear;
 		boolean bilinearOverviews = !nobilinearOverviews;
+		Boolean lanczos = (Boolean) parser.getOptionValue(lanczosO, false);
+		Integer threads = (Integer) parser.getOptionValue(threadsO, Runtime.getRuntime().availableProcessors());
+		ImageDownsampler.Filter overviewFilter =
+				lanczos ? ImageDownsampler.Filter.LANCZOS : bilinearOverviews ? ImageDownsampler.Filter.BOX
+						: ImageDownsampler.Filter.NEAREST;
 		Boolean includeBlank = (Boolean) parser.getOptionValue(includeBlankO, false);
 		Double quality = (Double) parser.getOptionValue(qualityO, 0.75);
 
@@ -309,7 +324,7 @@ public class Console
 					{
 						Overviewer.createElevationOverviews(output, tilesize, tilesize, bufferType,
 								ByteOrder.LITTLE_ENDIAN, outside, sector, origin, lzts, bilinearOverviews,
-								!includeBlank, reporter);
+								!includeBlank, threads, reporter);
 					}
 					logWriter.logMinMax(minMax, isFloat);
 				}
@@ -325,7 +340,7 @@ public class Console
 					if (!nooverviews)
 					{
 						Overviewer.createImageOverviews(output, imageFormat, tilesize, tilesize, outside, sector,
-								origin, lzts, bilinearOverviews, !includeBlank, quality.floatValue(), reporter);
+								origin, lzts, overviewFilter, !includeBlank, quality.floatValue(), threads, reporter);
 					}
 				}
 			}
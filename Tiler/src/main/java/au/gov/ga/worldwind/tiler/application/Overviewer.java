@@ -15,10 +15,6 @@
  ******************************************************************************/
 package au.gov.ga.worldwind.tiler.application;
 
-import java.awt.AlphaComposite;
-import java.awt.Composite;
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.awt.image.ComponentSampleModel;
 import java.awt.image.DataBuffer;
@@ -36,8 +32,17 @@ import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -49,6 +54,7 @@ import au.gov.ga.worldwind.tiler.gdal.GDALTile;
 import au.gov.ga.worldwind.tiler.util.FileFilters.DirectoryFileFilter;
 import au.gov.ga.worldwind.tiler.util.FileFilters.ExtensionFileFilter;
 import au.gov.ga.worldwind.tiler.util.FileUtil;
+import au.gov.ga.worldwind.tiler.util.ImageDownsampler;
 import au.gov.ga.worldwind.tiler.util.LatLon;
 import au.gov.ga.worldwind.tiler.util.NullableNumberArray;
 import au.gov.ga.worldwind.tiler.util.ProgressReporter;
@@ -57,6 +63,10 @@ import au.gov.ga.worldwind.tiler.util.Util;
 
 /**
  * This class is used to generate the overviews of the lowest level of tiles.
+ * <p/>
+ * The parent tiles of each level are independent of each other, so they are
+ * generated in parallel. A level is completed before the next level up is
+ * started, as it provides the children of the next level's tiles.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -96,8 +106,30 @@ public class Overviewer
 			NullableNumberArray outsideValues, Sector sector, LatLon origin, double lzts, boolean bilinear,
 			boolean ignoreBlank, float jpegQuality, ProgressReporter reporter)
 	{
-		OverviewCreator overviewCreator = new ImageOverviewCreator(width, height, outsideValues, bilinear, jpegQuality);
-		createOverviews(overviewCreator, directory, extension, sector, origin, lzts, ignoreBlank, reporter);
+		createImageOverviews(directory, extension, width, height, outsideValues, sector, origin, lzts,
+				bilinear ? ImageDownsampler.Filter.BOX : ImageDownsampler.Filter.NEAREST, ignoreBlank, jpegQuality,
+				Runtime.getRuntime().availableProcessors(), reporter);
+	}
+
+	/**
+	 * Create the overviews of a set of image tiles, using the given
+	 * minification filter and number of threads.
+	 * 
+	 * @param filter
+	 *            Filter to use when minifying the child tiles
+	 * @param threadCount
+	 *            Number of parent tiles to generate in parallel
+	 * @see #createImageOverviews(File, String, int, int, NullableNumberArray,
+	 *      Sector, LatLon, double, boolean, boolean, float, ProgressReporter)
+	 */
+	public static void createImageOverviews(File directory, String extension, int width, int height,
+			NullableNumberArray outsideValues, Sector sector, LatLon origin, double lzts,
+			ImageDownsampler.Filter filter, boolean ignoreBlank, float jpegQuality, int threadCount,
+			ProgressReporter reporter)
+	{
+		OverviewCreator overviewCreator = new ImageOverviewCreator(width, height, outsideValues, filter, jpegQuality);
+		createOverviews(overviewCreator, directory, extension, sector, origin, lzts, ignoreBlank, threadCount,
+				reporter);
 	}
 
 	/**
@@ -132,15 +164,35 @@ public class Overviewer
 	public static void createElevationOverviews(File directory, int width, int height, int bufferType,
 			ByteOrder byteOrder, NullableNumberArray outsideValues, Sector sector, LatLon origin, double lzts,
 			boolean bilinear, boolean ignoreBlank, ProgressReporter reporter)
+	{
+		createElevationOverviews(directory, width, height, bufferType, byteOrder, outsideValues, sector, origin,
+				lzts, bilinear, ignoreBlank, Runtime.getRuntime().availableProcessors(), reporter);
+	}
+
+	/**
+	 * Create the overviews of a set of elevation tiles, using the given number
+	 * of threads.
+	 * 
+	 * @param threadCount
+	 *            Number of parent tiles to generate in parallel
+	 * @see #createElevationOverviews(File, int, int, int, ByteOrder,
+	 *      NullableNumberArray, Sector, LatLon, double, boolean, boolean,
+	 *      ProgressReporter)
+	 */
+	public static void createElevationOverviews(File directory, int width, int height, int bufferType,
+			ByteOrder byteOrder, NullableNumberArray outsideValues, Sector sector, LatLon origin, double lzts,
+			boolean bilinear, boolean ignoreBlank, int threadCount, ProgressReporter reporter)
 	{
 		int bands = 1;
 		OverviewCreator overviewCreator =
 				new ElevationOverviewCreator(width, height, bands, bufferType, byteOrder, outsideValues, bilinear);
-		createOverviews(overviewCreator, directory, "bil", sector, origin, lzts, ignoreBlank, reporter);
+		createOverviews(overviewCreator, directory, "bil", sector, origin, lzts, ignoreBlank, threadCount,
+				reporter);
 	}
 
 	private static void createOverviews(OverviewCreator overviewCreator, File directory, String extension,
-			Sector sector, LatLon origin, double lzts, boolean ignoreBlank, ProgressReporter progress)
+			Sector sector, LatLon origin, double lzts, boolean ignoreBlank, int threadCount,
+			ProgressReporter progress)
 	{
 		progress.getLogger().info("Generating overviews...");
 
@@ -169,60 +221,107 @@ public class Overviewer
 				}
 			}
 
-			int count = 0;
+			AtomicInteger count = new AtomicInteger();
 			int size = 0;
 			for (int i = 0; i < maxlevel; i++)
 			{
 				size += Util.tileCount(sector, origin, i, lzts);
 			}
 
-			for (int level = maxlevel; level > 0; level--)
+			ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threadCount), new ThreadFactory()
 			{
-				if (progress.isCancelled())
-					break;
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "Overviewer " + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			try
+			{
+				for (int level = maxlevel; level > 0; level--)
+				{
+					if (progress.isCancelled())
+						break;
+
+					createLevelOverviews(overviewCreator, executor, directory, extension, level, ignoreBlank, count,
+							size, progress);
+				}
+			}
+			finally
+			{
+				executor.shutdownNow();
+			}
+		}
+
+		progress.getLogger().info("Overview generation " + (progress.isCancelled() ? "cancelled" : "complete"));
+	}
+
+	/**
+	 * Create the parent tiles of a single level, and wait for them to
+	 * complete.
+	 */
+	private static void createLevelOverviews(final OverviewCreator overviewCreator, ExecutorService executor,
+			File directory, String extension, int level, final boolean ignoreBlank, final AtomicInteger count,
+			final int size, final ProgressReporter progress)
+	{
+		// level directory
+		File dir = new File(directory.getAbsolutePath() + "/" + level);
 
-				// level directory
-				File dir = new File(directory.getAbsolutePath() + "/" + level);
+		// create a list of files to process
+		ExtensionFileFilter fileFilter = new ExtensionFileFilter(extension);
+		Set<File> sourceFiles = new HashSet<File>();
+		FileUtil.recursivelyAddFiles(sourceFiles, dir, fileFilter);
 
-				// create a list of files to process
-				ExtensionFileFilter fileFilter = new ExtensionFileFilter(extension);
-				Set<File> sourceFiles = new HashSet<File>();
-				FileUtil.recursivelyAddFiles(sourceFiles, dir, fileFilter);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		while (!sourceFiles.isEmpty())
+		{
+			if (progress.isCancelled())
+				break;
+
+			File file = sourceFiles.iterator().next();
+			String path = file.getName();
+			Pattern pattern = Pattern.compile("\\d+");
+			Matcher matcher = pattern.matcher(path);
+			matcher.find();
+			int row = Integer.parseInt(matcher.group());
+			matcher.find(matcher.end());
+			int col = Integer.parseInt(matcher.group());
+
+			int rowabove = row / 2;
+			int colabove = col / 2;
+
+			final File src0 = tileFile(dir, extension, rowabove * 2, colabove * 2);
+			final File src1 = tileFile(dir, extension, rowabove * 2 + 1, colabove * 2);
+			final File src2 = tileFile(dir, extension, rowabove * 2, colabove * 2 + 1);
+			final File src3 = tileFile(dir, extension, rowabove * 2 + 1, colabove * 2 + 1);
+
+			sourceFiles.remove(src0);
+			sourceFiles.remove(src1);
+			sourceFiles.remove(src2);
+			sourceFiles.remove(src3);
+
+			final File dst = tileFile(new File(dir.getParent() + "/" + (level - 1)), extension, rowabove, colabove);
+			dst.getParentFile().mkdirs();
 
-				while (!sourceFiles.isEmpty())
+			futures.add(executor.submit(new Callable<Void>()
+			{
+				@Override
+				public Void call()
 				{
 					if (progress.isCancelled())
-						break;
+						return null;
+
+					synchronized (progress)
+					{
+						int c = count.incrementAndGet();
+						progress.getLogger().fine("Overview " + c + "/" + size + " (" + (c * 100 / size) + "%)");
+						progress.progress(c / (double) size);
+					}
 
-					count++;
-					progress.getLogger().fine("Overview " + count + "/" + size + " (" + (count * 100 / size) + "%)");
-					progress.progress(count / (double) size);
-
-					File file = sourceFiles.iterator().next();
-					String path = file.getName();
-					Pattern pattern = Pattern.compile("\\d+");
-					Matcher matcher = pattern.matcher(path);
-					matcher.find();
-					int row = Integer.parseInt(matcher.group());
-					matcher.find(matcher.end());
-					int col = Integer.parseInt(matcher.group());
-
-					int rowabove = row / 2;
-					int colabove = col / 2;
-
-					final File src0 = tileFile(dir, extension, rowabove * 2, colabove * 2);
-					final File src1 = tileFile(dir, extension, rowabove * 2 + 1, colabove * 2);
-					final File src2 = tileFile(dir, extension, rowabove * 2, colabove * 2 + 1);
-					final File src3 = tileFile(dir, extension, rowabove * 2 + 1, colabove * 2 + 1);
-
-					sourceFiles.remove(src0);
-					sourceFiles.remove(src1);
-					sourceFiles.remove(src2);
-					sourceFiles.remove(src3);
-
-					final File dst =
-							tileFile(new File(dir.getParent() + "/" + (level - 1)), extension, rowabove, colabove);
-					dst.getParentFile().mkdirs();
 					if (dst.exists())
 					{
 						progress.getLogger().warning(dst.getAbsolutePath() + " already exists");
@@ -238,11 +337,32 @@ public class Overviewer
 							progress.getLogger().severe(e.getMessage());
 						}
 					}
+					return null;
 				}
-			}
+			}));
 		}
 
-		progress.getLogger().info("Overview generation " + (progress.isCancelled() ? "cancelled" : "complete"));
+		// the next level up is created from this level's tiles, so wait for them
+		for (Future<?> future : futures)
+		{
+			try
+			{
+				future.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				if (e.getCause() instanceof Error)
+					throw (Error) e.getCause();
+				throw new IllegalStateException(e.getCause());
+			}
+		}
 	}
 
 	private static File tileFile(File dir, String extension, int row, int col)
@@ -258,18 +378,18 @@ public class Overviewer
 
 	private static class ImageOverviewCreator implements OverviewCreator
 	{
-		private BufferedImage outsideImage;
+		private int[] outsidePixels;
 		private int width;
 		private int height;
-		private boolean bilinear;
+		private ImageDownsampler.Filter filter;
 		private float jpegQuality;
 
-		public ImageOverviewCreator(int width, int height, NullableNumberArray outsideValues, boolean bilinear,
-				float jpegQuality)
+		public ImageOverviewCreator(int width, int height, NullableNumberArray outsideValues,
+				ImageDownsampler.Filter filter, float jpegQuality)
 		{
 			this.width = width;
 			this.height = height;
-			this.bilinear = bilinear;
+			this.filter = filter;
 			this.jpegQuality = jpegQuality;
 
 			// create image for tiles outside extents (tiles that don't
@@ -303,8 +423,9 @@ public class Overviewer
 				int imageType =
 						bandCount == 1 ? BufferedImage.TYPE_BYTE_GRAY : bandCount == 3 ? BufferedImage.TYPE_INT_RGB
 								: BufferedImage.TYPE_INT_ARGB_PRE;
-				outsideImage = new BufferedImage(width, height, imageType);
+				BufferedImage outsideImage = new BufferedImage(width, height, imageType);
 				outsideImage.setData(raster);
+				outsidePixels = ImageDownsampler.getPixels(outsideImage, width, height);
 			}
 		}
 
@@ -365,49 +486,23 @@ public class Overviewer
 
 			int type = image != null && image.getType() != 0 ? image.getType() : BufferedImage.TYPE_INT_ARGB;
 
-			i0 = i0 != null ? i0 : outsideImage;
-			i1 = i1 != null ? i1 : outsideImage;
-			i2 = i2 != null ? i2 : outsideImage;
-			i3 = i3 != null ? i3 : outsideImage;
-
-			int w = width;
-			int h = height;
-			int w2 = w / 2;
-			int h2 = h / 2;
-
-			BufferedImage id = new BufferedImage(w, h, type);
-			Graphics2D g = id.createGraphics();
-			if (bilinear)
-				g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-			else
-				g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-						RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
-
-			if (outsideImage == null && (image == null || image.getColorModel().hasAlpha()))
-			{
-				Composite c = g.getComposite();
-				g.setComposite(AlphaComposite.getInstance(AlphaComposite.CLEAR, 0.0f));
-				g.fillRect(0, 0, w, h);
-				g.setComposite(c);
-			}
+			// missing children are filled with the outside pixels, or are
+			// transparent if there are none
+			int[] p0 = i0 != null ? ImageDownsampler.getPixels(i0, width, height) : outsidePixels;
+			int[] p1 = i1 != null ? ImageDownsampler.getPixels(i1, width, height) : outsidePixels;
+			int[] p2 = i2 != null ? ImageDownsampler.getPixels(i2, width, height) : outsidePixels;
+			int[] p3 = i3 != null ? ImageDownsampler.getPixels(i3, width, height) : outsidePixels;
 
 			// +--+--+ 0
-			// |i1|i3|
-			// +--+--+ h2
-			// |i0|i2|
+			// |p1|p3|
 			// +--+--+ h
-			// 0 w2 w
-
-			if (i0 != null)
-				g.drawImage(i0, 0, h2, w2, h, 0, 0, w, h, null);
-			if (i1 != null)
-				g.drawImage(i1, 0, 0, w2, h2, 0, 0, w, h, null);
-			if (i2 != null)
-				g.drawImage(i2, w2, h2, w, h, 0, 0, w, h, null);
-			if (i3 != null)
-				g.drawImage(i3, w2, 0, w, h2, 0, 0, w, h, null);
-
-			g.dispose();
+			// |p0|p2|
+			// +--+--+ 2h
+			// 0  w  2w
+
+			int[] mosaic = ImageDownsampler.mosaic(p0, p1, p2, p3, width, height);
+			int[] pixels = ImageDownsampler.downsample(mosaic, width * 2, height * 2, filter);
+			BufferedImage id = ImageDownsampler.createImage(pixels, width, height, type);
 
 			dst.getParentFile().mkdirs();
 			String imageformat = dst.getName().substring(dst.getName().lastIndexOf('.') + 1).toLowerCase();
@@ -36,6 +36,7 @@ import org.gdal.gdal.Dataset;
 
 import au.gov.ga.worldwind.tiler.gdal.GDALTile;
 import au.gov.ga.worldwind.tiler.gdal.GDALTileParameters;
+import au.gov.ga.worldwind.tiler.gdal.GDALWarpCache;
 import au.gov.ga.worldwind.tiler.mapnik.MapnikUtil;
 import au.gov.ga.worldwind.tiler.util.LatLon;
 import au.gov.ga.worldwind.tiler.util.MinMaxArray;
@@ -244,6 +245,15 @@ public class Tiler
 
 		File levelDir = new File(outputDirectory, String.valueOf(level));
 
+		GDALWarpCache warpCache = null;
+		int superTileFactor = 1;
+		if (reprojectIfRequired && type != TilingType.Mapnik)
+		{
+			//reprojected tiles are read from warped super-tiles, so generate the tiles in super-tile order
+			warpCache = new GDALWarpCache(new Dimension(tilesize, tilesize));
+			superTileFactor = warpCache.getSuperTileFactor();
+		}
+
 		int startX = minX;
 		int startY = minY;
 		if (resume)
@@ -271,120 +281,166 @@ public class Tiler
 					}
 				}
 			}
+
+			if (superTileFactor > 1)
+			{
+				//tiles are generated in super-tile order, so restart from the start of the super-tile row
+				startY = Math.max(minY, getSuperTileEnd(startY, superTileFactor) - superTileFactor + 1);
+				startX = minX;
+			}
 		}
 
 		int xsize = maxX - minX + 1;
 		int ysize = maxY - minY + 1;
 		int size = xsize * ysize;
 		int count = (startY - minY) * xsize + (startX - minX);
-		for (int Y = startY; Y <= maxY; Y++)
+		try
 		{
-			if (progress.isCancelled())
-				break;
-
-			File rowDir = new File(levelDir, Util.paddedInt(Y, 4));
-			if (!rowDir.exists())
-			{
-				rowDir.mkdirs();
-			}
-
-			for (int X = (Y == startY ? startX : minX); X <= maxX; X++)
+			for (int bandY = startY; bandY <= maxY;)
 			{
 				if (progress.isCancelled())
 					break;
 
-				count++;
-				progress.getLogger().fine(
-						"Tile (" + X + "," + Y + "), " + count + "/" + size + " (" + (count * 100 / size)
-								+ "%) (column " + (X - minX + 1) + "/" + xsize + ", row " + (Y - minY + 1) + "/"
-								+ ysize + ")");
-				progress.progress(count / (double) size);
-
-				final double lat1 = (Y * tilesizedegrees) + origin.getLatitude();
-				final double lon1 = (X * tilesizedegrees) + origin.getLongitude();
-				final double lat2 = lat1 + tilesizedegrees;
-				final double lon2 = lon1 + tilesizedegrees;
-				Sector s = new Sector(lat1, lon1, lat2, lon2);
-
-				final File dst = new File(rowDir, Util.paddedInt(Y, 4) + "_" + Util.paddedInt(X, 4) + "." + outputExt);
-				if (dst.exists())
-				{
-					progress.getLogger().warning(dst.getAbsolutePath() + " already exists");
-				}
-				else
+				int bandMaxY = Math.min(maxY, getSuperTileEnd(bandY, superTileFactor));
+				for (int blockX = (bandY == startY ? startX : minX); blockX <= maxX;)
 				{
-					try
+					if (progress.isCancelled())
+						break;
+
+					int blockMaxX = Math.min(maxX, getSuperTileEnd(blockX, superTileFactor));
+					for (int Y = bandY; Y <= bandMaxY; Y++)
 					{
-						if (type == TilingType.Mapnik)
+						if (progress.isCancelled())
+							break;
+
+						File rowDir = new File(levelDir, Util.paddedInt(Y, 4));
+						if (!rowDir.exists())
 						{
-							MapnikUtil.tile(s, tilesize, tilesize, ignoreBlank, reprojectIfRequired, mapFile, dst,
-									progress.getLogger());
+							rowDir.mkdirs();
 						}
-						else
+
+						for (int X = blockX; X <= blockMaxX; X++)
 						{
-							GDALTileParameters parameters =
-									new GDALTileParameters(dataset, new Dimension(tilesize, tilesize), s);
-							parameters.addAlpha = addAlpha;
-							parameters.selectedBand = band;
-							parameters.reprojectIfRequired = reprojectIfRequired;
-							parameters.bilinearInterpolationIfRequired = linearInterpolationIfRequired;
-							parameters.noData = outsideValues;
-							parameters.minMaxs = replaceMinMaxs;
-							parameters.replacement = replace;
-							parameters.otherwise = otherwise;
+							if (progress.isCancelled())
+								break;
 
-							GDALTile tile = new GDALTile(parameters);
-							if (type == TilingType.Elevations)
-							{
-								tile = tile.convertToType(bufferType);
+							count++;
+							progress.getLogger().fine(
+									"Tile (" + X + "," + Y + "), " + count + "/" + size + " (" + (count * 100 / size)
+											+ "%) (column " + (X - minX + 1) + "/" + xsize + ", row " + (Y - minY + 1)
+											+ "/" + ysize + ")");
+							progress.progress(count / (double) size);
 
-								tile.updateMinMax(minMax, outsideValues);
+							final double lat1 = (Y * tilesizedegrees) + origin.getLatitude();
+							final double lon1 = (X * tilesizedegrees) + origin.getLongitude();
+							final double lat2 = lat1 + tilesizedegrees;
+							final double lon2 = lon1 + tilesizedegrees;
+							Sector s = new Sector(lat1, lon1, lat2, lon2);
 
-								ByteBuffer bb = tile.getBuffer();
-								bb.rewind();
-								RandomAccessFile raf = null;
-								try
-								{
-									raf = new RandomAccessFile(dst, "rw");
-									MappedByteBuffer mbb = raf.getChannel().map(MapMode.READ_WRITE, 0, bb.limit());
-									mbb.order(bb.order());
-									mbb.put(bb);
-								}
-								finally
+							final File dst =
+									new File(rowDir, Util.paddedInt(Y, 4) + "_" + Util.paddedInt(X, 4) + "."
+											+ outputExt);
+							if (dst.exists())
+							{
+								if (!resume)
 								{
-									if (raf != null)
-										raf.close();
+									progress.getLogger().warning(dst.getAbsolutePath() + " already exists");
 								}
 							}
 							else
 							{
-								if (!(ignoreBlank && tile.isBlank()))
+								try
+								{
+									if (type == TilingType.Mapnik)
+									{
+										MapnikUtil.tile(s, tilesize, tilesize, ignoreBlank, reprojectIfRequired,
+												mapFile, dst, progress.getLogger());
+									}
+									else
+									{
+										GDALTileParameters parameters =
+												new GDALTileParameters(dataset, new Dimension(tilesize, tilesize), s);
+										parameters.addAlpha = addAlpha;
+										parameters.selectedBand = band;
+										parameters.reprojectIfRequired = reprojectIfRequired;
+										parameters.bilinearInterpolationIfRequired = linearInterpolationIfRequired;
+										parameters.noData = outsideValues;
+										parameters.minMaxs = replaceMinMaxs;
+										parameters.replacement = replace;
+										parameters.otherwise = otherwise;
+										parameters.warpCache = warpCache;
+
+										GDALTile tile = new GDALTile(parameters);
+										if (type == TilingType.Elevations)
+										{
+											tile = tile.convertToType(bufferType);
+
+											tile.updateMinMax(minMax, outsideValues);
+
+											ByteBuffer bb = tile.getBuffer();
+											bb.rewind();
+											RandomAccessFile raf = null;
+											try
+											{
+												raf = new RandomAccessFile(dst, "rw");
+												MappedByteBuffer mbb =
+														raf.getChannel().map(MapMode.READ_WRITE, 0, bb.limit());
+												mbb.order(bb.order());
+												mbb.put(bb);
+											}
+											finally
+											{
+												if (raf != null)
+													raf.close();
+											}
+										}
+										else
+										{
+											if (!(ignoreBlank && tile.isBlank()))
+											{
+												BufferedImage image = tile.getAsImage();
+												writeImage(image, imageFormat, dst, jpegQuality);
+											}
+										}
+									}
+								}
+								catch (Exception e)
 								{
-									BufferedImage image = tile.getAsImage();
-									writeImage(image, imageFormat, dst, jpegQuality);
+									progress.getLogger().severe(e.getMessage());
+									try
+									{
+										Thread.sleep(1);
+									}
+									catch (InterruptedException e1)
+									{
+										e1.printStackTrace();
+									}
 								}
 							}
 						}
 					}
-					catch (Exception e)
-					{
-						progress.getLogger().severe(e.getMessage());
-						try
-						{
-							Thread.sleep(1);
-						}
-						catch (InterruptedException e1)
-						{
-							e1.printStackTrace();
-						}
-					}
+					blockX = blockMaxX + 1;
 				}
+				bandY = bandMaxY + 1;
+			}
+		}
+		finally
+		{
+			if (warpCache != null)
+			{
+				warpCache.clear();
 			}
 		}
 
 		progress.getLogger().info("Tile generation " + (progress.isCancelled() ? "cancelled" : "complete"));
 	}
 
+	private static int getSuperTileEnd(int index, int superTileFactor)
+	{
+		int superIndex = index >= 0 ? index / superTileFactor : -((-index + superTileFactor - 1) / superTileFactor);
+		return superIndex * superTileFactor + superTileFactor - 1;
+	}
+
 	public static void writeImage(BufferedImage image, String format, File file, float jpegQuality) throws IOException
 	{
 		if ("jpg".equalsIgnoreCase(format))
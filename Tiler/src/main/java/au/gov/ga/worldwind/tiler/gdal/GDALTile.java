@@ -40,15 +40,15 @@ import java.nio.ByteOrder;
 
 import org.gdal.gdal.Band;
 import org.gdal.gdal.Dataset;
-import org.gdal.gdal.Driver;
 import org.gdal.gdal.gdal;
-import org.gdal.gdalconst.gdalconst;
 import org.gdal.gdalconst.gdalconstConstants;
 import org.gdal.osr.SpatialReference;
 
 import au.gov.ga.worldwind.tiler.util.MinMaxArray;
 import au.gov.ga.worldwind.tiler.util.NullableNumberArray;
 import au.gov.ga.worldwind.tiler.util.NumberArray;
+import au.gov.ga.worldwind.tiler.util.RasterKernel;
+import au.gov.ga.worldwind.tiler.util.RasterKernels;
 import au.gov.ga.worldwind.tiler.util.Sector;
 import au.gov.ga.worldwind.tiler.util.TilerException;
 
@@ -71,6 +71,7 @@ public class GDALTile
 	private int bufferType;
 	private int bufferTypeSize;
 	private boolean floatingPoint;
+	private RasterKernel kernel;
 	private boolean isBlank;
 
 	private Rectangle dataRectangle;
@@ -137,6 +138,7 @@ public class GDALTile
 		this.bufferType = bufferType;
 		this.bufferTypeSize = bufferTypeSize;
 		this.floatingPoint = floatingPoint;
+		this.kernel = RasterKernels.forType(bufferType);
 
 		this.parameters = tile.parameters;
 
@@ -216,45 +218,25 @@ public class GDALTile
 
 	protected void readDatasetReprojected(SpatialReference dstSR) throws GDALException, TilerException
 	{
-		int width = parameters.size.width;
-		int height = parameters.size.height;
-
-		Driver memDriver = gdal.GetDriverByName("MEM");
-		//create a dataset with 1 band with the same data type as band 1 of the source
-		Dataset dst = memDriver.Create("mem", width, height, 1, parameters.dataset.GetRasterBand(1).getDataType());
-		//add the other bands with the same data type as the source bands
-		for (int i = 1; i < parameters.dataset.getRasterCount(); i++)
+		if (parameters.warpCache != null)
 		{
-			dst.AddBand(parameters.dataset.GetRasterBand(i + 1).getDataType());
+			//read the tile from the warped super-tile containing it
+			GDALWarpCache.Block block = parameters.warpCache.getBlock(parameters, dstSR);
+			readRectangle(block.dataset, block.getTileRectangle(parameters));
+			return;
 		}
 
-		//currently the NODATA values are being ignored! this means datasets with NODATA in an incorrect projection will not work!
-		/*for (int i = 0; i < dataset.getRasterCount(); i++)
+		Dataset dst =
+				GDALWarpCache.warp(parameters.dataset, parameters.sector, parameters.size, dstSR,
+						parameters.bilinearInterpolationIfRequired, parameters.addAlpha, parameters.noData);
+		try
 		{
-			Band srcBand = dataset.GetRasterBand(i + 1);
-			Band dstBand = dst.GetRasterBand(i + 1);
-			Double[] val = new Double[1];
-			srcBand.GetNoDataValue(val);
-			if (val[0] != null)
-				dstBand.SetNoDataValue(val[0]);
-		}*/
-
-		double[] geoTransformArray = new double[6];
-		geoTransformArray[0] = parameters.sector.getMinLongitude();
-		geoTransformArray[3] = parameters.sector.getMaxLatitude();
-		geoTransformArray[1] = parameters.sector.getDeltaLongitude() / width;
-		geoTransformArray[5] = -parameters.sector.getDeltaLatitude() / height;
-		dst.SetGeoTransform(geoTransformArray);
-		dst.SetProjection(dstSR.ExportToWkt());
-
-		int returnVal =
-				gdal.ReprojectImage(parameters.dataset, dst, null, null, parameters.bilinearInterpolationIfRequired
-						? gdalconst.GRA_Bilinear : gdalconst.GRA_NearestNeighbour);
-		if (returnVal != gdalconstConstants.CE_None)
+			readRectangle(dst, null);
+		}
+		finally
 		{
-			throw new GDALException();
+			dst.delete();
 		}
-		readRectangle(dst, null);
 	}
 
 	protected void readRectangle(Dataset dataset, Rectangle srcRect) throws GDALException, TilerException
@@ -310,6 +292,7 @@ public class GDALTile
 		int dataTypeSize = gdal.GetDataTypeSize(bufferType); // in bits
 		bufferTypeSize = dataTypeSize / 8; // in bytes
 		floatingPoint = isTypeFloatingPoint(bufferType);
+		kernel = RasterKernels.forType(bufferType);
 
 		ByteBuffer directBuffer = null;
 		try
@@ -626,9 +609,37 @@ public class GDALTile
 	}
 
 	public BufferedImage getAsImage() throws TilerException
+	{
+		return createImage(buffer, parameters.size.width, parameters.size.height);
+	}
+
+	/**
+	 * Calculate the color of a single pixel of this tile, without creating the
+	 * full image.
+	 * 
+	 * @return The same color as returned by {@link BufferedImage#getRGB(int, int)}
+	 *         for the image created by {@link #getAsImage()}
+	 */
+	public int getRGB(int x, int y) throws TilerException
 	{
 		int width = parameters.size.width;
 		int height = parameters.size.height;
+		ByteBuffer pixel = ByteBuffer.allocate(bufferBandCount * bufferTypeSize);
+		pixel.order(buffer.order());
+		for (int b = 0; b < bufferBandCount; b++)
+		{
+			int index = getBufferIndex(x, y, b, width, height) * bufferTypeSize;
+			for (int i = 0; i < bufferTypeSize; i++)
+			{
+				pixel.put(buffer.get(index + i));
+			}
+		}
+		pixel.rewind();
+		return createImage(pixel, 1, 1).getRGB(0, 0);
+	}
+
+	private BufferedImage createImage(ByteBuffer imageBuffer, int width, int height) throws TilerException
+	{
 		int pixels = width * height;
 		int bandCount = bufferBandCount;
 
@@ -640,7 +651,7 @@ public class GDALTile
 		if (bufferType == gdalconstConstants.GDT_Byte)
 		{
 			byte[] bytes = new byte[pixels * bandCount];
-			buffer.get(bytes);
+			imageBuffer.get(bytes);
 			imgBuffer = new DataBufferByte(bytes, bytes.length);
 			dataType = DataBuffer.TYPE_BYTE;
 			imageType = indexed ? BufferedImage.TYPE_BYTE_INDEXED : BufferedImage.TYPE_BYTE_GRAY;
@@ -649,7 +660,7 @@ public class GDALTile
 				|| bufferType == gdalconstConstants.GDT_CInt16)
 		{
 			short[] shorts = new short[pixels * bandCount];
-			buffer.asShortBuffer().get(shorts);
+			imageBuffer.asShortBuffer().get(shorts);
 			imgBuffer = new DataBufferShort(shorts, shorts.length);
 			dataType = bufferType == gdalconstConstants.GDT_UInt16 ? DataBuffer.TYPE_USHORT : DataBuffer.TYPE_SHORT;
 			imageType = BufferedImage.TYPE_USHORT_GRAY;
@@ -658,7 +669,7 @@ public class GDALTile
 				|| bufferType == gdalconstConstants.GDT_CInt32)
 		{
 			int[] ints = new int[pixels * bandCount];
-			buffer.asIntBuffer().get(ints);
+			imageBuffer.asIntBuffer().get(ints);
 			imgBuffer = new DataBufferInt(ints, ints.length);
 			dataType = DataBuffer.TYPE_INT;
 			imageType = BufferedImage.TYPE_CUSTOM;
@@ -666,10 +677,10 @@ public class GDALTile
 		//TEMP
 		else if (bufferType == gdalconstConstants.GDT_Float32 && bandCount == 1)
 		{
-			GDALTile byteTile = this.convertToType(gdalconstConstants.GDT_Byte);
+			ByteBuffer buf = ByteBuffer.allocate(pixels);
+			kernel.convert(imageBuffer, buf, RasterKernels.BYTE, pixels);
 			bandCount = 4;
 			byte[] bytes = new byte[pixels * bandCount];
-			ByteBuffer buf = byteTile.getBuffer();
 			for (int i = 0; i < bandCount; i++)
 			{
 				buf.rewind();
@@ -778,26 +789,9 @@ public class GDALTile
 				}
 			}
 
-			for (int x = 0; x < dataRectangle.width; x++)
+			if (!kernel.isEqual(buffer, parameters.size, b, dataRectangle, values))
 			{
-				for (int y = 0; y < dataRectangle.height; y++)
-				{
-					int index = getBufferIndex(x, y, b, dataRectangle.width, dataRectangle.height) * bufferTypeSize;
-					if (floatingPoint)
-					{
-						if (getDoubleValue(index, buffer, bufferType) != values.getDouble(b))
-						{
-							return false;
-						}
-					}
-					else
-					{
-						if (getLongValue(index, buffer, bufferType) != values.getLong(b))
-						{
-							return false;
-						}
-					}
-				}
+				return false;
 			}
 		}
 
@@ -842,24 +836,7 @@ public class GDALTile
 				}
 			}
 
-			for (int x = 0; x < width; x++)
-			{
-				for (int y = 0; y < height; y++)
-				{
-					if (!dataRectangle.contains(x, y))
-					{
-						int index = getBufferIndex(x, y, b, width, height) * bufferTypeSize;
-						if (floatingPoint)
-						{
-							putDoubleValue(index, buffer, bufferType, values.getDouble(b));
-						}
-						else
-						{
-							putLongValue(index, buffer, bufferType, values.getLong(b));
-						}
-					}
-				}
-			}
+			kernel.fillOutside(buffer, parameters.size, b, dataRectangle, values);
 		}
 	}
 
@@ -906,68 +883,7 @@ public class GDALTile
 			return;
 		}
 
-		double[] doubleValues = new double[bufferBandCount];
-		long[] longValues = new long[bufferBandCount];
-		int[] indices = new int[bufferBandCount];
-
-		for (int y = replaceRegion.y; y < replaceRegion.y + replaceRegion.height; y++)
-		{
-			for (int x = replaceRegion.x; x < replaceRegion.x + replaceRegion.width; x++)
-			{
-				boolean between = false;
-
-				for (int b = 0; b < bufferBandCount; b++)
-				{
-					indices[b] = getBufferIndex(x, y, b, bufferSize.width, bufferSize.height) * bufferTypeSize;
-					if (floatingPoint)
-					{
-						doubleValues[b] = getDoubleValue(indices[b], buffer, bufferType);
-					}
-					else
-					{
-						longValues[b] = getLongValue(indices[b], buffer, bufferType);
-					}
-				}
-
-				for (int i = 0; i < minMaxs.length; i++)
-				{
-					if (minMaxs[i] != null)
-					{
-						if (floatingPoint)
-						{
-							between = minMaxs[i].isBetweenDouble(doubleValues);
-						}
-						else
-						{
-							between = minMaxs[i].isBetweenLong(longValues);
-						}
-						if (between)
-						{
-							break;
-						}
-					}
-				}
-
-				NullableNumberArray values = between ? replacement : otherwise;
-				if (values != null)
-				{
-					for (int b = 0; b < bufferBandCount; b++)
-					{
-						if (values.getDouble(b) != null)
-						{
-							if (floatingPoint)
-							{
-								putDoubleValue(indices[b], buffer, bufferType, values.getDouble(b));
-							}
-							else
-							{
-								putLongValue(indices[b], buffer, bufferType, values.getLong(b));
-							}
-						}
-					}
-				}
-			}
-		}
+		kernel.replaceValues(buffer, bufferSize, bufferBandCount, replaceRegion, minMaxs, replacement, otherwise);
 	}
 
 	public void updateMinMax(NumberArray minmax, NullableNumberArray outsideValues)
@@ -982,55 +898,7 @@ public class GDALTile
 			outsideValues = null; // just in case
 		}
 
-		int width = parameters.size.width;
-		int height = parameters.size.height;
-
-		for (int y = 0; y < height; y++)
-		{
-			for (int x = 0; x < width; x++)
-			{
-				for (int b = 0; b < bufferBandCount; b++)
-				{
-					int index = getBufferIndex(x, y, b, width, height) * bufferTypeSize;
-					if (floatingPoint)
-					{
-						double value = getDoubleValue(index, buffer, bufferType);
-						if (outsideValues != null && outsideValues.getDouble(b) != null
-								&& value == outsideValues.getDouble(b))
-						{
-							continue;
-						}
-
-						if (value < minmax.getDouble(0))
-						{
-							minmax.setDouble(0, value);
-						}
-						if (value > minmax.getDouble(1))
-						{
-							minmax.setDouble(1, value);
-						}
-					}
-					else
-					{
-						Long value = getLongValue(index, buffer, bufferType);
-						if (outsideValues != null && outsideValues.getLong(b) != null
-								&& value == outsideValues.getLong(b))
-						{
-							continue;
-						}
-
-						if (value < minmax.getLong(0))
-						{
-							minmax.setLong(0, value);
-						}
-						if (value > minmax.getLong(1))
-						{
-							minmax.setLong(1, value);
-						}
-					}
-				}
-			}
-		}
+		kernel.updateMinMax(buffer, parameters.size, bufferBandCount, minmax, outsideValues);
 	}
 
 	protected static int getBufferIndex(int x, int y, int b, int width, int height)
@@ -1087,31 +955,7 @@ public class GDALTile
 		ByteBuffer newBuffer = ByteBuffer.allocate(size * newBufferTypeSize);
 		newBuffer.order(buffer.order());
 
-		long lvalue = 0;
-		double dvalue = 0;
-		buffer.rewind();
-		while (buffer.hasRemaining())
-		{
-			if (floatingPoint)
-			{
-				dvalue = getDoubleValue(buffer, bufferType);
-				lvalue = (long) dvalue;
-			}
-			else
-			{
-				lvalue = getLongValue(buffer, bufferType);
-				dvalue = lvalue;
-			}
-
-			if (newFloatingPoint)
-			{
-				putDoubleValue(newBuffer, newBufferType, dvalue);
-			}
-			else
-			{
-				putLongValue(newBuffer, newBufferType, lvalue);
-			}
-		}
+		kernel.convert(buffer, newBuffer, RasterKernels.forType(newBufferType), size);
 
 		buffer.rewind();
 		newBuffer.rewind();
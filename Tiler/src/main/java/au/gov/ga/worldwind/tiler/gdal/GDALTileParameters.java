@@ -93,6 +93,12 @@ public class GDALTileParameters
 	 */
 	public boolean bilinearInterpolationIfRequired = true;
 
+	/**
+	 * Cache of warped super-tiles to read reprojected tiles from. If this is
+	 * null, the dataset is warped separately for each tile. Defaults to null.
+	 */
+	public GDALWarpCache warpCache = null;
+
 	/**
 	 * Values in the dataset that represent nodata. These values are used for:
 	 * <ul>
@@ -0,0 +1,415 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.gdal;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.gdal.gdal.Band;
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.Driver;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconst;
+import org.gdal.gdalconst.gdalconstConstants;
+import org.gdal.osr.SpatialReference;
+
+import au.gov.ga.worldwind.tiler.util.NullableNumberArray;
+import au.gov.ga.worldwind.tiler.util.Sector;
+
+/**
+ * Cache of reprojected (warped) super-tiles. Instead of warping the source
+ * dataset once for every output tile, a block of
+ * {@link #getSuperTileFactor()}x{@link #getSuperTileFactor()} output tiles is
+ * warped at once, and the output tiles are read from the warped block.
+ * Recently used blocks are kept in memory, up to a maximum number of bytes.
+ * <p/>
+ * A cache should only be used for tiles of a single dataset that share the
+ * same tile size and tiling parameters, and is not thread-safe. Warped blocks
+ * are held in native memory, so {@link #clear()} should be called once tiling
+ * is complete.
+ */
+public class GDALWarpCache
+{
+	/**
+	 * Maximum number of output tiles along each side of a super-tile.
+	 */
+	public final static int MAX_SUPER_TILE_FACTOR = 8;
+	/**
+	 * Maximum width/height (in pixels) of a super-tile.
+	 */
+	public final static int MAX_SUPER_TILE_SIZE = 2048;
+	/**
+	 * Default maximum number of bytes of warped super-tiles to keep in memory.
+	 */
+	public final static long DEFAULT_CAPACITY = 256l * 1024l * 1024l;
+
+	private final int superTileFactor;
+	private final long capacity;
+	private long size = 0;
+	private final LinkedHashMap<BlockKey, Block> blocks = new LinkedHashMap<BlockKey, Block>(16, 0.75f, true);
+
+	/**
+	 * Create a cache for tiles of the given size, using the default capacity.
+	 *
+	 * @param tileSize
+	 *            Size of the output tiles
+	 */
+	public GDALWarpCache(Dimension tileSize)
+	{
+		this(tileSize, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a cache for tiles of the given size.
+	 *
+	 * @param tileSize
+	 *            Size of the output tiles
+	 * @param capacity
+	 *            Maximum number of bytes of warped super-tiles to keep in
+	 *            memory (the most recently used super-tile is always kept)
+	 */
+	public GDALWarpCache(Dimension tileSize, long capacity)
+	{
+		this.superTileFactor = getSuperTileFactor(tileSize);
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @return Number of output tiles along each side of a super-tile
+	 */
+	public int getSuperTileFactor()
+	{
+		return superTileFactor;
+	}
+
+	/**
+	 * Calculate the number of output tiles along each side of a super-tile for
+	 * tiles of the given size.
+	 */
+	public static int getSuperTileFactor(Dimension tileSize)
+	{
+		int largest = Math.max(tileSize.width, tileSize.height);
+		return Math.max(1, Math.min(MAX_SUPER_TILE_FACTOR, MAX_SUPER_TILE_SIZE / largest));
+	}
+
+	/**
+	 * Get the warped super-tile containing the tile described by the given
+	 * parameters, warping it if it isn't cached.
+	 *
+	 * @param parameters
+	 *            Tile parameters
+	 * @param dstSR
+	 *            Spatial reference to warp to
+	 * @return Super-tile containing the tile
+	 * @throws GDALException
+	 *             If the warp fails
+	 */
+	public Block getBlock(GDALTileParameters parameters, SpatialReference dstSR) throws GDALException
+	{
+		BlockKey key = createKey(parameters.dataset, parameters.sector, parameters.size, superTileFactor);
+		Block block = blocks.get(key);
+		if (block == null)
+		{
+			Sector sector = getSuperTileSector(key);
+			Dimension superTileSize =
+					new Dimension(parameters.size.width * superTileFactor, parameters.size.height * superTileFactor);
+			Dataset dataset =
+					warp(parameters.dataset, sector, superTileSize, dstSR,
+							parameters.bilinearInterpolationIfRequired, parameters.addAlpha, parameters.noData);
+			block = new Block(key, dataset, getByteSize(dataset));
+			blocks.put(key, block);
+			size += block.byteSize;
+			evict();
+		}
+		return block;
+	}
+
+	/**
+	 * Delete all the cached super-tiles.
+	 */
+	public void clear()
+	{
+		for (Block block : blocks.values())
+		{
+			block.dataset.delete();
+		}
+		blocks.clear();
+		size = 0;
+	}
+
+	protected void evict()
+	{
+		Iterator<Block> iterator = blocks.values().iterator();
+		while (size > capacity && blocks.size() > 1)
+		{
+			Block eldest = iterator.next();
+			iterator.remove();
+			size -= eldest.byteSize;
+			eldest.dataset.delete();
+		}
+	}
+
+	protected static long getByteSize(Dataset dataset)
+	{
+		long size = 0;
+		for (int i = 0; i < dataset.getRasterCount(); i++)
+		{
+			size += gdal.GetDataTypeSize(dataset.GetRasterBand(i + 1).getDataType()) / 8;
+		}
+		return size * dataset.getRasterXSize() * dataset.getRasterYSize();
+	}
+
+	/**
+	 * Create the key identifying the super-tile containing the given tile.
+	 * Tiles are assumed to lie on a regular grid with a cell size equal to the
+	 * tile sector's size.
+	 */
+	protected static BlockKey createKey(Dataset dataset, Sector sector, Dimension tileSize, int superTileFactor)
+	{
+		double deltaLon = sector.getDeltaLongitude();
+		double deltaLat = sector.getDeltaLatitude();
+		long column = Math.round(sector.getMinLongitude() / deltaLon);
+		long row = Math.round(sector.getMinLatitude() / deltaLat);
+		double phaseLon = sector.getMinLongitude() - column * deltaLon;
+		double phaseLat = sector.getMinLatitude() - row * deltaLat;
+		return new BlockKey(dataset, tileSize, deltaLon, deltaLat, phaseLon, phaseLat, floorDiv(column,
+				superTileFactor), floorDiv(row, superTileFactor), column, row, superTileFactor);
+	}
+
+	protected static Sector getSuperTileSector(BlockKey key)
+	{
+		double minLon = key.phaseLon + key.superColumn * key.superTileFactor * key.deltaLon;
+		double minLat = key.phaseLat + key.superRow * key.superTileFactor * key.deltaLat;
+		return new Sector(minLat, minLon, minLat + key.superTileFactor * key.deltaLat, minLon + key.superTileFactor
+				* key.deltaLon);
+	}
+
+	protected static long floorDiv(long a, long b)
+	{
+		return a >= 0 ? a / b : -((-a + b - 1) / b);
+	}
+
+	/**
+	 * Warp the given sector of the source dataset into a new in-memory
+	 * dataset. The source NODATA values (and alpha band) are respected by the
+	 * warp. Pixels in the output that aren't covered by valid source pixels are
+	 * set to the NODATA value (or transparent, if an alpha band is added).
+	 *
+	 * @param src
+	 *            Source dataset
+	 * @param sector
+	 *            Sector to warp (in destination coordinates)
+	 * @param size
+	 *            Size of the output dataset
+	 * @param dstSR
+	 *            Spatial reference to warp to
+	 * @param bilinear
+	 *            Use bilinear interpolation? Otherwise nearest neighbour is
+	 *            used.
+	 * @param addAlpha
+	 *            Add an alpha band to the output if the source has 3 bands
+	 * @param noData
+	 *            Value to use for pixels not covered by the source, if the
+	 *            source bands have no NODATA value (can be null)
+	 * @return Warped in-memory dataset (the caller must delete it)
+	 * @throws GDALException
+	 *             If the warp fails
+	 */
+	public static Dataset warp(Dataset src, Sector sector, Dimension size, SpatialReference dstSR,
+			boolean bilinear, boolean addAlpha, NullableNumberArray noData) throws GDALException
+	{
+		int bandCount = src.getRasterCount();
+		Driver memDriver = gdal.GetDriverByName("MEM");
+		//create a dataset with 1 band with the same data type as band 1 of the source
+		Dataset dst = memDriver.Create("mem", size.width, size.height, 1, src.GetRasterBand(1).getDataType());
+		try
+		{
+			//add the other bands with the same data type as the source bands
+			for (int i = 1; i < bandCount; i++)
+			{
+				dst.AddBand(src.GetRasterBand(i + 1).getDataType());
+			}
+
+			for (int i = 0; i < bandCount; i++)
+			{
+				Band srcBand = src.GetRasterBand(i + 1);
+				Band dstBand = dst.GetRasterBand(i + 1);
+				if (srcBand.GetRasterColorInterpretation() == gdalconstConstants.GCI_AlphaBand)
+				{
+					//the source alpha band is warped as an alpha band, leaving uncovered pixels transparent
+					dstBand.SetRasterColorInterpretation(gdalconstConstants.GCI_AlphaBand);
+					continue;
+				}
+
+				//the warper skips source NODATA pixels, so pixels not written keep the fill value
+				Double[] value = new Double[1];
+				srcBand.GetNoDataValue(value);
+				if (value[0] != null)
+				{
+					dstBand.SetNoDataValue(value[0]);
+				}
+				Double fill = noData != null && i < noData.length() ? noData.getDouble(i) : null;
+				if (fill == null)
+				{
+					fill = value[0];
+				}
+				if (fill != null && fill != 0)
+				{
+					dstBand.Fill(fill);
+				}
+			}
+
+			if (addAlpha && bandCount == 3)
+			{
+				//the warper sets the alpha band to opaque where valid source pixels were written
+				dst.AddBand(src.GetRasterBand(1).getDataType());
+				dst.GetRasterBand(4).SetRasterColorInterpretation(gdalconstConstants.GCI_AlphaBand);
+			}
+
+			double[] geoTransformArray = new double[6];
+			geoTransformArray[0] = sector.getMinLongitude();
+			geoTransformArray[3] = sector.getMaxLatitude();
+			geoTransformArray[1] = sector.getDeltaLongitude() / size.width;
+			geoTransformArray[5] = -sector.getDeltaLatitude() / size.height;
+			dst.SetGeoTransform(geoTransformArray);
+			dst.SetProjection(dstSR.ExportToWkt());
+
+			int returnVal =
+					gdal.ReprojectImage(src, dst, null, null, bilinear ? gdalconst.GRA_Bilinear
+							: gdalconst.GRA_NearestNeighbour);
+			if (returnVal != gdalconstConstants.CE_None)
+			{
+				throw new GDALException();
+			}
+		}
+		catch (GDALException e)
+		{
+			dst.delete();
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			dst.delete();
+			throw e;
+		}
+		return dst;
+	}
+
+	/**
+	 * A warped super-tile.
+	 */
+	public static class Block
+	{
+		private final BlockKey key;
+		public final Dataset dataset;
+		public final long byteSize;
+
+		public Block(BlockKey key, Dataset dataset, long byteSize)
+		{
+			this.key = key;
+			this.dataset = dataset;
+			this.byteSize = byteSize;
+		}
+
+		/**
+		 * Calculate the pixel rectangle of the tile with the given parameters
+		 * within this super-tile.
+		 */
+		public Rectangle getTileRectangle(GDALTileParameters parameters)
+		{
+			BlockKey tileKey =
+					createKey(parameters.dataset, parameters.sector, parameters.size, key.superTileFactor);
+			return tileKey.getTileRectangle();
+		}
+	}
+
+	/**
+	 * Key that identifies a super-tile, along with the position of the tile
+	 * the key was created for.
+	 */
+	protected static class BlockKey
+	{
+		public final Dataset dataset;
+		public final Dimension tileSize;
+		public final double deltaLon;
+		public final double deltaLat;
+		public final double phaseLon;
+		public final double phaseLat;
+		public final long superColumn;
+		public final long superRow;
+		public final long column;
+		public final long row;
+		public final int superTileFactor;
+
+		public BlockKey(Dataset dataset, Dimension tileSize, double deltaLon, double deltaLat, double phaseLon,
+				double phaseLat, long superColumn, long superRow, long column, long row, int superTileFactor)
+		{
+			this.dataset = dataset;
+			this.tileSize = tileSize;
+			this.deltaLon = deltaLon;
+			this.deltaLat = deltaLat;
+			this.phaseLon = phaseLon;
+			this.phaseLat = phaseLat;
+			this.superColumn = superColumn;
+			this.superRow = superRow;
+			this.column = column;
+			this.row = row;
+			this.superTileFactor = superTileFactor;
+		}
+
+		/**
+		 * @return Pixel rectangle of the tile this key was created for within
+		 *         the super-tile (row 0 is the top of the super-tile)
+		 */
+		public Rectangle getTileRectangle()
+		{
+			int x = (int) (column - superColumn * superTileFactor) * tileSize.width;
+			int y = (int) (superRow * superTileFactor + superTileFactor - 1 - row) * tileSize.height;
+			return new Rectangle(x, y, tileSize.width, tileSize.height);
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof BlockKey))
+			{
+				return false;
+			}
+			BlockKey other = (BlockKey) obj;
+			return dataset == other.dataset && tileSize.equals(other.tileSize) && superColumn == other.superColumn
+					&& superRow == other.superRow && superTileFactor == other.superTileFactor
+					&& close(deltaLon, other.deltaLon) && close(deltaLat, other.deltaLat)
+					&& close(phaseLon, other.phaseLon) && close(phaseLat, other.phaseLat);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int result = System.identityHashCode(dataset);
+			result = 31 * result + tileSize.hashCode();
+			result = 31 * result + (int) (superColumn ^ (superColumn >>> 32));
+			result = 31 * result + (int) (superRow ^ (superRow >>> 32));
+			return result;
+		}
+
+		private static boolean close(double d1, double d2)
+		{
+			return Math.abs(d1 - d2) <= 1e-9 * Math.max(1d, Math.abs(d1));
+		}
+	}
+}
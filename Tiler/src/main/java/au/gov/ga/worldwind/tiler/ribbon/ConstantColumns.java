@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.ribbon;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+import au.gov.ga.worldwind.tiler.util.TilerException;
+
+/**
+ * Calculates the number of pixels of constant color at the top and bottom of
+ * each column of a ribbon image.
+ * <p/>
+ * Columns can be calculated directly from a raw band-sequential raster buffer
+ * (as read by the <code>GDALTile</code>), comparing the bytes of each band.
+ * Pixels with different raw values can still have the same color once
+ * converted to an image (for example, fully transparent pixels), so the
+ * colors of two pixels are only calculated if their raw values differ. The
+ * results are therefore identical to calculating the columns from the image.
+ */
+public class ConstantColumns
+{
+	/**
+	 * Provides the color of pixels in a raster, as would be returned by
+	 * {@link BufferedImage#getRGB(int, int)} for the raster's image.
+	 */
+	public static interface PixelColors
+	{
+		int getRGB(int x, int y) throws TilerException;
+	}
+
+	/**
+	 * Calculate the constant pixels of each column of a raw raster buffer.
+	 *
+	 * @param buffer
+	 *            Band-sequential raster buffer
+	 * @param size
+	 *            Size of the raster
+	 * @param bandCount
+	 *            Number of bands in the buffer
+	 * @param typeSize
+	 *            Size of each band value in bytes
+	 * @param colors
+	 *            Colors of the raster's pixels, used when raw values differ
+	 * @param fromTop
+	 *            Array in which to store the constant pixel count from the top
+	 *            of each column
+	 * @param fromBottom
+	 *            Array in which to store the constant pixel count from the
+	 *            bottom of each column
+	 * @param offset
+	 *            Index in the arrays of the raster's first column
+	 */
+	public static void calculate(ByteBuffer buffer, Dimension size, int bandCount, int typeSize,
+			PixelColors colors, int[] fromTop, int[] fromBottom, int offset) throws TilerException
+	{
+		int width = size.width;
+		int height = size.height;
+		int rowStride = width * typeSize;
+		int bandStride = height * rowStride;
+
+		for (int x = 0; x < width; x++)
+		{
+			int top = 0;
+			int bottom = 0;
+			for (int y = 0; y < height; y++)
+			{
+				if (y > 0 && !isSameColor(buffer, bandCount, typeSize, bandStride, rowStride, colors, x, y - 1, y))
+				{
+					break;
+				}
+				top++;
+			}
+
+			if (top < height)
+			{
+				for (int y = height - 1; y >= 0; y--)
+				{
+					if (y < height - 1
+							&& !isSameColor(buffer, bandCount, typeSize, bandStride, rowStride, colors, x, y + 1, y))
+					{
+						break;
+					}
+					bottom++;
+				}
+			}
+
+			fromTop[offset + x] = top;
+			fromBottom[offset + x] = bottom;
+		}
+	}
+
+	/**
+	 * Calculate the constant pixels of each column of an image, comparing
+	 * the color of every pixel. Produces the same results as
+	 * {@link #calculate(ByteBuffer, Dimension, int, int, PixelColors, int[], int[], int)}
+	 * for the image created from a raster buffer.
+	 *
+	 * @see #calculate(ByteBuffer, Dimension, int, int, PixelColors, int[],
+	 *      int[], int)
+	 */
+	public static void calculate(BufferedImage image, int[] fromTop, int[] fromBottom, int offset)
+	{
+		int width = image.getWidth();
+		int height = image.getHeight();
+		for (int x = 0; x < width; x++)
+		{
+			int top = 0;
+			int bottom = 0;
+			int lastColor = 0;
+			for (int y = 0; y < height; y++)
+			{
+				int thisColor = image.getRGB(x, y);
+				if (y > 0 && lastColor != thisColor)
+				{
+					break;
+				}
+				lastColor = thisColor;
+				top++;
+			}
+
+			if (top < height)
+			{
+				for (int y = height - 1; y >= 0; y--)
+				{
+					int thisColor = image.getRGB(x, y);
+					if (y < height - 1 && lastColor != thisColor)
+					{
+						break;
+					}
+					lastColor = thisColor;
+					bottom++;
+				}
+			}
+
+			fromTop[offset + x] = top;
+			fromBottom[offset + x] = bottom;
+		}
+	}
+
+	private static boolean isSameColor(ByteBuffer buffer, int bandCount, int typeSize, int bandStride,
+			int rowStride, PixelColors colors, int x, int y1, int y2) throws TilerException
+	{
+		int index1 = y1 * rowStride + x * typeSize;
+		int index2 = y2 * rowStride + x * typeSize;
+		for (int b = 0; b < bandCount; b++)
+		{
+			for (int i = 0; i < typeSize; i++)
+			{
+				if (buffer.get(index1 + i) != buffer.get(index2 + i))
+				{
+					//raw values differ, but may still convert to the same color
+					return colors.getRGB(x, y1) == colors.getRGB(x, y2);
+				}
+			}
+			index1 += bandStride;
+			index2 += bandStride;
+		}
+		return true;
+	}
+}
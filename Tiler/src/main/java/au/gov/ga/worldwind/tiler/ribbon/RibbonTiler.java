@@ -22,16 +22,28 @@ import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
 
 import org.gdal.gdal.Dataset;
 
+import au.gov.ga.worldwind.tiler.gdal.GDALException;
 import au.gov.ga.worldwind.tiler.gdal.GDALTile;
 import au.gov.ga.worldwind.tiler.gdal.GDALTileParameters;
 import au.gov.ga.worldwind.tiler.gdal.GDALUtil;
 import au.gov.ga.worldwind.tiler.ribbon.definition.LayerDefinitionCreator;
+import au.gov.ga.worldwind.tiler.util.TilerException;
 import au.gov.ga.worldwind.tiler.util.Util;
 
 import com.beust.jcommander.JCommander;
@@ -40,6 +52,9 @@ import com.beust.jcommander.ParameterException;
 /**
  * A tiler that is used to process long, thin images for use in
  * <code>CurtainImageTiles</code> (e.g. seismic, AEM, MT etc.)
+ * <p/>
+ * Constant column calculation and tile creation are performed on a pool of
+ * worker threads, each reading from its own GDAL dataset.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  * @author James Navin (james.navin@ga.gov.au)
@@ -90,251 +105,163 @@ public class RibbonTiler
 
 		printLevelsSummary(context, width, height, levels);
 
-		int[] constantPixelsFromTop = null;
-		int[] constantPixelsFromBottom = null;
-		if (context.isRemoveConstantColumns())
-		{
-			//calculate blank rows per column (columns of constant color)
-			log(context, "Calculating columns to remove from the top and bottom of the image...", false);
-			File topFile = new File(context.getTilesetRoot(), context.getTilesetName() + ".top.dat");
-			File bottomFile = new File(context.getTilesetRoot(), context.getTilesetName() + ".bottom.dat");
-			constantPixelsFromTop = RibbonTilerUtils.loadIntArrayFromFile(topFile);
-			constantPixelsFromBottom = RibbonTilerUtils.loadIntArrayFromFile(bottomFile);
-			if (!(constantPixelsFromTop == null || constantPixelsFromBottom == null
-					|| constantPixelsFromTop.length != width || constantPixelsFromBottom.length != width))
-			{
-				log(context, "Loaded removal columns from previous calculations", false);
-			}
-			else
+		ExecutorService executor = createExecutor(context.getThreadCount());
+		WorkerDatasets datasets = new WorkerDatasets(context.getSourceFile());
+		try
+		{
+			int[] constantPixelsFromTop = null;
+			int[] constantPixelsFromBottom = null;
+			if (context.isRemoveConstantColumns())
 			{
-				constantPixelsFromTop = new int[width];
-				constantPixelsFromBottom = new int[width];
-
-				int constantWidth = Math.max(1, 10 * context.getTilesize() * context.getTilesize() / height);
-				for (int startX = 0; startX < width; startX += constantWidth)
+				//calculate blank rows per column (columns of constant color)
+				log(context, "Calculating columns to remove from the top and bottom of the image...", false);
+				File topFile = new File(context.getTilesetRoot(), context.getTilesetName() + ".top.dat");
+				File bottomFile = new File(context.getTilesetRoot(), context.getTilesetName() + ".bottom.dat");
+				constantPixelsFromTop = RibbonTilerUtils.loadIntArrayFromFile(topFile);
+				constantPixelsFromBottom = RibbonTilerUtils.loadIntArrayFromFile(bottomFile);
+				if (!(constantPixelsFromTop == null || constantPixelsFromBottom == null
+						|| constantPixelsFromTop.length != width || constantPixelsFromBottom.length != width))
+				{
+					log(context, "Loaded removal columns from previous calculations", false);
+				}
+				else
 				{
-					int w = Math.min(constantWidth, width - startX);
+					constantPixelsFromTop = new int[width];
+					constantPixelsFromBottom = new int[width];
+					calculateConstantColumns(context, executor, datasets, width, height, constantPixelsFromTop,
+							constantPixelsFromBottom);
+
+					RibbonTilerUtils.saveIntArrayToFile(constantPixelsFromTop, topFile);
+					RibbonTilerUtils.saveIntArrayToFile(constantPixelsFromBottom, bottomFile);
+				}
+			}
 
-					//get an image of the full height, 1 pixel wide at column x
-					Rectangle src =
-							new Rectangle(context.getInsets().left + startX, context.getInsets().top, w, height);
-					GDALTileParameters parameters = new GDALTileParameters(dataset, src.getSize(), src);
-					GDALTile tile = new GDALTile(parameters);
-					BufferedImage image = tile.getAsImage();
+			//calculate tiling parameters
+			int xStrips = Math.max(1, context.getTilesize() / width);
+			int yStrips = Math.max(1, context.getTilesize() / height);
+			int rows = (height - 1) / (context.getTilesize() * xStrips) + 1;
+			int cols = (width - 1) / (context.getTilesize() * yStrips) + 1;
+			File levelDir = new File(context.getTilesetRoot(), String.valueOf(levels - 1));
+
+			//create top level tiles
+			log(context, "Creating top level tiles...", false);
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int y = 0, row = 0; y < height; y += context.getTilesize() * xStrips, row++)
+			{
+				//create row directory
+				String rowPadded = Util.paddedInt(row, 4);
+				File rowDir = new File(levelDir, rowPadded);
+				rowDir.mkdirs();
 
-					log(context, (100 * (startX + 1) / width) + "% done", false);
+				int h = Math.min(context.getTilesize() * xStrips / yStrips, height - y);
 
-					for (int x = 0; x < w; x++)
+				for (int x = 0, col = 0; x < width; x += context.getTilesize() * yStrips, col++)
+				{
+					File imageFile = tileFile(levelDir, row, col, context.getFormat());
+					if (imageFile.exists())
 					{
-						int fromTop = 0;
-						int fromBottom = 0;
-						int lastColor = 0;
-						for (int y = 0; y < height; y++)
-						{
-							int thisColor = image.getRGB(x, y);
-							if (y > 0 && lastColor != thisColor)
-							{
-								break;
-							}
-							lastColor = thisColor;
-							fromTop++;
-						}
+						continue;
+					}
 
-						if (fromTop < height)
-						{
-							for (int y = height - 1; y >= 0; y--)
-							{
-								int thisColor = image.getRGB(x, y);
-								if (y < height - 1 && lastColor != thisColor)
-								{
-									break;
-								}
-								lastColor = thisColor;
-								fromBottom++;
-							}
-						}
+					int w = Math.min(context.getTilesize() * yStrips / xStrips, width - x);
 
-						constantPixelsFromTop[startX + x] = fromTop;
-						constantPixelsFromBottom[startX + x] = fromBottom;
-					}
+					Rectangle src = new Rectangle(x + context.getInsets().left, y + context.getInsets().top, w, h);
+					futures.add(executor.submit(new TopLevelTileTask(context, datasets, src, imageFile,
+							constantPixelsFromTop, constantPixelsFromBottom, x, y, width, height)));
 				}
-
-				RibbonTilerUtils.saveIntArrayToFile(constantPixelsFromTop, topFile);
-				RibbonTilerUtils.saveIntArrayToFile(constantPixelsFromBottom, bottomFile);
 			}
-		}
-
-		//calculate tiling parameters
-		int xStrips = Math.max(1, context.getTilesize() / width);
-		int yStrips = Math.max(1, context.getTilesize() / height);
-		int rows = (height - 1) / (context.getTilesize() * xStrips) + 1;
-		int cols = (width - 1) / (context.getTilesize() * yStrips) + 1;
-		File levelDir = new File(context.getTilesetRoot(), String.valueOf(levels - 1));
-
-		//create top level tiles
-		log(context, "Creating top level tiles...", false);
-		for (int y = 0, row = 0; y < height; y += context.getTilesize() * xStrips, row++)
-		{
-			//create row directory
-			String rowPadded = Util.paddedInt(row, 4);
-			File rowDir = new File(levelDir, rowPadded);
-			rowDir.mkdirs();
+			waitFor(futures);
 
-			int h = Math.min(context.getTilesize() * xStrips / yStrips, height - y);
-
-			for (int x = 0, col = 0; x < width; x += context.getTilesize() * yStrips, col++)
+			//create overviews
+			for (int level = levels - 2; level >= 0; level--)
 			{
-				File imageFile = tileFile(levelDir, row, col, context.getFormat());
-				if (imageFile.exists())
+				int lastRows = rows;
+				int lastCols = cols;
+
+				if (cols == 1)
 				{
-					continue;
+					xStrips <<= 1;
+					rows = (rows + 1) / 2;
 				}
-
-				int w = Math.min(context.getTilesize() * yStrips / xStrips, width - x);
-
-				Rectangle src = new Rectangle(x + context.getInsets().left, y + context.getInsets().top, w, h);
-				GDALTileParameters parameters = new GDALTileParameters(dataset, src.getSize(), src);
-				GDALTile tile = new GDALTile(parameters);
-				BufferedImage image = tile.getAsImage();
-
-				if (context.isRemoveConstantColumns())
+				if (rows == 1)
 				{
-					image =
-							removeConstantColumns(image, constantPixelsFromTop, constantPixelsFromBottom, x, y, width,
-									height, context.isMask());
+					yStrips <<= 1;
+					cols = (cols + 1) / 2;
 				}
 
-				ImageIO.write(image, context.getFormat(), imageFile);
-			}
-		}
-
-		//create overviews
-		for (int level = levels - 2; level >= 0; level--)
-		{
-			int lastRows = rows;
-			int lastCols = cols;
-
-			if (cols == 1)
-			{
-				xStrips <<= 1;
 				rows = (rows + 1) / 2;
-			}
-			if (rows == 1)
-			{
-				yStrips <<= 1;
 				cols = (cols + 1) / 2;
-			}
-
-			rows = (rows + 1) / 2;
-			cols = (cols + 1) / 2;
 
-			log(context, "", true);
-			log(context, "Level " + level, true);
-			log(context, "lastRows x lastCols = " + lastRows + " x " + lastCols, true);
-			log(context, "Rows x Cols = " + rows + " x " + cols, true);
-			log(context, "xStrips,yStrips = " + xStrips + "," + yStrips, true);
-			log(context, "", true);
+				log(context, "", true);
+				log(context, "Level " + level, true);
+				log(context, "lastRows x lastCols = " + lastRows + " x " + lastCols, true);
+				log(context, "Rows x Cols = " + rows + " x " + cols, true);
+				log(context, "xStrips,yStrips = " + xStrips + "," + yStrips, true);
+				log(context, "", true);
 
-			File lastLevelDir = levelDir;
-			levelDir = new File(context.getTilesetRoot(), String.valueOf(level));
-			levelDir.mkdirs();
+				File lastLevelDir = levelDir;
+				levelDir = new File(context.getTilesetRoot(), String.valueOf(level));
+				levelDir.mkdirs();
 
-			int rowMultiplier = lastRows == 1 ? 0 : 1;
-			int rowDivisor = lastCols == 1 ? 1 : 2;
-			int colMultiplier = lastCols == 1 ? 0 : 1;
-			int colDelta = lastRows == 1 ? 2 : 0;
+				int rowMultiplier = lastRows == 1 ? 0 : 1;
+				int rowDivisor = lastCols == 1 ? 1 : 2;
+				int colMultiplier = lastCols == 1 ? 0 : 1;
+				int colDelta = lastRows == 1 ? 2 : 0;
 
-			for (int row = 0; row < rows; row++)
-			{
-				//if lastRows == 1: 0,0,0,0 / 0,0,0,0
-				//if lastCols == 1: 0,1,2,3 / 4,5,6,7
-				//            else: 0,0,1,1 / 2,2,3,3
-
-				String rowPadded = Util.paddedInt(row, 4);
-				File rowDir = new File(levelDir, rowPadded);
-				rowDir.mkdirs();
+				futures.clear();
+				for (int row = 0; row < rows; row++)
+				{
+					//if lastRows == 1: 0,0,0,0 / 0,0,0,0
+					//if lastCols == 1: 0,1,2,3 / 4,5,6,7
+					//            else: 0,0,1,1 / 2,2,3,3
 
-				int firstRow = row * 4;
-				int r0 = rowMultiplier * (firstRow + 0) / rowDivisor;
-				int r1 = rowMultiplier * (firstRow + 1) / rowDivisor;
-				int r2 = rowMultiplier * (firstRow + 2) / rowDivisor;
-				int r3 = rowMultiplier * (firstRow + 3) / rowDivisor;
+					String rowPadded = Util.paddedInt(row, 4);
+					File rowDir = new File(levelDir, rowPadded);
+					rowDir.mkdirs();
 
-				for (int col = 0; col < cols; col++)
-				{
-					//if lastCols == 1: 0,0,0,0 / 0,0,0,0
-					//if lastRows == 1: 0,1,2,3 / 4,5,6,7
-					//            else: 0,1,0,1 / 2,3,2,3
+					int firstRow = row * 4;
+					int r0 = rowMultiplier * (firstRow + 0) / rowDivisor;
+					int r1 = rowMultiplier * (firstRow + 1) / rowDivisor;
+					int r2 = rowMultiplier * (firstRow + 2) / rowDivisor;
+					int r3 = rowMultiplier * (firstRow + 3) / rowDivisor;
 
-					File imageFile = tileFile(levelDir, row, col, context.getFormat());
-					if (imageFile.exists())
+					for (int col = 0; col < cols; col++)
 					{
-						continue;
-					}
+						//if lastCols == 1: 0,0,0,0 / 0,0,0,0
+						//if lastRows == 1: 0,1,2,3 / 4,5,6,7
+						//            else: 0,1,0,1 / 2,3,2,3
 
-					int firstCol = col * (lastRows == 1 ? 4 : 2);
-					int c0 = colMultiplier * (firstCol);
-					int c1 = colMultiplier * (firstCol + 1);
-					int c2 = colMultiplier * (firstCol + colDelta);
-					int c3 = colMultiplier * (firstCol + colDelta + 1);
-
-					File src0 = tileFile(lastLevelDir, r0, c0, context.getFormat());
-					File src1 = tileFile(lastLevelDir, r1, c1, context.getFormat());
-					File src2 = tileFile(lastLevelDir, r2, c2, context.getFormat());
-					File src3 = tileFile(lastLevelDir, r3, c3, context.getFormat());
-
-					BufferedImage img0 = src0.exists() ? ImageIO.read(src0) : null;
-					BufferedImage img1 = src1.exists() ? ImageIO.read(src1) : null;
-					BufferedImage img2 = src2.exists() ? ImageIO.read(src2) : null;
-					BufferedImage img3 = src3.exists() ? ImageIO.read(src3) : null;
-
-					int w0 = img0 == null ? 0 : (img0.getWidth() + 1) / 2;
-					int w1 = img1 == null ? 0 : (img1.getWidth() + 1) / 2;
-					int w2 = img2 == null ? 0 : (img2.getWidth() + 1) / 2;
-					int w3 = img3 == null ? 0 : (img3.getWidth() + 1) / 2;
-					int h0 = img0 == null ? 0 : (img0.getHeight() + 1) / 2;
-					int h1 = img1 == null ? 0 : (img1.getHeight() + 1) / 2;
-					int h2 = img2 == null ? 0 : (img2.getHeight() + 1) / 2;
-					int h3 = img3 == null ? 0 : (img3.getHeight() + 1) / 2;
-
-					int w = w0 + (lastCols == 1 ? 0 : w1) + (lastRows == 1 ? w2 + w3 : 0);
-					int h = h0 + (lastRows == 1 ? 0 : h2) + (lastCols == 1 ? h1 + h3 : 0);
-
-					int type = context.isMask() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
-					BufferedImage image = new BufferedImage(w, h, type);
-					Graphics2D g = image.createGraphics();
-					g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-
-					int x = 0;
-					int y = 0;
-					if (img0 != null)
-					{
-						g.drawImage(img0, x, y, w0, h0, null);
-					}
-					x += lastCols == 1 ? 0 : w0;
-					y += lastCols == 1 ? h0 : 0;
-					if (img1 != null)
-					{
-						g.drawImage(img1, x, y, w1, h1, null);
-					}
-					x += lastCols == 1 ? 0 : lastRows == 1 ? w1 : -w0;
-					y += lastCols == 1 ? h1 : lastRows == 1 ? 0 : h0;
-					if (img2 != null)
-					{
-						g.drawImage(img2, x, y, w2, h2, null);
-					}
-					x += lastCols == 1 ? 0 : w2;
-					y += lastCols == 1 ? h2 : 0;
-					if (img3 != null)
-					{
-						g.drawImage(img3, x, y, w3, h3, null);
-					}
+						File imageFile = tileFile(levelDir, row, col, context.getFormat());
+						if (imageFile.exists())
+						{
+							continue;
+						}
 
-					g.dispose();
-					ImageIO.write(image, context.getFormat(), imageFile);
+						int firstCol = col * (lastRows == 1 ? 4 : 2);
+						int c0 = colMultiplier * (firstCol);
+						int c1 = colMultiplier * (firstCol + 1);
+						int c2 = colMultiplier * (firstCol + colDelta);
+						int c3 = colMultiplier * (firstCol + colDelta + 1);
+
+						File[] sources =
+								new File[] { tileFile(lastLevelDir, r0, c0, context.getFormat()),
+										tileFile(lastLevelDir, r1, c1, context.getFormat()),
+										tileFile(lastLevelDir, r2, c2, context.getFormat()),
+										tileFile(lastLevelDir, r3, c3, context.getFormat()) };
+						futures.add(executor.submit(new OverviewTileTask(context, sources, imageFile, lastRows,
+								lastCols)));
+					}
 				}
+				//the next level is created from this level, so it must be complete
+				waitFor(futures);
 			}
 		}
+		finally
+		{
+			//worker threads read from the native datasets, so they must all be finished before the datasets are closed
+			awaitTermination(executor);
+			datasets.close();
+		}
 
 		if (context.isCopySource())
 		{
@@ -358,6 +285,168 @@ public class RibbonTiler
 		}
 	}
 
+	/**
+	 * Calculate the number of constant pixels at the top and bottom of each
+	 * column. Strips of columns are read and analysed concurrently.
+	 */
+	private void calculateConstantColumns(RibbonTilingContext context, ExecutorService executor,
+			WorkerDatasets datasets, int width, int height, int[] constantPixelsFromTop,
+			int[] constantPixelsFromBottom) throws Exception
+	{
+		int constantWidth = Math.max(1, 10 * context.getTilesize() * context.getTilesize() / height);
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int startX = 0; startX < width; startX += constantWidth)
+		{
+			int w = Math.min(constantWidth, width - startX);
+
+			//get a tile of the full height, w pixels wide at column startX
+			Rectangle src = new Rectangle(context.getInsets().left + startX, context.getInsets().top, w, height);
+			futures.add(executor.submit(new ConstantColumnsTask(datasets, src, startX, constantPixelsFromTop,
+					constantPixelsFromBottom)));
+		}
+
+		for (Future<Integer> future : futures)
+		{
+			int startX = get(future);
+			log(context, (100 * (startX + 1) / width) + "% done", false);
+		}
+	}
+
+	private static void createOverviewTile(RibbonTilingContext context, File[] sources, File imageFile,
+			int lastRows, int lastCols) throws IOException
+	{
+		File src0 = sources[0];
+		File src1 = sources[1];
+		File src2 = sources[2];
+		File src3 = sources[3];
+
+		BufferedImage img0 = src0.exists() ? ImageIO.read(src0) : null;
+		BufferedImage img1 = src1.exists() ? ImageIO.read(src1) : null;
+		BufferedImage img2 = src2.exists() ? ImageIO.read(src2) : null;
+		BufferedImage img3 = src3.exists() ? ImageIO.read(src3) : null;
+
+		int w0 = img0 == null ? 0 : (img0.getWidth() + 1) / 2;
+		int w1 = img1 == null ? 0 : (img1.getWidth() + 1) / 2;
+		int w2 = img2 == null ? 0 : (img2.getWidth() + 1) / 2;
+		int w3 = img3 == null ? 0 : (img3.getWidth() + 1) / 2;
+		int h0 = img0 == null ? 0 : (img0.getHeight() + 1) / 2;
+		int h1 = img1 == null ? 0 : (img1.getHeight() + 1) / 2;
+		int h2 = img2 == null ? 0 : (img2.getHeight() + 1) / 2;
+		int h3 = img3 == null ? 0 : (img3.getHeight() + 1) / 2;
+
+		int w = w0 + (lastCols == 1 ? 0 : w1) + (lastRows == 1 ? w2 + w3 : 0);
+		int h = h0 + (lastRows == 1 ? 0 : h2) + (lastCols == 1 ? h1 + h3 : 0);
+
+		int type = context.isMask() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+		BufferedImage image = new BufferedImage(w, h, type);
+		Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+		int x = 0;
+		int y = 0;
+		if (img0 != null)
+		{
+			g.drawImage(img0, x, y, w0, h0, null);
+		}
+		x += lastCols == 1 ? 0 : w0;
+		y += lastCols == 1 ? h0 : 0;
+		if (img1 != null)
+		{
+			g.drawImage(img1, x, y, w1, h1, null);
+		}
+		x += lastCols == 1 ? 0 : lastRows == 1 ? w1 : -w0;
+		y += lastCols == 1 ? h1 : lastRows == 1 ? 0 : h0;
+		if (img2 != null)
+		{
+			g.drawImage(img2, x, y, w2, h2, null);
+		}
+		x += lastCols == 1 ? 0 : w2;
+		y += lastCols == 1 ? h2 : 0;
+		if (img3 != null)
+		{
+			g.drawImage(img3, x, y, w3, h3, null);
+		}
+
+		g.dispose();
+		ImageIO.write(image, context.getFormat(), imageFile);
+	}
+
+	private static ExecutorService createExecutor(int threadCount)
+	{
+		return Executors.newFixedThreadPool(Math.max(1, threadCount), new ThreadFactory()
+		{
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "Ribbon tiler " + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	private static <T> T get(Future<T> future) throws Exception
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof Exception)
+			{
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private static void waitFor(List<Future<?>> futures) throws Exception
+	{
+		try
+		{
+			for (Future<?> future : futures)
+			{
+				get(future);
+			}
+		}
+		catch (Exception e)
+		{
+			//don't start any queued tasks if one has failed; running tasks are left to complete
+			for (Future<?> future : futures)
+			{
+				future.cancel(false);
+			}
+			throw e;
+		}
+	}
+
+	private static void awaitTermination(ExecutorService executor)
+	{
+		executor.shutdown();
+		boolean interrupted = false;
+		while (true)
+		{
+			try
+			{
+				if (executor.awaitTermination(1, TimeUnit.MINUTES))
+				{
+					break;
+				}
+			}
+			catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	private void printLevelsSummary(RibbonTilingContext context, int width, int height, int levels)
 	{
 		int printWidth = width, printHeight = height;
@@ -440,4 +529,166 @@ public class RibbonTiler
 			e.printStackTrace();
 		}
 	}
+
+	/**
+	 * GDAL datasets cannot be read from multiple threads, so each worker
+	 * thread opens its own dataset for the source file.
+	 */
+	private static class WorkerDatasets
+	{
+		private final File file;
+		private final ThreadLocal<Dataset> threadDatasets = new ThreadLocal<Dataset>();
+		private final List<Dataset> opened = new ArrayList<Dataset>();
+
+		public WorkerDatasets(File file)
+		{
+			this.file = file;
+		}
+
+		public Dataset get() throws GDALException
+		{
+			Dataset dataset = threadDatasets.get();
+			if (dataset == null)
+			{
+				dataset = GDALUtil.open(file);
+				threadDatasets.set(dataset);
+				synchronized (opened)
+				{
+					opened.add(dataset);
+				}
+			}
+			return dataset;
+		}
+
+		public void close()
+		{
+			synchronized (opened)
+			{
+				for (Dataset dataset : opened)
+				{
+					dataset.delete();
+				}
+				opened.clear();
+			}
+		}
+	}
+
+	/**
+	 * Calculates the constant columns within a full-height strip of the
+	 * source image, directly from the raw raster buffer.
+	 */
+	private static class ConstantColumnsTask implements Callable<Integer>
+	{
+		private final WorkerDatasets datasets;
+		private final Rectangle src;
+		private final int startX;
+		private final int[] constantPixelsFromTop;
+		private final int[] constantPixelsFromBottom;
+
+		public ConstantColumnsTask(WorkerDatasets datasets, Rectangle src, int startX, int[] constantPixelsFromTop,
+				int[] constantPixelsFromBottom)
+		{
+			this.datasets = datasets;
+			this.src = src;
+			this.startX = startX;
+			this.constantPixelsFromTop = constantPixelsFromTop;
+			this.constantPixelsFromBottom = constantPixelsFromBottom;
+		}
+
+		@Override
+		public Integer call() throws Exception
+		{
+			GDALTileParameters parameters = new GDALTileParameters(datasets.get(), src.getSize(), src);
+			final GDALTile tile = new GDALTile(parameters);
+			ConstantColumns.calculate(tile.getBuffer(), src.getSize(), tile.getBandCount(),
+					tile.getBufferTypeSize(), new ConstantColumns.PixelColors()
+					{
+						@Override
+						public int getRGB(int x, int y) throws TilerException
+						{
+							return tile.getRGB(x, y);
+						}
+					}, constantPixelsFromTop, constantPixelsFromBottom, startX);
+			return startX;
+		}
+	}
+
+	/**
+	 * Creates a single tile of the top level from the source image.
+	 */
+	private static class TopLevelTileTask implements Callable<Void>
+	{
+		private final RibbonTilingContext context;
+		private final WorkerDatasets datasets;
+		private final Rectangle src;
+		private final File imageFile;
+		private final int[] constantPixelsFromTop;
+		private final int[] constantPixelsFromBottom;
+		private final int x;
+		private final int y;
+		private final int width;
+		private final int height;
+
+		public TopLevelTileTask(RibbonTilingContext context, WorkerDatasets datasets, Rectangle src, File imageFile,
+				int[] constantPixelsFromTop, int[] constantPixelsFromBottom, int x, int y, int width, int height)
+		{
+			this.context = context;
+			this.datasets = datasets;
+			this.src = src;
+			this.imageFile = imageFile;
+			this.constantPixelsFromTop = constantPixelsFromTop;
+			this.constantPixelsFromBottom = constantPixelsFromBottom;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public Void call() throws Exception
+		{
+			GDALTileParameters parameters = new GDALTileParameters(datasets.get(), src.getSize(), src);
+			GDALTile tile = new GDALTile(parameters);
+			BufferedImage image = tile.getAsImage();
+
+			if (context.isRemoveConstantColumns())
+			{
+				image =
+						removeConstantColumns(image, constantPixelsFromTop, constantPixelsFromBottom, x, y, width,
+								height, context.isMask());
+			}
+
+			ImageIO.write(image, context.getFormat(), imageFile);
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a single overview tile from the tiles of the level below.
+	 */
+	private static class OverviewTileTask implements Callable<Void>
+	{
+		private final RibbonTilingContext context;
+		private final File[] sources;
+		private final File imageFile;
+		private final int lastRows;
+		private final int lastCols;
+
+		public OverviewTileTask(RibbonTilingContext context, File[] sources, File imageFile, int lastRows,
+				int lastCols)
+		{
+			this.context = context;
+			this.sources = sources;
+			this.imageFile = imageFile;
+			this.lastRows = lastRows;
+			this.lastCols = lastCols;
+		}
+
+		@Override
+		public Void call() throws Exception
+		{
+			createOverviewTile(context, sources, imageFile, lastRows, lastCols);
+			return null;
+		}
+	}
 }
@@ -43,6 +43,8 @@ public class RibbonTilingContext {
 	// Tiling parameters
 	@Parameter(names="-tilesize", description="The output dimensions of the tiles (in pixels)")
 	private int tilesize = 512;
+	@Parameter(names="-threads", description="The number of threads to use when tiling")
+	private int threadCount = Runtime.getRuntime().availableProcessors();
 	private Dimension sourceImageSize;
 	@Parameter(names="-source", description="The source image", converter=FileConverter.class)
 	private File sourceFile;
@@ -208,6 +210,14 @@ public class RibbonTilingContext {
 		this.tilesize = tilesize;
 	}
 
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	public void setThreadCount(int threadCount) {
+		this.threadCount = threadCount;
+	}
+
 	public File getSourceFile() {
 		return sourceFile;
 	}
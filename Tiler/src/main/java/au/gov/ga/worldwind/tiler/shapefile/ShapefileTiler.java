@@ -27,6 +27,13 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -58,11 +65,33 @@ import com.vividsolutions.jts.geom.Polygon;
 
 /**
  * Class used to tile shapefiles.
+ * <p/>
+ * Features are clipped into {@link TileBuckets}, which spill the geometry of
+ * each tile to temporary files. The buckets are then replayed, and the tiles
+ * saved, concurrently. The memory used is therefore limited by the size of
+ * the buckets, rather than the number of tiles in the level.
+ * <p/>
+ * Clipping is performed serially as the features are read, because the
+ * operations on each tile must be recorded in the order they are performed.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class ShapefileTiler
 {
+	private final static int MAX_BUCKET_COUNT = 256;
+
+	/**
+	 * Tile the given shapefile, using half the maximum heap size as the memory
+	 * budget, and a thread per processor.
+	 * 
+	 * @see #tile(File, File, int, double, LatLon, long, int, ProgressReporter)
+	 */
+	public static void tile(File input, File output, int level, double lzts, LatLon origin, ProgressReporter progress)
+	{
+		tile(input, output, level, lzts, origin, Runtime.getRuntime().maxMemory() / 2, Runtime.getRuntime()
+				.availableProcessors(), progress);
+	}
+
 	/**
 	 * Tile the given shapefile.
 	 * 
@@ -76,12 +105,19 @@ public class ShapefileTiler
 	 *            Level zero tile size (in degrees)
 	 * @param origin
 	 *            Origin to begin tiling at
+	 * @param memoryBudget
+	 *            Approximate maximum memory (in bytes) to use for the tiles
+	 *            being clipped and saved
+	 * @param threadCount
+	 *            Number of threads used to clip and save tiles
 	 * @param progress
 	 *            Object to report progress
 	 */
-	public static void tile(File input, File output, int level, double lzts, LatLon origin, ProgressReporter progress)
+	public static void tile(File input, File output, int level, double lzts, LatLon origin, long memoryBudget,
+			int threadCount, ProgressReporter progress)
 	{
 		ShapefileDataStore dataStore = null;
+		TileBuckets buckets = null;
 		try
 		{
 			progress.getLogger().info("Parsing " + input);
@@ -109,143 +145,225 @@ public class ShapefileTiler
 
 			java.awt.Point min = new java.awt.Point(minX, minY);
 			Dimension size = new Dimension(maxX - minX + 1, maxY - minY + 1);
-			ShapefileTile[] tiles = new ShapefileTile[size.width * size.height];
 
-			for (int y = minY; y <= maxY; y++)
-			{
-				int y0 = y - minY;
-				for (int x = minX; x <= maxX; x++)
-				{
-					int x0 = x - minX;
-					double lat1 = (y * tilesizedegrees) - 90;
-					double lon1 = (x * tilesizedegrees) - 180;
-					double lat2 = lat1 + tilesizedegrees;
-					double lon2 = lon1 + tilesizedegrees;
-					Sector ts = new Sector(lat1, lon1, lat2, lon2);
-
-					ShapefileTile tile = new ShapefileTile(ts, x, y);
-					//TEMP
-					//Attributes attributes = new Attributes(schema);
-					//attributes.values[0] = -1;
-					//tile.markFilled(attributes);
-					//TEMP
-					tiles[y0 * size.width + x0] = tile;
-				}
-			}
+			output.mkdirs();
+			File bucketDirectory = File.createTempFile("buckets", "", output);
+			bucketDirectory.delete();
+			bucketDirectory.mkdir();
+			int bucketCount = (int) Math.min(MAX_BUCKET_COUNT, (long) size.width * size.height);
+			buckets = new TileBuckets(bucketDirectory, schema, min, size, tilesizedegrees, bucketCount);
 
-			boolean anyPolygons = false;
-			Boolean lastPolygon = null;
+			progress.getLogger().info("Reading records");
+			boolean anyPolygons =
+					addFeatures(featureCollection, schema, buckets, level, lzts, origin, min, size, progress);
+			if (progress.isCancelled())
+				return;
 
-			//TEMP
-			//anyPolygons = true;
-			//TEMP
+			progress.getLogger().info("Saving tiles");
 
-			progress.getLogger().info("Reading records");
-			int shapeId = 0;
-			SimpleFeatureIterator features = featureCollection.features();
-			try
+			List<TileBuckets.Bucket> bucketList = buckets.finish();
+			saveTiles(buckets, bucketList, schema, geometryFactory, output, level, anyPolygons, memoryBudget,
+					threadCount, progress);
+			if (progress.isCancelled())
+				return;
+
+			progress.done();
+		}
+		catch (Exception e)
+		{
+			progress.getLogger().log(Level.SEVERE, "Error tiling shapefile", e);
+			e.printStackTrace();
+		}
+		finally
+		{
+			if (buckets != null)
+				buckets.delete();
+			if (dataStore != null)
+				dataStore.dispose();
+		}
+	}
+
+	/**
+	 * Read the features and clip them into the tiles. This is performed
+	 * serially on the calling thread.
+	 * 
+	 * @return Were any of the features polygons?
+	 */
+	protected static boolean addFeatures(ContentFeatureCollection featureCollection, SimpleFeatureType schema,
+			TileBuckets tiles, int level, double lzts, LatLon origin, java.awt.Point min, Dimension size,
+			ProgressReporter progress) throws IOException
+	{
+		boolean anyPolygons = false;
+		Boolean lastPolygon = null;
+
+		//TEMP
+		//anyPolygons = true;
+		//TEMP
+
+		int shapeId = 0;
+		SimpleFeatureIterator features = featureCollection.features();
+		try
+		{
+			while (features.hasNext())
 			{
-				while (features.hasNext())
-				{
-					if (progress.isCancelled())
-						return;
+				if (progress.isCancelled())
+					break;
 
-					SimpleFeature feature = features.next();
-					Object geometry = feature.getDefaultGeometry();
-					boolean polygon = geometry instanceof MultiPolygon || geometry instanceof Polygon;
+				SimpleFeature feature = features.next();
+				Object geometry = feature.getDefaultGeometry();
+				boolean polygon = geometry instanceof MultiPolygon || geometry instanceof Polygon;
 
-					anyPolygons |= polygon;
-					if (lastPolygon != null && polygon != lastPolygon.booleanValue())
-					{
-						progress.getLogger().warning("Polygons mixed with non-polygons");
-					}
-					lastPolygon = polygon;
+				anyPolygons |= polygon;
+				if (lastPolygon != null && polygon != lastPolygon.booleanValue())
+				{
+					progress.getLogger().warning("Polygons mixed with non-polygons");
+				}
+				lastPolygon = polygon;
 
-					Attributes attributes = new Attributes(schema);
-					attributes.loadAttributes(feature);
+				Attributes attributes = new Attributes(schema);
+				attributes.loadAttributes(feature);
 
-					if (geometry instanceof MultiPolygon)
-					{
-						MultiPolygon mp = (MultiPolygon) geometry;
-						shapeId =
-								addMultiPolygon(shapeId, mp, attributes, tiles, level, lzts, origin, min, size,
-										progress);
-					}
-					else if (geometry instanceof Polygon)
-					{
-						Polygon p = (Polygon) geometry;
-						shapeId = addPolygon(shapeId, p, attributes, tiles, level, lzts, origin, min, size, progress);
-					}
-					else if (geometry instanceof LinearRing)
-					{
-						LinearRing lr = (LinearRing) geometry;
-						shapeId =
-								addLinearRing(shapeId, lr, attributes, tiles, level, lzts, origin, min, size, true,
-										progress);
-					}
-					else if (geometry instanceof MultiLineString)
-					{
-						MultiLineString mls = (MultiLineString) geometry;
-						shapeId =
-								addMultiLineString(shapeId, mls, attributes, tiles, level, lzts, origin, min, size,
-										progress);
-					}
-					else if (geometry instanceof LineString)
-					{
-						LineString ls = (LineString) geometry;
-						shapeId =
-								addLineString(shapeId, ls, attributes, tiles, level, lzts, origin, min, size, progress);
-					}
-					else
-					{
-						progress.getLogger().severe("Unsupported shape type: " + geometry);
-					}
+				if (geometry instanceof MultiPolygon)
+				{
+					MultiPolygon mp = (MultiPolygon) geometry;
+					shapeId =
+							addMultiPolygon(shapeId, mp, attributes, tiles, level, lzts, origin, min, size, progress);
+				}
+				else if (geometry instanceof Polygon)
+				{
+					Polygon p = (Polygon) geometry;
+					shapeId = addPolygon(shapeId, p, attributes, tiles, level, lzts, origin, min, size, progress);
+				}
+				else if (geometry instanceof LinearRing)
+				{
+					LinearRing lr = (LinearRing) geometry;
+					shapeId =
+							addLinearRing(shapeId, lr, attributes, tiles, level, lzts, origin, min, size, true,
+									progress);
+				}
+				else if (geometry instanceof MultiLineString)
+				{
+					MultiLineString mls = (MultiLineString) geometry;
+					shapeId =
+							addMultiLineString(shapeId, mls, attributes, tiles, level, lzts, origin, min, size,
+									progress);
+				}
+				else if (geometry instanceof LineString)
+				{
+					LineString ls = (LineString) geometry;
+					shapeId = addLineString(shapeId, ls, attributes, tiles, level, lzts, origin, min, size, progress);
+				}
+				else
+				{
+					progress.getLogger().severe("Unsupported shape type: " + geometry);
 				}
 			}
-			finally
-			{
-				features.close();
-			}
-
-			progress.getLogger().info("Saving tiles");
+		}
+		finally
+		{
+			features.close();
+		}
+		return anyPolygons;
+	}
 
-			int amount = 0;
-			for (ShapefileTile tile : tiles)
-			{
-				if (progress.isCancelled())
-					return;
+	/**
+	 * Replay each bucket and save its tiles, using a pool of threads. Buckets
+	 * that are too large for their share of the memory budget are split
+	 * before being replayed.
+	 */
+	protected static void saveTiles(final TileBuckets buckets, List<TileBuckets.Bucket> bucketList,
+			final SimpleFeatureType schema, final GeometryFactory geometryFactory, final File output,
+			final int level, final boolean anyPolygons, long memoryBudget, int threadCount,
+			final ProgressReporter progress) throws Exception
+	{
+		threadCount = Math.max(1, threadCount);
+		final long bucketMemory = memoryBudget / threadCount;
+		final int total = bucketList.size();
+		final AtomicInteger completed = new AtomicInteger();
 
-				amount++;
-				progress.progress(amount / (double) tiles.length);
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory()
+		{
+			private final AtomicInteger count = new AtomicInteger();
 
-				double minimumArea = 0; //1e-8;
-				if (anyPolygons)
-					tile.completePolygons(minimumArea);
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "Shapefile tiler " + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try
+		{
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (final TileBuckets.Bucket bucket : bucketList)
+			{
+				futures.add(executor.submit(new Callable<Void>()
+				{
+					@Override
+					public Void call() throws Exception
+					{
+						for (TileBuckets.Bucket part : buckets.split(bucket, bucketMemory))
+						{
+							if (progress.isCancelled())
+								return null;
 
-				File rowDir = new File(output, String.valueOf(level));
-				rowDir = new File(rowDir, Util.paddedInt(tile.row, 4));
-				if (!rowDir.exists())
-					rowDir.mkdirs();
+							for (ShapefileTile tile : buckets.replay(part, progress))
+							{
+								if (progress.isCancelled())
+									return null;
 
-				File dst = new File(rowDir, Util.paddedInt(tile.row, 4) + "_" + Util.paddedInt(tile.col, 4) + ".zip");
+								saveTile(tile, schema, geometryFactory, output, level, anyPolygons, progress);
+							}
+							part.delete();
+						}
 
-				saveShapefileZip(tile, schema, geometryFactory, dst, anyPolygons, progress);
+						synchronized (progress)
+						{
+							progress.progress(completed.incrementAndGet() / (double) total);
+						}
+						return null;
+					}
+				}));
 			}
 
-			progress.done();
-		}
-		catch (Exception e)
-		{
-			progress.getLogger().log(Level.SEVERE, "Error tiling shapefile", e);
-			e.printStackTrace();
+			for (Future<Void> future : futures)
+			{
+				try
+				{
+					future.get();
+				}
+				catch (ExecutionException e)
+				{
+					if (e.getCause() instanceof Exception)
+						throw (Exception) e.getCause();
+					throw e;
+				}
+			}
 		}
 		finally
 		{
-			if (dataStore != null)
-				dataStore.dispose();
+			executor.shutdownNow();
 		}
 	}
 
+	protected static void saveTile(ShapefileTile tile, SimpleFeatureType schema, GeometryFactory geometryFactory,
+			File output, int level, boolean anyPolygons, ProgressReporter progress) throws IOException
+	{
+		double minimumArea = 0; //1e-8;
+		if (anyPolygons)
+			tile.completePolygons(minimumArea);
+
+		File rowDir = new File(output, String.valueOf(level));
+		rowDir = new File(rowDir, Util.paddedInt(tile.row, 4));
+		if (!rowDir.exists())
+			rowDir.mkdirs();
+
+		File dst = new File(rowDir, Util.paddedInt(tile.row, 4) + "_" + Util.paddedInt(tile.col, 4) + ".zip");
+
+		saveShapefileZip(tile, schema, geometryFactory, dst, anyPolygons, progress);
+	}
+
 	protected static void saveShapefileZip(ShapefileTile tile, SimpleFeatureType schema, GeometryFactory factory,
 			File file, boolean polygon, ProgressReporter progress) throws IOException
 	{
@@ -303,7 +421,8 @@ public class ShapefileTiler
 			@Override
 			public boolean accept(File dir, String name)
 			{
-				return name.toLowerCase().startsWith(filenameNoExt);
+				//match the extension separator, so that tiles with longer names aren't included
+				return name.toLowerCase().startsWith(filenameNoExt.toLowerCase() + ".");
 			}
 		});
 
@@ -349,7 +468,7 @@ public class ShapefileTiler
 	}
 
 	protected static int addMultiPolygon(int shapeId, MultiPolygon polygon, Attributes attributes,
-			ShapefileTile[] tiles, int level, double lzts, LatLon origin, java.awt.Point min, Dimension size,
+			TileBuckets tiles, int level, double lzts, LatLon origin, java.awt.Point min, Dimension size,
 			ProgressReporter progress)
 	{
 		for (int i = 0; i < polygon.getNumGeometries(); i++)
@@ -364,7 +483,7 @@ public class ShapefileTiler
 		return shapeId;
 	}
 
-	protected static int addPolygon(int shapeId, Polygon polygon, Attributes attributes, ShapefileTile[] tiles,
+	protected static int addPolygon(int shapeId, Polygon polygon, Attributes attributes, TileBuckets tiles,
 			int level, double lzts, LatLon origin, java.awt.Point min, Dimension size, ProgressReporter progress)
 	{
 		LineString shell = polygon.getExteriorRing();
@@ -387,7 +506,7 @@ public class ShapefileTiler
 		return shapeId;
 	}
 
-	protected static int addLinearRing(int shapeId, LineString ring, Attributes attributes, ShapefileTile[] tiles,
+	protected static int addLinearRing(int shapeId, LineString ring, Attributes attributes, TileBuckets tiles,
 			int level, double lzts, LatLon origin, java.awt.Point min, Dimension size, boolean fillInside,
 			ProgressReporter progress)
 	{
@@ -395,7 +514,7 @@ public class ShapefileTiler
 	}
 
 	protected static int addMultiLineString(int shapeId, MultiLineString multiLineString, Attributes attributes,
-			ShapefileTile[] tiles, int level, double lzts, LatLon origin, java.awt.Point min, Dimension size,
+			TileBuckets tiles, int level, double lzts, LatLon origin, java.awt.Point min, Dimension size,
 			ProgressReporter progress)
 	{
 		for (int i = 0; i < multiLineString.getNumGeometries(); i++)
@@ -411,14 +530,14 @@ public class ShapefileTiler
 	}
 
 	protected static int addLineString(int shapeId, LineString lineString, Attributes attributes,
-			ShapefileTile[] tiles, int level, double lzts, LatLon origin, java.awt.Point min, Dimension size,
+			TileBuckets tiles, int level, double lzts, LatLon origin, java.awt.Point min, Dimension size,
 			ProgressReporter progress)
 	{
 		return addPoints(shapeId, lineString, attributes, false, false, tiles, level, lzts, origin, min, size, progress);
 	}
 
 	protected static int addPoints(int shapeId, LineString lineString, Attributes attributes, boolean polygon,
-			boolean fillInside, ShapefileTile[] tiles, int level, double lzts, LatLon origin, java.awt.Point min,
+			boolean fillInside, TileBuckets tiles, int level, double lzts, LatLon origin, java.awt.Point min,
 			Dimension size, ProgressReporter progress)
 	{
 		Coordinate lastCoordinate = null;
@@ -439,7 +558,7 @@ public class ShapefileTiler
 			int y0 = Util.clamp(y - min.y, 0, size.height - 1);
 
 			int tileIndex = y0 * size.width + x0;
-			ShapefileTile tile = tiles[tileIndex];
+			ShapefileTile tile = tileIndex == lastTileIndex ? lastTile : tiles.getTile(tileIndex);
 
 			if (!tile.contains(coordinate))
 			{
@@ -466,6 +585,7 @@ public class ShapefileTiler
 							(tile.col - min.x) + x2, (tile.row - min.y) + y2);
 
 					ShapefileTile lastCrossTile = lastTile;
+					int lastCrossTileIndex = lastTileIndex;
 					for (int j = 1; j < line.size() - 1; j++)
 					{
 						Point p = line.get(j);
@@ -477,9 +597,9 @@ public class ShapefileTiler
 						if (crossTileIndex == tileIndex || crossTileIndex == lastTileIndex)
 							continue;
 
-						ShapefileTile crossTile = tiles[crossTileIndex];
-						if (crossTile == lastCrossTile) //not required?
+						if (crossTileIndex == lastCrossTileIndex) //not required?
 							continue;
+						ShapefileTile crossTile = tiles.getTile(crossTileIndex);
 
 						Coordinate edge = edgePoint(lastCoordinate, coordinate, crossTile);
 						if (edge != null)
@@ -495,6 +615,7 @@ public class ShapefileTiler
 
 							tilesAffected.add(crossTile);
 							lastCrossTile = crossTile;
+							lastCrossTileIndex = crossTileIndex;
 						}
 					}
 
@@ -541,7 +662,7 @@ public class ShapefileTiler
 		return shapeId + 1;
 	}
 
-	protected static ShapefileTile allPointsWithin(LineString lineString, ShapefileTile[] tiles, int level,
+	protected static ShapefileTile allPointsWithin(LineString lineString, TileBuckets tiles, int level,
 			double lzts, LatLon origin, java.awt.Point min, Dimension size)
 	{
 		if (lineString.isEmpty())
@@ -570,7 +691,7 @@ public class ShapefileTiler
 		int x0 = X - min.x;
 		int y0 = Y - min.y;
 		int tileIndex = y0 * size.width + x0;
-		return tiles[tileIndex];
+		return tiles.getTile(tileIndex);
 	}
 
 	protected static void addHole(LineString lineString, ShapefileTile tile, Attributes attributes)
@@ -585,10 +706,12 @@ public class ShapefileTiler
 		tile.addHole(coordinates, attributes);
 	}
 
-	protected static void markFilledTilesInside(ShapefileTile[] tiles, List<ShapefileTile> tilesAffected,
+	protected static void markFilledTilesInside(TileBuckets tiles, List<ShapefileTile> tilesAffected,
 			java.awt.Point min, Dimension size, Attributes attributes)
 	{
-		if (tilesAffected.get(0) != tilesAffected.get(tilesAffected.size() - 1))
+		ShapefileTile first = tilesAffected.get(0);
+		ShapefileTile last = tilesAffected.get(tilesAffected.size() - 1);
+		if (first.col != last.col || first.row != last.row)
 		{
 			throw new IllegalStateException("First tile doesn't equal last tile; cannot fill inside polygon");
 		}
@@ -656,8 +779,7 @@ public class ShapefileTiler
 					else if (crossings % 2 == 1)
 					{
 						//crossings is odd, so fill in tile
-						ShapefileTile tile = tiles[index];
-						tile.markFilled(attributes);
+						tiles.markFilled(index, attributes);
 					}
 				}
 			}
@@ -0,0 +1,728 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.shapefile;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import au.gov.ga.worldwind.tiler.util.ProgressReporter;
+import au.gov.ga.worldwind.tiler.util.Sector;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+/**
+ * Out-of-core storage for the {@link ShapefileTile}s of a tiling level.
+ * <p/>
+ * Instead of keeping every tile of the level in memory, the operations
+ * performed on each tile (adding coordinates, holes, etc) are appended to one
+ * of a number of temporary bucket files, chosen by the tile's index. Each
+ * bucket can then be replayed independently of (and concurrently with) the
+ * other buckets to rebuild its tiles. The operations on each tile are
+ * replayed in the order they were originally performed, so the replayed tiles
+ * are identical to tiles built in memory.
+ * <p/>
+ * Buckets that would require more than a given amount of memory to replay
+ * can be split into smaller buckets.
+ */
+public class TileBuckets
+{
+	private static final int OP_ATTRIBUTES = 0;
+	private static final int OP_COORDINATE = 1;
+	private static final int OP_HOLE = 2;
+	private static final int OP_JOIN = 3;
+	private static final int OP_FILLED = 4;
+
+	private static final int BUFFER_SIZE = 32 * 1024;
+	private static final int MAX_SPLIT_COUNT = 64;
+
+	/**
+	 * Approximate ratio between the memory used by replayed tiles and the size
+	 * of the bucket file they were replayed from.
+	 */
+	private static final int MEMORY_FACTOR = 4;
+
+	private final File directory;
+	private final SimpleFeatureType schema;
+	private final Point min;
+	private final Dimension size;
+	private final double tileSizeDegrees;
+	private final AtomicInteger fileCount = new AtomicInteger();
+	private final BucketWriter writer;
+
+	/**
+	 * Create a new set of buckets.
+	 *
+	 * @param directory
+	 *            Directory in which to create the bucket files
+	 * @param schema
+	 *            Schema of the features being tiled
+	 * @param min
+	 *            Column and row of the first tile
+	 * @param size
+	 *            Number of tile columns and rows
+	 * @param tileSizeDegrees
+	 *            Size of each tile in degrees
+	 * @param bucketCount
+	 *            Number of buckets to partition the tiles into
+	 */
+	public TileBuckets(File directory, SimpleFeatureType schema, Point min, Dimension size, double tileSizeDegrees,
+			int bucketCount) throws IOException
+	{
+		this.directory = directory;
+		this.schema = schema;
+		this.min = min;
+		this.size = size;
+		this.tileSizeDegrees = tileSizeDegrees;
+		this.writer = new BucketWriter(1, bucketCount);
+	}
+
+	/**
+	 * Get a tile which records any geometry added to it into its bucket. The
+	 * returned tile only supports the geometry-adding methods, and the methods
+	 * describing the tile's sector.
+	 *
+	 * @param index
+	 *            Tile index (row * columns + column, relative to the first
+	 *            tile)
+	 * @return Recording tile at the given index
+	 */
+	public ShapefileTile getTile(int index)
+	{
+		return new RecordingTile(index);
+	}
+
+	/**
+	 * Mark the tile at the given index as filled.
+	 *
+	 * @see ShapefileTile#markFilled(Attributes)
+	 */
+	public void markFilled(int index, Attributes attributes)
+	{
+		try
+		{
+			writer.markFilled(index, attributes);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("Error writing tile bucket", e);
+		}
+	}
+
+	/**
+	 * Finish writing to the buckets.
+	 *
+	 * @return List of buckets that contain tile operations
+	 */
+	public List<Bucket> finish() throws IOException
+	{
+		writer.close();
+		List<Bucket> buckets = new ArrayList<Bucket>();
+		for (Bucket bucket : writer.buckets)
+		{
+			if (bucket.length() > 0)
+			{
+				buckets.add(bucket);
+			}
+			else
+			{
+				bucket.delete();
+			}
+		}
+		return buckets;
+	}
+
+	/**
+	 * Split the given bucket into smaller buckets, each of which should use no
+	 * more than the given amount of memory when replayed. Buckets are split by
+	 * tile, so a bucket containing a single large tile cannot be split. The
+	 * bucket's file is deleted if it is split.
+	 *
+	 * @param bucket
+	 *            Bucket to split
+	 * @param maxMemory
+	 *            Maximum memory to use when replaying each bucket (in bytes)
+	 * @return List of buckets that together contain all the given bucket's
+	 *         tiles; contains just the given bucket if no split is required
+	 */
+	public List<Bucket> split(Bucket bucket, long maxMemory) throws IOException
+	{
+		List<Bucket> result = new ArrayList<Bucket>();
+		long maxLength = Math.max(1, maxMemory / MEMORY_FACTOR);
+		long length = bucket.length();
+		if (length <= maxLength || bucket.divisor >= (long) size.width * size.height)
+		{
+			result.add(bucket);
+			return result;
+		}
+
+		int count = (int) Math.max(2, Math.min(MAX_SPLIT_COUNT, (length + maxLength - 1) / maxLength));
+		BucketWriter splitter = new BucketWriter(bucket.divisor, count);
+		try
+		{
+			read(bucket, splitter);
+		}
+		finally
+		{
+			splitter.close();
+		}
+		bucket.delete();
+
+		for (Bucket child : splitter.buckets)
+		{
+			if (child.length() == 0)
+			{
+				child.delete();
+			}
+			else if (child.length() >= length)
+			{
+				//all the operations are for a single tile, so can't be split any further
+				result.add(child);
+			}
+			else
+			{
+				result.addAll(split(child, maxMemory));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Replay the operations in the given bucket, rebuilding its tiles.
+	 *
+	 * @param bucket
+	 *            Bucket to replay
+	 * @param progress
+	 *            Progress reporter used to log warnings
+	 * @return Tiles in the bucket, in row-major order
+	 */
+	public List<ShapefileTile> replay(Bucket bucket, final ProgressReporter progress) throws IOException
+	{
+		final Map<Integer, ShapefileTile> tiles = new TreeMap<Integer, ShapefileTile>();
+		read(bucket, new TileOperations()
+		{
+			@Override
+			public void addCoordinate(int index, int shapeId, Coordinate coordinate, boolean entry, boolean exit,
+					Attributes attributes)
+			{
+				getReplayTile(index).addCoordinate(shapeId, coordinate, entry, exit, attributes);
+			}
+
+			@Override
+			public void addHole(int index, List<Coordinate> points, Attributes attributes)
+			{
+				getReplayTile(index).addHole(points, attributes);
+			}
+
+			@Override
+			public void joinOrphanPolygons(int index)
+			{
+				getReplayTile(index).joinOrphanPolygons(progress);
+			}
+
+			@Override
+			public void markFilled(int index, Attributes attributes)
+			{
+				getReplayTile(index).markFilled(attributes);
+			}
+
+			private ShapefileTile getReplayTile(int index)
+			{
+				ShapefileTile tile = tiles.get(index);
+				if (tile == null)
+				{
+					tile = new ShapefileTile(getSector(index), getColumn(index), getRow(index));
+					tiles.put(index, tile);
+				}
+				return tile;
+			}
+		});
+		return new ArrayList<ShapefileTile>(tiles.values());
+	}
+
+	/**
+	 * Delete all the bucket files, and the bucket directory.
+	 */
+	public void delete()
+	{
+		try
+		{
+			writer.close();
+		}
+		catch (IOException e)
+		{
+			//ignore, files are being deleted anyway
+		}
+
+		File[] files = directory.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	protected int getColumn(int index)
+	{
+		return min.x + index % size.width;
+	}
+
+	protected int getRow(int index)
+	{
+		return min.y + index / size.width;
+	}
+
+	protected Sector getSector(int index)
+	{
+		double lat1 = (getRow(index) * tileSizeDegrees) - 90;
+		double lon1 = (getColumn(index) * tileSizeDegrees) - 180;
+		return new Sector(lat1, lon1, lat1 + tileSizeDegrees, lon1 + tileSizeDegrees);
+	}
+
+	protected void read(Bucket bucket, TileOperations operations) throws IOException
+	{
+		DataInputStream in =
+				new DataInputStream(new BufferedInputStream(new FileInputStream(bucket.file), BUFFER_SIZE));
+		try
+		{
+			Attributes attributes = null;
+			int op;
+			while ((op = in.read()) >= 0)
+			{
+				if (op == OP_ATTRIBUTES)
+				{
+					attributes = readAttributes(in);
+					continue;
+				}
+
+				int index = in.readInt();
+				if (op == OP_COORDINATE)
+				{
+					int shapeId = in.readInt();
+					int flags = in.readByte();
+					Coordinate coordinate = readCoordinate(in);
+					operations.addCoordinate(index, shapeId, coordinate, (flags & 1) != 0, (flags & 2) != 0,
+							attributes);
+				}
+				else if (op == OP_HOLE)
+				{
+					int count = in.readInt();
+					List<Coordinate> points = new ArrayList<Coordinate>(count);
+					for (int i = 0; i < count; i++)
+					{
+						points.add(readCoordinate(in));
+					}
+					operations.addHole(index, points, attributes);
+				}
+				else if (op == OP_JOIN)
+				{
+					operations.joinOrphanPolygons(index);
+				}
+				else if (op == OP_FILLED)
+				{
+					operations.markFilled(index, attributes);
+				}
+				else
+				{
+					throw new IOException("Corrupt tile bucket: " + bucket.file);
+				}
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	private static void writeCoordinate(DataOutputStream out, Coordinate coordinate) throws IOException
+	{
+		out.writeDouble(coordinate.x);
+		out.writeDouble(coordinate.y);
+		out.writeDouble(coordinate.z);
+	}
+
+	private static Coordinate readCoordinate(DataInputStream in) throws IOException
+	{
+		return new Coordinate(in.readDouble(), in.readDouble(), in.readDouble());
+	}
+
+	private static void writeAttributes(DataOutputStream out, Attributes attributes) throws IOException
+	{
+		out.writeInt(attributes.values.length);
+		for (Object value : attributes.values)
+		{
+			writeValue(out, value);
+		}
+	}
+
+	private Attributes readAttributes(DataInputStream in) throws IOException
+	{
+		Attributes attributes = new Attributes(schema);
+		int count = in.readInt();
+		if (count != attributes.values.length)
+		{
+			throw new IOException("Attribute count does not match schema");
+		}
+		for (int i = 0; i < count; i++)
+		{
+			attributes.values[i] = readValue(in);
+		}
+		return attributes;
+	}
+
+	private static void writeValue(DataOutputStream out, Object value) throws IOException
+	{
+		if (value == null)
+		{
+			out.writeByte(0);
+		}
+		else if (value instanceof String)
+		{
+			byte[] bytes = ((String) value).getBytes("UTF-8");
+			out.writeByte(1);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+		else if (value instanceof Integer)
+		{
+			out.writeByte(2);
+			out.writeInt((Integer) value);
+		}
+		else if (value instanceof Long)
+		{
+			out.writeByte(3);
+			out.writeLong((Long) value);
+		}
+		else if (value instanceof Double)
+		{
+			out.writeByte(4);
+			out.writeDouble((Double) value);
+		}
+		else if (value instanceof Float)
+		{
+			out.writeByte(5);
+			out.writeFloat((Float) value);
+		}
+		else if (value instanceof Boolean)
+		{
+			out.writeByte(6);
+			out.writeBoolean((Boolean) value);
+		}
+		else if (value instanceof Date)
+		{
+			out.writeByte(7);
+			out.writeLong(((Date) value).getTime());
+		}
+		else
+		{
+			//fallback to java serialization for any other attribute types
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(baos);
+			oos.writeObject(value);
+			oos.close();
+			byte[] bytes = baos.toByteArray();
+			out.writeByte(8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static Object readValue(DataInputStream in) throws IOException
+	{
+		int type = in.readByte();
+		switch (type)
+		{
+		case 0:
+			return null;
+		case 1:
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			return new String(bytes, "UTF-8");
+		case 2:
+			return in.readInt();
+		case 3:
+			return in.readLong();
+		case 4:
+			return in.readDouble();
+		case 5:
+			return in.readFloat();
+		case 6:
+			return in.readBoolean();
+		case 7:
+			return new Date(in.readLong());
+		case 8:
+			byte[] serialized = new byte[in.readInt()];
+			in.readFully(serialized);
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized));
+			try
+			{
+				return ois.readObject();
+			}
+			catch (ClassNotFoundException e)
+			{
+				throw new IOException("Error deserializing attribute: " + e.getMessage());
+			}
+			finally
+			{
+				ois.close();
+			}
+		default:
+			throw new IOException("Unknown attribute type: " + type);
+		}
+	}
+
+	/**
+	 * A single bucket file. Contains the operations for all tiles whose index
+	 * divided by the bucket's divisor is congruent to the bucket's position in
+	 * its parent.
+	 */
+	public static class Bucket
+	{
+		private final File file;
+		private final long divisor;
+
+		private Bucket(File file, long divisor)
+		{
+			this.file = file;
+			this.divisor = divisor;
+		}
+
+		/**
+		 * @return Size of this bucket's file in bytes
+		 */
+		public long length()
+		{
+			return file.length();
+		}
+
+		/**
+		 * Delete this bucket's file.
+		 */
+		public void delete()
+		{
+			file.delete();
+		}
+	}
+
+	/**
+	 * Operations that can be performed on the tiles. Implemented by both the
+	 * bucket writer and the replaying reader.
+	 */
+	protected interface TileOperations
+	{
+		void addCoordinate(int index, int shapeId, Coordinate coordinate, boolean entry, boolean exit,
+				Attributes attributes) throws IOException;
+
+		void addHole(int index, List<Coordinate> points, Attributes attributes) throws IOException;
+
+		void joinOrphanPolygons(int index) throws IOException;
+
+		void markFilled(int index, Attributes attributes) throws IOException;
+	}
+
+	/**
+	 * Writes tile operations to a set of bucket files. Tiles are assigned to
+	 * buckets using <code>(index / divisor) % bucketCount</code>. Each bucket
+	 * contains a copy of the attributes that its operations reference.
+	 */
+	private class BucketWriter implements TileOperations
+	{
+		private final long divisor;
+		private final List<Bucket> buckets = new ArrayList<Bucket>();
+		private final DataOutputStream[] outputs;
+		private final Attributes[] lastAttributes;
+		private boolean closed = false;
+
+		public BucketWriter(long divisor, int bucketCount) throws IOException
+		{
+			this.divisor = divisor;
+			outputs = new DataOutputStream[bucketCount];
+			lastAttributes = new Attributes[bucketCount];
+			try
+			{
+				for (int i = 0; i < bucketCount; i++)
+				{
+					File file = new File(directory, "bucket" + fileCount.getAndIncrement());
+					outputs[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+					buckets.add(new Bucket(file, divisor * bucketCount));
+				}
+			}
+			catch (IOException e)
+			{
+				close();
+				throw e;
+			}
+		}
+
+		@Override
+		public void addCoordinate(int index, int shapeId, Coordinate coordinate, boolean entry, boolean exit,
+				Attributes attributes) throws IOException
+		{
+			DataOutputStream out = begin(OP_COORDINATE, index, attributes);
+			out.writeInt(shapeId);
+			out.writeByte((entry ? 1 : 0) | (exit ? 2 : 0));
+			writeCoordinate(out, coordinate);
+		}
+
+		@Override
+		public void addHole(int index, List<Coordinate> points, Attributes attributes) throws IOException
+		{
+			DataOutputStream out = begin(OP_HOLE, index, attributes);
+			out.writeInt(points.size());
+			for (Coordinate point : points)
+			{
+				writeCoordinate(out, point);
+			}
+		}
+
+		@Override
+		public void joinOrphanPolygons(int index) throws IOException
+		{
+			begin(OP_JOIN, index, null);
+		}
+
+		@Override
+		public void markFilled(int index, Attributes attributes) throws IOException
+		{
+			begin(OP_FILLED, index, attributes);
+		}
+
+		private DataOutputStream begin(int op, int index, Attributes attributes) throws IOException
+		{
+			int bucket = (int) ((index / divisor) % outputs.length);
+			DataOutputStream out = outputs[bucket];
+			if (attributes != null && attributes != lastAttributes[bucket])
+			{
+				out.writeByte(OP_ATTRIBUTES);
+				writeAttributes(out, attributes);
+				lastAttributes[bucket] = attributes;
+			}
+			out.writeByte(op);
+			out.writeInt(index);
+			return out;
+		}
+
+		public void close() throws IOException
+		{
+			if (closed)
+			{
+				return;
+			}
+			closed = true;
+
+			IOException exception = null;
+			for (DataOutputStream out : outputs)
+			{
+				try
+				{
+					if (out != null)
+						out.close();
+				}
+				catch (IOException e)
+				{
+					exception = e;
+				}
+			}
+			if (exception != null)
+			{
+				throw exception;
+			}
+		}
+	}
+
+	/**
+	 * {@link ShapefileTile} that writes any geometry added to it to its
+	 * bucket, instead of storing it.
+	 */
+	private class RecordingTile extends ShapefileTile
+	{
+		private final int index;
+
+		public RecordingTile(int index)
+		{
+			super(getSector(index), getColumn(index), getRow(index));
+			this.index = index;
+		}
+
+		@Override
+		public void addCoordinate(int shapeId, Coordinate coordinate, boolean entry, boolean exit,
+				Attributes attributes)
+		{
+			try
+			{
+				writer.addCoordinate(index, shapeId, coordinate, entry, exit, attributes);
+			}
+			catch (IOException e)
+			{
+				throw new IllegalStateException("Error writing tile bucket", e);
+			}
+		}
+
+		@Override
+		public void addHole(List<Coordinate> points, Attributes attributes)
+		{
+			try
+			{
+				writer.addHole(index, points, attributes);
+			}
+			catch (IOException e)
+			{
+				throw new IllegalStateException("Error writing tile bucket", e);
+			}
+		}
+
+		@Override
+		public void joinOrphanPolygons(ProgressReporter progress)
+		{
+			try
+			{
+				writer.joinOrphanPolygons(index);
+			}
+			catch (IOException e)
+			{
+				throw new IllegalStateException("Error writing tile bucket", e);
+			}
+		}
+
+		@Override
+		public void markFilled(Attributes attributes)
+		{
+			TileBuckets.this.markFilled(index, attributes);
+		}
+	}
+}
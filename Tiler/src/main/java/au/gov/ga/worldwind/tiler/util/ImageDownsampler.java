@@ -0,0 +1,471 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+
+/**
+ * Halves the size of images stored as packed, non-premultiplied ARGB int
+ * arrays (as returned by {@link BufferedImage#getRGB(int, int)}). All filters
+ * are alpha-aware: the colors of transparent pixels don't bleed into their
+ * neighbours.
+ * <p/>
+ * Pixels are processed in simple loops over primitive arrays, rather than
+ * through Java2D, so that the JIT can optimise them.
+ */
+public class ImageDownsampler
+{
+	/**
+	 * Filters that can be used to downsample an image.
+	 */
+	public static enum Filter
+	{
+		/**
+		 * Use the top-left pixel of each 2x2 block.
+		 */
+		NEAREST,
+		/**
+		 * Average each 2x2 block.
+		 */
+		BOX,
+		/**
+		 * Lanczos (a = 2) filter, which is sharper than the box filter.
+		 */
+		LANCZOS
+	}
+
+	private static final int LANCZOS_A = 2;
+	private static final int LANCZOS_TAPS = LANCZOS_A * 4;
+	private static final int WEIGHT_BITS = 12;
+	private static final int INTERMEDIATE_SHIFT = 4;
+	private static final int[] LANCZOS_WEIGHTS = createLanczosWeights();
+
+	/**
+	 * Get the pixels of an image as packed ARGB values.
+	 *
+	 * @param image
+	 *            Image to get the pixels from
+	 * @param width
+	 *            Width of the array to return
+	 * @param height
+	 *            Height of the array to return
+	 * @return Array of width x height pixels; if the image is a different size,
+	 *         only the overlapping region is copied
+	 */
+	public static int[] getPixels(BufferedImage image, int width, int height)
+	{
+		int[] pixels = new int[width * height];
+		if (image.getWidth() != width || image.getHeight() != height)
+		{
+			int w = Math.min(width, image.getWidth());
+			int h = Math.min(height, image.getHeight());
+			image.getRGB(0, 0, w, h, pixels, 0, width);
+			return pixels;
+		}
+
+		WritableRaster raster = image.getRaster();
+		int type = image.getType();
+		if (type == BufferedImage.TYPE_INT_ARGB)
+		{
+			raster.getDataElements(0, 0, width, height, pixels);
+		}
+		else if (type == BufferedImage.TYPE_INT_RGB)
+		{
+			raster.getDataElements(0, 0, width, height, pixels);
+			for (int i = 0; i < pixels.length; i++)
+			{
+				pixels[i] |= 0xff000000;
+			}
+		}
+		else if (type == BufferedImage.TYPE_4BYTE_ABGR)
+		{
+			//data elements are in band order: R, G, B, A
+			byte[] bytes = (byte[]) raster.getDataElements(0, 0, width, height, null);
+			for (int i = 0, j = 0; i < pixels.length; i++, j += 4)
+			{
+				pixels[i] =
+						(bytes[j + 3] & 0xff) << 24 | (bytes[j] & 0xff) << 16 | (bytes[j + 1] & 0xff) << 8
+								| (bytes[j + 2] & 0xff);
+			}
+		}
+		else if (type == BufferedImage.TYPE_3BYTE_BGR)
+		{
+			//data elements are in band order: R, G, B
+			byte[] bytes = (byte[]) raster.getDataElements(0, 0, width, height, null);
+			for (int i = 0, j = 0; i < pixels.length; i++, j += 3)
+			{
+				pixels[i] = 0xff000000 | (bytes[j] & 0xff) << 16 | (bytes[j + 1] & 0xff) << 8 | (bytes[j + 2] & 0xff);
+			}
+		}
+		else
+		{
+			image.getRGB(0, 0, width, height, pixels, 0, width);
+		}
+		return pixels;
+	}
+
+	/**
+	 * Create an image from an array of packed ARGB values.
+	 *
+	 * @param pixels
+	 *            Pixels to set
+	 * @param width
+	 *            Width of the image
+	 * @param height
+	 *            Height of the image
+	 * @param type
+	 *            {@link BufferedImage} type of the image to create
+	 * @return New image containing the pixels
+	 */
+	public static BufferedImage createImage(int[] pixels, int width, int height, int type)
+	{
+		BufferedImage image = new BufferedImage(width, height, type);
+		WritableRaster raster = image.getRaster();
+		if (type == BufferedImage.TYPE_INT_ARGB)
+		{
+			raster.setDataElements(0, 0, width, height, pixels);
+		}
+		else if (type == BufferedImage.TYPE_4BYTE_ABGR)
+		{
+			byte[] bytes = new byte[pixels.length * 4];
+			for (int i = 0, j = 0; i < pixels.length; i++, j += 4)
+			{
+				int pixel = pixels[i];
+				bytes[j] = (byte) (pixel >> 16);
+				bytes[j + 1] = (byte) (pixel >> 8);
+				bytes[j + 2] = (byte) pixel;
+				bytes[j + 3] = (byte) (pixel >>> 24);
+			}
+			raster.setDataElements(0, 0, width, height, bytes);
+		}
+		else if (type == BufferedImage.TYPE_3BYTE_BGR)
+		{
+			byte[] bytes = new byte[pixels.length * 3];
+			for (int i = 0, j = 0; i < pixels.length; i++, j += 3)
+			{
+				int pixel = pixels[i];
+				bytes[j] = (byte) (pixel >> 16);
+				bytes[j + 1] = (byte) (pixel >> 8);
+				bytes[j + 2] = (byte) pixel;
+			}
+			raster.setDataElements(0, 0, width, height, bytes);
+		}
+		else
+		{
+			image.setRGB(0, 0, width, height, pixels, 0, width);
+		}
+		return image;
+	}
+
+	/**
+	 * Arrange four tiles of equal size into a single array of twice the width
+	 * and height:
+	 *
+	 * <pre>
+	 * +--+--+
+	 * |p1|p3|
+	 * +--+--+
+	 * |p0|p2|
+	 * +--+--+
+	 * </pre>
+	 *
+	 * @param p0
+	 *            Bottom-left tile (null for transparent)
+	 * @param p1
+	 *            Top-left tile (null for transparent)
+	 * @param p2
+	 *            Bottom-right tile (null for transparent)
+	 * @param p3
+	 *            Top-right tile (null for transparent)
+	 * @param width
+	 *            Width of each tile
+	 * @param height
+	 *            Height of each tile
+	 * @return Array of size (width * 2) x (height * 2)
+	 */
+	public static int[] mosaic(int[] p0, int[] p1, int[] p2, int[] p3, int width, int height)
+	{
+		int mosaicWidth = width * 2;
+		int[] mosaic = new int[mosaicWidth * height * 2];
+		copyInto(p1, mosaic, 0, width, height, mosaicWidth);
+		copyInto(p3, mosaic, width, width, height, mosaicWidth);
+		copyInto(p0, mosaic, height * mosaicWidth, width, height, mosaicWidth);
+		copyInto(p2, mosaic, height * mosaicWidth + width, width, height, mosaicWidth);
+		return mosaic;
+	}
+
+	private static void copyInto(int[] src, int[] dst, int offset, int width, int height, int dstWidth)
+	{
+		if (src == null)
+			return;
+
+		for (int y = 0; y < height; y++)
+		{
+			System.arraycopy(src, y * width, dst, offset + y * dstWidth, width);
+		}
+	}
+
+	/**
+	 * Downsample an image to half its width and height.
+	 *
+	 * @param src
+	 *            Source pixels
+	 * @param srcWidth
+	 *            Width of the source (must be even)
+	 * @param srcHeight
+	 *            Height of the source (must be even)
+	 * @param filter
+	 *            Filter to use
+	 * @return Pixels of size (srcWidth / 2) x (srcHeight / 2)
+	 */
+	public static int[] downsample(int[] src, int srcWidth, int srcHeight, Filter filter)
+	{
+		if (srcWidth % 2 != 0 || srcHeight % 2 != 0)
+			throw new IllegalArgumentException("Width/Height must be multiples of 2");
+
+		switch (filter)
+		{
+		case NEAREST:
+			return nearest(src, srcWidth, srcHeight);
+		case BOX:
+			return box(src, srcWidth, srcHeight);
+		default:
+			return lanczos(src, srcWidth, srcHeight);
+		}
+	}
+
+	private static int[] nearest(int[] src, int srcWidth, int srcHeight)
+	{
+		int width = srcWidth / 2;
+		int height = srcHeight / 2;
+		int[] dst = new int[width * height];
+		for (int y = 0; y < height; y++)
+		{
+			int srcRow = y * 2 * srcWidth;
+			int dstRow = y * width;
+			for (int x = 0; x < width; x++)
+			{
+				dst[dstRow + x] = src[srcRow + x * 2];
+			}
+		}
+		return dst;
+	}
+
+	private static int[] box(int[] src, int srcWidth, int srcHeight)
+	{
+		int width = srcWidth / 2;
+		int height = srcHeight / 2;
+		int[] dst = new int[width * height];
+		for (int y = 0; y < height; y++)
+		{
+			int row0 = y * 2 * srcWidth;
+			int row1 = row0 + srcWidth;
+			int dstRow = y * width;
+			for (int x = 0; x < width; x++)
+			{
+				int p0 = src[row0 + x * 2];
+				int p1 = src[row0 + x * 2 + 1];
+				int p2 = src[row1 + x * 2];
+				int p3 = src[row1 + x * 2 + 1];
+
+				int a0 = p0 >>> 24, a1 = p1 >>> 24, a2 = p2 >>> 24, a3 = p3 >>> 24;
+				int a = a0 + a1 + a2 + a3;
+				if (a == 0)
+				{
+					dst[dstRow + x] = 0;
+					continue;
+				}
+
+				//weight each color by its alpha
+				int half = a >> 1;
+				int r =
+						((p0 >> 16 & 0xff) * a0 + (p1 >> 16 & 0xff) * a1 + (p2 >> 16 & 0xff) * a2 + (p3 >> 16 & 0xff)
+								* a3 + half)
+								/ a;
+				int g =
+						((p0 >> 8 & 0xff) * a0 + (p1 >> 8 & 0xff) * a1 + (p2 >> 8 & 0xff) * a2 + (p3 >> 8 & 0xff) * a3 + half)
+								/ a;
+				int b = ((p0 & 0xff) * a0 + (p1 & 0xff) * a1 + (p2 & 0xff) * a2 + (p3 & 0xff) * a3 + half) / a;
+				dst[dstRow + x] = ((a + 2) >> 2) << 24 | r << 16 | g << 8 | b;
+			}
+		}
+		return dst;
+	}
+
+	private static int[] lanczos(int[] src, int srcWidth, int srcHeight)
+	{
+		int width = srcWidth / 2;
+		int height = srcHeight / 2;
+		int srcPixels = srcWidth * srcHeight;
+
+		//split into premultiplied channels
+		int[] a = new int[srcPixels];
+		int[] r = new int[srcPixels];
+		int[] g = new int[srcPixels];
+		int[] b = new int[srcPixels];
+		for (int i = 0; i < srcPixels; i++)
+		{
+			int pixel = src[i];
+			int alpha = pixel >>> 24;
+			a[i] = alpha;
+			r[i] = ((pixel >> 16 & 0xff) * alpha + 127) / 255;
+			g[i] = ((pixel >> 8 & 0xff) * alpha + 127) / 255;
+			b[i] = ((pixel & 0xff) * alpha + 127) / 255;
+		}
+
+		//horizontal then vertical pass
+		int[] columns = createTapIndices(width, srcWidth);
+		int[] rows = createTapIndices(height, srcHeight);
+		int[] ha = new int[width * srcHeight];
+		int[] hr = new int[width * srcHeight];
+		int[] hg = new int[width * srcHeight];
+		int[] hb = new int[width * srcHeight];
+		filterRows(a, ha, srcWidth, width, srcHeight, columns);
+		filterRows(r, hr, srcWidth, width, srcHeight, columns);
+		filterRows(g, hg, srcWidth, width, srcHeight, columns);
+		filterRows(b, hb, srcWidth, width, srcHeight, columns);
+
+		int[] va = new int[width * height];
+		int[] vr = new int[width * height];
+		int[] vg = new int[width * height];
+		int[] vb = new int[width * height];
+		filterColumns(ha, va, width, height, rows);
+		filterColumns(hr, vr, width, height, rows);
+		filterColumns(hg, vg, width, height, rows);
+		filterColumns(hb, vb, width, height, rows);
+
+		//clamp (the filter has negative lobes) and unpremultiply
+		int[] dst = new int[width * height];
+		for (int i = 0; i < dst.length; i++)
+		{
+			int alpha = clamp(va[i], 0, 255);
+			if (alpha == 0)
+			{
+				continue;
+			}
+			int half = alpha >> 1;
+			int red = (clamp(vr[i], 0, alpha) * 255 + half) / alpha;
+			int green = (clamp(vg[i], 0, alpha) * 255 + half) / alpha;
+			int blue = (clamp(vb[i], 0, alpha) * 255 + half) / alpha;
+			dst[i] = alpha << 24 | red << 16 | green << 8 | blue;
+		}
+		return dst;
+	}
+
+	private static void filterRows(int[] src, int[] dst, int srcWidth, int width, int height, int[] columns)
+	{
+		int[] weights = LANCZOS_WEIGHTS;
+		for (int y = 0; y < height; y++)
+		{
+			int srcRow = y * srcWidth;
+			int dstRow = y * width;
+			for (int x = 0; x < width; x++)
+			{
+				int tap = x * LANCZOS_TAPS;
+				int sum = 0;
+				for (int k = 0; k < LANCZOS_TAPS; k++)
+				{
+					sum += src[srcRow + columns[tap + k]] * weights[k];
+				}
+				//keep some fractional precision for the vertical pass
+				dst[dstRow + x] = sum >> INTERMEDIATE_SHIFT;
+			}
+		}
+	}
+
+	private static void filterColumns(int[] src, int[] dst, int width, int height, int[] rows)
+	{
+		int[] weights = LANCZOS_WEIGHTS;
+		int shift = WEIGHT_BITS * 2 - INTERMEDIATE_SHIFT;
+		int round = 1 << (shift - 1);
+		for (int y = 0; y < height; y++)
+		{
+			int tap = y * LANCZOS_TAPS;
+			int dstRow = y * width;
+			for (int x = 0; x < width; x++)
+			{
+				int sum = 0;
+				for (int k = 0; k < LANCZOS_TAPS; k++)
+				{
+					sum += src[rows[tap + k] * width + x] * weights[k];
+				}
+				dst[dstRow + x] = (sum + round) >> shift;
+			}
+		}
+	}
+
+	/**
+	 * Calculate the source index of each filter tap, for each destination
+	 * index. Indices are clamped to the edges of the source.
+	 */
+	private static int[] createTapIndices(int size, int srcSize)
+	{
+		int[] indices = new int[size * LANCZOS_TAPS];
+		for (int i = 0; i < size; i++)
+		{
+			int first = i * 2 - LANCZOS_TAPS / 2 + 1;
+			for (int k = 0; k < LANCZOS_TAPS; k++)
+			{
+				indices[i * LANCZOS_TAPS + k] = clamp(first + k, 0, srcSize - 1);
+			}
+		}
+		return indices;
+	}
+
+	/**
+	 * Calculate the fixed point Lanczos weights for a 2:1 reduction. The
+	 * center of destination pixel i is at source position 2i + 0.5, so the
+	 * weights are the same for every destination pixel.
+	 */
+	private static int[] createLanczosWeights()
+	{
+		double[] weights = new double[LANCZOS_TAPS];
+		double total = 0;
+		for (int k = 0; k < LANCZOS_TAPS; k++)
+		{
+			double distance = (k - LANCZOS_TAPS / 2 + 0.5) / 2d;
+			weights[k] = sinc(distance) * sinc(distance / LANCZOS_A);
+			total += weights[k];
+		}
+
+		int[] fixed = new int[LANCZOS_TAPS];
+		int fixedTotal = 0;
+		for (int k = 0; k < LANCZOS_TAPS; k++)
+		{
+			fixed[k] = (int) Math.round(weights[k] / total * (1 << WEIGHT_BITS));
+			fixedTotal += fixed[k];
+		}
+		//ensure the weights sum to exactly one, so constant regions are unchanged
+		int center = LANCZOS_TAPS / 2;
+		fixed[center - 1] += ((1 << WEIGHT_BITS) - fixedTotal) / 2;
+		fixed[center] += (1 << WEIGHT_BITS) - fixedTotal - ((1 << WEIGHT_BITS) - fixedTotal) / 2;
+		return fixed;
+	}
+
+	private static double sinc(double x)
+	{
+		if (x == 0)
+			return 1;
+		double px = Math.PI * x;
+		return Math.sin(px) / px;
+	}
+
+	private static int clamp(int value, int min, int max)
+	{
+		return value < min ? min : value > max ? max : value;
+	}
+}
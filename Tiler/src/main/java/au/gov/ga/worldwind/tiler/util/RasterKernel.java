@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+
+/**
+ * Pixel operations on a raster buffer of a single data type. Buffers are
+ * band-sequential, with each band stored in row-major order, so pixel (x, y)
+ * of band b is element <code>b * width * height + y * width + x</code>.
+ * Indices passed to the element accessors are element indices, not byte
+ * offsets.
+ * <p/>
+ * Implementations for each GDAL data type are available from
+ * {@link RasterKernels#forType(int)}.
+ */
+public interface RasterKernel
+{
+	/**
+	 * @return Size of each element in bytes
+	 */
+	int getTypeSize();
+
+	/**
+	 * @return Is this kernel's data type floating point?
+	 */
+	boolean isFloatingPoint();
+
+	/**
+	 * @param buffer The buffer to take the value from
+	 * @param index The element index of the value
+	 * @return The value at the given element index as a long
+	 */
+	long getLong(ByteBuffer buffer, int index);
+
+	/**
+	 * @param buffer The buffer to take the value from
+	 * @param index The element index of the value
+	 * @return The value at the given element index as a double
+	 */
+	double getDouble(ByteBuffer buffer, int index);
+
+	/**
+	 * @param buffer The buffer to put the value into
+	 * @param index The element index to put the value at
+	 * @param value The value to put into the buffer
+	 */
+	void putLong(ByteBuffer buffer, int index, long value);
+
+	/**
+	 * @param buffer The buffer to put the value into
+	 * @param index The element index to put the value at
+	 * @param value The value to put into the buffer
+	 */
+	void putDouble(ByteBuffer buffer, int index, double value);
+
+	/**
+	 * Are all the pixels of a band within the given region equal to the given
+	 * value?
+	 *
+	 * @param buffer The buffer containing the raster
+	 * @param size The size of the raster
+	 * @param band The band to test
+	 * @param region The region of the raster to test
+	 * @param values Values to compare with, one per band; returns true if the band's value is null
+	 * @return True if all pixels in the region are equal to the band's value
+	 */
+	boolean isEqual(ByteBuffer buffer, Dimension size, int band, Rectangle region, NullableNumberArray values);
+
+	/**
+	 * Set all the pixels of a band outside the given region to the given
+	 * value.
+	 *
+	 * @param buffer The buffer containing the raster
+	 * @param size The size of the raster
+	 * @param band The band to fill
+	 * @param region The region of the raster to leave untouched
+	 * @param values Values to fill with, one per band; nothing is filled if the band's value is null
+	 */
+	void fillOutside(ByteBuffer buffer, Dimension size, int band, Rectangle region, NullableNumberArray values);
+
+	/**
+	 * Replace the pixels within the given region that lie within any of the
+	 * ranges with the replacement values, and all other pixels with the
+	 * otherwise values.
+	 *
+	 * @param buffer The buffer containing the raster
+	 * @param size The size of the raster
+	 * @param bandCount The number of bands in the raster
+	 * @param region The region of the raster to replace values in
+	 * @param minMaxs Ranges to test each pixel against
+	 * @param replacement Values for pixels within a range (can be null, or contain nulls)
+	 * @param otherwise Values for pixels outside all the ranges (can be null, or contain nulls)
+	 */
+	void replaceValues(ByteBuffer buffer, Dimension size, int bandCount, Rectangle region, MinMaxArray[] minMaxs,
+			NullableNumberArray replacement, NullableNumberArray otherwise);
+
+	/**
+	 * Expand the min/max in the given array to include all the pixels in the
+	 * raster.
+	 *
+	 * @param buffer The buffer containing the raster
+	 * @param size The size of the raster
+	 * @param bandCount The number of bands in the raster
+	 * @param minmax Array containing the current min (at index 0) and max (at index 1)
+	 * @param outsideValues Values to ignore, one per band (can be null, or contain nulls)
+	 */
+	void updateMinMax(ByteBuffer buffer, Dimension size, int bandCount, NumberArray minmax,
+			NullableNumberArray outsideValues);
+
+	/**
+	 * Convert the elements in the source buffer to the data type of the
+	 * destination kernel. Floating point values are truncated when converted
+	 * to integer types.
+	 *
+	 * @param src The buffer to read from, of this kernel's data type
+	 * @param dst The buffer to write to, of the destination kernel's data type
+	 * @param dstKernel The kernel for the destination buffer's data type
+	 * @param count The number of elements to convert
+	 */
+	void convert(ByteBuffer src, ByteBuffer dst, RasterKernel dstKernel, int count);
+}
@@ -0,0 +1,624 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+
+import org.gdal.gdalconst.gdalconstConstants;
+
+/**
+ * {@link RasterKernel} implementations for each GDAL data type.
+ * <p/>
+ * Unlike the {@link BufferUtil} methods, which switch on the data type for
+ * every value, the data type is resolved once per tile, and the kernels
+ * iterate over each band in row-major (memory) order. Values are stored in
+ * the same format as {@link BufferUtil}, so the two can be used on the same
+ * buffer.
+ */
+public class RasterKernels
+{
+	public static final RasterKernel BYTE = new ByteKernel();
+	public static final RasterKernel INT16 = new Int16Kernel();
+	public static final RasterKernel UINT16 = new UInt16Kernel();
+	public static final RasterKernel INT32 = new Int32Kernel();
+	public static final RasterKernel UINT32 = new UInt32Kernel();
+	public static final RasterKernel FLOAT32 = new Float32Kernel();
+	public static final RasterKernel FLOAT64 = new Float64Kernel();
+
+	private RasterKernels(){}
+
+	/**
+	 * Get the kernel for the given buffer type. Complex types use the kernel
+	 * of their real component type, consistent with {@link BufferUtil}.
+	 *
+	 * @param bufferType The type of buffer (see {@link gdalconstConstants} for values)
+	 * @return The kernel for the given buffer type
+	 */
+	public static RasterKernel forType(int bufferType)
+	{
+		if (bufferType == gdalconstConstants.GDT_Byte)
+		{
+			return BYTE;
+		}
+		else if (bufferType == gdalconstConstants.GDT_Int16 || bufferType == gdalconstConstants.GDT_CInt16)
+		{
+			return INT16;
+		}
+		else if (bufferType == gdalconstConstants.GDT_UInt16)
+		{
+			return UINT16;
+		}
+		else if (bufferType == gdalconstConstants.GDT_Int32 || bufferType == gdalconstConstants.GDT_CInt32)
+		{
+			return INT32;
+		}
+		else if (bufferType == gdalconstConstants.GDT_UInt32)
+		{
+			return UINT32;
+		}
+		else if (bufferType == gdalconstConstants.GDT_Float32 || bufferType == gdalconstConstants.GDT_CFloat32)
+		{
+			return FLOAT32;
+		}
+		else if (bufferType == gdalconstConstants.GDT_Float64 || bufferType == gdalconstConstants.GDT_CFloat64)
+		{
+			return FLOAT64;
+		}
+		else
+		{
+			throw new IllegalStateException("Unknown buffer type");
+		}
+	}
+
+	/**
+	 * Base class for the integer data types. All operations are performed on
+	 * long values.
+	 */
+	private static abstract class IntegerKernel implements RasterKernel
+	{
+		@Override
+		public boolean isFloatingPoint()
+		{
+			return false;
+		}
+
+		@Override
+		public double getDouble(ByteBuffer buffer, int index)
+		{
+			return getLong(buffer, index);
+		}
+
+		@Override
+		public void putDouble(ByteBuffer buffer, int index, double value)
+		{
+			putLong(buffer, index, (long) value);
+		}
+
+		@Override
+		public boolean isEqual(ByteBuffer buffer, Dimension size, int band, Rectangle region,
+				NullableNumberArray values)
+		{
+			if (values.getLong(band) == null)
+			{
+				return true;
+			}
+
+			long value = values.getLong(band);
+			int offset = band * size.width * size.height;
+			for (int y = region.y; y < region.y + region.height; y++)
+			{
+				int start = offset + y * size.width + region.x;
+				int end = start + region.width;
+				for (int i = start; i < end; i++)
+				{
+					if (getLong(buffer, i) != value)
+					{
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public void fillOutside(ByteBuffer buffer, Dimension size, int band, Rectangle region,
+				NullableNumberArray values)
+		{
+			if (values.getLong(band) == null)
+			{
+				return;
+			}
+
+			long value = values.getLong(band);
+			int offset = band * size.width * size.height;
+			int minX = Math.max(0, Math.min(size.width, region.x));
+			int maxX = Math.max(minX, Math.min(size.width, region.x + region.width));
+			for (int y = 0; y < size.height; y++)
+			{
+				int start = offset + y * size.width;
+				int end = start + size.width;
+				if (y >= region.y && y < region.y + region.height && maxX > minX)
+				{
+					for (int i = start; i < start + minX; i++)
+					{
+						putLong(buffer, i, value);
+					}
+					start += maxX;
+				}
+				for (int i = start; i < end; i++)
+				{
+					putLong(buffer, i, value);
+				}
+			}
+		}
+
+		@Override
+		public void replaceValues(ByteBuffer buffer, Dimension size, int bandCount, Rectangle region,
+				MinMaxArray[] minMaxs, NullableNumberArray replacement, NullableNumberArray otherwise)
+		{
+			long[] replacementValues = new long[bandCount];
+			long[] otherwiseValues = new long[bandCount];
+			boolean[] replace = new boolean[bandCount];
+			boolean[] other = new boolean[bandCount];
+			for (int b = 0; b < bandCount; b++)
+			{
+				replace[b] = replacement != null && replacement.getDouble(b) != null;
+				other[b] = otherwise != null && otherwise.getDouble(b) != null;
+				replacementValues[b] = replace[b] ? replacement.getLong(b) : 0;
+				otherwiseValues[b] = other[b] ? otherwise.getLong(b) : 0;
+			}
+
+			int bandSize = size.width * size.height;
+			long[] values = new long[bandCount];
+			for (int y = region.y; y < region.y + region.height; y++)
+			{
+				int start = y * size.width + region.x;
+				int end = start + region.width;
+				for (int i = start; i < end; i++)
+				{
+					for (int b = 0, index = i; b < bandCount; b++, index += bandSize)
+					{
+						values[b] = getLong(buffer, index);
+					}
+
+					boolean between = false;
+					for (int m = 0; m < minMaxs.length && !between; m++)
+					{
+						between = minMaxs[m] != null && minMaxs[m].isBetweenLong(values);
+					}
+
+					long[] newValues = between ? replacementValues : otherwiseValues;
+					boolean[] set = between ? replace : other;
+					for (int b = 0, index = i; b < bandCount; b++, index += bandSize)
+					{
+						if (set[b])
+						{
+							putLong(buffer, index, newValues[b]);
+						}
+					}
+				}
+			}
+		}
+
+		@Override
+		public void updateMinMax(ByteBuffer buffer, Dimension size, int bandCount, NumberArray minmax,
+				NullableNumberArray outsideValues)
+		{
+			long min = minmax.getLong(0);
+			long max = minmax.getLong(1);
+			int bandSize = size.width * size.height;
+			for (int b = 0; b < bandCount; b++)
+			{
+				boolean skip = outsideValues != null && outsideValues.getLong(b) != null;
+				long outside = skip ? outsideValues.getLong(b) : 0;
+				int start = b * bandSize;
+				int end = start + bandSize;
+				for (int i = start; i < end; i++)
+				{
+					long value = getLong(buffer, i);
+					if (skip && value == outside)
+					{
+						continue;
+					}
+					if (value < min)
+					{
+						min = value;
+					}
+					if (value > max)
+					{
+						max = value;
+					}
+				}
+			}
+
+			if (min != minmax.getLong(0))
+			{
+				minmax.setLong(0, min);
+			}
+			if (max != minmax.getLong(1))
+			{
+				minmax.setLong(1, max);
+			}
+		}
+
+		@Override
+		public void convert(ByteBuffer src, ByteBuffer dst, RasterKernel dstKernel, int count)
+		{
+			if (dstKernel.isFloatingPoint())
+			{
+				for (int i = 0; i < count; i++)
+				{
+					dstKernel.putDouble(dst, i, getLong(src, i));
+				}
+			}
+			else
+			{
+				for (int i = 0; i < count; i++)
+				{
+					dstKernel.putLong(dst, i, getLong(src, i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Base class for the floating point data types. All operations are
+	 * performed on double values.
+	 */
+	private static abstract class FloatingPointKernel implements RasterKernel
+	{
+		@Override
+		public boolean isFloatingPoint()
+		{
+			return true;
+		}
+
+		@Override
+		public long getLong(ByteBuffer buffer, int index)
+		{
+			return (long) getDouble(buffer, index);
+		}
+
+		@Override
+		public void putLong(ByteBuffer buffer, int index, long value)
+		{
+			putDouble(buffer, index, value);
+		}
+
+		@Override
+		public boolean isEqual(ByteBuffer buffer, Dimension size, int band, Rectangle region,
+				NullableNumberArray values)
+		{
+			if (values.getDouble(band) == null)
+			{
+				return true;
+			}
+
+			double value = values.getDouble(band);
+			int offset = band * size.width * size.height;
+			for (int y = region.y; y < region.y + region.height; y++)
+			{
+				int start = offset + y * size.width + region.x;
+				int end = start + region.width;
+				for (int i = start; i < end; i++)
+				{
+					if (getDouble(buffer, i) != value)
+					{
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public void fillOutside(ByteBuffer buffer, Dimension size, int band, Rectangle region,
+				NullableNumberArray values)
+		{
+			if (values.getDouble(band) == null)
+			{
+				return;
+			}
+
+			double value = values.getDouble(band);
+			int offset = band * size.width * size.height;
+			int minX = Math.max(0, Math.min(size.width, region.x));
+			int maxX = Math.max(minX, Math.min(size.width, region.x + region.width));
+			for (int y = 0; y < size.height; y++)
+			{
+				int start = offset + y * size.width;
+				int end = start + size.width;
+				if (y >= region.y && y < region.y + region.height && maxX > minX)
+				{
+					for (int i = start; i < start + minX; i++)
+					{
+						putDouble(buffer, i, value);
+					}
+					start += maxX;
+				}
+				for (int i = start; i < end; i++)
+				{
+					putDouble(buffer, i, value);
+				}
+			}
+		}
+
+		@Override
+		public void replaceValues(ByteBuffer buffer, Dimension size, int bandCount, Rectangle region,
+				MinMaxArray[] minMaxs, NullableNumberArray replacement, NullableNumberArray otherwise)
+		{
+			double[] replacementValues = new double[bandCount];
+			double[] otherwiseValues = new double[bandCount];
+			boolean[] replace = new boolean[bandCount];
+			boolean[] other = new boolean[bandCount];
+			for (int b = 0; b < bandCount; b++)
+			{
+				replace[b] = replacement != null && replacement.getDouble(b) != null;
+				other[b] = otherwise != null && otherwise.getDouble(b) != null;
+				replacementValues[b] = replace[b] ? replacement.getDouble(b) : 0;
+				otherwiseValues[b] = other[b] ? otherwise.getDouble(b) : 0;
+			}
+
+			int bandSize = size.width * size.height;
+			double[] values = new double[bandCount];
+			for (int y = region.y; y < region.y + region.height; y++)
+			{
+				int start = y * size.width + region.x;
+				int end = start + region.width;
+				for (int i = start; i < end; i++)
+				{
+					for (int b = 0, index = i; b < bandCount; b++, index += bandSize)
+					{
+						values[b] = getDouble(buffer, index);
+					}
+
+					boolean between = false;
+					for (int m = 0; m < minMaxs.length && !between; m++)
+					{
+						between = minMaxs[m] != null && minMaxs[m].isBetweenDouble(values);
+					}
+
+					double[] newValues = between ? replacementValues : otherwiseValues;
+					boolean[] set = between ? replace : other;
+					for (int b = 0, index = i; b < bandCount; b++, index += bandSize)
+					{
+						if (set[b])
+						{
+							putDouble(buffer, index, newValues[b]);
+						}
+					}
+				}
+			}
+		}
+
+		@Override
+		public void updateMinMax(ByteBuffer buffer, Dimension size, int bandCount, NumberArray minmax,
+				NullableNumberArray outsideValues)
+		{
+			double min = minmax.getDouble(0);
+			double max = minmax.getDouble(1);
+			int bandSize = size.width * size.height;
+			for (int b = 0; b < bandCount; b++)
+			{
+				boolean skip = outsideValues != null && outsideValues.getDouble(b) != null;
+				double outside = skip ? outsideValues.getDouble(b) : 0;
+				int start = b * bandSize;
+				int end = start + bandSize;
+				for (int i = start; i < end; i++)
+				{
+					double value = getDouble(buffer, i);
+					if (skip && value == outside)
+					{
+						continue;
+					}
+					if (value < min)
+					{
+						min = value;
+					}
+					if (value > max)
+					{
+						max = value;
+					}
+				}
+			}
+
+			if (min != minmax.getDouble(0))
+			{
+				minmax.setDouble(0, min);
+			}
+			if (max != minmax.getDouble(1))
+			{
+				minmax.setDouble(1, max);
+			}
+		}
+
+		@Override
+		public void convert(ByteBuffer src, ByteBuffer dst, RasterKernel dstKernel, int count)
+		{
+			if (dstKernel.isFloatingPoint())
+			{
+				for (int i = 0; i < count; i++)
+				{
+					dstKernel.putDouble(dst, i, getDouble(src, i));
+				}
+			}
+			else
+			{
+				for (int i = 0; i < count; i++)
+				{
+					dstKernel.putLong(dst, i, (long) getDouble(src, i));
+				}
+			}
+		}
+	}
+
+	private static final class ByteKernel extends IntegerKernel
+	{
+		@Override
+		public int getTypeSize()
+		{
+			return 1;
+		}
+
+		@Override
+		public long getLong(ByteBuffer buffer, int index)
+		{
+			return buffer.get(index) & 0xff;
+		}
+
+		@Override
+		public void putLong(ByteBuffer buffer, int index, long value)
+		{
+			buffer.put(index, (byte) value);
+		}
+	}
+
+	private static final class Int16Kernel extends IntegerKernel
+	{
+		@Override
+		public int getTypeSize()
+		{
+			return 2;
+		}
+
+		@Override
+		public long getLong(ByteBuffer buffer, int index)
+		{
+			return buffer.getShort(index << 1);
+		}
+
+		@Override
+		public void putLong(ByteBuffer buffer, int index, long value)
+		{
+			buffer.putShort(index << 1, (short) value);
+		}
+	}
+
+	/**
+	 * Unsigned 16-bit values are stored in the opposite byte order to the
+	 * buffer's order, as they are by {@link BufferUtil}.
+	 */
+	private static final class UInt16Kernel extends IntegerKernel
+	{
+		@Override
+		public int getTypeSize()
+		{
+			return 2;
+		}
+
+		@Override
+		public long getLong(ByteBuffer buffer, int index)
+		{
+			return Short.reverseBytes(buffer.getShort(index << 1)) & 0xffff;
+		}
+
+		@Override
+		public void putLong(ByteBuffer buffer, int index, long value)
+		{
+			buffer.putShort(index << 1, Short.reverseBytes((short) value));
+		}
+	}
+
+	private static final class Int32Kernel extends IntegerKernel
+	{
+		@Override
+		public int getTypeSize()
+		{
+			return 4;
+		}
+
+		@Override
+		public long getLong(ByteBuffer buffer, int index)
+		{
+			return buffer.getInt(index << 2);
+		}
+
+		@Override
+		public void putLong(ByteBuffer buffer, int index, long value)
+		{
+			buffer.putInt(index << 2, (int) value);
+		}
+	}
+
+	/**
+	 * Unsigned 32-bit values are stored in the opposite byte order to the
+	 * buffer's order, as they are by {@link BufferUtil}.
+	 */
+	private static final class UInt32Kernel extends IntegerKernel
+	{
+		@Override
+		public int getTypeSize()
+		{
+			return 4;
+		}
+
+		@Override
+		public long getLong(ByteBuffer buffer, int index)
+		{
+			return Integer.reverseBytes(buffer.getInt(index << 2)) & 0xffffffffL;
+		}
+
+		@Override
+		public void putLong(ByteBuffer buffer, int index, long value)
+		{
+			buffer.putInt(index << 2, Integer.reverseBytes((int) value));
+		}
+	}
+
+	private static final class Float32Kernel extends FloatingPointKernel
+	{
+		@Override
+		public int getTypeSize()
+		{
+			return 4;
+		}
+
+		@Override
+		public double getDouble(ByteBuffer buffer, int index)
+		{
+			return buffer.getFloat(index << 2);
+		}
+
+		@Override
+		public void putDouble(ByteBuffer buffer, int index, double value)
+		{
+			buffer.putFloat(index << 2, (float) value);
+		}
+	}
+
+	private static final class Float64Kernel extends FloatingPointKernel
+	{
+		@Override
+		public int getTypeSize()
+		{
+			return 8;
+		}
+
+		@Override
+		public double getDouble(ByteBuffer buffer, int index)
+		{
+			return buffer.getDouble(index << 3);
+		}
+
+		@Override
+		public void putDouble(ByteBuffer buffer, int index, double value)
+		{
+			buffer.putDouble(index << 3, value);
+		}
+	}
+}
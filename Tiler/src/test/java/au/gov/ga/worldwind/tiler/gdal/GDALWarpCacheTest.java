@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.gdal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.nio.ByteOrder;
+
+import org.gdal.gdal.Band;
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconstConstants;
+import org.gdal.osr.SpatialReference;
+import org.junit.Test;
+
+import au.gov.ga.worldwind.tiler.gdal.GDALWarpCache.BlockKey;
+import au.gov.ga.worldwind.tiler.util.NullableNumberArray;
+import au.gov.ga.worldwind.tiler.util.Sector;
+
+/**
+ * Unit tests for the {@link GDALWarpCache} class
+ */
+public class GDALWarpCacheTest
+{
+	private static final Dimension TILE_SIZE = new Dimension(64, 64);
+
+	@Test
+	public void testSuperTileFactor()
+	{
+		assertEquals(8, GDALWarpCache.getSuperTileFactor(new Dimension(150, 150)));
+		assertEquals(4, GDALWarpCache.getSuperTileFactor(new Dimension(512, 512)));
+		assertEquals(1, GDALWarpCache.getSuperTileFactor(new Dimension(4096, 256)));
+	}
+
+	@Test
+	public void testTilesInSameSuperTile()
+	{
+		//tiles on a 0.5 degree grid offset from the origin by 0.1 degrees
+		BlockKey key1 = GDALWarpCache.createKey(null, tileSector(3, -5), TILE_SIZE, 4);
+		BlockKey key2 = GDALWarpCache.createKey(null, tileSector(0, -8), TILE_SIZE, 4);
+		BlockKey key3 = GDALWarpCache.createKey(null, tileSector(4, -5), TILE_SIZE, 4);
+		BlockKey key4 = GDALWarpCache.createKey(null, tileSector(3, -4), TILE_SIZE, 4);
+
+		assertEquals(key1, key2);
+		assertEquals(key1.hashCode(), key2.hashCode());
+		assertFalse(key1.equals(key3));
+		assertFalse(key1.equals(key4));
+
+		//row -5 is the top row of the super-tile containing rows -8 to -5
+		assertEquals(new Rectangle(3 * 64, 0, 64, 64), key1.getTileRectangle());
+		assertEquals(new Rectangle(0, 3 * 64, 64, 64), key2.getTileRectangle());
+
+		Sector sector = GDALWarpCache.getSuperTileSector(key1);
+		assertEquals(0.1, sector.getMinLongitude(), 1e-9);
+		assertEquals(2.1, sector.getMaxLongitude(), 1e-9);
+		assertEquals(-3.9, sector.getMinLatitude(), 1e-9);
+		assertEquals(-1.9, sector.getMaxLatitude(), 1e-9);
+	}
+
+	@Test
+	public void testCachedTilesMatchPerTileWarp() throws Exception
+	{
+		GDALUtil.init();
+		Dataset src = createProjectedDataset();
+		SpatialReference dstSR = new SpatialReference();
+		dstSR.ImportFromEPSG(4326);
+		GDALWarpCache cache = new GDALWarpCache(TILE_SIZE);
+		try
+		{
+			Sector extent = GDALUtil.getSector(src);
+			double delta = 0.01;
+			int minX = (int) Math.floor(extent.getMinLongitude() / delta);
+			int minY = (int) Math.floor(extent.getMinLatitude() / delta);
+			for (int y = minY; y < minY + 10; y++)
+			{
+				for (int x = minX; x < minX + 10; x++)
+				{
+					Sector sector = new Sector(y * delta, x * delta, (y + 1) * delta, (x + 1) * delta);
+
+					GDALTileParameters parameters = new GDALTileParameters(src, TILE_SIZE, sector);
+					parameters.reprojectIfRequired = true;
+					parameters.bilinearInterpolationIfRequired = false;
+					GDALTile expected = new GDALTile(parameters);
+
+					parameters.warpCache = cache;
+					GDALTile actual = new GDALTile(parameters);
+
+					assertArrayEquals(expected.getBuffer().array(), actual.getBuffer().array());
+				}
+			}
+
+			//pixels outside the source are set to the source NODATA value
+			Sector outside = new Sector(extent.getMinLatitude() - 1, extent.getMinLongitude() - 1,
+					extent.getMinLatitude() - 0.5, extent.getMinLongitude() - 0.5);
+			GDALTileParameters parameters = new GDALTileParameters(src, TILE_SIZE, outside);
+			parameters.reprojectIfRequired = true;
+			parameters.warpCache = cache;
+			GDALTile tile = new GDALTile(parameters);
+			assertEquals(-9999, tile.getBuffer().order(ByteOrder.LITTLE_ENDIAN).getShort(0));
+		}
+		finally
+		{
+			cache.clear();
+			dstSR.delete();
+			src.delete();
+		}
+	}
+
+	@Test
+	public void testWarpFillsWithNoData() throws Exception
+	{
+		GDALUtil.init();
+		Dataset src = createProjectedDataset();
+		SpatialReference dstSR = new SpatialReference();
+		dstSR.ImportFromEPSG(4326);
+		try
+		{
+			NullableNumberArray noData = new NullableNumberArray(1);
+			noData.setDouble(0, -32768d);
+			Sector extent = GDALUtil.getSector(src);
+			Sector sector = new Sector(extent.getMinLatitude() - 1, extent.getMinLongitude() - 1,
+					extent.getMaxLatitude(), extent.getMaxLongitude());
+			Dataset dst = GDALWarpCache.warp(src, sector, TILE_SIZE, dstSR, true, false, noData);
+			try
+			{
+				short[] values = new short[1];
+				dst.GetRasterBand(1).ReadRaster(0, TILE_SIZE.height - 1, 1, 1, values);
+				assertEquals(-32768, values[0]);
+			}
+			finally
+			{
+				dst.delete();
+			}
+		}
+		finally
+		{
+			dstSR.delete();
+			src.delete();
+		}
+	}
+
+	private static Sector tileSector(int column, int row)
+	{
+		double delta = 0.5;
+		double minLon = 0.1 + column * delta;
+		double minLat = 0.1 + row * delta;
+		return new Sector(minLat, minLon, minLat + delta, minLon + delta);
+	}
+
+	/**
+	 * Create a 256x256 Int16 UTM dataset with a NODATA hole in the middle.
+	 */
+	private static Dataset createProjectedDataset()
+	{
+		Dataset dataset = gdal.GetDriverByName("MEM").Create("src", 256, 256, 1, gdalconstConstants.GDT_Int16);
+		SpatialReference srs = new SpatialReference();
+		srs.ImportFromEPSG(32755); //UTM zone 55S
+		dataset.SetProjection(srs.ExportToWkt());
+		srs.delete();
+		dataset.SetGeoTransform(new double[] { 500000, 10, 0, 6000000, 0, -10 });
+
+		Band band = dataset.GetRasterBand(1);
+		band.SetNoDataValue(-9999);
+		short[] values = new short[256 * 256];
+		for (int y = 0; y < 256; y++)
+		{
+			for (int x = 0; x < 256; x++)
+			{
+				boolean hole = x > 100 && x < 150 && y > 100 && y < 150;
+				values[y * 256 + x] = hole ? -9999 : (short) (x * 7 + y * 3);
+			}
+		}
+		band.WriteRaster(0, 0, 256, 256, values);
+		return dataset;
+	}
+}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.ribbon;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import au.gov.ga.worldwind.tiler.ribbon.ConstantColumns.PixelColors;
+
+/**
+ * Unit tests for the {@link ConstantColumns} class. Synthetic rasters are
+ * converted to images the same way as the <code>GDALTile</code> does, and the
+ * raw buffer calculation is compared with the per-pixel image calculation.
+ */
+public class ConstantColumnsTest
+{
+	private static final Dimension SIZE = new Dimension(40, 30);
+
+	@Test
+	public void testRgbRaster() throws Exception
+	{
+		ByteBuffer buffer = createRaster(3, new Random(1), false);
+		assertSameAsImage(buffer, 3, BufferedImage.TYPE_INT_RGB);
+	}
+
+	@Test
+	public void testGrayRaster() throws Exception
+	{
+		//gray values are converted to a different color space, so distinct values can have the same color
+		ByteBuffer buffer = createRaster(1, new Random(2), false);
+		assertSameAsImage(buffer, 1, BufferedImage.TYPE_BYTE_GRAY);
+	}
+
+	@Test
+	public void testTransparentRaster() throws Exception
+	{
+		//all fully transparent pixels have the same color, whatever their raw values
+		ByteBuffer buffer = createRaster(4, new Random(3), true);
+		int[] fromTop = new int[SIZE.width];
+		int[] fromBottom = new int[SIZE.width];
+		assertSameAsImage(buffer, 4, BufferedImage.TYPE_INT_ARGB_PRE, fromTop, fromBottom);
+
+		//the transparent runs are longer than the runs of identical raw values
+		int[] rawFromTop = new int[SIZE.width];
+		int[] rawFromBottom = new int[SIZE.width];
+		ConstantColumns.calculate(buffer, SIZE, 4, 1, new PixelColors()
+		{
+			@Override
+			public int getRGB(int x, int y)
+			{
+				return y;
+			}
+		}, rawFromTop, rawFromBottom, 0);
+		int longer = 0;
+		for (int x = 0; x < SIZE.width; x++)
+		{
+			longer += fromTop[x] > rawFromTop[x] ? 1 : 0;
+		}
+		assertTrue(longer > 0);
+	}
+
+	@Test
+	public void testConstantColumn() throws Exception
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(SIZE.width * SIZE.height * 3);
+		assertSameAsImage(buffer, 3, BufferedImage.TYPE_INT_RGB);
+
+		//fully constant columns are counted from the top only
+		int[] fromTop = new int[SIZE.width + 5];
+		int[] fromBottom = new int[SIZE.width + 5];
+		ConstantColumns.calculate(buffer, SIZE, 3, 1, null, fromTop, fromBottom, 5);
+		assertEquals(SIZE.height, fromTop[5]);
+		assertEquals(0, fromBottom[5]);
+		assertEquals(0, fromTop[0]);
+	}
+
+	private static void assertSameAsImage(ByteBuffer buffer, int bandCount, int imageType) throws Exception
+	{
+		assertSameAsImage(buffer, bandCount, imageType, new int[SIZE.width], new int[SIZE.width]);
+	}
+
+	private static void assertSameAsImage(ByteBuffer buffer, int bandCount, int imageType, int[] fromTop,
+			int[] fromBottom) throws Exception
+	{
+		final BufferedImage image = createImage(buffer, bandCount, imageType);
+		int[] imageFromTop = new int[fromTop.length];
+		int[] imageFromBottom = new int[fromBottom.length];
+		ConstantColumns.calculate(image, imageFromTop, imageFromBottom, 0);
+
+		ConstantColumns.calculate(buffer, SIZE, bandCount, 1, new PixelColors()
+		{
+			@Override
+			public int getRGB(int x, int y)
+			{
+				return image.getRGB(x, y);
+			}
+		}, fromTop, fromBottom, 0);
+
+		assertArrayEquals(imageFromTop, fromTop);
+		assertArrayEquals(imageFromBottom, fromBottom);
+	}
+
+	/**
+	 * Create a band-sequential raster, where each column has a random number
+	 * of constant pixels at the top and bottom, and random pixels between.
+	 */
+	private static ByteBuffer createRaster(int bandCount, Random random, boolean transparentEnds)
+	{
+		int pixels = SIZE.width * SIZE.height;
+		ByteBuffer buffer = ByteBuffer.allocate(pixels * bandCount);
+		for (int x = 0; x < SIZE.width; x++)
+		{
+			int top = random.nextInt(SIZE.height + 1);
+			int bottom = random.nextInt(SIZE.height - top + 1);
+			byte[] topValue = randomPixel(random, bandCount);
+			byte[] bottomValue = randomPixel(random, bandCount);
+			for (int y = 0; y < SIZE.height; y++)
+			{
+				boolean inTop = y < top;
+				boolean inBottom = y >= SIZE.height - bottom;
+				byte[] value = inTop ? topValue : inBottom ? bottomValue : randomPixel(random, bandCount);
+				if (transparentEnds && (inTop || inBottom))
+				{
+					//different raw values, but all fully transparent
+					value = randomPixel(random, bandCount);
+					value[bandCount - 1] = 0;
+				}
+				else if (bandCount == 1 && x % 2 == 0)
+				{
+					//nearly white gray values, which can convert to the same color
+					value[0] = (byte) (252 + (value[0] & 3));
+				}
+				for (int b = 0; b < bandCount; b++)
+				{
+					buffer.put(b * pixels + y * SIZE.width + x, value[b]);
+				}
+			}
+		}
+		return buffer;
+	}
+
+	private static byte[] randomPixel(Random random, int bandCount)
+	{
+		byte[] pixel = new byte[bandCount];
+		random.nextBytes(pixel);
+		return pixel;
+	}
+
+	/**
+	 * Create an image from a band-sequential byte raster, in the same way as
+	 * the <code>GDALTile</code>.
+	 */
+	private static BufferedImage createImage(ByteBuffer buffer, int bandCount, int imageType)
+	{
+		int pixels = SIZE.width * SIZE.height;
+		DataBuffer dataBuffer = new DataBufferByte(buffer.array(), pixels * bandCount);
+		int[] offsets = new int[bandCount];
+		for (int b = 0; b < bandCount; b++)
+		{
+			offsets[b] = b * pixels;
+		}
+		SampleModel sampleModel =
+				new ComponentSampleModel(DataBuffer.TYPE_BYTE, SIZE.width, SIZE.height, 1, SIZE.width, offsets);
+		WritableRaster raster = Raster.createWritableRaster(sampleModel, dataBuffer, null);
+		BufferedImage image = new BufferedImage(SIZE.width, SIZE.height, imageType);
+		image.setData(raster);
+		return image;
+	}
+}
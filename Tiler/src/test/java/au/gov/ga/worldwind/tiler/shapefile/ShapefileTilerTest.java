@@ -0,0 +1,344 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.shapefile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.store.ContentFeatureSource;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import au.gov.ga.worldwind.tiler.util.LatLon;
+import au.gov.ga.worldwind.tiler.util.ProgressReporter;
+import au.gov.ga.worldwind.tiler.util.ProgressReporterImpl;
+import au.gov.ga.worldwind.tiler.util.Util;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LinearRing;
+
+/**
+ * Tests that the {@link ShapefileTiler} produces the same tiles through its
+ * {@link TileBuckets} as it does when every tile is held in memory.
+ */
+public class ShapefileTilerTest
+{
+	private static final int LEVEL = 2;
+	private static final double LZTS = 36;
+	private static final LatLon ORIGIN = LatLon.DEFAULT_ORIGIN;
+
+	private final GeometryFactory factory = new GeometryFactory();
+	private File directory;
+	private boolean done;
+	private final ProgressReporter progress = new ProgressReporterImpl(Logger.getLogger(getClass().getName()))
+	{
+		@Override
+		public void progress(double percent)
+		{
+		}
+
+		@Override
+		public void done()
+		{
+			done = true;
+		}
+	};
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = File.createTempFile("shapefiletiler", "");
+		directory.delete();
+		directory.mkdir();
+	}
+
+	@After
+	public void tearDown()
+	{
+		delete(directory);
+	}
+
+	@Test
+	public void testPolygonsMatchInMemoryTiles() throws Exception
+	{
+		//vertices are kept off the tile edges, and clipped parts are not triangles, as the tiler can't save those
+		LinearRing shell = ring(0.5, -10, 40, -10, 40, 5, 20, 5, 20, 25, 0.5, 25, 0.5, -10);
+		LinearRing[] holes =
+				new LinearRing[] { ring(5, -5, 15, -5, 15, 20, 5, 20, 5, -5), ring(30, 1, 32, 1, 32, 3, 30, 3, 30, 1) };
+		Geometry large = factory.createPolygon(shell, holes);
+		Geometry small = factory.createPolygon(ring(21, 11, 25, 11, 25, 15, 21, 15, 21, 11), null);
+		Geometry diagonal = factory.createPolygon(ring(-20, -30, -2, -12, -20, 5, -30, -20, -20, -30), null);
+
+		File input = writeShapefile("polygons", "the_geom:Polygon,name:String,value:Integer", large, small, diagonal);
+		assertTilesMatch(input);
+	}
+
+	@Test
+	public void testLinesMatchInMemoryTiles() throws Exception
+	{
+		Geometry zigzag = factory.createLineString(coordinates(-35, -20, 10, 30, 12, -25, 44, 17));
+		Geometry inside = factory.createLineString(coordinates(1, 1, 3, 2, 4, 4));
+
+		File input = writeShapefile("lines", "the_geom:LineString,name:String,value:Integer", zigzag, inside);
+		assertTilesMatch(input);
+	}
+
+	/**
+	 * Tile the input through the buckets (split down to single tiles and saved
+	 * on several threads), and through tiles held in memory, and check that
+	 * the saved tile files are identical.
+	 */
+	private void assertTilesMatch(File input) throws Exception
+	{
+		File bucketOutput = new File(directory, "buckets");
+		ShapefileTiler.tile(input, bucketOutput, LEVEL, LZTS, ORIGIN, 1, 3, progress);
+		assertTrue("Tiling failed", done);
+
+		File memoryOutput = new File(directory, "memory");
+		tileInMemory(input, memoryOutput);
+
+		Map<String, Map<String, byte[]>> expected = readTiles(memoryOutput);
+		Map<String, Map<String, byte[]>> actual = readTiles(bucketOutput);
+		assertTrue(expected.size() > 1);
+		assertEquals(expected.keySet(), actual.keySet());
+		for (String tile : expected.keySet())
+		{
+			assertEquals(tile, expected.get(tile).keySet(), actual.get(tile).keySet());
+			for (String entry : expected.get(tile).keySet())
+			{
+				assertArrayEquals(tile + " " + entry, expected.get(tile).get(entry), actual.get(tile).get(entry));
+			}
+		}
+	}
+
+	private void tileInMemory(File input, File output) throws Exception
+	{
+		ShapefileDataStore dataStore = new ShapefileDataStore(input.toURI().toURL());
+		try
+		{
+			ContentFeatureSource featureSource = dataStore.getFeatureSource();
+			SimpleFeatureType schema = dataStore.getSchema();
+
+			ReferencedEnvelope bounds = featureSource.getBounds();
+			int minX = Util.getTileX(bounds.getMinX() + 1e-10, ORIGIN, LEVEL, LZTS);
+			int maxX = Util.getTileX(bounds.getMaxX() - 1e-10, ORIGIN, LEVEL, LZTS);
+			int minY = Util.getTileY(bounds.getMinY() + 1e-10, ORIGIN, LEVEL, LZTS);
+			int maxY = Util.getTileY(bounds.getMaxY() - 1e-10, ORIGIN, LEVEL, LZTS);
+			Point min = new Point(minX, minY);
+			Dimension size = new Dimension(maxX - minX + 1, maxY - minY + 1);
+
+			output.mkdirs();
+			File bucketDirectory = new File(directory, "unused");
+			bucketDirectory.mkdir();
+			MemoryTiles tiles = new MemoryTiles(bucketDirectory, schema, min, size, Math.pow(0.5, LEVEL) * LZTS);
+			try
+			{
+				boolean anyPolygons =
+						ShapefileTiler.addFeatures(featureSource.getFeatures(), schema, tiles, LEVEL, LZTS, ORIGIN,
+								min, size, progress);
+				for (ShapefileTile tile : tiles.tiles)
+				{
+					ShapefileTiler.saveTile(tile, schema, factory, output, LEVEL, anyPolygons, progress);
+				}
+			}
+			finally
+			{
+				tiles.delete();
+			}
+		}
+		finally
+		{
+			dataStore.dispose();
+		}
+	}
+
+	private File writeShapefile(String name, String spec, Geometry... geometries) throws Exception
+	{
+		File file = new File(directory, name + ".shp");
+		ShapefileDataStore dataStore = new ShapefileDataStore(file.toURI().toURL());
+		try
+		{
+			dataStore.createSchema(DataUtilities.createType(name, spec));
+			FeatureWriter<SimpleFeatureType, SimpleFeature> writer =
+					dataStore.getFeatureWriterAppend(Transaction.AUTO_COMMIT);
+			try
+			{
+				for (int i = 0; i < geometries.length; i++)
+				{
+					SimpleFeature feature = writer.next();
+					feature.setDefaultGeometry(geometries[i]);
+					feature.setAttribute("name", "feature " + i);
+					feature.setAttribute("value", i * 10);
+					writer.write();
+				}
+			}
+			finally
+			{
+				writer.close();
+			}
+		}
+		finally
+		{
+			dataStore.dispose();
+		}
+		return file;
+	}
+
+	private static Map<String, Map<String, byte[]>> readTiles(File output) throws IOException
+	{
+		List<File> files = new ArrayList<File>();
+		listFiles(output, files);
+
+		Map<String, Map<String, byte[]>> tiles = new TreeMap<String, Map<String, byte[]>>();
+		for (File file : files)
+		{
+			String path = file.getAbsolutePath().substring(output.getAbsolutePath().length());
+			assertTrue("Unexpected file " + path, file.getName().endsWith(".zip"));
+
+			Map<String, byte[]> entries = new TreeMap<String, byte[]>();
+			ZipFile zip = new ZipFile(file);
+			try
+			{
+				Enumeration<? extends ZipEntry> e = zip.entries();
+				while (e.hasMoreElements())
+				{
+					ZipEntry entry = e.nextElement();
+					entries.put(entry.getName(), read(zip.getInputStream(entry)));
+				}
+			}
+			finally
+			{
+				zip.close();
+			}
+			tiles.put(path, entries);
+		}
+		return tiles;
+	}
+
+	private static void listFiles(File directory, List<File> files)
+	{
+		for (File file : directory.listFiles())
+		{
+			if (file.isDirectory())
+				listFiles(file, files);
+			else
+				files.add(file);
+		}
+	}
+
+	private static byte[] read(InputStream is) throws IOException
+	{
+		try
+		{
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = is.read(buffer)) >= 0)
+			{
+				baos.write(buffer, 0, read);
+			}
+			return baos.toByteArray();
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	private static void delete(File file)
+	{
+		if (file.isDirectory())
+		{
+			for (File child : file.listFiles())
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private LinearRing ring(double... lonLats)
+	{
+		return factory.createLinearRing(coordinates(lonLats));
+	}
+
+	private static Coordinate[] coordinates(double... lonLats)
+	{
+		Coordinate[] coordinates = new Coordinate[lonLats.length / 2];
+		for (int i = 0; i < coordinates.length; i++)
+		{
+			coordinates[i] = new Coordinate(lonLats[i * 2], lonLats[i * 2 + 1]);
+		}
+		return coordinates;
+	}
+
+	/**
+	 * {@link TileBuckets} that holds every tile of the level in memory, as the
+	 * tiler did before buckets were introduced.
+	 */
+	private static class MemoryTiles extends TileBuckets
+	{
+		private final List<ShapefileTile> tiles = new ArrayList<ShapefileTile>();
+
+		public MemoryTiles(File directory, SimpleFeatureType schema, Point min, Dimension size, double tileSizeDegrees)
+				throws IOException
+		{
+			super(directory, schema, min, size, tileSizeDegrees, 1);
+			for (int i = 0; i < size.width * size.height; i++)
+			{
+				tiles.add(new ShapefileTile(getSector(i), getColumn(i), getRow(i)));
+			}
+		}
+
+		@Override
+		public ShapefileTile getTile(int index)
+		{
+			return tiles.get(index);
+		}
+
+		@Override
+		public void markFilled(int index, Attributes attributes)
+		{
+			tiles.get(index).markFilled(attributes);
+		}
+	}
+}
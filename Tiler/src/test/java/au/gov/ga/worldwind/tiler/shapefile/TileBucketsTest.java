@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.shapefile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import au.gov.ga.worldwind.tiler.shapefile.TileBuckets.Bucket;
+import au.gov.ga.worldwind.tiler.shapefile.TileBuckets.TileOperations;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+/**
+ * Unit tests for the {@link TileBuckets} class
+ */
+public class TileBucketsTest
+{
+	private static final Point MIN = new Point(10, 5);
+	private static final Dimension SIZE = new Dimension(8, 4);
+	private static final double TILE_SIZE = 9;
+
+	private Mockery mockContext;
+	private SimpleFeatureType schema;
+	private File directory;
+	private TileBuckets buckets;
+
+	@Before
+	public void setup() throws IOException
+	{
+		mockContext = new Mockery();
+		schema = mockContext.mock(SimpleFeatureType.class);
+		mockContext.checking(new Expectations()
+		{
+			{
+				allowing(schema).getAttributeCount();
+				will(returnValue(5));
+			}
+		});
+
+		directory = File.createTempFile("tilebuckets", "");
+		directory.delete();
+		directory.mkdir();
+		buckets = new TileBuckets(directory, schema, MIN, SIZE, TILE_SIZE, 3);
+	}
+
+	@After
+	public void tearDown()
+	{
+		buckets.delete();
+	}
+
+	@Test
+	public void testSplitBucketsReadBackOperationsInOrder() throws IOException
+	{
+		Attributes first = attributes("first", 1, 2.5d, new Date(1000000L));
+		Attributes second = attributes(null, Long.MAX_VALUE, -1.5f, Boolean.TRUE);
+
+		Map<Integer, List<String>> expected = new HashMap<Integer, List<String>>();
+		for (int i = 0; i < 200; i++)
+		{
+			int index = (i * 7) % (SIZE.width * SIZE.height);
+			Attributes attributes = i % 3 == 0 ? first : second;
+			ShapefileTile tile = buckets.getTile(index);
+			Coordinate coordinate = new Coordinate(i, -i, i * 0.5);
+			switch (i % 4)
+			{
+			case 0:
+				tile.addCoordinate(i, coordinate, i % 8 == 0, i % 8 != 0, attributes);
+				add(expected, index, coordinate(i, coordinate, i % 8 == 0, i % 8 != 0, attributes));
+				break;
+			case 1:
+				List<Coordinate> points = Arrays.asList(coordinate, new Coordinate(i, i));
+				tile.addHole(points, attributes);
+				add(expected, index, hole(points, attributes));
+				break;
+			case 2:
+				tile.joinOrphanPolygons(null);
+				add(expected, index, "join");
+				break;
+			default:
+				buckets.markFilled(index, attributes);
+				add(expected, index, filled(attributes));
+			}
+		}
+
+		//a tiny memory limit splits the buckets down to single tiles
+		final Map<Integer, List<String>> actual = new HashMap<Integer, List<String>>();
+		List<Bucket> parts = new ArrayList<Bucket>();
+		for (Bucket bucket : buckets.finish())
+		{
+			parts.addAll(buckets.split(bucket, 1));
+		}
+		assertEquals(SIZE.width * SIZE.height, parts.size());
+
+		for (Bucket part : parts)
+		{
+			final Map<Integer, List<String>> partOperations = new HashMap<Integer, List<String>>();
+			buckets.read(part, new TileOperations()
+			{
+				@Override
+				public void addCoordinate(int index, int shapeId, Coordinate coordinate, boolean entry, boolean exit,
+						Attributes attributes)
+				{
+					add(partOperations, index, coordinate(shapeId, coordinate, entry, exit, attributes));
+				}
+
+				@Override
+				public void addHole(int index, List<Coordinate> points, Attributes attributes)
+				{
+					add(partOperations, index, hole(points, attributes));
+				}
+
+				@Override
+				public void joinOrphanPolygons(int index)
+				{
+					add(partOperations, index, "join");
+				}
+
+				@Override
+				public void markFilled(int index, Attributes attributes)
+				{
+					add(partOperations, index, filled(attributes));
+				}
+			});
+
+			for (Integer index : partOperations.keySet())
+			{
+				assertFalse("Tile " + index + " split across buckets", actual.containsKey(index));
+			}
+			actual.putAll(partOperations);
+		}
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testUnsplitBucketIsReturned() throws IOException
+	{
+		buckets.getTile(0).addCoordinate(0, new Coordinate(1, 2), false, false, attributes("a", 1, 2d, null));
+		List<Bucket> finished = buckets.finish();
+		assertEquals(1, finished.size());
+
+		List<Bucket> parts = buckets.split(finished.get(0), Long.MAX_VALUE);
+		assertEquals(1, parts.size());
+		assertTrue(parts.get(0) == finished.get(0));
+	}
+
+	@Test
+	public void testReplayCreatesTilesInRowMajorOrder() throws IOException
+	{
+		Attributes attributes = attributes("a", 1, 2d, null);
+		buckets.markFilled(SIZE.width + 6, attributes);
+		buckets.markFilled(2, attributes);
+		buckets.markFilled(SIZE.width + 3, attributes);
+
+		List<ShapefileTile> tiles = new ArrayList<ShapefileTile>();
+		for (Bucket bucket : buckets.finish())
+		{
+			tiles.addAll(buckets.replay(bucket, null));
+		}
+		assertEquals(3, tiles.size());
+
+		//all three tiles hash to bucket 2
+		assertEquals(MIN.x + 2, tiles.get(0).col);
+		assertEquals(MIN.y, tiles.get(0).row);
+		assertEquals(MIN.x + 3, tiles.get(1).col);
+		assertEquals(MIN.y + 1, tiles.get(1).row);
+		assertEquals(MIN.x + 6, tiles.get(2).col);
+		assertEquals(MIN.y + 1, tiles.get(2).row);
+
+		ShapefileTile tile = tiles.get(1);
+		assertEquals((MIN.y + 1) * TILE_SIZE - 90, tile.sector().getMinLatitude(), 0);
+		assertEquals((MIN.x + 3) * TILE_SIZE - 180, tile.sector().getMinLongitude(), 0);
+		assertEquals(TILE_SIZE, tile.sector().getDeltaLatitude(), 0);
+		tile.completePolygons(0);
+		assertEquals(1, tile.recordCount());
+	}
+
+	@Test
+	public void testDeleteRemovesDirectory() throws IOException
+	{
+		buckets.getTile(5).addCoordinate(0, new Coordinate(1, 2), false, false, attributes("a", 1, 2d, null));
+		buckets.finish();
+		assertTrue(directory.list().length > 0);
+
+		buckets.delete();
+		assertFalse(directory.exists());
+	}
+
+	private Attributes attributes(Object... values)
+	{
+		Attributes attributes = new Attributes(schema);
+		System.arraycopy(values, 0, attributes.values, 0, values.length);
+		return attributes;
+	}
+
+	private static void add(Map<Integer, List<String>> operations, int index, String operation)
+	{
+		List<String> list = operations.get(index);
+		if (list == null)
+		{
+			list = new ArrayList<String>();
+			operations.put(index, list);
+		}
+		list.add(operation);
+	}
+
+	private static String coordinate(int shapeId, Coordinate coordinate, boolean entry, boolean exit,
+			Attributes attributes)
+	{
+		return "coordinate " + shapeId + " " + coordinate + " " + entry + " " + exit + " "
+				+ Arrays.toString(attributes.values);
+	}
+
+	private static String hole(List<Coordinate> points, Attributes attributes)
+	{
+		return "hole " + points + " " + Arrays.toString(attributes.values);
+	}
+
+	private static String filled(Attributes attributes)
+	{
+		return "filled " + Arrays.toString(attributes.values);
+	}
+}
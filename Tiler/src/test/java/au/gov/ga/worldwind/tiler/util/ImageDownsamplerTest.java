@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import au.gov.ga.worldwind.tiler.util.ImageDownsampler.Filter;
+
+/**
+ * Unit tests for the {@link ImageDownsampler} class
+ */
+public class ImageDownsamplerTest
+{
+	private static final int OPAQUE_RED = 0xffff0000;
+	private static final int TRANSPARENT_GREEN = 0x0000ff00;
+
+	@Test
+	public void testNearestUsesTopLeftPixel()
+	{
+		int[] src = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 };
+		int[] dst = ImageDownsampler.downsample(src, 4, 4, Filter.NEAREST);
+		assertArrayEquals(new int[] { 1, 3, 9, 11 }, dst);
+	}
+
+	@Test
+	public void testBoxAveragesOpaquePixels()
+	{
+		int[] src = { 0xff000000, 0xff040404, 0xff0a0a0a, 0xff020406 };
+		int[] dst = ImageDownsampler.downsample(src, 2, 2, Filter.BOX);
+		assertEquals(0xff040505, dst[0]);
+	}
+
+	@Test
+	public void testBoxIgnoresColorOfTransparentPixels()
+	{
+		int[] src = { OPAQUE_RED, TRANSPARENT_GREEN, TRANSPARENT_GREEN, TRANSPARENT_GREEN };
+		int[] dst = ImageDownsampler.downsample(src, 2, 2, Filter.BOX);
+		assertEquals(0x40ff0000, dst[0]);
+
+		src = new int[] { TRANSPARENT_GREEN, TRANSPARENT_GREEN, TRANSPARENT_GREEN, TRANSPARENT_GREEN };
+		dst = ImageDownsampler.downsample(src, 2, 2, Filter.BOX);
+		assertEquals(0, dst[0]);
+	}
+
+	@Test
+	public void testLanczosPreservesConstantImage()
+	{
+		int[] src = new int[16 * 12];
+		Arrays.fill(src, 0xff336699);
+		int[] dst = ImageDownsampler.downsample(src, 16, 12, Filter.LANCZOS);
+		assertEquals(8 * 6, dst.length);
+		for (int pixel : dst)
+		{
+			assertEquals(0xff336699, pixel);
+		}
+	}
+
+	@Test
+	public void testLanczosIgnoresColorOfTransparentPixels()
+	{
+		//opaque red on the left, transparent green on the right
+		int[] src = new int[16 * 4];
+		for (int i = 0; i < src.length; i++)
+		{
+			src[i] = i % 16 < 8 ? OPAQUE_RED : TRANSPARENT_GREEN;
+		}
+		int[] dst = ImageDownsampler.downsample(src, 16, 4, Filter.LANCZOS);
+		for (int pixel : dst)
+		{
+			assertEquals(0, pixel & 0x0000ffff);
+			if (pixel != 0)
+			{
+				assertEquals(0x00ff0000, pixel & 0x00ffffff);
+			}
+		}
+		assertEquals(0xff, dst[0] >>> 24);
+		assertEquals(0, dst[7] >>> 24);
+	}
+
+	@Test
+	public void testLanczosCloseToBoxForSmoothImage()
+	{
+		int[] src = new int[32 * 32];
+		for (int y = 0; y < 32; y++)
+		{
+			for (int x = 0; x < 32; x++)
+			{
+				src[y * 32 + x] = 0xff000000 | (x * 8) << 16 | (y * 8) << 8;
+			}
+		}
+		int[] box = ImageDownsampler.downsample(src, 32, 32, Filter.BOX);
+		int[] lanczos = ImageDownsampler.downsample(src, 32, 32, Filter.LANCZOS);
+		for (int y = 1; y < 15; y++)
+		{
+			for (int x = 1; x < 15; x++)
+			{
+				int i = y * 16 + x;
+				assertTrue(Math.abs((box[i] >> 16 & 0xff) - (lanczos[i] >> 16 & 0xff)) <= 1);
+				assertTrue(Math.abs((box[i] >> 8 & 0xff) - (lanczos[i] >> 8 & 0xff)) <= 1);
+			}
+		}
+	}
+
+	@Test
+	public void testMosaicLayout()
+	{
+		int[] mosaic = ImageDownsampler.mosaic(new int[] { 0 }, new int[] { 1 }, new int[] { 2 }, null, 1, 1);
+		assertArrayEquals(new int[] { 1, 0, 0, 2 }, mosaic);
+	}
+
+	@Test
+	public void testPixelsMatchGetRGB()
+	{
+		int[] types =
+				{ BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_4BYTE_ABGR,
+						BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY };
+		Random random = new Random(1);
+		int[] argb = new int[10 * 6];
+		for (int i = 0; i < argb.length; i++)
+		{
+			argb[i] = random.nextInt();
+		}
+
+		for (int type : types)
+		{
+			BufferedImage image = new BufferedImage(10, 6, type);
+			image.setRGB(0, 0, 10, 6, argb, 0, 10);
+			int[] expected = image.getRGB(0, 0, 10, 6, null, 0, 10);
+			assertArrayEquals(expected, ImageDownsampler.getPixels(image, 10, 6));
+
+			BufferedImage created = ImageDownsampler.createImage(expected, 10, 6, type);
+			assertArrayEquals(expected, created.getRGB(0, 0, 10, 6, null, 0, 10));
+		}
+	}
+
+	@Test
+	public void testPixelsOfDifferentSizedImage()
+	{
+		BufferedImage image = new BufferedImage(3, 1, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(0, 0, 3, 1, new int[] { 1, 2, 3 }, 0, 3);
+		assertArrayEquals(new int[] { 1, 2, 0, 0 }, ImageDownsampler.getPixels(image, 2, 2));
+	}
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconstConstants;
+
+/**
+ * Micro-benchmark comparing the {@link RasterKernels} with the equivalent
+ * per-pixel {@link BufferUtil} loops previously used by the GDALTile. Not run
+ * as part of the unit tests; run manually with the GDAL native libraries on
+ * the library path:
+ *
+ * <pre>
+ * java au.gov.ga.worldwind.tiler.util.RasterKernelsBenchmark [tile size] [iterations]
+ * </pre>
+ */
+public class RasterKernelsBenchmark
+{
+	private static final int WARMUP_ITERATIONS = 200;
+
+	public static void main(String[] args)
+	{
+		int tileSize = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+		gdal.AllRegister();
+		int[] types =
+				new int[] { gdalconstConstants.GDT_Byte, gdalconstConstants.GDT_Int16, gdalconstConstants.GDT_UInt16,
+						gdalconstConstants.GDT_Int32, gdalconstConstants.GDT_Float32, gdalconstConstants.GDT_Float64 };
+
+		Dimension size = new Dimension(tileSize, tileSize);
+		for (int type : types)
+		{
+			RasterKernel kernel = RasterKernels.forType(type);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(tileSize * tileSize * kernel.getTypeSize());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			long perPixel = time(new PerPixelMinMax(buffer, size, type, kernel.isFloatingPoint()), iterations);
+			long kernels = time(new KernelMinMax(buffer, size, kernel), iterations);
+			System.out.println(gdal.GetDataTypeName(type) + " min/max: per-pixel " + perPixel + "ns, kernel "
+					+ kernels + "ns");
+
+			Rectangle inside = new Rectangle(tileSize / 4, tileSize / 4, tileSize / 2, tileSize / 2);
+			perPixel = time(new PerPixelFillOutside(buffer, size, inside, type, kernel.isFloatingPoint()), iterations);
+			kernels = time(new KernelFillOutside(buffer, size, inside, kernel), iterations);
+			System.out.println(gdal.GetDataTypeName(type) + " fill outside: per-pixel " + perPixel + "ns, kernel "
+					+ kernels + "ns");
+		}
+	}
+
+	/**
+	 * @return Average time per run of the given task, in nanoseconds
+	 */
+	private static long time(Runnable task, int iterations)
+	{
+		for (int i = 0; i < WARMUP_ITERATIONS; i++)
+		{
+			task.run();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+		{
+			task.run();
+		}
+		return (System.nanoTime() - start) / iterations;
+	}
+
+	private static class PerPixelMinMax implements Runnable
+	{
+		private final ByteBuffer buffer;
+		private final Dimension size;
+		private final int type;
+		private final boolean floatingPoint;
+		private final int typeSize;
+		public double sink;
+
+		public PerPixelMinMax(ByteBuffer buffer, Dimension size, int type, boolean floatingPoint)
+		{
+			this.buffer = buffer;
+			this.size = size;
+			this.type = type;
+			this.floatingPoint = floatingPoint;
+			this.typeSize = buffer.capacity() / (size.width * size.height);
+		}
+
+		@Override
+		public void run()
+		{
+			double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+			for (int y = 0; y < size.height; y++)
+			{
+				for (int x = 0; x < size.width; x++)
+				{
+					int index = (y * size.width + x) * typeSize;
+					double value =
+							floatingPoint ? BufferUtil.getDoubleValue(index, buffer, type) : BufferUtil.getLongValue(
+									index, buffer, type);
+					min = Math.min(min, value);
+					max = Math.max(max, value);
+				}
+			}
+			sink = min + max;
+		}
+	}
+
+	private static class KernelMinMax implements Runnable
+	{
+		private final ByteBuffer buffer;
+		private final Dimension size;
+		private final RasterKernel kernel;
+		private final NumberArray minmax = new NumberArray(2);
+
+		public KernelMinMax(ByteBuffer buffer, Dimension size, RasterKernel kernel)
+		{
+			this.buffer = buffer;
+			this.size = size;
+			this.kernel = kernel;
+		}
+
+		@Override
+		public void run()
+		{
+			minmax.setDouble(0, Double.MAX_VALUE);
+			minmax.setDouble(1, -Double.MAX_VALUE);
+			kernel.updateMinMax(buffer, size, 1, minmax, null);
+		}
+	}
+
+	private static class PerPixelFillOutside implements Runnable
+	{
+		private final ByteBuffer buffer;
+		private final Dimension size;
+		private final Rectangle inside;
+		private final int type;
+		private final boolean floatingPoint;
+		private final int typeSize;
+
+		public PerPixelFillOutside(ByteBuffer buffer, Dimension size, Rectangle inside, int type,
+				boolean floatingPoint)
+		{
+			this.buffer = buffer;
+			this.size = size;
+			this.inside = inside;
+			this.type = type;
+			this.floatingPoint = floatingPoint;
+			this.typeSize = buffer.capacity() / (size.width * size.height);
+		}
+
+		@Override
+		public void run()
+		{
+			for (int x = 0; x < size.width; x++)
+			{
+				for (int y = 0; y < size.height; y++)
+				{
+					if (!inside.contains(x, y))
+					{
+						int index = (y * size.width + x) * typeSize;
+						if (floatingPoint)
+						{
+							BufferUtil.putDoubleValue(index, buffer, type, 1d);
+						}
+						else
+						{
+							BufferUtil.putLongValue(index, buffer, type, 1l);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static class KernelFillOutside implements Runnable
+	{
+		private final ByteBuffer buffer;
+		private final Dimension size;
+		private final Rectangle inside;
+		private final RasterKernel kernel;
+		private final NullableNumberArray values = new NullableNumberArray(1);
+
+		public KernelFillOutside(ByteBuffer buffer, Dimension size, Rectangle inside, RasterKernel kernel)
+		{
+			this.buffer = buffer;
+			this.size = size;
+			this.inside = inside;
+			this.kernel = kernel;
+			values.setLong(0, 1l);
+		}
+
+		@Override
+		public void run()
+		{
+			kernel.fillOutside(buffer, size, 0, inside, values);
+		}
+	}
+}
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.worldwind.tiler.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link RasterKernels} class
+ */
+public class RasterKernelsTest
+{
+	private static final RasterKernel[] KERNELS = new RasterKernel[] { RasterKernels.BYTE, RasterKernels.INT16,
+			RasterKernels.UINT16, RasterKernels.INT32, RasterKernels.UINT32, RasterKernels.FLOAT32,
+			RasterKernels.FLOAT64 };
+
+	private static final Dimension SIZE = new Dimension(5, 4);
+
+	@Test
+	public void testPutGetRoundTrip()
+	{
+		for (RasterKernel kernel : KERNELS)
+		{
+			ByteBuffer buffer = createBuffer(kernel, 3);
+			kernel.putLong(buffer, 0, 115);
+			kernel.putDouble(buffer, 2, 97);
+			assertEquals(115, kernel.getLong(buffer, 0));
+			assertEquals(0, kernel.getLong(buffer, 1));
+			assertEquals(97d, kernel.getDouble(buffer, 2), 0);
+		}
+
+		ByteBuffer buffer = createBuffer(RasterKernels.FLOAT32, 1);
+		RasterKernels.FLOAT32.putDouble(buffer, 0, -2.75);
+		assertEquals(-2, RasterKernels.FLOAT32.getLong(buffer, 0));
+	}
+
+	@Test
+	public void testUnsignedTypesMatchBufferUtilByteOrder()
+	{
+		//BufferUtil stores unsigned values in the opposite byte order to the buffer
+		ByteBuffer buffer = createBuffer(RasterKernels.UINT16, 1);
+		RasterKernels.UINT16.putLong(buffer, 0, 0xfedc);
+		assertEquals((byte) 0xfe, buffer.get(0));
+		assertEquals((byte) 0xdc, buffer.get(1));
+		assertEquals(0xfedc, RasterKernels.UINT16.getLong(buffer, 0));
+
+		buffer = createBuffer(RasterKernels.UINT32, 1);
+		RasterKernels.UINT32.putLong(buffer, 0, 0xfedcba98L);
+		assertEquals((byte) 0xfe, buffer.get(0));
+		assertEquals((byte) 0x98, buffer.get(3));
+		assertEquals(0xfedcba98L, RasterKernels.UINT32.getLong(buffer, 0));
+	}
+
+	@Test
+	public void testIsEqualOnlyTestsRegion()
+	{
+		Rectangle region = new Rectangle(1, 1, 3, 2);
+		NullableNumberArray noData = new NullableNumberArray(2);
+		noData.setLong(0, 200L);
+
+		for (RasterKernel kernel : KERNELS)
+		{
+			ByteBuffer buffer = createBuffer(kernel, SIZE.width * SIZE.height * 2);
+			fill(kernel, buffer, region, 0, 200);
+			assertTrue(kernel.isEqual(buffer, SIZE, 0, region, noData));
+
+			//band 1 has no value, so is always equal
+			assertTrue(kernel.isEqual(buffer, SIZE, 1, region, noData));
+
+			kernel.putLong(buffer, index(3, 2, 0), 7);
+			assertFalse(kernel.isEqual(buffer, SIZE, 0, region, noData));
+		}
+	}
+
+	@Test
+	public void testFillOutside()
+	{
+		Rectangle region = new Rectangle(1, 1, 3, 2);
+		NullableNumberArray values = new NullableNumberArray(2);
+		values.setLong(1, 100L);
+
+		for (RasterKernel kernel : KERNELS)
+		{
+			ByteBuffer buffer = createBuffer(kernel, SIZE.width * SIZE.height * 2);
+			kernel.fillOutside(buffer, SIZE, 0, region, values);
+			kernel.fillOutside(buffer, SIZE, 1, region, values);
+
+			for (int y = 0; y < SIZE.height; y++)
+			{
+				for (int x = 0; x < SIZE.width; x++)
+				{
+					assertEquals(0, kernel.getLong(buffer, index(x, y, 0)));
+					assertEquals(region.contains(x, y) ? 0 : 100, kernel.getLong(buffer, index(x, y, 1)));
+				}
+			}
+		}
+
+		//region partly outside the raster
+		ByteBuffer buffer = createBuffer(RasterKernels.INT16, SIZE.width * SIZE.height * 2);
+		region = new Rectangle(-2, 2, 4, 10);
+		RasterKernels.INT16.fillOutside(buffer, SIZE, 1, region, values);
+		for (int y = 0; y < SIZE.height; y++)
+		{
+			for (int x = 0; x < SIZE.width; x++)
+			{
+				assertEquals(region.contains(x, y) ? 0 : 100, RasterKernels.INT16.getLong(buffer, index(x, y, 1)));
+			}
+		}
+	}
+
+	@Test
+	public void testReplaceValues()
+	{
+		MinMaxArray minMax = new MinMaxArray(2);
+		minMax.setMinMaxLong(0, 10L, 20L);
+		minMax.setMinMaxDouble(0, 10d, 20d);
+		NullableNumberArray replacement = new NullableNumberArray(2);
+		replacement.setLong(1, 1L);
+		NullableNumberArray otherwise = new NullableNumberArray(2);
+		otherwise.setLong(0, 0L);
+		Rectangle region = new Rectangle(0, 1, SIZE.width, 2);
+
+		for (RasterKernel kernel : KERNELS)
+		{
+			ByteBuffer buffer = createBuffer(kernel, SIZE.width * SIZE.height * 2);
+			for (int i = 0; i < SIZE.width * SIZE.height; i++)
+			{
+				kernel.putLong(buffer, i, i);
+				kernel.putLong(buffer, i + SIZE.width * SIZE.height, 50);
+			}
+
+			kernel.replaceValues(buffer, SIZE, 2, region, new MinMaxArray[] { null, minMax }, replacement,
+					otherwise);
+
+			for (int y = 0; y < SIZE.height; y++)
+			{
+				for (int x = 0; x < SIZE.width; x++)
+				{
+					int value = y * SIZE.width + x;
+					boolean between = region.contains(x, y) && value >= 10 && value <= 20;
+					boolean other = region.contains(x, y) && !between;
+					assertEquals(other ? 0 : value, kernel.getLong(buffer, index(x, y, 0)));
+					assertEquals(between ? 1 : 50, kernel.getLong(buffer, index(x, y, 1)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testUpdateMinMaxIgnoresOutsideValues()
+	{
+		NullableNumberArray outside = new NullableNumberArray(2);
+		outside.setLong(0, 1000L);
+
+		for (RasterKernel kernel : new RasterKernel[] { RasterKernels.INT16, RasterKernels.INT32,
+				RasterKernels.FLOAT32, RasterKernels.FLOAT64 })
+		{
+			ByteBuffer buffer = createBuffer(kernel, SIZE.width * SIZE.height * 2);
+			for (int i = 0; i < SIZE.width * SIZE.height * 2; i++)
+			{
+				kernel.putLong(buffer, i, i % 7 == 0 ? 1000 : i - 10);
+			}
+
+			NumberArray minmax = new NumberArray(2);
+			if (kernel.isFloatingPoint())
+			{
+				minmax.setDouble(0, Double.MAX_VALUE);
+				minmax.setDouble(1, -Double.MAX_VALUE);
+			}
+			else
+			{
+				minmax.setLong(0, Long.MAX_VALUE);
+				minmax.setLong(1, Long.MIN_VALUE);
+			}
+			kernel.updateMinMax(buffer, SIZE, 2, minmax, outside);
+
+			//1000 is ignored in band 0 only
+			assertEquals(-9, minmax.getLong(0));
+			assertEquals(1000, minmax.getLong(1));
+			assertEquals(-9d, minmax.getDouble(0), 0);
+
+			outside.setLong(1, 1000L);
+			minmax.setLong(1, 0);
+			kernel.updateMinMax(buffer, SIZE, 2, minmax, outside);
+			assertEquals(39 - 10, minmax.getLong(1));
+			outside.setLong(1, null);
+		}
+	}
+
+	@Test
+	public void testConvert()
+	{
+		for (RasterKernel src : KERNELS)
+		{
+			for (RasterKernel dst : KERNELS)
+			{
+				ByteBuffer srcBuffer = createBuffer(src, 4);
+				ByteBuffer dstBuffer = createBuffer(dst, 4);
+				for (int i = 0; i < 4; i++)
+				{
+					src.putDouble(srcBuffer, i, i * 60 + (src.isFloatingPoint() ? 0.5 : 0));
+				}
+
+				src.convert(srcBuffer, dstBuffer, dst, 4);
+
+				for (int i = 0; i < 4; i++)
+				{
+					assertEquals(i * 60, dst.getLong(dstBuffer, i));
+					double expected = i * 60 + (src.isFloatingPoint() && dst.isFloatingPoint() ? 0.5 : 0);
+					assertEquals(expected, dst.getDouble(dstBuffer, i), 0);
+				}
+			}
+		}
+	}
+
+	private static ByteBuffer createBuffer(RasterKernel kernel, int elements)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(elements * kernel.getTypeSize());
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	private static void fill(RasterKernel kernel, ByteBuffer buffer, Rectangle region, int band, long value)
+	{
+		for (int y = region.y; y < region.y + region.height; y++)
+		{
+			for (int x = region.x; x < region.x + region.width; x++)
+			{
+				kernel.putLong(buffer, index(x, y, band), value);
+			}
+		}
+	}
+
+	private static int index(int x, int y, int band)
+	{
+		return band * SIZE.width * SIZE.height + y * SIZE.width + x;
+	}
+}
@@ -251,7 +251,6 @@ public class LayerEnabler implements HierarchicalListener
 					{
 						WMSCapabilities capabilities =
 								WmsCapabilitiesServiceAccessor.getService().retrieveCapabilities(node.getLayerURL());
-						capabilities.parse();
 						WMSLayerCapabilities layerCapabilities = capabilities.getLayerByName(node.getLayerId());
 						List<WMSLayerInfo> layerInfos = WMSLayerInfo.createLayerInfos(capabilities, layerCapabilities);
 						node.setLayerInfo(layerInfos.get(0));